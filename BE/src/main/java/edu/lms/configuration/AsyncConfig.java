@@ -0,0 +1,130 @@
+package edu.lms.configuration;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableAsync;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+@Configuration
+@EnableAsync
+public class AsyncConfig {
+
+    /**
+     * Xử lý side effect của PayOS webhook (enrollment, slot, chat room, notification).
+     * Queue đầy thì bỏ qua task: inbox row vẫn ở RECEIVED và job quét lại sẽ xử lý.
+     */
+    @Bean(name = "webhookExecutor")
+    public ThreadPoolTaskExecutor webhookExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(2);
+        executor.setMaxPoolSize(4);
+        executor.setQueueCapacity(500);
+        executor.setThreadNamePrefix("payos-webhook-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.DiscardPolicy());
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * Gọi PayOS ngoài DB transaction (huỷ payment link sau commit).
+     * Queue đầy thì chạy luôn trên thread gọi để không mất lệnh huỷ.
+     */
+    @Bean(name = "payOSExecutor")
+    public ThreadPoolTaskExecutor payOSExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(4);
+        executor.setMaxPoolSize(8);
+        executor.setQueueCapacity(1000);
+        executor.setThreadNamePrefix("payos-call-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * Teardown booking plan: huỷ link PayOS + ghi notification song song sau khi transaction commit.
+     * Queue đầy thì chạy luôn trên thread gọi để không mất task.
+     */
+    @Bean(name = "bookingTeardownExecutor")
+    public ThreadPoolTaskExecutor bookingTeardownExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(4);
+        executor.setMaxPoolSize(8);
+        executor.setQueueCapacity(2000);
+        executor.setThreadNamePrefix("booking-teardown-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * Verify Cloudflare Turnstile song song với validate slot trong checkout.
+     * Queue đầy thì chạy luôn trên thread gọi (checkout chậm hơn nhưng không bị từ chối).
+     */
+    @Bean(name = "turnstileExecutor")
+    public ThreadPoolTaskExecutor turnstileExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(4);
+        executor.setMaxPoolSize(16);
+        executor.setQueueCapacity(200);
+        executor.setThreadNamePrefix("turnstile-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * Đánh thức dispatcher outbox email sau commit. 1 thread, queue 1: đang có lượt chờ thì bỏ
+     * (lượt đó claim luôn email mới), còn sót thì job poll định kỳ gửi.
+     */
+    @Bean(name = "mailOutboxDispatchExecutor")
+    public ThreadPoolTaskExecutor mailOutboxDispatchExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(1);
+        executor.setQueueCapacity(1);
+        executor.setThreadNamePrefix("mail-outbox-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.DiscardPolicy());
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * Worker của MailDispatcher: mỗi thread chạy vòng lặp lấy mail từ queue và gửi trên 1 phiên SMTP
+     * của SmtpSessionPool → số thread = số phiên SMTP tối đa, không cần queue.
+     */
+    @Bean(name = "mailSenderExecutor")
+    public ThreadPoolTaskExecutor mailSenderExecutor(
+            @Value("${mail-sender.max-sessions:4}") int maxSessions
+    ) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(maxSessions);
+        executor.setMaxPoolSize(maxSessions);
+        executor.setQueueCapacity(0);
+        executor.setThreadNamePrefix("mail-sender-");
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * Upload file lên Cloudinary ngoài request thread. Số upload lớn chạy cùng lúc bị chặn ở workers,
+     * queue đầy thì từ chối (UploadJobService trả UPLOAD_QUEUE_FULL) thay vì chiếm thread Tomcat.
+     */
+    @Bean(name = "uploadExecutor")
+    public ThreadPoolTaskExecutor uploadExecutor(
+            @Value("${upload-queue.workers:3}") int workers,
+            @Value("${upload-queue.capacity:50}") int capacity
+    ) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(workers);
+        executor.setMaxPoolSize(workers);
+        executor.setQueueCapacity(capacity);
+        executor.setThreadNamePrefix("upload-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        executor.initialize();
+        return executor;
+    }
+}
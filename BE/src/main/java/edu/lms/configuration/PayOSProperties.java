@@ -1,10 +1,12 @@
 package edu.lms.configuration;
 
 import lombok.Getter;
+import lombok.Setter;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
 
 @Getter
+@Setter
 @Configuration
 public class PayOSProperties {
 
@@ -28,4 +30,27 @@ public class PayOSProperties {
 
     @Value("${payos.verify-signature}")
     private boolean verifySignature;
+
+    // ==== HTTP client (pool, timeout, retry, circuit breaker) ====
+
+    @Value("${payos.http.connect-timeout-ms:2000}")
+    private int connectTimeoutMs = 2000;
+
+    @Value("${payos.http.read-timeout-ms:5000}")
+    private int readTimeoutMs = 5000;
+
+    @Value("${payos.http.max-connections:50}")
+    private int maxConnections = 50;
+
+    @Value("${payos.http.max-retries:2}")
+    private int maxRetries = 2;
+
+    @Value("${payos.http.retry-backoff-ms:200}")
+    private long retryBackoffMs = 200;
+
+    @Value("${payos.http.circuit-failure-threshold:5}")
+    private int circuitFailureThreshold = 5;
+
+    @Value("${payos.http.circuit-open-ms:30000}")
+    private long circuitOpenMs = 30000;
 }
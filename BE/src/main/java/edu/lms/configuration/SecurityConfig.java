@@ -139,6 +139,7 @@ public class SecurityConfig {
                         .requestMatchers(HttpMethod.GET, "/tutor/*/packages").permitAll()
                         // Tutor booking plan public endpoints
                         .requestMatchers(HttpMethod.GET, "/tutor/*/booking-plan").permitAll()
+                        .requestMatchers(HttpMethod.GET, "/tutor/*/availability").permitAll()
                         .requestMatchers(HttpMethod.GET, "/tutor/booking-plan/**").permitAll()
                         // Other public
                         .requestMatchers(HttpMethod.POST, "/api/files/upload").permitAll()
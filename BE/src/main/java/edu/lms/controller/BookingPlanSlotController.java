@@ -4,14 +4,17 @@ import edu.lms.dto.request.ApiRespond;
 import edu.lms.dto.request.EvidenceRequest;
 import edu.lms.dto.request.BookingComplaintRequest;
 import edu.lms.dto.response.BookingPlanSlotResponse;
+import edu.lms.dto.response.TimetableResponse;
 import edu.lms.dto.response.UserResponse;
 import edu.lms.service.BookingAttendanceService;
 import edu.lms.service.BookingPlanSlotService;
 import edu.lms.service.UserService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.LocalDate;
 import java.util.List;
 
 @RestController
@@ -41,6 +44,25 @@ public class BookingPlanSlotController {
                 .build();
     }
 
+    // Thời khoá biểu tuần / tháng: ?from=2025-01-06&to=2025-01-12 (mặc định tuần hiện tại)
+    @GetMapping("/timetable")
+    public ApiRespond<TimetableResponse> getMyTimetable(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to
+    ) {
+        UserResponse user = userService.getMyInfo();
+
+        TimetableResponse result = ("LEARNER".equalsIgnoreCase(user.getRole()))
+                ? bookingPlanSlotService.getTimetableForUser(user.getUserID(), from, to)
+                : bookingPlanSlotService.getTimetableForTutor(user.getUserID(), from, to);
+
+        return ApiRespond.<TimetableResponse>builder()
+                .code(1000)
+                .message("OK")
+                .result(result)
+                .build();
+    }
+
     @GetMapping("/public/tutors/{tutorId}/slots/paid")
     public List<BookingPlanSlotResponse> getPaidSlotsByTutor(
             @PathVariable Long tutorId
@@ -5,6 +5,7 @@ import edu.lms.dto.response.*;
 import edu.lms.exception.AppException;
 import edu.lms.exception.ErrorCode;
 import edu.lms.security.UserPrincipal;
+import edu.lms.service.TutorAvailabilityService;
 import edu.lms.service.TutorBookingPlanService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
@@ -20,6 +21,7 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 
@@ -29,6 +31,7 @@ import org.springframework.web.bind.annotation.RestController;
 public class TutorBookingPlanController {
 
     private final TutorBookingPlanService tutorBookingPlanService;
+    private final TutorAvailabilityService tutorAvailabilityService;
 
     @PostMapping("/booking-plan")
     @PreAuthorize("hasRole('TUTOR')")
@@ -59,6 +62,14 @@ public class TutorBookingPlanController {
         return ResponseEntity.ok(response);
     }
 
+    @GetMapping("/booking-plan/teardown/{jobId}")
+    @PreAuthorize("hasRole('TUTOR')")
+    public ResponseEntity<BookingPlanTeardownProgressResponse> getTeardownProgress(@PathVariable String jobId) {
+        Long currentUserId = getCurrentUserId();
+        BookingPlanTeardownProgressResponse response = tutorBookingPlanService.getTeardownProgress(currentUserId, jobId);
+        return ResponseEntity.ok(response);
+    }
+
     @GetMapping("/{tutorId}/booking-plan")
     @PreAuthorize("permitAll()")
     public ResponseEntity<BookingPlanListResponse> getBookingPlans(@PathVariable Long tutorId) {
@@ -66,6 +77,16 @@ public class TutorBookingPlanController {
         return ResponseEntity.ok(response);
     }
 
+    @GetMapping("/{tutorId}/availability")
+    @PreAuthorize("permitAll()")
+    public ResponseEntity<TutorAvailabilityResponse> getAvailability(
+            @PathVariable Long tutorId,
+            @RequestParam(defaultValue = "4") int weeks
+    ) {
+        TutorAvailabilityResponse response = tutorAvailabilityService.getAvailability(tutorId, weeks);
+        return ResponseEntity.ok(response);
+    }
+
     @GetMapping("/booking-plan/me")
     @PreAuthorize("hasRole('TUTOR')")
     public ResponseEntity<BookingPlanListResponse> getMyBookingPlans() {
@@ -4,18 +4,26 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import edu.lms.dto.request.TutorApplyRequest;
 import edu.lms.dto.response.TutorApplyResponse;
 import edu.lms.dto.response.TutorApplicationListResponse;
+import edu.lms.dto.response.TutorAvailabilitySearchResponse;
 import edu.lms.dto.response.TutorDetailResponse;
+import edu.lms.dto.response.TutorDirectoryPageResponse;
 import edu.lms.security.UserPrincipal;
+import edu.lms.service.TutorAvailabilitySearchService;
+import edu.lms.service.TutorDirectoryService;
 import edu.lms.service.TutorService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.web.bind.annotation.*;
 
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalTime;
 import java.util.List;
 
 @Slf4j
@@ -25,6 +33,8 @@ import java.util.List;
 public class TutorController {
 
     private final TutorService tutorService;
+    private final TutorDirectoryService tutorDirectoryService;
+    private final TutorAvailabilitySearchService tutorAvailabilitySearchService;
     private final ObjectMapper objectMapper;
 
     // 1. Submit application
@@ -73,10 +83,49 @@ public class TutorController {
         return ResponseEntity.ok(tutors);
     }
 
+    // 3b. Tìm tutor theo ngôn ngữ / khoảng giá / rating / quốc gia (phân trang, tất cả role đều xem được)
+    @GetMapping("/search")
+    public ResponseEntity<TutorDirectoryPageResponse> searchTutors(
+            @RequestParam(required = false) String language,
+            @RequestParam(required = false) String country,
+            @RequestParam(required = false) Double minPrice,
+            @RequestParam(required = false) Double maxPrice,
+            @RequestParam(required = false) BigDecimal minRating,
+            @RequestParam(defaultValue = "rating") String sort,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "20") int size
+    ) {
+        return ResponseEntity.ok(tutorDirectoryService.search(
+                language, country, minPrice, maxPrice, minRating, sort, page, size));
+    }
+
+    // 3c. Tìm tutor còn trống lịch theo ngày / khung giờ / thời lượng / ngôn ngữ / giá (tất cả role đều xem được)
+    //     Ví dụ: ?language=Japanese&fromDate=2025-01-06&toDate=2025-01-12&startTime=19:00&endTime=22:00&duration=60
+    @GetMapping("/availability")
+    public ResponseEntity<TutorAvailabilitySearchResponse> searchAvailableTutors(
+            @RequestParam(required = false) String language,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate fromDate,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate toDate,
+            @RequestParam(required = false) @DateTimeFormat(pattern = "HH:mm") LocalTime startTime,
+            @RequestParam(required = false) @DateTimeFormat(pattern = "HH:mm") LocalTime endTime,
+            @RequestParam(required = false) Integer duration,
+            @RequestParam(required = false) Double minPrice,
+            @RequestParam(required = false) Double maxPrice,
+            @RequestParam(defaultValue = "20") int limit
+    ) {
+        return ResponseEntity.ok(tutorAvailabilitySearchService.search(
+                language, fromDate, toDate, startTime, endTime, duration, minPrice, maxPrice, limit));
+    }
+
     // 4. Xem chi tiết tutor và các khóa học đã được approved (tất cả role đều xem được)
+    //    Feedback phân trang: feedbackPage / feedbackSize (mặc định trang đầu, 10 feedback mới nhất)
     @GetMapping("/{tutorId}")
-    public ResponseEntity<TutorDetailResponse> getTutorDetail(@PathVariable Long tutorId) {
-        TutorDetailResponse tutorDetail = tutorService.getTutorDetail(tutorId);
+    public ResponseEntity<TutorDetailResponse> getTutorDetail(
+            @PathVariable Long tutorId,
+            @RequestParam(defaultValue = "0") int feedbackPage,
+            @RequestParam(defaultValue = "10") int feedbackSize
+    ) {
+        TutorDetailResponse tutorDetail = tutorService.getTutorDetail(tutorId, feedbackPage, feedbackSize);
         return ResponseEntity.ok(tutorDetail);
     }
 
@@ -1,12 +1,22 @@
 package edu.lms.controller;
 
 import edu.lms.dto.request.ApiRespond;
+import edu.lms.dto.request.DirectUploadCompleteRequest;
+import edu.lms.dto.request.DirectUploadSignRequest;
+import edu.lms.dto.response.DirectUploadSignatureResponse;
 import edu.lms.dto.response.FileUrlResponse;
+import edu.lms.dto.response.UploadJobResponse;
+import edu.lms.dto.response.UploadQueueStatsResponse;
 import edu.lms.service.CloudinaryService;
+import edu.lms.service.UploadJobService;
+import jakarta.validation.Valid;
 import jakarta.validation.constraints.NotNull;
 import lombok.RequiredArgsConstructor;
 import lombok.experimental.FieldDefaults;
 import org.springframework.http.MediaType;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
@@ -19,6 +29,7 @@ import static lombok.AccessLevel.PRIVATE;
 public class UploadController {
 
     CloudinaryService cloudinaryService;
+    UploadJobService uploadJobService;
 
     @PostMapping(
             value = "/upload",
@@ -42,4 +53,61 @@ public class UploadController {
                     .build();
         }
     }
+
+    // ===== Direct upload: browser upload thẳng lên Cloudinary, backend chỉ ký + verify kết quả =====
+
+    @PostMapping("/direct-upload/signature")
+    @PreAuthorize("hasAnyRole('TUTOR', 'ADMIN')")
+    public ApiRespond<DirectUploadSignatureResponse> signDirectUpload(
+            @Valid @RequestBody DirectUploadSignRequest request
+    ) {
+        return ApiRespond.<DirectUploadSignatureResponse>builder()
+                .result(cloudinaryService.signDirectUpload(request.getFileName(), "uploads"))
+                .build();
+    }
+
+    @PostMapping("/direct-upload/complete")
+    @PreAuthorize("hasAnyRole('TUTOR', 'ADMIN')")
+    public ApiRespond<FileUrlResponse> completeDirectUpload(
+            @Valid @RequestBody DirectUploadCompleteRequest request
+    ) {
+        return ApiRespond.<FileUrlResponse>builder()
+                .result(cloudinaryService.completeDirectUpload(request))
+                .build();
+    }
+
+    // ===== Upload nền: trả jobId ngay, tiến độ qua GET /jobs/{jobId} hoặc WebSocket /user/queue/uploads =====
+
+    @PostMapping(
+            value = "/upload/async",
+            consumes = MediaType.MULTIPART_FORM_DATA_VALUE
+    )
+    public ApiRespond<UploadJobResponse> uploadFileAsync(
+            @NotNull @RequestParam("file") MultipartFile file,
+            @AuthenticationPrincipal Jwt jwt
+    ) {
+        Long userId = jwt.getClaim("userId");
+        return ApiRespond.<UploadJobResponse>builder()
+                .result(uploadJobService.submit(file, "uploads", userId))
+                .build();
+    }
+
+    @GetMapping("/jobs/{jobId}")
+    public ApiRespond<UploadJobResponse> getUploadJob(
+            @PathVariable String jobId,
+            @AuthenticationPrincipal Jwt jwt
+    ) {
+        Long userId = jwt.getClaim("userId");
+        return ApiRespond.<UploadJobResponse>builder()
+                .result(uploadJobService.getJob(jobId, userId))
+                .build();
+    }
+
+    @GetMapping("/jobs/stats")
+    @PreAuthorize("principal.claims['role'] == 'Admin'")
+    public ApiRespond<UploadQueueStatsResponse> getUploadQueueStats() {
+        return ApiRespond.<UploadQueueStatsResponse>builder()
+                .result(uploadJobService.getStats())
+                .build();
+    }
 }
@@ -0,0 +1,25 @@
+package edu.lms.dto.request;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import lombok.*;
+
+/**
+ * Kết quả Cloudinary trả cho browser sau khi upload trực tiếp (public_id, version, signature, secure_url).
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class DirectUploadCompleteRequest {
+    @NotBlank
+    private String fileName;
+    @NotBlank
+    private String publicId;
+    @NotNull
+    private Long version;
+    @NotBlank
+    private String signature;
+    @NotBlank
+    private String secureUrl;
+}
@@ -0,0 +1,13 @@
+package edu.lms.dto.request;
+
+import jakarta.validation.constraints.NotBlank;
+import lombok.*;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class DirectUploadSignRequest {
+    @NotBlank(message = "File name is required")
+    private String fileName;
+}
@@ -0,0 +1,28 @@
+package edu.lms.dto.response;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.FieldDefaults;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class AvailableSlotResponse {
+
+    @JsonProperty("booking_plan_id")
+    Long bookingPlanId;
+
+    @JsonProperty("start_time")
+    LocalDateTime startTime;
+
+    @JsonProperty("end_time")
+    LocalDateTime endTime;
+}
@@ -0,0 +1,64 @@
+package edu.lms.dto.response;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import edu.lms.enums.BookingPlanTeardownReason;
+import edu.lms.enums.BookingPlanTeardownStatus;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.FieldDefaults;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class BookingPlanTeardownProgressResponse {
+
+    @JsonProperty("job_id")
+    String jobId;
+
+    BookingPlanTeardownReason reason;
+
+    BookingPlanTeardownStatus status;
+
+    @JsonProperty("slots_affected")
+    Integer slotsAffected;
+
+    @JsonProperty("slots_with_learner")
+    Integer slotsWithLearner;
+
+    @JsonProperty("refunds_created")
+    Integer refundsCreated;
+
+    @JsonProperty("payments_cancelled")
+    Integer paymentsCancelled;
+
+    @JsonProperty("payment_links_total")
+    Integer paymentLinksTotal;
+
+    @JsonProperty("payment_links_cancelled")
+    Integer paymentLinksCancelled;
+
+    @JsonProperty("payment_links_failed")
+    Integer paymentLinksFailed;
+
+    @JsonProperty("notifications_total")
+    Integer notificationsTotal;
+
+    @JsonProperty("notifications_sent")
+    Integer notificationsSent;
+
+    @JsonProperty("notifications_failed")
+    Integer notificationsFailed;
+
+    @JsonProperty("started_at")
+    LocalDateTime startedAt;
+
+    @JsonProperty("finished_at")
+    LocalDateTime finishedAt;
+}
@@ -0,0 +1,20 @@
+package edu.lms.dto.response;
+
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * Tham số đã ký để browser POST file thẳng lên uploadUrl (multipart: file + các field dưới đây).
+ */
+@Data
+@Builder
+public class DirectUploadSignatureResponse {
+    private String uploadUrl;
+    private String apiKey;
+    private Long timestamp;
+    private String signature;
+    private String folder;
+    private String publicId;
+    private String useFilename;
+    private String uniqueFilename;
+}
@@ -14,6 +14,7 @@ public class LessonInSectionResponse {
     String lessonTitle;
     LessonType lessonType;
     Boolean isDone;
+    Integer watchedDuration;      // số giây đã xem (0 nếu chưa mở lesson)
 
     Integer totalQuizQuestions;   // tổng số câu quiz (nullable nếu không phải Quiz)
     Integer correctAnswers;       // số câu đúng lần gần nhất (nullable nếu chưa làm)
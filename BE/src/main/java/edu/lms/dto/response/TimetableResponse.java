@@ -0,0 +1,93 @@
+package edu.lms.dto.response;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import edu.lms.enums.SlotStatus;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.Map;
+
+import static lombok.AccessLevel.PRIVATE;
+
+/**
+ * Thời khoá biểu (tuần / tháng) của learner hoặc tutor.
+ * slots chỉ mang id; thông tin plan / tutor / learner nằm trong các dictionary đã khử trùng,
+ * mỗi đối tượng xuất hiện đúng 1 lần dù có nhiều slot tham chiếu.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = PRIVATE)
+public class TimetableResponse {
+
+    LocalDate from;
+
+    LocalDate to;
+
+    List<SlotItem> slots;
+
+    // key = bookingPlanID
+    Map<Long, PlanItem> plans;
+
+    // key = tutorID
+    Map<Long, PersonItem> tutors;
+
+    // key = userID (learner đã book slot)
+    Map<Long, PersonItem> users;
+
+    // --- Nested DTOs ---
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @FieldDefaults(level = PRIVATE)
+    public static class SlotItem {
+        Long slotID;
+        Long bookingPlanID;
+        Long tutorID;
+        Long userID;
+        LocalDateTime startTime;
+        LocalDateTime endTime;
+        SlotStatus status;
+        Long userPackageId;
+        Long tutorPackageID;
+        Boolean learnerJoin;
+        Boolean tutorJoin;
+    }
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @FieldDefaults(level = PRIVATE)
+    public static class PlanItem {
+        Long bookingPlanID;
+        String title;
+
+        @JsonSerialize(using = LocalTimeSerializer.class)
+        LocalTime startHours;
+
+        @JsonSerialize(using = LocalTimeSerializer.class)
+        LocalTime endHours;
+
+        Integer slotDuration;
+        String meetingUrl;   // chỉ trả khi plan có slot Paid trong khoảng
+    }
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @FieldDefaults(level = PRIVATE)
+    public static class PersonItem {
+        Long userID;
+        String fullName;
+        String avatarURL;
+    }
+}
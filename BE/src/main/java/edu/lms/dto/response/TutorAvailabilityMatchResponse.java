@@ -0,0 +1,27 @@
+package edu.lms.dto.response;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class TutorAvailabilityMatchResponse {
+    Long tutorId;
+    Long userId;
+    String userName;
+    String avatarURL;
+    String country;
+    String teachingLanguage;
+    BigDecimal rating;
+    Long bookingPlanId;
+    Double pricePerHour; // Giá / giờ của booking plan chứa khoảng trống
+    LocalDateTime earliestStart; // Khoảng trống sớm nhất thoả điều kiện tìm
+    LocalDateTime earliestEnd;
+    int slotCount; // Số slot liền nhau cần book để đủ thời lượng
+}
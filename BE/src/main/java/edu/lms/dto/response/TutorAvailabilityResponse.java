@@ -0,0 +1,32 @@
+package edu.lms.dto.response;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.FieldDefaults;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class TutorAvailabilityResponse {
+
+    @JsonProperty("tutor_id")
+    Long tutorId;
+
+    @JsonProperty("from")
+    LocalDateTime from;
+
+    @JsonProperty("to")
+    LocalDateTime to;
+
+    @JsonProperty("slots")
+    List<AvailableSlotResponse> slots;
+}
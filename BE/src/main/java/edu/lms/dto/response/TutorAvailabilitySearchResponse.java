@@ -0,0 +1,19 @@
+package edu.lms.dto.response;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class TutorAvailabilitySearchResponse {
+    List<TutorAvailabilityMatchResponse> items;
+    LocalDate fromDate;
+    LocalDate toDate;
+    int totalMatched;
+}
@@ -23,4 +23,8 @@ public class TutorCourseResponse {
     String thumbnailURL;
     String categoryName;
     String status;
+
+    Long learnerCount;
+    Double avgRating;
+    Integer totalRatings;
 }
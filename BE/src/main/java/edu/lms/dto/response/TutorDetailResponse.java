@@ -9,7 +9,7 @@ import java.util.List;
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
-@Builder
+@Builder(toBuilder = true)
 @FieldDefaults(level = AccessLevel.PRIVATE)
 public class TutorDetailResponse {
     Long tutorId;
@@ -29,7 +29,10 @@ public class TutorDetailResponse {
 
     List<TutorCourseResponse> courses;
     Double pricePerHour; // Giá booking tối thiểu mỗi giờ (từ các booking plans active)
-    List<TutorFeedbackItemResponse> feedbacks; // Danh sách feedback từ learner booking
+    List<TutorFeedbackItemResponse> feedbacks; // 1 trang feedback từ learner booking (mới nhất trước)
+    Long feedbackTotal;
+    Integer feedbackPage;
+    Integer feedbackSize;
     List<TutorCertificateResponse> certificates; // Danh sách chứng chỉ của tutor
 }
 
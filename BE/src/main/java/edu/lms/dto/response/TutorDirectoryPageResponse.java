@@ -0,0 +1,19 @@
+package edu.lms.dto.response;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class TutorDirectoryPageResponse {
+    List<TutorApplicationListResponse> items;
+    int page;
+    int size;
+    long totalElements;
+    int totalPages;
+}
@@ -0,0 +1,49 @@
+package edu.lms.dto.response;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import edu.lms.enums.UploadJobStatus;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.FieldDefaults;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class UploadJobResponse {
+
+    @JsonProperty("job_id")
+    String jobId;
+
+    UploadJobStatus status;
+
+    @JsonProperty("file_name")
+    String fileName;
+
+    @JsonProperty("bytes_total")
+    Long bytesTotal;
+
+    @JsonProperty("bytes_uploaded")
+    Long bytesUploaded;
+
+    Integer percent;
+
+    FileUrlResponse result;
+
+    String error;
+
+    @JsonProperty("queued_at")
+    LocalDateTime queuedAt;
+
+    @JsonProperty("started_at")
+    LocalDateTime startedAt;
+
+    @JsonProperty("finished_at")
+    LocalDateTime finishedAt;
+}
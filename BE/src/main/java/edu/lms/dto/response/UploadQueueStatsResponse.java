@@ -0,0 +1,43 @@
+package edu.lms.dto.response;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.FieldDefaults;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class UploadQueueStatsResponse {
+
+    Integer workers;
+
+    @JsonProperty("queue_capacity")
+    Integer queueCapacity;
+
+    @JsonProperty("queue_depth")
+    Integer queueDepth;
+
+    @JsonProperty("active_uploads")
+    Integer activeUploads;
+
+    Long submitted;
+
+    Long completed;
+
+    Long failed;
+
+    Long rejected;
+
+    @JsonProperty("bytes_uploaded")
+    Long bytesUploaded;
+
+    // tốc độ trung bình của 1 upload (byte / giây thời gian upload)
+    @JsonProperty("avg_bytes_per_second")
+    Long avgBytesPerSecond;
+}
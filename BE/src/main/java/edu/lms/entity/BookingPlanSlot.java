@@ -12,7 +12,14 @@ import java.time.LocalDateTime;
 @AllArgsConstructor
 @Builder
 @Entity
-@Table(name = "Booking_Plan_Slot")
+@Table(
+        name = "Booking_Plan_Slot",
+        indexes = {
+                // Thời khoá biểu tuần / tháng của learner và tutor: lọc theo người + khoảng startTime
+                @Index(name = "idx_slot_user_start", columnList = "user_id, start_time"),
+                @Index(name = "idx_slot_tutor_start", columnList = "tutor_id, start_time")
+        }
+)
 @FieldDefaults(level = AccessLevel.PRIVATE)
 public class BookingPlanSlot {
 
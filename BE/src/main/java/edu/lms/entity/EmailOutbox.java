@@ -0,0 +1,63 @@
+package edu.lms.entity;
+
+import edu.lms.enums.EmailOutboxStatus;
+import jakarta.persistence.*;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Entity
+@Table(
+        name = "email_outbox",
+        indexes = {
+                @Index(name = "idx_email_outbox_status", columnList = "status, next_attempt_at"),
+                @Index(name = "idx_email_outbox_claim", columnList = "claim_token")
+        }
+)
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class EmailOutbox {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    Long outboxId;
+
+    @Column(nullable = false, length = 255)
+    String toEmail;
+
+    @Column(nullable = false, length = 500)
+    String subject;
+
+    @Column(nullable = false, columnDefinition = "TEXT")
+    String body;
+
+    @Builder.Default
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    EmailOutboxStatus status = EmailOutboxStatus.PENDING;
+
+    @Builder.Default
+    @Column(nullable = false)
+    Integer attempts = 0;
+
+    @Column(length = 1000)
+    String lastError;
+
+    // UUID của lần claim đang giữ row (SENDING)
+    @Column(name = "claim_token", length = 36)
+    String claimToken;
+
+    LocalDateTime claimedAt;
+
+    @Column(name = "next_attempt_at", nullable = false)
+    LocalDateTime nextAttemptAt;
+
+    @Column(nullable = false)
+    LocalDateTime createdAt;
+
+    LocalDateTime sentAt;
+}
@@ -0,0 +1,69 @@
+package edu.lms.entity;
+
+import edu.lms.enums.WebhookInboxStatus;
+import jakarta.persistence.*;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Entity
+@Table(
+        name = "payment_webhook_inbox",
+        uniqueConstraints = @UniqueConstraint(name = "uk_webhook_inbox_dedup", columnNames = "dedup_key"),
+        indexes = @Index(name = "idx_webhook_inbox_status", columnList = "status, received_at")
+)
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class PaymentWebhookInbox {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    Long inboxId;
+
+    // orderCode + ":" + code → PayOS gửi lại cùng kết quả sẽ trùng key
+    @Column(name = "dedup_key", nullable = false, length = 200)
+    String dedupKey;
+
+    @Column(nullable = false, length = 150)
+    String orderCode;
+
+    @Column(nullable = false, length = 20)
+    String code;
+
+    @Column(columnDefinition = "TEXT")
+    String payload;
+
+    // true nếu chính lần gọi này đã chuyển payment PENDING → PAID
+    @Builder.Default
+    @Column(nullable = false)
+    Boolean paidTransition = false;
+
+    @Builder.Default
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    WebhookInboxStatus status = WebhookInboxStatus.RECEIVED;
+
+    @Builder.Default
+    @Column(nullable = false)
+    Integer attempts = 0;
+
+    @Column(length = 1000)
+    String lastError;
+
+    @Column(name = "received_at", nullable = false)
+    LocalDateTime receivedAt;
+
+    // Thời điểm worker claim (PROCESSING) → quá lease thì worker khác được claim lại
+    @Column(name = "claimed_at")
+    LocalDateTime claimedAt;
+
+    LocalDateTime processedAt;
+
+    public static String dedupKeyOf(String orderCode, String code) {
+        return orderCode + ":" + code;
+    }
+}
@@ -25,8 +25,8 @@ public class RefundRequest {
     @Column(nullable = false)
     Long bookingPlanId;
 
-    @Column(nullable = false)
-    Long slotId;
+    @Column(nullable = true)
+    Long slotId; // null nếu refund cả payment (slot đã bị xoá cùng plan)
 
     @Column(nullable = false)
     Long userId;
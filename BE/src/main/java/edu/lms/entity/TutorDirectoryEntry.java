@@ -0,0 +1,80 @@
+package edu.lms.entity;
+
+import edu.lms.enums.TutorStatus;
+import jakarta.persistence.*;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Read model cho danh sách tutor (/tutors/approved, /tutors/search, admin list).
+ * 1 dòng / tutor, đã tính sẵn giá min, rating booking và thông tin verification mới nhất
+ * → list + filter chỉ cần 1 query có index thay vì 3 query / tutor.
+ * Được cập nhật bởi TutorDirectoryService khi plan / feedback / verification / profile thay đổi.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Entity
+@Table(
+        name = "tutor_directory",
+        indexes = {
+                @Index(name = "idx_tutor_dir_lang_price", columnList = "status, teaching_language, min_price_per_hour"),
+                @Index(name = "idx_tutor_dir_rating", columnList = "status, booking_rating"),
+                @Index(name = "idx_tutor_dir_country", columnList = "status, country")
+        }
+)
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class TutorDirectoryEntry {
+
+    // Cùng id với tutor.tutorid (không generate)
+    @Id
+    @Column(name = "tutor_id")
+    Long tutorId;
+
+    @Column(name = "user_id", nullable = false)
+    Long userId;
+
+    String userEmail;
+
+    String userName;
+
+    String avatarURL;
+
+    @Column(name = "country", length = 100)
+    String country;
+
+    String specialization;
+
+    @Column(name = "teaching_language", length = 100)
+    String teachingLanguage;
+
+    // Giá tối thiểu / giờ trong các booking plan active + open, null nếu chưa có plan
+    @Column(name = "min_price_per_hour")
+    Double minPricePerHour;
+
+    // Rating trung bình từ booking feedback (không gồm course review)
+    @Builder.Default
+    @Column(name = "booking_rating", precision = 3, scale = 2, nullable = false)
+    BigDecimal bookingRating = BigDecimal.ZERO;
+
+    @Builder.Default
+    @Column(nullable = false)
+    Long feedbackCount = 0L;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false, length = 20)
+    TutorStatus status;
+
+    // Verification mới nhất
+    Long verificationId;
+
+    LocalDateTime submittedAt;
+
+    LocalDateTime reviewedAt;
+
+    LocalDateTime updatedAt;
+}
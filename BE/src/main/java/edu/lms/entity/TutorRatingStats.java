@@ -0,0 +1,86 @@
+package edu.lms.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDateTime;
+
+/**
+ * Tổng hợp booking feedback của 1 tutor: tổng điểm, số lượt và histogram số sao.
+ * Được cộng/trừ delta mỗi lần feedback thay đổi → tính rating O(1),
+ * không phải load lại toàn bộ feedback của tutor.
+ * Histogram theo FLOOR(rating), 0 và 0.5 tính vào 1 sao.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Entity
+@Table(name = "tutor_rating_stats")
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class TutorRatingStats {
+
+    // Cùng id với tutor.tutorid (không generate)
+    @Id
+    @Column(name = "tutor_id")
+    Long tutorId;
+
+    @Builder.Default
+    @Column(name = "rating_sum", precision = 12, scale = 1, nullable = false)
+    BigDecimal ratingSum = BigDecimal.ZERO;
+
+    @Builder.Default
+    @Column(name = "rating_count", nullable = false)
+    Long ratingCount = 0L;
+
+    @Builder.Default
+    @Column(nullable = false)
+    Long oneStar = 0L;
+
+    @Builder.Default
+    @Column(nullable = false)
+    Long twoStar = 0L;
+
+    @Builder.Default
+    @Column(nullable = false)
+    Long threeStar = 0L;
+
+    @Builder.Default
+    @Column(nullable = false)
+    Long fourStar = 0L;
+
+    @Builder.Default
+    @Column(nullable = false)
+    Long fiveStar = 0L;
+
+    LocalDateTime updatedAt;
+
+    /**
+     * Cộng (sign = 1) hoặc trừ (sign = -1) 1 rating vào tổng, số lượt và histogram
+     */
+    public void apply(BigDecimal rating, int sign) {
+        ratingSum = ratingSum.add(rating.multiply(BigDecimal.valueOf(sign)));
+        ratingCount = ratingCount + sign;
+        switch (starOf(rating)) {
+            case 1 -> oneStar = oneStar + sign;
+            case 2 -> twoStar = twoStar + sign;
+            case 3 -> threeStar = threeStar + sign;
+            case 4 -> fourStar = fourStar + sign;
+            default -> fiveStar = fiveStar + sign;
+        }
+    }
+
+    public BigDecimal average() {
+        if (ratingCount == null || ratingCount <= 0) {
+            return BigDecimal.ZERO;
+        }
+        return ratingSum.divide(BigDecimal.valueOf(ratingCount), 2, RoundingMode.HALF_UP);
+    }
+
+    public static int starOf(BigDecimal rating) {
+        return Math.min(5, Math.max(1, rating.intValue()));
+    }
+}
@@ -0,0 +1,52 @@
+package edu.lms.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.time.LocalDateTime;
+
+/**
+ * Index nội dung file đã upload lên Cloudinary: SHA-256 + resource_type → secure_url.
+ * Upload lại cùng nội dung (PDF / video dùng ở nhiều lesson, draft, avatar...) thì dùng lại URL, không upload lần nữa.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Entity
+@Table(
+        name = "uploaded_blob",
+        uniqueConstraints = @UniqueConstraint(name = "uk_uploaded_blob_hash", columnNames = {"content_hash", "resource_type"})
+)
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class UploadedBlob {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    Long blobId;
+
+    // SHA-256 dạng hex của toàn bộ nội dung file
+    @Column(name = "content_hash", nullable = false, length = 64)
+    String contentHash;
+
+    // raw (document) / auto → cùng nội dung nhưng khác kiểu upload thì lưu riêng
+    @Column(name = "resource_type", nullable = false, length = 10)
+    String resourceType;
+
+    @Column(nullable = false, length = 1000)
+    String secureUrl;
+
+    @Column(nullable = false)
+    Long sizeBytes;
+
+    // số lần upload được bỏ qua nhờ dùng lại URL
+    @Builder.Default
+    @Column(nullable = false)
+    Long reuseCount = 0L;
+
+    @Column(nullable = false)
+    LocalDateTime createdAt;
+
+    LocalDateTime lastReusedAt;
+}
@@ -30,4 +30,7 @@ public class UserCourseSection {
     CourseSection section;
 
     BigDecimal progress = BigDecimal.ZERO;
+
+    // Số lesson đã DONE trong section, cập nhật theo delta; null = bản ghi cũ chưa đếm
+    Integer completedLessons;
 }
@@ -3,6 +3,7 @@ package edu.lms.entity;
 import jakarta.persistence.*;
 import lombok.*;
 import lombok.experimental.FieldDefaults;
+import org.hibernate.annotations.DynamicUpdate;
 import java.time.LocalDateTime;
 
 @Data
@@ -11,6 +12,7 @@ import java.time.LocalDateTime;
 @Builder
 @FieldDefaults(level = AccessLevel.PRIVATE)
 @Entity
+@DynamicUpdate // ghi watchedDuration không đè cờ isDone do UPDATE có điều kiện (markDone) vừa đổi
 @Table(name = "UserLesson")
 public class UserLesson {
     @Id
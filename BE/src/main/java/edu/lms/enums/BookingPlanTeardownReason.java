@@ -0,0 +1,7 @@
+package edu.lms.enums;
+
+public enum BookingPlanTeardownReason {
+    PLAN_DELETED,    // Tutor xoá booking plan
+    TUTOR_SUSPENDED, // Tutor bị suspend / xoá → xoá toàn bộ plan
+    PLAN_UPDATED     // Tutor đổi giờ plan → slot nằm ngoài giờ mới
+}
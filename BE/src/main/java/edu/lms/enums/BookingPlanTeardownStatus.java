@@ -0,0 +1,9 @@
+package edu.lms.enums;
+
+public enum BookingPlanTeardownStatus {
+    QUEUED,                // Đã ghi DB, chờ transaction commit
+    RUNNING,               // Đang huỷ link PayOS / gửi notification
+    COMPLETED,             // Xong hết
+    COMPLETED_WITH_ERRORS, // Xong nhưng có task hết lượt retry
+    ROLLED_BACK            // Transaction rollback → không chạy gì
+}
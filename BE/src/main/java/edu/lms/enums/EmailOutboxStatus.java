@@ -0,0 +1,12 @@
+package edu.lms.enums;
+
+/**
+ * Trạng thái một email trong outbox (bảng email_outbox).
+ */
+public enum EmailOutboxStatus {
+    PENDING,  // Đã ghi cùng transaction nghiệp vụ, chờ dispatcher gửi
+    SENDING,  // Một dispatcher đã claim, đang gửi qua SMTP
+    SENT,     // SMTP server đã nhận
+    FAILED,   // Gửi lỗi, sẽ retry khi tới nextAttemptAt
+    DEAD      // Hết số lần retry, không gửi nữa (dead letter)
+}
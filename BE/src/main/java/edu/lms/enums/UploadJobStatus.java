@@ -0,0 +1,8 @@
+package edu.lms.enums;
+
+public enum UploadJobStatus {
+    QUEUED,     // Đã nhận file, chờ worker upload
+    UPLOADING,  // Đang đẩy lên Cloudinary
+    COMPLETED,  // Xong, có viewUrl / downloadUrl
+    FAILED      // Upload lỗi
+}
@@ -0,0 +1,13 @@
+package edu.lms.enums;
+
+/**
+ * Trạng thái xử lý của một lần PayOS gọi webhook (bảng payment_webhook_inbox).
+ */
+public enum WebhookInboxStatus {
+    RECEIVED,   // Đã ghi nhận, chờ xử lý side effect
+    PROCESSING, // Một worker đang xử lý
+    PROCESSED,  // Đã xử lý xong side effect
+    IGNORED,    // Replay / payment đã ở trạng thái cuối, không làm gì thêm
+    FAILED,     // Xử lý lỗi, sẽ được retry
+    DEAD        // Hết số lần retry, cần người xử lý tay (dead letter)
+}
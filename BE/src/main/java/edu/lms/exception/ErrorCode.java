@@ -79,6 +79,7 @@ public enum ErrorCode {
     INVALID_AMOUNT(6004, "Ballance is not enough", HttpStatus.FORBIDDEN),
     NOT_FOUND(6005, "withDraw Not found", HttpStatus.FORBIDDEN),
     INVALID_STATUS(6006, "WithDraw Status Not Found", HttpStatus.FORBIDDEN),
+    PAYMENT_GATEWAY_UNAVAILABLE(6007, "Payment gateway is temporarily unavailable, please try again later", HttpStatus.SERVICE_UNAVAILABLE),
 
 
 
@@ -91,6 +92,9 @@ public enum ErrorCode {
     BOOKING_PLAN_HAS_BOOKED_SLOT(7005, "This booking plan already has booked slots", HttpStatus.CONFLICT),
     BOOKING_SLOT_NOT_FOUND(7006, "Booking slot not found", HttpStatus.NOT_FOUND),
     BOOKING_SLOT_EXPIRED(7007, "Booking slot lock has expired", HttpStatus.BAD_REQUEST),
+    BOOKING_TEARDOWN_JOB_NOT_FOUND(7008, "Booking plan teardown job not found", HttpStatus.NOT_FOUND),
+    AVAILABILITY_SEARCH_INVALID_RANGE(7009, "Invalid availability search range", HttpStatus.BAD_REQUEST),
+    TIMETABLE_INVALID_RANGE(7010, "Invalid timetable date range", HttpStatus.BAD_REQUEST),
 
     // CHAT & POLICY
     CHAT_ROOM_NOT_FOUND(8001, "Chat room not found", HttpStatus.NOT_FOUND),
@@ -102,6 +106,7 @@ public enum ErrorCode {
     BOOKING_SLOT_NOT_AVAILABLE(8004, "Booking Slot Amount of this Tutor is 0, Please Choose other Tutor ", HttpStatus.NOT_FOUND),
     BOOKING_PLAN_MAX_DAYS_EXCEEDED(8005, "Tutor can only work maximum 4 days per week", HttpStatus.BAD_REQUEST),
     BOOKING_PAYMENT_CANCEL_TOO_MANY_TIMES(8006, "Thanh toan bi huy qua nhieu lan vui long thu lai sau 1 gio", HttpStatus.BAD_REQUEST),
+    CHECKOUT_RATE_LIMITED(8008, "Too many checkout attempts, please try again later", HttpStatus.TOO_MANY_REQUESTS),
     // WISH LIST
     ALREADY_IN_WISHLIST(8005, "The course already in wishlist", HttpStatus.CONFLICT),
 
@@ -134,6 +139,11 @@ public enum ErrorCode {
     LANGUAGE_IN_USE(10009, "Language in use", HttpStatus.NOT_FOUND),
     LANGUAGE_NAME_EN_IN_USE(10010, "Language name in use", HttpStatus.NOT_FOUND),
 
+    //Upload
+    INVALID_UPLOAD_SIGNATURE(10100, "Upload signature is invalid", HttpStatus.BAD_REQUEST),
+    UPLOAD_QUEUE_FULL(10101, "Too many uploads in progress, please try again later", HttpStatus.TOO_MANY_REQUESTS),
+    UPLOAD_JOB_NOT_FOUND(10102, "Upload job not found", HttpStatus.NOT_FOUND),
+
     ;
 
     ErrorCode(int code, String message, HttpStatusCode httpStatusCode) {
@@ -0,0 +1,6 @@
+package edu.lms.listener;
+
+/**
+ * Bắn ra khi transaction nghiệp vụ vừa ghi email vào outbox.
+ */
+public record EmailOutboxEnqueuedEvent(int count) {}
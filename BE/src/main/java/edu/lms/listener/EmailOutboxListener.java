@@ -0,0 +1,25 @@
+package edu.lms.listener;
+
+import edu.lms.service.EmailOutboxService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class EmailOutboxListener {
+
+    private final EmailOutboxService emailOutboxService;
+
+    // Outbox row chỉ thấy được sau commit → gửi ngay thay vì chờ lượt poll kế tiếp
+    @Async("mailOutboxDispatchExecutor")
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onEmailsEnqueued(EmailOutboxEnqueuedEvent event) {
+        log.debug("[MAIL OUTBOX][ASYNC] {} emails enqueued", event.count());
+        emailOutboxService.dispatchDue();
+    }
+}
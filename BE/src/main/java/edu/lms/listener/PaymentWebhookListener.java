@@ -0,0 +1,25 @@
+package edu.lms.listener;
+
+import edu.lms.service.PaymentWebhookService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class PaymentWebhookListener {
+
+    private final PaymentWebhookService paymentWebhookService;
+
+    // Chỉ chạy sau khi inbox row + trạng thái PAID đã commit → worker luôn đọc được dữ liệu mới
+    @Async("webhookExecutor")
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onWebhookReceived(PaymentWebhookReceivedEvent event) {
+        log.debug("[PAYOS WEBHOOK][ASYNC] processing inbox {}", event.inboxId());
+        paymentWebhookService.processInbox(event.inboxId());
+    }
+}
@@ -0,0 +1,6 @@
+package edu.lms.listener;
+
+/**
+ * Bắn ra sau khi một lần gọi webhook PayOS đã được ghi vào inbox.
+ */
+public record PaymentWebhookReceivedEvent(Long inboxId) {}
@@ -22,5 +22,8 @@ public interface TutorCourseMapper {
     @Mapping(target = "id", source = "courseID")
     @Mapping(target = "categoryName", source = "category.name")
     @Mapping(target = "status", source = "status")
+    @Mapping(target = "learnerCount", ignore = true)
+    @Mapping(target = "avgRating", ignore = true)
+    @Mapping(target = "totalRatings", ignore = true)
     TutorCourseResponse toTutorCourseResponse(Course course);
 }
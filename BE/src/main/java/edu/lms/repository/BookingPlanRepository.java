@@ -9,6 +9,7 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalTime;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -48,6 +49,8 @@ public interface BookingPlanRepository extends JpaRepository<BookingPlan, Long>
 
     List<BookingPlan> findByTutorIDAndIsActiveTrueOrderByTitleAscStartHoursAsc(Long tutorID);
 
+    List<BookingPlan> findByTutorIDInAndIsActiveTrue(Collection<Long> tutorIDs);
+
     /**
      * Đếm số ngày làm việc duy nhất (distinct titles) của tutor
      * Giới hạn tối đa 4 ngày/tuần
@@ -60,4 +63,28 @@ public interface BookingPlanRepository extends JpaRepository<BookingPlan, Long>
           AND bp.isActive = true
         """)
     Long countDistinctDaysByTutorID(@Param("tutorID") Long tutorID);
+
+    /**
+     * Giá tối thiểu / giờ trong các plan active + open của tutor (null nếu không có)
+     */
+    @Query("""
+        SELECT MIN(bp.pricePerHours) FROM BookingPlan bp
+        WHERE bp.tutorID = :tutorID
+          AND bp.isActive = true
+          AND bp.isOpen = true
+          AND bp.pricePerHours > 0
+        """)
+    Double findMinActivePricePerHour(@Param("tutorID") Long tutorID);
+
+    /**
+     * Giống findMinActivePricePerHour nhưng cho tất cả tutor: [tutorID, minPrice]
+     */
+    @Query("""
+        SELECT bp.tutorID, MIN(bp.pricePerHours) FROM BookingPlan bp
+        WHERE bp.isActive = true
+          AND bp.isOpen = true
+          AND bp.pricePerHours > 0
+        GROUP BY bp.tutorID
+        """)
+    List<Object[]> findMinActivePricePerHourGroupByTutor();
 }
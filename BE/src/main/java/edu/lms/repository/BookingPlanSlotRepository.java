@@ -10,6 +10,7 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -29,6 +30,21 @@ public interface BookingPlanSlotRepository extends JpaRepository<BookingPlanSlot
 
     List<BookingPlanSlot> findAllByUserIDAndPaymentIDAndStatus(Long userId, Long paymentId, SlotStatus status);
 
+    boolean existsByPaymentIDAndStatus(Long paymentId, SlotStatus status);
+
+    /**
+     * Đánh dấu Paid toàn bộ slot của 1 payment bằng 1 câu UPDATE.
+     * Chỉ slot còn Locked: slot đã bị teardown Rejected (đã tạo refund) không được quay lại Paid.
+     */
+    @Modifying
+    @Query("""
+        UPDATE BookingPlanSlot s
+        SET s.status = 'Paid'
+        WHERE s.paymentID = :paymentId
+          AND s.status = 'Locked'
+    """)
+    int markSlotsPaidByPaymentID(@Param("paymentId") Long paymentId);
+
     @Modifying
     @Query("""
         UPDATE BookingPlanSlot s
@@ -82,6 +98,69 @@ public interface BookingPlanSlotRepository extends JpaRepository<BookingPlanSlot
             @Param("endDate") LocalDateTime endDate
     );
 
+    /**
+     * Thời khoá biểu của learner trong khoảng [from, to) — dùng index (user_id, start_time).
+     * Fetch luôn userPackage để lấy package id không phát sinh query theo từng slot.
+     */
+    @Query("""
+        SELECT s FROM BookingPlanSlot s
+        LEFT JOIN FETCH s.userPackage
+        WHERE s.userID = :userID
+          AND s.startTime >= :from
+          AND s.startTime < :to
+        ORDER BY s.startTime ASC
+    """)
+    List<BookingPlanSlot> findTimetableByUserID(
+            @Param("userID") Long userID,
+            @Param("from") LocalDateTime from,
+            @Param("to") LocalDateTime to
+    );
+
+    /**
+     * Thời khoá biểu của tutor trong khoảng [from, to) — dùng index (tutor_id, start_time)
+     */
+    @Query("""
+        SELECT s FROM BookingPlanSlot s
+        LEFT JOIN FETCH s.userPackage
+        WHERE s.tutorID = :tutorID
+          AND s.startTime >= :from
+          AND s.startTime < :to
+        ORDER BY s.startTime ASC
+    """)
+    List<BookingPlanSlot> findTimetableByTutorID(
+            @Param("tutorID") Long tutorID,
+            @Param("from") LocalDateTime from,
+            @Param("to") LocalDateTime to
+    );
+
+    /**
+     * Slot đang chiếm lịch (Locked / Paid / Rejected) của tutor, chưa kết thúc tại thời điểm :from
+     */
+    @Query("""
+        SELECT s FROM BookingPlanSlot s
+        WHERE s.tutorID = :tutorID
+          AND s.status <> 'Available'
+          AND s.endTime > :from
+    """)
+    List<BookingPlanSlot> findOccupyingByTutorIDFrom(
+            @Param("tutorID") Long tutorID,
+            @Param("from") LocalDateTime from
+    );
+
+    /**
+     * Như findOccupyingByTutorIDFrom nhưng cho nhiều tutor (load calendar hàng loạt)
+     */
+    @Query("""
+        SELECT s FROM BookingPlanSlot s
+        WHERE s.tutorID IN :tutorIDs
+          AND s.status <> 'Available'
+          AND s.endTime > :from
+    """)
+    List<BookingPlanSlot> findOccupyingByTutorIDInFrom(
+            @Param("tutorIDs") Collection<Long> tutorIDs,
+            @Param("from") LocalDateTime from
+    );
+
     /**
      * Tìm slots đã được book (có userID) của tutor
      */
@@ -128,8 +207,33 @@ public interface BookingPlanSlotRepository extends JpaRepository<BookingPlanSlot
 
     List<BookingPlanSlot> findByBookingPlanIDOrderByStartTimeAsc(Long bookingPlanID);
 
+    List<BookingPlanSlot> findByBookingPlanIDAndStartTimeGreaterThanEqualOrderByStartTimeAsc(Long bookingPlanID, LocalDateTime from);
+
     void deleteByBookingPlanID(Long bookingPlanID);
 
+    /**
+     * Lấy toàn bộ slot của nhiều booking plan trong 1 query (dùng khi teardown plan)
+     */
+    List<BookingPlanSlot> findByBookingPlanIDIn(Collection<Long> bookingPlanIDs);
+
+    /**
+     * Xoá toàn bộ slot của nhiều booking plan bằng 1 câu DELETE
+     */
+    @Modifying
+    @Query("DELETE FROM BookingPlanSlot s WHERE s.bookingPlanID IN :planIds")
+    int deleteAllByBookingPlanIDIn(@Param("planIds") Collection<Long> planIds);
+
+    /**
+     * Chuyển nhiều slot sang Rejected bằng 1 câu UPDATE
+     */
+    @Modifying
+    @Query("""
+        UPDATE BookingPlanSlot s
+        SET s.status = 'Rejected'
+        WHERE s.slotID IN :slotIds
+    """)
+    int markSlotsRejected(@Param("slotIds") Collection<Long> slotIds);
+
     /**
      * Lấy danh sách User (distinct) đã booking slot (status = X) với tutor
      */
@@ -8,7 +8,7 @@ import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
-public interface CourseDraftRepository extends JpaRepository<CourseDraft, Long> {
+public interface CourseDraftRepository extends JpaRepository<CourseDraft, Long>, CourseDraftRepositoryCustom {
 
     Optional<CourseDraft> findByCourse_CourseIDAndStatusIn(Long courseId,
                                                            Collection<CourseDraftStatus> statuses);
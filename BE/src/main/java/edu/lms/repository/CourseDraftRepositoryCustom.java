@@ -0,0 +1,33 @@
+package edu.lms.repository;
+
+import edu.lms.entity.*;
+
+import java.util.List;
+
+/**
+ * Insert cây draft (section / lesson / resource / quiz / objective) bằng JDBC batch.
+ * Các bảng draft dùng id IDENTITY nên Hibernate bắn từng câu INSERT; ở đây mỗi lô là 1 câu
+ * INSERT nhiều dòng (rewriteBatchedStatements), MySQL cấp 1 khối id liên tiếp cho cả lô
+ * và id được gán ngược vào entity để tầng con dùng làm khoá ngoại.
+ * Entity truyền vào chưa được persist; entity cha phải đã có id.
+ */
+public interface CourseDraftRepositoryCustom {
+
+    void insertSectionDrafts(List<CourseSectionDraft> sections);
+
+    void insertLessonDrafts(List<LessonDraft> lessons);
+
+    void insertLessonResourceDrafts(List<LessonResourceDraft> resources);
+
+    void insertQuizQuestionDrafts(List<QuizQuestionDraft> questions);
+
+    void insertQuizOptionDrafts(List<QuizOptionDraft> options);
+
+    void insertObjectiveDrafts(List<CourseObjectiveDraft> objectives);
+
+    /**
+     * Xoá cả cây draft (option → câu hỏi → resource → lesson → section, objective, draft) bằng 1 câu DELETE / bảng
+     * thay cho cascade remove của Hibernate (load từng collection rồi xoá từng dòng)
+     */
+    void deleteDraftTree(Long draftId);
+}
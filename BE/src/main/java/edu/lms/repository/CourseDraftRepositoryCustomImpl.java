@@ -0,0 +1,147 @@
+package edu.lms.repository;
+
+import edu.lms.entity.*;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Types;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+@RequiredArgsConstructor
+public class CourseDraftRepositoryCustomImpl implements CourseDraftRepositoryCustom {
+
+    private static final int BATCH_SIZE = 500;
+
+    private static final String INSERT_SECTION_SQL = """
+            INSERT INTO course_section_draft (draftid, original_sectionid, title, description, order_index)
+            VALUES (?, ?, ?, ?, ?)""";
+    private static final String INSERT_LESSON_SQL = """
+            INSERT INTO lesson_draft (section_draftid, original_lessonid, title, duration, lesson_type,
+                                      videourl, content, order_index)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?)""";
+    private static final String INSERT_RESOURCE_SQL = """
+            INSERT INTO lesson_resource_draft (lesson_draftid, original_resourceid, resource_type,
+                                               resource_title, resourceurl)
+            VALUES (?, ?, ?, ?, ?)""";
+    private static final String INSERT_QUESTION_SQL = """
+            INSERT INTO quiz_question_draft (lesson_draftid, question_text, order_index, explanation, score)
+            VALUES (?, ?, ?, ?, ?)""";
+    private static final String INSERT_OPTION_SQL = """
+            INSERT INTO quiz_option_draft (question_draftid, option_text, is_correct, order_index)
+            VALUES (?, ?, ?, ?)""";
+    private static final String INSERT_OBJECTIVE_SQL = """
+            INSERT INTO course_objective_draft (draftid, original_objectiveid, objective_text, order_index)
+            VALUES (?, ?, ?, ?)""";
+
+    // Xoá từ lá lên gốc, mỗi bảng 1 câu (MySQL multi-table DELETE)
+    private static final List<String> DELETE_TREE_SQL = List.of(
+            """
+            DELETE o FROM quiz_option_draft o
+            JOIN quiz_question_draft q ON q.question_draftid = o.question_draftid
+            JOIN lesson_draft l ON l.lesson_draftid = q.lesson_draftid
+            JOIN course_section_draft s ON s.section_draftid = l.section_draftid
+            WHERE s.draftid = ?""",
+            """
+            DELETE q FROM quiz_question_draft q
+            JOIN lesson_draft l ON l.lesson_draftid = q.lesson_draftid
+            JOIN course_section_draft s ON s.section_draftid = l.section_draftid
+            WHERE s.draftid = ?""",
+            """
+            DELETE r FROM lesson_resource_draft r
+            JOIN lesson_draft l ON l.lesson_draftid = r.lesson_draftid
+            JOIN course_section_draft s ON s.section_draftid = l.section_draftid
+            WHERE s.draftid = ?""",
+            """
+            DELETE l FROM lesson_draft l
+            JOIN course_section_draft s ON s.section_draftid = l.section_draftid
+            WHERE s.draftid = ?""",
+            "DELETE FROM course_section_draft WHERE draftid = ?",
+            "DELETE FROM course_objective_draft WHERE draftid = ?",
+            "DELETE FROM course_drafts WHERE draftid = ?");
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public void insertSectionDrafts(List<CourseSectionDraft> sections) {
+        insertAll(INSERT_SECTION_SQL, sections, (ps, s) -> {
+            ps.setLong(1, s.getDraft().getDraftID());
+            ps.setObject(2, s.getOriginalSectionID(), Types.BIGINT);
+            ps.setString(3, s.getTitle());
+            ps.setString(4, s.getDescription());
+            ps.setObject(5, s.getOrderIndex(), Types.INTEGER);
+        }, CourseSectionDraft::setSectionDraftID);
+    }
+
+    @Override
+    public void insertLessonDrafts(List<LessonDraft> lessons) {
+        insertAll(INSERT_LESSON_SQL, lessons, (ps, l) -> {
+            ps.setLong(1, l.getSectionDraft().getSectionDraftID());
+            ps.setObject(2, l.getOriginalLessonID(), Types.BIGINT);
+            ps.setString(3, l.getTitle());
+            ps.setObject(4, l.getDuration(), Types.SMALLINT);
+            // lessonType không có @Enumerated → Hibernate lưu ORDINAL
+            ps.setObject(5, l.getLessonType() != null ? l.getLessonType().ordinal() : null, Types.TINYINT);
+            ps.setString(6, l.getVideoURL());
+            ps.setString(7, l.getContent());
+            ps.setObject(8, l.getOrderIndex(), Types.INTEGER);
+        }, LessonDraft::setLessonDraftID);
+    }
+
+    @Override
+    public void insertLessonResourceDrafts(List<LessonResourceDraft> resources) {
+        insertAll(INSERT_RESOURCE_SQL, resources, (ps, r) -> {
+            ps.setLong(1, r.getLessonDraft().getLessonDraftID());
+            ps.setObject(2, r.getOriginalResourceID(), Types.BIGINT);
+            // resourceType không có @Enumerated → ORDINAL
+            ps.setObject(3, r.getResourceType() != null ? r.getResourceType().ordinal() : null, Types.TINYINT);
+            ps.setString(4, r.getResourceTitle());
+            ps.setString(5, r.getResourceURL());
+        }, LessonResourceDraft::setResourceDraftID);
+    }
+
+    @Override
+    public void insertQuizQuestionDrafts(List<QuizQuestionDraft> questions) {
+        insertAll(INSERT_QUESTION_SQL, questions, (ps, q) -> {
+            ps.setLong(1, q.getLessonDraft().getLessonDraftID());
+            ps.setString(2, q.getQuestionText());
+            ps.setObject(3, q.getOrderIndex(), Types.INTEGER);
+            ps.setString(4, q.getExplanation());
+            ps.setBigDecimal(5, q.getScore());
+        }, QuizQuestionDraft::setQuestionDraftID);
+    }
+
+    @Override
+    public void insertQuizOptionDrafts(List<QuizOptionDraft> options) {
+        insertAll(INSERT_OPTION_SQL, options, (ps, o) -> {
+            ps.setLong(1, o.getQuestionDraft().getQuestionDraftID());
+            ps.setString(2, o.getOptionText());
+            ps.setObject(3, o.getIsCorrect(), Types.BOOLEAN);
+            ps.setObject(4, o.getOrderIndex(), Types.INTEGER);
+        }, QuizOptionDraft::setOptionDraftID);
+    }
+
+    @Override
+    public void insertObjectiveDrafts(List<CourseObjectiveDraft> objectives) {
+        insertAll(INSERT_OBJECTIVE_SQL, objectives, (ps, o) -> {
+            ps.setLong(1, o.getDraft().getDraftID());
+            ps.setObject(2, o.getOriginalObjectiveID(), Types.BIGINT);
+            ps.setString(3, o.getObjectiveText());
+            ps.setObject(4, o.getOrderIndex(), Types.INTEGER);
+        }, CourseObjectiveDraft::setObjectiveDraftID);
+    }
+
+    @Override
+    public void deleteDraftTree(Long draftId) {
+        for (String sql : DELETE_TREE_SQL) {
+            jdbcTemplate.update(sql, draftId);
+        }
+    }
+
+    // ====================== HELPER =========================
+
+    private <T> void insertAll(String sql, List<T> rows, JdbcBatchInsert.RowBinder<T> binder,
+                               BiConsumer<T, Long> idSetter) {
+        JdbcBatchInsert.insertAll(jdbcTemplate, sql, rows, BATCH_SIZE, binder, idSetter);
+    }
+}
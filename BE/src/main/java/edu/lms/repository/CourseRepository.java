@@ -4,12 +4,13 @@ import edu.lms.entity.Course;
 import edu.lms.entity.Tutor;
 import edu.lms.enums.CourseStatus;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
 
 @Repository
-public interface CourseRepository extends JpaRepository<Course, Long> {
+public interface CourseRepository extends JpaRepository<Course, Long>, CourseRepositoryCustom {
     List<Course> findByTutor(Tutor tutor);
     List<Course> findByTutorAndStatus(Tutor tutor, CourseStatus status);
     List<Course> findByStatus(CourseStatus status);
@@ -25,4 +26,13 @@ public interface CourseRepository extends JpaRepository<Course, Long> {
     List<Course> findTop10ByStatusOrderByCreatedAtAsc(CourseStatus status);
     // NEW: lấy 5 khóa học mới nhất với status != Draft
     List<Course> findTop5ByStatusNotOrderByCreatedAtDesc(CourseStatus status);
+
+    // Course của tutor theo status, fetch category sẵn (trang chi tiết tutor)
+    @Query("""
+        SELECT c FROM Course c
+        LEFT JOIN FETCH c.category
+        WHERE c.tutor.tutorID = :tutorId AND c.status = :status
+        ORDER BY c.createdAt DESC
+    """)
+    List<Course> findByTutorIdAndStatusWithCategory(Long tutorId, CourseStatus status);
 }
\ No newline at end of file
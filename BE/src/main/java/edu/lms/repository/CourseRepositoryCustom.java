@@ -0,0 +1,51 @@
+package edu.lms.repository;
+
+import edu.lms.entity.*;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Ghi curriculum live (section / lesson / resource / quiz / objective) theo lô khi duyệt draft.
+ * Insert: mỗi lô là 1 câu INSERT nhiều dòng, id IDENTITY gán ngược vào entity (giống CourseDraftRepositoryCustom).
+ * Delete: 1 câu DELETE ... IN (...) cho mỗi bảng, xoá bảng con trước (không dựa vào cascade của Hibernate).
+ * Entity truyền vào chưa được persist; entity cha phải đã có id.
+ */
+public interface CourseRepositoryCustom {
+
+    void insertSections(List<CourseSection> sections);
+
+    void insertLessons(List<Lesson> lessons);
+
+    void insertLessonResources(List<LessonResource> resources);
+
+    void insertQuizQuestions(List<QuizQuestion> questions);
+
+    void insertQuizOptions(List<QuizOption> options);
+
+    void insertObjectives(List<CourseObjective> objectives);
+
+    /**
+     * Xoá quiz (câu trả lời, option, câu hỏi) của các lesson, giữ lại lesson
+     */
+    void deleteQuizzesByLessonIds(Collection<Long> lessonIds);
+
+    /**
+     * Xoá lesson cùng quiz, kết quả quiz, tiến độ UserLesson và resource của lesson
+     */
+    void deleteLessonsCascade(Collection<Long> lessonIds);
+
+    /**
+     * Xoá section cùng UserCourseSection; lesson của section phải đã bị xoá / chuyển đi
+     */
+    void deleteSectionsCascade(Collection<Long> sectionIds);
+
+    void deleteLessonResources(Collection<Long> resourceIds);
+
+    void deleteObjectives(Collection<Long> objectiveIds);
+
+    /**
+     * Reset tiến độ learner của các lesson đổi nội dung chính (xoá UserLesson)
+     */
+    void deleteLessonProgress(Collection<Long> lessonIds);
+}
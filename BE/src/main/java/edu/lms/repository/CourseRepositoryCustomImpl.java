@@ -0,0 +1,181 @@
+package edu.lms.repository;
+
+import edu.lms.entity.*;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+@RequiredArgsConstructor
+public class CourseRepositoryCustomImpl implements CourseRepositoryCustom {
+
+    private static final int BATCH_SIZE = 500;
+    // số id tối đa trong 1 mệnh đề IN
+    private static final int IN_CHUNK = 1000;
+
+    private static final String INSERT_SECTION_SQL = """
+            INSERT INTO course_section (courseid, title, description, order_index)
+            VALUES (?, ?, ?, ?)""";
+    private static final String INSERT_LESSON_SQL = """
+            INSERT INTO lessons (sectionid, title, duration, lesson_type, videourl, content, order_index, created_at)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?)""";
+    private static final String INSERT_RESOURCE_SQL = """
+            INSERT INTO lesson_resource (lessonid, resource_type, resource_title, resourceurl, uploaded_at)
+            VALUES (?, ?, ?, ?, ?)""";
+    private static final String INSERT_QUESTION_SQL = """
+            INSERT INTO quiz_question (lessonid, question_text, order_index, explanation, score)
+            VALUES (?, ?, ?, ?, ?)""";
+    private static final String INSERT_OPTION_SQL = """
+            INSERT INTO quiz_option (questionid, option_text, is_correct, order_index)
+            VALUES (?, ?, ?, ?)""";
+    private static final String INSERT_OBJECTIVE_SQL = """
+            INSERT INTO course_objective (courseid, objective_text, order_index)
+            VALUES (?, ?, ?)""";
+
+    // %s = danh sách placeholder của mệnh đề IN
+    private static final List<String> DELETE_QUIZ_SQL = List.of(
+            "DELETE FROM quiz_answer WHERE questionid IN (SELECT questionid FROM quiz_question WHERE lessonid IN (%s))",
+            "DELETE FROM quiz_option WHERE questionid IN (SELECT questionid FROM quiz_question WHERE lessonid IN (%s))",
+            "DELETE FROM quiz_question WHERE lessonid IN (%s)");
+    private static final List<String> DELETE_LESSON_SQL = List.of(
+            "DELETE FROM user_quiz_result WHERE lessonid IN (%s)",
+            "DELETE FROM user_lesson WHERE lessonid IN (%s)",
+            "DELETE FROM lesson_resource WHERE lessonid IN (%s)",
+            "DELETE FROM lessons WHERE lessonid IN (%s)");
+    private static final List<String> DELETE_SECTION_SQL = List.of(
+            "DELETE FROM user_course_section WHERE sectionid IN (%s)",
+            "DELETE FROM course_section WHERE sectionid IN (%s)");
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public void insertSections(List<CourseSection> sections) {
+        insertAll(INSERT_SECTION_SQL, sections, (ps, s) -> {
+            ps.setLong(1, s.getCourse().getCourseID());
+            ps.setString(2, s.getTitle());
+            ps.setString(3, s.getDescription());
+            ps.setObject(4, s.getOrderIndex(), Types.INTEGER);
+        }, CourseSection::setSectionID);
+    }
+
+    @Override
+    public void insertLessons(List<Lesson> lessons) {
+        insertAll(INSERT_LESSON_SQL, lessons, (ps, l) -> {
+            ps.setLong(1, l.getSection().getSectionID());
+            ps.setString(2, l.getTitle());
+            ps.setObject(3, l.getDuration(), Types.SMALLINT);
+            // Lesson.lessonType là @Enumerated(STRING)
+            ps.setString(4, l.getLessonType() != null ? l.getLessonType().name() : null);
+            ps.setString(5, l.getVideoURL());
+            ps.setString(6, l.getContent());
+            ps.setObject(7, l.getOrderIndex(), Types.INTEGER);
+            ps.setTimestamp(8, timestamp(l.getCreatedAt()));
+        }, Lesson::setLessonID);
+    }
+
+    @Override
+    public void insertLessonResources(List<LessonResource> resources) {
+        insertAll(INSERT_RESOURCE_SQL, resources, (ps, r) -> {
+            ps.setLong(1, r.getLesson().getLessonID());
+            ps.setString(2, r.getResourceType() != null ? r.getResourceType().name() : null);
+            ps.setString(3, r.getResourceTitle());
+            ps.setString(4, r.getResourceURL());
+            ps.setTimestamp(5, timestamp(r.getUploadedAt()));
+        }, LessonResource::setResourceID);
+    }
+
+    @Override
+    public void insertQuizQuestions(List<QuizQuestion> questions) {
+        insertAll(INSERT_QUESTION_SQL, questions, (ps, q) -> {
+            ps.setLong(1, q.getLesson().getLessonID());
+            ps.setString(2, q.getQuestionText());
+            ps.setObject(3, q.getOrderIndex(), Types.INTEGER);
+            ps.setString(4, q.getExplanation());
+            ps.setBigDecimal(5, q.getScore());
+        }, QuizQuestion::setQuestionID);
+    }
+
+    @Override
+    public void insertQuizOptions(List<QuizOption> options) {
+        insertAll(INSERT_OPTION_SQL, options, (ps, o) -> {
+            ps.setLong(1, o.getQuestion().getQuestionID());
+            ps.setString(2, o.getOptionText());
+            ps.setObject(3, o.getIsCorrect(), Types.BOOLEAN);
+            ps.setObject(4, o.getOrderIndex(), Types.INTEGER);
+        }, QuizOption::setOptionID);
+    }
+
+    @Override
+    public void insertObjectives(List<CourseObjective> objectives) {
+        insertAll(INSERT_OBJECTIVE_SQL, objectives, (ps, o) -> {
+            ps.setLong(1, o.getCourse().getCourseID());
+            ps.setString(2, o.getObjectiveText());
+            ps.setObject(3, o.getOrderIndex(), Types.INTEGER);
+        }, CourseObjective::setObjectiveID);
+    }
+
+    @Override
+    public void deleteQuizzesByLessonIds(Collection<Long> lessonIds) {
+        deleteIn(DELETE_QUIZ_SQL, lessonIds);
+    }
+
+    @Override
+    public void deleteLessonsCascade(Collection<Long> lessonIds) {
+        List<String> statements = new ArrayList<>(DELETE_QUIZ_SQL);
+        statements.addAll(DELETE_LESSON_SQL);
+        deleteIn(statements, lessonIds);
+    }
+
+    @Override
+    public void deleteSectionsCascade(Collection<Long> sectionIds) {
+        deleteIn(DELETE_SECTION_SQL, sectionIds);
+    }
+
+    @Override
+    public void deleteLessonResources(Collection<Long> resourceIds) {
+        deleteIn(List.of("DELETE FROM lesson_resource WHERE resourceid IN (%s)"), resourceIds);
+    }
+
+    @Override
+    public void deleteObjectives(Collection<Long> objectiveIds) {
+        deleteIn(List.of("DELETE FROM course_objective WHERE objectiveid IN (%s)"), objectiveIds);
+    }
+
+    @Override
+    public void deleteLessonProgress(Collection<Long> lessonIds) {
+        deleteIn(List.of("DELETE FROM user_lesson WHERE lessonid IN (%s)"), lessonIds);
+    }
+
+    // ====================== HELPER =========================
+
+    private <T> void insertAll(String sql, List<T> rows, JdbcBatchInsert.RowBinder<T> binder,
+                               BiConsumer<T, Long> idSetter) {
+        JdbcBatchInsert.insertAll(jdbcTemplate, sql, rows, BATCH_SIZE, binder, idSetter);
+    }
+
+    // Chạy lần lượt các câu DELETE (bảng con trước) cho từng khúc id
+    private void deleteIn(List<String> statements, Collection<Long> ids) {
+        if (ids == null || ids.isEmpty()) {
+            return;
+        }
+        List<Long> all = new ArrayList<>(ids);
+        for (int from = 0; from < all.size(); from += IN_CHUNK) {
+            Object[] chunk = all.subList(from, Math.min(from + IN_CHUNK, all.size())).toArray();
+            String placeholders = String.join(", ", Collections.nCopies(chunk.length, "?"));
+            for (String sql : statements) {
+                jdbcTemplate.update(sql.formatted(placeholders), chunk);
+            }
+        }
+    }
+
+    private static Timestamp timestamp(LocalDateTime time) {
+        return Timestamp.valueOf(time != null ? time : LocalDateTime.now());
+    }
+}
@@ -1,6 +1,7 @@
 package edu.lms.repository;
 
 import edu.lms.entity.CourseReview;
+import edu.lms.enums.CourseStatus;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
@@ -35,4 +36,13 @@ public interface CourseReviewRepository extends JpaRepository<CourseReview, Long
     List<Object[]> countRatingDistributionByTutor(Long tutorId);
 
     List<CourseReview> findTop10ByCourse_Tutor_TutorIDOrderByCreatedAtDesc(Long tutorId);
+
+    // [courseId, AVG(rating), COUNT] cho các course của tutor theo status
+    @Query("""
+        SELECT r.course.courseID, AVG(r.rating), COUNT(r)
+        FROM CourseReview r
+        WHERE r.course.tutor.tutorID = :tutorId AND r.course.status = :status
+        GROUP BY r.course.courseID
+    """)
+    List<Object[]> aggregateRatingByTutorCourses(Long tutorId, CourseStatus status);
 }
@@ -16,4 +16,17 @@ public interface CourseSectionRepository extends JpaRepository<CourseSection, Lo
     @Query("SELECT cs FROM CourseSection cs WHERE cs.sectionID = :sectionId AND cs.course.tutor.tutorID = :tutorId")
     Optional<CourseSection> findBySectionIdAndTutorId(@Param("sectionId") Long sectionId, @Param("tutorId") Long tutorId);
 
+    /**
+     * Curriculum của course trong 1 query, đã sắp theo thứ tự section / lesson:
+     * [sectionID, section title, lessonID, lesson title, lessonType] (lesson null nếu section trống)
+     */
+    @Query("""
+        SELECT s.sectionID, s.title, l.lessonID, l.title, l.lessonType
+        FROM CourseSection s
+        LEFT JOIN s.lessons l
+        WHERE s.course.courseID = :courseId
+        ORDER BY s.orderIndex, s.sectionID, l.orderIndex, l.lessonID
+    """)
+    List<Object[]> findCurriculumRows(@Param("courseId") Long courseId);
+
 }
@@ -0,0 +1,7 @@
+package edu.lms.repository;
+
+import edu.lms.entity.EmailOutbox;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface EmailOutboxRepository extends JpaRepository<EmailOutbox, Long>, EmailOutboxRepositoryCustom {
+}
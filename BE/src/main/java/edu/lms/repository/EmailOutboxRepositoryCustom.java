@@ -0,0 +1,33 @@
+package edu.lms.repository;
+
+import edu.lms.entity.EmailOutbox;
+import edu.lms.enums.EmailOutboxStatus;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+public interface EmailOutboxRepositoryCustom {
+
+    /**
+     * Ghi nhiều email vào outbox bằng JDBC batch, chạy trong transaction nghiệp vụ của caller
+     * (email chỉ tồn tại nếu transaction đó commit).
+     */
+    void insertAll(List<EmailOutbox> rows);
+
+    /**
+     * Claim tối đa limit email đến hạn gửi (PENDING / FAILED tới nextAttemptAt, hoặc SENDING
+     * bị bỏ dở trước staleBefore) bằng 1 câu UPDATE có điều kiện → nhiều node không claim trùng.
+     * Trả về các row vừa claim (status SENDING, attempts đã tăng).
+     */
+    List<EmailOutbox> claimDue(String claimToken, int limit, LocalDateTime now, LocalDateTime staleBefore);
+
+    void markSent(Collection<Long> outboxIds, LocalDateTime sentAt);
+
+    /**
+     * Ghi kết quả gửi lỗi (FAILED kèm lịch retry, hoặc DEAD) bằng 1 JDBC batch.
+     */
+    void markFailed(List<Failure> failures);
+
+    record Failure(Long outboxId, EmailOutboxStatus status, String lastError, LocalDateTime nextAttemptAt) {}
+}
@@ -0,0 +1,105 @@
+package edu.lms.repository;
+
+import edu.lms.entity.EmailOutbox;
+import edu.lms.enums.EmailOutboxStatus;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+@RequiredArgsConstructor
+public class EmailOutboxRepositoryCustomImpl implements EmailOutboxRepositoryCustom {
+
+    private static final int BATCH_SIZE = 500;
+    // số id tối đa trong 1 mệnh đề IN
+    private static final int IN_CHUNK = 1000;
+
+    private static final String INSERT_SQL = """
+            INSERT INTO email_outbox (to_email, subject, body, status, attempts, next_attempt_at, created_at)
+            VALUES (?, ?, ?, ?, ?, ?, ?)""";
+    // MySQL cho phép UPDATE ... ORDER BY ... LIMIT → claim theo thứ tự ghi
+    private static final String CLAIM_SQL = """
+            UPDATE email_outbox
+            SET status = 'SENDING', claim_token = ?, claimed_at = ?, attempts = attempts + 1
+            WHERE (status IN ('PENDING', 'FAILED') AND next_attempt_at <= ?)
+               OR (status = 'SENDING' AND claimed_at < ?)
+            ORDER BY outbox_id
+            LIMIT ?""";
+    private static final String SELECT_CLAIMED_SQL = """
+            SELECT outbox_id, to_email, subject, body, attempts
+            FROM email_outbox
+            WHERE claim_token = ? AND status = 'SENDING'
+            ORDER BY outbox_id""";
+    private static final String SENT_SQL =
+            "UPDATE email_outbox SET status = 'SENT', sent_at = ?, last_error = NULL WHERE outbox_id IN (%s)";
+    private static final String FAILED_SQL = """
+            UPDATE email_outbox SET status = ?, last_error = ?, next_attempt_at = ?
+            WHERE outbox_id = ?""";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public void insertAll(List<EmailOutbox> rows) {
+        JdbcBatchInsert.insertAll(jdbcTemplate, INSERT_SQL, rows, BATCH_SIZE, (ps, r) -> {
+            ps.setString(1, r.getToEmail());
+            ps.setString(2, r.getSubject());
+            ps.setString(3, r.getBody());
+            ps.setString(4, r.getStatus().name());
+            ps.setInt(5, r.getAttempts());
+            ps.setTimestamp(6, Timestamp.valueOf(r.getNextAttemptAt()));
+            ps.setTimestamp(7, Timestamp.valueOf(r.getCreatedAt()));
+        }, EmailOutbox::setOutboxId);
+    }
+
+    @Override
+    public List<EmailOutbox> claimDue(String claimToken, int limit, LocalDateTime now, LocalDateTime staleBefore) {
+        int claimed = jdbcTemplate.update(CLAIM_SQL,
+                claimToken, Timestamp.valueOf(now), Timestamp.valueOf(now), Timestamp.valueOf(staleBefore), limit);
+        if (claimed == 0) {
+            return List.of();
+        }
+        return jdbcTemplate.query(SELECT_CLAIMED_SQL, (rs, i) -> EmailOutbox.builder()
+                .outboxId(rs.getLong("outbox_id"))
+                .toEmail(rs.getString("to_email"))
+                .subject(rs.getString("subject"))
+                .body(rs.getString("body"))
+                .status(EmailOutboxStatus.SENDING)
+                .attempts(rs.getInt("attempts"))
+                .claimToken(claimToken)
+                .build(), claimToken);
+    }
+
+    @Override
+    public void markSent(Collection<Long> outboxIds, LocalDateTime sentAt) {
+        if (outboxIds == null || outboxIds.isEmpty()) {
+            return;
+        }
+        List<Long> list = new ArrayList<>(outboxIds);
+        for (int from = 0; from < list.size(); from += IN_CHUNK) {
+            List<Long> chunk = list.subList(from, Math.min(from + IN_CHUNK, list.size()));
+            List<Object> args = new ArrayList<>(chunk.size() + 1);
+            args.add(Timestamp.valueOf(sentAt));
+            args.addAll(chunk);
+            jdbcTemplate.update(SENT_SQL.formatted(String.join(",", Collections.nCopies(chunk.size(), "?"))),
+                    args.toArray());
+        }
+    }
+
+    @Override
+    public void markFailed(List<Failure> failures) {
+        if (failures == null || failures.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(FAILED_SQL, failures, BATCH_SIZE, (ps, f) -> {
+            ps.setString(1, f.status().name());
+            ps.setString(2, f.lastError());
+            ps.setTimestamp(3, Timestamp.valueOf(f.nextAttemptAt()));
+            ps.setLong(4, f.outboxId());
+        });
+    }
+}
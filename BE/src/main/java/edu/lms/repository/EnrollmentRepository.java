@@ -2,9 +2,11 @@ package edu.lms.repository;
 
 import edu.lms.entity.Course;
 import edu.lms.entity.Enrollment;
+import edu.lms.enums.CourseStatus;
 import edu.lms.enums.EnrollmentStatus;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
@@ -24,7 +26,32 @@ public interface EnrollmentRepository extends JpaRepository<Enrollment, Long> {
 
     List<Enrollment> findByUser_UserID(Long userId);
     Optional<Enrollment> findByUser_UserIDAndCourse_CourseID(Long userId, Long courseId);
+
+    /**
+     * Enrollment + course + tutor + category trong 1 query (màn player không phải load lazy từng quan hệ)
+     */
+    @Query("""
+        SELECT e FROM Enrollment e
+        JOIN FETCH e.user
+        JOIN FETCH e.course c
+        JOIN FETCH c.tutor t
+        JOIN FETCH t.user
+        JOIN FETCH c.category
+        WHERE e.user.userID = :userId
+          AND c.courseID = :courseId
+    """)
+    Optional<Enrollment> findWithCourseByUserAndCourse(@Param("userId") Long userId,
+                                                       @Param("courseId") Long courseId);
     long countByCourse_CourseID(Long courseId);
+
+    // [courseId, COUNT] số learner của từng course của tutor theo status
+    @Query("""
+        SELECT e.course.courseID, COUNT(e)
+        FROM Enrollment e
+        WHERE e.course.tutor.tutorID = :tutorId AND e.course.status = :status
+        GROUP BY e.course.courseID
+    """)
+    List<Object[]> countByTutorCoursesGroupByCourse(Long tutorId, CourseStatus status);
     void deleteByCourse_CourseID(Long courseId);
 
     // Lấy toàn bộ enrollment của learner vào các khóa học thuộc 1 tutor
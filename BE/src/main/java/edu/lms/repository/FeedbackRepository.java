@@ -1,6 +1,8 @@
 package edu.lms.repository;
 
 import edu.lms.entity.Feedback;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -23,4 +25,45 @@ public interface FeedbackRepository extends JpaRepository<Feedback, Long> {
            "WHERE p.tutorId = :tutorId " +
            "ORDER BY p.paidAt DESC")
     List<Feedback> findByPayment_TutorIdWithDetails(@Param("tutorId") Long tutorId);
+
+    // Feedback booking của tutor, phân trang (mới nhất trước)
+    @Query(value = "SELECT f FROM Feedback f " +
+                   "JOIN FETCH f.payment p " +
+                   "JOIN FETCH f.user u " +
+                   "WHERE p.tutorId = :tutorId " +
+                   "ORDER BY p.paidAt DESC, f.feedbackID DESC",
+           countQuery = "SELECT COUNT(f) FROM Feedback f WHERE f.payment.tutorId = :tutorId")
+    Page<Feedback> findPageByTutorId(@Param("tutorId") Long tutorId, Pageable pageable);
+
+    // [tutorId, AVG(rating), COUNT] của booking feedback, 1 tutor
+    @Query("SELECT p.tutorId, AVG(f.rating), COUNT(f) FROM Feedback f JOIN f.payment p " +
+           "WHERE p.tutorId = :tutorId GROUP BY p.tutorId")
+    List<Object[]> aggregateRatingByTutorId(@Param("tutorId") Long tutorId);
+
+    // [tutorId, AVG(rating), COUNT] cho tất cả tutor (rebuild directory)
+    @Query("SELECT p.tutorId, AVG(f.rating), COUNT(f) FROM Feedback f JOIN f.payment p " +
+           "WHERE p.tutorId IS NOT NULL GROUP BY p.tutorId")
+    List<Object[]> aggregateRatingGroupByTutor();
+
+    // [tutorId, SUM(rating), COUNT, 1★, 2★, 3★, 4★, 5★] – histogram theo FLOOR(rating), < 2 tính là 1★
+    @Query("SELECT p.tutorId, SUM(f.rating), COUNT(f), " +
+           "SUM(CASE WHEN f.rating < 2 THEN 1 ELSE 0 END), " +
+           "SUM(CASE WHEN f.rating >= 2 AND f.rating < 3 THEN 1 ELSE 0 END), " +
+           "SUM(CASE WHEN f.rating >= 3 AND f.rating < 4 THEN 1 ELSE 0 END), " +
+           "SUM(CASE WHEN f.rating >= 4 AND f.rating < 5 THEN 1 ELSE 0 END), " +
+           "SUM(CASE WHEN f.rating >= 5 THEN 1 ELSE 0 END) " +
+           "FROM Feedback f JOIN f.payment p " +
+           "WHERE p.tutorId = :tutorId GROUP BY p.tutorId")
+    List<Object[]> aggregateRatingStatsByTutorId(@Param("tutorId") Long tutorId);
+
+    // Giống aggregateRatingStatsByTutorId cho tất cả tutor (reconcile)
+    @Query("SELECT p.tutorId, SUM(f.rating), COUNT(f), " +
+           "SUM(CASE WHEN f.rating < 2 THEN 1 ELSE 0 END), " +
+           "SUM(CASE WHEN f.rating >= 2 AND f.rating < 3 THEN 1 ELSE 0 END), " +
+           "SUM(CASE WHEN f.rating >= 3 AND f.rating < 4 THEN 1 ELSE 0 END), " +
+           "SUM(CASE WHEN f.rating >= 4 AND f.rating < 5 THEN 1 ELSE 0 END), " +
+           "SUM(CASE WHEN f.rating >= 5 THEN 1 ELSE 0 END) " +
+           "FROM Feedback f JOIN f.payment p " +
+           "WHERE p.tutorId IS NOT NULL GROUP BY p.tutorId")
+    List<Object[]> aggregateRatingStatsGroupByTutor();
 }
@@ -0,0 +1,65 @@
+package edu.lms.repository;
+
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * INSERT theo lô cho bảng id IDENTITY: mỗi lô là 1 câu INSERT nhiều dòng (rewriteBatchedStatements),
+ * MySQL cấp 1 khối id liên tiếp cho cả lô, id đọc lại qua generated keys và gán ngược vào entity.
+ * Chạy trên connection của transaction JPA hiện tại (JpaTransactionManager expose cho JDBC).
+ */
+final class JdbcBatchInsert {
+
+    private JdbcBatchInsert() {
+    }
+
+    static <T> void insertAll(JdbcTemplate jdbcTemplate, String sql, List<T> rows, int batchSize,
+                              RowBinder<T> binder, BiConsumer<T, Long> idSetter) {
+        if (rows == null || rows.isEmpty()) {
+            return;
+        }
+        for (int from = 0; from < rows.size(); from += batchSize) {
+            List<T> chunk = rows.subList(from, Math.min(from + batchSize, rows.size()));
+            KeyHolder keyHolder = new GeneratedKeyHolder();
+
+            jdbcTemplate.batchUpdate(
+                    con -> con.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS),
+                    new BatchPreparedStatementSetter() {
+                        @Override
+                        public void setValues(PreparedStatement ps, int i) throws SQLException {
+                            binder.bind(ps, chunk.get(i));
+                        }
+
+                        @Override
+                        public int getBatchSize() {
+                            return chunk.size();
+                        }
+                    },
+                    keyHolder
+            );
+
+            List<Map<String, Object>> keys = keyHolder.getKeyList();
+            if (keys.size() != chunk.size()) {
+                throw new IllegalStateException("Expected " + chunk.size() + " generated keys but got " + keys.size());
+            }
+            for (int i = 0; i < chunk.size(); i++) {
+                Number id = (Number) keys.get(i).values().iterator().next();
+                idSetter.accept(chunk.get(i), id.longValue());
+            }
+        }
+    }
+
+    @FunctionalInterface
+    interface RowBinder<T> {
+        void bind(PreparedStatement ps, T row) throws SQLException;
+    }
+}
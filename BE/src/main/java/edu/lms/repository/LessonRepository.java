@@ -14,6 +14,7 @@ import java.util.Collection;
 public interface LessonRepository extends JpaRepository<Lesson, Long> {
     List<Lesson> findBySectionSectionID(Long sectionId);
     List<Lesson> findBySection_SectionIDIn(Collection<Long> sectionIds);
+    long countBySection_SectionID(Long sectionId);
 
     @Query("SELECT l FROM Lesson l WHERE l.section.sectionID = :sectionId " +
            "AND (:keyword IS NULL OR LOWER(l.title) LIKE LOWER(CONCAT('%', :keyword, '%'))) " +
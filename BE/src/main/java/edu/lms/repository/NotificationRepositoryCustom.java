@@ -0,0 +1,14 @@
+package edu.lms.repository;
+
+import edu.lms.entity.Notification;
+
+import java.util.List;
+
+public interface NotificationRepositoryCustom {
+
+    /**
+     * Ghi nhiều notification bằng JDBC batch (thông báo hàng loạt, ví dụ mọi learner của 1 course)
+     * thay cho save từng entity IDENTITY.
+     */
+    void insertAll(List<Notification> notifications);
+}
@@ -0,0 +1,34 @@
+package edu.lms.repository;
+
+import edu.lms.entity.Notification;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.util.List;
+
+@RequiredArgsConstructor
+public class NotificationRepositoryCustomImpl implements NotificationRepositoryCustom {
+
+    private static final int BATCH_SIZE = 500;
+    private static final String INSERT_SQL = """
+            INSERT INTO notifications (user_id, type, title, content, primary_action_url, secondary_action_url,
+                                       is_read, created_at)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?)""";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public void insertAll(List<Notification> notifications) {
+        JdbcBatchInsert.insertAll(jdbcTemplate, INSERT_SQL, notifications, BATCH_SIZE, (ps, n) -> {
+            ps.setLong(1, n.getUserId());
+            ps.setString(2, n.getType().name());
+            ps.setString(3, n.getTitle());
+            ps.setString(4, n.getContent());
+            ps.setString(5, n.getPrimaryActionUrl());
+            ps.setString(6, n.getSecondaryActionUrl());
+            ps.setBoolean(7, Boolean.TRUE.equals(n.getIsRead()));
+            ps.setTimestamp(8, Timestamp.valueOf(n.getCreatedAt()));
+        }, Notification::setNotificationId);
+    }
+}
@@ -3,10 +3,16 @@ package edu.lms.repository;
 import edu.lms.entity.Payment;
 import edu.lms.enums.PaymentStatus;
 import edu.lms.enums.PaymentType;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -14,6 +20,125 @@ public interface PaymentRepository extends JpaRepository<Payment, Long> {
 
     Optional<Payment> findByOrderCode(String orderCode);
 
+    // ==== webhook: chuyển trạng thái bằng 1 câu UPDATE có điều kiện ====
+
+    /**
+     * PENDING/EXPIRED → PAID. Trả về 0 nếu payment đã PAID (replay), đã CANCELLED/FAILED,
+     * hoặc có slot bị Rejected → caller không cần đọc payment trước.
+     */
+    @Transactional
+    @Modifying
+    @Query("""
+        UPDATE Payment p
+        SET p.status = edu.lms.enums.PaymentStatus.PAID,
+            p.isPaid = true,
+            p.paidAt = :paidAt,
+            p.transactionResponse = :response
+        WHERE p.orderCode = :orderCode
+          AND p.status IN (edu.lms.enums.PaymentStatus.PENDING, edu.lms.enums.PaymentStatus.EXPIRED)
+          AND NOT EXISTS (
+              SELECT s.slotID FROM BookingPlanSlot s
+              WHERE s.paymentID = p.paymentID
+                AND s.status = edu.lms.enums.SlotStatus.Rejected
+          )
+    """)
+    int markPaidIfPending(@Param("orderCode") String orderCode,
+                          @Param("paidAt") LocalDateTime paidAt,
+                          @Param("response") String response);
+
+    /**
+     * Chuyển payment chưa thanh toán (PENDING/EXPIRED) sang trạng thái cuối FAILED/CANCELLED.
+     */
+    @Transactional
+    @Modifying
+    @Query("""
+        UPDATE Payment p
+        SET p.status = :status,
+            p.isPaid = false,
+            p.paidAt = null,
+            p.transactionResponse = :response
+        WHERE p.orderCode = :orderCode
+          AND p.status IN (edu.lms.enums.PaymentStatus.PENDING, edu.lms.enums.PaymentStatus.EXPIRED)
+    """)
+    int markUnpaidIfPending(@Param("orderCode") String orderCode,
+                            @Param("status") PaymentStatus status,
+                            @Param("response") String response);
+
+    /**
+     * Gắn link PayOS cho payment còn PENDING. Trả về 0 nếu payment đã bị huỷ trong lúc gọi PayOS
+     * (teardown plan) → không ghi đè CANCELLED bằng entity cũ đang giữ trong request.
+     */
+    @Transactional
+    @Modifying
+    @Query("""
+        UPDATE Payment p
+        SET p.orderCode = :orderCode,
+            p.checkoutUrl = :checkoutUrl,
+            p.qrCodeUrl = :qrCodeUrl,
+            p.paymentLinkId = :paymentLinkId,
+            p.expiresAt = :expiresAt
+        WHERE p.paymentID = :paymentId
+          AND p.status = edu.lms.enums.PaymentStatus.PENDING
+    """)
+    int attachLinkIfPending(@Param("paymentId") Long paymentId,
+                            @Param("orderCode") String orderCode,
+                            @Param("checkoutUrl") String checkoutUrl,
+                            @Param("qrCodeUrl") String qrCodeUrl,
+                            @Param("paymentLinkId") String paymentLinkId,
+                            @Param("expiresAt") LocalDateTime expiresAt);
+
+    /**
+     * Huỷ nhiều payment chưa thanh toán bằng 1 câu UPDATE (teardown booking plan).
+     * Payment đã PAID (webhook về trước) không bị ghi đè.
+     */
+    @Modifying
+    @Query("""
+        UPDATE Payment p
+        SET p.status = edu.lms.enums.PaymentStatus.CANCELLED,
+            p.isPaid = false,
+            p.paidAt = null,
+            p.expiresAt = :now
+        WHERE p.paymentID IN :paymentIds
+          AND p.status IN (edu.lms.enums.PaymentStatus.PENDING, edu.lms.enums.PaymentStatus.EXPIRED)
+    """)
+    int cancelUnpaidByIds(@Param("paymentIds") Collection<Long> paymentIds,
+                          @Param("now") LocalDateTime now);
+
+    /**
+     * Khoá các payment còn chưa trả (PENDING/EXPIRED) trước khi huỷ → webhook PAID tới cùng lúc
+     * phải chờ transaction này, và chỉ những payment trả về ở đây mới bị huỷ link PayOS.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("""
+        SELECT p FROM Payment p
+        WHERE p.paymentID IN :paymentIds
+          AND p.status IN (edu.lms.enums.PaymentStatus.PENDING, edu.lms.enums.PaymentStatus.EXPIRED)
+    """)
+    List<Payment> findUnpaidByIdsForUpdate(@Param("paymentIds") Collection<Long> paymentIds);
+
+    @Query("""
+        SELECT p.paymentID FROM Payment p
+        WHERE p.paymentID IN :paymentIds
+          AND p.status = edu.lms.enums.PaymentStatus.PAID
+    """)
+    List<Long> findPaidIds(@Param("paymentIds") Collection<Long> paymentIds);
+
+    /**
+     * Payment đã CANCELLED nhưng PayOS vẫn thu tiền (learner trả trước khi link bị huỷ) → cần hoàn tiền.
+     * Chỉ 1 lần gọi đổi được cờ → inbox retry không tạo refund trùng.
+     */
+    @Modifying
+    @Query("""
+        UPDATE Payment p
+        SET p.isRefund = true,
+            p.transactionResponse = :response
+        WHERE p.paymentID = :paymentId
+          AND p.status = edu.lms.enums.PaymentStatus.CANCELLED
+          AND p.isRefund = false
+    """)
+    int markRefundIfCancelled(@Param("paymentId") Long paymentId,
+                              @Param("response") String response);
+
     List<Payment> findAllByTutorId(Long tutorId);
 
     List<Payment> findAllByUserId(Long userId);
@@ -34,11 +159,10 @@ public interface PaymentRepository extends JpaRepository<Payment, Long> {
             PaymentStatus status
     );
 
-    long countByUserIdAndPaymentTypeAndTargetIdAndStatusAndCreatedAtAfter(
-            Long userId,
+    // Dựng lại bộ đếm huỷ / hết hạn của CheckoutRateLimiter khi khởi động
+    List<Payment> findByPaymentTypeAndStatusInAndCreatedAtAfter(
             PaymentType paymentType,
-            Long targetId,
-            PaymentStatus status,
+            Collection<PaymentStatus> statuses,
             LocalDateTime createdAtAfter
     );
 
@@ -0,0 +1,102 @@
+package edu.lms.repository;
+
+import edu.lms.entity.PaymentWebhookInbox;
+import edu.lms.enums.WebhookInboxStatus;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+public interface PaymentWebhookInboxRepository extends JpaRepository<PaymentWebhookInbox, Long> {
+
+    boolean existsByDedupKey(String dedupKey);
+
+    /**
+     * Claim một inbox row để xử lý. Trả về 1 nếu claim thành công,
+     * 0 nếu worker/node khác đã claim trước → không cần lock.
+     * Row PROCESSING có claimedAt < staleBefore (worker chết / app restart giữa chừng) được claim lại.
+     */
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("""
+        UPDATE PaymentWebhookInbox i
+        SET i.status = edu.lms.enums.WebhookInboxStatus.PROCESSING,
+            i.attempts = i.attempts + 1,
+            i.claimedAt = :now
+        WHERE i.inboxId = :inboxId
+          AND i.attempts < :maxAttempts
+          AND (i.status IN :claimable
+               OR (i.status = edu.lms.enums.WebhookInboxStatus.PROCESSING AND i.claimedAt < :staleBefore))
+    """)
+    int claim(@Param("inboxId") Long inboxId,
+              @Param("claimable") Collection<WebhookInboxStatus> claimable,
+              @Param("maxAttempts") int maxAttempts,
+              @Param("now") LocalDateTime now,
+              @Param("staleBefore") LocalDateTime staleBefore);
+
+    /**
+     * Chuyển row hết lượt retry sang DEAD (điều kiện giống lúc chọn ra → không đè worker vừa claim).
+     */
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("""
+        UPDATE PaymentWebhookInbox i
+        SET i.status = edu.lms.enums.WebhookInboxStatus.DEAD
+        WHERE i.inboxId = :inboxId
+          AND i.attempts >= :maxAttempts
+          AND (i.status IN :statuses
+               OR (i.status = edu.lms.enums.WebhookInboxStatus.PROCESSING AND i.claimedAt < :staleBefore))
+    """)
+    int markDead(@Param("inboxId") Long inboxId,
+                 @Param("statuses") Collection<WebhookInboxStatus> statuses,
+                 @Param("maxAttempts") int maxAttempts,
+                 @Param("staleBefore") LocalDateTime staleBefore);
+
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("""
+        UPDATE PaymentWebhookInbox i
+        SET i.status = :status,
+            i.lastError = :lastError,
+            i.processedAt = :processedAt
+        WHERE i.inboxId = :inboxId
+    """)
+    int finish(@Param("inboxId") Long inboxId,
+               @Param("status") WebhookInboxStatus status,
+               @Param("lastError") String lastError,
+               @Param("processedAt") LocalDateTime processedAt);
+
+    @Query("""
+        SELECT i.inboxId FROM PaymentWebhookInbox i
+        WHERE ((i.status IN :statuses AND i.receivedAt < :before)
+               OR (i.status = edu.lms.enums.WebhookInboxStatus.PROCESSING AND i.claimedAt < :staleBefore))
+          AND i.attempts < :maxAttempts
+        ORDER BY i.receivedAt ASC
+    """)
+    List<Long> findPendingIds(@Param("statuses") Collection<WebhookInboxStatus> statuses,
+                              @Param("before") LocalDateTime before,
+                              @Param("staleBefore") LocalDateTime staleBefore,
+                              @Param("maxAttempts") int maxAttempts,
+                              Pageable pageable);
+
+    /**
+     * Row đã hết lượt retry nhưng chưa DEAD: FAILED ở lần cuối, hoặc PROCESSING quá lease ở lần cuối.
+     */
+    @Query("""
+        SELECT i FROM PaymentWebhookInbox i
+        WHERE (i.status IN :statuses
+               OR (i.status = edu.lms.enums.WebhookInboxStatus.PROCESSING AND i.claimedAt < :staleBefore))
+          AND i.attempts >= :maxAttempts
+        ORDER BY i.receivedAt ASC
+    """)
+    List<PaymentWebhookInbox> findExhausted(@Param("statuses") Collection<WebhookInboxStatus> statuses,
+                                            @Param("staleBefore") LocalDateTime staleBefore,
+                                            @Param("maxAttempts") int maxAttempts,
+                                            Pageable pageable);
+}
@@ -5,13 +5,20 @@ import edu.lms.entity.QuizAnswer;
 import edu.lms.entity.QuizQuestion;
 import edu.lms.entity.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 
-public interface QuizAnswerRepository extends JpaRepository<QuizAnswer, Long> {
+public interface QuizAnswerRepository extends JpaRepository<QuizAnswer, Long>, QuizAnswerRepositoryCustom {
 
-    // Xoá các lần làm cũ cho user + các câu hỏi trong lesson này
-    void deleteByUserAndQuestionIn(User user, List<QuizQuestion> questions);
+    // Xoá các lần làm cũ cho user + các câu hỏi trong lesson này (1 câu DELETE, không load từng answer)
+    @Modifying
+    @Query("DELETE FROM QuizAnswer a WHERE a.user.userID = :userId AND a.question.questionID IN :questionIds")
+    void deleteByUserIdAndQuestionIdIn(@Param("userId") Long userId,
+                                       @Param("questionIds") Collection<Long> questionIds);
 
     List<QuizAnswer> findByUserAndQuestionIn(User user, List<QuizQuestion> questions);
 
@@ -0,0 +1,14 @@
+package edu.lms.repository;
+
+import java.util.List;
+
+public interface QuizAnswerRepositoryCustom {
+
+    /**
+     * Insert đáp án của 1 lần nộp quiz bằng JDBC batch.
+     * quiz_answer dùng id IDENTITY nên saveAll của Hibernate vẫn bắn từng câu INSERT.
+     */
+    void insertAll(Long userId, List<AnswerRow> rows);
+
+    record AnswerRow(Long questionId, Long optionId) {}
+}
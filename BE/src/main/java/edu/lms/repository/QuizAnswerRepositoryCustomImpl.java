@@ -0,0 +1,29 @@
+package edu.lms.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+
+@RequiredArgsConstructor
+public class QuizAnswerRepositoryCustomImpl implements QuizAnswerRepositoryCustom {
+
+    private static final int BATCH_SIZE = 100;
+    private static final String INSERT_SQL =
+            "INSERT INTO quiz_answer (questionid, userid, selected_optionid) VALUES (?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public void insertAll(Long userId, List<AnswerRow> rows) {
+        if (rows == null || rows.isEmpty()) {
+            return;
+        }
+        // Chạy trên connection của transaction JPA hiện tại (JpaTransactionManager expose cho JDBC)
+        jdbcTemplate.batchUpdate(INSERT_SQL, rows, BATCH_SIZE, (ps, row) -> {
+            ps.setLong(1, row.questionId());
+            ps.setLong(2, userId);
+            ps.setLong(3, row.optionId());
+        });
+    }
+}
@@ -3,10 +3,23 @@ package edu.lms.repository;
 import edu.lms.entity.LessonDraft;
 import edu.lms.entity.QuizQuestionDraft;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 
 public interface QuizQuestionDraftRepository extends JpaRepository<QuizQuestionDraft, Long> {
 
     List<QuizQuestionDraft> findByLessonDraftOrderByOrderIndexAsc(LessonDraft lessonDraft);
+
+    /**
+     * Câu hỏi + option của nhiều quiz lesson draft trong 1 query (so sánh / duyệt draft)
+     */
+    @Query("""
+        SELECT DISTINCT q FROM QuizQuestionDraft q
+        LEFT JOIN FETCH q.options
+        WHERE q.lessonDraft.lessonDraftID IN :lessonDraftIds
+    """)
+    List<QuizQuestionDraft> findWithOptionsByLessonDraftIdIn(@Param("lessonDraftIds") Collection<Long> lessonDraftIds);
 }
@@ -3,11 +3,46 @@ package edu.lms.repository;
 import edu.lms.entity.Lesson;
 import edu.lms.entity.QuizQuestion;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 
 public interface QuizQuestionRepository extends JpaRepository<QuizQuestion, Long> {
 
     List<QuizQuestion> findByLessonOrderByOrderIndexAsc(Lesson lesson);
     long countByLesson(Lesson lesson);
+
+    /**
+     * Số câu hỏi của từng quiz lesson trong course: [lessonID, COUNT]
+     */
+    @Query("""
+        SELECT q.lesson.lessonID, COUNT(q)
+        FROM QuizQuestion q
+        WHERE q.lesson.section.course.courseID = :courseId
+        GROUP BY q.lesson.lessonID
+    """)
+    List<Object[]> countByCourseGroupByLesson(@Param("courseId") Long courseId);
+
+    /**
+     * Câu hỏi + option của 1 quiz trong 1 query (chấm điểm không phải load option theo từng câu)
+     */
+    @Query("""
+        SELECT DISTINCT q FROM QuizQuestion q
+        LEFT JOIN FETCH q.options
+        WHERE q.lesson = :lesson
+        ORDER BY q.orderIndex ASC
+    """)
+    List<QuizQuestion> findWithOptionsByLesson(@Param("lesson") Lesson lesson);
+
+    /**
+     * Câu hỏi + option của nhiều quiz lesson trong 1 query (clone course sang draft)
+     */
+    @Query("""
+        SELECT DISTINCT q FROM QuizQuestion q
+        LEFT JOIN FETCH q.options
+        WHERE q.lesson.lessonID IN :lessonIds
+    """)
+    List<QuizQuestion> findWithOptionsByLessonIdIn(@Param("lessonIds") Collection<Long> lessonIds);
 }
@@ -5,6 +5,7 @@ import edu.lms.enums.RefundStatus;
 import edu.lms.enums.RefundType;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
@@ -37,4 +38,14 @@ public interface RefundRequestRepository extends JpaRepository<RefundRequest, Lo
     );
     boolean existsBySlotIdAndStatusIn(Long slotId, java.util.Collection<RefundStatus> statuses);
     List<RefundRequest> findBySlotIdAndRefundType(Long slotId, RefundType refundType);
+
+    // Slot nào trong danh sách đã có refund ở các status cho trước (1 query thay vì exists từng slot)
+    @Query("""
+       SELECT DISTINCT r.slotId
+       FROM RefundRequest r
+       WHERE r.slotId IN :slotIds
+         AND r.status IN :statuses
+       """)
+    List<Long> findSlotIdsWithRefund(@Param("slotIds") java.util.Collection<Long> slotIds,
+                                     @Param("statuses") java.util.Collection<RefundStatus> statuses);
 }
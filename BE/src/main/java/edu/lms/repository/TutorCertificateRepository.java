@@ -0,0 +1,20 @@
+package edu.lms.repository;
+
+import edu.lms.entity.TutorCertificate;
+import edu.lms.enums.TutorVerificationStatus;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+
+import java.util.List;
+
+public interface TutorCertificateRepository extends JpaRepository<TutorCertificate, Long> {
+
+    // Chứng chỉ thuộc các verification của tutor theo status (1 query, không load verification)
+    @Query("""
+        SELECT c FROM TutorCertificate c
+        WHERE c.tutorVerification.tutor.tutorID = :tutorId
+          AND c.tutorVerification.status = :status
+        ORDER BY c.tutorVerification.submittedAt DESC, c.certificateId ASC
+    """)
+    List<TutorCertificate> findByTutorIdAndVerificationStatus(Long tutorId, TutorVerificationStatus status);
+}
@@ -0,0 +1,49 @@
+package edu.lms.repository;
+
+import edu.lms.entity.TutorDirectoryEntry;
+import edu.lms.enums.TutorStatus;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+public interface TutorDirectoryRepository extends JpaRepository<TutorDirectoryEntry, Long> {
+
+    List<TutorDirectoryEntry> findAllByOrderByTutorIdAsc();
+
+    List<TutorDirectoryEntry> findAllByStatusOrderByTutorIdAsc(TutorStatus status);
+
+    Optional<TutorDirectoryEntry> findByUserId(Long userId);
+
+    /**
+     * Tìm tutor theo filter, mọi tham số null = bỏ qua filter đó.
+     * Sort / phân trang do Pageable quyết định.
+     */
+    @Query("""
+        SELECT d FROM TutorDirectoryEntry d
+        WHERE d.status = :status
+          AND (:language IS NULL OR d.teachingLanguage = :language)
+          AND (:country IS NULL OR d.country = :country)
+          AND (:minPrice IS NULL OR d.minPricePerHour >= :minPrice)
+          AND (:maxPrice IS NULL OR d.minPricePerHour <= :maxPrice)
+          AND (:minRating IS NULL OR d.bookingRating >= :minRating)
+    """)
+    Page<TutorDirectoryEntry> search(@Param("status") TutorStatus status,
+                                     @Param("language") String language,
+                                     @Param("country") String country,
+                                     @Param("minPrice") Double minPrice,
+                                     @Param("maxPrice") Double maxPrice,
+                                     @Param("minRating") BigDecimal minRating,
+                                     Pageable pageable);
+
+    @Modifying
+    @Query("DELETE FROM TutorDirectoryEntry d WHERE d.tutorId NOT IN :tutorIds")
+    int deleteAllByTutorIdNotIn(@Param("tutorIds") Collection<Long> tutorIds);
+}
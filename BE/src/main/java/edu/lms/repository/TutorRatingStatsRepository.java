@@ -0,0 +1,41 @@
+package edu.lms.repository;
+
+import edu.lms.entity.TutorRatingStats;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
+import java.util.Optional;
+
+public interface TutorRatingStatsRepository extends JpaRepository<TutorRatingStats, Long> {
+
+    /**
+     * Lock dòng stats của tutor trước khi cộng delta → 2 feedback đồng thời không ghi đè nhau
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT s FROM TutorRatingStats s WHERE s.tutorId = :tutorId")
+    Optional<TutorRatingStats> findByIdForUpdate(@Param("tutorId") Long tutorId);
+
+    /**
+     * Lock toàn bộ dòng stats (theo khoá chính) khi reconcile → delta đồng thời chờ reconcile xong mới cộng
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT s FROM TutorRatingStats s ORDER BY s.tutorId")
+    List<TutorRatingStats> findAllForUpdate();
+
+    /**
+     * Tạo dòng stats rỗng nếu chưa có. 2 transaction cùng tạo thì 1 bên chèn được (trả 1),
+     * bên kia chờ bên đầu commit rồi bị bỏ qua (trả 0) thay vì lỗi trùng khoá chính.
+     */
+    @Modifying
+    @Query(value = """
+        INSERT IGNORE INTO tutor_rating_stats
+            (tutor_id, rating_sum, rating_count, one_star, two_star, three_star, four_star, five_star, updated_at)
+        VALUES (:tutorId, 0, 0, 0, 0, 0, 0, 0, NOW())
+        """, nativeQuery = true)
+    int insertIfAbsent(@Param("tutorId") Long tutorId);
+}
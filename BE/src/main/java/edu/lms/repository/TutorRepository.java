@@ -7,6 +7,7 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -30,6 +31,16 @@ public interface TutorRepository extends JpaRepository<Tutor, Long> {
 
     long countByStatus(TutorStatus status);
 
+    @Query("SELECT t FROM Tutor t JOIN FETCH t.user")
+    List<Tutor> findAllWithUser();
+
+    @Query("SELECT t FROM Tutor t JOIN FETCH t.user WHERE t.tutorID = :tutorId")
+    Optional<Tutor> findByIdWithUser(Long tutorId);
+
+    // Nhiều tutor kèm user trong 1 query (dictionary cho thời khoá biểu)
+    @Query("SELECT t FROM Tutor t JOIN FETCH t.user WHERE t.tutorID IN :tutorIds")
+    List<Tutor> findAllWithUserByTutorIDIn(Collection<Long> tutorIds);
+
     // THÊM MỚI: dùng createdAt của User
     @Query("""
         SELECT t FROM Tutor t
@@ -36,4 +36,13 @@ public interface TutorVerificationRepository extends JpaRepository<TutorVerifica
     // Lấy tất cả verifications của tutor với certificates được fetch (JOIN FETCH)
     @Query("SELECT DISTINCT v FROM TutorVerification v LEFT JOIN FETCH v.certificates WHERE v.tutor = :tutor ORDER BY v.submittedAt DESC")
     List<TutorVerification> findAllByTutorWithCertificates(@Param("tutor") Tutor tutor);
+
+    // Verification mới nhất của từng tutor (1 query cho toàn bộ, dùng khi rebuild directory)
+    @Query("""
+        SELECT v FROM TutorVerification v
+        WHERE v.submittedAt = (
+            SELECT MAX(v2.submittedAt) FROM TutorVerification v2 WHERE v2.tutor = v.tutor
+        )
+    """)
+    List<TutorVerification> findLatestPerTutor();
 }
@@ -0,0 +1,26 @@
+package edu.lms.repository;
+
+import edu.lms.entity.UploadedBlob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+public interface UploadedBlobRepository extends JpaRepository<UploadedBlob, Long> {
+
+    Optional<UploadedBlob> findByContentHashAndResourceType(String contentHash, String resourceType);
+
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("""
+        UPDATE UploadedBlob b
+        SET b.reuseCount = b.reuseCount + 1,
+            b.lastReusedAt = :now
+        WHERE b.blobId = :blobId
+    """)
+    int markReused(@Param("blobId") Long blobId, @Param("now") LocalDateTime now);
+}
@@ -2,6 +2,7 @@ package edu.lms.repository;
 
 import edu.lms.entity.UserCourseSection;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
@@ -22,4 +23,78 @@ public interface UserCourseSectionRepository extends JpaRepository<UserCourseSec
     List<UserCourseSection> findByUser_UserIDAndEnrollment_EnrollmentID(Long userId, Long enrollmentId);
     List<UserCourseSection> findBySection_SectionID(Long sectionId);
 
+    /**
+     * % tiến độ mọi section của 1 learner trong 1 course: [sectionID, progress]
+     */
+    @Query("""
+        SELECT ucs.section.sectionID, ucs.progress
+        FROM UserCourseSection ucs
+        WHERE ucs.user.userID = :userId
+          AND ucs.section.course.courseID = :courseId
+        """)
+    List<Object[]> findSectionProgressRows(@Param("userId") Long userId, @Param("courseId") Long courseId);
+
+    /**
+     * Tiến độ course của 1 enrollment trong 1 query: [tổng số section, số section đã 100%]
+     */
+    @Query("""
+        SELECT COUNT(DISTINCT s.sectionID),
+               COUNT(DISTINCT ucs.section.sectionID)
+        FROM CourseSection s
+        LEFT JOIN UserCourseSection ucs ON ucs.section = s
+             AND ucs.enrollment.enrollmentID = :enrollmentId
+             AND ucs.progress >= 100
+        WHERE s.course.courseID = :courseId
+        """)
+    List<Object[]> countCourseProgress(@Param("enrollmentId") Long enrollmentId, @Param("courseId") Long courseId);
+
+    /**
+     * Cộng delta vào bộ đếm lesson đã DONE (kẹp trong [0, total]) và tính lại % trong cùng câu UPDATE.
+     * progress đứng trước và tự tính lại giá trị mới từ completed_lessons cũ, không dựa vào thứ tự gán SET
+     * (MySQL gán từ trái sang phải, chuẩn SQL dùng giá trị cũ cho mọi vế phải) → đổi thứ tự 2 cột là sai.
+     * 0 dòng = chưa có bản ghi hoặc bộ đếm chưa khởi tạo (null).
+     */
+    @Modifying
+    @Query(value = """
+        UPDATE user_course_section
+        SET progress = CASE WHEN :total = 0 THEN 0
+                            ELSE LEAST(GREATEST(completed_lessons + :delta, 0), :total) * 100 / :total END,
+            completed_lessons = LEAST(GREATEST(completed_lessons + :delta, 0), :total)
+        WHERE userid = :userId
+          AND sectionid = :sectionId
+          AND completed_lessons IS NOT NULL
+        """, nativeQuery = true)
+    int applyCompletedDelta(@Param("userId") Long userId,
+                            @Param("sectionId") Long sectionId,
+                            @Param("delta") int delta,
+                            @Param("total") long total);
+
+    /**
+     * Đếm lại bộ đếm + % cho mọi learner của course trong 1 câu UPDATE (sau khi curriculum thay đổi)
+     */
+    @Modifying
+    @Query(value = """
+        UPDATE user_course_section ucs
+        JOIN course_section s ON s.sectionid = ucs.sectionid
+        LEFT JOIN (
+            SELECT l.sectionid, COUNT(*) AS total
+            FROM lessons l
+            JOIN course_section cs ON cs.sectionid = l.sectionid
+            WHERE cs.courseid = :courseId
+            GROUP BY l.sectionid
+        ) lc ON lc.sectionid = ucs.sectionid
+        LEFT JOIN (
+            SELECT ul.userid, l.sectionid, COUNT(DISTINCT ul.lessonid) AS done
+            FROM user_lesson ul
+            JOIN lessons l ON l.lessonid = ul.lessonid
+            JOIN course_section cs ON cs.sectionid = l.sectionid
+            WHERE cs.courseid = :courseId AND ul.is_done = TRUE
+            GROUP BY ul.userid, l.sectionid
+        ) dc ON dc.userid = ucs.userid AND dc.sectionid = ucs.sectionid
+        SET ucs.completed_lessons = COALESCE(dc.done, 0),
+            ucs.progress = CASE WHEN COALESCE(lc.total, 0) = 0 THEN 0
+                                ELSE COALESCE(dc.done, 0) * 100 / lc.total END
+        WHERE s.courseid = :courseId
+        """, nativeQuery = true)
+    int recalculateCourseProgress(@Param("courseId") Long courseId);
 }
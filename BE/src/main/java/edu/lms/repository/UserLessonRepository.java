@@ -10,7 +10,7 @@ import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
-public interface UserLessonRepository extends JpaRepository<UserLesson, Long> {
+public interface UserLessonRepository extends JpaRepository<UserLesson, Long>, UserLessonRepositoryCustom {
 
     Optional<UserLesson> findByUser_UserIDAndLesson_LessonID(Long userId, Long lessonId);
 
@@ -50,4 +50,28 @@ public interface UserLessonRepository extends JpaRepository<UserLesson, Long> {
             Long sectionId
     );
 
+    /**
+     * Tiến độ 1 section của user trong 1 query: [tổng số lesson, số lesson đã done]
+     */
+    @Query("""
+        SELECT COUNT(DISTINCT l.lessonID),
+               COUNT(DISTINCT CASE WHEN ul.isDone = true THEN l.lessonID END)
+        FROM Lesson l
+        LEFT JOIN UserLesson ul ON ul.lesson = l AND ul.user.userID = :userId
+        WHERE l.section.sectionID = :sectionId
+    """)
+    List<Object[]> countSectionProgress(@Param("userId") Long userId, @Param("sectionId") Long sectionId);
+
+    /**
+     * Trạng thái mọi lesson learner đã mở trong 1 course: [lessonID, isDone, watchedDuration].
+     * Projection để không kéo theo các quan hệ EAGER của UserLesson.
+     */
+    @Query("""
+        SELECT ul.lesson.lessonID, ul.isDone, ul.watchedDuration
+        FROM UserLesson ul
+        WHERE ul.user.userID = :userId
+          AND ul.lesson.section.course.courseID = :courseId
+    """)
+    List<Object[]> findLessonStateRows(@Param("userId") Long userId, @Param("courseId") Long courseId);
+
 }
@@ -0,0 +1,21 @@
+package edu.lms.repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface UserLessonRepositoryCustom {
+
+    /**
+     * Ghi watchedDuration của nhiều UserLesson bằng 1 JDBC batch (heartbeat video đã gom trong bộ nhớ).
+     * Chỉ đụng watched_duration, không đổi isDone / completedAt; giá trị nhỏ hơn giá trị đang có trong DB bị bỏ qua.
+     */
+    void updateWatchedDurations(List<WatchRow> rows);
+
+    /**
+     * Đánh dấu lesson DONE bằng UPDATE có điều kiện (chỉ khi đang chưa done).
+     * Trả về số row đổi cờ → 2 request hoàn thành đồng thời chỉ 1 request nhận được 1.
+     */
+    int markDone(Long userId, Long lessonId, LocalDateTime completedAt);
+
+    record WatchRow(Long userLessonId, Integer watchedDuration) {}
+}
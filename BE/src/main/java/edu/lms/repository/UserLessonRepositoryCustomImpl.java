@@ -0,0 +1,40 @@
+package edu.lms.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@RequiredArgsConstructor
+public class UserLessonRepositoryCustomImpl implements UserLessonRepositoryCustom {
+
+    private static final int BATCH_SIZE = 200;
+    // Chỉ tăng: flush trễ / flush lại sau lỗi không ghi đè giá trị lớn hơn đã có trong DB
+    private static final String UPDATE_SQL = """
+            UPDATE user_lesson SET watched_duration = ?
+            WHERE user_lessonid = ? AND (watched_duration IS NULL OR watched_duration < ?)""";
+    private static final String MARK_DONE_SQL = """
+            UPDATE user_lesson SET is_done = TRUE, completed_at = ?
+            WHERE userid = ? AND lessonid = ? AND (is_done = FALSE OR is_done IS NULL)""";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public void updateWatchedDurations(List<WatchRow> rows) {
+        if (rows == null || rows.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(UPDATE_SQL, rows, BATCH_SIZE, (ps, row) -> {
+            ps.setInt(1, row.watchedDuration());
+            ps.setLong(2, row.userLessonId());
+            ps.setInt(3, row.watchedDuration());
+        });
+    }
+
+    @Override
+    public int markDone(Long userId, Long lessonId, LocalDateTime completedAt) {
+        return jdbcTemplate.update(MARK_DONE_SQL, Timestamp.valueOf(completedAt), userId, lessonId);
+    }
+}
@@ -2,7 +2,10 @@ package edu.lms.repository;
 
 import edu.lms.entity.UserQuizResult;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.List;
 import java.util.Optional;
 
 public interface UserQuizResultRepository extends JpaRepository<UserQuizResult, Long> {
@@ -12,4 +15,21 @@ public interface UserQuizResultRepository extends JpaRepository<UserQuizResult,
             Long lessonId
     );
 
+    /**
+     * Kết quả lần nộp gần nhất của learner cho từng quiz lesson trong course:
+     * [lessonID, correctQuestions, percentage, passed]. Trùng submittedAt thì id lớn hơn đứng trước.
+     */
+    @Query("""
+        SELECT r.lesson.lessonID, r.correctQuestions, r.percentage, r.passed
+        FROM UserQuizResult r
+        WHERE r.user.userID = :userId
+          AND r.lesson.section.course.courseID = :courseId
+          AND r.submittedAt = (
+              SELECT MAX(r2.submittedAt) FROM UserQuizResult r2
+              WHERE r2.user = r.user AND r2.lesson = r.lesson
+          )
+        ORDER BY r.id DESC
+    """)
+    List<Object[]> findLatestResultRows(@Param("userId") Long userId, @Param("courseId") Long courseId);
+
 }
@@ -2,9 +2,11 @@ package edu.lms.repository;
 
 import edu.lms.entity.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -26,4 +28,8 @@ public interface UserRepository extends JpaRepository<User, Long> {
 
     // mới: dùng cho Recent Users
     List<User> findTop5ByOrderByCreatedAtDesc();
+
+    // Nhiều user kèm role trong 1 query (role EAGER sẽ bắn thêm query nếu dùng findAllById)
+    @Query("SELECT u FROM User u LEFT JOIN FETCH u.role WHERE u.userID IN :userIds")
+    List<User> findAllWithRoleByUserIDIn(Collection<Long> userIds);
 }
@@ -18,7 +18,6 @@ import org.springframework.transaction.annotation.Transactional;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.*;
-import java.util.stream.Collectors;
 
 import static lombok.AccessLevel.PRIVATE;
 
@@ -28,25 +27,27 @@ import static lombok.AccessLevel.PRIVATE;
 public class AdminCourseService {
 
     CourseRepository courseRepository;
-    CourseObjectiveRepository courseObjectiveRepository;
-    CourseObjectiveDraftRepository courseObjectiveDraftRepository;
     CourseDraftRepository courseDraftRepository;
-    CourseSectionRepository courseSectionRepository;
-    LessonRepository lessonRepository;
-    LessonResourceRepository lessonResourceRepository;
-    UserLessonRepository userLessonRepository;
-    UserCourseSectionRepository userCourseSectionRepository;
     EnrollmentRepository enrollmentRepository;
     EmailService emailService;
+    EmailOutboxService emailOutboxService;
     NotificationService notificationService;
+    TutorProfileService tutorProfileService;
 
     QuizQuestionRepository quizQuestionRepository;
-    QuizOptionRepository quizOptionRepository;
     QuizQuestionDraftRepository quizQuestionDraftRepository;
-    QuizOptionDraftRepository quizOptionDraftRepository;
+    CourseProgressService courseProgressService;
+    CourseDraftMergeService courseDraftMergeService;
 
     CourseReviewRepository courseReviewRepository;
 
+    // Course Approved hiển thị trên trang chi tiết tutor
+    private void evictTutorProfile(Course course) {
+        if (course.getTutor() != null) {
+            tutorProfileService.evict(course.getTutor().getTutorID());
+        }
+    }
+
     // ====================== MAPPER CHO COURSE LIVE ======================
 
     private AdminCourseResponse toAdmin(Course c) {
@@ -481,6 +482,7 @@ public class AdminCourseService {
         course.setUpdatedAt(LocalDateTime.now());
 
         courseRepository.save(course);
+        evictTutorProfile(course);
 
         // gửi email + notification cho tutor
         notifyTutorCourseApproved(course, note);
@@ -522,11 +524,9 @@ public class AdminCourseService {
 
         Course course = draft.getCourse();
 
-        //  build diff để gửi mail / notification cho learner
-        AdminCourseDraftChangesResponse changes = buildDraftChanges(course, draft);
-
-        //  1. Tìm các lesson cần reset progress (VIDEO / READING / QUIZ)
-        List<Long> lessonIdsNeedReset = findLessonIdsNeedResetProgress(course, draft);
+        //  1. Diff: đọc cây live + cây draft 1 lần, cùng change set dùng cho thông báo và để apply
+        CourseDraftDiff diff = courseDraftMergeService.diff(course, draft);
+        AdminCourseDraftChangesResponse changes = diff.toResponse();
 
         //  2. Update metadata từ draft → course live
         course.setTitle(draft.getTitle());
@@ -543,25 +543,15 @@ public class AdminCourseService {
         course.setUpdatedAt(LocalDateTime.now());
 
         courseRepository.save(course);
+        evictTutorProfile(course);
 
-        //  3. Sync curriculum (Section / Lesson / Resource / Quiz)
-        syncCurriculumFromDraft(course, draft);
-
-        //  4. Sync objectives
-        syncObjectivesFromDraft(course, draft);
-
-        //  5. Xóa progress của các lesson bị ảnh hưởng (UserLesson)
-        if (!lessonIdsNeedReset.isEmpty()) {
-            userLessonRepository.deleteByLesson_LessonIDIn(lessonIdsNeedReset);
-        }
+        //  3. Apply curriculum + objectives theo lô (insert / update / delete, reset progress), xoá draft
+        courseDraftMergeService.apply(course, draft, diff);
 
-        //  5.1. Recalculate lại tiến độ học tập sau khi curriculum thay đổi
+        //  4. Recalculate lại tiến độ học tập sau khi curriculum thay đổi
         recalculateProgressAfterCurriculumChanged(course);
 
-        //  6. Xóa draft sau khi merge
-        courseDraftRepository.delete(draft);
-
-        //  7. Gửi email + notification cho learner & tutor
+        //  5. Notification cho learner & tutor (email gửi sau khi commit)
         notifyLearnersCourseUpdated(course, changes);
         notifyTutorCourseDraftApproved(draft, changes);
 
@@ -590,865 +580,14 @@ public class AdminCourseService {
         rejectCourseDraft(draftID, null);
     }
 
-    // ====================== SYNC QUIZ TỪ DRAFT → LIVE ======================
-
-    /**
-     * Kiểm tra quiz (question + option) có thay đổi hay không.
-     * Chỉ dùng khi cả live & draft đều là QUIZ.
-     */
-    private boolean isQuizContentChanged(Lesson live, LessonDraft draft) {
-        if (live.getLessonType() != LessonType.Quiz || draft.getLessonType() != LessonType.Quiz) {
-            return false;
-        }
-
-        List<QuizQuestion> liveQuestions =
-                quizQuestionRepository.findByLessonOrderByOrderIndexAsc(live);
-        List<QuizQuestionDraft> draftQuestions =
-                quizQuestionDraftRepository.findByLessonDraftOrderByOrderIndexAsc(draft);
-
-        if (liveQuestions.size() != draftQuestions.size()) {
-            return true;
-        }
-
-        for (int i = 0; i < liveQuestions.size(); i++) {
-            QuizQuestion q = liveQuestions.get(i);
-            QuizQuestionDraft dq = draftQuestions.get(i);
-
-            if (!Objects.equals(q.getQuestionText(), dq.getQuestionText())
-                    || !Objects.equals(q.getScore(), dq.getScore())
-                    || !Objects.equals(q.getOrderIndex(), dq.getOrderIndex())) {
-                return true;
-            }
-
-            List<QuizOption> liveOptions =
-                    q.getOptions() == null ? List.of() : q.getOptions();
-            List<QuizOptionDraft> draftOptions =
-                    dq.getOptions() == null ? List.of() : dq.getOptions();
-
-            if (liveOptions.size() != draftOptions.size()) {
-                return true;
-            }
-
-            for (int j = 0; j < liveOptions.size(); j++) {
-                QuizOption o = liveOptions.get(j);
-                QuizOptionDraft od = draftOptions.get(j);
-
-                if (!Objects.equals(o.getOptionText(), od.getOptionText())
-                        || !Objects.equals(o.getIsCorrect(), od.getIsCorrect())
-                        || !Objects.equals(o.getOrderIndex(), od.getOrderIndex())) {
-                    return true;
-                }
-            }
-        }
-
-        return false;
-    }
-
-    private void createQuizFromDraft(Lesson liveLesson, LessonDraft draftLesson) {
-        List<QuizQuestionDraft> draftQuestions =
-                quizQuestionDraftRepository.findByLessonDraftOrderByOrderIndexAsc(draftLesson);
-
-        for (QuizQuestionDraft qd : draftQuestions) {
-            QuizQuestion q = QuizQuestion.builder()
-                    .lesson(liveLesson)
-                    .questionText(qd.getQuestionText())
-                    .orderIndex(qd.getOrderIndex())
-                    .explanation(qd.getExplanation())
-                    .score(qd.getScore())
-                    .build();
-            quizQuestionRepository.save(q);
-
-            List<QuizOptionDraft> draftOptions =
-                    qd.getOptions() == null ? List.of() : qd.getOptions();
-
-            for (QuizOptionDraft od : draftOptions) {
-                QuizOption o = QuizOption.builder()
-                        .question(q)
-                        .optionText(od.getOptionText())
-                        .isCorrect(od.getIsCorrect())
-                        .orderIndex(od.getOrderIndex())
-                        .build();
-                quizOptionRepository.save(o);
-            }
-        }
-    }
-
-    /**
-     * Đồng bộ quiz (question + option) cho 1 lesson live từ lesson draft tương ứng.
-     * Rule:
-     *  - Nếu draft không phải QUIZ:
-     *      + Nếu live đang là QUIZ -> xóa toàn bộ quiz cũ.
-     *      + Nếu live không phải QUIZ -> không làm gì.
-     *  - Nếu draft là QUIZ:
-     *      + Nếu live cũng là QUIZ và nội dung không đổi -> giữ nguyên (không xóa, không reset).
-     *      + Ngược lại -> xóa quiz cũ, tạo mới từ draft.
-     */
-    private void syncQuizFromDraft(Lesson liveLesson, LessonDraft draftLesson) {
-        LessonType liveType = liveLesson.getLessonType();
-        LessonType draftType = draftLesson.getLessonType();
-
-        // Draft không phải quiz
-        if (draftType == null || draftType != LessonType.Quiz) {
-            if (liveType == LessonType.Quiz) {
-                List<QuizQuestion> liveQuestions =
-                        quizQuestionRepository.findByLessonOrderByOrderIndexAsc(liveLesson);
-                if (!liveQuestions.isEmpty()) {
-                    // dùng deleteAll (không dùng deleteAllInBatch) để cascade xóa option
-                    quizQuestionRepository.deleteAll(liveQuestions);
-                }
-            }
-            return;
-        }
-
-        // Draft là quiz
-        if (liveType == LessonType.Quiz && !isQuizContentChanged(liveLesson, draftLesson)) {
-            // Quiz không đổi -> không đụng tới question/option
-            return;
-        }
-
-        // Cần recreate quiz: xóa quiz cũ (nếu có) rồi tạo lại
-        List<QuizQuestion> liveQuestions =
-                quizQuestionRepository.findByLessonOrderByOrderIndexAsc(liveLesson);
-        if (!liveQuestions.isEmpty()) {
-            quizQuestionRepository.deleteAll(liveQuestions);
-        }
-
-        createQuizFromDraft(liveLesson, draftLesson);
-    }
-
-    // ====================== SYNC CURRICULUM ======================
-
-    private void syncCurriculumFromDraft(Course course, CourseDraft draft) {
-
-        // ------- LOAD LIVE DATA -------
-        List<CourseSection> liveSections =
-                courseSectionRepository.findByCourse_CourseID(course.getCourseID());
-        Map<Long, CourseSection> liveSectionMap = liveSections.stream()
-                .collect(Collectors.toMap(CourseSection::getSectionID, s -> s));
-
-        List<Long> sectionIds = liveSections.stream()
-                .map(CourseSection::getSectionID)
-                .toList();
-        List<Lesson> liveLessons = sectionIds.isEmpty()
-                ? List.of()
-                : lessonRepository.findBySection_SectionIDIn(sectionIds);
-        Map<Long, Lesson> liveLessonMap = liveLessons.stream()
-                .collect(Collectors.toMap(Lesson::getLessonID, l -> l));
-
-        List<Long> lessonIds = liveLessons.stream()
-                .map(Lesson::getLessonID)
-                .toList();
-        List<LessonResource> liveResources = lessonIds.isEmpty()
-                ? List.of()
-                : lessonResourceRepository.findByLesson_LessonIDIn(lessonIds);
-        Map<Long, LessonResource> liveResourceMap = liveResources.stream()
-                .collect(Collectors.toMap(LessonResource::getResourceID, r -> r));
-
-        // ------- APPLY DRAFT -------
-        if (draft.getSections() != null) {
-            for (CourseSectionDraft sd : draft.getSections()) {
-
-                CourseSection liveSection;
-
-                // 1. SECTION: update hoặc create
-                if (sd.getOriginalSectionID() != null
-                        && liveSectionMap.containsKey(sd.getOriginalSectionID())) {
-
-                    // Update section cũ
-                    liveSection = liveSectionMap.get(sd.getOriginalSectionID());
-                    liveSection.setTitle(sd.getTitle());
-                    liveSection.setDescription(sd.getDescription());
-                    liveSection.setOrderIndex(sd.getOrderIndex());
-
-                    // Đã xử lý section này -> remove khỏi map để lát nữa không xóa
-                    liveSectionMap.remove(sd.getOriginalSectionID());
-                } else {
-                    // Section mới
-                    liveSection = CourseSection.builder()
-                            .course(course)
-                            .title(sd.getTitle())
-                            .description(sd.getDescription())
-                            .orderIndex(sd.getOrderIndex())
-                            .build();
-                    courseSectionRepository.save(liveSection);
-                }
-
-                // 2. LESSONS trong section này
-                if (sd.getLessons() != null) {
-                    // Lấy các lesson live thuộc section này
-                    Map<Long, Lesson> lessonsOfSection = liveLessonMap.entrySet().stream()
-                            .filter(e -> e.getValue().getSection().getSectionID()
-                                    .equals(liveSection.getSectionID()))
-                            .collect(Collectors.toMap(
-                                    Map.Entry::getKey,
-                                    Map.Entry::getValue
-                            ));
-
-                    for (LessonDraft ld : sd.getLessons()) {
-                        Lesson liveLesson;
-
-                        if (ld.getOriginalLessonID() != null
-                                && lessonsOfSection.containsKey(ld.getOriginalLessonID())) {
-
-                            // Update lesson cũ
-                            liveLesson = lessonsOfSection.get(ld.getOriginalLessonID());
-                            liveLesson.setTitle(ld.getTitle());
-                            liveLesson.setDuration(ld.getDuration());
-                            liveLesson.setLessonType(ld.getLessonType());
-                            liveLesson.setVideoURL(ld.getVideoURL());
-                            liveLesson.setContent(ld.getContent());
-                            liveLesson.setOrderIndex(ld.getOrderIndex());
-
-                            // Đánh dấu đã dùng
-                            lessonsOfSection.remove(ld.getOriginalLessonID());
-                            liveLessonMap.remove(ld.getOriginalLessonID());
-                        } else {
-                            // Lesson mới
-                            liveLesson = Lesson.builder()
-                                    .section(liveSection)
-                                    .title(ld.getTitle())
-                                    .duration(ld.getDuration())
-                                    .lessonType(ld.getLessonType())
-                                    .videoURL(ld.getVideoURL())
-                                    .content(ld.getContent())
-                                    .orderIndex(ld.getOrderIndex())
-                                    .createdAt(LocalDateTime.now())
-                                    .build();
-                            lessonRepository.save(liveLesson);
-                        }
-
-                        // 3. RESOURCES trong lesson
-                        if (ld.getResources() != null) {
-
-                            Map<Long, LessonResource> resourcesOfLesson = liveResourceMap.entrySet().stream()
-                                    .filter(e -> e.getValue().getLesson().getLessonID()
-                                            .equals(liveLesson.getLessonID()))
-                                    .collect(Collectors.toMap(
-                                            Map.Entry::getKey,
-                                            Map.Entry::getValue
-                                    ));
-
-                            for (LessonResourceDraft rd : ld.getResources()) {
-                                if (rd.getOriginalResourceID() != null
-                                        && resourcesOfLesson.containsKey(rd.getOriginalResourceID())) {
-
-                                    // Update resource cũ
-                                    LessonResource res = resourcesOfLesson.get(rd.getOriginalResourceID());
-                                    res.setResourceType(rd.getResourceType());
-                                    res.setResourceTitle(rd.getResourceTitle());
-                                    res.setResourceURL(rd.getResourceURL());
-
-                                    resourcesOfLesson.remove(rd.getOriginalResourceID());
-                                    liveResourceMap.remove(rd.getOriginalResourceID());
-                                } else {
-                                    // Resource mới
-                                    LessonResource res = LessonResource.builder()
-                                            .lesson(liveLesson)
-                                            .resourceType(rd.getResourceType())
-                                            .resourceTitle(rd.getResourceTitle())
-                                            .resourceURL(rd.getResourceURL())
-                                            .uploadedAt(LocalDateTime.now())
-                                            .build();
-                                    lessonResourceRepository.save(res);
-                                }
-                            }
-
-                            // Resource còn dư (không còn trong draft) -> xóa
-                            if (!resourcesOfLesson.isEmpty()) {
-                                lessonResourceRepository.deleteAllInBatch(resourcesOfLesson.values());
-                            }
-                        }
-
-                        // 4. SYNC QUIZ (nếu lesson là QUIZ hoặc đổi type)
-                        syncQuizFromDraft(liveLesson, ld);
-                    }
-
-                    // ====== LESSON CÒN DƯ TRONG SECTION (KHÔNG CÒN TRONG DRAFT) ======
-                    if (!lessonsOfSection.isEmpty()) {
-
-                        // Lấy list lessonId bị xóa
-                        List<Long> removedLessonIds = lessonsOfSection.values().stream()
-                                .map(Lesson::getLessonID)
-                                .toList();
-
-                        // 1) Xóa tiến trình học UserLesson của các lesson này
-                        if (!removedLessonIds.isEmpty()) {
-                            userLessonRepository.deleteByLesson_LessonIDIn(removedLessonIds);
-                        }
-
-                        // 2) Xóa resource của các lesson này
-                        List<LessonResource> resLeft = liveResources.stream()
-                                .filter(r -> removedLessonIds.contains(r.getLesson().getLessonID()))
-                                .toList();
-                        if (!resLeft.isEmpty()) {
-                            lessonResourceRepository.deleteAllInBatch(resLeft);
-                        }
-
-                        // Quiz của lesson này cũng sẽ bị xóa theo cascade khi xóa lesson
-                        // 3) Xóa lesson
-                        lessonRepository.deleteAllInBatch(lessonsOfSection.values());
-                    }
-                }
-            }
-        }
-
-        // ====== SECTION CÒN DƯ (KHÔNG CÒN DRAFT THAM CHIẾU) ======
-        if (!liveSectionMap.isEmpty()) {
-
-            // Lấy list sectionId bị xóa
-            List<Long> removedSectionIds = liveSectionMap.values().stream()
-                    .map(CourseSection::getSectionID)
-                    .toList();
-
-            // 1) Xóa UserCourseSection cho những section này
-            if (!removedSectionIds.isEmpty()) {
-                userCourseSectionRepository.deleteBySection_SectionIDIn(removedSectionIds);
-            }
-
-            // 2) Với mỗi section còn dư => xóa lesson + resource + UserLesson
-            for (CourseSection s : liveSectionMap.values()) {
-
-                List<Lesson> ls = lessonRepository.findBySection_SectionIDIn(
-                        List.of(s.getSectionID()));
-
-                if (!ls.isEmpty()) {
-                    List<Long> lIds = ls.stream().map(Lesson::getLessonID).toList();
-
-                    // 2.1) Xóa UserLesson của các lesson này
-                    if (!lIds.isEmpty()) {
-                        userLessonRepository.deleteByLesson_LessonIDIn(lIds);
-                    }
-
-                    // 2.2) Xóa resources
-                    List<LessonResource> rs = lIds.isEmpty()
-                            ? List.of()
-                            : lessonResourceRepository.findByLesson_LessonIDIn(lIds);
-                    if (!rs.isEmpty()) {
-                        lessonResourceRepository.deleteAllInBatch(rs);
-                    }
-
-                    // Quiz cũng bị xóa theo cascade khi xóa lesson
-                    // 2.3) Xóa lesson
-                    lessonRepository.deleteAllInBatch(ls);
-                }
-            }
-
-            // 3) Cuối cùng xóa section
-            courseSectionRepository.deleteAllInBatch(liveSectionMap.values());
-        }
-    }
-
-    // ====================== SYNC OBJECTIVES ======================
-
-    private void syncObjectivesFromDraft(Course course, CourseDraft draft) {
-
-        List<CourseObjective> liveObjectives =
-                courseObjectiveRepository.findByCourse_CourseIDOrderByOrderIndexAsc(course.getCourseID());
-        Map<Long, CourseObjective> liveObjectiveMap = liveObjectives.stream()
-                .collect(Collectors.toMap(CourseObjective::getObjectiveID, o -> o));
-
-        if (draft.getObjectives() != null) {
-            for (CourseObjectiveDraft od : draft.getObjectives()) {
-                if (od.getOriginalObjectiveID() != null
-                        && liveObjectiveMap.containsKey(od.getOriginalObjectiveID())) {
-
-                    CourseObjective o = liveObjectiveMap.get(od.getOriginalObjectiveID());
-                    o.setObjectiveText(od.getObjectiveText());
-                    o.setOrderIndex(od.getOrderIndex());
-
-                    liveObjectiveMap.remove(od.getOriginalObjectiveID());
-                } else {
-
-                    CourseObjective o = CourseObjective.builder()
-                            .course(course)
-                            .objectiveText(od.getObjectiveText())
-                            .orderIndex(od.getOrderIndex())
-                            .build();
-                    courseObjectiveRepository.save(o);
-                }
-            }
-        }
-
-        if (!liveObjectiveMap.isEmpty()) {
-            courseObjectiveRepository.deleteAllInBatch(liveObjectiveMap.values());
-        }
-    }
-
-    // ====================== DIFF HELPERS ======================
-
-    // helper so sánh field
-    private void compareField(List<FieldChangeResponse> list, String field, String oldVal, String newVal) {
-        if (!Objects.equals(oldVal, newVal)) {
-            list.add(FieldChangeResponse.builder()
-                    .field(field)
-                    .oldValue(oldVal)
-                    .newValue(newVal)
-                    .build());
-        }
-    }
-
-    private List<FieldChangeResponse> buildCourseFieldChanges(Course course, CourseDraft draft) {
-        List<FieldChangeResponse> changes = new ArrayList<>();
-
-        compareField(changes, "title", course.getTitle(), draft.getTitle());
-        compareField(changes, "shortDescription", course.getShortDescription(), draft.getShortDescription());
-        compareField(changes, "description", course.getDescription(), draft.getDescription());
-        compareField(changes, "requirement", course.getRequirement(), draft.getRequirement());
-        compareField(changes, "level",
-                course.getLevel() != null ? course.getLevel().name() : null,
-                draft.getLevel() != null ? draft.getLevel().name() : null);
-        compareField(changes, "duration",
-                course.getDuration() != null ? course.getDuration().toString() : null,
-                draft.getDuration() != null ? draft.getDuration().toString() : null);
-        compareField(changes, "price",
-                course.getPrice() != null ? course.getPrice().toPlainString() : null,
-                draft.getPrice() != null ? draft.getPrice().toPlainString() : null);
-        compareField(changes, "language", course.getLanguage(), draft.getLanguage());
-        compareField(changes, "thumbnailURL", course.getThumbnailURL(), draft.getThumbnailURL());
-        compareField(changes, "category",
-                course.getCategory() != null ? course.getCategory().getName() : null,
-                draft.getCategory() != null ? draft.getCategory().getName() : null);
-
-        return changes;
-    }
-
-    private List<ObjectiveChangeResponse> buildObjectiveChanges(Course course, CourseDraft draft) {
-        List<ObjectiveChangeResponse> result = new ArrayList<>();
-
-        List<CourseObjective> liveObjectives =
-                courseObjectiveRepository.findByCourse_CourseIDOrderByOrderIndexAsc(course.getCourseID());
-        Map<Long, CourseObjective> liveMap = liveObjectives.stream()
-                .collect(Collectors.toMap(CourseObjective::getObjectiveID, o -> o));
-
-        if (draft.getObjectives() != null) {
-            for (CourseObjectiveDraft od : draft.getObjectives()) {
-                if (od.getOriginalObjectiveID() != null && liveMap.containsKey(od.getOriginalObjectiveID())) {
-                    CourseObjective live = liveMap.get(od.getOriginalObjectiveID());
-                    List<FieldChangeResponse> fields = new ArrayList<>();
-                    compareField(fields, "objectiveText", live.getObjectiveText(), od.getObjectiveText());
-                    compareField(fields, "orderIndex",
-                            live.getOrderIndex() != null ? live.getOrderIndex().toString() : null,
-                            od.getOrderIndex() != null ? od.getOrderIndex().toString() : null);
-
-                    if (!fields.isEmpty()) {
-                        result.add(ObjectiveChangeResponse.builder()
-                                .originalObjectiveId(live.getObjectiveID())
-                                .draftObjectiveId(od.getObjectiveDraftID())
-                                .changeType("UPDATED")
-                                .fieldChanges(fields)
-                                .build());
-                    }
-
-                    liveMap.remove(od.getOriginalObjectiveID());
-                } else {
-                    // objective mới
-                    List<FieldChangeResponse> fields = List.of(
-                            FieldChangeResponse.builder()
-                                    .field("objectiveText")
-                                    .oldValue(null)
-                                    .newValue(od.getObjectiveText())
-                                    .build()
-                    );
-                    result.add(ObjectiveChangeResponse.builder()
-                            .originalObjectiveId(null)
-                            .draftObjectiveId(od.getObjectiveDraftID())
-                            .changeType("ADDED")
-                            .fieldChanges(fields)
-                            .build());
-                }
-            }
-        }
-
-        // objective bị xóa
-        for (CourseObjective o : liveMap.values()) {
-            List<FieldChangeResponse> fields = List.of(
-                    FieldChangeResponse.builder()
-                            .field("objectiveText")
-                            .oldValue(o.getObjectiveText())
-                            .newValue(null)
-                            .build()
-            );
-            result.add(ObjectiveChangeResponse.builder()
-                    .originalObjectiveId(o.getObjectiveID())
-                    .draftObjectiveId(null)
-                    .changeType("DELETED")
-                    .fieldChanges(fields)
-                    .build());
-        }
-
-        return result;
-    }
-
-    private List<SectionChangeResponse> buildSectionChanges(Course course, CourseDraft draft) {
-        List<SectionChangeResponse> result = new ArrayList<>();
-
-        List<CourseSection> liveSections = courseSectionRepository.findByCourse_CourseID(course.getCourseID());
-        Map<Long, CourseSection> liveMap = liveSections.stream()
-                .collect(Collectors.toMap(CourseSection::getSectionID, s -> s));
-
-        if (draft.getSections() != null) {
-            for (CourseSectionDraft sd : draft.getSections()) {
-                if (sd.getOriginalSectionID() != null && liveMap.containsKey(sd.getOriginalSectionID())) {
-                    CourseSection live = liveMap.get(sd.getOriginalSectionID());
-                    List<FieldChangeResponse> fields = new ArrayList<>();
-                    compareField(fields, "title", live.getTitle(), sd.getTitle());
-                    compareField(fields, "description", live.getDescription(), sd.getDescription());
-                    compareField(fields, "orderIndex",
-                            live.getOrderIndex() != null ? live.getOrderIndex().toString() : null,
-                            sd.getOrderIndex() != null ? sd.getOrderIndex().toString() : null);
-
-                    if (!fields.isEmpty()) {
-                        result.add(SectionChangeResponse.builder()
-                                .originalSectionId(live.getSectionID())
-                                .draftSectionId(sd.getSectionDraftID())
-                                .title(sd.getTitle())
-                                .changeType("UPDATED")
-                                .fieldChanges(fields)
-                                .build());
-                    }
-
-                    liveMap.remove(sd.getOriginalSectionID());
-                } else {
-                    // section mới
-                    List<FieldChangeResponse> fields = List.of(
-                            FieldChangeResponse.builder()
-                                    .field("title")
-                                    .oldValue(null)
-                                    .newValue(sd.getTitle())
-                                    .build()
-                    );
-                    result.add(SectionChangeResponse.builder()
-                            .originalSectionId(null)
-                            .draftSectionId(sd.getSectionDraftID())
-                            .title(sd.getTitle())
-                            .changeType("ADDED")
-                            .fieldChanges(fields)
-                            .build());
-                }
-            }
-        }
-
-        // section bị xóa
-        for (CourseSection s : liveMap.values()) {
-            List<FieldChangeResponse> fields = List.of(
-                    FieldChangeResponse.builder()
-                            .field("title")
-                            .oldValue(s.getTitle())
-                            .newValue(null)
-                            .build()
-            );
-            result.add(SectionChangeResponse.builder()
-                    .originalSectionId(s.getSectionID())
-                    .draftSectionId(null)
-                    .title(s.getTitle())
-                    .changeType("DELETED")
-                    .fieldChanges(fields)
-                    .build());
-        }
-
-        return result;
-    }
-
-    // QUAN TRỌNG: thêm QUIZ + xử lý đổi lessonType
-    private boolean isLessonChangeRequireResetProgress(Lesson live, LessonDraft draft) {
-        LessonType liveType = live.getLessonType();
-        LessonType draftType = draft.getLessonType();
-
-        if (liveType == null) return false;
-
-        // Đổi kiểu lesson (Video -> Quiz, Quiz -> Reading, ...) => reset
-        if (draftType != null && liveType != draftType) {
-            return true;
-        }
-
-        return switch (liveType) {
-            case Video -> !Objects.equals(live.getVideoURL(), draft.getVideoURL());
-            case Reading -> !Objects.equals(live.getContent(), draft.getContent());
-            case Quiz -> isQuizContentChanged(live, draft);   // chỉ reset nếu quiz đổi
-            default -> false;
-        };
-    }
-
-    private List<LessonChangeResponse> buildLessonChanges(Course course, CourseDraft draft) {
-        List<LessonChangeResponse> result = new ArrayList<>();
-
-        // Live lessons
-        List<CourseSection> liveSections = courseSectionRepository.findByCourse_CourseID(course.getCourseID());
-        List<Lesson> liveLessons = liveSections.stream()
-                .flatMap(s -> s.getLessons().stream())
-                .toList();
-        Map<Long, Lesson> liveById = liveLessons.stream()
-                .collect(Collectors.toMap(Lesson::getLessonID, l -> l));
-
-        // Draft lessons
-        List<LessonDraft> draftLessons = draft.getSections() == null
-                ? List.of()
-                : draft.getSections().stream()
-                .flatMap(sd -> sd.getLessons().stream())
-                .toList();
-
-        Map<Long, LessonDraft> draftByOriginalId = draftLessons.stream()
-                .filter(ld -> ld.getOriginalLessonID() != null)
-                .collect(Collectors.toMap(LessonDraft::getOriginalLessonID, ld -> ld));
-
-        // Lesson bị xóa
-        for (Lesson live : liveLessons) {
-            if (!draftByOriginalId.containsKey(live.getLessonID())) {
-                result.add(LessonChangeResponse.builder()
-                        .originalLessonId(live.getLessonID())
-                        .draftLessonId(null)
-                        .title(live.getTitle())
-                        .lessonType(live.getLessonType() != null ? live.getLessonType().name() : null)
-                        .changeType("DELETED")
-                        .fieldChanges(List.of())
-                        .resetUserProgressRequired(true)
-                        .build());
-            }
-        }
-
-        // Lesson update
-        for (LessonDraft ld : draftLessons) {
-            if (ld.getOriginalLessonID() != null && liveById.containsKey(ld.getOriginalLessonID())) {
-                Lesson live = liveById.get(ld.getOriginalLessonID());
-                List<FieldChangeResponse> fields = new ArrayList<>();
-                compareField(fields, "title", live.getTitle(), ld.getTitle());
-                compareField(fields, "lessonType",
-                        live.getLessonType() != null ? live.getLessonType().name() : null,
-                        ld.getLessonType() != null ? ld.getLessonType().name() : null);
-                compareField(fields, "duration",
-                        live.getDuration() != null ? live.getDuration().toString() : null,
-                        ld.getDuration() != null ? ld.getDuration().toString() : null);
-                compareField(fields, "videoURL", live.getVideoURL(), ld.getVideoURL());
-                compareField(fields, "content", live.getContent(), ld.getContent());
-                compareField(fields, "orderIndex",
-                        live.getOrderIndex() != null ? live.getOrderIndex().toString() : null,
-                        ld.getOrderIndex() != null ? ld.getOrderIndex().toString() : null);
-
-                boolean reset = isLessonChangeRequireResetProgress(live, ld);
-
-                if (!fields.isEmpty() || reset) {
-                    // nếu reset = true nhưng không có field meta đổi (ví dụ chỉ sửa quiz) vẫn tạo record
-                    result.add(LessonChangeResponse.builder()
-                            .originalLessonId(live.getLessonID())
-                            .draftLessonId(ld.getLessonDraftID())
-                            .title(ld.getTitle())
-                            .lessonType(ld.getLessonType() != null ? ld.getLessonType().name() : null)
-                            .changeType("UPDATED")
-                            .fieldChanges(fields)
-                            .resetUserProgressRequired(reset)
-                            .build());
-                }
-            }
-        }
-
-        // Lesson mới
-        for (LessonDraft ld : draftLessons) {
-            if (ld.getOriginalLessonID() == null) {
-                List<FieldChangeResponse> fields = List.of(
-                        FieldChangeResponse.builder()
-                                .field("NEW_LESSON")
-                                .oldValue(null)
-                                .newValue(ld.getTitle())
-                                .build()
-                );
-                result.add(LessonChangeResponse.builder()
-                        .originalLessonId(null)
-                        .draftLessonId(ld.getLessonDraftID())
-                        .title(ld.getTitle())
-                        .lessonType(ld.getLessonType() != null ? ld.getLessonType().name() : null)
-                        .changeType("ADDED")
-                        .fieldChanges(fields)
-                        .resetUserProgressRequired(false)
-                        .build());
-            }
-        }
-
-        return result;
-    }
-
-    private List<ResourceChangeResponse> buildResourceChanges(Course course, CourseDraft draft) {
-        List<ResourceChangeResponse> result = new ArrayList<>();
-
-        // Live resources
-        List<CourseSection> liveSections = courseSectionRepository.findByCourse_CourseID(course.getCourseID());
-        List<Lesson> liveLessons = liveSections.stream()
-                .flatMap(s -> s.getLessons().stream())
-                .toList();
-        List<Long> lessonIds = liveLessons.stream().map(Lesson::getLessonID).toList();
-        List<LessonResource> liveResources = lessonIds.isEmpty()
-                ? List.of()
-                : lessonResourceRepository.findByLesson_LessonIDIn(lessonIds);
-        Map<Long, LessonResource> liveById = liveResources.stream()
-                .collect(Collectors.toMap(LessonResource::getResourceID, r -> r));
-
-        // Draft resources
-        List<LessonResourceDraft> draftResources = draft.getSections() == null
-                ? List.of()
-                : draft.getSections().stream()
-                .flatMap(sd -> sd.getLessons().stream())
-                .flatMap(ld -> ld.getResources().stream())
-                .toList();
-
-        Map<Long, LessonResourceDraft> draftByOriginalId = draftResources.stream()
-                .filter(rd -> rd.getOriginalResourceID() != null)
-                .collect(Collectors.toMap(LessonResourceDraft::getOriginalResourceID, rd -> rd));
-
-        // Resource bị xóa
-        for (LessonResource live : liveResources) {
-            if (!draftByOriginalId.containsKey(live.getResourceID())) {
-                List<FieldChangeResponse> fields = List.of(
-                        FieldChangeResponse.builder()
-                                .field("resourceTitle")
-                                .oldValue(live.getResourceTitle())
-                                .newValue(null)
-                                .build()
-                );
-                result.add(ResourceChangeResponse.builder()
-                        .originalResourceId(live.getResourceID())
-                        .draftResourceId(null)
-                        .resourceTitle(live.getResourceTitle())
-                        .changeType("DELETED")
-                        .fieldChanges(fields)
-                        .build());
-            }
-        }
-
-        // Resource update
-        for (LessonResourceDraft rd : draftResources) {
-            if (rd.getOriginalResourceID() != null && liveById.containsKey(rd.getOriginalResourceID())) {
-                LessonResource live = liveById.get(rd.getOriginalResourceID());
-                List<FieldChangeResponse> fields = new ArrayList<>();
-                compareField(fields, "resourceTitle", live.getResourceTitle(), rd.getResourceTitle());
-                compareField(fields, "resourceType",
-                        live.getResourceType() != null ? live.getResourceType().name() : null,
-                        rd.getResourceType() != null ? rd.getResourceType().name() : null);
-                compareField(fields, "resourceURL", live.getResourceURL(), rd.getResourceURL());
-
-                if (!fields.isEmpty()) {
-                    result.add(ResourceChangeResponse.builder()
-                            .originalResourceId(live.getResourceID())
-                            .draftResourceId(rd.getResourceDraftID())
-                            .resourceTitle(rd.getResourceTitle())
-                            .changeType("UPDATED")
-                            .fieldChanges(fields)
-                            .build());
-                }
-            }
-        }
-
-        // Resource mới
-        for (LessonResourceDraft rd : draftResources) {
-            if (rd.getOriginalResourceID() == null) {
-                List<FieldChangeResponse> fields = List.of(
-                        FieldChangeResponse.builder()
-                                .field("NEW_RESOURCE")
-                                .oldValue(null)
-                                .newValue(rd.getResourceTitle())
-                                .build()
-                );
-                result.add(ResourceChangeResponse.builder()
-                        .originalResourceId(null)
-                        .draftResourceId(rd.getResourceDraftID())
-                        .resourceTitle(rd.getResourceTitle())
-                        .changeType("ADDED")
-                        .fieldChanges(fields)
-                        .build());
-            }
-        }
-
-        return result;
-    }
-
-    // tìm lesson cần reset progress khi approve draft
-    private List<Long> findLessonIdsNeedResetProgress(Course course, CourseDraft draft) {
-        List<Long> result = new ArrayList<>();
-
-        List<CourseSection> liveSections = courseSectionRepository.findByCourse_CourseID(course.getCourseID());
-        List<Lesson> liveLessons = liveSections.stream()
-                .flatMap(s -> s.getLessons().stream())
-                .toList();
-        Map<Long, Lesson> liveById = liveLessons.stream()
-                .collect(Collectors.toMap(Lesson::getLessonID, l -> l));
-
-        List<LessonDraft> draftLessons = draft.getSections() == null
-                ? List.of()
-                : draft.getSections().stream()
-                .flatMap(sd -> sd.getLessons().stream())
-                .filter(ld -> ld.getOriginalLessonID() != null)
-                .toList();
-
-        for (LessonDraft ld : draftLessons) {
-            Lesson live = liveById.get(ld.getOriginalLessonID());
-            if (live == null) continue;
-            if (isLessonChangeRequireResetProgress(live, ld)) {
-                result.add(live.getLessonID());
-            }
-        }
-
-        return result;
-    }
-
-    // ====================== BUILD DRAFT CHANGES (INTERNAL) ======================
-
-    private AdminCourseDraftChangesResponse buildDraftChanges(Course course, CourseDraft draft) {
-        List<FieldChangeResponse> courseChanges = buildCourseFieldChanges(course, draft);
-        List<ObjectiveChangeResponse> objectiveChanges = buildObjectiveChanges(course, draft);
-        List<SectionChangeResponse> sectionChanges = buildSectionChanges(course, draft);
-        List<LessonChangeResponse> lessonChanges = buildLessonChanges(course, draft);
-        List<ResourceChangeResponse> resourceChanges = buildResourceChanges(course, draft);
-
-        return AdminCourseDraftChangesResponse.builder()
-                .courseId(course.getCourseID())
-                .draftId(draft.getDraftID())
-                .courseChanges(courseChanges)
-                .objectives(objectiveChanges)
-                .sections(sectionChanges)
-                .lessons(lessonChanges)
-                .resources(resourceChanges)
-                .build();
-    }
-
     // ============ RE-CALC PROGRESS SAU KHI CURRICULUM THAY ĐỔI ============
 
     /**
-     * Tính lại progress cho từng section (UserCourseSection.progress - BigDecimal).
+     * Đếm lại completedLessons + progress của mọi learner trong course bằng 1 câu UPDATE
+     * (thay cho vòng lặp từng section × từng learner).
      */
-    private void recalculateSectionProgress(Course course) {
-        Long courseId = course.getCourseID();
-
-        List<CourseSection> sections = courseSectionRepository.findByCourse_CourseID(courseId);
-        for (CourseSection section : sections) {
-            Long sectionId = section.getSectionID();
-            int totalLessonsInSection = section.getLessons() != null
-                    ? section.getLessons().size()
-                    : 0;
-
-            List<UserCourseSection> userSections =
-                    userCourseSectionRepository.findBySection_SectionID(sectionId);
-            if (userSections == null || userSections.isEmpty()) continue;
-
-            for (UserCourseSection ucs : userSections) {
-                if (ucs.getUser() == null || ucs.getUser().getUserID() == null) continue;
-                Long userId = ucs.getUser().getUserID();
-
-                long completedInSection = userLessonRepository
-                        .countByUser_UserIDAndLesson_Section_SectionIDAndIsDoneTrue(
-                                userId,
-                                sectionId
-                        );
-
-                double percent = totalLessonsInSection == 0
-                        ? 0.0
-                        : (completedInSection * 100.0) / totalLessonsInSection;
-
-                ucs.setProgress(BigDecimal.valueOf(percent));
-            }
-        }
-    }
-
     private void recalculateProgressAfterCurriculumChanged(Course course) {
-        // Hiện tại chỉ recalc theo section; nếu sau này thêm progress cho Enrollment thì mở rộng thêm.
-        recalculateSectionProgress(course);
+        courseProgressService.recalculateCourse(course.getCourseID());
     }
 
     // ====================== PUBLIC: GET DIFF ======================
@@ -1458,8 +597,7 @@ public class AdminCourseService {
         CourseDraft draft = courseDraftRepository.findById(draftID)
                 .orElseThrow(() -> new AppException(ErrorCode.DRAFT_NOT_FOUND));
 
-        Course course = draft.getCourse();
-        return buildDraftChanges(course, draft);
+        return courseDraftMergeService.diff(draft.getCourse(), draft).toResponse();
     }
 
     // ====================== EMAIL + NOTIFICATION HELPERS ======================
@@ -1605,23 +743,20 @@ public class AdminCourseService {
             }
         }
 
-        // Email
-        for (String email : emails) {
-            emailService.sendCourseUpdatedToLearner(email, course.getTitle(), summary);
-        }
+        // Email + notification ghi 1 lô trong transaction duyệt draft, email gửi ở background (outbox)
+        emailOutboxService.enqueue(emails.stream()
+                .map(email -> EmailService.courseUpdatedToLearnerMessage(email, course.getTitle(), summary))
+                .toList());
 
-        // Notification
-        for (Long userId : userIds) {
-            notificationService.sendNotification(
-                    userId,
-                    "[LinguaHub] Course updated: " + course.getTitle(),
-                    "The course \"" + course.getTitle()
-                            + "\" that you enrolled in has just been updated.\n\n"
-                            + "Summary of changes:\n" + summary,
-                    NotificationType.COURSE_UPDATED,
-                    "/courses/" + course.getCourseID()
-            );
-        }
+        notificationService.sendNotificationToUsers(
+                userIds,
+                "[LinguaHub] Course updated: " + course.getTitle(),
+                "The course \"" + course.getTitle()
+                        + "\" that you enrolled in has just been updated.\n\n"
+                        + "Summary of changes:\n" + summary,
+                NotificationType.COURSE_UPDATED,
+                "/courses/" + course.getCourseID()
+        );
     }
 
     private void notifyTutorCourseDraftApproved(CourseDraft draft, AdminCourseDraftChangesResponse changes) {
@@ -1634,13 +769,10 @@ public class AdminCourseService {
         // Dùng lại logic build summary đã gửi cho learner
         String summary = buildCourseChangeSummary(changes);
 
-        // Email
+        // Email (outbox, gửi sau khi commit)
         if (email != null && !email.isBlank()) {
-            emailService.sendCourseDraftApprovedToTutor(
-                    email,
-                    draft.getCourse().getTitle(),
-                    summary
-            );
+            emailOutboxService.enqueue(List.of(
+                    EmailService.courseDraftApprovedToTutorMessage(email, draft.getCourse().getTitle(), summary)));
         }
 
         // Notification
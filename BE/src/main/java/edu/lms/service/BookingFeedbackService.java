@@ -32,6 +32,7 @@ public class BookingFeedbackService {
     CourseRepository courseRepository;
     CourseReviewRepository courseReviewRepository;
     TutorRatingService tutorRatingService;
+    TutorProfileService tutorProfileService;
 
     @Transactional
     public BookingFeedbackResponse createFeedback(Long bookingPlanId, BookingFeedbackRequest request) {
@@ -77,11 +78,12 @@ public class BookingFeedbackService {
 
         feedbackRepository.save(feedback);
 
-        // 7. Cập nhật lại rating của Tutor (CourseReview + Booking Feedback)
+        // 7. Cập nhật rating của Tutor (cộng delta feedback mới, không tính lại toàn bộ)
         Tutor tutor = tutorRepository.findById(payment.getTutorId())
                 .orElseThrow(() -> new AppException(ErrorCode.TUTOR_NOT_FOUND));
 
-        tutorRatingService.recalculateTutorRating(tutor.getTutorID());
+        tutorRatingService.onFeedbackCreated(tutor.getTutorID(), feedback.getRating());
+        tutorProfileService.evict(tutor.getTutorID());
 
         // 8. Trả về response
         return BookingFeedbackResponse.builder()
@@ -112,6 +114,7 @@ public class BookingFeedbackService {
 
         validateRating(request.getRating());
 
+        BigDecimal oldRating = feedback.getRating();
         feedback.setRating(request.getRating());
         feedback.setComment(request.getComment());
 
@@ -120,7 +123,8 @@ public class BookingFeedbackService {
         Tutor tutor = tutorRepository.findById(feedback.getPayment().getTutorId())
                 .orElseThrow(() -> new AppException(ErrorCode.TUTOR_NOT_FOUND));
 
-        tutorRatingService.recalculateTutorRating(tutor.getTutorID());
+        tutorRatingService.onFeedbackUpdated(tutor.getTutorID(), oldRating, feedback.getRating());
+        tutorProfileService.evict(tutor.getTutorID());
 
         return BookingFeedbackResponse.builder()
                 .feedbackID(feedback.getFeedbackID())
@@ -152,7 +156,8 @@ public class BookingFeedbackService {
 
         feedbackRepository.delete(feedback);
 
-        tutorRatingService.recalculateTutorRating(tutor.getTutorID());
+        tutorRatingService.onFeedbackDeleted(tutor.getTutorID(), feedback.getRating());
+        tutorProfileService.evict(tutor.getTutorID());
     }
 
     // ====================== HELPER =========================
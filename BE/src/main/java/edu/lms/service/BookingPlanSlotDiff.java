@@ -0,0 +1,131 @@
+package edu.lms.service;
+
+import edu.lms.entity.BookingPlan;
+import edu.lms.entity.BookingPlanSlot;
+import edu.lms.enums.SlotStatus;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * So sánh slot hiện có của 1 booking plan với lưới slot mới (thứ + giờ bắt đầu/kết thúc + slotDuration),
+ * tính toàn bộ trong bộ nhớ, không query:
+ *  - kept:      vẫn nằm trong giờ mới của đúng thứ → giữ nguyên (learner giữ buổi đã book)
+ *  - moved:     slot trống (chưa có learner) lệch lưới mới nhưng vẫn trong giờ mới → dời về ô lưới gần nhất cùng ngày
+ *  - cancelled: ngoài giờ mới / plan đổi sang thứ khác / không còn ô trống để dời → giao cho teardown (xoá, refund, thông báo)
+ * Slot Rejected (đã refund) bỏ qua.
+ */
+final class BookingPlanSlotDiff {
+
+    private final List<BookingPlanSlot> kept = new ArrayList<>();
+    private final List<BookingPlanSlot> moved = new ArrayList<>();
+    private final List<BookingPlanSlot> cancelled = new ArrayList<>();
+
+    private BookingPlanSlotDiff() {
+    }
+
+    /**
+     * @param oldDay thứ của plan trước khi sửa (null nếu title cũ không parse được → lấy thứ của slot hiện có)
+     * @param plan   plan đã mang giờ / thứ / slotDuration mới
+     * @param slots  slot tương lai của plan (theo startTime tăng dần)
+     */
+    static BookingPlanSlotDiff compute(DayOfWeek oldDay, BookingPlan plan, List<BookingPlanSlot> slots) {
+        BookingPlanSlotDiff diff = new BookingPlanSlotDiff();
+
+        DayOfWeek newDay = TutorAvailabilityService.parseDayTitle(plan.getTitle());
+        if (oldDay == null) {
+            // slot của 1 plan luôn rơi vào cùng 1 thứ; không còn slot nào thì cũng không có gì để huỷ
+            oldDay = slots.stream()
+                    .filter(slot -> slot.getStatus() != SlotStatus.Rejected)
+                    .map(slot -> slot.getStartTime().getDayOfWeek())
+                    .findFirst()
+                    .orElse(newDay);
+        }
+        boolean dayChanged = newDay == null || oldDay != newDay;
+        int gridStart = plan.getStartHours().toSecondOfDay() / 60;
+        int gridEnd = plan.getEndHours().toSecondOfDay() / 60;
+        int duration = plan.getSlotDuration();
+
+        // Ô lưới (ngày + phút bắt đầu) đang có slot giữ lại → không dời slot khác vào
+        Set<String> takenCells = new HashSet<>();
+        List<BookingPlanSlot> offGrid = new ArrayList<>();
+
+        for (BookingPlanSlot slot : slots) {
+            if (slot.getStatus() == SlotStatus.Rejected) continue;
+
+            int start = minuteOfDay(slot.getStartTime());
+            int end = minuteOfDay(slot.getEndTime());
+            boolean sameDay = slot.getStartTime().toLocalDate().equals(slot.getEndTime().toLocalDate())
+                    || end == 0;
+            if (end == 0) end = 24 * 60;
+
+            boolean inNewHours = !dayChanged && sameDay && start >= gridStart && end <= gridEnd;
+            if (!inNewHours) {
+                diff.cancelled.add(slot);
+                continue;
+            }
+
+            boolean onGrid = (start - gridStart) % duration == 0 && end - start == duration;
+            if (slot.getUserID() != null || onGrid) {
+                diff.kept.add(slot);
+                markCells(takenCells, slot.getStartTime().toLocalDate(), start, end, gridStart, duration);
+            } else {
+                offGrid.add(slot);
+            }
+        }
+
+        for (BookingPlanSlot slot : offGrid) {
+            LocalDate date = slot.getStartTime().toLocalDate();
+            int start = minuteOfDay(slot.getStartTime());
+
+            // Ô lưới gần nhất chứa giờ bắt đầu cũ, lùi / tiến 1 ô nếu bị tràn giờ kết thúc
+            int cell = gridStart + (start - gridStart) / duration * duration;
+            if (cell + duration > gridEnd) {
+                cell -= duration;
+            }
+            String key = date + "#" + cell;
+            if (cell < gridStart || takenCells.contains(key)) {
+                diff.cancelled.add(slot);
+                continue;
+            }
+
+            takenCells.add(key);
+            LocalDateTime newStart = date.atTime(LocalTime.ofSecondOfDay(cell * 60L));
+            slot.setStartTime(newStart);
+            slot.setEndTime(newStart.plusMinutes(duration));
+            diff.moved.add(slot);
+        }
+        return diff;
+    }
+
+    List<BookingPlanSlot> kept() {
+        return kept;
+    }
+
+    List<BookingPlanSlot> moved() {
+        return moved;
+    }
+
+    List<BookingPlanSlot> cancelled() {
+        return cancelled;
+    }
+
+    // Slot giữ lại có thể dài / lệch so với lưới mới → đánh dấu mọi ô nó chạm vào
+    private static void markCells(Set<String> takenCells, LocalDate date, int start, int end,
+                                  int gridStart, int duration) {
+        int cell = gridStart + Math.floorDiv(start - gridStart, duration) * duration;
+        for (; cell < end; cell += duration) {
+            takenCells.add(date + "#" + cell);
+        }
+    }
+
+    private static int minuteOfDay(LocalDateTime time) {
+        return time.toLocalTime().toSecondOfDay() / 60;
+    }
+}
@@ -1,20 +1,32 @@
 package edu.lms.service;
 
 import edu.lms.dto.response.BookingPlanSlotResponse;
+import edu.lms.dto.response.TimetableResponse;
 import edu.lms.entity.BookingPlan;
 import edu.lms.entity.BookingPlanSlot;
 import edu.lms.entity.Tutor;
+import edu.lms.entity.User;
 import edu.lms.enums.SlotStatus;
 import edu.lms.exception.AppException;
 import edu.lms.exception.ErrorCode;
 import edu.lms.repository.BookingPlanRepository;
 import edu.lms.repository.BookingPlanSlotRepository;
 import edu.lms.repository.TutorRepository;
+import edu.lms.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.TemporalAdjusters;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
@@ -24,6 +36,10 @@ public class BookingPlanSlotService {
     private final BookingPlanSlotRepository bookingPlanSlotRepository;
     private final BookingPlanRepository bookingPlanRepository;
     private final TutorRepository tutorRepository;
+    private final UserRepository userRepository;
+
+    // Đủ cho view tháng (6 tuần hiển thị)
+    static final int MAX_TIMETABLE_DAYS = 42;
 
     /* ============================================================
        GET ALL SLOTS FOR USER
@@ -84,6 +100,156 @@ public class BookingPlanSlotService {
                 .collect(Collectors.toList());
     }
 
+    /* ============================================================
+       TIMETABLE (WEEK / MONTH VIEW) – LEARNER & TUTOR
+       Chỉ lấy slot trong [from, to], số query cố định (slot, plan, tutor, user)
+       ============================================================ */
+    @Transactional(readOnly = true)
+    public TimetableResponse getTimetableForUser(Long userId, LocalDate from, LocalDate to) {
+        LocalDate start = resolveFrom(from);
+        LocalDate end = resolveTo(start, to);
+
+        List<BookingPlanSlot> slots = bookingPlanSlotRepository.findTimetableByUserID(
+                userId, start.atStartOfDay(), end.plusDays(1).atStartOfDay());
+        return toTimetable(start, end, slots);
+    }
+
+    @Transactional(readOnly = true)
+    public TimetableResponse getTimetableForTutor(Long userId, LocalDate from, LocalDate to) {
+        LocalDate start = resolveFrom(from);
+        LocalDate end = resolveTo(start, to);
+
+        Tutor tutor = tutorRepository.findByUser_UserID(userId)
+                .orElseThrow(() -> new AppException(ErrorCode.TUTOR_NOT_FOUND));
+
+        List<BookingPlanSlot> slots = bookingPlanSlotRepository.findTimetableByTutorID(
+                tutor.getTutorID(), start.atStartOfDay(), end.plusDays(1).atStartOfDay());
+        return toTimetable(start, end, slots);
+    }
+
+    // Mặc định: thứ 2 của tuần hiện tại
+    private LocalDate resolveFrom(LocalDate from) {
+        return from != null
+                ? from
+                : LocalDate.now().with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+    }
+
+    // Mặc định: hết tuần tính từ from; to là ngày cuối (bao gồm)
+    private LocalDate resolveTo(LocalDate from, LocalDate to) {
+        LocalDate end = to != null ? to : from.plusDays(6);
+        if (end.isBefore(from) || end.isAfter(from.plusDays(MAX_TIMETABLE_DAYS - 1))) {
+            throw new AppException(ErrorCode.TIMETABLE_INVALID_RANGE);
+        }
+        return end;
+    }
+
+    private TimetableResponse toTimetable(LocalDate from, LocalDate to, List<BookingPlanSlot> slots) {
+        if (slots.isEmpty()) {
+            return TimetableResponse.builder()
+                    .from(from)
+                    .to(to)
+                    .slots(List.of())
+                    .plans(Map.of())
+                    .tutors(Map.of())
+                    .users(Map.of())
+                    .build();
+        }
+
+        Set<Long> planIds = distinctIds(slots, BookingPlanSlot::getBookingPlanID);
+        Set<Long> tutorIds = distinctIds(slots, BookingPlanSlot::getTutorID);
+        Set<Long> userIds = distinctIds(slots, BookingPlanSlot::getUserID);
+
+        // meetingUrl chỉ lộ ra khi plan có ít nhất 1 slot Paid trong khoảng
+        Set<Long> paidPlanIds = slots.stream()
+                .filter(slot -> slot.getStatus() == SlotStatus.Paid)
+                .map(BookingPlanSlot::getBookingPlanID)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+
+        Map<Long, TimetableResponse.PlanItem> plans = planIds.isEmpty()
+                ? Map.of()
+                : bookingPlanRepository.findAllById(planIds).stream()
+                .collect(Collectors.toMap(
+                        BookingPlan::getBookingPlanID,
+                        plan -> toPlanItem(plan, paidPlanIds.contains(plan.getBookingPlanID())),
+                        (existing, replacement) -> existing,
+                        LinkedHashMap::new
+                ));
+
+        Map<Long, TimetableResponse.PersonItem> tutors = tutorIds.isEmpty()
+                ? Map.of()
+                : tutorRepository.findAllWithUserByTutorIDIn(tutorIds).stream()
+                .filter(tutor -> tutor.getUser() != null)
+                .collect(Collectors.toMap(
+                        Tutor::getTutorID,
+                        tutor -> toPersonItem(tutor.getUser()),
+                        (existing, replacement) -> existing,
+                        LinkedHashMap::new
+                ));
+
+        Map<Long, TimetableResponse.PersonItem> users = userIds.isEmpty()
+                ? Map.of()
+                : userRepository.findAllWithRoleByUserIDIn(userIds).stream()
+                .collect(Collectors.toMap(
+                        User::getUserID,
+                        this::toPersonItem,
+                        (existing, replacement) -> existing,
+                        LinkedHashMap::new
+                ));
+
+        return TimetableResponse.builder()
+                .from(from)
+                .to(to)
+                .slots(slots.stream().map(this::toSlotItem).collect(Collectors.toList()))
+                .plans(plans)
+                .tutors(tutors)
+                .users(users)
+                .build();
+    }
+
+    private Set<Long> distinctIds(List<BookingPlanSlot> slots, Function<BookingPlanSlot, Long> id) {
+        return slots.stream()
+                .map(id)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+    }
+
+    private TimetableResponse.SlotItem toSlotItem(BookingPlanSlot slot) {
+        return TimetableResponse.SlotItem.builder()
+                .slotID(slot.getSlotID())
+                .bookingPlanID(slot.getBookingPlanID())
+                .tutorID(slot.getTutorID())
+                .userID(slot.getUserID())
+                .startTime(slot.getStartTime())
+                .endTime(slot.getEndTime())
+                .status(slot.getStatus())
+                .userPackageId(slot.getUserPackage() != null ? slot.getUserPackage().getUserPackageID() : null)
+                .tutorPackageID(resolveTutorPackageId(slot))
+                .learnerJoin(slot.getLearnerJoin())
+                .tutorJoin(slot.getTutorJoin())
+                .build();
+    }
+
+    private TimetableResponse.PlanItem toPlanItem(BookingPlan plan, boolean hasPaidSlot) {
+        String meetingUrl = plan.getMeetingUrl();
+        return TimetableResponse.PlanItem.builder()
+                .bookingPlanID(plan.getBookingPlanID())
+                .title(plan.getTitle())
+                .startHours(plan.getStartHours())
+                .endHours(plan.getEndHours())
+                .slotDuration(plan.getSlotDuration())
+                .meetingUrl(hasPaidSlot && meetingUrl != null && !meetingUrl.isEmpty() ? meetingUrl : null)
+                .build();
+    }
+
+    private TimetableResponse.PersonItem toPersonItem(User user) {
+        return TimetableResponse.PersonItem.builder()
+                .userID(user.getUserID())
+                .fullName(user.getFullName() != null ? user.getFullName() : "")
+                .avatarURL(user.getAvatarURL())
+                .build();
+    }
+
     /* ============================================================
        COMMON METHODS
        ============================================================ */
@@ -144,13 +310,7 @@ public class BookingPlanSlotService {
                 ? slot.getUserPackage().getUserPackageID()
                 : null;
 
-        Long tutorPackageId = null;
-        if (slot.getTutorPackage() != null) {
-            tutorPackageId = slot.getTutorPackage().getPackageID();
-        } else if (slot.getUserPackage() != null && slot.getUserPackage().getTutorPackage() != null) {
-            // fallback cho dữ liệu cũ nếu trước đây bạn chưa set tutorPackage trong slot
-            tutorPackageId = slot.getUserPackage().getTutorPackage().getPackageID();
-        }
+        Long tutorPackageId = resolveTutorPackageId(slot);
 
         return BookingPlanSlotResponse.builder()
                 .slotID(slot.getSlotID())
@@ -173,4 +333,15 @@ public class BookingPlanSlotService {
                 .tutorPackageID(tutorPackageId)
                 .build();
     }
+
+    private Long resolveTutorPackageId(BookingPlanSlot slot) {
+        if (slot.getTutorPackage() != null) {
+            return slot.getTutorPackage().getPackageID();
+        }
+        if (slot.getUserPackage() != null && slot.getUserPackage().getTutorPackage() != null) {
+            // fallback cho dữ liệu cũ nếu trước đây bạn chưa set tutorPackage trong slot
+            return slot.getUserPackage().getTutorPackage().getPackageID();
+        }
+        return null;
+    }
 }
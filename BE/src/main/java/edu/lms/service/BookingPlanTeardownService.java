@@ -0,0 +1,645 @@
+package edu.lms.service;
+
+import edu.lms.dto.response.BookingPlanTeardownProgressResponse;
+import edu.lms.entity.BookingPlan;
+import edu.lms.entity.BookingPlanSlot;
+import edu.lms.entity.Notification;
+import edu.lms.entity.Payment;
+import edu.lms.entity.RefundRequest;
+import edu.lms.entity.Tutor;
+import edu.lms.enums.BookingPlanTeardownReason;
+import edu.lms.enums.BookingPlanTeardownStatus;
+import edu.lms.enums.NotificationType;
+import edu.lms.enums.RefundStatus;
+import edu.lms.enums.RefundType;
+import edu.lms.enums.SlotStatus;
+import edu.lms.repository.BookingPlanRepository;
+import edu.lms.repository.BookingPlanSlotRepository;
+import edu.lms.repository.NotificationRepository;
+import edu.lms.repository.PaymentRepository;
+import edu.lms.repository.RefundRequestRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Teardown booking plan theo lô:
+ * - Đọc toàn bộ slot / payment bị ảnh hưởng bằng vài query IN (...)
+ * - Huỷ payment, xoá / reject slot bằng câu lệnh set-based, refund ghi bằng saveAll
+ * - Huỷ link PayOS + ghi notification chạy song song trên bookingTeardownExecutor SAU KHI commit, có retry
+ * - Tiến độ job giữ trong bộ nhớ, tutor poll qua jobId
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class BookingPlanTeardownService {
+
+    private static final int NOTIFICATION_CHUNK_SIZE = 100;
+    private static final int MAX_ATTEMPTS = 3;
+    private static final Duration JOB_RETENTION = Duration.ofHours(1);
+    private static final List<RefundStatus> OPEN_REFUND_STATUSES =
+            List.of(RefundStatus.PENDING, RefundStatus.SUBMITTED, RefundStatus.APPROVED);
+
+    private final BookingPlanRepository bookingPlanRepository;
+    private final BookingPlanSlotRepository bookingPlanSlotRepository;
+    private final PaymentRepository paymentRepository;
+    private final RefundRequestRepository refundRequestRepository;
+    private final NotificationRepository notificationRepository;
+    private final PayOSService payOSService;
+    @Qualifier("bookingTeardownExecutor")
+    private final TaskExecutor teardownExecutor;
+
+    private final Map<String, TeardownJob> jobs = new ConcurrentHashMap<>();
+
+    @Value("${booking.teardown.retry-backoff-ms:500}")
+    private long retryBackoffMs;
+
+    // =========================================================
+    // XOÁ HẲN PLAN (tutor xoá plan / tutor bị suspend)
+    // =========================================================
+    /**
+     * Xoá toàn bộ slot + plan. Slot có learner:
+     *  + Locked -> huỷ payment + link PayOS (payment đã PAID -> như Paid)
+     *  + Paid   -> tạo refund
+     *  + Khác   -> chỉ thông báo
+     * PLAN_DELETED thông báo cả learner lẫn tutor, TUTOR_SUSPENDED chỉ thông báo learner.
+     */
+    @Transactional
+    public BookingPlanTeardownProgressResponse teardownPlans(
+            Long tutorId,
+            Long tutorUserId,
+            List<BookingPlan> plans,
+            BookingPlanTeardownReason reason
+    ) {
+        Map<Long, BookingPlan> planById = plans.stream()
+                .collect(Collectors.toMap(BookingPlan::getBookingPlanID, Function.identity(), (a, b) -> a));
+
+        List<BookingPlanSlot> slots = planById.isEmpty()
+                ? List.of()
+                : bookingPlanSlotRepository.findByBookingPlanIDIn(planById.keySet());
+
+        List<BookingPlanSlot> learnerSlots = slots.stream()
+                .filter(slot -> slot.getUserID() != null)
+                .toList();
+
+        TeardownBatch batch = new TeardownBatch(reason, null, reason == BookingPlanTeardownReason.PLAN_DELETED ? tutorUserId : null);
+        processLearnerSlots(batch, learnerSlots, planById);
+
+        if (!planById.isEmpty()) {
+            bookingPlanSlotRepository.deleteAllByBookingPlanIDIn(planById.keySet());
+            bookingPlanRepository.deleteAllByIdInBatch(planById.keySet());
+        }
+
+        log.info("[TEARDOWN][{}] tutor={} plans={} slots={} withLearner={} refunds={} paymentsCancelled={}",
+                reason, tutorId, planById.size(), slots.size(), learnerSlots.size(),
+                batch.refundsCreated, batch.paymentsCancelled);
+
+        return submit(tutorId, batch, slots.size(), learnerSlots.size());
+    }
+
+    // =========================================================
+    // SLOT NẰM NGOÀI GIỜ MỚI (tutor update plan)
+    // =========================================================
+    /**
+     * - Không đụng tới slot QUÁ KHỨ / TRONG NGÀY HÔM NAY
+     * - Slot tương lai không có learner -> xoá
+     * - Slot tương lai có learner:
+     *   + Locked -> huỷ payment + link PayOS, thông báo (payment đã PAID -> như Paid)
+     *   + Paid   -> refund TUTOR_RESCHEDULE + Rejected (bỏ qua nếu slot đã có refund đang mở)
+     *   + Khác   -> chỉ thông báo
+     */
+    @Transactional
+    public BookingPlanTeardownProgressResponse releaseSlots(BookingPlan plan, Tutor tutor, List<BookingPlanSlot> slots) {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDate today = now.toLocalDate();
+
+        List<Long> emptySlotIds = new ArrayList<>();
+        List<BookingPlanSlot> learnerSlots = new ArrayList<>();
+
+        for (BookingPlanSlot slot : slots) {
+            if (slot.getEndTime() != null && slot.getEndTime().isBefore(now)) {
+                log.info("[BOOKING-UPDATE] Skip slot {} ({} - {}) because it is in the past",
+                        slot.getSlotID(), slot.getStartTime(), slot.getEndTime());
+                continue;
+            }
+            if (slot.getStartTime().toLocalDate().isEqual(today)) {
+                log.info("[BOOKING-UPDATE] Skip slot {} ({} - {}) because it is TODAY",
+                        slot.getSlotID(), slot.getStartTime(), slot.getEndTime());
+                continue;
+            }
+            if (slot.getUserID() == null) {
+                emptySlotIds.add(slot.getSlotID());
+            } else {
+                learnerSlots.add(slot);
+            }
+        }
+
+        Long tutorUserId = tutor != null && tutor.getUser() != null ? tutor.getUser().getUserID() : null;
+        TeardownBatch batch = new TeardownBatch(BookingPlanTeardownReason.PLAN_UPDATED, tutor, tutorUserId);
+        processLearnerSlots(batch, learnerSlots, Map.of(plan.getBookingPlanID(), plan));
+
+        if (!emptySlotIds.isEmpty()) {
+            bookingPlanSlotRepository.deleteAllByIdInBatch(emptySlotIds);
+        }
+        if (!batch.rejectedSlotIds.isEmpty()) {
+            bookingPlanSlotRepository.markSlotsRejected(batch.rejectedSlotIds);
+        }
+
+        log.info("[BOOKING-UPDATE] plan={} deletedEmpty={} withLearner={} refunds={} paymentsCancelled={}",
+                plan.getBookingPlanID(), emptySlotIds.size(), learnerSlots.size(),
+                batch.refundsCreated, batch.paymentsCancelled);
+
+        return submit(plan.getTutorID(), batch, emptySlotIds.size() + learnerSlots.size(), learnerSlots.size());
+    }
+
+    // =========================================================
+    // PROGRESS
+    // =========================================================
+    public Optional<BookingPlanTeardownProgressResponse> getProgress(String jobId, Long tutorId) {
+        TeardownJob job = jobs.get(jobId);
+        if (job == null || !job.tutorId.equals(tutorId)) {
+            return Optional.empty();
+        }
+        return Optional.of(job.toResponse());
+    }
+
+    @Scheduled(fixedDelay = 600000) // mỗi 10 phút
+    public void purgeFinishedJobs() {
+        LocalDateTime threshold = LocalDateTime.now().minus(JOB_RETENTION);
+        jobs.values().removeIf(job -> job.finishedAt != null && job.finishedAt.isBefore(threshold));
+    }
+
+    // =========================================================
+    // GHI DB THEO LÔ
+    // =========================================================
+    private void processLearnerSlots(TeardownBatch batch, List<BookingPlanSlot> learnerSlots, Map<Long, BookingPlan> planById) {
+        if (learnerSlots.isEmpty()) return;
+
+        Set<Long> paidPaymentIds = cancelLockedPayments(batch, learnerSlots);
+        Map<Long, RefundRequest> refundBySlot = createRefunds(batch, learnerSlots, planById, paidPaymentIds);
+
+        for (BookingPlanSlot slot : learnerSlots) {
+            if (isPaid(slot, paidPaymentIds)) {
+                RefundRequest refund = refundBySlot.get(slot.getSlotID());
+                if (refund == null) {
+                    log.info("[TEARDOWN] Skip slot {} because it already has refund", slot.getSlotID());
+                    continue;
+                }
+                addPaidNotifications(batch, slot, refund);
+            } else if (slot.getStatus() == SlotStatus.Locked) {
+                addLockedNotifications(batch, slot);
+            } else {
+                addOtherNotifications(batch, slot);
+            }
+        }
+    }
+
+    /**
+     * Slot Locked nhưng payment đã PAID: webhook đã ghi nhận tiền, inbox chưa kịp chuyển slot sang Paid
+     * → xử lý như slot Paid (tạo refund), không coi là chưa thanh toán.
+     */
+    private boolean isPaid(BookingPlanSlot slot, Set<Long> paidPaymentIds) {
+        return slot.getStatus() == SlotStatus.Paid
+                || (slot.getStatus() == SlotStatus.Locked && paidPaymentIds.contains(slot.getPaymentID()));
+    }
+
+    /**
+     * Huỷ mọi payment chưa trả của slot Locked (kể cả payment chưa kịp gắn link PayOS),
+     * trả về id các payment đã PAID trong số đó.
+     */
+    private Set<Long> cancelLockedPayments(TeardownBatch batch, List<BookingPlanSlot> learnerSlots) {
+        Set<Long> paymentIds = learnerSlots.stream()
+                .filter(slot -> slot.getStatus() == SlotStatus.Locked && slot.getPaymentID() != null)
+                .map(BookingPlanSlot::getPaymentID)
+                .collect(Collectors.toSet());
+        if (paymentIds.isEmpty()) return Set.of();
+
+        // Khoá payment PENDING/EXPIRED → webhook PAID tới cùng lúc phải chờ, sau commit thấy CANCELLED
+        List<Payment> unpaid = paymentRepository.findUnpaidByIdsForUpdate(paymentIds);
+        Set<Long> unpaidIds = unpaid.stream().map(Payment::getPaymentID).collect(Collectors.toSet());
+        if (!unpaidIds.isEmpty()) {
+            batch.paymentsCancelled = paymentRepository.cancelUnpaidByIds(unpaidIds, LocalDateTime.now());
+            unpaid.stream()
+                    .map(Payment::getPaymentLinkId)
+                    .filter(Objects::nonNull)
+                    .forEach(batch.paymentLinkIds::add);
+        }
+
+        // Phần còn lại không thể chuyển PAID nữa (không PENDING/EXPIRED) → đọc không cần khoá
+        Set<Long> others = new HashSet<>(paymentIds);
+        others.removeAll(unpaidIds);
+        if (others.isEmpty()) return Set.of();
+        return new HashSet<>(paymentRepository.findPaidIds(others));
+    }
+
+    private Map<Long, RefundRequest> createRefunds(
+            TeardownBatch batch,
+            List<BookingPlanSlot> learnerSlots,
+            Map<Long, BookingPlan> planById,
+            Set<Long> paidPaymentIds
+    ) {
+        List<BookingPlanSlot> paidSlots = learnerSlots.stream()
+                .filter(slot -> isPaid(slot, paidPaymentIds))
+                .toList();
+        if (paidSlots.isEmpty()) return Map.of();
+
+        boolean reschedule = batch.reason == BookingPlanTeardownReason.PLAN_UPDATED;
+
+        // Không tạo refund trùng nếu slot đã có refund open/approved
+        Set<Long> alreadyRefunded = reschedule
+                ? new HashSet<>(refundRequestRepository.findSlotIdsWithRefund(
+                        paidSlots.stream().map(BookingPlanSlot::getSlotID).toList(),
+                        OPEN_REFUND_STATUSES))
+                : Set.of();
+
+        LocalDateTime now = LocalDateTime.now();
+        List<RefundRequest> refunds = new ArrayList<>();
+        for (BookingPlanSlot slot : paidSlots) {
+            if (alreadyRefunded.contains(slot.getSlotID())) continue;
+
+            BookingPlan plan = planById.get(slot.getBookingPlanID());
+            RefundRequest.RefundRequestBuilder refund = RefundRequest.builder()
+                    .bookingPlanId(slot.getBookingPlanID())
+                    .slotId(slot.getSlotID())
+                    .userId(slot.getUserID())
+                    .packageId(slot.getUserPackage() != null ? slot.getUserPackage().getUserPackageID() : null)
+                    .refundAmount(calculateRefundAmount(slot, plan))
+                    .status(RefundStatus.PENDING)
+                    .createdAt(now);
+
+            if (reschedule) {
+                refund.refundType(RefundType.TUTOR_RESCHEDULE)
+                        .tutor(batch.tutor)
+                        .reason("Hoàn tiền do tutor thay đổi lịch, slot không còn phù hợp với lịch mới");
+                // Slot này không còn được sử dụng nữa (UPDATE theo lô ở caller)
+                batch.rejectedSlotIds.add(slot.getSlotID());
+            }
+            refunds.add(refund.build());
+        }
+        if (refunds.isEmpty()) return Map.of();
+
+        Map<Long, RefundRequest> bySlot = new HashMap<>();
+        for (RefundRequest saved : refundRequestRepository.saveAll(refunds)) {
+            bySlot.put(saved.getSlotId(), saved);
+        }
+        batch.refundsCreated = refunds.size();
+        return bySlot;
+    }
+
+    private BigDecimal calculateRefundAmount(BookingPlanSlot slot, BookingPlan plan) {
+        if (plan == null || plan.getPricePerHours() == null) return BigDecimal.ZERO;
+
+        BigDecimal pricePerHour = BigDecimal.valueOf(plan.getPricePerHours());
+        long minutes = Duration.between(slot.getStartTime(), slot.getEndTime()).toMinutes();
+
+        if (minutes <= 0) return BigDecimal.ZERO;
+
+        return pricePerHour
+                .multiply(BigDecimal.valueOf(minutes))
+                .divide(BigDecimal.valueOf(60), 2, RoundingMode.HALF_UP);
+    }
+
+    // =========================================================
+    // NỘI DUNG NOTIFICATION
+    // =========================================================
+    private void addLockedNotifications(TeardownBatch batch, BookingPlanSlot slot) {
+        String time = formatDateTime(slot.getStartTime());
+        switch (batch.reason) {
+            case PLAN_UPDATED -> {
+                batch.notify(slot.getUserID(), "Lịch học đã thay đổi",
+                        "Buổi học vào lúc " + time + " đã bị ảnh hưởng do tutor thay đổi lịch. " +
+                                "Link thanh toán đã bị hủy, vui lòng chọn lịch mới và thanh toán lại.",
+                        NotificationType.TUTOR_CANCEL_BOOKING, "/learner/booking");
+                batch.notifyTutor("Lịch học có learner đang thanh toán bị ảnh hưởng",
+                        "Buổi học vào lúc " + time + " có learner đang thanh toán đã bị ảnh hưởng do bạn cập nhật lịch làm việc. " +
+                                "Hệ thống đã hủy link thanh toán và thông báo cho learner.",
+                        NotificationType.TUTOR_CANCEL_BOOKING);
+            }
+            case TUTOR_SUSPENDED -> batch.notify(slot.getUserID(), "Lịch học đã bị hủy",
+                    "Buổi học vào lúc " + time + " đã bị hủy do tutor ngừng hoạt động. " +
+                            "Link thanh toán đã bị vô hiệu hoá, bạn sẽ không bị trừ tiền. " +
+                            "Vui lòng chọn tutor khác.",
+                    NotificationType.TUTOR_CANCEL_BOOKING, "/learner/booking");
+            default -> {
+                batch.notify(slot.getUserID(), "Lịch học đã bị hủy",
+                        "Buổi học vào lúc " + time + " đã bị hủy do tutor xóa lịch làm việc. " +
+                                "Link thanh toán đã bị vô hiệu hoá, bạn sẽ không bị trừ tiền. " +
+                                "Vui lòng chọn lịch học mới.",
+                        NotificationType.TUTOR_CANCEL_BOOKING, "/learner/booking");
+                batch.notifyTutor("Đã xóa slot có learner đang thanh toán",
+                        "Buổi học vào lúc " + time + " có learner đang thanh toán đã bị xóa khi bạn xóa lịch làm việc. " +
+                                "Hệ thống đã hủy link thanh toán và thông báo cho learner.",
+                        NotificationType.TUTOR_CANCEL_BOOKING);
+            }
+        }
+    }
+
+    private void addPaidNotifications(TeardownBatch batch, BookingPlanSlot slot, RefundRequest refund) {
+        String time = formatDateTime(slot.getStartTime());
+        switch (batch.reason) {
+            case PLAN_UPDATED -> {
+                batch.notify(slot.getUserID(), "Lịch học đã thay đổi - Yêu cầu hoàn tiền",
+                        "Buổi học vào lúc " + time + " đã bị ảnh hưởng do tutor thay đổi lịch làm việc. " +
+                                "Hệ thống đã tạo yêu cầu hoàn tiền cho bạn. " +
+                                "Vui lòng nhập thông tin ngân hàng để nhận tiền hoặc chọn lịch khác.",
+                        NotificationType.REFUND_AVAILABLE, "/learner/refunds/" + refund.getRefundRequestId());
+                batch.notifyTutor("Lịch học đã thanh toán bị ảnh hưởng - Yêu cầu hoàn tiền",
+                        "Buổi học vào lúc " + time + " đã được thanh toán nhưng không còn phù hợp với lịch mới của bạn. " +
+                                "Hệ thống đã tạo yêu cầu hoàn tiền cho học viên.",
+                        NotificationType.REFUND_AVAILABLE);
+            }
+            case TUTOR_SUSPENDED -> batch.notify(slot.getUserID(), "Lịch học đã bị hủy - Yêu cầu hoàn tiền",
+                    "Buổi học vào lúc " + time + " đã bị hủy do tutor ngừng hoạt động. " +
+                            "Hệ thống đã tạo yêu cầu hoàn tiền. " +
+                            "Vui lòng nhập thông tin ngân hàng để nhận tiền.",
+                    NotificationType.REFUND_AVAILABLE, "/learner/refunds");
+            default -> {
+                batch.notify(slot.getUserID(), "Lịch học đã bị hủy - Yêu cầu hoàn tiền",
+                        "Buổi học vào lúc " + time + " đã bị hủy do tutor xóa lịch làm việc. " +
+                                "Hệ thống đã tạo yêu cầu hoàn tiền. " +
+                                "Vui lòng nhập thông tin ngân hàng để nhận tiền.",
+                        NotificationType.REFUND_AVAILABLE, "/learner/refunds");
+                batch.notifyTutor("Đã xóa slot đã thanh toán - Yêu cầu hoàn tiền",
+                        "Buổi học vào lúc " + time + " đã được thanh toán nhưng đã bị xóa khi bạn xóa lịch làm việc. " +
+                                "Hệ thống đã tạo yêu cầu hoàn tiền cho learner.",
+                        NotificationType.REFUND_AVAILABLE);
+            }
+        }
+    }
+
+    private void addOtherNotifications(TeardownBatch batch, BookingPlanSlot slot) {
+        String time = formatDateTime(slot.getStartTime());
+        switch (batch.reason) {
+            case PLAN_UPDATED -> {
+                batch.notify(slot.getUserID(), "Lịch học đã thay đổi",
+                        "Buổi học vào lúc " + time + " đã bị ảnh hưởng do tutor thay đổi lịch. " +
+                                "Vui lòng chọn lịch học mới.",
+                        NotificationType.TUTOR_CANCEL_BOOKING, "/learner/booking");
+                batch.notifyTutor("Lịch học có learner bị ảnh hưởng",
+                        "Buổi học vào lúc " + time + " có learner đã book nhưng không còn phù hợp với lịch mới của bạn. " +
+                                "Vui lòng trao đổi với học viên và sắp xếp lại lịch nếu cần.",
+                        NotificationType.TUTOR_CANCEL_BOOKING);
+            }
+            case TUTOR_SUSPENDED -> batch.notify(slot.getUserID(), "Lịch học đã bị hủy",
+                    "Buổi học vào lúc " + time + " đã bị hủy do tutor ngừng hoạt động. " +
+                            "Vui lòng chọn tutor khác.",
+                    NotificationType.TUTOR_CANCEL_BOOKING, "/learner/booking");
+            default -> {
+                batch.notify(slot.getUserID(), "Lịch học đã bị hủy",
+                        "Buổi học vào lúc " + time + " đã bị hủy do tutor xóa lịch làm việc. " +
+                                "Vui lòng chọn lịch học mới.",
+                        NotificationType.TUTOR_CANCEL_BOOKING, "/learner/booking");
+                batch.notifyTutor("Đã xóa slot có learner",
+                        "Buổi học vào lúc " + time + " có learner đã book nhưng đã bị xóa khi bạn xóa lịch làm việc. " +
+                                "Hệ thống đã thông báo cho learner.",
+                        NotificationType.TUTOR_CANCEL_BOOKING);
+            }
+        }
+    }
+
+    private String formatDateTime(LocalDateTime dt) {
+        return dt.toLocalTime() + " ngày " + dt.toLocalDate();
+    }
+
+    // =========================================================
+    // CHẠY ASYNC SAU COMMIT
+    // =========================================================
+    private BookingPlanTeardownProgressResponse submit(Long tutorId, TeardownBatch batch, int slotsAffected, int slotsWithLearner) {
+        List<List<Notification>> chunks = new ArrayList<>();
+        for (int i = 0; i < batch.notifications.size(); i += NOTIFICATION_CHUNK_SIZE) {
+            chunks.add(batch.notifications.subList(i, Math.min(i + NOTIFICATION_CHUNK_SIZE, batch.notifications.size())));
+        }
+
+        TeardownJob job = new TeardownJob(
+                UUID.randomUUID().toString(),
+                tutorId,
+                batch.reason,
+                slotsAffected,
+                slotsWithLearner,
+                batch.refundsCreated,
+                batch.paymentsCancelled,
+                batch.paymentLinkIds.size(),
+                batch.notifications.size(),
+                batch.paymentLinkIds.size() + chunks.size()
+        );
+        jobs.put(job.jobId, job);
+
+        Runnable dispatch = () -> dispatch(job, batch.paymentLinkIds, chunks);
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status == STATUS_COMMITTED) {
+                        dispatch.run();
+                    } else {
+                        job.rolledBack();
+                    }
+                }
+            });
+        } else {
+            dispatch.run();
+        }
+
+        return job.toResponse();
+    }
+
+    private void dispatch(TeardownJob job, List<String> paymentLinkIds, List<List<Notification>> chunks) {
+        job.start();
+
+        for (String linkId : paymentLinkIds) {
+            teardownExecutor.execute(() -> {
+                boolean ok = runWithRetry("cancel link " + linkId, () -> payOSService.cancelPaymentLink(linkId));
+                (ok ? job.linksCancelled : job.linksFailed).incrementAndGet();
+                job.taskDone();
+            });
+        }
+
+        for (List<Notification> chunk : chunks) {
+            teardownExecutor.execute(() -> {
+                boolean ok = runWithRetry("save " + chunk.size() + " notifications", () -> {
+                    // IDENTITY id được gán ngay cả khi lần trước rollback → reset để insert lại
+                    chunk.forEach(n -> n.setNotificationId(null));
+                    notificationRepository.saveAll(chunk);
+                    return true;
+                });
+                (ok ? job.notificationsSent : job.notificationsFailed).addAndGet(chunk.size());
+                job.taskDone();
+            });
+        }
+    }
+
+    private boolean runWithRetry(String action, Supplier<Boolean> task) {
+        for (int attempt = 1; attempt <= MAX_ATTEMPTS; attempt++) {
+            try {
+                if (Boolean.TRUE.equals(task.get())) {
+                    return true;
+                }
+            } catch (Exception e) {
+                log.warn("[TEARDOWN] {} failed (attempt {}/{}): {}", action, attempt, MAX_ATTEMPTS, e.getMessage());
+            }
+
+            if (attempt < MAX_ATTEMPTS && retryBackoffMs > 0) {
+                try {
+                    Thread.sleep(retryBackoffMs * attempt);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+        }
+        log.error("[TEARDOWN] {} gave up after {} attempts", action, MAX_ATTEMPTS);
+        return false;
+    }
+
+    /**
+     * Kết quả ghi DB của 1 lần teardown + các task phải chạy sau commit
+     */
+    private static final class TeardownBatch {
+        final BookingPlanTeardownReason reason;
+        final Tutor tutor;
+        final Long tutorUserId;
+        final List<String> paymentLinkIds = new ArrayList<>();
+        final List<Long> rejectedSlotIds = new ArrayList<>();
+        final List<Notification> notifications = new ArrayList<>();
+        int paymentsCancelled;
+        int refundsCreated;
+
+        TeardownBatch(BookingPlanTeardownReason reason, Tutor tutor, Long tutorUserId) {
+            this.reason = reason;
+            this.tutor = tutor;
+            this.tutorUserId = tutorUserId;
+        }
+
+        void notify(Long userId, String title, String content, NotificationType type, String url) {
+            notifications.add(Notification.builder()
+                    .userId(userId)
+                    .title(title)
+                    .content(content)
+                    .type(type)
+                    .primaryActionUrl(url)
+                    .isRead(false)
+                    .createdAt(LocalDateTime.now())
+                    .build());
+        }
+
+        void notifyTutor(String title, String content, NotificationType type) {
+            if (tutorUserId != null) {
+                notify(tutorUserId, title, content, type, "/tutor/booking-plan");
+            }
+        }
+    }
+
+    /**
+     * Tiến độ 1 job teardown (giữ trong bộ nhớ, dọn sau JOB_RETENTION)
+     */
+    static final class TeardownJob {
+        final String jobId;
+        final Long tutorId;
+        final BookingPlanTeardownReason reason;
+        final int slotsAffected;
+        final int slotsWithLearner;
+        final int refundsCreated;
+        final int paymentsCancelled;
+        final int linksTotal;
+        final int notificationsTotal;
+        final LocalDateTime startedAt = LocalDateTime.now();
+        final AtomicInteger pendingTasks;
+        final AtomicInteger linksCancelled = new AtomicInteger();
+        final AtomicInteger linksFailed = new AtomicInteger();
+        final AtomicInteger notificationsSent = new AtomicInteger();
+        final AtomicInteger notificationsFailed = new AtomicInteger();
+        volatile BookingPlanTeardownStatus status = BookingPlanTeardownStatus.QUEUED;
+        volatile LocalDateTime finishedAt;
+
+        TeardownJob(String jobId, Long tutorId, BookingPlanTeardownReason reason,
+                    int slotsAffected, int slotsWithLearner, int refundsCreated, int paymentsCancelled,
+                    int linksTotal, int notificationsTotal, int tasks) {
+            this.jobId = jobId;
+            this.tutorId = tutorId;
+            this.reason = reason;
+            this.slotsAffected = slotsAffected;
+            this.slotsWithLearner = slotsWithLearner;
+            this.refundsCreated = refundsCreated;
+            this.paymentsCancelled = paymentsCancelled;
+            this.linksTotal = linksTotal;
+            this.notificationsTotal = notificationsTotal;
+            this.pendingTasks = new AtomicInteger(tasks);
+        }
+
+        void start() {
+            status = BookingPlanTeardownStatus.RUNNING;
+            if (pendingTasks.get() == 0) {
+                finish();
+            }
+        }
+
+        void taskDone() {
+            if (pendingTasks.decrementAndGet() == 0) {
+                finish();
+            }
+        }
+
+        void rolledBack() {
+            status = BookingPlanTeardownStatus.ROLLED_BACK;
+            finishedAt = LocalDateTime.now();
+        }
+
+        private void finish() {
+            finishedAt = LocalDateTime.now();
+            status = linksFailed.get() > 0 || notificationsFailed.get() > 0
+                    ? BookingPlanTeardownStatus.COMPLETED_WITH_ERRORS
+                    : BookingPlanTeardownStatus.COMPLETED;
+            log.info("[TEARDOWN] job {} {} | links {}/{} (failed {}) | notifications {}/{} (failed {})",
+                    jobId, status, linksCancelled.get(), linksTotal, linksFailed.get(),
+                    notificationsSent.get(), notificationsTotal, notificationsFailed.get());
+        }
+
+        BookingPlanTeardownProgressResponse toResponse() {
+            return BookingPlanTeardownProgressResponse.builder()
+                    .jobId(jobId)
+                    .reason(reason)
+                    .status(status)
+                    .slotsAffected(slotsAffected)
+                    .slotsWithLearner(slotsWithLearner)
+                    .refundsCreated(refundsCreated)
+                    .paymentsCancelled(paymentsCancelled)
+                    .paymentLinksTotal(linksTotal)
+                    .paymentLinksCancelled(linksCancelled.get())
+                    .paymentLinksFailed(linksFailed.get())
+                    .notificationsTotal(notificationsTotal)
+                    .notificationsSent(notificationsSent.get())
+                    .notificationsFailed(notificationsFailed.get())
+                    .startedAt(startedAt)
+                    .finishedAt(finishedAt)
+                    .build();
+        }
+    }
+}
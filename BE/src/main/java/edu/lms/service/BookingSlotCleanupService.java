@@ -17,6 +17,7 @@ import java.util.List;
 public class BookingSlotCleanupService {
 
     private final BookingPlanSlotRepository bookingPlanSlotRepository;
+    private final TutorAvailabilityService tutorAvailabilityService;
 
     @Transactional
     @Scheduled(fixedRate = 60000) // mỗi 1 phút
@@ -26,5 +27,6 @@ public class BookingSlotCleanupService {
             bookingPlanSlotRepository.delete(slot);
             log.warn("[CLEANUP] Deleted expired slot {} ({} - {})", slot.getSlotID(), slot.getStartTime(), slot.getEndTime());
         });
+        tutorAvailabilityService.onSlotsReleased(expired);
     }
 }
@@ -0,0 +1,229 @@
+package edu.lms.service;
+
+import edu.lms.entity.Payment;
+import edu.lms.enums.PaymentStatus;
+import edu.lms.enums.PaymentType;
+import edu.lms.repository.PaymentRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Bộ đếm sliding window trong bộ nhớ cho checkout, không cần query DB mỗi lần đặt lịch:
+ *  - payment Booking bị CANCELLED / EXPIRED theo (user, plan) trong 1 giờ: đủ 3 lần thì chặn
+ *    (trước đây là 2 câu COUNT trên bảng payment cho mỗi lần checkout)
+ *  - số lần checkout của 1 user trong 1 phút (rate limit chung cho mọi loại payment)
+ * Mỗi cửa sổ chỉ giữ tối đa `limit` mốc thời gian mới nhất, số key bị chặn bởi maxKeys.
+ * Bộ đếm huỷ / hết hạn được dựng lại từ payment của 1 giờ gần nhất khi ứng dụng khởi động.
+ */
+@Slf4j
+@Service
+public class CheckoutRateLimiter {
+
+    static final int MAX_FAILED_BOOKINGS = 3;
+    static final Duration FAILED_BOOKING_WINDOW = Duration.ofHours(1);
+    static final Duration CHECKOUT_WINDOW = Duration.ofMinutes(1);
+
+    private final PaymentRepository paymentRepository;
+    private final int checkoutsPerMinute;
+    private final int maxKeys;
+
+    private final Map<BookingKey, SlidingWindow> failedBookings = new ConcurrentHashMap<>();
+    private final Map<Long, SlidingWindow> checkouts = new ConcurrentHashMap<>();
+
+    @Autowired
+    public CheckoutRateLimiter(
+            PaymentRepository paymentRepository,
+            @Value("${checkout.rate-limit.attempts-per-minute:10}") int checkoutsPerMinute,
+            @Value("${checkout.rate-limit.max-keys:50000}") int maxKeys
+    ) {
+        this.paymentRepository = paymentRepository;
+        this.checkoutsPerMinute = checkoutsPerMinute;
+        this.maxKeys = maxKeys;
+    }
+
+    /**
+     * true nếu learner đã huỷ / để hết hạn >= 3 payment của plan này trong 1 giờ
+     */
+    public boolean tooManyFailedBookings(Long userId, Long bookingPlanId) {
+        SlidingWindow window = failedBookings.get(new BookingKey(userId, bookingPlanId));
+        if (window == null) {
+            return false;
+        }
+        long cutoff = toMillis(LocalDateTime.now()) - FAILED_BOOKING_WINDOW.toMillis();
+        return window.countSince(cutoff) >= MAX_FAILED_BOOKINGS;
+    }
+
+    /**
+     * Ghi nhận 1 lần checkout của user; true nếu đã vượt giới hạn trong 1 phút (lần này không được tính)
+     */
+    public boolean overCheckoutLimit(Long userId) {
+        if (userId == null) {
+            return false;
+        }
+        long now = toMillis(LocalDateTime.now());
+        SlidingWindow window = windowOf(checkouts, userId, checkoutsPerMinute, CHECKOUT_WINDOW, now);
+        return !window.tryAdd(now, now - CHECKOUT_WINDOW.toMillis());
+    }
+
+    /**
+     * Payment Booking vừa chuyển CANCELLED / EXPIRED. Gọi trong transaction đổi trạng thái,
+     * bộ đếm chỉ tăng sau khi commit. Mốc thời gian là createdAt của payment như câu COUNT cũ.
+     */
+    public void recordFailedBooking(Payment payment) {
+        if (payment == null || payment.getPaymentType() != PaymentType.Booking
+                || payment.getUserId() == null || payment.getTargetId() == null) {
+            return;
+        }
+        BookingKey key = new BookingKey(payment.getUserId(), payment.getTargetId());
+        LocalDateTime createdAt = payment.getCreatedAt() != null ? payment.getCreatedAt() : LocalDateTime.now();
+        afterCommit(() -> addFailedBooking(key, toMillis(createdAt)));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void rebuildOnStartup() {
+        LocalDateTime since = LocalDateTime.now().minus(FAILED_BOOKING_WINDOW);
+        List<Payment> payments = paymentRepository.findByPaymentTypeAndStatusInAndCreatedAtAfter(
+                PaymentType.Booking, List.of(PaymentStatus.CANCELLED, PaymentStatus.EXPIRED), since);
+
+        failedBookings.clear();
+        for (Payment payment : payments) {
+            if (payment.getUserId() != null && payment.getTargetId() != null) {
+                addFailedBooking(new BookingKey(payment.getUserId(), payment.getTargetId()),
+                        toMillis(payment.getCreatedAt()));
+            }
+        }
+        log.info("[CHECKOUT LIMIT] Rebuilt {} failed booking counters from {} payments",
+                failedBookings.size(), payments.size());
+    }
+
+    @Scheduled(fixedDelay = 300000)
+    public void evictIdle() {
+        long now = toMillis(LocalDateTime.now());
+        failedBookings.values().removeIf(w -> w.isIdle(now - FAILED_BOOKING_WINDOW.toMillis()));
+        checkouts.values().removeIf(w -> w.isIdle(now - CHECKOUT_WINDOW.toMillis()));
+    }
+
+    int trackedKeys() {
+        return failedBookings.size() + checkouts.size();
+    }
+
+    // ====================== HELPER =========================
+
+    private void addFailedBooking(BookingKey key, long at) {
+        long now = toMillis(LocalDateTime.now());
+        windowOf(failedBookings, key, MAX_FAILED_BOOKINGS, FAILED_BOOKING_WINDOW, now).add(at);
+    }
+
+    private <K> SlidingWindow windowOf(Map<K, SlidingWindow> windows, K key, int limit,
+                                       Duration span, long now) {
+        SlidingWindow window = windows.get(key);
+        if (window != null) {
+            return window;
+        }
+        if (windows.size() >= maxKeys) {
+            makeRoom(windows, now - span.toMillis());
+        }
+        return windows.computeIfAbsent(key, k -> new SlidingWindow(limit));
+    }
+
+    // Bỏ cửa sổ đã hết hạn; vẫn đầy thì bỏ cửa sổ có lần ghi nhận cũ nhất
+    private <K> void makeRoom(Map<K, SlidingWindow> windows, long cutoff) {
+        windows.values().removeIf(w -> w.isIdle(cutoff));
+        if (windows.size() < maxKeys) {
+            return;
+        }
+        windows.entrySet().stream()
+                .min((a, b) -> Long.compare(a.getValue().latest(), b.getValue().latest()))
+                .ifPresent(oldest -> windows.remove(oldest.getKey()));
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private static long toMillis(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private record BookingKey(Long userId, Long bookingPlanId) {}
+
+    /**
+     * Giữ `limit` mốc thời gian lớn nhất đã ghi nhận; đủ để trả lời "đã có >= limit lần trong cửa sổ chưa"
+     */
+    static final class SlidingWindow {
+        private final long[] times;
+        private int size;
+
+        SlidingWindow(int limit) {
+            this.times = new long[Math.max(limit, 1)];
+        }
+
+        synchronized void add(long at) {
+            if (size < times.length) {
+                times[size++] = at;
+                return;
+            }
+            int oldest = 0;
+            for (int i = 1; i < size; i++) {
+                if (times[i] < times[oldest]) oldest = i;
+            }
+            if (at > times[oldest]) {
+                times[oldest] = at;
+            }
+        }
+
+        // Chỉ ghi nhận khi chưa đủ limit lần sau cutoff
+        synchronized boolean tryAdd(long at, long cutoff) {
+            if (countSince(cutoff) >= times.length) {
+                return false;
+            }
+            add(at);
+            return true;
+        }
+
+        synchronized int countSince(long cutoff) {
+            int count = 0;
+            for (int i = 0; i < size; i++) {
+                if (times[i] > cutoff) count++;
+            }
+            return count;
+        }
+
+        synchronized long latest() {
+            long latest = Long.MIN_VALUE;
+            for (int i = 0; i < size; i++) {
+                latest = Math.max(latest, times[i]);
+            }
+            return latest;
+        }
+
+        synchronized boolean isIdle(long cutoff) {
+            return latest() <= cutoff;
+        }
+    }
+}
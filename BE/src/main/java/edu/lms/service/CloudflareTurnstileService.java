@@ -2,70 +2,189 @@ package edu.lms.service;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
 import org.springframework.http.*;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
 import org.springframework.stereotype.Service;
 import org.springframework.util.LinkedMultiValueMap;
 import org.springframework.util.MultiValueMap;
 import org.springframework.web.client.RestTemplate;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Verify Cloudflare Turnstile:
+ *  - HTTP client dùng connection pool + timeout (không mở TLS mới mỗi checkout)
+ *  - 2 request đồng thời cùng token (double submit) dùng chung 1 lần gọi Cloudflare, theo SHA-256 của token.
+ *    Kết quả KHÔNG được cache: token Turnstile chỉ dùng 1 lần, xong là bỏ entry
+ *  - verifyAsync chạy trên turnstileExecutor, trả future ngay cho caller
+ */
 @Slf4j
 @Service
 public class CloudflareTurnstileService {
 
-    @Value("${cloudflare.turnstile.secret-key}")
-    private String secretKey;
+    private static final ObjectMapper mapper = new ObjectMapper();
 
+    private final String secretKey;
     // Nếu muốn có flag bật/tắt:
-    @Value("${cloudflare.turnstile.enabled:true}")
-    private boolean enabled;
+    private final boolean enabled;
+    private final String verifyUrl;
+    private final TaskExecutor executor;
+    private final CloseableHttpClient httpClient;
+    private final RestTemplate restTemplate;
 
-    private final RestTemplate restTemplate = new RestTemplate();
-    private static final ObjectMapper mapper = new ObjectMapper();
+    // Verify đang chạy theo hash token, bỏ ngay khi có kết quả
+    private final Map<String, CompletableFuture<Boolean>> inFlight = new ConcurrentHashMap<>();
+
+    @Autowired
+    public CloudflareTurnstileService(
+            @Value("${cloudflare.turnstile.secret-key}") String secretKey,
+            @Value("${cloudflare.turnstile.enabled:true}") boolean enabled,
+            @Value("${cloudflare.turnstile.verify-url:https://challenges.cloudflare.com/turnstile/v0/siteverify}") String verifyUrl,
+            @Value("${cloudflare.turnstile.timeout-ms:3000}") int timeoutMs,
+            @Qualifier("turnstileExecutor") TaskExecutor executor
+    ) {
+        this.secretKey = secretKey;
+        this.enabled = enabled;
+        this.verifyUrl = verifyUrl;
+        this.executor = executor;
+        this.httpClient = buildHttpClient(timeoutMs);
+        this.restTemplate = new RestTemplate(new HttpComponentsClientHttpRequestFactory(httpClient));
+    }
+
+    private static CloseableHttpClient buildHttpClient(int timeoutMs) {
+        Timeout timeout = Timeout.ofMilliseconds(timeoutMs);
+
+        return HttpClients.custom()
+                .setConnectionManager(PoolingHttpClientConnectionManagerBuilder.create()
+                        .setMaxConnTotal(20)
+                        .setMaxConnPerRoute(20)
+                        .setDefaultConnectionConfig(ConnectionConfig.custom()
+                                .setConnectTimeout(timeout)
+                                .setSocketTimeout(timeout)
+                                .setTimeToLive(TimeValue.ofMinutes(5))
+                                .build())
+                        .build())
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectionRequestTimeout(timeout)
+                        .setResponseTimeout(timeout)
+                        .build())
+                .evictIdleConnections(TimeValue.ofSeconds(30))
+                .build();
+    }
 
     public boolean verify(String token) {
+        return verifyAsync(token).join();
+    }
+
+    /**
+     * Bắt đầu verify và trả về ngay. Lỗi mạng → false.
+     */
+    public CompletableFuture<Boolean> verifyAsync(String token) {
         if (!enabled) {
             // Dev mode: bỏ qua check
             log.info("[TURNSTILE] Verification disabled by config");
-            return true;
+            return CompletableFuture.completedFuture(true);
         }
 
         if (token == null || token.isBlank()) {
             log.warn("[TURNSTILE] Empty token");
-            return false;
+            return CompletableFuture.completedFuture(false);
+        }
+
+        String key = sha256(token);
+        CompletableFuture<Boolean> created = new CompletableFuture<>();
+
+        CompletableFuture<Boolean> existing = inFlight.putIfAbsent(key, created);
+        if (existing != null) {
+            log.debug("[TURNSTILE] join in-flight verification");
+            return existing;
         }
 
+        Runnable task = () -> complete(key, token, created);
         try {
-            String url = "https://challenges.cloudflare.com/turnstile/v0/siteverify";
+            executor.execute(task);
+        } catch (TaskRejectedException e) {
+            task.run();
+        }
+        return created;
+    }
 
-            MultiValueMap<String, String> body = new LinkedMultiValueMap<>();
-            body.add("secret", secretKey);
-            body.add("response", token);
-            // Có thể thêm remoteip nếu muốn: body.add("remoteip", clientIp);
+    private void complete(String key, String token, CompletableFuture<Boolean> result) {
+        boolean success;
+        try {
+            success = callSiteVerify(token);
+        } catch (Exception e) {
+            log.error("[TURNSTILE] verify error: {}", e.getMessage(), e);
+            success = false;
+        }
+        // bỏ entry trước khi trả kết quả → submit sau đó phải gọi lại Cloudflare (token đã dùng sẽ bị từ chối)
+        inFlight.remove(key, result);
+        result.complete(success);
+    }
 
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_FORM_URLENCODED);
+    private boolean callSiteVerify(String token) throws IOException {
+        MultiValueMap<String, String> body = new LinkedMultiValueMap<>();
+        body.add("secret", secretKey);
+        body.add("response", token);
+        // Có thể thêm remoteip nếu muốn: body.add("remoteip", clientIp);
 
-            HttpEntity<MultiValueMap<String, String>> entity =
-                    new HttpEntity<>(body, headers);
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_FORM_URLENCODED);
 
-            ResponseEntity<String> response =
-                    restTemplate.postForEntity(url, entity, String.class);
+        HttpEntity<MultiValueMap<String, String>> entity =
+                new HttpEntity<>(body, headers);
 
-            JsonNode root = mapper.readTree(response.getBody());
-            boolean success = root.path("success").asBoolean(false);
+        ResponseEntity<String> response =
+                restTemplate.postForEntity(verifyUrl, entity, String.class);
 
-            if (!success) {
-                log.warn("[TURNSTILE] verify FAIL, response={}", response.getBody());
-            } else {
-                log.info("[TURNSTILE] verify OK");
-            }
+        JsonNode root = mapper.readTree(response.getBody());
+        boolean success = root.path("success").asBoolean(false);
 
-            return success;
-        } catch (Exception e) {
-            log.error("[TURNSTILE] verify error: {}", e.getMessage(), e);
-            return false;
+        if (!success) {
+            log.warn("[TURNSTILE] verify FAIL, response={}", response.getBody());
+        } else {
+            log.info("[TURNSTILE] verify OK");
         }
+
+        return success;
+    }
+
+    int inFlightCount() {
+        return inFlight.size();
+    }
+
+    private static String sha256(String token) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        httpClient.close();
     }
 }
@@ -1,31 +1,335 @@
 package edu.lms.service;
 
 import com.cloudinary.Cloudinary;
+import com.cloudinary.ProgressCallback;
 import com.cloudinary.utils.ObjectUtils;
+import edu.lms.dto.request.DirectUploadCompleteRequest;
+import edu.lms.dto.response.DirectUploadSignatureResponse;
 import edu.lms.dto.response.FileUrlResponse;
-import lombok.RequiredArgsConstructor;
+import edu.lms.entity.UploadedBlob;
+import edu.lms.exception.AppException;
+import edu.lms.exception.ErrorCode;
+import edu.lms.repository.UploadedBlobRepository;
 import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HexFormat;
 import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
 
 import static lombok.AccessLevel.PRIVATE;
 
+/**
+ * Upload file lên Cloudinary mà không đọc cả file vào heap:
+ *  - multipart được Tomcat ghi ra file tạm (file-size-threshold: 0) → chuyển sang file tạm của mình rồi gửi từ disk
+ *  - file ≤ chunkSize gửi 1 request (stream từ disk), lớn hơn thì gửi từng phần chunkSize byte theo giao thức
+ *    chunked upload của Cloudinary (X-Unique-Upload-Id + Content-Range) → bộ nhớ mỗi upload bị chặn ở khoảng 1 chunk
+ *  - trước khi upload tính SHA-256 của file (đọc stream từ disk) và tra bảng uploaded_blob: nội dung đã có trên
+ *    Cloudinary thì dùng lại secure_url, không upload lần nữa (tutor hay upload lại cùng PDF / video cho nhiều lesson, draft)
+ *  - direct upload: backend chỉ ký tham số, browser upload thẳng lên Cloudinary rồi gửi lại kết quả để verify
+ */
+@Slf4j
 @Service
-@RequiredArgsConstructor
 @FieldDefaults(level = PRIVATE, makeFinal = true)
 public class CloudinaryService {
 
+    private static final int HASH_BUFFER_SIZE = 64 * 1024;
+
     Cloudinary cloudinary;
+    UploadedBlobRepository uploadedBlobRepository;
+    int chunkSize;
+
+    @Autowired
+    public CloudinaryService(
+            Cloudinary cloudinary,
+            UploadedBlobRepository uploadedBlobRepository,
+            @Value("${cloudinary-upload.chunk-size-bytes:6291456}") int chunkSize
+    ) {
+        this.cloudinary = cloudinary;
+        this.uploadedBlobRepository = uploadedBlobRepository;
+        this.chunkSize = chunkSize;
+    }
 
     public FileUrlResponse uploadFile(MultipartFile file, String folder) {
+        Path tempFile = null;
+        try {
+            tempFile = spoolToTempFile(file);
+            return uploadFile(tempFile, file.getOriginalFilename(), folder);
+        } catch (IOException e) {
+            throw new RuntimeException("Upload file thất bại", e);
+        } finally {
+            deleteQuietly(tempFile);
+        }
+    }
+
+    /**
+     * Chuyển file multipart sang file tạm của mình (còn dùng được sau khi request kết thúc).
+     * Tomcat: đổi tên file tạm multipart, không copy qua heap. Caller tự xoá file.
+     */
+    public Path spoolToTempFile(MultipartFile file) throws IOException {
+        Path tempFile = Files.createTempFile("upload-", ".tmp");
+        try {
+            file.transferTo(tempFile.toFile());
+            return tempFile;
+        } catch (IOException | RuntimeException e) {
+            deleteQuietly(tempFile);
+            throw e;
+        }
+    }
+
+    public FileUrlResponse uploadFile(Path path, String originalFilename, String folder) {
+        return uploadFile(path, originalFilename, folder, null);
+    }
+
+    /**
+     * progress (có thể null): số byte đã gửi / tổng, gọi trên thread upload sau mỗi chunk
+     * (client http5 của Cloudinary không hỗ trợ ProgressCallback nên tự chia chunk thay cho uploadLarge).
+     */
+    public FileUrlResponse uploadFile(Path path, String originalFilename, String folder, ProgressCallback progress) {
         try {
+            UploadName name = UploadName.of(originalFilename);
+            File source = path.toFile();
+
+            // ===== Cùng nội dung đã upload trước đó → dùng lại URL =====
+            String contentHash = sha256Hex(path);
+            Optional<UploadedBlob> existing =
+                    uploadedBlobRepository.findByContentHashAndResourceType(contentHash, name.resourceType());
+            if (existing.isPresent()) {
+                UploadedBlob blob = existing.get();
+                uploadedBlobRepository.markReused(blob.getBlobId(), LocalDateTime.now());
+                log.info("[UPLOAD] Reused {} for {} ({} bytes)", blob.getSecureUrl(), originalFilename, source.length());
+                if (progress != null) {
+                    progress.onProgress(source.length(), source.length());
+                }
+                // URL là của lần upload đầu (tên file cũ) → downloadUrl vẫn đặt tên theo file của lần này
+                return toFileUrlResponse(blob.getSecureUrl(), name);
+            }
+
+            Map<?, ?> options = ObjectUtils.asMap(
+                    "folder", folder,
+                    "resource_type", name.resourceType(),
+                    "public_id", name.publicId(),  // có cả đuôi
+                    "use_filename", false,  // mình đã tự set public_id
+                    "unique_filename", true
+            );
+
+            // ===== Upload lên Cloudinary =====
+            Map<?, ?> uploadResult = source.length() <= chunkSize
+                    ? cloudinary.uploader().upload(source, options)
+                    : uploadChunked(source, options, progress);
+            if (progress != null) {
+                progress.onProgress(source.length(), source.length());
+            }
+
+            String secureUrl = uploadResult.get("secure_url").toString();
+            indexBlob(contentHash, name.resourceType(), secureUrl, source.length());
+            return toFileUrlResponse(secureUrl, name);
+        } catch (IOException e) {
+            throw new RuntimeException("Upload file thất bại", e);
+        }
+    }
+
+    private void indexBlob(String contentHash, String resourceType, String secureUrl, long sizeBytes) {
+        try {
+            uploadedBlobRepository.save(UploadedBlob.builder()
+                    .contentHash(contentHash)
+                    .resourceType(resourceType)
+                    .secureUrl(secureUrl)
+                    .sizeBytes(sizeBytes)
+                    .createdAt(LocalDateTime.now())
+                    .build());
+        } catch (DataIntegrityViolationException e) {
+            // upload khác cùng nội dung vừa lưu trước → giữ bản đã có, URL này vẫn dùng được
+            log.debug("[UPLOAD] Blob {} already indexed", contentHash);
+        }
+    }
+
+    /**
+     * SHA-256 (hex) của file, đọc từng buffer nên không phụ thuộc kích thước file.
+     */
+    static String sha256Hex(Path path) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        byte[] buffer = new byte[HASH_BUFFER_SIZE];
+        try (InputStream in = Files.newInputStream(path)) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private Map<?, ?> uploadChunked(File source, Map<?, ?> options, ProgressCallback progress) throws IOException {
+        long total = source.length();
+        String uploadId = cloudinary.randomPublicId();
+        byte[] buffer = new byte[chunkSize];
+        Map<?, ?> result = null;
+
+        try (InputStream in = new FileInputStream(source)) {
+            long offset = 0;
+            while (offset < total) {
+                int read = in.readNBytes(buffer, 0, (int) Math.min(chunkSize, total - offset));
+                if (read <= 0) {
+                    throw new IOException("File bị cắt ngắn khi đang upload: " + source);
+                }
+                byte[] chunk = read == buffer.length ? buffer : Arrays.copyOf(buffer, read);
+
+                Map<String, Object> chunkOptions = new HashMap<>();
+                options.forEach((k, v) -> chunkOptions.put(k.toString(), v));
+                chunkOptions.put("filename", source.getName());
+                chunkOptions.put("extra_headers", Map.of(
+                        "X-Unique-Upload-Id", uploadId,
+                        "Content-Range", "bytes " + offset + "-" + (offset + read - 1) + "/" + total));
+
+                // Cloudinary trả kết quả đầy đủ (secure_url) ở chunk cuối
+                result = cloudinary.uploader().upload(chunk, chunkOptions);
+                offset += read;
+                if (progress != null && offset < total) {
+                    progress.onProgress(offset, total);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Ký tham số upload cho browser (Cloudinary signed upload). Chữ ký hết hạn sau 1 giờ phía Cloudinary.
+     */
+    public DirectUploadSignatureResponse signDirectUpload(String originalFilename, String folder) {
+        UploadName name = UploadName.of(originalFilename);
+        long timestamp = Instant.now().getEpochSecond();
+
+        // chỉ các field dưới đây được ký; browser gửi đúng giá trị này kèm file
+        Map<String, Object> params = new TreeMap<>();
+        params.put("folder", folder);
+        params.put("public_id", name.publicId());
+        params.put("timestamp", timestamp);
+        params.put("unique_filename", "true");
+        params.put("use_filename", "false");
+        String signature = cloudinary.apiSignRequest(params, cloudinary.config.apiSecret, cloudinary.config.signatureVersion);
+
+        return DirectUploadSignatureResponse.builder()
+                .uploadUrl(cloudinary.cloudinaryApiUrl("upload", ObjectUtils.asMap("resource_type", name.resourceType())))
+                .apiKey(cloudinary.config.apiKey)
+                .timestamp(timestamp)
+                .signature(signature)
+                .folder(folder)
+                .publicId(name.publicId())
+                .useFilename("false")
+                .uniqueFilename("true")
+                .build();
+    }
+
+    /**
+     * Browser upload xong gửi lại kết quả: verify chữ ký response của Cloudinary
+     * (public_id + version), URL thuộc cloud của mình và trỏ đúng public_id đã ký rồi mới dùng.
+     */
+    public FileUrlResponse completeDirectUpload(DirectUploadCompleteRequest request) {
+        String version = String.valueOf(request.getVersion());
+        if (!cloudinary.verifyApiResponseSignature(request.getPublicId(), version, request.getSignature())) {
+            throw new AppException(ErrorCode.INVALID_UPLOAD_SIGNATURE);
+        }
+        String secureUrl = request.getSecureUrl();
+        String cloudPrefix = "https://res.cloudinary.com/" + cloudinary.config.cloudName + "/";
+        if (!secureUrl.startsWith(cloudPrefix) || !pointsTo(secureUrl, version, request.getPublicId())) {
+            throw new AppException(ErrorCode.INVALID_UPLOAD_SIGNATURE);
+        }
+        return toFileUrlResponse(secureUrl, UploadName.of(request.getFileName()));
+    }
+
+    /**
+     * Path của secure_url phải kết thúc bằng /v{version}/{publicId}, có thể thêm .{format} (ảnh / video).
+     * Chữ ký chỉ phủ public_id + version, nên thiếu bước này browser có thể ghép chữ ký thật với URL file khác.
+     */
+    private static boolean pointsTo(String secureUrl, String version, String publicId) {
+        String path;
+        try {
+            path = URI.create(secureUrl).getPath(); // decode %20...
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+        String signed = "/v" + version + "/" + publicId;
+        int idx = path == null ? -1 : path.indexOf(signed);
+        if (idx < 0) return false;
+        String rest = path.substring(idx + signed.length());
+        return rest.isEmpty() || (rest.startsWith(".") && rest.indexOf('/') < 0);
+    }
+
+    private static FileUrlResponse toFileUrlResponse(String secureUrl, UploadName name) {
+        // secureUrl kết thúc kiểu:
+        // .../uploads/Report2_SEP490_G11_Project%20Tracking.xlsx
+
+        // ===== downloadUrl: ép tải file về, tên file theo người upload lần này (đuôi lấy từ URL) =====
+        String downloadUrl = secureUrl;
+        String marker = "/upload/";
+        int idx = secureUrl.indexOf(marker);
+        if (idx > 0) {
+            String attachment = name.downloadName().isEmpty() ? "fl_attachment" : "fl_attachment:" + name.downloadName();
+            downloadUrl =
+                    secureUrl.substring(0, idx + marker.length()) +
+                            attachment + "/" +
+                            secureUrl.substring(idx + marker.length());
+        }
+        // Ví dụ:
+        // .../raw/upload/fl_attachment:Report2_SEP490_G11_Project_Tracking/v1764.../uploads/Report2_SEP490_G11_Project%20Tracking.xlsx
+
+        // ===== viewUrl =====
+        String viewUrl;
+        if (name.canUseGoogleViewer()) {
+            // PDF / DOC / DOCX / PPT / PPTX / XLS / XLSX -> Google Docs Viewer
+            String encoded = URLEncoder.encode(secureUrl, StandardCharsets.UTF_8);
+            viewUrl = "https://docs.google.com/gview?url=" + encoded + "&embedded=true";
+        } else {
+            // Ảnh, file khác -> dùng trực tiếp Cloudinary URL
+            viewUrl = secureUrl;
+        }
+
+        return FileUrlResponse.builder()
+                .viewUrl(viewUrl)
+                .downloadUrl(downloadUrl)
+                .build();
+    }
+
+    static void deleteQuietly(Path path) {
+        if (path == null) return;
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("[UPLOAD] Cannot delete temp file {}: {}", path, e.getMessage());
+        }
+    }
+
+    private record UploadName(String publicId, String resourceType, boolean canUseGoogleViewer, String downloadName) {
+
+        static UploadName of(String originalFilename) {
             // ===== Lấy tên file + đuôi =====
-            String originalFilename = file.getOriginalFilename(); // vd: "Report2_SEP490_G11_Project Tracking.xlsx"
+            // vd: "Report2_SEP490_G11_Project Tracking.xlsx"
             String baseName = "file";
             String extension = "";
 
@@ -51,64 +355,16 @@ public class CloudinaryService {
                     || extLower.equals("xlsx");
 
             // Document thì upload dạng raw
-            boolean isDocument = canUseGoogleViewer;
-
-            // ===== resource_type Cloudinary =====
-            String resourceType = isDocument ? "raw" : "auto";
+            String resourceType = canUseGoogleViewer ? "raw" : "auto";
 
             // ===== public_id: GIỮ CẢ ĐUÔI FILE để tải về đúng kiểu =====
-            String publicId = baseName;
-            if (!extension.isEmpty()) {
-                publicId = baseName + "." + extension;   // ví dụ: "Report2_SEP490_G11_Project Tracking.xlsx"
-            }
-
-            // ===== Upload lên Cloudinary =====
-            Map<?, ?> uploadResult = cloudinary.uploader().upload(
-                    file.getBytes(),
-                    ObjectUtils.asMap(
-                            "folder", folder,
-                            "resource_type", resourceType,
-                            "public_id", publicId,  // có cả đuôi
-                            "use_filename", false,  // mình đã tự set public_id
-                            "unique_filename", true
-                    )
-            );
-
-            String secureUrl = uploadResult.get("secure_url").toString();
-            // secureUrl giờ sẽ kết thúc kiểu:
-            // .../uploads/Report2_SEP490_G11_Project%20Tracking.xlsx
-
-            // ===== downloadUrl: ép tải file về, giữ nguyên tên + đuôi =====
-            String downloadUrl = secureUrl;
-            String marker = "/upload/";
-            int idx = secureUrl.indexOf(marker);
-            if (idx > 0) {
-                downloadUrl =
-                        secureUrl.substring(0, idx + marker.length()) +
-                                "fl_attachment/" +
-                                secureUrl.substring(idx + marker.length());
-            }
-            // Ví dụ:
-            // .../raw/upload/fl_attachment/v1764.../uploads/Report2_SEP490_G11_Project%20Tracking.xlsx
-
-            // ===== viewUrl =====
-            String viewUrl;
-            if (canUseGoogleViewer) {
-                // PDF / DOC / DOCX / PPT / PPTX / XLS / XLSX -> Google Docs Viewer
-                String encoded = URLEncoder.encode(secureUrl, StandardCharsets.UTF_8);
-                viewUrl = "https://docs.google.com/gview?url=" + encoded + "&embedded=true";
-            } else {
-                // Ảnh, file khác -> dùng trực tiếp Cloudinary URL
-                viewUrl = secureUrl;
-            }
+            String publicId = extension.isEmpty() ? baseName : baseName + "." + extension;
 
-            return FileUrlResponse.builder()
-                    .viewUrl(viewUrl)
-                    .downloadUrl(downloadUrl)
-                    .build();
+            // ===== Tên file khi tải về (fl_attachment:<tên>): bỏ ký tự Cloudinary không cho trong transformation =====
+            String safeName = baseName.replaceAll("[^\\p{L}\\p{N}_-]+", "_");
+            String downloadName = URLEncoder.encode(safeName, StandardCharsets.UTF_8);
 
-        } catch (IOException e) {
-            throw new RuntimeException("Upload file thất bại", e);
+            return new UploadName(publicId, resourceType, canUseGoogleViewer, downloadName);
         }
     }
 }
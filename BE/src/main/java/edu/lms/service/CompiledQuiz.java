@@ -0,0 +1,147 @@
+package edu.lms.service;
+
+import edu.lms.entity.QuizOption;
+import edu.lms.entity.QuizQuestion;
+
+import java.math.BigDecimal;
+import java.util.*;
+
+/**
+ * Quiz của 1 lesson đã "biên dịch" sang dạng bất biến, tách khỏi session Hibernate:
+ * câu hỏi + option đã sắp theo orderIndex, tập đáp án đúng dạng BitSet theo vị trí option, tổng điểm tối đa.
+ * Dùng chung cho render đề và chấm điểm, được cache bởi QuizDefinitionCache.
+ */
+public final class CompiledQuiz {
+
+    private static final Comparator<Integer> ORDER = Comparator.nullsLast(Integer::compareTo);
+
+    private final Long lessonId;
+    private final List<Question> questions;
+    private final Map<Long, Question> questionById;
+    private final BigDecimal maxScore;
+
+    private CompiledQuiz(Long lessonId, List<Question> questions) {
+        this.lessonId = lessonId;
+        this.questions = List.copyOf(questions);
+
+        Map<Long, Question> byId = new HashMap<>();
+        BigDecimal max = BigDecimal.ZERO;
+        for (Question q : questions) {
+            byId.put(q.questionID(), q);
+            max = max.add(q.maxScore());
+        }
+        this.questionById = Collections.unmodifiableMap(byId);
+        this.maxScore = max;
+    }
+
+    public static CompiledQuiz compile(Long lessonId, List<QuizQuestion> questions) {
+        List<Question> compiled = questions.stream()
+                .sorted(Comparator.comparing(QuizQuestion::getOrderIndex, ORDER))
+                .map(CompiledQuiz::compileQuestion)
+                .toList();
+        return new CompiledQuiz(lessonId, compiled);
+    }
+
+    private static Question compileQuestion(QuizQuestion q) {
+        List<Option> options = (q.getOptions() == null ? List.<QuizOption>of() : q.getOptions()).stream()
+                .sorted(Comparator.comparing(QuizOption::getOrderIndex, ORDER))
+                .map(o -> new Option(o.getOptionID(), o.getOptionText(),
+                        Boolean.TRUE.equals(o.getIsCorrect()), o.getOrderIndex()))
+                .toList();
+
+        Map<Long, Integer> optionIndex = new HashMap<>();
+        BitSet correct = new BitSet(options.size());
+        List<Long> correctIds = new ArrayList<>();
+        for (int i = 0; i < options.size(); i++) {
+            Option o = options.get(i);
+            optionIndex.put(o.optionID(), i);
+            if (o.isCorrect()) {
+                correct.set(i);
+                correctIds.add(o.optionID());
+            }
+        }
+
+        return new Question(
+                q.getQuestionID(),
+                q.getQuestionText(),
+                q.getOrderIndex(),
+                q.getExplanation(),
+                q.getScore(),
+                options,
+                Collections.unmodifiableMap(optionIndex),
+                correct,
+                List.copyOf(correctIds)
+        );
+    }
+
+    public Long lessonId() {
+        return lessonId;
+    }
+
+    public List<Question> questions() {
+        return questions;
+    }
+
+    public Question question(Long questionId) {
+        return questionById.get(questionId);
+    }
+
+    public BigDecimal maxScore() {
+        return maxScore;
+    }
+
+    public boolean isEmpty() {
+        return questions.isEmpty();
+    }
+
+    public record Option(Long optionID, String optionText, boolean isCorrect, Integer orderIndex) {}
+
+    /**
+     * correct: bit i bật khi options[i] là đáp án đúng
+     */
+    public record Question(
+            Long questionID,
+            String questionText,
+            Integer orderIndex,
+            String explanation,
+            BigDecimal score,
+            List<Option> options,
+            Map<Long, Integer> optionIndex,
+            BitSet correct,
+            List<Long> correctOptionIds
+    ) {
+
+        // BitSet là mutable → trả bản sao để quiz trong cache không bị sửa
+        @Override
+        public BitSet correct() {
+            return (BitSet) correct.clone();
+        }
+
+        // score null → mặc định 1 điểm như khi chấm trực tiếp từ entity
+        public BigDecimal maxScore() {
+            return score != null ? score : BigDecimal.ONE;
+        }
+
+        public boolean hasOption(Long optionId) {
+            return optionIndex.containsKey(optionId);
+        }
+
+        /**
+         * Đúng khi tập option chọn trùng khớp tập option đúng; option lạ (không thuộc câu) → sai
+         */
+        public boolean isCorrect(Collection<Long> selectedOptionIds) {
+            if (correct.isEmpty()) {
+                return false;
+            }
+            BitSet selected = new BitSet(options.size());
+            for (Long id : selectedOptionIds) {
+                Integer idx = optionIndex.get(id);
+                if (idx == null) {
+                    return false;
+                }
+                selected.set(idx);
+            }
+            return selected.equals(correct);
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package edu.lms.service;
+
+import edu.lms.entity.*;
+import edu.lms.enums.LessonType;
+import edu.lms.repository.CourseDraftRepository;
+import edu.lms.repository.LessonRepository;
+import edu.lms.repository.LessonResourceRepository;
+import edu.lms.repository.QuizQuestionRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.*;
+
+/**
+ * Clone curriculum của course live sang draft vừa tạo:
+ *  - đọc cây live theo tầng, mỗi tầng 1 query (section, lesson, resource, quiz + option, objective)
+ *  - insert mỗi tầng bằng JDBC batch (CourseDraftRepositoryCustom), id cấp theo khối cho cả lô
+ * Số câu SQL phụ thuộc số tầng / số lô, không phụ thuộc số lesson hay số câu hỏi.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class CourseDraftCloneService {
+
+    private static final Comparator<Integer> ORDER = Comparator.nullsLast(Integer::compareTo);
+
+    private final CourseDraftRepository courseDraftRepository;
+    private final LessonRepository lessonRepository;
+    private final LessonResourceRepository lessonResourceRepository;
+    private final QuizQuestionRepository quizQuestionRepository;
+
+    /**
+     * draft phải đã được lưu (có draftID)
+     */
+    @Transactional
+    public void cloneCurriculum(Course course, CourseDraft draft) {
+        List<CourseSection> sections = course.getSections() == null ? List.of() : course.getSections();
+
+        // 1. Section
+        Map<Long, CourseSectionDraft> sectionDraftBySectionId = new LinkedHashMap<>();
+        for (CourseSection s : sections) {
+            sectionDraftBySectionId.put(s.getSectionID(), CourseSectionDraft.builder()
+                    .draft(draft)
+                    .originalSectionID(s.getSectionID())
+                    .title(s.getTitle())
+                    .description(s.getDescription())
+                    .orderIndex(s.getOrderIndex())
+                    .build());
+        }
+        courseDraftRepository.insertSectionDrafts(new ArrayList<>(sectionDraftBySectionId.values()));
+
+        // 2. Lesson của mọi section (1 query), giữ thứ tự section rồi orderIndex
+        Map<Long, Integer> sectionPosition = new HashMap<>();
+        sectionDraftBySectionId.keySet().forEach(id -> sectionPosition.put(id, sectionPosition.size()));
+        List<Lesson> lessons = sectionPosition.isEmpty()
+                ? List.of()
+                : lessonRepository.findBySection_SectionIDIn(sectionPosition.keySet()).stream()
+                        .sorted(Comparator
+                                .comparing((Lesson l) -> sectionPosition.get(l.getSection().getSectionID()))
+                                .thenComparing(Lesson::getOrderIndex, ORDER)
+                                .thenComparing(Lesson::getLessonID))
+                        .toList();
+
+        Map<Long, LessonDraft> lessonDraftByLessonId = new LinkedHashMap<>();
+        List<Long> quizLessonIds = new ArrayList<>();
+        for (Lesson l : lessons) {
+            lessonDraftByLessonId.put(l.getLessonID(), LessonDraft.builder()
+                    .sectionDraft(sectionDraftBySectionId.get(l.getSection().getSectionID()))
+                    .originalLessonID(l.getLessonID())
+                    .title(l.getTitle())
+                    .duration(l.getDuration())
+                    .lessonType(l.getLessonType())
+                    .videoURL(l.getVideoURL())
+                    .content(l.getContent())
+                    .orderIndex(l.getOrderIndex())
+                    .build());
+            if (l.getLessonType() == LessonType.Quiz) {
+                quizLessonIds.add(l.getLessonID());
+            }
+        }
+        courseDraftRepository.insertLessonDrafts(new ArrayList<>(lessonDraftByLessonId.values()));
+
+        // 3. Resource (1 query)
+        List<LessonResourceDraft> resourceDrafts = new ArrayList<>();
+        if (!lessonDraftByLessonId.isEmpty()) {
+            lessonResourceRepository.findByLesson_LessonIDIn(lessonDraftByLessonId.keySet()).stream()
+                    .sorted(Comparator.comparing(LessonResource::getResourceID))
+                    .forEach(r -> resourceDrafts.add(LessonResourceDraft.builder()
+                            .lessonDraft(lessonDraftByLessonId.get(r.getLesson().getLessonID()))
+                            .originalResourceID(r.getResourceID())
+                            .resourceType(r.getResourceType())
+                            .resourceTitle(r.getResourceTitle())
+                            .resourceURL(r.getResourceURL())
+                            .build()));
+        }
+        courseDraftRepository.insertLessonResourceDrafts(resourceDrafts);
+
+        // 4. Quiz: câu hỏi + option của mọi quiz lesson (1 query)
+        List<QuizQuestionDraft> questionDrafts = new ArrayList<>();
+        List<QuizOptionDraft> optionDrafts = new ArrayList<>();
+        if (!quizLessonIds.isEmpty()) {
+            List<QuizQuestion> questions = quizQuestionRepository.findWithOptionsByLessonIdIn(quizLessonIds).stream()
+                    .sorted(Comparator
+                            .comparing((QuizQuestion q) -> q.getLesson().getLessonID())
+                            .thenComparing(QuizQuestion::getOrderIndex, ORDER)
+                            .thenComparing(QuizQuestion::getQuestionID))
+                    .toList();
+
+            for (QuizQuestion q : questions) {
+                QuizQuestionDraft qd = QuizQuestionDraft.builder()
+                        .lessonDraft(lessonDraftByLessonId.get(q.getLesson().getLessonID()))
+                        .questionText(q.getQuestionText())
+                        .orderIndex(q.getOrderIndex())
+                        .explanation(q.getExplanation())
+                        .score(q.getScore())
+                        .build();
+                questionDrafts.add(qd);
+
+                if (q.getOptions() != null) {
+                    for (QuizOption o : q.getOptions()) {
+                        optionDrafts.add(QuizOptionDraft.builder()
+                                .questionDraft(qd)
+                                .optionText(o.getOptionText())
+                                .isCorrect(o.getIsCorrect())
+                                .orderIndex(o.getOrderIndex())
+                                .build());
+                    }
+                }
+            }
+        }
+        courseDraftRepository.insertQuizQuestionDrafts(questionDrafts);
+        courseDraftRepository.insertQuizOptionDrafts(optionDrafts);
+
+        // 5. Objective
+        List<CourseObjectiveDraft> objectiveDrafts = new ArrayList<>();
+        if (course.getObjectives() != null) {
+            for (CourseObjective o : course.getObjectives()) {
+                objectiveDrafts.add(CourseObjectiveDraft.builder()
+                        .draft(draft)
+                        .originalObjectiveID(o.getObjectiveID())
+                        .objectiveText(o.getObjectiveText())
+                        .orderIndex(o.getOrderIndex())
+                        .build());
+            }
+        }
+        courseDraftRepository.insertObjectiveDrafts(objectiveDrafts);
+
+        log.info("[DRAFT CLONE] Course [{}] -> draft [{}]: {} sections, {} lessons, {} resources, {} questions, {} options",
+                course.getCourseID(), draft.getDraftID(), sectionDraftBySectionId.size(), lessonDraftByLessonId.size(),
+                resourceDrafts.size(), questionDrafts.size(), optionDrafts.size());
+    }
+}
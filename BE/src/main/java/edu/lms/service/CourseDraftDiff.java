@@ -0,0 +1,489 @@
+package edu.lms.service;
+
+import edu.lms.dto.response.*;
+import edu.lms.entity.*;
+import edu.lms.enums.LessonType;
+
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * So sánh cây course live với cây draft (đã load sẵn, không query), ra 1 change set có kiểu cho từng tầng:
+ *  - INSERT:  node draft chưa có bản live (original id null / không còn trên live)
+ *  - UPDATE:  nội dung đổi
+ *  - REORDER: chỉ đổi orderIndex / chuyển sang section (lesson) hoặc lesson (resource) khác
+ *  - DELETE:  node live không còn draft nào trỏ tới
+ * Lesson / resource ghép theo original id trên toàn course (không chỉ trong cùng section / lesson).
+ * Quiz không có original id nên so cả bộ câu hỏi + option: đổi → REBUILD (xoá quiz live, tạo lại từ draft).
+ * Cùng 1 change set dùng cho màn "changes" của admin (toResponse) và cho CourseDraftMergeService.apply.
+ */
+final class CourseDraftDiff {
+
+    enum ChangeKind { INSERT, UPDATE, REORDER, DELETE }
+
+    enum QuizSync { KEEP, REBUILD, DROP }
+
+    record Change<L, D>(ChangeKind kind, L live, D draft, List<FieldChangeResponse> fields) {}
+
+    record LessonChange(ChangeKind kind, Lesson live, LessonDraft draft, List<FieldChangeResponse> fields,
+                        boolean resetProgress, QuizSync quiz) {}
+
+    // Quiz live phải kèm option (findWithOptionsByLessonIdIn), quiz draft cũng vậy
+    record LiveTree(List<CourseSection> sections, List<Lesson> lessons, List<LessonResource> resources,
+                    List<QuizQuestion> questions, List<CourseObjective> objectives) {}
+
+    record DraftTree(List<CourseSectionDraft> sections, List<LessonDraft> lessons, List<LessonResourceDraft> resources,
+                     List<QuizQuestionDraft> questions, List<CourseObjectiveDraft> objectives) {}
+
+    private static final Comparator<Integer> ORDER = Comparator.nullsLast(Integer::compareTo);
+    private static final Set<String> REORDER_FIELDS = Set.of("orderIndex", "section", "lesson");
+
+    private final Long courseId;
+    private final Long draftId;
+    private final List<FieldChangeResponse> courseChanges;
+    private final List<Change<CourseObjective, CourseObjectiveDraft>> objectives = new ArrayList<>();
+    private final List<Change<CourseSection, CourseSectionDraft>> sections = new ArrayList<>();
+    private final List<LessonChange> lessons = new ArrayList<>();
+    private final List<Change<LessonResource, LessonResourceDraft>> resources = new ArrayList<>();
+
+    // draft id -> node live tương ứng (kể cả node không đổi) để apply gắn khoá ngoại cho node con mới
+    private final Map<Long, CourseSection> matchedSections = new HashMap<>();
+    private final Map<Long, Lesson> matchedLessons = new HashMap<>();
+    // lessonDraftID -> câu hỏi draft (đã sắp theo orderIndex)
+    private final Map<Long, List<QuizQuestionDraft>> draftQuizzes;
+
+    private CourseDraftDiff(Course course, CourseDraft draft, Map<Long, List<QuizQuestionDraft>> draftQuizzes) {
+        this.courseId = course.getCourseID();
+        this.draftId = draft.getDraftID();
+        this.courseChanges = courseFieldChanges(course, draft);
+        this.draftQuizzes = draftQuizzes;
+    }
+
+    static CourseDraftDiff compute(Course course, CourseDraft draft, LiveTree live, DraftTree next) {
+        Map<Long, List<QuizQuestion>> liveQuizzes = new HashMap<>();
+        for (QuizQuestion q : sortedQuestions(live.questions())) {
+            liveQuizzes.computeIfAbsent(q.getLesson().getLessonID(), k -> new ArrayList<>()).add(q);
+        }
+        Map<Long, List<QuizQuestionDraft>> draftQuizzes = new HashMap<>();
+        for (QuizQuestionDraft q : sortedDraftQuestions(next.questions())) {
+            draftQuizzes.computeIfAbsent(q.getLessonDraft().getLessonDraftID(), k -> new ArrayList<>()).add(q);
+        }
+
+        CourseDraftDiff diff = new CourseDraftDiff(course, draft, draftQuizzes);
+        diff.diffObjectives(live.objectives(), next.objectives());
+        Map<Long, String> liveSectionTitles = diff.diffSections(live.sections(), next.sections());
+        diff.diffLessons(live.lessons(), next.lessons(), liveSectionTitles, liveQuizzes);
+        diff.diffResources(live.resources(), next.resources());
+        return diff;
+    }
+
+    // ====================== ACCESSORS =========================
+
+    List<Change<CourseObjective, CourseObjectiveDraft>> objectives() {
+        return objectives;
+    }
+
+    List<Change<CourseSection, CourseSectionDraft>> sections() {
+        return sections;
+    }
+
+    List<LessonChange> lessons() {
+        return lessons;
+    }
+
+    List<Change<LessonResource, LessonResourceDraft>> resources() {
+        return resources;
+    }
+
+    Map<Long, CourseSection> matchedSections() {
+        return matchedSections;
+    }
+
+    Map<Long, Lesson> matchedLessons() {
+        return matchedLessons;
+    }
+
+    List<QuizQuestionDraft> draftQuiz(LessonDraft lessonDraft) {
+        return draftQuizzes.getOrDefault(lessonDraft.getLessonDraftID(), List.of());
+    }
+
+    // ====================== RESPONSE (màn "changes" + summary thông báo) =========================
+
+    AdminCourseDraftChangesResponse toResponse() {
+        List<ObjectiveChangeResponse> objectiveChanges = objectives.stream()
+                .map(c -> ObjectiveChangeResponse.builder()
+                        .originalObjectiveId(c.live() != null ? c.live().getObjectiveID() : null)
+                        .draftObjectiveId(c.draft() != null ? c.draft().getObjectiveDraftID() : null)
+                        .changeType(label(c.kind()))
+                        .fieldChanges(c.fields())
+                        .build())
+                .toList();
+
+        List<SectionChangeResponse> sectionChanges = sections.stream()
+                .map(c -> SectionChangeResponse.builder()
+                        .originalSectionId(c.live() != null ? c.live().getSectionID() : null)
+                        .draftSectionId(c.draft() != null ? c.draft().getSectionDraftID() : null)
+                        .title(c.draft() != null ? c.draft().getTitle() : c.live().getTitle())
+                        .changeType(label(c.kind()))
+                        .fieldChanges(c.fields())
+                        .build())
+                .toList();
+
+        List<LessonChangeResponse> lessonChanges = lessons.stream()
+                .map(c -> {
+                    LessonType type = c.draft() != null ? c.draft().getLessonType() : c.live().getLessonType();
+                    return LessonChangeResponse.builder()
+                            .originalLessonId(c.live() != null ? c.live().getLessonID() : null)
+                            .draftLessonId(c.draft() != null ? c.draft().getLessonDraftID() : null)
+                            .title(c.draft() != null ? c.draft().getTitle() : c.live().getTitle())
+                            .lessonType(type != null ? type.name() : null)
+                            .changeType(label(c.kind()))
+                            .fieldChanges(c.fields())
+                            .resetUserProgressRequired(c.resetProgress())
+                            .build();
+                })
+                .toList();
+
+        List<ResourceChangeResponse> resourceChanges = resources.stream()
+                .map(c -> ResourceChangeResponse.builder()
+                        .originalResourceId(c.live() != null ? c.live().getResourceID() : null)
+                        .draftResourceId(c.draft() != null ? c.draft().getResourceDraftID() : null)
+                        .resourceTitle(c.draft() != null ? c.draft().getResourceTitle() : c.live().getResourceTitle())
+                        .changeType(label(c.kind()))
+                        .fieldChanges(c.fields())
+                        .build())
+                .toList();
+
+        return AdminCourseDraftChangesResponse.builder()
+                .courseId(courseId)
+                .draftId(draftId)
+                .courseChanges(courseChanges)
+                .objectives(objectiveChanges)
+                .sections(sectionChanges)
+                .lessons(lessonChanges)
+                .resources(resourceChanges)
+                .build();
+    }
+
+    // REORDER hiển thị như UPDATED (FE chỉ biết ADDED / UPDATED / DELETED), field orderIndex vẫn có trong list
+    private static String label(ChangeKind kind) {
+        return switch (kind) {
+            case INSERT -> "ADDED";
+            case UPDATE, REORDER -> "UPDATED";
+            case DELETE -> "DELETED";
+        };
+    }
+
+    // ====================== COURSE =========================
+
+    private static List<FieldChangeResponse> courseFieldChanges(Course course, CourseDraft draft) {
+        List<FieldChangeResponse> changes = new ArrayList<>();
+
+        compareField(changes, "title", course.getTitle(), draft.getTitle());
+        compareField(changes, "shortDescription", course.getShortDescription(), draft.getShortDescription());
+        compareField(changes, "description", course.getDescription(), draft.getDescription());
+        compareField(changes, "requirement", course.getRequirement(), draft.getRequirement());
+        compareField(changes, "level",
+                course.getLevel() != null ? course.getLevel().name() : null,
+                draft.getLevel() != null ? draft.getLevel().name() : null);
+        compareField(changes, "duration", str(course.getDuration()), str(draft.getDuration()));
+        compareField(changes, "price",
+                course.getPrice() != null ? course.getPrice().toPlainString() : null,
+                draft.getPrice() != null ? draft.getPrice().toPlainString() : null);
+        compareField(changes, "language", course.getLanguage(), draft.getLanguage());
+        compareField(changes, "thumbnailURL", course.getThumbnailURL(), draft.getThumbnailURL());
+        compareField(changes, "category",
+                course.getCategory() != null ? course.getCategory().getName() : null,
+                draft.getCategory() != null ? draft.getCategory().getName() : null);
+
+        return changes;
+    }
+
+    // ====================== OBJECTIVE =========================
+
+    private void diffObjectives(List<CourseObjective> live, List<CourseObjectiveDraft> drafts) {
+        Map<Long, CourseObjective> remaining = byId(live, CourseObjective::getObjectiveID);
+
+        for (CourseObjectiveDraft od : drafts) {
+            CourseObjective o = od.getOriginalObjectiveID() != null ? remaining.remove(od.getOriginalObjectiveID()) : null;
+            if (o == null) {
+                objectives.add(new Change<>(ChangeKind.INSERT, null, od,
+                        List.of(field("objectiveText", null, od.getObjectiveText()))));
+                continue;
+            }
+
+            List<FieldChangeResponse> fields = new ArrayList<>();
+            compareField(fields, "objectiveText", o.getObjectiveText(), od.getObjectiveText());
+            compareField(fields, "orderIndex", str(o.getOrderIndex()), str(od.getOrderIndex()));
+            if (!fields.isEmpty()) {
+                objectives.add(new Change<>(kindOf(fields), o, od, fields));
+            }
+        }
+
+        for (CourseObjective o : remaining.values()) {
+            objectives.add(new Change<>(ChangeKind.DELETE, o, null,
+                    List.of(field("objectiveText", o.getObjectiveText(), null))));
+        }
+    }
+
+    // ====================== SECTION =========================
+
+    // trả về sectionID -> title live (để hiển thị lesson chuyển section)
+    private Map<Long, String> diffSections(List<CourseSection> live, List<CourseSectionDraft> drafts) {
+        Map<Long, String> liveTitles = new HashMap<>();
+        live.forEach(s -> liveTitles.put(s.getSectionID(), s.getTitle()));
+        Map<Long, CourseSection> remaining = byId(live, CourseSection::getSectionID);
+
+        for (CourseSectionDraft sd : drafts) {
+            CourseSection s = sd.getOriginalSectionID() != null ? remaining.remove(sd.getOriginalSectionID()) : null;
+            if (s == null) {
+                sections.add(new Change<>(ChangeKind.INSERT, null, sd,
+                        List.of(field("title", null, sd.getTitle()))));
+                continue;
+            }
+            matchedSections.put(sd.getSectionDraftID(), s);
+
+            List<FieldChangeResponse> fields = new ArrayList<>();
+            compareField(fields, "title", s.getTitle(), sd.getTitle());
+            compareField(fields, "description", s.getDescription(), sd.getDescription());
+            compareField(fields, "orderIndex", str(s.getOrderIndex()), str(sd.getOrderIndex()));
+            if (!fields.isEmpty()) {
+                sections.add(new Change<>(kindOf(fields), s, sd, fields));
+            }
+        }
+
+        for (CourseSection s : remaining.values()) {
+            sections.add(new Change<>(ChangeKind.DELETE, s, null,
+                    List.of(field("title", s.getTitle(), null))));
+        }
+        return liveTitles;
+    }
+
+    // ====================== LESSON + QUIZ =========================
+
+    private void diffLessons(List<Lesson> live, List<LessonDraft> drafts, Map<Long, String> liveSectionTitles,
+                             Map<Long, List<QuizQuestion>> liveQuizzes) {
+        Map<Long, Lesson> remaining = byId(live, Lesson::getLessonID);
+        List<LessonChange> updated = new ArrayList<>();
+        List<LessonChange> inserted = new ArrayList<>();
+
+        for (LessonDraft ld : drafts) {
+            Lesson l = ld.getOriginalLessonID() != null ? remaining.remove(ld.getOriginalLessonID()) : null;
+            if (l == null) {
+                inserted.add(new LessonChange(ChangeKind.INSERT, null, ld,
+                        List.of(field("NEW_LESSON", null, ld.getTitle())), false,
+                        ld.getLessonType() == LessonType.Quiz ? QuizSync.REBUILD : QuizSync.KEEP));
+                continue;
+            }
+            matchedLessons.put(ld.getLessonDraftID(), l);
+
+            List<FieldChangeResponse> fields = new ArrayList<>();
+            compareField(fields, "title", l.getTitle(), ld.getTitle());
+            compareField(fields, "lessonType",
+                    l.getLessonType() != null ? l.getLessonType().name() : null,
+                    ld.getLessonType() != null ? ld.getLessonType().name() : null);
+            compareField(fields, "duration", str(l.getDuration()), str(ld.getDuration()));
+            compareField(fields, "videoURL", l.getVideoURL(), ld.getVideoURL());
+            compareField(fields, "content", l.getContent(), ld.getContent());
+            compareField(fields, "orderIndex", str(l.getOrderIndex()), str(ld.getOrderIndex()));
+
+            CourseSectionDraft targetDraft = ld.getSectionDraft();
+            CourseSection target = matchedSections.get(targetDraft.getSectionDraftID());
+            Long liveSectionId = l.getSection().getSectionID();
+            if (target == null || !target.getSectionID().equals(liveSectionId)) {
+                compareField(fields, "section", liveSectionTitles.get(liveSectionId), targetDraft.getTitle());
+            }
+
+            boolean quizChanged = isQuizChanged(liveQuizzes.getOrDefault(l.getLessonID(), List.of()),
+                    draftQuiz(ld));
+            QuizSync quiz = quizSync(l, ld, quizChanged);
+            boolean reset = isResetProgressRequired(l, ld, quizChanged);
+
+            // reset = true nhưng không field meta nào đổi (ví dụ chỉ sửa quiz) vẫn tạo record
+            if (!fields.isEmpty() || reset || quiz != QuizSync.KEEP) {
+                ChangeKind kind = reset || quiz != QuizSync.KEEP ? ChangeKind.UPDATE : kindOf(fields);
+                updated.add(new LessonChange(kind, l, ld, fields, reset, quiz));
+            }
+        }
+
+        // thứ tự hiển thị: xoá → sửa → thêm
+        for (Lesson l : remaining.values()) {
+            lessons.add(new LessonChange(ChangeKind.DELETE, l, null, List.of(), true, QuizSync.KEEP));
+        }
+        lessons.addAll(updated);
+        lessons.addAll(inserted);
+    }
+
+    // QUAN TRỌNG: đổi kiểu lesson hoặc đổi nội dung chính (video / bài đọc / quiz) → reset tiến độ
+    private static boolean isResetProgressRequired(Lesson live, LessonDraft draft, boolean quizChanged) {
+        LessonType liveType = live.getLessonType();
+        LessonType draftType = draft.getLessonType();
+
+        if (liveType == null) return false;
+
+        if (draftType != null && liveType != draftType) {
+            return true;
+        }
+
+        return switch (liveType) {
+            case Video -> !Objects.equals(live.getVideoURL(), draft.getVideoURL());
+            case Reading -> !Objects.equals(live.getContent(), draft.getContent());
+            case Quiz -> quizChanged;
+            default -> false;
+        };
+    }
+
+    /**
+     * Draft không phải QUIZ: live đang là QUIZ → DROP, ngược lại KEEP.
+     * Draft là QUIZ: live cũng QUIZ và nội dung không đổi → KEEP, còn lại REBUILD.
+     */
+    private static QuizSync quizSync(Lesson live, LessonDraft draft, boolean quizChanged) {
+        if (draft.getLessonType() != LessonType.Quiz) {
+            return live.getLessonType() == LessonType.Quiz ? QuizSync.DROP : QuizSync.KEEP;
+        }
+        return live.getLessonType() == LessonType.Quiz && !quizChanged ? QuizSync.KEEP : QuizSync.REBUILD;
+    }
+
+    private static boolean isQuizChanged(List<QuizQuestion> live, List<QuizQuestionDraft> drafts) {
+        if (live.size() != drafts.size()) {
+            return true;
+        }
+
+        for (int i = 0; i < live.size(); i++) {
+            QuizQuestion q = live.get(i);
+            QuizQuestionDraft dq = drafts.get(i);
+
+            if (!Objects.equals(q.getQuestionText(), dq.getQuestionText())
+                    || !sameScore(q.getScore(), dq.getScore())
+                    || !Objects.equals(q.getOrderIndex(), dq.getOrderIndex())) {
+                return true;
+            }
+
+            List<QuizOption> options = sortedOptions(q);
+            List<QuizOptionDraft> draftOptions = sortedOptions(dq);
+            if (options.size() != draftOptions.size()) {
+                return true;
+            }
+
+            for (int j = 0; j < options.size(); j++) {
+                QuizOption o = options.get(j);
+                QuizOptionDraft od = draftOptions.get(j);
+
+                if (!Objects.equals(o.getOptionText(), od.getOptionText())
+                        || !Objects.equals(o.getIsCorrect(), od.getIsCorrect())
+                        || !Objects.equals(o.getOrderIndex(), od.getOrderIndex())) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    // ====================== RESOURCE =========================
+
+    private void diffResources(List<LessonResource> live, List<LessonResourceDraft> drafts) {
+        Map<Long, LessonResource> remaining = byId(live, LessonResource::getResourceID);
+        List<Change<LessonResource, LessonResourceDraft>> updated = new ArrayList<>();
+        List<Change<LessonResource, LessonResourceDraft>> inserted = new ArrayList<>();
+
+        for (LessonResourceDraft rd : drafts) {
+            LessonResource r = rd.getOriginalResourceID() != null ? remaining.remove(rd.getOriginalResourceID()) : null;
+            if (r == null) {
+                inserted.add(new Change<>(ChangeKind.INSERT, null, rd,
+                        List.of(field("NEW_RESOURCE", null, rd.getResourceTitle()))));
+                continue;
+            }
+
+            List<FieldChangeResponse> fields = new ArrayList<>();
+            compareField(fields, "resourceTitle", r.getResourceTitle(), rd.getResourceTitle());
+            compareField(fields, "resourceType",
+                    r.getResourceType() != null ? r.getResourceType().name() : null,
+                    rd.getResourceType() != null ? rd.getResourceType().name() : null);
+            compareField(fields, "resourceURL", r.getResourceURL(), rd.getResourceURL());
+
+            Lesson target = matchedLessons.get(rd.getLessonDraft().getLessonDraftID());
+            if (target == null || !target.getLessonID().equals(r.getLesson().getLessonID())) {
+                fields.add(field("lesson", r.getLesson().getTitle(), rd.getLessonDraft().getTitle()));
+            }
+
+            if (!fields.isEmpty()) {
+                updated.add(new Change<>(kindOf(fields), r, rd, fields));
+            }
+        }
+
+        for (LessonResource r : remaining.values()) {
+            resources.add(new Change<>(ChangeKind.DELETE, r, null,
+                    List.of(field("resourceTitle", r.getResourceTitle(), null))));
+        }
+        resources.addAll(updated);
+        resources.addAll(inserted);
+    }
+
+    // ====================== HELPER =========================
+
+    private static ChangeKind kindOf(List<FieldChangeResponse> fields) {
+        return fields.stream().allMatch(f -> REORDER_FIELDS.contains(f.getField()))
+                ? ChangeKind.REORDER
+                : ChangeKind.UPDATE;
+    }
+
+    private static void compareField(List<FieldChangeResponse> list, String field, String oldVal, String newVal) {
+        if (!Objects.equals(oldVal, newVal)) {
+            list.add(field(field, oldVal, newVal));
+        }
+    }
+
+    private static FieldChangeResponse field(String field, String oldVal, String newVal) {
+        return FieldChangeResponse.builder()
+                .field(field)
+                .oldValue(oldVal)
+                .newValue(newVal)
+                .build();
+    }
+
+    private static String str(Object value) {
+        return value != null ? value.toString() : null;
+    }
+
+    private static boolean sameScore(BigDecimal a, BigDecimal b) {
+        return a == null ? b == null : b != null && a.compareTo(b) == 0;
+    }
+
+    // giữ thứ tự load, bỏ bản trùng id
+    private static <T> Map<Long, T> byId(List<T> rows, Function<T, Long> id) {
+        Map<Long, T> map = new LinkedHashMap<>();
+        rows.forEach(r -> map.putIfAbsent(id.apply(r), r));
+        return map;
+    }
+
+    private static List<QuizQuestion> sortedQuestions(List<QuizQuestion> questions) {
+        List<QuizQuestion> sorted = new ArrayList<>(questions);
+        sorted.sort(Comparator.comparing(QuizQuestion::getOrderIndex, ORDER)
+                .thenComparing(QuizQuestion::getQuestionID, Comparator.nullsLast(Long::compareTo)));
+        return sorted;
+    }
+
+    private static List<QuizQuestionDraft> sortedDraftQuestions(List<QuizQuestionDraft> questions) {
+        List<QuizQuestionDraft> sorted = new ArrayList<>(questions);
+        sorted.sort(Comparator.comparing(QuizQuestionDraft::getOrderIndex, ORDER)
+                .thenComparing(QuizQuestionDraft::getQuestionDraftID, Comparator.nullsLast(Long::compareTo)));
+        return sorted;
+    }
+
+    // Bản sao đã sắp, không thay collection của entity (options có orphanRemoval)
+    private static List<QuizOption> sortedOptions(QuizQuestion q) {
+        List<QuizOption> options = q.getOptions() == null ? new ArrayList<>() : new ArrayList<>(q.getOptions());
+        options.sort(Comparator.comparing(QuizOption::getOrderIndex, ORDER)
+                .thenComparing(QuizOption::getOptionID, Comparator.nullsLast(Long::compareTo)));
+        return options;
+    }
+
+    static List<QuizOptionDraft> sortedOptions(QuizQuestionDraft q) {
+        List<QuizOptionDraft> options = q.getOptions() == null ? new ArrayList<>() : new ArrayList<>(q.getOptions());
+        options.sort(Comparator.comparing(QuizOptionDraft::getOrderIndex, ORDER)
+                .thenComparing(QuizOptionDraft::getOptionDraftID, Comparator.nullsLast(Long::compareTo)));
+        return options;
+    }
+}
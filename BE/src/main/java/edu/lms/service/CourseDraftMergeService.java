@@ -0,0 +1,294 @@
+package edu.lms.service;
+
+import edu.lms.entity.*;
+import edu.lms.enums.LessonType;
+import edu.lms.repository.*;
+import edu.lms.service.CourseDraftDiff.ChangeKind;
+import edu.lms.service.CourseDraftDiff.QuizSync;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Duyệt draft: so sánh + áp dụng curriculum draft lên course live.
+ *  - diff: đọc cây live và cây draft, mỗi tầng 1 query (số query cố định), so sánh trong bộ nhớ (CourseDraftDiff)
+ *  - apply: ghi đúng change set đó theo lô — INSERT / DELETE bằng JDBC batch (CourseRepositoryCustom),
+ *    UPDATE qua dirty checking của entity đã load (Hibernate gom batch, hibernate.jdbc.batch_size),
+ *    xoá cây draft bằng 1 câu DELETE / bảng
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class CourseDraftMergeService {
+
+    private final CourseRepository courseRepository;
+    private final CourseSectionRepository courseSectionRepository;
+    private final LessonRepository lessonRepository;
+    private final LessonResourceRepository lessonResourceRepository;
+    private final QuizQuestionRepository quizQuestionRepository;
+    private final CourseObjectiveRepository courseObjectiveRepository;
+    private final CourseDraftRepository courseDraftRepository;
+    private final CourseSectionDraftRepository courseSectionDraftRepository;
+    private final LessonDraftRepository lessonDraftRepository;
+    private final LessonResourceDraftRepository lessonResourceDraftRepository;
+    private final QuizQuestionDraftRepository quizQuestionDraftRepository;
+    private final CourseObjectiveDraftRepository courseObjectiveDraftRepository;
+    private final QuizDefinitionCache quizDefinitionCache;
+
+    @Transactional(readOnly = true)
+    public CourseDraftDiff diff(Course course, CourseDraft draft) {
+        return CourseDraftDiff.compute(course, draft, loadLive(course), loadDraft(draft));
+    }
+
+    /**
+     * Áp dụng change set lên course live rồi xoá draft. Gọi trong transaction duyệt draft,
+     * diff phải vừa tính từ chính course / draft này.
+     */
+    @Transactional
+    public void apply(Course course, CourseDraft draft, CourseDraftDiff diff) {
+        // 1. Quiz cũ của lesson REBUILD / DROP → xoá trước khi insert quiz mới
+        List<Long> quizLessonIds = diff.lessons().stream()
+                .filter(c -> c.live() != null && c.kind() != ChangeKind.DELETE && c.quiz() != QuizSync.KEEP)
+                .map(c -> c.live().getLessonID())
+                .toList();
+        courseRepository.deleteQuizzesByLessonIds(quizLessonIds);
+
+        // 2. Section
+        Map<Long, CourseSection> sectionByDraftId = new HashMap<>(diff.matchedSections());
+        List<CourseSection> newSections = new ArrayList<>();
+        List<Long> deletedSectionIds = new ArrayList<>();
+        for (CourseDraftDiff.Change<CourseSection, CourseSectionDraft> c : diff.sections()) {
+            CourseSectionDraft sd = c.draft();
+            switch (c.kind()) {
+                case INSERT -> {
+                    CourseSection s = CourseSection.builder()
+                            .course(course)
+                            .title(sd.getTitle())
+                            .description(sd.getDescription())
+                            .orderIndex(sd.getOrderIndex())
+                            .build();
+                    newSections.add(s);
+                    sectionByDraftId.put(sd.getSectionDraftID(), s);
+                }
+                case UPDATE, REORDER -> {
+                    c.live().setTitle(sd.getTitle());
+                    c.live().setDescription(sd.getDescription());
+                    c.live().setOrderIndex(sd.getOrderIndex());
+                }
+                case DELETE -> deletedSectionIds.add(c.live().getSectionID());
+            }
+        }
+        courseRepository.insertSections(newSections);
+
+        // 3. Lesson
+        Map<Long, Lesson> lessonByDraftId = new HashMap<>(diff.matchedLessons());
+        List<Lesson> newLessons = new ArrayList<>();
+        List<Long> deletedLessonIds = new ArrayList<>();
+        List<Long> resetLessonIds = new ArrayList<>();
+        for (CourseDraftDiff.LessonChange c : diff.lessons()) {
+            LessonDraft ld = c.draft();
+            switch (c.kind()) {
+                case INSERT -> {
+                    Lesson l = Lesson.builder()
+                            .section(sectionByDraftId.get(ld.getSectionDraft().getSectionDraftID()))
+                            .title(ld.getTitle())
+                            .duration(ld.getDuration())
+                            .lessonType(ld.getLessonType())
+                            .videoURL(ld.getVideoURL())
+                            .content(ld.getContent())
+                            .orderIndex(ld.getOrderIndex())
+                            .createdAt(LocalDateTime.now())
+                            .build();
+                    newLessons.add(l);
+                    lessonByDraftId.put(ld.getLessonDraftID(), l);
+                }
+                case UPDATE, REORDER -> {
+                    Lesson l = c.live();
+                    l.setSection(sectionByDraftId.get(ld.getSectionDraft().getSectionDraftID()));
+                    l.setTitle(ld.getTitle());
+                    l.setDuration(ld.getDuration());
+                    l.setLessonType(ld.getLessonType());
+                    l.setVideoURL(ld.getVideoURL());
+                    l.setContent(ld.getContent());
+                    l.setOrderIndex(ld.getOrderIndex());
+                    if (c.resetProgress()) {
+                        resetLessonIds.add(l.getLessonID());
+                    }
+                }
+                case DELETE -> deletedLessonIds.add(c.live().getLessonID());
+            }
+        }
+        courseRepository.insertLessons(newLessons);
+
+        // 4. Resource
+        List<LessonResource> newResources = new ArrayList<>();
+        List<Long> deletedResourceIds = new ArrayList<>();
+        for (CourseDraftDiff.Change<LessonResource, LessonResourceDraft> c : diff.resources()) {
+            LessonResourceDraft rd = c.draft();
+            switch (c.kind()) {
+                case INSERT -> newResources.add(LessonResource.builder()
+                        .lesson(lessonByDraftId.get(rd.getLessonDraft().getLessonDraftID()))
+                        .resourceType(rd.getResourceType())
+                        .resourceTitle(rd.getResourceTitle())
+                        .resourceURL(rd.getResourceURL())
+                        .uploadedAt(LocalDateTime.now())
+                        .build());
+                case UPDATE, REORDER -> {
+                    LessonResource r = c.live();
+                    r.setLesson(lessonByDraftId.get(rd.getLessonDraft().getLessonDraftID()));
+                    r.setResourceType(rd.getResourceType());
+                    r.setResourceTitle(rd.getResourceTitle());
+                    r.setResourceURL(rd.getResourceURL());
+                }
+                case DELETE -> deletedResourceIds.add(c.live().getResourceID());
+            }
+        }
+        courseRepository.insertLessonResources(newResources);
+
+        // 5. Quiz của lesson REBUILD (lesson mới là Quiz cũng REBUILD)
+        List<QuizQuestion> newQuestions = new ArrayList<>();
+        List<QuizOption> newOptions = new ArrayList<>();
+        for (CourseDraftDiff.LessonChange c : diff.lessons()) {
+            if (c.kind() == ChangeKind.DELETE || c.quiz() != QuizSync.REBUILD) continue;
+
+            Lesson lesson = lessonByDraftId.get(c.draft().getLessonDraftID());
+            for (QuizQuestionDraft qd : diff.draftQuiz(c.draft())) {
+                QuizQuestion q = QuizQuestion.builder()
+                        .lesson(lesson)
+                        .questionText(qd.getQuestionText())
+                        .orderIndex(qd.getOrderIndex())
+                        .explanation(qd.getExplanation())
+                        .score(qd.getScore())
+                        .build();
+                newQuestions.add(q);
+
+                for (QuizOptionDraft od : CourseDraftDiff.sortedOptions(qd)) {
+                    newOptions.add(QuizOption.builder()
+                            .question(q)
+                            .optionText(od.getOptionText())
+                            .isCorrect(od.getIsCorrect())
+                            .orderIndex(od.getOrderIndex())
+                            .build());
+                }
+            }
+        }
+        courseRepository.insertQuizQuestions(newQuestions);
+        courseRepository.insertQuizOptions(newOptions);
+
+        // 6. Objective
+        List<CourseObjective> newObjectives = new ArrayList<>();
+        List<Long> deletedObjectiveIds = new ArrayList<>();
+        for (CourseDraftDiff.Change<CourseObjective, CourseObjectiveDraft> c : diff.objectives()) {
+            CourseObjectiveDraft od = c.draft();
+            switch (c.kind()) {
+                case INSERT -> newObjectives.add(CourseObjective.builder()
+                        .course(course)
+                        .objectiveText(od.getObjectiveText())
+                        .orderIndex(od.getOrderIndex())
+                        .build());
+                case UPDATE, REORDER -> {
+                    c.live().setObjectiveText(od.getObjectiveText());
+                    c.live().setOrderIndex(od.getOrderIndex());
+                }
+                case DELETE -> deletedObjectiveIds.add(c.live().getObjectiveID());
+            }
+        }
+        courseRepository.insertObjectives(newObjectives);
+
+        // 7. UPDATE xuống DB trước khi xoá (lesson / resource chuyển khỏi section / lesson sắp bị xoá)
+        courseRepository.flush();
+
+        // 8. Xoá từ lá lên gốc + reset tiến độ lesson đổi nội dung chính
+        courseRepository.deleteLessonResources(deletedResourceIds);
+        courseRepository.deleteLessonsCascade(deletedLessonIds);
+        courseRepository.deleteSectionsCascade(deletedSectionIds);
+        courseRepository.deleteObjectives(deletedObjectiveIds);
+        courseRepository.deleteLessonProgress(resetLessonIds);
+
+        // Quiz live đổi / bị xoá → bỏ bản compile đang cache (evict lại sau khi transaction kết thúc)
+        List<Long> evicted = new ArrayList<>(quizLessonIds);
+        evicted.addAll(deletedLessonIds);
+        if (!evicted.isEmpty()) {
+            quizDefinitionCache.evictAll(evicted);
+        }
+
+        // 9. Xoá draft đã merge
+        courseDraftRepository.deleteDraftTree(draft.getDraftID());
+
+        log.info("[DRAFT APPROVE] Course [{}] <- draft [{}]: sections +{} -{}, lessons +{} -{} (reset {}), "
+                        + "resources +{} -{}, questions +{}, objectives +{} -{}",
+                course.getCourseID(), draft.getDraftID(), newSections.size(), deletedSectionIds.size(),
+                newLessons.size(), deletedLessonIds.size(), resetLessonIds.size(),
+                newResources.size(), deletedResourceIds.size(), newQuestions.size(),
+                newObjectives.size(), deletedObjectiveIds.size());
+    }
+
+    // ====================== LOAD =========================
+
+    private CourseDraftDiff.LiveTree loadLive(Course course) {
+        List<CourseSection> sections = courseSectionRepository.findByCourse_CourseID(course.getCourseID());
+
+        List<Long> sectionIds = sections.stream().map(CourseSection::getSectionID).toList();
+        List<Lesson> lessons = sectionIds.isEmpty()
+                ? List.of()
+                : lessonRepository.findBySection_SectionIDIn(sectionIds);
+
+        List<Long> lessonIds = lessons.stream().map(Lesson::getLessonID).toList();
+        List<LessonResource> resources = lessonIds.isEmpty()
+                ? List.of()
+                : lessonResourceRepository.findByLesson_LessonIDIn(lessonIds);
+
+        List<Long> quizLessonIds = lessons.stream()
+                .filter(l -> l.getLessonType() == LessonType.Quiz)
+                .map(Lesson::getLessonID)
+                .toList();
+        List<QuizQuestion> questions = quizLessonIds.isEmpty()
+                ? List.of()
+                : quizQuestionRepository.findWithOptionsByLessonIdIn(quizLessonIds);
+
+        List<CourseObjective> objectives =
+                courseObjectiveRepository.findByCourse_CourseIDOrderByOrderIndexAsc(course.getCourseID());
+
+        return new CourseDraftDiff.LiveTree(sections, lessons, resources, questions, objectives);
+    }
+
+    private CourseDraftDiff.DraftTree loadDraft(CourseDraft draft) {
+        List<CourseSectionDraft> sections =
+                courseSectionDraftRepository.findByDraft_DraftIDOrderByOrderIndexAsc(draft.getDraftID());
+
+        // lesson giữ thứ tự section rồi orderIndex
+        Map<Long, Integer> sectionPosition = new HashMap<>();
+        sections.forEach(s -> sectionPosition.put(s.getSectionDraftID(), sectionPosition.size()));
+        List<LessonDraft> lessons = sections.isEmpty()
+                ? List.of()
+                : lessonDraftRepository.findBySectionDraft_SectionDraftIDIn(new ArrayList<>(sectionPosition.keySet()))
+                        .stream()
+                        .sorted(Comparator
+                                .comparing((LessonDraft l) -> sectionPosition.get(l.getSectionDraft().getSectionDraftID()))
+                                .thenComparing(LessonDraft::getOrderIndex, Comparator.nullsLast(Integer::compareTo))
+                                .thenComparing(LessonDraft::getLessonDraftID))
+                        .toList();
+
+        List<Long> lessonIds = lessons.stream().map(LessonDraft::getLessonDraftID).toList();
+        List<LessonResourceDraft> resources = lessonIds.isEmpty()
+                ? List.of()
+                : lessonResourceDraftRepository.findByLessonDraft_LessonDraftIDIn(lessonIds);
+
+        List<Long> quizLessonIds = lessons.stream()
+                .filter(l -> l.getLessonType() == LessonType.Quiz)
+                .map(LessonDraft::getLessonDraftID)
+                .toList();
+        List<QuizQuestionDraft> questions = quizLessonIds.isEmpty()
+                ? List.of()
+                : quizQuestionDraftRepository.findWithOptionsByLessonDraftIdIn(quizLessonIds);
+
+        List<CourseObjectiveDraft> objectives =
+                courseObjectiveDraftRepository.findByDraft_DraftIDOrderByOrderIndexAsc(draft.getDraftID());
+
+        return new CourseDraftDiff.DraftTree(sections, lessons, resources, questions, objectives);
+    }
+}
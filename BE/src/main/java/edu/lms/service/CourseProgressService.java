@@ -0,0 +1,169 @@
+package edu.lms.service;
+
+import edu.lms.entity.CourseSection;
+import edu.lms.entity.Enrollment;
+import edu.lms.entity.User;
+import edu.lms.entity.UserCourseSection;
+import edu.lms.enums.EnrollmentStatus;
+import edu.lms.repository.EnrollmentRepository;
+import edu.lms.repository.LessonRepository;
+import edu.lms.repository.UserCourseSectionRepository;
+import edu.lms.repository.UserLessonRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Tiến độ section / course của learner theo bộ đếm:
+ *  - UserCourseSection.completedLessons tăng / giảm theo delta khi 1 lesson chuyển DONE / chưa DONE,
+ *    % = completedLessons / số lesson của section (số lesson cache trong bộ nhớ theo section)
+ *  - curriculum thay đổi → recalculateCourse: 1 câu UPDATE đếm lại cho mọi learner của course
+ *  - enrollment Completed khi mọi section của course đạt 100% (1 query aggregate)
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class CourseProgressService {
+
+    private final UserCourseSectionRepository userCourseSectionRepository;
+    private final UserLessonRepository userLessonRepository;
+    private final LessonRepository lessonRepository;
+    private final EnrollmentRepository enrollmentRepository;
+
+    // sectionId -> số lesson; xoá hết khi curriculum đổi (recalculateCourse)
+    private final Map<Long, Long> sectionLessonCounts = new ConcurrentHashMap<>();
+    // (learner, section) đang khởi tạo bộ đếm; giữ tới khi transaction khởi tạo kết thúc
+    private final Map<CounterKey, Boolean> initializingCounters = new ConcurrentHashMap<>();
+
+    /**
+     * Lesson vừa chuyển sang DONE (delta = 1) hoặc bị bỏ DONE (delta = -1).
+     * Gọi trong transaction đã ghi UserLesson, sau đó kiểm tra course hoàn thành.
+     */
+    @Transactional
+    public void onLessonDoneChanged(User user, CourseSection section, Enrollment enrollment, int delta) {
+        long total = lessonCount(section.getSectionID());
+
+        int updated = userCourseSectionRepository.applyCompletedDelta(
+                user.getUserID(), section.getSectionID(), delta, total);
+
+        // Chưa có bản ghi hoặc bản ghi cũ chưa có bộ đếm → đếm 1 lần bằng aggregate
+        if (updated == 0) {
+            initCounterOnce(user, section, enrollment, delta, total);
+        }
+
+        if (delta > 0) {
+            completeEnrollmentIfFinished(section.getCourse().getCourseID(), enrollment);
+        }
+    }
+
+    /**
+     * Curriculum của course thay đổi (duyệt draft, thêm / xoá lesson) → đếm lại set-based
+     */
+    @Transactional
+    public void recalculateCourse(Long courseId) {
+        sectionLessonCounts.clear();
+        int rows = userCourseSectionRepository.recalculateCourseProgress(courseId);
+        log.info("[PROGRESS] Recalculated {} section progress rows for course {}", rows, courseId);
+    }
+
+    long lessonCount(Long sectionId) {
+        return sectionLessonCounts.computeIfAbsent(sectionId, lessonRepository::countBySection_SectionID);
+    }
+
+    // ====================== HELPER =========================
+
+    /**
+     * 2 lesson cùng section DONE đồng thời: chỉ 1 request đếm aggregate, request còn lại
+     * (aggregate kia chưa thấy lesson của nó) cộng delta lên bản ghi vừa tạo.
+     */
+    private void initCounterOnce(User user, CourseSection section, Enrollment enrollment, int delta, long total) {
+        CounterKey key = new CounterKey(user.getUserID(), section.getSectionID());
+        boolean[] initialized = {false};
+        initializingCounters.computeIfAbsent(key, k -> {
+            initCounter(user, section, enrollment, total);
+            initialized[0] = true;
+            return Boolean.TRUE;
+        });
+
+        if (initialized[0]) {
+            releaseAfterCompletion(key);
+            return;
+        }
+
+        // UPDATE chờ row lock tới khi transaction khởi tạo commit; 0 dòng = transaction đó đã rollback
+        if (userCourseSectionRepository.applyCompletedDelta(
+                user.getUserID(), section.getSectionID(), delta, total) == 0) {
+            initCounter(user, section, enrollment, total);
+        }
+    }
+
+    private void releaseAfterCompletion(CounterKey key) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            initializingCounters.remove(key);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                initializingCounters.remove(key);
+            }
+        });
+    }
+
+    private void initCounter(User user, CourseSection section, Enrollment enrollment, long total) {
+        // [tổng lesson, lesson đã done] của section
+        Object[] counts = userLessonRepository
+                .countSectionProgress(user.getUserID(), section.getSectionID())
+                .stream()
+                .findFirst()
+                .orElse(null);
+        long completed = counts != null && counts[1] != null ? ((Number) counts[1]).longValue() : 0;
+
+        UserCourseSection userCourseSection = userCourseSectionRepository
+                .findByUser_UserIDAndSection_SectionID(user.getUserID(), section.getSectionID())
+                .orElseGet(() -> UserCourseSection.builder()
+                        .user(user)
+                        .section(section)
+                        .enrollment(enrollment)
+                        .progress(BigDecimal.ZERO)
+                        .build());
+
+        int completedLessons = (int) Math.min(completed, total);
+        userCourseSection.setCompletedLessons(completedLessons);
+        userCourseSection.setProgress(total == 0
+                ? BigDecimal.ZERO
+                : BigDecimal.valueOf(completedLessons * 100.0 / total));
+        // flush ngay: request đang chờ ở initCounterOnce cần thấy (và chờ lock) dòng này
+        userCourseSectionRepository.saveAndFlush(userCourseSection);
+    }
+
+    private void completeEnrollmentIfFinished(Long courseId, Enrollment enrollment) {
+        // [tổng section của course, số section learner đã 100%] trong 1 query
+        Object[] counts = userCourseSectionRepository
+                .countCourseProgress(enrollment.getEnrollmentID(), courseId)
+                .stream()
+                .findFirst()
+                .orElse(null);
+        if (counts == null) return;
+
+        long totalSections = ((Number) counts[0]).longValue();
+        long completedSections = counts[1] != null ? ((Number) counts[1]).longValue() : 0;
+        if (totalSections == 0 || completedSections < totalSections) {
+            return;
+        }
+
+        if (enrollment.getStatus() != EnrollmentStatus.Completed) {
+            enrollment.setStatus(EnrollmentStatus.Completed);
+            enrollmentRepository.save(enrollment);
+        }
+    }
+
+    private record CounterKey(Long userId, Long sectionId) {}
+}
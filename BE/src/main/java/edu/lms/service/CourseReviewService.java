@@ -28,6 +28,8 @@ public class CourseReviewService {
     EnrollmentRepository enrollmentRepository;
     TutorRepository tutorRepository;
     UserCourseSectionRepository userCourseSectionRepository;
+    TutorProfileService tutorProfileService;
+
     @Transactional
     public CourseReviewResponse createReview(Long courseId, CourseReviewRequest request) {
         // Lấy user từ JWT token
@@ -79,6 +81,8 @@ public class CourseReviewService {
                 .build();
 
         courseReviewRepository.save(review);
+        // Rating / số review của course hiển thị trên trang chi tiết tutor
+        tutorProfileService.evict(course.getTutor().getTutorID());
 
         return CourseReviewResponse.builder()
                 .feedbackID(review.getReviewID())
@@ -112,7 +116,7 @@ public class CourseReviewService {
         // Nếu entity có field updatedAt => set thêm ở đây
 
         courseReviewRepository.save(review);
-
+        tutorProfileService.evict(review.getCourse().getTutor().getTutorID());
 
         // Trả về response
         return CourseReviewResponse.builder()
@@ -138,9 +142,7 @@ public class CourseReviewService {
             throw new AppException(ErrorCode.UNAUTHORIZED);
         }
 
-        // Tutor tutor = review.getCourse().getTutor();
-
         courseReviewRepository.delete(review);
-
+        tutorProfileService.evict(review.getCourse().getTutor().getTutorID());
     }
 }
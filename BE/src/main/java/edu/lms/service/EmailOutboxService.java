@@ -0,0 +1,205 @@
+package edu.lms.service;
+
+import edu.lms.entity.EmailOutbox;
+import edu.lms.enums.EmailOutboxStatus;
+import edu.lms.listener.EmailOutboxEnqueuedEvent;
+import edu.lms.repository.EmailOutboxRepository;
+import edu.lms.repository.EmailOutboxRepositoryCustom.Failure;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Outbox email: nghiệp vụ ghi email vào bảng email_outbox trong chính transaction của nó (1 JDBC batch),
+ * dispatcher gửi sau commit ở background.
+ *  - claim theo lô bằng UPDATE có điều kiện (nhiều node không gửi trùng)
+ *  - cả lô đưa vào MailDispatcher (gửi trên các phiên SMTP dùng lại của SmtpSessionPool),
+ *    chờ kết quả từng email (tối đa sendTimeout cho cả lô) rồi ghi trạng thái bằng 2 câu batch
+ *  - lỗi → FAILED, retry với backoff luỹ thừa; quá maxAttempts → DEAD
+ */
+@Slf4j
+@Service
+public class EmailOutboxService {
+
+    private static final int MAX_ERROR_LENGTH = 1000;
+    private static final String TEMPLATE = "outbox";
+
+    private final EmailOutboxRepository emailOutboxRepository;
+    private final MailDispatcher mailDispatcher;
+    private final ApplicationEventPublisher eventPublisher;
+    private final int batchSize;
+    private final int maxAttempts;
+    private final Duration retryBackoff;
+    private final Duration claimLease;
+    private final Duration sendTimeout;
+
+    // 1 vòng dispatch / node; trigger sau commit và job poll không chạy chồng nhau
+    private final AtomicBoolean dispatching = new AtomicBoolean();
+
+    @Autowired
+    public EmailOutboxService(
+            EmailOutboxRepository emailOutboxRepository,
+            MailDispatcher mailDispatcher,
+            ApplicationEventPublisher eventPublisher,
+            @Value("${mail-outbox.batch-size:200}") int batchSize,
+            @Value("${mail-outbox.max-attempts:5}") int maxAttempts,
+            @Value("${mail-outbox.retry-backoff-seconds:30}") long retryBackoffSeconds,
+            @Value("${mail-outbox.claim-lease-seconds:300}") long claimLeaseSeconds,
+            @Value("${mail-outbox.send-timeout-ms:120000}") long sendTimeoutMs
+    ) {
+        this.emailOutboxRepository = emailOutboxRepository;
+        this.mailDispatcher = mailDispatcher;
+        this.eventPublisher = eventPublisher;
+        this.batchSize = batchSize;
+        this.maxAttempts = maxAttempts;
+        this.retryBackoff = Duration.ofSeconds(retryBackoffSeconds);
+        this.claimLease = Duration.ofSeconds(claimLeaseSeconds);
+        this.sendTimeout = Duration.ofMillis(sendTimeoutMs);
+    }
+
+    /**
+     * Ghi email vào outbox trong transaction hiện tại (mỗi người nhận 1 row).
+     * Transaction rollback thì không email nào được gửi.
+     */
+    @Transactional
+    public void enqueue(List<SimpleMailMessage> messages) {
+        if (messages == null || messages.isEmpty()) {
+            return;
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        List<EmailOutbox> rows = new ArrayList<>();
+        for (SimpleMailMessage message : messages) {
+            if (message.getTo() == null) continue;
+            for (String to : message.getTo()) {
+                rows.add(EmailOutbox.builder()
+                        .toEmail(to)
+                        .subject(message.getSubject())
+                        .body(message.getText())
+                        .nextAttemptAt(now)
+                        .createdAt(now)
+                        .build());
+            }
+        }
+        if (rows.isEmpty()) {
+            return;
+        }
+
+        emailOutboxRepository.insertAll(rows);
+        eventPublisher.publishEvent(new EmailOutboxEnqueuedEvent(rows.size()));
+    }
+
+    /**
+     * 🕒 Quét email đến hạn (lần đầu bị bỏ lỡ, retry, dispatcher chết giữa chừng)
+     */
+    @Scheduled(fixedDelayString = "${mail-outbox.poll-interval-ms:10000}")
+    public void poll() {
+        dispatchDue();
+    }
+
+    /**
+     * Gửi hết email đến hạn. Node đang có vòng dispatch khác thì bỏ qua.
+     */
+    public void dispatchDue() {
+        if (!dispatching.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            List<EmailOutbox> claimed;
+            do {
+                LocalDateTime now = LocalDateTime.now();
+                claimed = emailOutboxRepository.claimDue(
+                        UUID.randomUUID().toString(), batchSize, now, now.minus(claimLease));
+                if (!claimed.isEmpty()) {
+                    dispatch(claimed);
+                }
+            } while (claimed.size() >= batchSize);
+        } catch (RuntimeException ex) {
+            log.error("[MAIL OUTBOX] Dispatch failed: {}", ex.getMessage(), ex);
+        } finally {
+            dispatching.set(false);
+        }
+    }
+
+    private void dispatch(List<EmailOutbox> claimed) {
+        // cả lô cùng hạn chót: SMTP treo thì vòng dispatch vẫn kết thúc, email chưa gửi xong → FAILED, retry sau
+        List<CompletableFuture<MailDispatcher.MailResult>> futures = claimed.stream()
+                .map(row -> mailDispatcher.submit(TEMPLATE, toMessage(row))
+                        .orTimeout(sendTimeout.toMillis(), TimeUnit.MILLISECONDS))
+                .toList();
+
+        List<Long> sent = new ArrayList<>();
+        List<Failure> failures = new ArrayList<>();
+        int timedOut = 0;
+        for (int i = 0; i < claimed.size(); i++) {
+            MailDispatcher.MailResult result;
+            try {
+                result = futures.get(i).join();
+            } catch (CompletionException ex) {
+                boolean timeout = ex.getCause() instanceof TimeoutException;
+                if (timeout) timedOut++;
+                failures.add(failure(claimed.get(i), timeout
+                        ? "Timed out after " + sendTimeout.toMillis() + "ms"
+                        : String.valueOf(ex.getCause())));
+                continue;
+            }
+            if (result.delivered()) {
+                sent.add(claimed.get(i).getOutboxId());
+            } else {
+                failures.add(failure(claimed.get(i), result.error()));
+            }
+        }
+        if (timedOut > 0) {
+            log.warn("[MAIL OUTBOX] {} emails not sent within {}ms", timedOut, sendTimeout.toMillis());
+        }
+
+        emailOutboxRepository.markSent(sent, LocalDateTime.now());
+        emailOutboxRepository.markFailed(failures);
+
+        long dead = failures.stream().filter(f -> f.status() == EmailOutboxStatus.DEAD).count();
+        if (dead > 0) {
+            log.warn("[MAIL OUTBOX] {} emails moved to DEAD after {} attempts", dead, maxAttempts);
+        }
+        log.info("[MAIL OUTBOX] Dispatched {} emails: sent={}, failed={}",
+                claimed.size(), sent.size(), failures.size());
+    }
+
+    private Failure failure(EmailOutbox row, String cause) {
+        String error = cause != null && cause.length() > MAX_ERROR_LENGTH
+                ? cause.substring(0, MAX_ERROR_LENGTH)
+                : cause;
+        LocalDateTime now = LocalDateTime.now();
+
+        int attempts = row.getAttempts() != null ? row.getAttempts() : 1;
+        if (attempts >= maxAttempts) {
+            return new Failure(row.getOutboxId(), EmailOutboxStatus.DEAD, error, now);
+        }
+        // 30s, 60s, 120s, ...
+        Duration delay = retryBackoff.multipliedBy(1L << Math.min(Math.max(attempts - 1, 0), 10));
+        return new Failure(row.getOutboxId(), EmailOutboxStatus.FAILED, error, now.plus(delay));
+    }
+
+    private static SimpleMailMessage toMessage(EmailOutbox row) {
+        SimpleMailMessage message = new SimpleMailMessage();
+        message.setTo(row.getToEmail());
+        message.setSubject(row.getSubject());
+        message.setText(row.getBody());
+        return message;
+    }
+}
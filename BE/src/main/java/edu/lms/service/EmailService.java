@@ -5,22 +5,91 @@ import edu.lms.entity.User;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.mail.SimpleMailMessage;
-import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.stereotype.Service;
 
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Nội dung email compile sẵn thành MailTemplate lúc load class; gửi bất đồng bộ qua MailDispatcher
+ * (caller không chờ SMTP). Các hàm xxxMessage dùng chung cho gửi trực tiếp và outbox (EmailOutboxService).
+ */
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class EmailService {
 
-    private final JavaMailSender mailSender;
+    static final MailTemplate OTP = MailTemplate.compile("otp",
+            "[LinguaHub] Verify your email",
+            "Your verification code is: {{otp}}\nThis code will expire in 5 minutes.");
+
+    static final MailTemplate COURSE_APPROVED = MailTemplate.compile("course-approved",
+            "[LinguaHub] Your course has been approved",
+            """
+            Dear Tutor,
+
+            Your course "{{courseTitle}}" has been approved by the admin and is now live on LinguaHub.
+            {{noteBlock}}
+            Best regards,
+            LinguaHub Team""");
+
+    static final MailTemplate COURSE_REJECTED = MailTemplate.compile("course-rejected",
+            "[LinguaHub] Your course was rejected",
+            """
+            Dear Tutor,
+
+            Your course "{{courseTitle}}" was rejected by the admin.
+            {{reasonBlock}}
+            Please update the course based on the feedback and resubmit.
+
+            Best regards,
+            LinguaHub Team""");
+
+    static final MailTemplate COURSE_UPDATED = MailTemplate.compile("course-updated",
+            "[LinguaHub] Course \"{{courseTitle}}\" has been updated",
+            """
+            Hello,
+
+            The course "{{courseTitle}}" that you enrolled in has just been updated.
+
+            Summary of changes:
+            {{summary}}
+
+            Please log in to LinguaHub to see full details.
+
+            Best regards,
+            LinguaHub Team""");
+
+    static final MailTemplate DRAFT_APPROVED = MailTemplate.compile("draft-approved",
+            "[LinguaHub] Your course updates have been approved",
+            """
+            Dear Tutor,
+
+            Your updates for the course "{{courseTitle}}" have been approved and applied to the live course.
+
+            Summary of changes:
+            {{changeSummary}}
+            You can log in to LinguaHub to review the updated course content.
+
+            Best regards,
+            LinguaHub Team""");
+
+    static final MailTemplate DRAFT_REJECTED = MailTemplate.compile("draft-rejected",
+            "[LinguaHub] Your course draft was rejected",
+            """
+            Dear Tutor,
+
+            Your draft update for the course "{{courseTitle}}" was rejected by the admin.
+
+            {{reasonBlock}}Please update your draft based on the feedback and resubmit.
+
+            Best regards,
+            LinguaHub Team""");
+
+    private final MailDispatcher mailDispatcher;
 
     public void sendOtp(String to, String otp) {
-        SimpleMailMessage message = new SimpleMailMessage();
-        message.setTo(to);
-        message.setSubject("[LinguaHub] Verify your email");
-        message.setText("Your verification code is: " + otp + "\nThis code will expire in 5 minutes.");
-        mailSender.send(message);
+        send(OTP, OTP.render(to, vars("otp", otp)));
     }
 
     public void notifyAdminNewTutor(User tutor) {
@@ -31,125 +100,56 @@ public class EmailService {
     // ====================== COURSE EMAILS ======================
 
     public void sendCourseApprovedToTutor(String toEmail, String courseTitle, String note) {
-        SimpleMailMessage message = new SimpleMailMessage();
-        message.setTo(toEmail);
-        message.setSubject("[LinguaHub] Your course has been approved");
-
-        StringBuilder content = new StringBuilder();
-        content.append("Dear Tutor,\n\n");
-        content.append("Your course \"").append(courseTitle)
-                .append("\" has been approved by the admin and is now live on LinguaHub.\n");
-
-        if (note != null && !note.isBlank()) {
-            content.append("\nAdmin note:\n")
-                    .append(note)
-                    .append("\n");
-        }
-
-        content.append("\nBest regards,\n");
-        content.append("LinguaHub Team");
-
-        message.setText(content.toString());
-        mailSender.send(message);
+        String noteBlock = note != null && !note.isBlank() ? "\nAdmin note:\n" + note + "\n" : "";
+        send(COURSE_APPROVED, COURSE_APPROVED.render(toEmail,
+                vars("courseTitle", courseTitle, "noteBlock", noteBlock)));
     }
 
     public void sendCourseRejectedToTutor(String toEmail, String courseTitle, String reason) {
-        SimpleMailMessage message = new SimpleMailMessage();
-        message.setTo(toEmail);
-        message.setSubject("[LinguaHub] Your course was rejected");
-
-        StringBuilder content = new StringBuilder();
-        content.append("Dear Tutor,\n\n");
-        content.append("Your course \"").append(courseTitle)
-                .append("\" was rejected by the admin.\n");
-
-        if (reason != null && !reason.isBlank()) {
-            content.append("\nReason:\n")
-                    .append(reason)
-                    .append("\n");
-        } else {
-            content.append("\nReason: Not provided by admin.\n");
-        }
-
-        content.append("\nPlease update the course based on the feedback and resubmit.\n\n");
-        content.append("Best regards,\n");
-        content.append("LinguaHub Team");
-
-        message.setText(content.toString());
-        mailSender.send(message);
+        String reasonBlock = reason != null && !reason.isBlank()
+                ? "\nReason:\n" + reason + "\n"
+                : "\nReason: Not provided by admin.\n";
+        send(COURSE_REJECTED, COURSE_REJECTED.render(toEmail,
+                vars("courseTitle", courseTitle, "reasonBlock", reasonBlock)));
     }
 
     public void sendCourseUpdatedToLearner(String toEmail, String courseTitle, String summary) {
-        SimpleMailMessage message = new SimpleMailMessage();
-        message.setTo(toEmail);
-        message.setSubject("[LinguaHub] Course \"" + courseTitle + "\" has been updated");
-
-        StringBuilder content = new StringBuilder();
-        content.append("Hello,\n\n");
-        content.append("The course \"").append(courseTitle)
-                .append("\" that you enrolled in has just been updated.\n\n");
-        content.append("Summary of changes:\n");
-        content.append(summary).append("\n");
-        content.append("\nPlease log in to LinguaHub to see full details.\n\n");
-        content.append("Best regards,\n");
-        content.append("LinguaHub Team");
-
-        message.setText(content.toString());
-        mailSender.send(message);
+        send(COURSE_UPDATED, courseUpdatedToLearnerMessage(toEmail, courseTitle, summary));
     }
 
-    // ====================== COURSE DRAFT EMAILS ======================
+    public static SimpleMailMessage courseUpdatedToLearnerMessage(String toEmail, String courseTitle, String summary) {
+        return COURSE_UPDATED.render(toEmail, vars("courseTitle", courseTitle, "summary", summary));
+    }
 
-    // src/main/java/edu/lms/service/EmailService.java
+    // ====================== COURSE DRAFT EMAILS ======================
 
     public void sendCourseDraftApprovedToTutor(String toEmail, String courseTitle, String changeSummary) {
-        SimpleMailMessage message = new SimpleMailMessage();
-        message.setTo(toEmail);
-        message.setSubject("[LinguaHub] Your course updates have been approved");
-
-        StringBuilder content = new StringBuilder();
-        content.append("Dear Tutor,\n\n");
-        content.append("Your updates for the course \"")
-                .append(courseTitle)
-                .append("\" have been approved and applied to the live course.\n\n");
-
-        content.append("Summary of changes:\n");
-        content.append(changeSummary).append("\n");
-
-        content.append("You can log in to LinguaHub to review the updated course content.\n\n");
-        content.append("Best regards,\n");
-        content.append("LinguaHub Team");
+        send(DRAFT_APPROVED, courseDraftApprovedToTutorMessage(toEmail, courseTitle, changeSummary));
+    }
 
-        message.setText(content.toString());
-        mailSender.send(message);
+    public static SimpleMailMessage courseDraftApprovedToTutorMessage(String toEmail, String courseTitle,
+                                                                      String changeSummary) {
+        return DRAFT_APPROVED.render(toEmail, vars("courseTitle", courseTitle, "changeSummary", changeSummary));
     }
 
     public void sendCourseDraftRejectedToTutor(String toEmail, String courseTitle, String reason) {
-        SimpleMailMessage message = new SimpleMailMessage();
-        message.setTo(toEmail);
-        message.setSubject("[LinguaHub] Your course draft was rejected");
-
-        StringBuilder content = new StringBuilder();
-        content.append("Dear Tutor,\n\n");
-        content.append("Your draft update for the course \"")
-                .append(courseTitle)
-                .append("\" was rejected by the admin.\n\n");
-
-        if (reason != null && !reason.isBlank()) {
-            content.append("Reason from admin:\n")
-                    .append(reason)
-                    .append("\n\n");
-        } else {
-            content.append("Reason: Not provided by admin.\n\n");
-        }
-
-        content.append("Please update your draft based on the feedback and resubmit.\n\n");
-        content.append("Best regards,\n");
-        content.append("LinguaHub Team");
-
-        message.setText(content.toString());
-        mailSender.send(message);
+        String reasonBlock = reason != null && !reason.isBlank()
+                ? "Reason from admin:\n" + reason + "\n\n"
+                : "Reason: Not provided by admin.\n\n";
+        send(DRAFT_REJECTED, DRAFT_REJECTED.render(toEmail,
+                vars("courseTitle", courseTitle, "reasonBlock", reasonBlock)));
     }
 
+    private void send(MailTemplate template, SimpleMailMessage message) {
+        mailDispatcher.submit(template.name(), message);
+    }
 
+    // Map.of không nhận value null (summary / note null vẫn render "null" như trước)
+    private static Map<String, String> vars(String... keyValues) {
+        Map<String, String> vars = new HashMap<>(keyValues.length);
+        for (int i = 0; i < keyValues.length; i += 2) {
+            vars.put(keyValues[i], keyValues[i + 1]);
+        }
+        return vars;
+    }
 }
@@ -0,0 +1,215 @@
+package edu.lms.service;
+
+import edu.lms.repository.UserLessonRepository;
+import edu.lms.repository.UserLessonRepositoryCustom.WatchRow;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Gom heartbeat watchedDuration của video player trong bộ nhớ theo (learner, lesson).
+ * Lần đầu learner báo tiến độ 1 lesson, StudentLessonService kiểm tra user / lesson / enrollment
+ * rồi đăng ký 1 session ở đây; các heartbeat sau chỉ ghi đè watchedDuration trong session
+ * (giá trị mới nhất thắng) và được flush định kỳ thành 1 JDBC batch UPDATE.
+ * Session không hoạt động quá idleTimeout bị bỏ (sau khi đã flush); số session bị chặn bởi maxSessions.
+ */
+@Slf4j
+@Service
+public class LessonProgressTracker {
+
+    private final UserLessonRepository userLessonRepository;
+    private final long idleTimeoutNanos;
+    private final int maxSessions;
+
+    private final Map<SessionKey, Session> sessions = new ConcurrentHashMap<>();
+
+    @Autowired
+    public LessonProgressTracker(
+            UserLessonRepository userLessonRepository,
+            @Value("${lesson-progress.idle-timeout-seconds:600}") long idleTimeoutSeconds,
+            @Value("${lesson-progress.max-sessions:100000}") int maxSessions
+    ) {
+        this.userLessonRepository = userLessonRepository;
+        this.idleTimeoutNanos = Duration.ofSeconds(idleTimeoutSeconds).toNanos();
+        this.maxSessions = maxSessions;
+    }
+
+    /**
+     * Session đã xác thực của learner cho lesson, null nếu chưa có (cần đi qua DB)
+     */
+    public Session find(String email, Long lessonId) {
+        Session session = sessions.get(new SessionKey(email, lessonId));
+        if (session != null) {
+            session.touch();
+        }
+        return session;
+    }
+
+    /**
+     * Đăng ký session sau khi đã load UserLesson. false nếu đã đủ maxSessions
+     * (khi đó caller tự ghi thẳng xuống DB như trước).
+     */
+    public boolean register(String email, Session session) {
+        if (sessions.size() >= maxSessions) {
+            return false;
+        }
+        sessions.put(new SessionKey(email, session.lessonId()), session);
+        return true;
+    }
+
+    @Scheduled(fixedDelayString = "${lesson-progress.flush-interval-ms:10000}")
+    @Transactional
+    public void flush() {
+        List<Session> flushed = new ArrayList<>();
+        List<WatchRow> rows = new ArrayList<>();
+        for (Session session : sessions.values()) {
+            Integer watched = session.takeDirty();
+            if (watched != null) {
+                flushed.add(session);
+                rows.add(new WatchRow(session.userLessonId(), watched));
+            }
+        }
+
+        if (!rows.isEmpty()) {
+            try {
+                userLessonRepository.updateWatchedDurations(rows);
+            } catch (RuntimeException ex) {
+                // Lần flush sau ghi lại (nếu chưa có heartbeat mới hơn)
+                flushed.forEach(Session::markDirty);
+                throw ex;
+            }
+            log.debug("[LESSON PROGRESS] Flushed {} watched durations", rows.size());
+        }
+
+        long now = System.nanoTime();
+        sessions.values().removeIf(s -> !s.isDirty() && now - s.lastSeenNanos() > idleTimeoutNanos);
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        try {
+            flush();
+        } catch (RuntimeException ex) {
+            log.warn("[LESSON PROGRESS] Flush on shutdown failed: {}", ex.getMessage());
+        }
+    }
+
+    int sessionCount() {
+        return sessions.size();
+    }
+
+    private record SessionKey(String email, Long lessonId) {}
+
+    /**
+     * Trạng thái tiến độ 1 lesson của 1 learner (khớp với UserLesson trong DB + heartbeat chưa flush)
+     */
+    public static final class Session {
+        private final Long userId;
+        private final Long lessonId;
+        private final Long userLessonId;
+        private final Long enrollmentId;
+
+        private Integer watchedDuration;
+        private boolean done;
+        private LocalDateTime completedAt;
+        private boolean dirty;
+        private volatile long lastSeenNanos = System.nanoTime();
+
+        public Session(Long userId, Long lessonId, Long userLessonId, Long enrollmentId,
+                       Integer watchedDuration, boolean done, LocalDateTime completedAt) {
+            this.userId = userId;
+            this.lessonId = lessonId;
+            this.userLessonId = userLessonId;
+            this.enrollmentId = enrollmentId;
+            this.watchedDuration = watchedDuration;
+            this.done = done;
+            this.completedAt = completedAt;
+        }
+
+        public Long userId() {
+            return userId;
+        }
+
+        public Long lessonId() {
+            return lessonId;
+        }
+
+        public Long userLessonId() {
+            return userLessonId;
+        }
+
+        public Long enrollmentId() {
+            return enrollmentId;
+        }
+
+        public synchronized Integer watchedDuration() {
+            return watchedDuration;
+        }
+
+        public synchronized boolean isDone() {
+            return done;
+        }
+
+        public synchronized LocalDateTime completedAt() {
+            return completedAt;
+        }
+
+        /**
+         * Heartbeat: chỉ ghi nhận trong bộ nhớ, flush sau
+         */
+        public synchronized void recordWatch(Integer watched) {
+            if (watched == null) {
+                return;
+            }
+            watchedDuration = watched;
+            dirty = true;
+        }
+
+        /**
+         * Lesson vừa được ghi DONE trực tiếp (kèm watchedDuration) → không còn gì chờ flush
+         */
+        public synchronized void markDone(Integer watched, LocalDateTime at) {
+            if (watched != null) {
+                watchedDuration = watched;
+            }
+            done = true;
+            completedAt = at;
+            dirty = false;
+        }
+
+        synchronized Integer takeDirty() {
+            if (!dirty) {
+                return null;
+            }
+            dirty = false;
+            return watchedDuration;
+        }
+
+        synchronized void markDirty() {
+            dirty = true;
+        }
+
+        synchronized boolean isDirty() {
+            return dirty;
+        }
+
+        void touch() {
+            lastSeenNanos = System.nanoTime();
+        }
+
+        long lastSeenNanos() {
+            return lastSeenNanos;
+        }
+    }
+}
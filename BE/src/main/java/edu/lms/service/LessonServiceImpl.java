@@ -32,6 +32,7 @@ public class LessonServiceImpl implements LessonService {
         EnrollmentRepository enrollmentRepository;
         UserRepository userRepository;
         LessonResourceRepository lessonResourceRepository;
+        CourseProgressService courseProgressService;
 
         // ===================== Helpers =====================
 
@@ -113,7 +114,10 @@ public class LessonServiceImpl implements LessonService {
                         .createdAt(LocalDateTime.now())
                         .build();
 
-                return toResponse(lessonRepository.save(lesson));
+                Lesson saved = lessonRepository.save(lesson);
+                // Section thêm lesson → % của learner đã học course thay đổi
+                courseProgressService.recalculateCourse(course.getCourseID());
+                return toResponse(saved);
         }
 
         @Override
@@ -150,6 +154,7 @@ public class LessonServiceImpl implements LessonService {
                 // KHÔNG xoá resource thủ công nữa,
                 // orphanRemoval = true sẽ tự xoá LessonResource khi xoá Lesson
                 lessonRepository.delete(lesson);
+                courseProgressService.recalculateCourse(course.getCourseID());
         }
 
 
@@ -0,0 +1,206 @@
+package edu.lms.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.internet.MimeMessage;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.mail.javamail.MimeMailMessage;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Gửi mail bất đồng bộ: caller chỉ đưa mail vào queue rồi trả về ngay.
+ * Mỗi worker (1 thread của mailSenderExecutor) lấy tối đa messagesPerConnection mail đang chờ
+ * và gửi trên 1 phiên SMTP mượn từ SmtpSessionPool.
+ *  - kết quả từng mail (gửi được / lỗi, thời gian chờ + gửi) trả qua CompletableFuture và ghi MailMetrics
+ *  - queue đầy thì gửi luôn trên thread gọi (chậm hơn nhưng không mất mail)
+ *  - stop(): mọi mail chưa gửi xong (trong queue hoặc đang gửi) trả lỗi ngay, caller không bị treo
+ */
+@Slf4j
+@Service
+public class MailDispatcher {
+
+    private static final long POLL_TIMEOUT_MS = 1000;
+
+    private final SmtpSessionPool sessionPool;
+    private final MailMetrics mailMetrics;
+    private final Executor mailSenderExecutor;
+    private final int workers;
+    private final int messagesPerConnection;
+    private final BlockingQueue<Job> queue;
+    // mail đã submit nhưng chưa có kết quả (trong queue + đang gửi)
+    private final Set<Job> pending = ConcurrentHashMap.newKeySet();
+
+    private volatile boolean running = true;
+
+    @Autowired
+    public MailDispatcher(
+            SmtpSessionPool sessionPool,
+            MailMetrics mailMetrics,
+            @Qualifier("mailSenderExecutor") Executor mailSenderExecutor,
+            @Value("${mail-sender.max-sessions:4}") int workers,
+            @Value("${mail-sender.messages-per-connection:50}") int messagesPerConnection,
+            @Value("${mail-sender.queue-capacity:10000}") int queueCapacity
+    ) {
+        this.sessionPool = sessionPool;
+        this.mailMetrics = mailMetrics;
+        this.mailSenderExecutor = mailSenderExecutor;
+        this.workers = workers;
+        this.messagesPerConnection = messagesPerConnection;
+        this.queue = new LinkedBlockingQueue<>(queueCapacity);
+    }
+
+    @PostConstruct
+    public void start() {
+        for (int i = 0; i < workers; i++) {
+            mailSenderExecutor.execute(this::workLoop);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        failPending();
+    }
+
+    /**
+     * Đưa mail vào hàng đợi gửi. template chỉ dùng để gom số liệu.
+     */
+    public CompletableFuture<MailResult> submit(String template, SimpleMailMessage message) {
+        Job job = new Job(template, message, System.nanoTime(), new CompletableFuture<>());
+        if (!running) {
+            complete(job, job.enqueuedAt(), job.enqueuedAt(), stopped());
+            return job.result();
+        }
+        pending.add(job);
+        if (!queue.offer(job)) {
+            log.warn("[MAIL] Queue full, sending {} on caller thread", template);
+            try {
+                send(List.of(job));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                complete(job, System.nanoTime(), System.nanoTime(), e);
+            }
+        }
+        if (!running) {
+            // stop() chạy giữa lúc check running và offer
+            failPending();
+        }
+        return job.result();
+    }
+
+    int queued() {
+        return queue.size();
+    }
+
+    private void workLoop() {
+        List<Job> batch = new ArrayList<>(messagesPerConnection);
+        while (running) {
+            try {
+                Job first = queue.poll(POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                batch.add(first);
+                queue.drainTo(batch, messagesPerConnection - 1);
+                send(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                long now = System.nanoTime();
+                batch.stream().filter(job -> !job.result().isDone())
+                        .forEach(job -> complete(job, now, now, e));
+                return;
+            } catch (RuntimeException e) {
+                log.error("[MAIL] Send batch failed: {}", e.getMessage(), e);
+                long now = System.nanoTime();
+                batch.stream().filter(job -> !job.result().isDone())
+                        .forEach(job -> complete(job, now, now, e));
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void send(List<Job> batch) throws InterruptedException {
+        long startedAt = System.nanoTime();
+        List<Job> ready = new ArrayList<>(batch.size());
+        List<MimeMessage> messages = new ArrayList<>(batch.size());
+        for (Job job : batch) {
+            if (job.result().isDone()) {
+                pending.remove(job); // đã bị fail khi stop() hoặc caller hết thời gian chờ
+                continue;
+            }
+            try {
+                MimeMessage mime = sessionPool.createMimeMessage();
+                job.message().copyTo(new MimeMailMessage(mime));
+                messages.add(mime);
+                ready.add(job);
+            } catch (RuntimeException ex) {
+                complete(job, startedAt, startedAt, ex);
+            }
+        }
+        if (messages.isEmpty()) {
+            return;
+        }
+
+        // thời gian gửi từng mail = từ lúc mail trước gửi xong (mail đầu tính cả mượn / mở phiên)
+        long[] previous = {startedAt};
+        sessionPool.sendAll(messages, (index, error) -> {
+            long now = System.nanoTime();
+            complete(ready.get(index), previous[0], now, error);
+            previous[0] = now;
+        });
+    }
+
+    private void failPending() {
+        List<Job> left = new ArrayList<>(pending);
+        if (left.isEmpty()) {
+            return;
+        }
+        queue.removeAll(left);
+        long now = System.nanoTime();
+        Exception error = stopped();
+        left.forEach(job -> complete(job, now, now, error));
+        log.warn("[MAIL] Dispatcher stopped, {} undelivered mails failed", left.size());
+    }
+
+    private static Exception stopped() {
+        return new IllegalStateException("Mail dispatcher stopped");
+    }
+
+    private void complete(Job job, long sendStartedAt, long finishedAt, Exception error) {
+        String[] to = job.message().getTo();
+        MailResult result = new MailResult(
+                job.template(),
+                to != null && to.length > 0 ? String.join(",", to) : null,
+                error == null,
+                TimeUnit.NANOSECONDS.toMillis(Math.max(sendStartedAt - job.enqueuedAt(), 0)),
+                TimeUnit.NANOSECONDS.toMillis(finishedAt - sendStartedAt),
+                error != null ? error.getMessage() : null);
+        pending.remove(job);
+        if (!job.result().complete(result)) {
+            return; // đã có kết quả (stop() hoặc caller timeout), không đếm 2 lần
+        }
+        mailMetrics.record(result);
+        if (error != null) {
+            log.warn("[MAIL] {} to {} failed: {}", result.template(), result.to(), result.error());
+        }
+    }
+
+    public record MailResult(String template, String to, boolean delivered,
+                             long queuedMillis, long sendMillis, String error) {}
+
+    private record Job(String template, SimpleMailMessage message, long enqueuedAt,
+                       CompletableFuture<MailResult> result) {}
+}
@@ -0,0 +1,64 @@
+package edu.lms.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Số liệu gửi mail theo template (trong bộ nhớ, reset khi restart):
+ * số mail đã gửi / lỗi, thời gian chờ trong queue và thời gian gửi SMTP.
+ * Log định kỳ để theo dõi; snapshot() dùng cho test / debug.
+ */
+@Slf4j
+@Component
+public class MailMetrics {
+
+    private final ConcurrentMap<String, Counters> byTemplate = new ConcurrentHashMap<>();
+
+    public void record(MailDispatcher.MailResult result) {
+        Counters c = byTemplate.computeIfAbsent(result.template(), k -> new Counters());
+        (result.delivered() ? c.sent : c.failed).increment();
+        c.queueMillis.add(result.queuedMillis());
+        c.sendMillis.add(result.sendMillis());
+        c.maxSendMillis.accumulate(result.sendMillis());
+    }
+
+    public Map<String, TemplateStats> snapshot() {
+        Map<String, TemplateStats> stats = new TreeMap<>();
+        byTemplate.forEach((template, c) -> {
+            long sent = c.sent.sum();
+            long failed = c.failed.sum();
+            long total = Math.max(sent + failed, 1);
+            stats.put(template, new TemplateStats(sent, failed,
+                    c.queueMillis.sum() / total, c.sendMillis.sum() / total, c.maxSendMillis.get()));
+        });
+        return stats;
+    }
+
+    /**
+     * 🕒 Log số liệu gửi mail theo template
+     */
+    @Scheduled(fixedDelayString = "${mail-sender.metrics-log-interval-ms:300000}")
+    public void logStats() {
+        snapshot().forEach((template, s) -> log.info(
+                "[MAIL] template={} sent={} failed={} avgQueueMs={} avgSendMs={} maxSendMs={}",
+                template, s.sent(), s.failed(), s.avgQueueMillis(), s.avgSendMillis(), s.maxSendMillis()));
+    }
+
+    public record TemplateStats(long sent, long failed, long avgQueueMillis, long avgSendMillis, long maxSendMillis) {}
+
+    private static final class Counters {
+        private final LongAdder sent = new LongAdder();
+        private final LongAdder failed = new LongAdder();
+        private final LongAdder queueMillis = new LongAdder();
+        private final LongAdder sendMillis = new LongAdder();
+        private final LongAccumulator maxSendMillis = new LongAccumulator(Math::max, 0);
+    }
+}
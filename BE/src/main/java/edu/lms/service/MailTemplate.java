@@ -0,0 +1,86 @@
+package edu.lms.service;
+
+import org.springframework.mail.SimpleMailMessage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Template email plain text compile 1 lần lúc khởi động: tách subject / body thành các đoạn
+ * text cố định + biến {{name}}, render chỉ nối chuỗi (không parse lại, không regex).
+ * Thiếu biến khi render → IllegalArgumentException.
+ */
+public final class MailTemplate {
+
+    private static final String OPEN = "{{";
+    private static final String CLOSE = "}}";
+
+    private final String name;
+    private final Object[] subject;
+    private final Object[] body;
+    private final int bodyLengthHint;
+
+    private MailTemplate(String name, Object[] subject, Object[] body, int bodyLengthHint) {
+        this.name = name;
+        this.subject = subject;
+        this.body = body;
+        this.bodyLengthHint = bodyLengthHint;
+    }
+
+    public static MailTemplate compile(String name, String subject, String body) {
+        return new MailTemplate(name, parse(subject), parse(body), body.length() + 256);
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public SimpleMailMessage render(String to, Map<String, String> vars) {
+        SimpleMailMessage message = new SimpleMailMessage();
+        message.setTo(to);
+        message.setSubject(render(subject, vars, 64));
+        message.setText(render(body, vars, bodyLengthHint));
+        return message;
+    }
+
+    private static String render(Object[] parts, Map<String, String> vars, int capacity) {
+        StringBuilder sb = new StringBuilder(capacity);
+        for (Object part : parts) {
+            if (part instanceof Var var) {
+                String value = vars.get(var.name());
+                if (value == null && !vars.containsKey(var.name())) {
+                    throw new IllegalArgumentException("Missing template variable: " + var.name());
+                }
+                sb.append(value);
+            } else {
+                sb.append((String) part);
+            }
+        }
+        return sb.toString();
+    }
+
+    private static Object[] parse(String template) {
+        List<Object> parts = new ArrayList<>();
+        int from = 0;
+        while (from < template.length()) {
+            int open = template.indexOf(OPEN, from);
+            if (open < 0) {
+                parts.add(template.substring(from));
+                break;
+            }
+            int close = template.indexOf(CLOSE, open + OPEN.length());
+            if (close < 0) {
+                throw new IllegalArgumentException("Unclosed template variable at " + open);
+            }
+            if (open > from) {
+                parts.add(template.substring(from, open));
+            }
+            parts.add(new Var(template.substring(open + OPEN.length(), close).trim()));
+            from = close + CLOSE.length();
+        }
+        return parts.toArray();
+    }
+
+    private record Var(String name) {}
+}
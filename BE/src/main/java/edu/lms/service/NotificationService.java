@@ -8,6 +8,7 @@ import edu.lms.repository.NotificationRepository;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 @Service
@@ -48,6 +49,36 @@ public class NotificationService {
         notificationRepository.save(n);
     }
 
+    /**
+     * Cùng 1 thông báo cho nhiều user, ghi 1 JDBC batch (trong transaction của caller)
+     */
+    public void sendNotificationToUsers(
+            Collection<Long> userIds,
+            String title,
+            String content,
+            NotificationType type,
+            String primaryUrl
+    ) {
+        if (userIds == null || userIds.isEmpty()) {
+            return;
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        List<Notification> notifications = userIds.stream()
+                .map(userId -> Notification.builder()
+                        .userId(userId)
+                        .title(title)
+                        .content(content)
+                        .type(type)
+                        .primaryActionUrl(primaryUrl)
+                        .isRead(false)
+                        .createdAt(now)
+                        .build())
+                .toList();
+
+        notificationRepository.insertAll(notifications);
+    }
+
     // Lấy tất cả thông báo của 1 user, sort mới nhất trước
     public List<Notification> getNotificationByUserId(Long userId) {
         return notificationRepository.findByUserIdOrderByCreatedAtDesc(userId);
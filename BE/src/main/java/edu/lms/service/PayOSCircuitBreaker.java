@@ -0,0 +1,66 @@
+package edu.lms.service;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Circuit breaker tối giản cho PayOS.
+ *  - CLOSED: gọi bình thường, đếm số lần lỗi liên tiếp
+ *  - OPEN: lỗi liên tiếp ≥ threshold → chặn mọi request trong openMillis
+ *  - HALF_OPEN: hết openMillis → cho đúng 1 request thử, thành công thì đóng lại, lỗi thì mở tiếp
+ */
+public class PayOSCircuitBreaker {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final int failureThreshold;
+    private final long openMillis;
+    private final LongSupplier clock;
+
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private final AtomicLong openedAt = new AtomicLong(0); // 0 = đang đóng
+    private final AtomicBoolean trialInFlight = new AtomicBoolean(false);
+
+    public PayOSCircuitBreaker(int failureThreshold, long openMillis) {
+        this(failureThreshold, openMillis, System::currentTimeMillis);
+    }
+
+    PayOSCircuitBreaker(int failureThreshold, long openMillis, LongSupplier clock) {
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.openMillis = openMillis;
+        this.clock = clock;
+    }
+
+    public boolean tryAcquire() {
+        long opened = openedAt.get();
+        if (opened == 0) return true;
+        if (clock.getAsLong() - opened < openMillis) return false;
+        return trialInFlight.compareAndSet(false, true);
+    }
+
+    public void onSuccess() {
+        consecutiveFailures.set(0);
+        openedAt.set(0);
+        trialInFlight.set(false);
+    }
+
+    public void onFailure() {
+        if (openedAt.get() != 0) {
+            // Request thử ở HALF_OPEN lỗi → mở lại
+            openedAt.set(clock.getAsLong());
+            trialInFlight.set(false);
+            return;
+        }
+        if (consecutiveFailures.incrementAndGet() >= failureThreshold) {
+            openedAt.set(clock.getAsLong());
+        }
+    }
+
+    public State getState() {
+        long opened = openedAt.get();
+        if (opened == 0) return State.CLOSED;
+        return clock.getAsLong() - opened < openMillis ? State.OPEN : State.HALF_OPEN;
+    }
+}
@@ -0,0 +1,207 @@
+package edu.lms.service;
+
+import edu.lms.configuration.PayOSProperties;
+import edu.lms.exception.AppException;
+import edu.lms.exception.ErrorCode;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.hc.client5.http.ConnectTimeoutException;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.http.ConnectionRequestTimeoutException;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.http.*;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpStatusCodeException;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.UnknownHostException;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * HTTP client dùng chung cho PayOS:
+ *  - Connection pool (keep-alive, không mở TCP/TLS mới mỗi request)
+ *  - Connect / read timeout cấu hình được (payos.http.*)
+ *  - Retry với exponential backoff + jitter cho lỗi mạng / 5xx / 429.
+ *    Tạo payment link (POST không idempotent) chỉ retry khi chắc chắn PayOS chưa xử lý:
+ *    không kết nối được, hoặc 429/503 không có body
+ *  - Circuit breaker: PayOS sập thì fail nhanh thay vì treo thread chờ timeout
+ */
+@Slf4j
+@Component
+public class PayOSClient {
+
+    private final PayOSProperties props;
+    private final CloseableHttpClient httpClient;
+    private final RestTemplate rest;
+    private final PayOSCircuitBreaker circuitBreaker;
+
+    public PayOSClient(PayOSProperties props) {
+        this.props = props;
+        this.httpClient = buildHttpClient(props);
+        this.rest = new RestTemplate(new HttpComponentsClientHttpRequestFactory(httpClient));
+        this.circuitBreaker = new PayOSCircuitBreaker(props.getCircuitFailureThreshold(), props.getCircuitOpenMs());
+    }
+
+    private static CloseableHttpClient buildHttpClient(PayOSProperties props) {
+        Timeout connectTimeout = Timeout.ofMilliseconds(props.getConnectTimeoutMs());
+        Timeout readTimeout = Timeout.ofMilliseconds(props.getReadTimeoutMs());
+
+        PoolingHttpClientConnectionManager connectionManager = PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(props.getMaxConnections())
+                .setMaxConnPerRoute(props.getMaxConnections())
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(connectTimeout)
+                        .setSocketTimeout(readTimeout)
+                        .setTimeToLive(TimeValue.ofMinutes(5))
+                        .build())
+                .build();
+
+        return HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectionRequestTimeout(connectTimeout)
+                        .setResponseTimeout(readTimeout)
+                        .build())
+                .evictIdleConnections(TimeValue.ofSeconds(30))
+                .disableAutomaticRetries()
+                .build();
+    }
+
+    /**
+     * POST không idempotent (tạo payment link): read timeout / 5xx có thể là PayOS đã tạo link → không retry
+     */
+    public String post(String path, Object body) {
+        return execute(HttpMethod.POST, path, body, false);
+    }
+
+    /**
+     * POST gọi lại nhiều lần vẫn cùng kết quả (huỷ payment link) → retry mọi lỗi mạng / 5xx / 429
+     */
+    public String postIdempotent(String path, Object body) {
+        return execute(HttpMethod.POST, path, body, true);
+    }
+
+    public PayOSCircuitBreaker.State getCircuitState() {
+        return circuitBreaker.getState();
+    }
+
+    private String execute(HttpMethod method, String path, Object body, boolean idempotent) {
+        if (!circuitBreaker.tryAcquire()) {
+            log.warn("[PAYOS] Circuit OPEN → reject {} {}", method, path);
+            throw new AppException(ErrorCode.PAYMENT_GATEWAY_UNAVAILABLE);
+        }
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        headers.set("x-client-id", props.getClientId());
+        headers.set("x-api-key", props.getApiKey());
+
+        HttpEntity<Object> entity = new HttpEntity<>(body, headers);
+        String url = props.getEndpoint() + path;
+
+        boolean recorded = false;
+        try {
+            int attempt = 0;
+            while (true) {
+                try {
+                    ResponseEntity<String> response = rest.exchange(url, method, entity, String.class);
+                    recorded = true;
+                    circuitBreaker.onSuccess();
+                    return response.getBody();
+                } catch (HttpClientErrorException e) {
+                    // 4xx (trừ 429) là lỗi request, PayOS vẫn sống → không retry, không tính vào circuit
+                    if (e.getStatusCode().value() != HttpStatus.TOO_MANY_REQUESTS.value()) {
+                        recorded = true;
+                        circuitBreaker.onSuccess();
+                        throw e;
+                    }
+                    if (!canRetry(e, idempotent, attempt, method, path)) {
+                        recorded = true;
+                        circuitBreaker.onFailure();
+                        throw e;
+                    }
+                } catch (RestClientException e) {
+                    if (!canRetry(e, idempotent, attempt, method, path)) {
+                        recorded = true;
+                        circuitBreaker.onFailure();
+                        throw e;
+                    }
+                }
+                attempt++;
+            }
+        } finally {
+            // Lỗi ngoài RestClientException / bị interrupt: vẫn phải ghi nhận, nếu không slot thử của HALF_OPEN bị giữ mãi
+            if (!recorded) {
+                circuitBreaker.onFailure();
+            }
+        }
+    }
+
+    /**
+     * @return true nếu đã chờ backoff xong và nên gọi lại, false nếu caller phải throw
+     */
+    private boolean canRetry(RestClientException e, boolean idempotent, int attempt, HttpMethod method, String path) {
+        if (!idempotent && !isSafeToResend(e)) {
+            log.error("[PAYOS] {} {} failed, not retried (request may have been processed): {}",
+                    method, path, e.getMessage());
+            return false;
+        }
+        if (attempt >= props.getMaxRetries()) {
+            log.error("[PAYOS] {} {} failed after {} attempts: {}", method, path, attempt + 1, e.getMessage());
+            return false;
+        }
+
+        // Exponential backoff, jitter 50%-150% để các request không retry cùng lúc
+        long backoff = props.getRetryBackoffMs() << attempt;
+        long sleep = (long) (backoff * ThreadLocalRandom.current().nextDouble(0.5, 1.5));
+        log.warn("[PAYOS] {} {} attempt {} failed ({}) → retry in {}ms",
+                method, path, attempt + 1, e.getMessage(), sleep);
+
+        try {
+            Thread.sleep(sleep);
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Request chắc chắn chưa tới PayOS (không kết nối được) hoặc PayOS từ chối trước khi xử lý (429/503 không body)
+     */
+    private static boolean isSafeToResend(RestClientException e) {
+        if (e instanceof HttpStatusCodeException status) {
+            int code = status.getStatusCode().value();
+            return (code == HttpStatus.TOO_MANY_REQUESTS.value() || code == HttpStatus.SERVICE_UNAVAILABLE.value())
+                    && status.getResponseBodyAsByteArray().length == 0;
+        }
+        if (e instanceof ResourceAccessException) {
+            for (Throwable cause = e.getCause(); cause != null; cause = cause.getCause()) {
+                if (cause instanceof ConnectException
+                        || cause instanceof ConnectTimeoutException
+                        || cause instanceof ConnectionRequestTimeoutException
+                        || cause instanceof UnknownHostException) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        httpClient.close();
+    }
+}
@@ -0,0 +1,78 @@
+package edu.lms.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Sinh orderCode cho PayOS: duy nhất, tăng dần, không cần round trip DB.
+ *
+ * Layout 53 bit (PayOS yêu cầu orderCode ≤ 9007199254740991 = 2^53 - 1):
+ *  - 41 bit: millisecond tính từ 2025-01-01 (~69 năm)
+ *  -  4 bit: nodeId (tối đa 16 instance backend, cấu hình payos.node-id)
+ *  -  8 bit: sequence trong cùng 1 ms (256 code / ms / node)
+ *
+ * Lock-free: state (timestamp + sequence) nằm trong 1 AtomicLong và chỉ được CAS tăng lên.
+ * Hết sequence trong 1 ms hoặc đồng hồ chạy lùi thì mượn ms tiếp theo thay vì chờ,
+ * nên code vẫn luôn tăng và không trùng.
+ */
+@Slf4j
+@Component
+public class PayOSOrderCodeGenerator {
+
+    static final long EPOCH_MILLIS = Instant.parse("2025-01-01T00:00:00Z").toEpochMilli();
+
+    static final int TIMESTAMP_BITS = 41;
+    static final int NODE_BITS = 4;
+    static final int SEQUENCE_BITS = 8;
+
+    static final long MAX_NODE_ID = (1L << NODE_BITS) - 1;
+    static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+    static final long MAX_TIMESTAMP = (1L << TIMESTAMP_BITS) - 1;
+    static final long MAX_ORDER_CODE = (1L << (TIMESTAMP_BITS + NODE_BITS + SEQUENCE_BITS)) - 1;
+
+    private final long nodeId;
+    private final LongSupplier clock;
+
+    // (timestamp << SEQUENCE_BITS) | sequence của code vừa cấp
+    private final AtomicLong state = new AtomicLong(0);
+
+    @Autowired
+    public PayOSOrderCodeGenerator(@Value("${payos.node-id:0}") long nodeId) {
+        this(nodeId, System::currentTimeMillis);
+    }
+
+    PayOSOrderCodeGenerator(long nodeId, LongSupplier clock) {
+        if (nodeId < 0 || nodeId > MAX_NODE_ID) {
+            throw new IllegalArgumentException("payos.node-id must be between 0 and " + MAX_NODE_ID);
+        }
+        this.nodeId = nodeId;
+        this.clock = clock;
+        log.info("[PAYOS] Order code generator started with nodeId={}", nodeId);
+    }
+
+    public long nextOrderCode() {
+        while (true) {
+            long prev = state.get();
+            long now = clock.getAsLong() - EPOCH_MILLIS;
+
+            // prev + 1 tự tràn sequence sang ms kế tiếp
+            long next = Math.max(prev + 1, now << SEQUENCE_BITS);
+
+            if (state.compareAndSet(prev, next)) {
+                long timestamp = next >>> SEQUENCE_BITS;
+                if (timestamp > MAX_TIMESTAMP) {
+                    throw new IllegalStateException("PayOS order code timestamp overflow");
+                }
+                return (timestamp << (NODE_BITS + SEQUENCE_BITS))
+                        | (nodeId << SEQUENCE_BITS)
+                        | (next & SEQUENCE_MASK);
+            }
+        }
+    }
+}
@@ -5,11 +5,14 @@ import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import edu.lms.configuration.PayOSProperties;
 import edu.lms.enums.PaymentType;
+import edu.lms.exception.AppException;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.http.*;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.task.TaskExecutor;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import vn.payos.type.CheckoutResponseData;
 import vn.payos.type.ItemData;
 import vn.payos.type.PaymentData;
@@ -25,7 +28,10 @@ import java.util.Map;
 public class PayOSService {
 
     private final PayOSProperties props;
-    private final RestTemplate rest = new RestTemplate();
+    private final PayOSOrderCodeGenerator orderCodeGenerator;
+    private final PayOSClient payOSClient;
+    @Qualifier("payOSExecutor")
+    private final TaskExecutor payOSExecutor;
 
     private static final ObjectMapper mapper =
             new ObjectMapper().configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
@@ -40,7 +46,7 @@ public class PayOSService {
             String description
     ) {
         try {
-            long orderCode = System.currentTimeMillis() / 1000;
+            long orderCode = orderCodeGenerator.nextOrderCode();
 
             String safeDesc = (description != null && description.length() > 25)
                     ? description.substring(0, 25)
@@ -72,21 +78,13 @@ public class PayOSService {
 
             Map<String, Object> body = mapper.convertValue(paymentData, Map.class);
 
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
-            headers.set("x-client-id", props.getClientId());
-            headers.set("x-api-key", props.getApiKey());
+            String responseBody = payOSClient.post("/payment-requests", body);
 
-            String url = props.getEndpoint() + "/payment-requests";
-
-            ResponseEntity<String> response =
-                    rest.postForEntity(url, new HttpEntity<>(body, headers), String.class);
-
-            if (response.getBody() == null) {
+            if (responseBody == null) {
                 throw new RuntimeException("Empty response from PayOS");
             }
 
-            JsonNode root = mapper.readTree(response.getBody());
+            JsonNode root = mapper.readTree(responseBody);
             JsonNode data = root.path("data");
 
             CheckoutResponseData checkout =
@@ -101,6 +99,8 @@ public class PayOSService {
 
             return new CheckoutWrapper(checkout, expiredAt);
 
+        } catch (AppException e) {
+            throw e;
         } catch (Exception e) {
             log.error("[PAYOS ERROR] {}", e.getMessage(), e);
             throw new RuntimeException("Failed to create PayOS link", e);
@@ -108,32 +108,47 @@ public class PayOSService {
     }
 
     // Huỷ payment link bằng API PayOS
-    public void cancelPaymentLink(String paymentLinkId) {
+    /**
+     * @return true nếu PayOS nhận lệnh huỷ, false nếu lỗi (caller tự quyết định có retry hay không)
+     */
+    public boolean cancelPaymentLink(String paymentLinkId) {
         if (paymentLinkId == null || paymentLinkId.isBlank()) {
             log.warn("[PAYOS] Cannot cancel payment: paymentLinkId is null");
-            return;
+            return false;
         }
 
         try {
-            String url = "https://api-merchant.payos.vn/v2/payment-requests/" + paymentLinkId + "/cancel";
-
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
-            headers.set("x-client-id", props.getClientId());
-            headers.set("x-api-key", props.getApiKey());
+            String body = payOSClient.postIdempotent("/payment-requests/" + paymentLinkId + "/cancel", null);
 
-            HttpEntity<Void> entity = new HttpEntity<>(headers);
-
-            ResponseEntity<String> response =
-                    rest.exchange(url, HttpMethod.POST, entity, String.class);
-
-            log.info("[PAYOS] Cancel payment link {} -> status {} | body={}",
-                    paymentLinkId,
-                    response.getStatusCode(),
-                    response.getBody());
+            log.info("[PAYOS] Cancel payment link {} -> body={}", paymentLinkId, body);
+            return true;
 
         } catch (Exception e) {
             log.error("[PAYOS] Failed to cancel payment link {}: {}", paymentLinkId, e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Huỷ payment link sau khi transaction hiện tại commit, chạy trên payOSExecutor
+     * → không giữ DB connection trong lúc chờ PayOS, và không huỷ link nếu transaction rollback.
+     */
+    public void cancelPaymentLinkAfterCommit(String paymentLinkId) {
+        if (paymentLinkId == null || paymentLinkId.isBlank()) {
+            return;
+        }
+
+        Runnable task = () -> payOSExecutor.execute(() -> cancelPaymentLink(paymentLinkId));
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    task.run();
+                }
+            });
+        } else {
+            task.run();
         }
     }
 
@@ -19,6 +19,7 @@ public class PaymentScheduler {
 
     private final PaymentRepository paymentRepository;
     private final PaymentService paymentService; // dùng rollbackBookingSlots chung
+    private final CheckoutRateLimiter checkoutRateLimiter;
 
     /**
      * 🕒 Kiểm tra mỗi 1 phút để tự động hết hạn payment PENDING quá thời gian expiresAt
@@ -40,6 +41,7 @@ public class PaymentScheduler {
             // Nếu là Booking → rollback luôn slot bị khóa
             if (p.getPaymentType() == PaymentType.Booking) {
                 paymentService.rollbackBookingSlots(p, "EXPIRED");
+                checkoutRateLimiter.recordFailedBooking(p);
             }
 
             log.warn("[AUTO-EXPIRE] Payment {} (id={}) expired at {} → marked EXPIRED",
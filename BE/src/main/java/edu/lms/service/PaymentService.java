@@ -11,15 +11,21 @@ import edu.lms.mapper.PaymentMapper;
 import edu.lms.repository.*;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import vn.payos.type.CheckoutResponseData;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 @Slf4j
 @Service
@@ -42,6 +48,14 @@ public class PaymentService {
     private final CloudflareTurnstileService cloudflareTurnstileService;
     private final NotificationService notificationService;
     private final TutorPackageRepository tutorPackageRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final TutorAvailabilityService tutorAvailabilityService;
+    private final CheckoutRateLimiter checkoutRateLimiter;
+    private final RefundRequestRepository refundRequestRepository;
+
+    // true: commit phần giữ chỗ trước rồi mới gọi PayOS (không giữ DB connection khi chờ network)
+    @Value("${payos.link-outside-transaction:true}")
+    private boolean linkOutsideTransaction;
 
     private BigDecimal calculateNetForPayment(Payment payment) {
         Setting setting = settingRepository.getCurrentSetting();
@@ -62,8 +76,54 @@ public class PaymentService {
         return amount.subtract(amount.multiply(commissionRate));
     }
 
-    @Transactional
     public ResponseEntity<?> createPayment(PaymentRequest request) {
+        if (checkoutRateLimiter.overCheckoutLimit(request.getUserId())) {
+            throw new AppException(ErrorCode.CHECKOUT_RATE_LIMITED);
+        }
+
+        // Booking: Turnstile verify trên turnstileExecutor trong lúc validate (chỉ đọc, ngoài transaction);
+        // join trước khi mở transaction ghi → không giữ transaction trong lúc chờ Cloudflare
+        BookingCheckout checkout = null;
+        if (request.getPaymentType() == PaymentType.Booking) {
+            CompletableFuture<Boolean> turnstile = cloudflareTurnstileService.verifyAsync(request.getTurnstileToken());
+            try {
+                checkout = validateBookingCheckout(request);
+            } catch (AppException e) {
+                // Token sai vẫn được báo trước lỗi validate
+                awaitTurnstile(turnstile);
+                throw e;
+            }
+            awaitTurnstile(turnstile);
+        }
+        BookingCheckout validated = checkout;
+
+        if (!linkOutsideTransaction) {
+            // Chế độ cũ: giữ chỗ + gọi PayOS trong cùng 1 transaction
+            return transactionTemplate.execute(status ->
+                    attachPaymentLink(request, reservePayment(request, validated)));
+        }
+
+        // 1) Giữ chỗ (payment PENDING + slot Locked) trong transaction ngắn
+        PendingCheckout pending = transactionTemplate.execute(status -> reservePayment(request, validated));
+
+        // 2) Gọi PayOS sau commit → DB connection đã trả về pool trong lúc chờ network
+        try {
+            return attachPaymentLink(request, pending);
+        } catch (RuntimeException e) {
+            transactionTemplate.executeWithoutResult(status -> releaseReservation(pending.payment()));
+            throw e;
+        }
+    }
+
+    private record PendingCheckout(Payment payment, String description) {}
+
+    private record BookingCheckout(BookingPlan plan, User user, List<SlotRequest> slots,
+                                   TutorPackage tutorPackage) {}
+
+    /**
+     * @param checkout kết quả validate booking (đã chạy trước khi mở transaction), null với Course
+     */
+    private PendingCheckout reservePayment(PaymentRequest request, BookingCheckout checkout) {
         Payment payment;
         BigDecimal amount;
         String description;
@@ -93,60 +153,17 @@ public class PaymentService {
         }
 
         else if (request.getPaymentType() == PaymentType.Booking) {
-            boolean verified = cloudflareTurnstileService.verify(request.getTurnstileToken());
-            if (!verified) {
-                throw new AppException(ErrorCode.INVALID_TURNSTILE_TOKEN);
-            }
-
+            BookingPlan plan = checkout.plan();
+            User user = checkout.user();
+            List<SlotRequest> slots = checkout.slots();
+            TutorPackage selectedTutorPackage = checkout.tutorPackage();
             UserPackage userPackage = null;
-            TutorPackage selectedTutorPackage = null; // ✅ thêm
-
-            BookingPlan plan = bookingPlanRepository.findById(request.getTargetId())
-                    .orElseThrow(() -> new AppException(ErrorCode.BOOKING_NOT_FOUND));
 
             tutorId = plan.getTutorID();
-            User user = userRepository.findById(request.getUserId())
-                    .orElseThrow(() -> new AppException(ErrorCode.USER_NOT_EXIST));
-
-            LocalDateTime oneHourAgo = LocalDateTime.now().minusHours(1);
-
-            long cancelledCount = paymentRepository
-                    .countByUserIdAndPaymentTypeAndTargetIdAndStatusAndCreatedAtAfter(
-                            user.getUserID(),
-                            PaymentType.Booking,
-                            plan.getBookingPlanID(),
-                            PaymentStatus.CANCELLED,
-                            oneHourAgo
-                    );
-
-            long expiredCount = paymentRepository
-                    .countByUserIdAndPaymentTypeAndTargetIdAndStatusAndCreatedAtAfter(
-                            user.getUserID(),
-                            PaymentType.Booking,
-                            plan.getBookingPlanID(),
-                            PaymentStatus.EXPIRED,
-                            oneHourAgo
-                    );
-
-            long badAttempts = cancelledCount + expiredCount;
-
-            if (badAttempts >= 3) {
-                throw new AppException(ErrorCode.BOOKING_PAYMENT_CANCEL_TOO_MANY_TIMES);
-            }
-
-            List<SlotRequest> slots = request.getSlots();
-            if (slots == null || slots.isEmpty()) {
-                throw new AppException(ErrorCode.BOOKING_SLOT_NOT_AVAILABLE);
-            }
-
             BigDecimal totalAmount = BigDecimal.valueOf(plan.getPricePerHours() * slots.size());
             description = "Slot 1:1 " + plan.getTitle();
 
-            //request.getUserPackageId() đang là tutorPackageId learner chọn
-            if (request.getUserPackageId() != null) {
-                selectedTutorPackage = tutorPackageRepository.findById(request.getUserPackageId())
-                        .orElseThrow(() -> new AppException(ErrorCode.TUTOR_PACKAGE_NOT_FOUND));
-
+            if (selectedTutorPackage != null) {
                 userPackage = UserPackage.builder()
                         .tutorPackage(selectedTutorPackage)
                         .user(user)
@@ -158,11 +175,8 @@ public class PaymentService {
             }
 
             //TẠO SLOTS LOCKED + LƯU tutor_package_id
+            List<BookingPlanSlot> lockedSlots = new ArrayList<>(slots.size());
             for (SlotRequest s : slots) {
-                boolean taken = bookingPlanSlotRepository.existsByTutorIDAndStartTimeAndEndTime(
-                        plan.getTutorID(), s.getStartTime(), s.getEndTime());
-                if (taken) throw new AppException(ErrorCode.BOOKING_SLOT_NOT_AVAILABLE);
-
                 BookingPlanSlot slot = BookingPlanSlot.builder()
                         .bookingPlanID(plan.getBookingPlanID())
                         .tutorID(plan.getTutorID())
@@ -178,7 +192,9 @@ public class PaymentService {
                         .build();
 
                 bookingPlanSlotRepository.save(slot);
+                lockedSlots.add(slot);
             }
+            tutorAvailabilityService.onSlotsOccupied(lockedSlots);
 
             payment = Payment.builder()
                     .userId(user.getUserID())
@@ -208,6 +224,60 @@ public class PaymentService {
             throw new AppException(ErrorCode.INVALID_PAYMENT_TYPE);
         }
 
+        return new PendingCheckout(payment, description);
+    }
+
+    /**
+     * Validate booking checkout (chỉ đọc, chưa ghi gì) để chạy trong lúc Turnstile đang verify.
+     */
+    private BookingCheckout validateBookingCheckout(PaymentRequest request) {
+        BookingPlan plan = bookingPlanRepository.findById(request.getTargetId())
+                .orElseThrow(() -> new AppException(ErrorCode.BOOKING_NOT_FOUND));
+
+        User user = userRepository.findById(request.getUserId())
+                .orElseThrow(() -> new AppException(ErrorCode.USER_NOT_EXIST));
+
+        // Đếm huỷ / hết hạn trong 1 giờ lấy từ bộ đếm trong bộ nhớ, không COUNT trên bảng payment
+        if (checkoutRateLimiter.tooManyFailedBookings(user.getUserID(), plan.getBookingPlanID())) {
+            throw new AppException(ErrorCode.BOOKING_PAYMENT_CANCEL_TOO_MANY_TIMES);
+        }
+
+        List<SlotRequest> slots = request.getSlots();
+        if (slots == null || slots.isEmpty()) {
+            throw new AppException(ErrorCode.BOOKING_SLOT_NOT_AVAILABLE);
+        }
+
+        //request.getUserPackageId() đang là tutorPackageId learner chọn
+        TutorPackage selectedTutorPackage = null;
+        if (request.getUserPackageId() != null) {
+            selectedTutorPackage = tutorPackageRepository.findById(request.getUserPackageId())
+                    .orElseThrow(() -> new AppException(ErrorCode.TUTOR_PACKAGE_NOT_FOUND));
+        }
+
+        // Slot trùng trong cùng request hoặc đã có người giữ
+        Set<String> seen = new HashSet<>();
+        for (SlotRequest s : slots) {
+            if (!seen.add(s.getStartTime() + "|" + s.getEndTime())) {
+                throw new AppException(ErrorCode.BOOKING_SLOT_NOT_AVAILABLE);
+            }
+            boolean taken = bookingPlanSlotRepository.existsByTutorIDAndStartTimeAndEndTime(
+                    plan.getTutorID(), s.getStartTime(), s.getEndTime());
+            if (taken) throw new AppException(ErrorCode.BOOKING_SLOT_NOT_AVAILABLE);
+        }
+
+        return new BookingCheckout(plan, user, slots, selectedTutorPackage);
+    }
+
+    private void awaitTurnstile(CompletableFuture<Boolean> turnstile) {
+        if (turnstile == null || !Boolean.TRUE.equals(turnstile.join())) {
+            throw new AppException(ErrorCode.INVALID_TURNSTILE_TOKEN);
+        }
+    }
+
+    private ResponseEntity<?> attachPaymentLink(PaymentRequest request, PendingCheckout pending) {
+        Payment payment = pending.payment();
+        String description = pending.description();
+
         var wrapper = payOSService.createPaymentLink(
                 payment.getPaymentID(),
                 request.getUserId(),
@@ -222,7 +292,14 @@ public class PaymentService {
                 ? wrapper.expiredAt()
                 : payment.getExpiresAt();
 
-        updatePaymentWithPayOSData(payment, data, expiredAt);
+        if (!updatePaymentWithPayOSData(payment, data, expiredAt)) {
+            // Payment bị huỷ trong lúc gọi PayOS (tutor xoá / đổi plan) → link vừa tạo không được dùng
+            log.warn("[PAYMENT] Payment {} was cancelled while creating PayOS link → cancel link {}",
+                    payment.getPaymentID(), data.getPaymentLinkId());
+            payment.setStatus(PaymentStatus.CANCELLED);
+            payOSService.cancelPaymentLinkAfterCommit(data.getPaymentLinkId());
+            throw new AppException(ErrorCode.PAYMENT_FAILED);
+        }
 
         return ResponseEntity.ok(Map.of(
                 "checkoutUrl", data.getCheckoutUrl(),
@@ -230,13 +307,27 @@ public class PaymentService {
         ));
     }
 
-    private void updatePaymentWithPayOSData(
+    // Tạo link PayOS lỗi sau khi đã commit giữ chỗ → trả slot lại
+    private void releaseReservation(Payment payment) {
+        if (payment.getStatus() != PaymentStatus.PENDING) return;
+
+        payment.setStatus(PaymentStatus.FAILED);
+        payment.setIsPaid(false);
+        paymentRepository.save(payment);
+
+        rollbackBookingSlots(payment, "PAYOS_LINK_FAILED");
+    }
+
+    /**
+     * @return false nếu payment không còn PENDING (đã bị huỷ) → link không được gắn
+     */
+    private boolean updatePaymentWithPayOSData(
             Payment payment,
             CheckoutResponseData data,
             LocalDateTime expiredAt
     ) {
         try {
-            if (data == null) return;
+            if (data == null) return true;
 
             payment.setOrderCode(String.valueOf(data.getOrderCode()));
             payment.setCheckoutUrl(data.getCheckoutUrl());
@@ -244,7 +335,15 @@ public class PaymentService {
             payment.setPaymentLinkId(data.getPaymentLinkId());
             payment.setExpiresAt(expiredAt);
 
-            paymentRepository.save(payment);
+            if (paymentRepository.attachLinkIfPending(
+                    payment.getPaymentID(),
+                    payment.getOrderCode(),
+                    payment.getCheckoutUrl(),
+                    payment.getQrCodeUrl(),
+                    payment.getPaymentLinkId(),
+                    expiredAt) == 0) {
+                return false;
+            }
 
             log.info("[PAYMENT UPDATED] Payment {} updated with PayOS link + expiredAt",
                     payment.getPaymentID());
@@ -252,6 +351,7 @@ public class PaymentService {
         } catch (Exception e) {
             log.error("Failed to update payment info from PayOS: {}", e.getMessage());
         }
+        return true;
     }
 
     private void applyCommissionSnapshot(Payment payment) {
@@ -326,13 +426,10 @@ public class PaymentService {
 
         else if (payment.getPaymentType() == PaymentType.Booking) {
 
+            // 1 câu UPDATE cho toàn bộ slot, sau đó mới đọc lại (đã là Paid)
+            bookingPlanSlotRepository.markSlotsPaidByPaymentID(payment.getPaymentID());
             List<BookingPlanSlot> slots = bookingPlanSlotRepository.findAllByPaymentID(payment.getPaymentID());
 
-            for (BookingPlanSlot s : slots) {
-                s.setStatus(SlotStatus.Paid);
-                bookingPlanSlotRepository.save(s);
-            }
-
             Tutor tutor = null;
 
             if (!slots.isEmpty()) {
@@ -385,6 +482,54 @@ public class PaymentService {
         }
     }
 
+    /**
+     * PayOS báo đã thu tiền cho payment đã CANCELLED (link bị huỷ chậm hơn lúc learner thanh toán)
+     * → tạo refund cho toàn bộ số tiền. Slot đã bị xoá / giải phóng nên refund không gắn slot.
+     *
+     * @return false nếu không tạo refund (không phải booking, hoặc payment đã được xử lý trước đó)
+     */
+    @Transactional
+    public boolean refundCancelledPayment(Payment payment, String response) {
+        if (payment.getPaymentType() != PaymentType.Booking) {
+            log.error("[REFUND] Payment {} ({}) was CANCELLED but PayOS captured money → cần hoàn tiền thủ công",
+                    payment.getPaymentID(), payment.getPaymentType());
+            return false;
+        }
+
+        if (paymentRepository.markRefundIfCancelled(payment.getPaymentID(), response) == 0) {
+            return false;
+        }
+        payment.setIsRefund(true);
+
+        Tutor tutor = tutorRepository.findById(payment.getTutorId())
+                .orElseThrow(() -> new AppException(ErrorCode.TUTOR_NOT_FOUND));
+
+        RefundRequest refund = refundRequestRepository.save(RefundRequest.builder()
+                .bookingPlanId(payment.getTargetId())
+                .userId(payment.getUserId())
+                .refundAmount(payment.getAmount())
+                .status(RefundStatus.PENDING)
+                .refundType(RefundType.TUTOR_RESCHEDULE)
+                .tutor(tutor)
+                .reason("Hoàn tiền do thanh toán được ghi nhận sau khi lịch học đã bị hủy")
+                .createdAt(LocalDateTime.now())
+                .build());
+
+        notificationService.sendNotification(
+                payment.getUserId(),
+                "Lịch học đã bị hủy - Yêu cầu hoàn tiền",
+                "Thanh toán của bạn được ghi nhận sau khi lịch học đã bị hủy. " +
+                        "Hệ thống đã tạo yêu cầu hoàn tiền. " +
+                        "Vui lòng nhập thông tin ngân hàng để nhận tiền.",
+                NotificationType.REFUND_AVAILABLE,
+                "/learner/refunds/" + refund.getRefundRequestId()
+        );
+
+        log.warn("[REFUND] Payment {} was CANCELLED but PayOS captured money → refund {} created",
+                payment.getPaymentID(), refund.getRefundRequestId());
+        return true;
+    }
+
     @Transactional
     public Payment handleUserCancelPayment(Long paymentId) {
         Payment payment = paymentRepository.findById(paymentId)
@@ -407,16 +552,11 @@ public class PaymentService {
 
         if (payment.getPaymentType() == PaymentType.Booking) {
             rollbackBookingSlots(payment, "USER_CANCEL");
+            checkoutRateLimiter.recordFailedBooking(payment);
         }
 
-        if (payment.getPaymentLinkId() != null) {
-            try {
-                payOSService.cancelPaymentLink(payment.getPaymentLinkId());
-            } catch (Exception e) {
-                log.error("[CANCEL] Failed to cancel PayOS link {}: {}",
-                        payment.getPaymentLinkId(), e.getMessage());
-            }
-        }
+        // Huỷ link PayOS sau khi commit, không giữ transaction trong lúc gọi network
+        payOSService.cancelPaymentLinkAfterCommit(payment.getPaymentLinkId());
 
         log.info("[CANCEL] Payment {} set to CANCELLED by user", paymentId);
         return payment;
@@ -428,19 +568,21 @@ public class PaymentService {
         List<BookingPlanSlot> slots =
                 bookingPlanSlotRepository.findAllByPaymentID(payment.getPaymentID());
 
-        long deletedCount = 0;
+        List<BookingPlanSlot> deleted = new ArrayList<>();
         for (BookingPlanSlot slot : slots) {
             if (slot.getStatus() == SlotStatus.Locked) {
                 bookingPlanSlotRepository.delete(slot);
-                deletedCount++;
+                deleted.add(slot);
 
                 log.warn("[ROLLBACK] Deleted slot {} ({} - {}) due to {}",
                         slot.getSlotID(), slot.getStartTime(), slot.getEndTime(), reason);
             }
         }
 
+        tutorAvailabilityService.onSlotsReleased(deleted);
+
         log.warn("[ROLLBACK] Payment {} marked {}. Slots removed={}",
-                payment.getOrderCode(), reason, deletedCount);
+                payment.getOrderCode(), reason, deleted.size());
     }
 
     @Transactional(readOnly = true)
@@ -1,16 +1,23 @@
 package edu.lms.service;
 
-import edu.lms.entity.BookingPlanSlot;
 import edu.lms.entity.Payment;
+import edu.lms.entity.PaymentWebhookInbox;
 import edu.lms.enums.PaymentStatus;
-import edu.lms.enums.PaymentType;
 import edu.lms.enums.SlotStatus;
+import edu.lms.enums.WebhookInboxStatus;
+import edu.lms.listener.PaymentWebhookReceivedEvent;
 import edu.lms.repository.BookingPlanSlotRepository;
 import edu.lms.repository.PaymentRepository;
+import edu.lms.repository.PaymentWebhookInboxRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
@@ -20,161 +27,231 @@ import java.util.Map;
 @RequiredArgsConstructor
 public class PaymentWebhookService {
 
+    private static final String PAID_CODE = "00";
+    private static final int MAX_ATTEMPTS = 5;
+    private static final int RETRY_BATCH_SIZE = 100;
+    // Worker giữ row PROCESSING quá lâu hơn lease → coi như đã chết, cho claim lại
+    private static final Duration CLAIM_LEASE = Duration.ofMinutes(5);
+    private static final List<WebhookInboxStatus> CLAIMABLE =
+            List.of(WebhookInboxStatus.RECEIVED, WebhookInboxStatus.FAILED);
+
     private final PaymentRepository paymentRepository;
     private final BookingPlanSlotRepository bookingPlanSlotRepository;
+    private final PaymentWebhookInboxRepository paymentWebhookInboxRepository;
     private final PaymentService paymentService;
     private final PayOSService payOSService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final CheckoutRateLimiter checkoutRateLimiter;
 
     /**
-     * Handle webhook callback from PayOS
-     * code = "00" -> PAID
-     * code != "00" -> FAILED
+     * Handle webhook callback from PayOS (đường nhanh, trả lời PayOS ngay)
+     * - Ghi lần gọi vào inbox với key duy nhất (orderCode:code) → replay bị bỏ qua
+     * - code = "00" -> UPDATE có điều kiện PENDING → PAID (1 câu lệnh, không đọc payment trước)
+     * - Side effect (enrollment, slot, chat room, notification) chạy async từ inbox
      */
+    @Transactional
     public void handleWebhook(String orderCode, String code, Map<String, Object> payload) {
         log.info("Handling webhook | orderCode={} | code={} | payload={}", orderCode, code, payload);
 
-        paymentRepository.findByOrderCode(orderCode).ifPresentOrElse(payment -> {
-            try {
-                boolean isPaid = "00".equals(code);
-
-                // ===== LOG trạng thái trước khi xử lý =====
-                log.info("[PAYOS WEBHOOK][BEFORE] paymentId={} | status={} | isPaid={} | type={} | userId={} | tutorId={} | targetId={}",
-                        payment.getPaymentID(),
-                        payment.getStatus(),
-                        payment.getIsPaid(),
-                        payment.getPaymentType(),
-                        payment.getUserId(),
-                        payment.getTutorId(),
-                        payment.getTargetId()
-                );
-
-                // ===================================================
-                // PAYMENT ĐÃ BỊ CANCELLED TỪ TRƯỚC → BLOCK PAID
-                // ===================================================
-                if (payment.getStatus() == PaymentStatus.CANCELLED) {
-
-                    log.warn("[BLOCK] Payment {} was CANCELLED earlier → ignoring webhook (code={})",
-                            payment.getPaymentID(), code);
-
-                    // Hủy link PayOS nếu vẫn tồn tại
-                    if (payment.getPaymentLinkId() != null) {
-                        try {
-                            payOSService.cancelPaymentLink(payment.getPaymentLinkId());
-                        } catch (Exception ex) {
-                            log.error("[BLOCK] Cannot cancel PayOS link {}", payment.getPaymentLinkId(), ex);
-                        }
-                    }
-
-                    payment.setIsPaid(false);
-                    payment.setPaidAt(null);
-
-                    if (payload != null)
-                        payment.setTransactionResponse(payload.toString());
-
-                    paymentRepository.save(payment);
-
-                    log.info("[PAYOS WEBHOOK][AFTER BLOCK] paymentId={} | status={} | isPaid={} | paidAt={}",
-                            payment.getPaymentID(), payment.getStatus(), payment.getIsPaid(), payment.getPaidAt());
-
-                    return;
-                }
-
-                boolean hasRejectedSlot = false;
-                List<BookingPlanSlot> slots = null;
-
-                if (payment.getPaymentType() == PaymentType.Booking) {
-                    slots = bookingPlanSlotRepository.findAllByPaymentID(payment.getPaymentID());
-
-                    if (slots == null || slots.isEmpty()) {
-                        log.warn("No slots found for booking payment {}", payment.getPaymentID());
-                    } else {
-                        hasRejectedSlot = slots.stream()
-                                .anyMatch(s -> s.getStatus() == SlotStatus.Rejected);
-                    }
-                }
-
-                // ===================================================
-                // SLOT ĐÃ BỊ REJECT → FORCE CANCEL PAYMENT
-                // ===================================================
-                if (hasRejectedSlot) {
-
-                    log.warn("[FORCE CANCEL] Payment {} contains REJECTED slot → CANCEL payment",
-                            payment.getPaymentID());
-
-                    // Hủy link PayOS
-                    if (payment.getPaymentLinkId() != null) {
-                        try {
-                            payOSService.cancelPaymentLink(payment.getPaymentLinkId());
-                        } catch (Exception ex) {
-                            log.error("[FORCE CANCEL] Cannot cancel PayOS link {}", payment.getPaymentLinkId(), ex);
-                        }
-                    }
-
-                    payment.setStatus(PaymentStatus.CANCELLED);
-                    payment.setIsPaid(false);
-                    payment.setPaidAt(null);
-
-                    if (payload != null)
-                        payment.setTransactionResponse(payload.toString());
-
-                    paymentRepository.save(payment);
-
-                    log.info("[PAYOS WEBHOOK][AFTER FORCE CANCEL] paymentId={} | status={} | isPaid={} | paidAt={}",
-                            payment.getPaymentID(), payment.getStatus(), payment.getIsPaid(), payment.getPaidAt());
-
-                    return;
-                }
-
-                // ===================================================
-                // PAYMENT SUCCESS (VALID)
-                // ===================================================
-                if (isPaid) {
-
-                    payment.setStatus(PaymentStatus.PAID);
-                    payment.setIsPaid(true);
-                    payment.setPaidAt(LocalDateTime.now());
-                    paymentRepository.save(payment);
-
-                    log.info("[PAYOS] Payment {} marked as PAID (code={})", orderCode, code);
-
-                    // Save webhook payload
-                    if (payload != null)
-                        payment.setTransactionResponse(payload.toString());
-
-                    paymentRepository.save(payment);
-
-                    log.info("[PAYOS WEBHOOK][AFTER PAID] paymentId={} | status={} | isPaid={} | paidAt={}",
-                            payment.getPaymentID(), payment.getStatus(), payment.getIsPaid(), payment.getPaidAt());
-
-                    paymentService.processPostPayment(payment);
+        String dedupKey = PaymentWebhookInbox.dedupKeyOf(orderCode, code);
+        if (paymentWebhookInboxRepository.existsByDedupKey(dedupKey)) {
+            log.info("[PAYOS WEBHOOK][REPLAY] orderCode={} | code={} already received → ignore", orderCode, code);
+            return;
+        }
+
+        String response = payload != null ? payload.toString() : null;
+        boolean paidTransition = PAID_CODE.equals(code)
+                && paymentRepository.markPaidIfPending(orderCode, LocalDateTime.now(), response) == 1;
+
+        // Unique key trên dedup_key chặn 2 lần gọi đồng thời cùng lọt qua bước exists ở trên
+        PaymentWebhookInbox inbox = paymentWebhookInboxRepository.saveAndFlush(
+                PaymentWebhookInbox.builder()
+                        .dedupKey(dedupKey)
+                        .orderCode(orderCode)
+                        .code(code)
+                        .payload(response)
+                        .paidTransition(paidTransition)
+                        .receivedAt(LocalDateTime.now())
+                        .build()
+        );
+
+        log.info("[PAYOS WEBHOOK][INBOX] inboxId={} | orderCode={} | paidTransition={}",
+                inbox.getInboxId(), orderCode, paidTransition);
+
+        eventPublisher.publishEvent(new PaymentWebhookReceivedEvent(inbox.getInboxId()));
+    }
 
-                } else {
+    /**
+     * Xử lý side effect của 1 inbox row. Claim bằng UPDATE có điều kiện nên
+     * nhiều worker / nhiều node có thể gọi cùng lúc mà không xử lý trùng.
+     */
+    public void processInbox(Long inboxId) {
+        LocalDateTime now = LocalDateTime.now();
+        if (paymentWebhookInboxRepository.claim(inboxId, CLAIMABLE, MAX_ATTEMPTS, now, now.minus(CLAIM_LEASE)) == 0) {
+            return;
+        }
+
+        PaymentWebhookInbox inbox = paymentWebhookInboxRepository.findById(inboxId).orElse(null);
+        if (inbox == null) return;
+
+        try {
+            WebhookInboxStatus result = applySideEffects(inbox);
+            paymentWebhookInboxRepository.finish(inboxId, result, null, LocalDateTime.now());
+        } catch (Exception e) {
+            log.error("Webhook error for {}: {}", inbox.getOrderCode(), e.getMessage(), e);
+            String error = e.getMessage() != null && e.getMessage().length() > 1000
+                    ? e.getMessage().substring(0, 1000)
+                    : e.getMessage();
+            if (inbox.getAttempts() != null && inbox.getAttempts() >= MAX_ATTEMPTS) {
+                logDead(inbox, error);
+                paymentWebhookInboxRepository.finish(inboxId, WebhookInboxStatus.DEAD, error, null);
+            } else {
+                paymentWebhookInboxRepository.finish(inboxId, WebhookInboxStatus.FAILED, error, null);
+            }
+        }
+    }
 
-                    // ===================================================
-                    // PAYMENT FAILED
-                    // ===================================================
-                    payment.setStatus(PaymentStatus.FAILED);
-                    payment.setIsPaid(false);
-                    paymentRepository.save(payment);
+    /**
+     * 🕒 Quét lại inbox chưa xử lý xong (executor đầy, worker lỗi, app restart)
+     */
+    @Scheduled(fixedDelay = 30000)
+    public void retryPendingInbox() {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime staleBefore = now.minus(CLAIM_LEASE);
+
+        // Hết lượt retry (kể cả worker chết ở lần cuối) → DEAD, không bỏ qua im lặng
+        paymentWebhookInboxRepository.findExhausted(
+                CLAIMABLE, staleBefore, MAX_ATTEMPTS, PageRequest.of(0, RETRY_BATCH_SIZE)
+        ).forEach(inbox -> {
+            if (paymentWebhookInboxRepository.markDead(inbox.getInboxId(), CLAIMABLE, MAX_ATTEMPTS, staleBefore) > 0) {
+                logDead(inbox, inbox.getLastError());
+            }
+        });
 
-                    log.warn("[PAYOS] Payment {} FAILED (code={}) → rollback slots", orderCode, code);
+        List<Long> ids = paymentWebhookInboxRepository.findPendingIds(
+                CLAIMABLE,
+                now.minusSeconds(30),
+                staleBefore,
+                MAX_ATTEMPTS,
+                PageRequest.of(0, RETRY_BATCH_SIZE)
+        );
 
-                    // Dùng hàm rollback chung trong PaymentService
-                    paymentService.rollbackBookingSlots(payment, "FAILED");
+        if (ids.isEmpty()) return;
 
-                    if (payload != null)
-                        payment.setTransactionResponse(payload.toString());
+        log.info("[PAYOS WEBHOOK][RETRY] Re-processing {} inbox rows", ids.size());
+        ids.forEach(this::processInbox);
+    }
 
-                    paymentRepository.save(payment);
+    private void logDead(PaymentWebhookInbox inbox, String error) {
+        log.error("[PAYOS WEBHOOK][DEAD] inboxId={} | orderCode={} | code={} | paidTransition={} | attempts={} | lastError={} → cần xử lý tay",
+                inbox.getInboxId(), inbox.getOrderCode(), inbox.getCode(), inbox.getPaidTransition(),
+                inbox.getAttempts(), error);
+    }
 
-                    log.info("[PAYOS WEBHOOK][AFTER FAILED] paymentId={} | status={} | isPaid={} | paidAt={}",
-                            payment.getPaymentID(), payment.getStatus(), payment.getIsPaid(), payment.getPaidAt());
-                }
+    private WebhookInboxStatus applySideEffects(PaymentWebhookInbox inbox) {
+        String orderCode = inbox.getOrderCode();
+        Payment payment = paymentRepository.findByOrderCode(orderCode).orElse(null);
+
+        if (payment == null) {
+            log.warn("Payment not found for orderCode={}", orderCode);
+            return WebhookInboxStatus.IGNORED;
+        }
+
+        log.info("[PAYOS WEBHOOK][PROCESS] paymentId={} | status={} | isPaid={} | type={} | userId={} | tutorId={} | targetId={}",
+                payment.getPaymentID(),
+                payment.getStatus(),
+                payment.getIsPaid(),
+                payment.getPaymentType(),
+                payment.getUserId(),
+                payment.getTutorId(),
+                payment.getTargetId()
+        );
+
+        // ===================================================
+        // PAYMENT SUCCESS (VALID) — lần gọi này đã chuyển PENDING → PAID
+        // ===================================================
+        if (Boolean.TRUE.equals(inbox.getPaidTransition())) {
+            paymentService.processPostPayment(payment);
+
+            log.info("[PAYOS WEBHOOK][AFTER PAID] paymentId={} | status={} | isPaid={} | paidAt={}",
+                    payment.getPaymentID(), payment.getStatus(), payment.getIsPaid(), payment.getPaidAt());
+            return WebhookInboxStatus.PROCESSED;
+        }
+
+        if (PAID_CODE.equals(inbox.getCode())) {
+            return handleBlockedPaid(payment, inbox);
+        }
+
+        // ===================================================
+        // PAYMENT FAILED
+        // ===================================================
+        if (paymentRepository.markUnpaidIfPending(orderCode, PaymentStatus.FAILED, inbox.getPayload()) == 0) {
+            log.info("[PAYOS WEBHOOK] Payment {} already {} → ignore FAILED (code={})",
+                    payment.getPaymentID(), payment.getStatus(), inbox.getCode());
+            return WebhookInboxStatus.IGNORED;
+        }
+
+        payment.setStatus(PaymentStatus.FAILED);
+        log.warn("[PAYOS] Payment {} FAILED (code={}) → rollback slots", orderCode, inbox.getCode());
+
+        // Dùng hàm rollback chung trong PaymentService
+        paymentService.rollbackBookingSlots(payment, "FAILED");
+        return WebhookInboxStatus.PROCESSED;
+    }
 
-            } catch (Exception e) {
-                log.error("Webhook error for {}: {}", orderCode, e.getMessage(), e);
+    /**
+     * code = "00" nhưng UPDATE PENDING → PAID không ăn: replay, payment đã bị CANCELLED,
+     * hoặc booking có slot bị Rejected.
+     */
+    private WebhookInboxStatus handleBlockedPaid(Payment payment, PaymentWebhookInbox inbox) {
+
+        // ===================================================
+        // PAYMENT ĐÃ BỊ CANCELLED TỪ TRƯỚC → BLOCK PAID
+        // Link huỷ chậm hơn lúc learner thanh toán → tiền đã bị thu, tạo refund
+        // ===================================================
+        if (payment.getStatus() == PaymentStatus.CANCELLED) {
+            if (paymentService.refundCancelledPayment(payment, inbox.getPayload())) {
+                return WebhookInboxStatus.PROCESSED;
+            }
+            log.warn("[BLOCK] Payment {} was CANCELLED earlier → ignoring webhook (code={})",
+                    payment.getPaymentID(), inbox.getCode());
+            cancelLinkQuietly(payment, "[BLOCK]");
+            return WebhookInboxStatus.IGNORED;
+        }
+
+        if (payment.getStatus() == PaymentStatus.PAID) {
+            log.info("[PAYOS WEBHOOK][REPLAY] Payment {} already PAID → ignore", payment.getPaymentID());
+            return WebhookInboxStatus.IGNORED;
+        }
+
+        // ===================================================
+        // SLOT ĐÃ BỊ REJECT → FORCE CANCEL PAYMENT
+        // ===================================================
+        if (bookingPlanSlotRepository.existsByPaymentIDAndStatus(payment.getPaymentID(), SlotStatus.Rejected)) {
+            log.warn("[FORCE CANCEL] Payment {} contains REJECTED slot → CANCEL payment",
+                    payment.getPaymentID());
+
+            if (paymentRepository.markUnpaidIfPending(
+                    payment.getOrderCode(), PaymentStatus.CANCELLED, inbox.getPayload()) > 0) {
+                checkoutRateLimiter.recordFailedBooking(payment);
+                // code = "00" → PayOS đã thu tiền của payment vừa bị huỷ
+                paymentService.refundCancelledPayment(payment, inbox.getPayload());
             }
+            cancelLinkQuietly(payment, "[FORCE CANCEL]");
+            return WebhookInboxStatus.PROCESSED;
+        }
+
+        log.warn("[PAYOS WEBHOOK] Payment {} in status {} cannot be marked PAID → ignore",
+                payment.getPaymentID(), payment.getStatus());
+        return WebhookInboxStatus.IGNORED;
+    }
 
-        }, () -> log.warn("Payment not found for orderCode={}", orderCode));
+    private void cancelLinkQuietly(Payment payment, String tag) {
+        if (payment.getPaymentLinkId() == null) return;
+        try {
+            payOSService.cancelPaymentLink(payment.getPaymentLinkId());
+        } catch (Exception ex) {
+            log.error("{} Cannot cancel PayOS link {}", tag, payment.getPaymentLinkId(), ex);
+        }
     }
 }
@@ -0,0 +1,112 @@
+package edu.lms.service;
+
+import edu.lms.entity.Lesson;
+import edu.lms.repository.QuizQuestionRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache quiz đã compile theo lesson. Nội dung quiz live chỉ đổi khi admin duyệt draft
+ * (AdminCourseService.syncQuizFromDraft) hoặc tutor sửa câu hỏi live (TutorQuizService),
+ * các chỗ đó gọi evict(lessonId). Evict chạy ngay và chạy lại sau khi transaction kết thúc
+ * để request đọc giữa chừng không đưa bản cũ trở lại cache.
+ * Số lesson được cache bị chặn bởi maxLessons: đầy thì bỏ bản compile lâu nhất.
+ */
+@Slf4j
+@Service
+public class QuizDefinitionCache {
+
+    private final QuizQuestionRepository quizQuestionRepository;
+    private final int maxLessons;
+
+    private final Map<Long, CachedQuiz> cache = new ConcurrentHashMap<>();
+    // Tăng mỗi lần evict: bản compile bắt đầu trước lần evict gần nhất sẽ không được ghi vào cache
+    private final AtomicLong invalidations = new AtomicLong();
+
+    @Autowired
+    public QuizDefinitionCache(
+            QuizQuestionRepository quizQuestionRepository,
+            @Value("${quiz.definition-cache.max-lessons:5000}") int maxLessons
+    ) {
+        this.quizQuestionRepository = quizQuestionRepository;
+        this.maxLessons = maxLessons;
+    }
+
+    /**
+     * Quiz của lesson (có thể rỗng nếu lesson chưa có câu hỏi). Lần đầu load câu hỏi + option trong 1 query.
+     */
+    public CompiledQuiz get(Lesson lesson) {
+        CachedQuiz cached = cache.get(lesson.getLessonID());
+        if (cached != null) {
+            return cached.quiz();
+        }
+
+        long generation = invalidations.get();
+        CompiledQuiz quiz = CompiledQuiz.compile(
+                lesson.getLessonID(), quizQuestionRepository.findWithOptionsByLesson(lesson));
+
+        // Có evict trong lúc load → trả kết quả nhưng không cache
+        if (invalidations.get() == generation) {
+            if (cache.size() >= maxLessons) {
+                evictOldest();
+            }
+            cache.put(lesson.getLessonID(), new CachedQuiz(quiz, System.nanoTime()));
+        }
+        return quiz;
+    }
+
+    /**
+     * Gọi trong transaction làm thay đổi câu hỏi / option của lesson live
+     */
+    public void evict(Long lessonId) {
+        if (lessonId == null) {
+            return;
+        }
+        invalidate(() -> cache.remove(lessonId));
+    }
+
+    public void evictAll(Collection<Long> lessonIds) {
+        if (lessonIds == null || lessonIds.isEmpty()) {
+            return;
+        }
+        invalidate(() -> lessonIds.forEach(cache::remove));
+    }
+
+    int cacheSize() {
+        return cache.size();
+    }
+
+    // ====================== HELPER =========================
+
+    private void invalidate(Runnable removal) {
+        invalidations.incrementAndGet();
+        removal.run();
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    invalidations.incrementAndGet();
+                    removal.run();
+                }
+            });
+        }
+    }
+
+    private void evictOldest() {
+        cache.entrySet().stream()
+                .min((a, b) -> Long.compare(a.getValue().compiledAtNanos(), b.getValue().compiledAtNanos()))
+                .ifPresent(oldest -> cache.remove(oldest.getKey()));
+    }
+
+    private record CachedQuiz(CompiledQuiz quiz, long compiledAtNanos) {}
+}
@@ -0,0 +1,199 @@
+package edu.lms.service;
+
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.MessagingException;
+import jakarta.mail.SendFailedException;
+import jakarta.mail.Transport;
+import jakarta.mail.internet.MimeMessage;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Giữ tối đa maxSessions kết nối SMTP đã EHLO / STARTTLS / AUTH để dùng lại giữa các lần gửi
+ * (JavaMailSenderImpl mở + đóng 1 kết nối cho mỗi lần send).
+ *  - phiên rảnh quá validateAfter được kiểm tra bằng NOOP trước khi dùng, quá idleTimeout thì đóng
+ *  - lỗi kết nối giữa chừng → bỏ phiên, mở phiên mới và gửi lại đúng 1 lần
+ *  - người nhận bị từ chối (SendFailedException) chỉ fail mail đó, phiên vẫn dùng tiếp
+ */
+@Slf4j
+@Component
+public class SmtpSessionPool {
+
+    private final JavaMailSenderImpl mailSender;
+    private final long idleTimeoutNanos;
+    private final long validateAfterNanos;
+    private final Semaphore permits;
+
+    // đầu deque = phiên vừa trả về (còn sống nhiều khả năng nhất)
+    private final BlockingDeque<PooledSession> idle = new LinkedBlockingDeque<>();
+
+    @Autowired
+    public SmtpSessionPool(
+            JavaMailSenderImpl mailSender,
+            @Value("${mail-sender.max-sessions:4}") int maxSessions,
+            @Value("${mail-sender.idle-timeout-seconds:120}") long idleTimeoutSeconds,
+            @Value("${mail-sender.validate-after-seconds:30}") long validateAfterSeconds
+    ) {
+        this.mailSender = mailSender;
+        this.idleTimeoutNanos = Duration.ofSeconds(idleTimeoutSeconds).toNanos();
+        this.validateAfterNanos = Duration.ofSeconds(validateAfterSeconds).toNanos();
+        this.permits = new Semaphore(maxSessions, true);
+    }
+
+    public MimeMessage createMimeMessage() {
+        return mailSender.createMimeMessage();
+    }
+
+    /**
+     * Gửi cả lô trên 1 phiên, báo kết quả từng mail ngay khi gửi xong (error null = đã gửi).
+     */
+    public void sendAll(List<MimeMessage> messages, ResultListener listener) throws InterruptedException {
+        PooledSession session;
+        try {
+            session = borrow();
+        } catch (MessagingException ex) {
+            for (int i = 0; i < messages.size(); i++) {
+                listener.onResult(i, ex);
+            }
+            return;
+        }
+
+        boolean healthy = true;
+        try {
+            for (int i = 0; i < messages.size(); i++) {
+                MimeMessage message = messages.get(i);
+                try {
+                    session.send(message);
+                    listener.onResult(i, null);
+                } catch (SendFailedException ex) {
+                    listener.onResult(i, ex);
+                } catch (MessagingException ex) {
+                    // kết nối hỏng (server đóng phiên rảnh, mạng) → mở phiên mới, gửi lại 1 lần
+                    session.close();
+                    try {
+                        session = connect();
+                        session.send(message);
+                        listener.onResult(i, null);
+                    } catch (SendFailedException retryEx) {
+                        listener.onResult(i, retryEx);
+                    } catch (MessagingException retryEx) {
+                        healthy = false;
+                        for (int j = i; j < messages.size(); j++) {
+                            listener.onResult(j, retryEx);
+                        }
+                        break;
+                    }
+                }
+            }
+        } finally {
+            release(session, healthy);
+        }
+    }
+
+    /**
+     * 🕒 Đóng phiên rảnh quá idleTimeout (server SMTP cũng tự cắt phiên rảnh lâu)
+     */
+    @Scheduled(fixedDelayString = "${mail-sender.evict-interval-ms:30000}")
+    public void evictIdle() {
+        long now = System.nanoTime();
+        List<PooledSession> expired = new ArrayList<>();
+        for (Iterator<PooledSession> it = idle.iterator(); it.hasNext(); ) {
+            PooledSession s = it.next();
+            if (now - s.lastUsedNanos > idleTimeoutNanos && idle.remove(s)) {
+                expired.add(s);
+            }
+        }
+        expired.forEach(PooledSession::close);
+        if (!expired.isEmpty()) {
+            log.debug("[SMTP POOL] Closed {} idle sessions", expired.size());
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        PooledSession s;
+        while ((s = idle.pollFirst()) != null) {
+            s.close();
+        }
+    }
+
+    private PooledSession borrow() throws MessagingException, InterruptedException {
+        permits.acquire();
+        try {
+            long now = System.nanoTime();
+            PooledSession s;
+            while ((s = idle.pollFirst()) != null) {
+                long idleNanos = now - s.lastUsedNanos;
+                if (idleNanos <= idleTimeoutNanos
+                        && (idleNanos <= validateAfterNanos || s.transport.isConnected())) {
+                    return s;
+                }
+                s.close();
+            }
+            return connect();
+        } catch (MessagingException | RuntimeException ex) {
+            permits.release();
+            throw ex;
+        }
+    }
+
+    private void release(PooledSession session, boolean healthy) {
+        if (healthy && session.transport.isConnected()) {
+            session.lastUsedNanos = System.nanoTime();
+            idle.offerFirst(session);
+        } else {
+            session.close();
+        }
+        permits.release();
+    }
+
+    private PooledSession connect() throws MessagingException {
+        Transport transport = mailSender.getSession().getTransport(mailSender.getProtocol());
+        transport.connect(mailSender.getHost(), mailSender.getPort(), mailSender.getUsername(), mailSender.getPassword());
+        log.debug("[SMTP POOL] Opened session to {}:{}", mailSender.getHost(), mailSender.getPort());
+        return new PooledSession(transport);
+    }
+
+    @FunctionalInterface
+    public interface ResultListener {
+        void onResult(int index, Exception error);
+    }
+
+    private static final class PooledSession {
+        private final Transport transport;
+        private volatile long lastUsedNanos = System.nanoTime();
+
+        private PooledSession(Transport transport) {
+            this.transport = transport;
+        }
+
+        private void send(MimeMessage message) throws MessagingException {
+            // giống JavaMailSenderImpl.doSend: set ngày gửi + Message-ID trước khi gửi
+            if (message.getSentDate() == null) {
+                message.setSentDate(new java.util.Date());
+            }
+            message.saveChanges();
+            transport.sendMessage(message, message.getAllRecipients());
+        }
+
+        private void close() {
+            try {
+                transport.close();
+            } catch (MessagingException ex) {
+                log.debug("[SMTP POOL] Close failed: {}", ex.getMessage());
+            }
+        }
+    }
+}
@@ -2,12 +2,10 @@ package edu.lms.service;
 
 import edu.lms.dto.response.*;
 import edu.lms.entity.Enrollment;
-import edu.lms.entity.UserLesson;
-import edu.lms.entity.Lesson;
-import edu.lms.entity.UserQuizResult;
 import edu.lms.enums.LessonType;
 import edu.lms.exception.AppException;
 import edu.lms.exception.ErrorCode;
+import edu.lms.repository.CourseSectionRepository;
 import edu.lms.repository.EnrollmentRepository;
 import edu.lms.repository.QuizQuestionRepository;
 import edu.lms.repository.UserCourseSectionRepository;
@@ -17,13 +15,18 @@ import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 @Service
 @RequiredArgsConstructor
 public class StudentCourseService {
 
     private final EnrollmentRepository enrollmentRepository;
+    private final CourseSectionRepository courseSectionRepository;
     private final UserCourseSectionRepository userCourseSectionRepository;
     private final UserLessonRepository userLessonRepository;
     private final QuizQuestionRepository quizQuestionRepository;
@@ -68,67 +71,94 @@ public class StudentCourseService {
         }).toList();
     }
 
-    // Chi tiết tiến độ 1 khoá: sections + lessons (kèm info quiz)
+    // Chi tiết tiến độ 1 khoá (bootstrap màn player): sections + lessons (kèm info quiz)
+    // Số query cố định, không phụ thuộc số section / lesson:
+    //  enrollment + course, curriculum, % section, trạng thái lesson, số câu quiz, kết quả quiz gần nhất
     public StudentCourseResponse getCourseDetail(Long userId, Long courseId) {
         var enrollment = enrollmentRepository
-                .findByUser_UserIDAndCourse_CourseID(userId, courseId)
+                .findWithCourseByUserAndCourse(userId, courseId)
                 .orElseThrow(() -> new AppException(ErrorCode.ENROLLMENT_NOT_FOUND));
 
         var course  = enrollment.getCourse();
         var tutor   = course.getTutor();
 
+        var builder = StudentCourseResponse.builder()
+                .courseID(course.getCourseID())
+                .courseTitle(course.getTitle())
+                .tutorName(tutor != null && tutor.getUser() != null ? tutor.getUser().getFullName() : null)
+                .price(course.getPrice())
+                .language(course.getLanguage())
+                .thumbnailURL(course.getThumbnailURL())
+                .status(enrollment.getStatus().name())
+                .enrolledAt(enrollment.getCreatedAt());
+
+        List<Object[]> curriculum = courseSectionRepository.findCurriculumRows(courseId);
+
         // Nếu khoá không có section
-        if (course.getSections() == null || course.getSections().isEmpty()) {
-            return StudentCourseResponse.builder()
-                    .courseID(course.getCourseID())
-                    .courseTitle(course.getTitle())
-                    .tutorName(tutor != null && tutor.getUser() != null ? tutor.getUser().getFullName() : null)
-                    .price(course.getPrice())
-                    .language(course.getLanguage())
-                    .thumbnailURL(course.getThumbnailURL())
-                    .status(enrollment.getStatus().name())
-                    .enrolledAt(enrollment.getCreatedAt())
+        if (curriculum.isEmpty()) {
+            return builder
                     .progressPercent(BigDecimal.ZERO)
                     .isCompleted(false)
                     .sectionProgress(List.of())
                     .build();
         }
 
-        var sectionProgressList = course.getSections().stream().map(section -> {
-            var ucs = userCourseSectionRepository
-                    .findByUser_UserIDAndSection_SectionID(userId, section.getSectionID())
-                    .orElse(null);
-            BigDecimal sectionProgress = (ucs != null) ? ucs.getProgress() : BigDecimal.ZERO;
-            boolean sectionDone = sectionProgress.compareTo(BigDecimal.valueOf(100)) >= 0;
-
-            var lessonList = section.getLessons()
-                    .stream()
-                    .map(lesson -> mapLessonInSection(userId, lesson))
-                    .toList();
-
-            return SectionProgressResponse.builder()
-                    .sectionId(section.getSectionID())
-                    .sectionTitle(section.getTitle())
-                    .progress(sectionProgress)
-                    .isCompleted(sectionDone)
-                    .lessons(lessonList)
-                    .build();
-        }).toList();
+        // sectionId -> progress
+        Map<Long, BigDecimal> sectionProgressById = new HashMap<>();
+        for (Object[] row : userCourseSectionRepository.findSectionProgressRows(userId, courseId)) {
+            if (row[1] != null) {
+                sectionProgressById.put((Long) row[0], (BigDecimal) row[1]);
+            }
+        }
+
+        // lessonId -> [isDone, watchedDuration]
+        Map<Long, Object[]> lessonStateById = new HashMap<>();
+        for (Object[] row : userLessonRepository.findLessonStateRows(userId, courseId)) {
+            lessonStateById.merge((Long) row[0], row, StudentCourseService::preferDone);
+        }
+
+        // lessonId -> số câu hỏi
+        Map<Long, Integer> quizQuestionCountById = new HashMap<>();
+        for (Object[] row : quizQuestionRepository.countByCourseGroupByLesson(courseId)) {
+            quizQuestionCountById.put((Long) row[0], ((Number) row[1]).intValue());
+        }
+
+        // lessonId -> [lessonId, correctQuestions, percentage, passed] lần nộp gần nhất (query đã sắp id DESC)
+        Map<Long, Object[]> latestResultById = new HashMap<>();
+        for (Object[] row : userQuizResultRepository.findLatestResultRows(userId, courseId)) {
+            latestResultById.putIfAbsent((Long) row[0], row);
+        }
+
+        // Gom curriculum theo section, giữ thứ tự của query
+        Map<Long, SectionProgressResponse> sections = new LinkedHashMap<>();
+        for (Object[] row : curriculum) {
+            Long sectionId = (Long) row[0];
+            SectionProgressResponse section = sections.computeIfAbsent(sectionId, id -> {
+                BigDecimal progress = sectionProgressById.getOrDefault(id, BigDecimal.ZERO);
+                return SectionProgressResponse.builder()
+                        .sectionId(id)
+                        .sectionTitle((String) row[1])
+                        .progress(progress)
+                        .isCompleted(progress.compareTo(BigDecimal.valueOf(100)) >= 0)
+                        .lessons(new ArrayList<>())
+                        .build();
+            });
+
+            Long lessonId = (Long) row[2];
+            if (lessonId != null) {
+                section.getLessons().add(mapLessonInSection(lessonId, (String) row[3], (LessonType) row[4],
+                        lessonStateById.get(lessonId), quizQuestionCountById, latestResultById.get(lessonId)));
+            }
+        }
+
+        var sectionProgressList = List.copyOf(sections.values());
 
         double totalProgress = sectionProgressList.stream()
                 .mapToDouble(sp -> sp.getProgress().doubleValue())
                 .average().orElse(0.0);
         boolean completed = totalProgress >= 99.9;
 
-        return StudentCourseResponse.builder()
-                .courseID(course.getCourseID())
-                .courseTitle(course.getTitle())
-                .tutorName(tutor != null && tutor.getUser() != null ? tutor.getUser().getFullName() : null)
-                .price(course.getPrice())
-                .language(course.getLanguage())
-                .thumbnailURL(course.getThumbnailURL())
-                .status(enrollment.getStatus().name())
-                .enrolledAt(enrollment.getCreatedAt())
+        return builder
                 .progressPercent(BigDecimal.valueOf(totalProgress))
                 .isCompleted(completed)
                 .sectionProgress(sectionProgressList)
@@ -136,11 +166,16 @@ public class StudentCourseService {
     }
 
     // Helper: map 1 lesson + trạng thái + quiz info + kết quả gần nhất (nếu có)
-    private LessonInSectionResponse mapLessonInSection(Long userId, Lesson lesson) {
-        boolean isDone = userLessonRepository
-                .findByUser_UserIDAndLesson_LessonID(userId, lesson.getLessonID())
-                .map(UserLesson::getIsDone)
-                .orElse(false);
+    private LessonInSectionResponse mapLessonInSection(
+            Long lessonId,
+            String title,
+            LessonType lessonType,
+            Object[] state,
+            Map<Long, Integer> quizQuestionCountById,
+            Object[] latest
+    ) {
+        boolean isDone = state != null && Boolean.TRUE.equals(state[1]);
+        Integer watchedDuration = state != null && state[2] != null ? (Integer) state[2] : 0;
 
         // Mặc định không có quiz / chưa có kết quả
         Integer totalQuizQuestions = null;
@@ -148,33 +183,25 @@ public class StudentCourseService {
         Double scorePercent = null;
         Boolean passed = null;
 
-        // Nếu là Quiz -> đếm số câu hỏi + lấy kết quả lần gần nhất (nếu có)
-        if (lesson.getLessonType() == LessonType.Quiz) {
-            // 1) Đếm số câu hỏi
-            totalQuizQuestions = (int) quizQuestionRepository.countByLesson(lesson);
+        // Nếu là Quiz -> số câu hỏi + kết quả lần gần nhất (nếu có)
+        if (lessonType == LessonType.Quiz) {
+            totalQuizQuestions = quizQuestionCountById.getOrDefault(lessonId, 0);
 
-            // 2) Lấy kết quả quiz gần nhất (nếu user đã làm)
-            var latestOpt = userQuizResultRepository
-                    .findTopByUser_UserIDAndLesson_LessonIDOrderBySubmittedAtDesc(userId, lesson.getLessonID());
-
-            if (latestOpt.isPresent()) {
-                UserQuizResult latest = latestOpt.get();
-
-                if (latest.getCorrectQuestions() != null) {
-                    correctAnswers = latest.getCorrectQuestions();
-                }
-                if (latest.getPercentage() != null) {
-                    scorePercent = latest.getPercentage().doubleValue();
+            if (latest != null) {
+                correctAnswers = (Integer) latest[1];
+                if (latest[2] != null) {
+                    scorePercent = ((BigDecimal) latest[2]).doubleValue();
                 }
-                passed = latest.getPassed();
+                passed = (Boolean) latest[3];
             }
         }
 
         return LessonInSectionResponse.builder()
-                .lessonId(lesson.getLessonID())
-                .lessonTitle(lesson.getTitle())
-                .lessonType(lesson.getLessonType())
+                .lessonId(lessonId)
+                .lessonTitle(title)
+                .lessonType(lessonType)
                 .isDone(isDone)
+                .watchedDuration(watchedDuration)
                 .totalQuizQuestions(totalQuizQuestions)
                 .correctAnswers(correctAnswers)
                 .scorePercent(scorePercent)
@@ -182,4 +209,9 @@ public class StudentCourseService {
                 .build();
     }
 
+    // Dữ liệu cũ có thể có 2 UserLesson cho cùng lesson -> ưu tiên bản đã DONE
+    private static Object[] preferDone(Object[] current, Object[] other) {
+        return Boolean.TRUE.equals(current[1]) ? current : other;
+    }
+
 }
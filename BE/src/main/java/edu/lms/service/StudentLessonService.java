@@ -3,18 +3,20 @@ package edu.lms.service;
 import edu.lms.dto.request.LessonProgressRequest;
 import edu.lms.dto.response.LessonProgressResponse;
 import edu.lms.entity.*;
-import edu.lms.enums.EnrollmentStatus;
 import edu.lms.exception.AppException;
 import edu.lms.exception.ErrorCode;
 import edu.lms.repository.*;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import java.math.BigDecimal;
 import java.time.LocalDateTime;
-import java.util.List;
 
+/**
+ * Lưu tiến độ học lesson. Heartbeat watchedDuration của video (vài giây / lần) được gom trong
+ * LessonProgressTracker và flush theo batch; chỉ lần đầu vào lesson và sự kiện hoàn thành (isDone=true)
+ * mới đi qua DB ngay, tiến độ section / course cập nhật theo bộ đếm (CourseProgressService).
+ */
 @Service
 @RequiredArgsConstructor
 public class StudentLessonService {
@@ -23,10 +25,31 @@ public class StudentLessonService {
     private final LessonRepository lessonRepository;
     private final UserLessonRepository userLessonRepository;
     private final EnrollmentRepository enrollmentRepository;
-    private final UserCourseSectionRepository userCourseSectionRepository;
-
-    @Transactional
+    private final LessonProgressTracker lessonProgressTracker;
+    private final CourseProgressService courseProgressService;
+    private final TransactionTemplate transactionTemplate;
+
+    /**
+     * Không transactional: heartbeat của lesson đã mở chỉ ghi trong bộ nhớ, không mượn DB connection.
+     * Chỉ lần đầu vào lesson / hoàn thành mới mở transaction.
+     */
     public LessonProgressResponse saveLessonProgress(String email, Long lessonId, LessonProgressRequest request) {
+        boolean completing = Boolean.TRUE.equals(request.getIsDone());
+
+        // 0. Heartbeat của lesson đã mở trước đó → chỉ ghi nhận trong bộ nhớ, không query
+        LessonProgressTracker.Session session = lessonProgressTracker.find(email, lessonId);
+        if (session != null && (!completing || session.isDone())) {
+            session.recordWatch(request.getWatchedDuration());
+            return toResponse(session);
+        }
+
+        return transactionTemplate.execute(status -> writeLessonProgress(email, lessonId, request, session));
+    }
+
+    private LessonProgressResponse writeLessonProgress(String email, Long lessonId, LessonProgressRequest request,
+                                                       LessonProgressTracker.Session session) {
+        boolean completing = Boolean.TRUE.equals(request.getIsDone());
+
         // 1. Lấy user từ email
         User user = userRepository.findByEmail(email)
                 .orElseThrow(() -> new AppException(ErrorCode.USER_NOT_EXIST));
@@ -54,92 +77,65 @@ public class StudentLessonService {
                         .watchedDuration(0)
                         .build());
 
-        // 6. Cập nhật tiến độ bài học
-        userLesson.setWatchedDuration(request.getWatchedDuration());
-        userLesson.setIsDone(request.getIsDone());
-
-        if (Boolean.TRUE.equals(request.getIsDone())) {
-            userLesson.setCompletedAt(LocalDateTime.now());
+        // 6. Cập nhật tiến độ bài học (heartbeat chưa flush của session cũ được ghi luôn)
+        Integer watched = request.getWatchedDuration() != null
+                ? request.getWatchedDuration()
+                : session != null ? session.watchedDuration() : null;
+        if (watched != null) {
+            userLesson.setWatchedDuration(watched);
+        }
+        userLessonRepository.saveAndFlush(userLesson);
+
+        // Lesson đã DONE không bị heartbeat (isDone=false) đưa về chưa học.
+        // Đổi cờ bằng UPDATE có điều kiện: 2 request hoàn thành đồng thời chỉ 1 request được cộng bộ đếm
+        boolean done = Boolean.TRUE.equals(userLesson.getIsDone());
+        LocalDateTime completedAt = userLesson.getCompletedAt();
+        boolean newlyDone = false;
+        if (completing && !done) {
+            LocalDateTime now = LocalDateTime.now();
+            newlyDone = userLessonRepository.markDone(user.getUserID(), lessonId, now) == 1;
+            done = true;
+            if (newlyDone) {
+                completedAt = now;
+            }
         }
 
-        userLessonRepository.save(userLesson);
-
-        // 7. Cập nhật tiến độ section
-        updateUserCourseSectionProgress(user, lesson.getSection(), enrollment);
+        // 7. Tăng bộ đếm section + kiểm tra course đã hoàn thành chưa
+        if (newlyDone) {
+            courseProgressService.onLessonDoneChanged(user, lesson.getSection(), enrollment, 1);
+        }
 
-        // 8. Sau khi cập nhật section, kiểm tra xem course đã hoàn thành chưa
-        updateEnrollmentStatusIfCourseCompleted(user, lesson.getSection(), enrollment);
+        // 9. Heartbeat sau của lesson này đi đường bộ nhớ
+        if (session != null) {
+            session.markDone(userLesson.getWatchedDuration(), completedAt);
+        } else {
+            lessonProgressTracker.register(email, new LessonProgressTracker.Session(
+                    user.getUserID(),
+                    lessonId,
+                    userLesson.getUserLessonID(),
+                    enrollment.getEnrollmentID(),
+                    userLesson.getWatchedDuration(),
+                    done,
+                    completedAt
+            ));
+        }
 
         return LessonProgressResponse.builder()
                 .lessonId(lesson.getLessonID())
                 .userId(user.getUserID())
-                .isDone(userLesson.getIsDone())
+                .isDone(done)
                 .watchedDuration(userLesson.getWatchedDuration())
-                .completedAt(userLesson.getCompletedAt())
+                .completedAt(completedAt)
                 .build();
     }
 
-    private void updateUserCourseSectionProgress(User user, CourseSection section, Enrollment enrollment) {
-        List<Lesson> lessons = section.getLessons();
-        if (lessons == null || lessons.isEmpty()) return;
-
-        long totalLessons = lessons.size();
-
-        long completedLessons = lessons.stream()
-                .filter(lesson -> userLessonRepository
-                        .findByUser_UserIDAndLesson_LessonID(user.getUserID(), lesson.getLessonID())
-                        .map(UserLesson::getIsDone)
-                        .orElse(false))
-                .count();
-
-        double progressPercent = ((double) completedLessons / totalLessons) * 100;
-
-        UserCourseSection userCourseSection = userCourseSectionRepository
-                .findByUser_UserIDAndSection_SectionID(user.getUserID(), section.getSectionID())
-                .orElseGet(() -> UserCourseSection.builder()
-                        .user(user)
-                        .section(section)
-                        .enrollment(enrollment)
-                        .progress(BigDecimal.ZERO)
-                        .build());
-
-        userCourseSection.setProgress(BigDecimal.valueOf(progressPercent));
-        userCourseSectionRepository.save(userCourseSection);
-    }
-
-    //  HÀM MỚI: nếu tất cả section của course đều >=100% thì set Completed
-    private void updateEnrollmentStatusIfCourseCompleted(
-            User user,
-            CourseSection currentSection,
-            Enrollment enrollment
-    ) {
-        Course course = currentSection.getCourse();
-        List<CourseSection> allSections = course.getSections();
-        if (allSections == null || allSections.isEmpty()) {
-            return;
-        }
-
-        // Lấy toàn bộ progress section của user trong enrollment này
-        List<UserCourseSection> userSections =
-                userCourseSectionRepository.findByUser_UserIDAndEnrollment_EnrollmentID(
-                        user.getUserID(),
-                        enrollment.getEnrollmentID()
-                );
-
-        // Nếu số record progress < số section -> chắc chắn chưa hoàn thành
-        if (userSections.size() < allSections.size()) {
-            return;
-        }
-
-        boolean allCompleted = userSections.stream()
-                .allMatch(ucs ->
-                        ucs.getProgress() != null &&
-                                ucs.getProgress().compareTo(BigDecimal.valueOf(100)) >= 0
-                );
-
-        if (allCompleted && enrollment.getStatus() != EnrollmentStatus.Completed) {
-            enrollment.setStatus(EnrollmentStatus.Completed);
-            enrollmentRepository.save(enrollment);
-        }
+    private LessonProgressResponse toResponse(LessonProgressTracker.Session session) {
+        return LessonProgressResponse.builder()
+                .lessonId(session.lessonId())
+                .userId(session.userId())
+                .isDone(session.isDone())
+                .watchedDuration(session.watchedDuration())
+                .completedAt(session.completedAt())
+                .build();
     }
 }
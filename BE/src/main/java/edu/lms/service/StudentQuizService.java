@@ -4,7 +4,6 @@ import edu.lms.dto.request.SubmitQuizQuestionAnswer;
 import edu.lms.dto.request.SubmitQuizRequest;
 import edu.lms.dto.response.*;
 import edu.lms.entity.*;
-import edu.lms.enums.EnrollmentStatus;
 import edu.lms.enums.LessonType;
 import edu.lms.exception.AppException;
 import edu.lms.exception.ErrorCode;
@@ -29,13 +28,12 @@ public class StudentQuizService {
 
     EnrollmentRepository enrollmentRepository;
     LessonRepository lessonRepository;
-    QuizQuestionRepository quizQuestionRepository;
-    QuizOptionRepository quizOptionRepository;
+    QuizDefinitionCache quizDefinitionCache;
     QuizAnswerRepository quizAnswerRepository;
     UserLessonRepository userLessonRepository;
     UserRepository userRepository;
     UserQuizResultRepository userQuizResultRepository;
-    UserCourseSectionRepository userCourseSectionRepository;
+    CourseProgressService courseProgressService;
 
     // ====================== GET QUIZ QUESTIONS ======================
 
@@ -61,11 +59,10 @@ public class StudentQuizService {
             throw new AppException(ErrorCode.INVALID_STATE);
         }
 
-        // 4. Lấy tất cả câu hỏi
-        List<QuizQuestion> questions =
-                quizQuestionRepository.findByLessonOrderByOrderIndexAsc(lesson);
+        // 4. Lấy tất cả câu hỏi (quiz đã compile, cache theo lesson)
+        CompiledQuiz quiz = quizDefinitionCache.get(lesson);
 
-        return questions.stream()
+        return quiz.questions().stream()
                 .map(q -> toQuizQuestionResponse(q, false)) // false = không trả đáp án
                 .toList();
     }
@@ -95,17 +92,13 @@ public class StudentQuizService {
             throw new AppException(ErrorCode.INVALID_STATE);
         }
 
-        // 3. Lấy tất cả câu hỏi của quiz này
-        List<QuizQuestion> questions =
-                quizQuestionRepository.findByLessonOrderByOrderIndexAsc(lesson);
+        // 3. Quiz đã compile (câu hỏi + option + đáp án đúng), cache theo lesson
+        CompiledQuiz quiz = quizDefinitionCache.get(lesson);
 
-        if (questions.isEmpty()) {
+        if (quiz.isEmpty()) {
             throw new AppException(ErrorCode.QUIZ_NO_QUESTION);
         }
 
-        Map<Long, QuizQuestion> questionById = questions.stream()
-                .collect(Collectors.toMap(QuizQuestion::getQuestionID, q -> q));
-
         // 4. Map answer request theo questionId
         Map<Long, SubmitQuizQuestionAnswer> answerByQuestionId =
                 Optional.ofNullable(request.getAnswers()).orElse(List.of())
@@ -117,49 +110,28 @@ public class StudentQuizService {
                         ));
 
         // 5. Chấm điểm
-        BigDecimal maxScore = BigDecimal.ZERO;
+        BigDecimal maxScore = quiz.maxScore();
         BigDecimal totalScore = BigDecimal.ZERO;
-        int totalQuestions = questions.size();
+        int totalQuestions = quiz.questions().size();
         int correctQuestions = 0;
 
         List<SubmitQuizQuestionResultResponse> questionResults = new ArrayList<>();
 
-        for (QuizQuestion q : questions) {
-            BigDecimal qMaxScore = (q.getScore() != null) ? q.getScore() : BigDecimal.ONE;
-            maxScore = maxScore.add(qMaxScore);
+        for (CompiledQuiz.Question q : quiz.questions()) {
+            BigDecimal qMaxScore = q.maxScore();
 
-            SubmitQuizQuestionAnswer submitted = answerByQuestionId.get(q.getQuestionID());
+            SubmitQuizQuestionAnswer submitted = answerByQuestionId.get(q.questionID());
             List<Long> selectedOptionIds = (submitted != null && submitted.getSelectedOptionIds() != null)
                     ? submitted.getSelectedOptionIds()
                     : List.of();
 
-            // Tập option đúng
-            List<QuizOption> options = q.getOptions();
-            Set<Long> correctOptionIds = options.stream()
-                    .filter(o -> Boolean.TRUE.equals(o.getIsCorrect()))
-                    .map(QuizOption::getOptionID)
-                    .collect(Collectors.toSet());
-
-            Set<Long> selectedSet = new HashSet<>(selectedOptionIds);
-
-            boolean isCorrect = !correctOptionIds.isEmpty()
-                    && selectedSet.equals(correctOptionIds);
+            boolean isCorrect = q.isCorrect(selectedOptionIds);
 
             BigDecimal qScore = isCorrect ? qMaxScore : BigDecimal.ZERO;
             if (isCorrect) correctQuestions++;
             totalScore = totalScore.add(qScore);
 
-            questionResults.add(
-                    SubmitQuizQuestionResultResponse.builder()
-                            .questionID(q.getQuestionID())
-                            .isCorrect(isCorrect)
-                            .questionScore(qScore)
-                            .maxScore(qMaxScore)
-                            .selectedOptionIds(selectedOptionIds)
-                            .correctOptionIds(new ArrayList<>(correctOptionIds))
-                            .explanation(q.getExplanation())
-                            .build()
-            );
+            questionResults.add(toQuestionResult(q, selectedOptionIds, isCorrect, qScore));
         }
 
         BigDecimal percentage = BigDecimal.ZERO;
@@ -169,28 +141,26 @@ public class StudentQuizService {
                     .divide(maxScore, 2, RoundingMode.HALF_UP);
         }
 
-        // 6. Lưu đáp án của user (QuizAnswer): clear cũ -> save mới
-        quizAnswerRepository.deleteByUserAndQuestionIn(user, questions);
+        // 6. Lưu đáp án của user (QuizAnswer): clear cũ (1 DELETE) -> insert mới (JDBC batch)
+        //    chỉ nhận option thuộc đúng câu hỏi
+        List<Long> questionIds = quiz.questions().stream()
+                .map(CompiledQuiz.Question::questionID)
+                .toList();
+        quizAnswerRepository.deleteByUserIdAndQuestionIdIn(user.getUserID(), questionIds);
 
+        List<QuizAnswerRepositoryCustom.AnswerRow> answerRows = new ArrayList<>();
         if (request.getAnswers() != null) {
             for (SubmitQuizQuestionAnswer a : request.getAnswers()) {
-                QuizQuestion q = questionById.get(a.getQuestionId());
+                CompiledQuiz.Question q = quiz.question(a.getQuestionId());
                 if (q == null || a.getSelectedOptionIds() == null) continue;
 
-                for (Long optId : a.getSelectedOptionIds()) {
-                    QuizOption opt = quizOptionRepository.findById(optId).orElse(null);
-                    if (opt == null) continue;
-
-                    QuizAnswer answer = QuizAnswer.builder()
-                            .question(q)
-                            .user(user)
-                            .selectedOption(opt)
-                            .build();
-
-                    quizAnswerRepository.save(answer);
+                for (Long optId : new LinkedHashSet<>(a.getSelectedOptionIds())) {
+                    if (!q.hasOption(optId)) continue;
+                    answerRows.add(new QuizAnswerRepositoryCustom.AnswerRow(q.questionID(), optId));
                 }
             }
         }
+        quizAnswerRepository.insertAll(user.getUserID(), answerRows);
 
         // 7. Đánh dấu lesson này là DONE (user đã làm quiz) + lưu đầy đủ info UserLesson
         UserLesson userLesson = userLessonRepository
@@ -212,15 +182,16 @@ public class StudentQuizService {
             userLesson.setWatchedDuration(0);
         }
 
-        userLesson.setIsDone(true);
-        userLesson.setCompletedAt(LocalDateTime.now());
-        userLessonRepository.save(userLesson);
+        userLessonRepository.saveAndFlush(userLesson);
 
-        // 7.1 Cập nhật tiến độ section
-        updateUserCourseSectionProgress(user, lesson.getSection(), enrollment);
+        // UPDATE có điều kiện: nộp quiz / hoàn thành video đồng thời chỉ 1 request đổi được cờ
+        boolean newlyDone = !Boolean.TRUE.equals(userLesson.getIsDone())
+                && userLessonRepository.markDone(userId, lessonId, LocalDateTime.now()) == 1;
 
-        // 7.2 Nếu tất cả section đều 100% -> set Enrollment = Completed
-        updateEnrollmentStatusIfCourseCompleted(user, lesson.getSection(), enrollment);
+        // 7.1 Lần đầu DONE: tăng bộ đếm section, tất cả section 100% -> Enrollment Completed
+        if (newlyDone) {
+            courseProgressService.onLessonDoneChanged(user, lesson.getSection(), enrollment, 1);
+        }
 
         // 7.5. Lưu tổng kết UserQuizResult (lần làm này)
         boolean passed = percentage.compareTo(BigDecimal.valueOf(60)) >= 0; // rule: >= 60% là pass
@@ -280,11 +251,10 @@ public class StudentQuizService {
                 .orElseThrow(() -> new AppException(ErrorCode.QUIZ_RESULT_NOT_FOUND));
         // (Nếu chưa có, bạn thêm QUIZ_RESULT_NOT_FOUND vào ErrorCode, hoặc thay bằng lỗi chung bạn đang có)
 
-        // 4. Lấy danh sách câu hỏi của quiz này
-        List<QuizQuestion> questions =
-                quizQuestionRepository.findByLessonOrderByOrderIndexAsc(lesson);
+        // 4. Quiz đã compile của lesson này
+        CompiledQuiz quiz = quizDefinitionCache.get(lesson);
 
-        if (questions.isEmpty()) {
+        if (quiz.isEmpty()) {
             throw new AppException(ErrorCode.QUIZ_NO_QUESTION);
         }
 
@@ -297,39 +267,18 @@ public class StudentQuizService {
 
         List<SubmitQuizQuestionResultResponse> questionResults = new ArrayList<>();
 
-        for (QuizQuestion q : questions) {
-            // Option đúng
-            Set<Long> correctOptionIds = q.getOptions() == null ? Set.of()
-                    : q.getOptions().stream()
-                    .filter(o -> Boolean.TRUE.equals(o.getIsCorrect()))
-                    .map(QuizOption::getOptionID)
-                    .collect(Collectors.toSet());
-
+        for (CompiledQuiz.Question q : quiz.questions()) {
             // Option user đã chọn từ QuizAnswer
             List<Long> selectedOptionIds = answersByQuestionId
-                    .getOrDefault(q.getQuestionID(), List.of())
+                    .getOrDefault(q.questionID(), List.of())
                     .stream()
                     .map(a -> a.getSelectedOption().getOptionID())
                     .toList();
 
-            Set<Long> selectedSet = new HashSet<>(selectedOptionIds);
-
-            BigDecimal qMaxScore = (q.getScore() != null) ? q.getScore() : BigDecimal.ONE;
-            boolean isCorrect = !correctOptionIds.isEmpty()
-                    && selectedSet.equals(correctOptionIds);
-            BigDecimal qScore = isCorrect ? qMaxScore : BigDecimal.ZERO;
+            boolean isCorrect = q.isCorrect(selectedOptionIds);
+            BigDecimal qScore = isCorrect ? q.maxScore() : BigDecimal.ZERO;
 
-            questionResults.add(
-                    SubmitQuizQuestionResultResponse.builder()
-                            .questionID(q.getQuestionID())
-                            .isCorrect(isCorrect)
-                            .questionScore(qScore)
-                            .maxScore(qMaxScore)
-                            .selectedOptionIds(selectedOptionIds)
-                            .correctOptionIds(new ArrayList<>(correctOptionIds))
-                            .explanation(q.getExplanation())
-                            .build()
-            );
+            questionResults.add(toQuestionResult(q, selectedOptionIds, isCorrect, qScore));
         }
 
         // 6. Trả về kết quả dựa trên UserQuizResult mới nhất + chi tiết từng câu
@@ -344,98 +293,44 @@ public class StudentQuizService {
     }
 
 
-    // ====================== HELPERS: PROGRESS & ENROLLMENT ======================
-
-    private void updateUserCourseSectionProgress(User user, CourseSection section, Enrollment enrollment) {
-        List<Lesson> lessons = section.getLessons();
-        if (lessons == null || lessons.isEmpty()) return;
-
-        long totalLessons = lessons.size();
-
-        long completedLessons = lessons.stream()
-                .filter(lesson -> userLessonRepository
-                        .findByUser_UserIDAndLesson_LessonID(user.getUserID(), lesson.getLessonID())
-                        .map(UserLesson::getIsDone)
-                        .orElse(false))
-                .count();
-
-        double progressPercent = ((double) completedLessons / totalLessons) * 100;
-
-        UserCourseSection userCourseSection = userCourseSectionRepository
-                .findByUser_UserIDAndSection_SectionID(user.getUserID(), section.getSectionID())
-                .orElseGet(() -> UserCourseSection.builder()
-                        .user(user)
-                        .section(section)
-                        .enrollment(enrollment)
-                        .progress(BigDecimal.ZERO)
-                        .build());
-
-        userCourseSection.setProgress(BigDecimal.valueOf(progressPercent));
-        userCourseSectionRepository.save(userCourseSection);
-    }
-
-    private void updateEnrollmentStatusIfCourseCompleted(
-            User user,
-            CourseSection currentSection,
-            Enrollment enrollment
-    ) {
-        Course course = currentSection.getCourse();
-        List<CourseSection> allSections = course.getSections();
-        if (allSections == null || allSections.isEmpty()) {
-            return;
-        }
-
-        List<UserCourseSection> userSections =
-                userCourseSectionRepository.findByUser_UserIDAndEnrollment_EnrollmentID(
-                        user.getUserID(),
-                        enrollment.getEnrollmentID()
-                );
-
-        if (userSections.size() < allSections.size()) {
-            return;
-        }
-
-        boolean allCompleted = userSections.stream()
-                .allMatch(ucs ->
-                        ucs.getProgress() != null &&
-                                ucs.getProgress().compareTo(BigDecimal.valueOf(100)) >= 0
-                );
-
-        if (allCompleted && enrollment.getStatus() != EnrollmentStatus.Completed) {
-            enrollment.setStatus(EnrollmentStatus.Completed);
-            enrollmentRepository.save(enrollment);
-        }
-    }
-
     // ====================== MAPPERS ======================
 
-    private QuizOptionResponse toOptionResponse(QuizOption o, boolean includeCorrect) {
+    private QuizOptionResponse toOptionResponse(CompiledQuiz.Option o, boolean includeCorrect) {
         return QuizOptionResponse.builder()
-                .optionID(o.getOptionID())
-                .optionText(o.getOptionText())
-                .isCorrect(includeCorrect ? o.getIsCorrect() : null)
-                .orderIndex(o.getOrderIndex())
+                .optionID(o.optionID())
+                .optionText(o.optionText())
+                .isCorrect(includeCorrect ? o.isCorrect() : null)
+                .orderIndex(o.orderIndex())
                 .build();
     }
 
-    private QuizQuestionResponse toQuizQuestionResponse(QuizQuestion q, boolean includeCorrect) {
-        List<QuizOptionResponse> optionResponses = q.getOptions() == null
-                ? List.of()
-                : q.getOptions().stream()
-                .sorted(Comparator.comparing(
-                        QuizOption::getOrderIndex,
-                        Comparator.nullsLast(Integer::compareTo)
-                ))
+    private QuizQuestionResponse toQuizQuestionResponse(CompiledQuiz.Question q, boolean includeCorrect) {
+        // option đã được sắp theo orderIndex khi compile
+        List<QuizOptionResponse> optionResponses = q.options().stream()
                 .map(o -> toOptionResponse(o, includeCorrect))
                 .toList();
 
         return QuizQuestionResponse.builder()
-                .questionID(q.getQuestionID())
-                .questionText(q.getQuestionText())
-                .orderIndex(q.getOrderIndex())
-                .explanation(includeCorrect ? q.getExplanation() : null)
-                .score(q.getScore())
+                .questionID(q.questionID())
+                .questionText(q.questionText())
+                .orderIndex(q.orderIndex())
+                .explanation(includeCorrect ? q.explanation() : null)
+                .score(q.score())
                 .options(optionResponses)
                 .build();
     }
+
+    private SubmitQuizQuestionResultResponse toQuestionResult(
+            CompiledQuiz.Question q, List<Long> selectedOptionIds, boolean isCorrect, BigDecimal qScore
+    ) {
+        return SubmitQuizQuestionResultResponse.builder()
+                .questionID(q.questionID())
+                .isCorrect(isCorrect)
+                .questionScore(qScore)
+                .maxScore(q.maxScore())
+                .selectedOptionIds(selectedOptionIds)
+                .correctOptionIds(q.correctOptionIds())
+                .explanation(q.explanation())
+                .build();
+    }
 }
@@ -0,0 +1,142 @@
+package edu.lms.service;
+
+import edu.lms.dto.response.TutorAvailabilityMatchResponse;
+import edu.lms.dto.response.TutorAvailabilitySearchResponse;
+import edu.lms.entity.TutorDirectoryEntry;
+import edu.lms.enums.TutorStatus;
+import edu.lms.exception.AppException;
+import edu.lms.exception.ErrorCode;
+import edu.lms.repository.TutorDirectoryRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static lombok.AccessLevel.PRIVATE;
+
+/**
+ * Tìm tutor đang trống lịch ("ai dạy tiếng Nhật còn trống 60 phút từ 19h-22h tuần sau"):
+ *  1. tutor_directory: tutor approved theo ngôn ngữ / giá (1 query)
+ *  2. TutorAvailabilityService: calendar trong bộ nhớ của các tutor đó, phần chưa cache load chung 2 query
+ *  3. xếp hạng: trống sớm nhất → rating cao → giá thấp
+ * Slot bị lock / paid cập nhật calendar ngay sau commit nên kết quả không cần cache riêng.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+@FieldDefaults(level = PRIVATE, makeFinal = true)
+public class TutorAvailabilitySearchService {
+
+    static final int DEFAULT_DURATION_MINUTES = 60;
+    static final int MAX_RANGE_DAYS = 31;
+    static final int MAX_LIMIT = 50;
+
+    TutorDirectoryRepository tutorDirectoryRepository;
+    TutorAvailabilityService tutorAvailabilityService;
+
+    @Transactional(readOnly = true)
+    public TutorAvailabilitySearchResponse search(String language,
+                                                  LocalDate fromDate, LocalDate toDate,
+                                                  LocalTime startTime, LocalTime endTime,
+                                                  Integer durationMinutes,
+                                                  Double minPrice, Double maxPrice,
+                                                  int limit) {
+        LocalDateTime now = LocalDateTime.now().withSecond(0).withNano(0);
+        LocalDate from = fromDate != null && fromDate.isAfter(now.toLocalDate()) ? fromDate : now.toLocalDate();
+        LocalDate to = toDate != null ? toDate : from.plusDays(6);
+        int duration = durationMinutes != null ? durationMinutes : DEFAULT_DURATION_MINUTES;
+        validate(from, to, startTime, endTime, duration, minPrice, maxPrice);
+
+        // minPrice không lọc ở directory: tutor có giá min thấp vẫn có thể có plan giá cao hơn
+        List<TutorDirectoryEntry> candidates = tutorDirectoryRepository.search(
+                TutorStatus.APPROVED, blankToNull(language), null, null, maxPrice, null, Pageable.unpaged()
+        ).getContent();
+        if (candidates.isEmpty()) {
+            return toResponse(List.of(), from, to, 0);
+        }
+
+        Map<Long, TutorDirectoryEntry> entryById = candidates.stream()
+                .collect(Collectors.toMap(TutorDirectoryEntry::getTutorId, Function.identity()));
+
+        TutorAvailabilityService.SlotWindow window = new TutorAvailabilityService.SlotWindow(
+                now, from, to, startTime, endTime, duration, minPrice, maxPrice);
+        Map<Long, TutorAvailabilityService.MatchedSlot> matches =
+                tutorAvailabilityService.findEarliestFree(entryById.keySet(), window);
+
+        List<TutorAvailabilityMatchResponse> ranked = matches.entrySet().stream()
+                .map(e -> toMatch(entryById.get(e.getKey()), e.getValue()))
+                .sorted(Comparator.comparing(TutorAvailabilityMatchResponse::getEarliestStart)
+                        .thenComparing(TutorAvailabilityMatchResponse::getRating,
+                                Comparator.nullsLast(Comparator.reverseOrder()))
+                        .thenComparing(TutorAvailabilityMatchResponse::getPricePerHour,
+                                Comparator.nullsLast(Comparator.naturalOrder()))
+                        .thenComparing(TutorAvailabilityMatchResponse::getTutorId))
+                .toList();
+
+        log.debug("[AVAILABILITY-SEARCH] language={} {}..{} candidates={} matched={}",
+                language, from, to, candidates.size(), ranked.size());
+
+        int safeLimit = Math.min(Math.max(limit, 1), MAX_LIMIT);
+        return toResponse(ranked.subList(0, Math.min(safeLimit, ranked.size())), from, to, ranked.size());
+    }
+
+    private static void validate(LocalDate from, LocalDate to, LocalTime startTime, LocalTime endTime,
+                                 int duration, Double minPrice, Double maxPrice) {
+        if (to.isBefore(from) || to.isAfter(from.plusDays(MAX_RANGE_DAYS - 1))) {
+            throw new AppException(ErrorCode.AVAILABILITY_SEARCH_INVALID_RANGE);
+        }
+        if (startTime != null && endTime != null && !startTime.isBefore(endTime)) {
+            throw new AppException(ErrorCode.AVAILABILITY_SEARCH_INVALID_RANGE);
+        }
+        if (duration <= 0 || duration > 24 * 60) {
+            throw new AppException(ErrorCode.AVAILABILITY_SEARCH_INVALID_RANGE);
+        }
+        if (minPrice != null && maxPrice != null && minPrice > maxPrice) {
+            throw new AppException(ErrorCode.AVAILABILITY_SEARCH_INVALID_RANGE);
+        }
+    }
+
+    private static TutorAvailabilityMatchResponse toMatch(TutorDirectoryEntry entry,
+                                                          TutorAvailabilityService.MatchedSlot slot) {
+        return TutorAvailabilityMatchResponse.builder()
+                .tutorId(entry.getTutorId())
+                .userId(entry.getUserId())
+                .userName(entry.getUserName())
+                .avatarURL(entry.getAvatarURL())
+                .country(entry.getCountry())
+                .teachingLanguage(entry.getTeachingLanguage())
+                .rating(entry.getBookingRating() != null ? entry.getBookingRating() : BigDecimal.ZERO)
+                .bookingPlanId(slot.bookingPlanId())
+                .pricePerHour(slot.pricePerHour())
+                .earliestStart(slot.startTime())
+                .earliestEnd(slot.endTime())
+                .slotCount(slot.slotCount())
+                .build();
+    }
+
+    private static TutorAvailabilitySearchResponse toResponse(List<TutorAvailabilityMatchResponse> items,
+                                                              LocalDate from, LocalDate to, int totalMatched) {
+        return TutorAvailabilitySearchResponse.builder()
+                .items(items)
+                .fromDate(from)
+                .toDate(to)
+                .totalMatched(totalMatched)
+                .build();
+    }
+
+    private static String blankToNull(String value) {
+        return value == null || value.isBlank() ? null : value.trim();
+    }
+}
@@ -0,0 +1,525 @@
+package edu.lms.service;
+
+import edu.lms.dto.response.AvailableSlotResponse;
+import edu.lms.dto.response.TutorAvailabilityResponse;
+import edu.lms.entity.BookingPlan;
+import edu.lms.entity.BookingPlanSlot;
+import edu.lms.enums.SlotStatus;
+import edu.lms.repository.BookingPlanRepository;
+import edu.lms.repository.BookingPlanSlotRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.DayOfWeek;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lịch trống của tutor tính trong bộ nhớ:
+ *  - BookingPlan (thứ + giờ bắt đầu/kết thúc + slotDuration) được compile 1 lần thành danh sách slot theo thứ trong tuần
+ *  - Slot đang chiếm lịch (Locked / Paid / Rejected) giữ trong TreeMap theo phút bắt đầu
+ *  - "Slot trống N tuần tới" = duyệt slot theo ngày, bỏ slot trùng giờ với slot đã chiếm → vài micro giây
+ *
+ * Cập nhật tăng dần sau khi transaction commit:
+ *  - onPlansChanged: bỏ calendar của tutor, lần đọc sau compile lại (2 query)
+ *  - onSlotsOccupied / onSlotsReleased: thêm / bớt slot theo slotID (gọi lại nhiều lần vẫn đúng)
+ * Calendar được load lại sau RELOAD_AFTER để tự sửa nếu có luồng ghi slot chưa báo vào đây.
+ *
+ * Tìm nhiều tutor cùng lúc (TutorAvailabilitySearchService): findEarliestFree load bù calendar còn thiếu
+ * bằng 2 query cho cả nhóm rồi quét từng calendar trong bộ nhớ.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class TutorAvailabilityService {
+
+    public static final int MAX_WEEKS = 12;
+    private static final long RELOAD_AFTER_NANOS = Duration.ofMinutes(10).toNanos();
+
+    private final BookingPlanRepository bookingPlanRepository;
+    private final BookingPlanSlotRepository bookingPlanSlotRepository;
+
+    private final Map<Long, TutorCalendar> calendars = new ConcurrentHashMap<>();
+    // Tăng mỗi khi có thay đổi: calendar load song song với thay đổi sẽ không được cache
+    private final AtomicLong changes = new AtomicLong();
+
+    // ====================== QUERY =========================
+
+    public TutorAvailabilityResponse getAvailability(Long tutorId, int weeks) {
+        int span = Math.min(Math.max(weeks, 1), MAX_WEEKS);
+        LocalDateTime from = LocalDateTime.now().withSecond(0).withNano(0);
+
+        List<AvailableSlotResponse> slots = findFreeSlots(tutorId, from, span).stream()
+                .map(slot -> AvailableSlotResponse.builder()
+                        .bookingPlanId(slot.bookingPlanId())
+                        .startTime(slot.startTime())
+                        .endTime(slot.endTime())
+                        .build())
+                .toList();
+
+        return TutorAvailabilityResponse.builder()
+                .tutorId(tutorId)
+                .from(from)
+                .to(from.plusWeeks(span))
+                .slots(slots)
+                .build();
+    }
+
+    /**
+     * Slot trống (bắt đầu sau from) trong weeks tuần kể từ ngày của from, theo thứ tự thời gian
+     */
+    public List<FreeSlot> findFreeSlots(Long tutorId, LocalDateTime from, int weeks) {
+        return calendarOf(tutorId).freeSlots(from, Math.min(Math.max(weeks, 1), MAX_WEEKS));
+    }
+
+    /**
+     * Với mỗi tutor: khoảng trống sớm nhất thoả window (các slot liền nhau của cùng 1 plan, đủ durationMinutes).
+     * Tutor không có khoảng trống phù hợp không có trong map kết quả.
+     */
+    public Map<Long, MatchedSlot> findEarliestFree(Collection<Long> tutorIds, SlotWindow window) {
+        Map<Long, TutorCalendar> loaded = calendarsOf(tutorIds);
+
+        Map<Long, MatchedSlot> result = new HashMap<>();
+        loaded.forEach((tutorId, calendar) -> {
+            MatchedSlot match = calendar.earliestFree(window);
+            if (match != null) {
+                result.put(tutorId, match);
+            }
+        });
+        return result;
+    }
+
+    // ====================== INCREMENTAL UPDATE =========================
+
+    /**
+     * Tạo / sửa / xoá / mở đóng booking plan của tutor
+     */
+    public void onPlansChanged(Long tutorId) {
+        if (tutorId == null) {
+            return;
+        }
+        afterCommit(() -> calendars.remove(tutorId));
+    }
+
+    /**
+     * Slot được tạo hoặc chuyển sang Locked / Paid / Rejected
+     */
+    public void onSlotsOccupied(Collection<BookingPlanSlot> slots) {
+        List<SlotSnapshot> snapshots = snapshot(slots);
+        if (snapshots.isEmpty()) {
+            return;
+        }
+        afterCommit(() -> snapshots.forEach(slot -> {
+            TutorCalendar calendar = calendars.get(slot.tutorId());
+            if (calendar != null) {
+                calendar.occupy(slot.slotId(), slot.startMinute(), slot.endMinute());
+            }
+        }));
+    }
+
+    /**
+     * Slot bị xoá hoặc trả về Available
+     */
+    public void onSlotsReleased(Collection<BookingPlanSlot> slots) {
+        List<SlotSnapshot> snapshots = snapshot(slots);
+        if (snapshots.isEmpty()) {
+            return;
+        }
+        afterCommit(() -> snapshots.forEach(slot -> {
+            TutorCalendar calendar = calendars.get(slot.tutorId());
+            if (calendar != null) {
+                calendar.release(slot.slotId());
+            }
+        }));
+    }
+
+    int cachedTutors() {
+        return calendars.size();
+    }
+
+    // Chụp lại giá trị lúc gọi: entity có thể bị sửa tiếp trước khi commit
+    private static List<SlotSnapshot> snapshot(Collection<BookingPlanSlot> slots) {
+        if (slots == null || slots.isEmpty()) {
+            return List.of();
+        }
+        List<SlotSnapshot> result = new ArrayList<>(slots.size());
+        for (BookingPlanSlot slot : slots) {
+            if (slot.getSlotID() == null || slot.getTutorID() == null
+                    || slot.getStartTime() == null || slot.getEndTime() == null) {
+                continue;
+            }
+            result.add(new SlotSnapshot(slot.getSlotID(), slot.getTutorID(),
+                    toMinute(slot.getStartTime()), toMinute(slot.getEndTime())));
+        }
+        return result;
+    }
+
+    private void afterCommit(Runnable action) {
+        changes.incrementAndGet();
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    changes.incrementAndGet();
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    // ====================== LOAD =========================
+
+    private TutorCalendar calendarOf(Long tutorId) {
+        long now = System.nanoTime();
+        TutorCalendar calendar = calendars.get(tutorId);
+        if (calendar != null && now - calendar.loadedAtNanos < RELOAD_AFTER_NANOS) {
+            return calendar;
+        }
+
+        long generation = changes.get();
+        TutorCalendar loaded = load(tutorId, now);
+        if (changes.get() == generation) {
+            calendars.put(tutorId, loaded);
+        }
+        return loaded;
+    }
+
+    // Calendar của nhiều tutor, phần chưa có / quá hạn load chung bằng 2 query
+    private Map<Long, TutorCalendar> calendarsOf(Collection<Long> tutorIds) {
+        long now = System.nanoTime();
+        Map<Long, TutorCalendar> result = new HashMap<>();
+        Set<Long> missing = new HashSet<>();
+        for (Long tutorId : tutorIds) {
+            TutorCalendar calendar = calendars.get(tutorId);
+            if (calendar != null && now - calendar.loadedAtNanos < RELOAD_AFTER_NANOS) {
+                result.put(tutorId, calendar);
+            } else {
+                missing.add(tutorId);
+            }
+        }
+        if (missing.isEmpty()) {
+            return result;
+        }
+
+        long generation = changes.get();
+
+        Map<Long, List<BookingPlan>> plansByTutor = new HashMap<>();
+        for (BookingPlan plan : bookingPlanRepository.findByTutorIDInAndIsActiveTrue(missing)) {
+            if (Boolean.TRUE.equals(plan.getIsOpen())) {
+                plansByTutor.computeIfAbsent(plan.getTutorID(), k -> new ArrayList<>()).add(plan);
+            }
+        }
+
+        Map<Long, TutorCalendar> loaded = new HashMap<>();
+        for (Long tutorId : missing) {
+            loaded.put(tutorId, TutorCalendar.compile(plansByTutor.getOrDefault(tutorId, List.of()), now));
+        }
+        if (!plansByTutor.isEmpty()) {
+            LocalDateTime since = LocalDate.now().atStartOfDay();
+            for (BookingPlanSlot slot : bookingPlanSlotRepository.findOccupyingByTutorIDInFrom(plansByTutor.keySet(), since)) {
+                TutorCalendar calendar = loaded.get(slot.getTutorID());
+                if (calendar != null && slot.getStatus() != SlotStatus.Available) {
+                    calendar.occupy(slot.getSlotID(), toMinute(slot.getStartTime()), toMinute(slot.getEndTime()));
+                }
+            }
+        }
+
+        if (changes.get() == generation) {
+            calendars.putAll(loaded);
+        }
+        log.debug("[AVAILABILITY] Loaded {} calendars in bulk", loaded.size());
+
+        result.putAll(loaded);
+        return result;
+    }
+
+    private TutorCalendar load(Long tutorId, long now) {
+        List<BookingPlan> plans = bookingPlanRepository
+                .findByTutorIDAndIsActiveTrueOrderByTitleAscStartHoursAsc(tutorId)
+                .stream()
+                .filter(plan -> Boolean.TRUE.equals(plan.getIsOpen()))
+                .toList();
+
+        TutorCalendar calendar = TutorCalendar.compile(plans, now);
+
+        if (!plans.isEmpty()) {
+            // Slot kết thúc trước hôm nay không ảnh hưởng tới lịch trống
+            LocalDateTime since = LocalDate.now().atStartOfDay();
+            for (BookingPlanSlot slot : bookingPlanSlotRepository.findOccupyingByTutorIDFrom(tutorId, since)) {
+                if (slot.getStatus() != SlotStatus.Available) {
+                    calendar.occupy(slot.getSlotID(), toMinute(slot.getStartTime()), toMinute(slot.getEndTime()));
+                }
+            }
+        }
+
+        log.debug("[AVAILABILITY] Loaded calendar for tutor {}: {} plans", tutorId, plans.size());
+        return calendar;
+    }
+
+    // ====================== DAY TITLE =========================
+
+    /**
+     * Title của booking plan → thứ trong tuần. FE dùng "T2".."T7", "CN"; hỗ trợ thêm tiếng Anh / "Thứ 2".
+     * @return null nếu không nhận ra
+     */
+    public static DayOfWeek parseDayTitle(String title) {
+        if (title == null) {
+            return null;
+        }
+        String lowerTitle = title.toLowerCase().trim();
+
+        switch (lowerTitle) {
+            case "t2", "mon": return DayOfWeek.MONDAY;
+            case "t3", "tue": return DayOfWeek.TUESDAY;
+            case "t4", "wed": return DayOfWeek.WEDNESDAY;
+            case "t5", "thu": return DayOfWeek.THURSDAY;
+            case "t6", "fri": return DayOfWeek.FRIDAY;
+            case "t7", "sat": return DayOfWeek.SATURDAY;
+            case "cn", "sun": return DayOfWeek.SUNDAY;
+            default: break;
+        }
+
+        if (lowerTitle.contains("monday") || lowerTitle.contains("thứ 2") || lowerTitle.contains("thứ hai")) {
+            return DayOfWeek.MONDAY;
+        } else if (lowerTitle.contains("tuesday") || lowerTitle.contains("thứ 3") || lowerTitle.contains("thứ ba")) {
+            return DayOfWeek.TUESDAY;
+        } else if (lowerTitle.contains("wednesday") || lowerTitle.contains("thứ 4") || lowerTitle.contains("thứ tư")) {
+            return DayOfWeek.WEDNESDAY;
+        } else if (lowerTitle.contains("thursday") || lowerTitle.contains("thứ 5") || lowerTitle.contains("thứ năm")) {
+            return DayOfWeek.THURSDAY;
+        } else if (lowerTitle.contains("friday") || lowerTitle.contains("thứ 6") || lowerTitle.contains("thứ sáu")) {
+            return DayOfWeek.FRIDAY;
+        } else if (lowerTitle.contains("saturday") || lowerTitle.contains("thứ 7") || lowerTitle.contains("thứ bảy")) {
+            return DayOfWeek.SATURDAY;
+        } else if (lowerTitle.contains("sunday") || lowerTitle.contains("chủ nhật")) {
+            return DayOfWeek.SUNDAY;
+        }
+        return null;
+    }
+
+    // ====================== CALENDAR =========================
+
+    // LocalDateTime (giờ local, không timezone) ↔ số phút tính từ epoch
+    static long toMinute(LocalDateTime time) {
+        return time.toEpochSecond(ZoneOffset.UTC) / 60;
+    }
+
+    static LocalDateTime fromMinute(long minute) {
+        return LocalDateTime.ofEpochSecond(minute * 60, 0, ZoneOffset.UTC);
+    }
+
+    public record FreeSlot(Long bookingPlanId, LocalDateTime startTime, LocalDateTime endTime) {}
+
+    /**
+     * Điều kiện tìm: ngày [fromDate, toDate], khung giờ trong ngày [dayStart, dayEnd] (null = cả ngày),
+     * độ dài buổi học và khoảng giá / giờ của plan (null = bỏ qua)
+     */
+    public record SlotWindow(LocalDateTime notBefore, LocalDate fromDate, LocalDate toDate,
+                             LocalTime dayStart, LocalTime dayEnd, int durationMinutes,
+                             Double minPrice, Double maxPrice) {}
+
+    public record MatchedSlot(Long bookingPlanId, LocalDateTime startTime, LocalDateTime endTime,
+                              Double pricePerHour, int slotCount) {}
+
+    private record SlotSnapshot(Long slotId, Long tutorId, long startMinute, long endMinute) {}
+
+    /**
+     * Lịch 1 tutor. Phần plan không đổi sau khi compile; phần slot đã chiếm đổi qua occupy / release.
+     */
+    static final class TutorCalendar {
+
+        // Theo DayOfWeek (0 = Monday): phút trong ngày của từng slot + plan tương ứng, đã sort theo giờ bắt đầu
+        private final int[][] startByDay = new int[7][];
+        private final int[][] endByDay = new int[7][];
+        private final long[][] planByDay = new long[7][];
+        private final double[][] priceByDay = new double[7][];
+        private final long loadedAtNanos;
+
+        // phút bắt đầu → (slotID → phút kết thúc)
+        private final TreeMap<Long, Map<Long, Long>> occupiedByStart = new TreeMap<>();
+        private final Map<Long, Long> startBySlot = new HashMap<>();
+        private long maxOccupiedLength;
+
+        private TutorCalendar(long loadedAtNanos) {
+            this.loadedAtNanos = loadedAtNanos;
+        }
+
+        static TutorCalendar compile(List<BookingPlan> plans, long loadedAtNanos) {
+            TutorCalendar calendar = new TutorCalendar(loadedAtNanos);
+
+            List<List<int[]>> slotsByDay = new ArrayList<>(7);
+            List<List<BookingPlan>> plansByDay = new ArrayList<>(7);
+            for (int i = 0; i < 7; i++) {
+                slotsByDay.add(new ArrayList<>());
+                plansByDay.add(new ArrayList<>());
+            }
+
+            for (BookingPlan plan : plans) {
+                DayOfWeek day = parseDayTitle(plan.getTitle());
+                Integer duration = plan.getSlotDuration();
+                if (day == null || duration == null || duration <= 0
+                        || plan.getStartHours() == null || plan.getEndHours() == null) {
+                    log.warn("[AVAILABILITY] Skip booking plan {} (title={}, duration={})",
+                            plan.getBookingPlanID(), plan.getTitle(), duration);
+                    continue;
+                }
+                int start = plan.getStartHours().toSecondOfDay() / 60;
+                int end = plan.getEndHours().toSecondOfDay() / 60;
+                int dayIndex = day.getValue() - 1;
+                for (int slotStart = start; slotStart + duration <= end; slotStart += duration) {
+                    slotsByDay.get(dayIndex).add(new int[]{slotStart, slotStart + duration});
+                    plansByDay.get(dayIndex).add(plan);
+                }
+            }
+
+            for (int i = 0; i < 7; i++) {
+                List<int[]> daySlots = slotsByDay.get(i);
+                List<BookingPlan> dayPlans = plansByDay.get(i);
+                Integer[] order = new Integer[daySlots.size()];
+                for (int k = 0; k < order.length; k++) {
+                    order[k] = k;
+                }
+                Arrays.sort(order, Comparator.comparingInt(k -> daySlots.get(k)[0]));
+
+                calendar.startByDay[i] = new int[order.length];
+                calendar.endByDay[i] = new int[order.length];
+                calendar.planByDay[i] = new long[order.length];
+                calendar.priceByDay[i] = new double[order.length];
+                for (int k = 0; k < order.length; k++) {
+                    BookingPlan plan = dayPlans.get(order[k]);
+                    calendar.startByDay[i][k] = daySlots.get(order[k])[0];
+                    calendar.endByDay[i][k] = daySlots.get(order[k])[1];
+                    calendar.planByDay[i][k] = plan.getBookingPlanID();
+                    calendar.priceByDay[i][k] = plan.getPricePerHours() != null ? plan.getPricePerHours() : 0.0;
+                }
+            }
+            return calendar;
+        }
+
+        synchronized void occupy(Long slotId, long startMinute, long endMinute) {
+            release(slotId);
+            occupiedByStart.computeIfAbsent(startMinute, k -> new HashMap<>(2)).put(slotId, endMinute);
+            startBySlot.put(slotId, startMinute);
+            maxOccupiedLength = Math.max(maxOccupiedLength, endMinute - startMinute);
+        }
+
+        synchronized void release(Long slotId) {
+            Long start = startBySlot.remove(slotId);
+            if (start == null) {
+                return;
+            }
+            Map<Long, Long> atStart = occupiedByStart.get(start);
+            if (atStart != null) {
+                atStart.remove(slotId);
+                if (atStart.isEmpty()) {
+                    occupiedByStart.remove(start);
+                }
+            }
+        }
+
+        synchronized List<FreeSlot> freeSlots(LocalDateTime from, int weeks) {
+            long fromMinute = toMinute(from);
+            LocalDate firstDay = from.toLocalDate();
+            long firstDayMinute = toMinute(firstDay.atStartOfDay());
+            int firstDayIndex = firstDay.getDayOfWeek().getValue() - 1;
+
+            List<FreeSlot> result = new ArrayList<>();
+            for (int d = 0; d < weeks * 7; d++) {
+                int dayIndex = (firstDayIndex + d) % 7;
+                int[] starts = startByDay[dayIndex];
+                if (starts.length == 0) {
+                    continue;
+                }
+                int[] ends = endByDay[dayIndex];
+                long[] planIds = planByDay[dayIndex];
+                long dayMinute = firstDayMinute + d * 1440L;
+
+                for (int k = 0; k < starts.length; k++) {
+                    long start = dayMinute + starts[k];
+                    if (start <= fromMinute) {
+                        continue;
+                    }
+                    long end = dayMinute + ends[k];
+                    if (!overlapsOccupied(start, end)) {
+                        result.add(new FreeSlot(planIds[k], fromMinute(start), fromMinute(end)));
+                    }
+                }
+            }
+            return result;
+        }
+
+        /**
+         * Khoảng trống sớm nhất: bắt đầu sau notBefore, nằm trong khung giờ, gồm các slot liền nhau
+         * của cùng 1 plan (plan của 1 tutor không chồng giờ nhau) đủ durationMinutes
+         */
+        synchronized MatchedSlot earliestFree(SlotWindow window) {
+            long notBefore = toMinute(window.notBefore());
+            int windowStart = window.dayStart() != null ? window.dayStart().toSecondOfDay() / 60 : 0;
+            int windowEnd = window.dayEnd() != null ? window.dayEnd().toSecondOfDay() / 60 : 1440;
+            int duration = Math.max(window.durationMinutes(), 1);
+
+            LocalDate date = window.fromDate();
+            for (; !date.isAfter(window.toDate()); date = date.plusDays(1)) {
+                int dayIndex = date.getDayOfWeek().getValue() - 1;
+                int[] starts = startByDay[dayIndex];
+                int[] ends = endByDay[dayIndex];
+                long[] planIds = planByDay[dayIndex];
+                double[] prices = priceByDay[dayIndex];
+                long dayMinute = toMinute(date.atStartOfDay());
+
+                for (int k = 0; k < starts.length; k++) {
+                    if (starts[k] < windowStart || dayMinute + starts[k] <= notBefore
+                            || (window.minPrice() != null && prices[k] < window.minPrice())
+                            || (window.maxPrice() != null && prices[k] > window.maxPrice())) {
+                        continue;
+                    }
+
+                    // Nối các slot kế tiếp của cùng plan cho tới khi đủ thời lượng
+                    long start = dayMinute + starts[k];
+                    long end = start;
+                    int count = 0;
+                    for (int j = k; j < starts.length; j++) {
+                        if (planIds[j] != planIds[k] || dayMinute + starts[j] != end || ends[j] > windowEnd
+                                || overlapsOccupied(dayMinute + starts[j], dayMinute + ends[j])) {
+                            break;
+                        }
+                        end = dayMinute + ends[j];
+                        count++;
+                        if (end - start >= duration) {
+                            return new MatchedSlot(planIds[k], fromMinute(start), fromMinute(end), prices[k], count);
+                        }
+                    }
+                }
+            }
+            return null;
+        }
+
+        // Có slot đã chiếm nào giao với [start, end) không
+        private boolean overlapsOccupied(long start, long end) {
+            if (occupiedByStart.isEmpty()) {
+                return false;
+            }
+            for (Map<Long, Long> atStart
+                    : occupiedByStart.subMap(start - maxOccupiedLength, false, end, false).values()) {
+                for (long occupiedEnd : atStart.values()) {
+                    if (occupiedEnd > start) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -26,14 +26,13 @@ import java.util.stream.Collectors;
 @FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
 @Transactional
 public class TutorBookingPlanService {
-    NotificationService notificationService;
     BookingPlanRepository bookingPlanRepository;
     BookingPlanSlotRepository bookingPlanSlotRepository;
     TutorRepository tutorRepository;
-    RefundRequestRepository refundRequestRepository;
-    NotificationRepository notificationRepository;
-    PaymentRepository paymentRepository;
-    PayOSService payOSService;
+    BookingPlanTeardownService bookingPlanTeardownService;
+    TutorDirectoryService tutorDirectoryService;
+    TutorProfileService tutorProfileService;
+    TutorAvailabilityService tutorAvailabilityService;
 
     // =========================================================
     // CREATE BOOKING PLAN
@@ -76,6 +75,9 @@ public class TutorBookingPlanService {
                 .build();
 
         bookingPlan = bookingPlanRepository.save(bookingPlan);
+        tutorDirectoryService.refreshPricing(tutor.getTutorID());
+        tutorProfileService.evict(tutor.getTutorID());
+        tutorAvailabilityService.onPlansChanged(tutor.getTutorID());
 
         long totalMinutes = Duration.between(
                 bookingPlan.getStartHours(),
@@ -103,6 +105,12 @@ public class TutorBookingPlanService {
                 tutor.getTutorID(), bookingPlanId, request.getTitle(), request.getStartTime(), request.getEndTime());
         validatePlanRequest(request);
 
+        // Slot tương lai được đối chiếu theo thứ trong title mới → title không ra thứ thì từ chối thay vì huỷ mọi slot
+        if (hasTimeFieldsChanged(bookingPlan, request)
+                && TutorAvailabilityService.parseDayTitle(request.getTitle()) == null) {
+            throw new AppException(ErrorCode.INVALID_KEY);
+        }
+
         // Nếu đang thay đổi title (ngày) sang một ngày khác, validate giới hạn 4 ngày/tuần
         boolean isChangingDay = !bookingPlan.getTitle().equals(request.getTitle());
         if (isChangingDay) {
@@ -147,10 +155,8 @@ public class TutorBookingPlanService {
 
         boolean timeFieldsChanged = hasTimeFieldsChanged(bookingPlan, request);
 
-        // Lưu thông tin thời gian cũ trước khi update
-        LocalTime oldStartHours = bookingPlan.getStartHours();
-        LocalTime oldEndHours = bookingPlan.getEndHours();
-        Integer oldSlotDuration = bookingPlan.getSlotDuration();
+        // Lưu thứ cũ trước khi update (để biết plan có bị dời sang ngày khác không)
+        DayOfWeek oldDay = TutorAvailabilityService.parseDayTitle(bookingPlan.getTitle());
 
         // Normalize empty string to null for meetingUrl
         String meetingUrl = request.getMeetingUrl();
@@ -166,10 +172,13 @@ public class TutorBookingPlanService {
         bookingPlan.setMeetingUrl(meetingUrl);
 
         bookingPlanRepository.save(bookingPlan);
+        tutorDirectoryService.refreshPricing(tutor.getTutorID());
+        tutorProfileService.evict(tutor.getTutorID());
+        tutorAvailabilityService.onPlansChanged(tutor.getTutorID());
 
         int affectedSlots = 0;
         if (timeFieldsChanged) {
-            affectedSlots = adjustSlotsForNewPlan(bookingPlan, oldStartHours, oldEndHours, oldSlotDuration);
+            affectedSlots = adjustSlotsForNewPlan(bookingPlan, tutor, oldDay);
         }
 
         return BookingPlanUpdateResponse.builder()
@@ -184,6 +193,7 @@ public class TutorBookingPlanService {
     /**
      * Xóa tất cả booking plans của tutor và thông báo cho learner
      * Được gọi khi tutor bị suspend hoặc delete
+     * → teardown theo lô, huỷ link PayOS + notification chạy async sau commit
      */
     public void deleteAllBookingPlansForTutor(Long tutorId) {
         log.info("Deleting all booking plans for tutor {}", tutorId);
@@ -196,77 +206,14 @@ public class TutorBookingPlanService {
             return;
         }
 
-        int totalPlansDeleted = 0;
-        int totalSlotsWithLearner = 0;
-
-        // Xóa từng booking plan
-        for (BookingPlan plan : allPlans) {
-            // Lấy tất cả slots của booking plan
-            List<BookingPlanSlot> allSlots = bookingPlanSlotRepository
-                    .findByBookingPlanIDOrderByStartTimeAsc(plan.getBookingPlanID());
-
-            // Xử lý từng slot có learner
-            for (BookingPlanSlot slot : allSlots) {
-                Long learnerUserId = slot.getUserID();
-
-                if (learnerUserId != null) {
-                    // Slot có learner → gửi thông báo và xóa
-                    totalSlotsWithLearner++;
-                    handleSlotDeletionForTutorSuspension(slot, plan, learnerUserId);
-                    bookingPlanSlotRepository.delete(slot);
-                } else {
-                    // Slot không có learner → xóa trực tiếp
-                    bookingPlanSlotRepository.delete(slot);
-                }
-            }
-
-            // Xóa booking plan
-            bookingPlanRepository.delete(plan);
-            totalPlansDeleted++;
-        }
+        BookingPlanTeardownProgressResponse job = bookingPlanTeardownService.teardownPlans(
+                tutorId, null, allPlans, BookingPlanTeardownReason.TUTOR_SUSPENDED);
+        tutorDirectoryService.refreshPricing(tutorId);
+        tutorProfileService.evict(tutorId);
+        tutorAvailabilityService.onPlansChanged(tutorId);
 
-        log.info("Deleted {} booking plans for tutor {} ({} slots had learners and notifications were sent)",
-                totalPlansDeleted, tutorId, totalSlotsWithLearner);
-    }
-
-    /**
-     * Xử lý xóa slot khi tutor bị suspend/delete: chỉ thông báo cho learner (không thông báo cho tutor)
-     */
-    private void handleSlotDeletionForTutorSuspension(BookingPlanSlot slot, BookingPlan plan, Long learnerUserId) {
-        if (slot.getStatus() == SlotStatus.Locked) {
-            // Slot đang thanh toán → hủy payment link và thông báo
-            if (slot.getPaymentID() != null) {
-                Payment payment = paymentRepository.findById(slot.getPaymentID()).orElse(null);
-                if (payment != null && payment.getPaymentLinkId() != null) {
-                    // Có thể hủy payment link nếu cần
-                }
-            }
-
-            // Thông báo cho learner – text có thể tuỳ biến
-//            notificationService.sendNotification(...);
-        } else if (slot.getStatus() == SlotStatus.Paid) {
-            // Slot đã thanh toán → tạo refund request và thông báo
-            BigDecimal refundAmount = calculateRefundAmount(slot, plan);
-
-            RefundRequest refund = RefundRequest.builder()
-                    .bookingPlanId(plan.getBookingPlanID())
-                    .slotId(slot.getSlotID())
-                    .userId(learnerUserId)
-                    .packageId(slot.getUserPackage() != null ? slot.getUserPackage().getUserPackageID() : null)
-                    .refundAmount(refundAmount)
-                    .status(RefundStatus.PENDING)
-                    .createdAt(LocalDateTime.now())
-                    .build();
-
-            refundRequestRepository.save(refund);
-
-            // Thông báo cho learner – text có thể tuỳ biến
-//            notificationService.sendNotification(...);
-        } else {
-            // Slot Available nhưng có userID
-            // Thông báo cho learner – text có thể tuỳ biến
-//            notificationService.sendNotification(...);
-        }
+        log.info("Deleted {} booking plans for tutor {} ({} slots had learners, teardown job {})",
+                allPlans.size(), tutorId, job.getSlotsWithLearner(), job.getJobId());
     }
 
     // =========================================================
@@ -280,158 +227,34 @@ public class TutorBookingPlanService {
         ensurePlanOwner(tutor, bookingPlan);
         log.info("Tutor {} (approved) deleting booking plan {}", tutor.getTutorID(), bookingPlanId);
 
-        // Lấy tất cả slots của booking plan
-        List<BookingPlanSlot> allSlots = bookingPlanSlotRepository
-                .findByBookingPlanIDOrderByStartTimeAsc(bookingPlanId);
-
         // Lấy tutor user ID để gửi thông báo
         Long tutorUserId = tutor.getUser() != null ? tutor.getUser().getUserID() : null;
 
-        int slotsWithLearner = 0;
-        int deletedSlots = 0;
-
-        // Xử lý từng slot có learner
-        for (BookingPlanSlot slot : allSlots) {
-            Long learnerUserId = slot.getUserID();
-
-            if (learnerUserId != null) {
-                // Slot có learner → gửi thông báo và xóa
-                slotsWithLearner++;
-                handleSlotDeletion(slot, bookingPlan, learnerUserId, tutorUserId);
-                bookingPlanSlotRepository.delete(slot);
-                deletedSlots++;
-            } else {
-                // Slot không có learner → xóa trực tiếp
-                bookingPlanSlotRepository.delete(slot);
-                deletedSlots++;
-            }
-        }
-
-        // Xóa booking plan
-        bookingPlanRepository.delete(bookingPlan);
+        BookingPlanTeardownProgressResponse job = bookingPlanTeardownService.teardownPlans(
+                tutor.getTutorID(), tutorUserId, List.of(bookingPlan), BookingPlanTeardownReason.PLAN_DELETED);
+        tutorDirectoryService.refreshPricing(tutor.getTutorID());
+        tutorProfileService.evict(tutor.getTutorID());
+        tutorAvailabilityService.onPlansChanged(tutor.getTutorID());
 
         String message = String.format(
-                "Booking plan deleted. %d slots deleted (%d slots had learners and notifications were sent).",
-                deletedSlots, slotsWithLearner
+                "Booking plan deleted. %d slots deleted (%d slots had learners and notifications were queued, job %s).",
+                job.getSlotsAffected(), job.getSlotsWithLearner(), job.getJobId()
         );
 
-        log.info("Booking plan {} deleted. Total slots deleted: {}, Slots with learners: {}",
-                bookingPlanId, deletedSlots, slotsWithLearner);
+        log.info("Booking plan {} deleted. Total slots deleted: {}, Slots with learners: {}, teardown job {}",
+                bookingPlanId, job.getSlotsAffected(), job.getSlotsWithLearner(), job.getJobId());
 
         return OperationStatusResponse.success(message);
     }
 
     /**
-     * Xử lý xóa slot có learner: gửi thông báo cho cả tutor và learner, xử lý payment/refund
+     * Tiến độ job teardown (huỷ link PayOS + gửi notification) của tutor hiện tại
      */
-    private void handleSlotDeletion(BookingPlanSlot slot, BookingPlan plan, Long learnerUserId, Long tutorUserId) {
-        if (slot.getStatus() == SlotStatus.Locked) {
-            // Slot đang thanh toán → hủy payment link và thông báo
-            if (slot.getPaymentID() != null) {
-                Payment payment = paymentRepository.findById(slot.getPaymentID()).orElse(null);
-                if (payment != null && payment.getPaymentLinkId() != null) {
-                    try {
-                        payOSService.cancelPaymentLink(payment.getPaymentLinkId());
-                        payment.setStatus(PaymentStatus.CANCELLED);
-                        payment.setIsPaid(false);
-                        payment.setPaidAt(null);
-                        payment.setExpiresAt(LocalDateTime.now());
-                        paymentRepository.save(payment);
-                        log.info("Payment {} cancelled due to booking plan deletion", payment.getPaymentID());
-                    } catch (Exception e) {
-                        log.error("Cannot cancel payment link {}", payment.getPaymentLinkId(), e);
-                    }
-                }
-            }
-
-            // Thông báo cho learner
-            notificationService.sendNotification(
-                    learnerUserId,
-                    "Lịch học đã bị hủy",
-                    "Buổi học vào lúc " + formatDateTime(slot.getStartTime()) +
-                            " đã bị hủy do tutor xóa lịch làm việc. " +
-                            "Link thanh toán đã bị vô hiệu hoá, bạn sẽ không bị trừ tiền. " +
-                            "Vui lòng chọn lịch học mới.",
-                    NotificationType.TUTOR_CANCEL_BOOKING,
-                    "/learner/booking"
-            );
-
-            // Thông báo cho tutor
-            if (tutorUserId != null) {
-                notificationService.sendNotification(
-                        tutorUserId,
-                        "Đã xóa slot có learner đang thanh toán",
-                        "Buổi học vào lúc " + formatDateTime(slot.getStartTime()) +
-                                " có learner đang thanh toán đã bị xóa khi bạn xóa lịch làm việc. " +
-                                "Hệ thống đã hủy link thanh toán và thông báo cho learner.",
-                        NotificationType.TUTOR_CANCEL_BOOKING,
-                        "/tutor/booking-plan"
-                );
-            }
-        } else if (slot.getStatus() == SlotStatus.Paid) {
-            // Slot đã thanh toán → tạo refund request và thông báo
-            BigDecimal refundAmount = calculateRefundAmount(slot, plan);
-
-            RefundRequest refund = RefundRequest.builder()
-                    .bookingPlanId(plan.getBookingPlanID())
-                    .slotId(slot.getSlotID())
-                    .userId(learnerUserId)
-                    .packageId(slot.getUserPackage() != null ? slot.getUserPackage().getUserPackageID() : null)
-                    .refundAmount(refundAmount)
-                    .status(RefundStatus.PENDING)
-                    .createdAt(LocalDateTime.now())
-                    .build();
-
-            refundRequestRepository.save(refund);
-
-            // Thông báo cho learner
-            notificationService.sendNotification(
-                    learnerUserId,
-                    "Lịch học đã bị hủy - Yêu cầu hoàn tiền",
-                    "Buổi học vào lúc " + formatDateTime(slot.getStartTime()) +
-                            " đã bị hủy do tutor xóa lịch làm việc. " +
-                            "Hệ thống đã tạo yêu cầu hoàn tiền. " +
-                            "Vui lòng nhập thông tin ngân hàng để nhận tiền.",
-                    NotificationType.REFUND_AVAILABLE,
-                    "/learner/refunds"
-            );
-
-            // Thông báo cho tutor
-            if (tutorUserId != null) {
-                notificationService.sendNotification(
-                        tutorUserId,
-                        "Đã xóa slot đã thanh toán - Yêu cầu hoàn tiền",
-                        "Buổi học vào lúc " + formatDateTime(slot.getStartTime()) +
-                                " đã được thanh toán nhưng đã bị xóa khi bạn xóa lịch làm việc. " +
-                                "Hệ thống đã tạo yêu cầu hoàn tiền cho learner.",
-                        NotificationType.REFUND_AVAILABLE,
-                        "/tutor/booking-plan"
-                );
-            }
-        } else {
-            // Slot Available nhưng có userID
-            notificationService.sendNotification(
-                    learnerUserId,
-                    "Lịch học đã bị hủy",
-                    "Buổi học vào lúc " + formatDateTime(slot.getStartTime()) +
-                            " đã bị hủy do tutor xóa lịch làm việc. " +
-                            "Vui lòng chọn lịch học mới.",
-                    NotificationType.TUTOR_CANCEL_BOOKING,
-                    "/learner/booking"
-            );
-
-            if (tutorUserId != null) {
-                notificationService.sendNotification(
-                        tutorUserId,
-                        "Đã xóa slot có learner",
-                        "Buổi học vào lúc " + formatDateTime(slot.getStartTime()) +
-                                " có learner đã book nhưng đã bị xóa khi bạn xóa lịch làm việc. " +
-                                "Hệ thống đã thông báo cho learner.",
-                        NotificationType.TUTOR_CANCEL_BOOKING,
-                        "/tutor/booking-plan"
-                );
-            }
-        }
+    @Transactional(readOnly = true)
+    public BookingPlanTeardownProgressResponse getTeardownProgress(Long currentUserId, String jobId) {
+        Tutor tutor = getApprovedTutorByUserId(currentUserId);
+        return bookingPlanTeardownService.getProgress(jobId, tutor.getTutorID())
+                .orElseThrow(() -> new AppException(ErrorCode.BOOKING_TEARDOWN_JOB_NOT_FOUND));
     }
 
     // =========================================================
@@ -650,436 +473,31 @@ public class TutorBookingPlanService {
     // LOGIC UPDATE PLAN → HANDLE SLOTS
     // =========================================================
     /**
-     * Điều chỉnh slots khi update booking plan theo 3 trường hợp:
-     * 1. Slot trùng giữa thời gian cũ và mới → GIỮ NGUYÊN
-     * 2. Slot có trong thời gian mới nhưng không tồn tại trước đó → TẠO MỚI
-     * 3. Slot cũ không còn nằm trong thời gian mới → XOÁ (nếu không có learner) hoặc giữ lại và thông báo (nếu có learner)
+     * Đối chiếu slot tương lai với lưới giờ mới (BookingPlanSlotDiff) rồi ghi theo lô:
+     * 1. Slot vẫn nằm trong giờ mới → GIỮ NGUYÊN
+     * 2. Slot trống lệch lưới mới → DỜI về ô gần nhất (1 lần saveAll)
+     * 3. Slot ngoài giờ mới / plan đổi sang thứ khác → 1 lần releaseSlots
+     *    (xoá slot trống, huỷ payment, refund + notification theo lô)
+     * Slot quá khứ / trong hôm nay không bị đụng tới.
      */
-    private int adjustSlotsForNewPlan(BookingPlan plan, LocalTime oldStartHours, LocalTime oldEndHours, Integer oldSlotDuration) {
-        List<BookingPlanSlot> existingSlots = bookingPlanSlotRepository
-                .findByBookingPlanIDOrderByStartTimeAsc(plan.getBookingPlanID());
-
-        // Tính toán thời gian trùng nhau giữa cũ và mới
-        LocalTime intersectionStart = oldStartHours.isBefore(plan.getStartHours())
-                ? plan.getStartHours()
-                : oldStartHours;
-        LocalTime intersectionEnd = oldEndHours.isBefore(plan.getEndHours())
-                ? oldEndHours
-                : plan.getEndHours();
-
-        // Nếu không có intersection, tất cả slots cũ sẽ bị xử lý
-        boolean hasIntersection = !intersectionStart.isAfter(intersectionEnd);
-
-        int affected = 0;
-        int created = 0;
-        int deleted = 0;
-        int kept = 0;
-
-        // Xử lý từng slot hiện có
-        for (BookingPlanSlot slot : existingSlots) {
-            if (slot.getStatus() == SlotStatus.Rejected) continue;
-
-            LocalTime slotStart = slot.getStartTime().toLocalTime();
-            LocalTime slotEnd = slot.getEndTime().toLocalTime();
-
-            // Kiểm tra slot có nằm trong thời gian mới không
-            boolean isInNewTime = !slotStart.isBefore(plan.getStartHours())
-                    && !slotEnd.isAfter(plan.getEndHours());
-
-            // Kiểm tra slot có nằm trong thời gian cũ không
-            boolean isInOldTime = !slotStart.isBefore(oldStartHours)
-                    && !slotEnd.isAfter(oldEndHours);
-
-            if (isInNewTime && isInOldTime) {
-                // TRƯỜNG HỢP 1: Slot trùng giữa thời gian cũ và mới → GIỮ NGUYÊN
-                kept++;
-                log.debug("Slot {} kept unchanged (overlapping time range)", slot.getSlotID());
-            } else if (!isInNewTime) {
-                // TRƯỜNG HỢP 3: Slot cũ không còn nằm trong thời gian mới
-                handleSlotOutOfNewTime(slot, plan);
-                if (slot.getUserID() == null) {
-                    deleted++;
-                } else {
-                    kept++; // Giữ lại nhưng đã thông báo hoặc chuyển sang refund
-                }
-                affected++;
-            }
-            // Nếu slot chỉ nằm trong thời gian mới nhưng không nằm trong thời gian cũ
-            // → Đây là slot mới, sẽ được tạo ở bước sau
-        }
-
-        // TRƯỜNG HỢP 2: Tạo slots mới cho thời gian mới
-        if (hasIntersection) {
-            // Tạo slots cho phần thời gian mới ngoài intersection
-            created += generateSlotsForTimeRange(
-                    plan,
-                    plan.getStartHours(),
-                    intersectionStart,
-                    existingSlots
-            );
-            created += generateSlotsForTimeRange(
-                    plan,
-                    intersectionEnd,
-                    plan.getEndHours(),
-                    existingSlots
-            );
-        } else {
-            // Không có intersection, tạo toàn bộ slots mới
-            created += generateSlotsForTimeRange(
-                    plan,
-                    plan.getStartHours(),
-                    plan.getEndHours(),
-                    existingSlots
-            );
-        }
+    private int adjustSlotsForNewPlan(BookingPlan plan, Tutor tutor, DayOfWeek oldDay) {
+        LocalDateTime from = LocalDate.now().plusDays(1).atStartOfDay();
+        List<BookingPlanSlot> futureSlots = bookingPlanSlotRepository
+                .findByBookingPlanIDAndStartTimeGreaterThanEqualOrderByStartTimeAsc(plan.getBookingPlanID(), from);
 
-        log.info("Updated booking plan {}: kept={}, created={}, deleted={}, affected={}",
-                plan.getBookingPlanID(), kept, created, deleted, affected);
+        BookingPlanSlotDiff diff = BookingPlanSlotDiff.compute(oldDay, plan, futureSlots);
 
-        return affected + created;
-    }
-
-    /**
-     * Tạo slots mới cho một khoảng thời gian, tránh trùng với slots đã tồn tại
-     */
-    private int generateSlotsForTimeRange(
-            BookingPlan plan,
-            LocalTime rangeStart,
-            LocalTime rangeEnd,
-            List<BookingPlanSlot> existingSlots
-    ) {
-        if (rangeStart.isAfter(rangeEnd) || rangeStart.equals(rangeEnd)) {
-            return 0;
+        if (!diff.moved().isEmpty()) {
+            bookingPlanSlotRepository.saveAll(diff.moved());
         }
-
-        int created = 0;
-        LocalTime currentStart = rangeStart;
-
-        while (currentStart.isBefore(rangeEnd)) {
-            final LocalTime slotStart = currentStart; // Final variable for lambda
-            LocalTime currentEnd = currentStart.plusMinutes(plan.getSlotDuration());
-
-            // Nếu vượt quá rangeEnd, dừng lại
-            if (currentEnd.isAfter(rangeEnd)) {
-                break;
-            }
-
-            final LocalTime slotEnd = currentEnd; // Final variable for lambda
-
-            // Kiểm tra xem slot này đã tồn tại chưa (so sánh theo thời gian)
-            boolean slotExists = existingSlots.stream()
-                    .anyMatch(slot -> {
-                        LocalTime existingSlotStart = slot.getStartTime().toLocalTime();
-                        LocalTime existingSlotEnd = slot.getEndTime().toLocalTime();
-                        return existingSlotStart.equals(slotStart) && existingSlotEnd.equals(slotEnd);
-                    });
-
-            if (!slotExists) {
-                // Tạo slot mới - xác định ngày cụ thể dựa trên title
-                LocalDateTime slotStartDateTime = getNextOccurrenceOfDay(
-                        plan.getTitle(),
-                        slotStart
-                );
-                LocalDateTime slotEndDateTime = slotStartDateTime.plusMinutes(plan.getSlotDuration());
-
-                BookingPlanSlot newSlot = BookingPlanSlot.builder()
-                        .bookingPlanID(plan.getBookingPlanID())
-                        .tutorID(plan.getTutorID())
-                        .userID(null) // Chưa có learner
-                        .startTime(slotStartDateTime)
-                        .endTime(slotEndDateTime)
-                        .status(SlotStatus.Available)
-                        .build();
-
-                // Nếu muốn auto tạo slot mới trong DB, bỏ comment dòng dưới:
-                // bookingPlanSlotRepository.save(newSlot);
-                // created++;
-            }
-
-            currentStart = currentEnd;
+        if (!diff.cancelled().isEmpty()) {
+            bookingPlanTeardownService.releaseSlots(plan, tutor, diff.cancelled());
         }
 
-        return created;
-    }
-
-    /**
-     * Lấy ngày tiếp theo của một ngày trong tuần (dựa trên title)
-     * Ví dụ: "Monday" → thứ 2 tuần này hoặc tuần sau
-     */
-    private LocalDateTime getNextOccurrenceOfDay(String dayTitle, LocalTime time) {
-        // Map title sang DayOfWeek
-        DayOfWeek targetDay = mapTitleToDayOfWeek(dayTitle);
-        LocalDate today = LocalDate.now();
-        LocalDate nextOccurrence = today;
-
-        // Tìm ngày tiếp theo có DayOfWeek trùng với targetDay
-        while (nextOccurrence.getDayOfWeek() != targetDay) {
-            nextOccurrence = nextOccurrence.plusDays(1);
-        }
-
-        return LocalDateTime.of(nextOccurrence, time);
-    }
-
-    /**
-     * Map title (ví dụ: "Monday", "Thứ 2") sang DayOfWeek
-     */
-    private DayOfWeek mapTitleToDayOfWeek(String title) {
-        String lowerTitle = title.toLowerCase().trim();
-
-        // Hỗ trợ tiếng Anh + tiếng Việt
-        if (lowerTitle.contains("monday") || lowerTitle.contains("thứ 2") || lowerTitle.contains("thứ hai")) {
-            return DayOfWeek.MONDAY;
-        } else if (lowerTitle.contains("tuesday") || lowerTitle.contains("thứ 3") || lowerTitle.contains("thứ ba")) {
-            return DayOfWeek.TUESDAY;
-        } else if (lowerTitle.contains("wednesday") || lowerTitle.contains("thứ 4") || lowerTitle.contains("thứ tư")) {
-            return DayOfWeek.WEDNESDAY;
-        } else if (lowerTitle.contains("thursday") || lowerTitle.contains("thứ 5") || lowerTitle.contains("thứ năm")) {
-            return DayOfWeek.THURSDAY;
-        } else if (lowerTitle.contains("friday") || lowerTitle.contains("thứ 6") || lowerTitle.contains("thứ sáu")) {
-            return DayOfWeek.FRIDAY;
-        } else if (lowerTitle.contains("saturday") || lowerTitle.contains("thứ 7") || lowerTitle.contains("thứ bảy")) {
-            return DayOfWeek.SATURDAY;
-        } else if (lowerTitle.contains("sunday") || lowerTitle.contains("chủ nhật")) {
-            return DayOfWeek.SUNDAY;
-        }
-
-        // Mặc định là thứ 2 nếu parse không được
-        return DayOfWeek.MONDAY;
-    }
-
-    /**
-     * Xử lý slot không còn nằm trong thời gian mới
-     * - Không đụng tới slot QUÁ KHỨ
-     * - Không đụng tới slot TRONG NGÀY HÔM NAY
-     * - Chỉ xử lý slot TƯƠNG LAI (ngày > hôm nay)
-     *   + Locked  -> hủy payment link + thông báo
-     *   + Paid    -> tạo refund TUTOR_RESCHEDULE + set Rejected
-     *   + Others  -> chỉ thông báo
-     */
-    private void handleSlotOutOfNewTime(BookingPlanSlot slot, BookingPlan plan) {
-        Long learnerUserId = slot.getUserID();
-
-        LocalDateTime now = LocalDateTime.now();
-        LocalDate today = now.toLocalDate();
-        LocalDate slotDate = slot.getStartTime().toLocalDate();
-
-        // 0) Nếu slot đã ở QUÁ KHỨ (endTime < now) -> KHÔNG đụng
-        if (slot.getEndTime() != null && slot.getEndTime().isBefore(now)) {
-            log.info("[BOOKING-UPDATE] Skip slot {} ({} - {}) because it is in the past",
-                    slot.getSlotID(), slot.getStartTime(), slot.getEndTime());
-            return;
-        }
-
-        // 1) Nếu slot là NGÀY HÔM NAY -> KHÔNG đụng
-        if (slotDate.isEqual(today)) {
-            log.info("[BOOKING-UPDATE] Skip slot {} ({} - {}) because it is TODAY",
-                    slot.getSlotID(), slot.getStartTime(), slot.getEndTime());
-            return;
-        }
-
-        // 2) Slot TƯƠNG LAI nhưng KHÔNG có learner -> XÓA slot luôn
-        if (learnerUserId == null) {
-            bookingPlanSlotRepository.delete(slot);
-            log.info("[BOOKING-UPDATE] Deleted future empty slot {} ({} - {})",
-                    slot.getSlotID(), slot.getStartTime(), slot.getEndTime());
-            return;
-        }
-
-        // 3) Slot TƯƠNG LAI có learner -> tùy theo status
-        Tutor tutor = tutorRepository.findById(plan.getTutorID())
-                .orElse(null);
-        Long tutorUserId = tutor != null && tutor.getUser() != null
-                ? tutor.getUser().getUserID()
-                : null;
-
-        // =========================
-        // CASE: SLOT LOCKED (đang thanh toán)
-        // =========================
-        if (slot.getStatus() == SlotStatus.Locked) {
-
-            // Hủy link thanh toán nếu có
-            if (slot.getPaymentID() != null) {
-                Payment payment = paymentRepository.findById(slot.getPaymentID()).orElse(null);
-                if (payment != null && payment.getPaymentLinkId() != null) {
-                    try {
-                        payOSService.cancelPaymentLink(payment.getPaymentLinkId());
-                        payment.setStatus(PaymentStatus.CANCELLED);
-                        payment.setIsPaid(false);
-                        payment.setPaidAt(null);
-                        payment.setExpiresAt(LocalDateTime.now());
-                        paymentRepository.save(payment);
-                        log.info("[BOOKING-UPDATE] Payment {} cancelled because plan updated",
-                                payment.getPaymentID());
-                    } catch (Exception e) {
-                        log.error("Cannot cancel payment link {} when updating booking plan",
-                                payment.getPaymentLinkId(), e);
-                    }
-                }
-            }
-
-            // Thông báo cho learner
-            notificationService.sendNotification(
-                    learnerUserId,
-                    "Lịch học đã thay đổi",
-                    "Buổi học vào lúc " + formatDateTime(slot.getStartTime()) +
-                            " đã bị ảnh hưởng do tutor thay đổi lịch. " +
-                            "Link thanh toán đã bị hủy, vui lòng chọn lịch mới và thanh toán lại.",
-                    NotificationType.TUTOR_CANCEL_BOOKING,
-                    "/learner/booking"
-            );
-
-            // Thông báo cho tutor
-            if (tutorUserId != null) {
-                notificationService.sendNotification(
-                        tutorUserId,
-                        "Slot có learner đang thanh toán bị ảnh hưởng",
-                        "Buổi học vào lúc " + formatDateTime(slot.getStartTime()) +
-                                " có learner đang thanh toán đã bị ảnh hưởng do bạn cập nhật lịch làm việc. " +
-                                "Hệ thống đã hủy link thanh toán và thông báo cho learner.",
-                        NotificationType.TUTOR_CANCEL_BOOKING,
-                        "/tutor/booking-plan"
-                );
-            }
-
-            log.info("[BOOKING-UPDATE] Locked slot {} affected by plan update (learnerId={})",
-                    slot.getSlotID(), learnerUserId);
-            return;
-        }
-
-        // =========================
-        // CASE: SLOT PAID (đã thanh toán)
-        // =========================
-        if (slot.getStatus() == SlotStatus.Paid) {
-
-            // Không tạo refund trùng nếu đã có refund open/approved cho slot này
-            boolean hasRefund = refundRequestRepository.existsBySlotIdAndStatusIn(
-                    slot.getSlotID(),
-                    List.of(
-                            RefundStatus.PENDING,
-                            RefundStatus.SUBMITTED,
-                            RefundStatus.APPROVED
-                    )
-            );
-            if (hasRefund) {
-                log.info("[BOOKING-UPDATE] Skip creating refund for slot {} because it already has refund",
-                        slot.getSlotID());
-                return;
-            }
-
-            BigDecimal refundAmount = calculateRefundAmount(slot, plan);
-
-            RefundRequest refund = RefundRequest.builder()
-                    .bookingPlanId(plan.getBookingPlanID())
-                    .slotId(slot.getSlotID())
-                    .userId(learnerUserId)
-                    .packageId(slot.getUserPackage() != null
-                            ? slot.getUserPackage().getUserPackageID()
-                            : null)
-                    .refundAmount(refundAmount)
-                    .status(RefundStatus.PENDING)
-                    .refundType(RefundType.TUTOR_RESCHEDULE)
-                    .createdAt(LocalDateTime.now())
-                    .tutor(tutor)
-                    .reason("Hoàn tiền do tutor thay đổi lịch, slot không còn phù hợp với lịch mới")
-                    .build();
-
-            // Slot này không còn được sử dụng nữa
-            slot.setStatus(SlotStatus.Rejected);
-            bookingPlanSlotRepository.save(slot);
-            refundRequestRepository.save(refund);
-
-            // Thông báo cho learner
-            notificationService.sendNotification(
-                    learnerUserId,
-                    "Lịch học đã thay đổi - Yêu cầu hoàn tiền",
-                    "Buổi học vào lúc " + formatDateTime(slot.getStartTime()) +
-                            " đã bị ảnh hưởng do tutor thay đổi lịch làm việc. " +
-                            "Hệ thống đã tạo yêu cầu hoàn tiền cho bạn. " +
-                            "Vui lòng nhập thông tin ngân hàng để nhận tiền hoặc chọn lịch khác.",
-                    NotificationType.REFUND_AVAILABLE,
-                    "/learner/refunds/" + refund.getRefundRequestId()
-            );
-
-            // Thông báo cho tutor
-            if (tutorUserId != null) {
-                notificationService.sendNotification(
-                        tutorUserId,
-                        "Lịch học đã thanh toán bị ảnh hưởng - Yêu cầu hoàn tiền",
-                        "Buổi học vào lúc " + formatDateTime(slot.getStartTime()) +
-                                " đã được thanh toán nhưng không còn phù hợp với lịch mới của bạn. " +
-                                "Hệ thống đã tạo yêu cầu hoàn tiền cho học viên.",
-                        NotificationType.REFUND_AVAILABLE,
-                        "/tutor/booking-plan"
-                );
-            }
-
-            log.info("[BOOKING-UPDATE] Paid slot {} -> refund {} (TUTOR_RESCHEDULE)",
-                    slot.getSlotID(), refund.getRefundRequestId());
-            return;
-        }
-
-        // =========================
-        // CASE: CÁC STATUS KHÁC (Available nhưng có userID, v.v.)
-        // =========================
-        notificationService.sendNotification(
-                learnerUserId,
-                "Lịch học đã thay đổi",
-                "Buổi học vào lúc " + formatDateTime(slot.getStartTime()) +
-                        " đã bị ảnh hưởng do tutor thay đổi lịch. " +
-                        "Vui lòng chọn lịch học mới.",
-                NotificationType.TUTOR_CANCEL_BOOKING,
-                "/learner/booking"
-        );
-
-        if (tutorUserId != null) {
-            notificationService.sendNotification(
-                    tutorUserId,
-                    "Lịch học có learner bị ảnh hưởng",
-                    "Buổi học vào lúc " + formatDateTime(slot.getStartTime()) +
-                            " có learner đã book nhưng không còn phù hợp với lịch mới của bạn. " +
-                            "Vui lòng trao đổi với học viên và sắp xếp lại lịch nếu cần.",
-                    NotificationType.TUTOR_CANCEL_BOOKING,
-                    "/tutor/booking-plan"
-            );
-        }
-
-        log.info("[BOOKING-UPDATE] Slot {} (status={}) with learner affected by plan update",
-                slot.getSlotID(), slot.getStatus());
-    }
-
-    private BigDecimal calculateRefundAmount(BookingPlanSlot slot, BookingPlan plan) {
-        BigDecimal pricePerHour = BigDecimal.valueOf(plan.getPricePerHours());
-        long minutes = Duration.between(slot.getStartTime(), slot.getEndTime()).toMinutes();
-
-        if (minutes <= 0) return BigDecimal.ZERO;
-
-        return pricePerHour
-                .multiply(BigDecimal.valueOf(minutes))
-                .divide(BigDecimal.valueOf(60), 2, java.math.RoundingMode.HALF_UP);
-    }
+        log.info("Updated booking plan {}: kept={}, moved={}, cancelled={}",
+                plan.getBookingPlanID(), diff.kept().size(), diff.moved().size(), diff.cancelled().size());
 
-//    private void sendNotification(
-//            Long userId,
-//            String title,
-//            String content,
-//            NotificationType type,
-//            String primaryUrl
-//    ) {
-//        Notification n = Notification.builder()
-//                .userId(userId)
-//                .title(title)
-//                .content(content)
-//                .type(type)
-//                .primaryActionUrl(primaryUrl)
-//                .isRead(false)
-//                .createdAt(LocalDateTime.now())
-//                .build();
-//
-//        notificationRepository.save(n);
-//    }
-
-    private String formatDateTime(LocalDateTime dt) {
-        return dt.toLocalTime() + " ngày " + dt.toLocalDate();
+        return diff.moved().size() + diff.cancelled().size();
     }
 
     private TutorBookingPlanResponse toBookingPlanResponse(BookingPlan bookingPlan, boolean includeMeetingUrl) {
@@ -38,19 +38,16 @@ public class TutorCourseService {
     LessonResourceRepository lessonResourceRepository;
     TutorCourseMapper tutorCourseMapper;
     CourseObjectiveRepository courseObjectiveRepository;
-    CourseObjectiveDraftRepository courseObjectiveDraftRepository;
 
     CourseDraftRepository courseDraftRepository;
-    CourseSectionDraftRepository courseSectionDraftRepository;
-    LessonDraftRepository lessonDraftRepository;
-    LessonResourceDraftRepository lessonResourceDraftRepository;
 
     QuizQuestionRepository quizQuestionRepository;
     QuizOptionRepository quizOptionRepository;
     QuizQuestionDraftRepository quizQuestionDraftRepository;
-    QuizOptionDraftRepository quizOptionDraftRepository;
 
     CourseReviewRepository courseReviewRepository;
+    TutorProfileService tutorProfileService;
+    CourseDraftCloneService courseDraftCloneService;
 
     // ====================== COMMON HELPERS ======================
 
@@ -90,6 +87,7 @@ public class TutorCourseService {
             course.setStatus(CourseStatus.Draft);
             course.setUpdatedAt(LocalDateTime.now());
             courseRepository.save(course);
+            tutorProfileService.evict(tutor.getTutorID());
         }
 
         // Trả về detail của bản live (đang ở trạng thái Draft)
@@ -173,6 +171,7 @@ public class TutorCourseService {
         course.setUpdatedAt(LocalDateTime.now());
 
         courseRepository.save(course);
+        tutorProfileService.evict(tutor.getTutorID());
 
         log.info("Tutor [{}] updated course [{}] (status after update: {})",
                 tutor.getTutorID(), courseID, course.getStatus());
@@ -233,6 +232,7 @@ public class TutorCourseService {
         course.setStatus(CourseStatus.Disabled);
         course.setUpdatedAt(LocalDateTime.now());
         courseRepository.save(course);
+        tutorProfileService.evict(tutor.getTutorID());
 
         log.info("Tutor [{}] disabled course [{}]", tutor.getTutorID(), courseID);
 
@@ -258,6 +258,7 @@ public class TutorCourseService {
         course.setStatus(CourseStatus.Approved);
         course.setUpdatedAt(LocalDateTime.now());
         courseRepository.save(course);
+        tutorProfileService.evict(tutor.getTutorID());
 
         log.info("Tutor [{}] enabled course [{}]", tutor.getTutorID(), courseID);
 
@@ -379,95 +380,8 @@ public class TutorCourseService {
 
         courseDraftRepository.save(draft);
 
-        // 7. Clone Section/Lesson/Resource + QUIZ sang bản draft
-        var sections = course.getSections();
-        if (sections != null) {
-            for (CourseSection s : sections) {
-
-                CourseSectionDraft sd = CourseSectionDraft.builder()
-                        .draft(draft)
-                        .originalSectionID(s.getSectionID())
-                        .title(s.getTitle())
-                        .description(s.getDescription())
-                        .orderIndex(s.getOrderIndex())
-                        .build();
-                courseSectionDraftRepository.save(sd);
-
-                if (s.getLessons() != null) {
-                    for (Lesson l : s.getLessons()) {
-
-                        LessonDraft ld = LessonDraft.builder()
-                                .sectionDraft(sd)
-                                .originalLessonID(l.getLessonID())
-                                .title(l.getTitle())
-                                .duration(l.getDuration())
-                                .lessonType(l.getLessonType())
-                                .videoURL(l.getVideoURL())
-                                .content(l.getContent())
-                                .orderIndex(l.getOrderIndex())
-                                .build();
-                        lessonDraftRepository.save(ld);
-
-                        // NEW: nếu lesson là Quiz thì clone luôn quiz_question + quiz_option
-                        if (l.getLessonType() == LessonType.Quiz) {
-                            List<QuizQuestion> questions =
-                                    quizQuestionRepository.findByLessonOrderByOrderIndexAsc(l);
-
-                            for (QuizQuestion q : questions) {
-                                QuizQuestionDraft qd = QuizQuestionDraft.builder()
-                                        .lessonDraft(ld)
-                                        .questionText(q.getQuestionText())
-                                        .orderIndex(q.getOrderIndex())
-                                        .explanation(q.getExplanation())
-                                        .score(q.getScore())
-                                        .build();
-                                quizQuestionDraftRepository.save(qd);
-
-                                if (q.getOptions() != null) {
-                                    for (QuizOption o : q.getOptions()) {
-                                        QuizOptionDraft od = QuizOptionDraft.builder()
-                                                .questionDraft(qd)
-                                                .optionText(o.getOptionText())
-                                                .isCorrect(o.getIsCorrect())
-                                                .orderIndex(o.getOrderIndex())
-                                                .build();
-                                        quizOptionDraftRepository.save(od);
-                                    }
-                                }
-                            }
-                        }
-
-                        if (l.getResources() != null) {
-                            for (LessonResource r : l.getResources()) {
-                                LessonResourceDraft rd = LessonResourceDraft.builder()
-                                        .lessonDraft(ld)
-                                        .originalResourceID(r.getResourceID())
-                                        .resourceType(r.getResourceType())
-                                        .resourceTitle(r.getResourceTitle())
-                                        .resourceURL(r.getResourceURL())
-                                        .build();
-
-                                lessonResourceDraftRepository.save(rd);
-                            }
-                        }
-                    }
-                }
-            }
-        }
-
-        // 8. Clone Objective sang bản draft
-        var objectives = course.getObjectives();
-        if (objectives != null) {
-            for (CourseObjective o : objectives) {
-                CourseObjectiveDraft od = CourseObjectiveDraft.builder()
-                        .draft(draft)
-                        .originalObjectiveID(o.getObjectiveID())
-                        .objectiveText(o.getObjectiveText())
-                        .orderIndex(o.getOrderIndex())
-                        .build();
-                courseObjectiveDraftRepository.save(od);
-            }
-        }
+        // 7. Clone Section/Lesson/Resource + QUIZ + Objective sang bản draft (đọc theo tầng, insert JDBC batch)
+        courseDraftCloneService.cloneCurriculum(course, draft);
 
         log.info("Tutor [{}] started new draft [{}] for course [{}] (clone with quiz)",
                 tutor.getTutorID(), draft.getDraftID(), courseID);
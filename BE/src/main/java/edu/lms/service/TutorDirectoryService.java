@@ -0,0 +1,311 @@
+package edu.lms.service;
+
+import edu.lms.dto.response.TutorApplicationListResponse;
+import edu.lms.dto.response.TutorDirectoryPageResponse;
+import edu.lms.entity.Tutor;
+import edu.lms.entity.TutorDirectoryEntry;
+import edu.lms.entity.TutorVerification;
+import edu.lms.entity.User;
+import edu.lms.enums.TutorStatus;
+import edu.lms.repository.BookingPlanRepository;
+import edu.lms.repository.FeedbackRepository;
+import edu.lms.repository.TutorDirectoryRepository;
+import edu.lms.repository.TutorRepository;
+import edu.lms.repository.TutorVerificationRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static lombok.AccessLevel.PRIVATE;
+
+/**
+ * Duy trì read model tutor_directory và trả lời list / search tutor từ đó.
+ *  - refreshTutor / refreshPricing / refreshRating / refreshUser: gọi trong transaction của thao tác gây thay đổi
+ *  - rebuildAll: tính lại toàn bộ bằng vài query GROUP BY (lúc khởi động + reconcile hằng đêm)
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+@FieldDefaults(level = PRIVATE, makeFinal = true)
+public class TutorDirectoryService {
+
+    private static final int MAX_PAGE_SIZE = 50;
+
+    TutorDirectoryRepository tutorDirectoryRepository;
+    TutorRepository tutorRepository;
+    TutorVerificationRepository tutorVerificationRepository;
+    BookingPlanRepository bookingPlanRepository;
+    FeedbackRepository feedbackRepository;
+
+    // =========================================================
+    // MAINTAIN
+    // =========================================================
+
+    /**
+     * Tính lại toàn bộ dòng của 1 tutor (status, profile, verification, giá, rating)
+     */
+    @Transactional
+    public void refreshTutor(Long tutorId) {
+        Tutor tutor = tutorRepository.findById(tutorId).orElse(null);
+        if (tutor == null) {
+            tutorDirectoryRepository.deleteById(tutorId);
+            return;
+        }
+
+        TutorVerification latest = tutorVerificationRepository
+                .findTopByTutorOrderBySubmittedAtDesc(tutor)
+                .orElse(null);
+
+        TutorDirectoryEntry entry = tutorDirectoryRepository.findById(tutorId)
+                .orElseGet(() -> TutorDirectoryEntry.builder().tutorId(tutorId).build());
+
+        applyTutor(entry, tutor, latest);
+        entry.setMinPricePerHour(bookingPlanRepository.findMinActivePricePerHour(tutorId));
+        applyRating(entry, feedbackRepository.aggregateRatingByTutorId(tutorId).stream().findFirst().orElse(null));
+        entry.setUpdatedAt(LocalDateTime.now());
+
+        tutorDirectoryRepository.save(entry);
+    }
+
+    /**
+     * Booking plan thêm / sửa / xoá → chỉ tính lại giá min
+     */
+    @Transactional
+    public void refreshPricing(Long tutorId) {
+        tutorDirectoryRepository.findById(tutorId).ifPresentOrElse(entry -> {
+            entry.setMinPricePerHour(bookingPlanRepository.findMinActivePricePerHour(tutorId));
+            entry.setUpdatedAt(LocalDateTime.now());
+            tutorDirectoryRepository.save(entry);
+        }, () -> refreshTutor(tutorId));
+    }
+
+    /**
+     * Feedback thêm / sửa / xoá → ghi rating đã tính sẵn (TutorRatingService), không query feedback
+     */
+    @Transactional
+    public void refreshRating(Long tutorId, BigDecimal rating, long feedbackCount) {
+        tutorDirectoryRepository.findById(tutorId).ifPresentOrElse(entry -> {
+            entry.setBookingRating(rating.setScale(2, RoundingMode.HALF_UP));
+            entry.setFeedbackCount(feedbackCount);
+            entry.setUpdatedAt(LocalDateTime.now());
+            tutorDirectoryRepository.save(entry);
+        }, () -> refreshTutor(tutorId));
+    }
+
+    /**
+     * User đổi tên / avatar / country → cập nhật nếu user là tutor
+     */
+    @Transactional
+    public void refreshUser(User user) {
+        tutorDirectoryRepository.findByUserId(user.getUserID()).ifPresent(entry -> {
+            entry.setUserEmail(user.getEmail());
+            entry.setUserName(user.getFullName());
+            entry.setAvatarURL(user.getAvatarURL());
+            entry.setCountry(user.getCountry());
+            entry.setUpdatedAt(LocalDateTime.now());
+            tutorDirectoryRepository.save(entry);
+        });
+    }
+
+    /**
+     * Tính lại toàn bộ directory với số query cố định (không phụ thuộc số tutor).
+     * Sửa lệch nếu có chỗ ghi quên gọi refresh.
+     */
+    @Transactional
+    public int rebuildAll() {
+        List<Tutor> tutors = tutorRepository.findAllWithUser();
+
+        Map<Long, TutorVerification> latestByTutor = tutorVerificationRepository.findLatestPerTutor().stream()
+                .collect(Collectors.toMap(
+                        v -> v.getTutor().getTutorID(),
+                        Function.identity(),
+                        // trùng submittedAt → lấy đơn có id lớn hơn
+                        (a, b) -> a.getTutorVerificationID() > b.getTutorVerificationID() ? a : b));
+
+        Map<Long, Double> minPriceByTutor = new HashMap<>();
+        for (Object[] row : bookingPlanRepository.findMinActivePricePerHourGroupByTutor()) {
+            minPriceByTutor.put((Long) row[0], (Double) row[1]);
+        }
+
+        Map<Long, Object[]> ratingByTutor = new HashMap<>();
+        for (Object[] row : feedbackRepository.aggregateRatingGroupByTutor()) {
+            ratingByTutor.put((Long) row[0], row);
+        }
+
+        Map<Long, TutorDirectoryEntry> existing = tutorDirectoryRepository.findAll().stream()
+                .collect(Collectors.toMap(TutorDirectoryEntry::getTutorId, Function.identity()));
+
+        LocalDateTime now = LocalDateTime.now();
+        List<TutorDirectoryEntry> entries = tutors.stream()
+                .map(tutor -> {
+                    TutorDirectoryEntry entry = existing.getOrDefault(tutor.getTutorID(),
+                            TutorDirectoryEntry.builder().tutorId(tutor.getTutorID()).build());
+                    applyTutor(entry, tutor, latestByTutor.get(tutor.getTutorID()));
+                    entry.setMinPricePerHour(minPriceByTutor.get(tutor.getTutorID()));
+                    applyRating(entry, ratingByTutor.get(tutor.getTutorID()));
+                    entry.setUpdatedAt(now);
+                    return entry;
+                })
+                .toList();
+
+        tutorDirectoryRepository.saveAll(entries);
+
+        if (tutors.isEmpty()) {
+            tutorDirectoryRepository.deleteAllInBatch();
+        } else {
+            tutorDirectoryRepository.deleteAllByTutorIdNotIn(
+                    tutors.stream().map(Tutor::getTutorID).toList());
+        }
+
+        log.info("[TUTOR DIRECTORY] Rebuilt {} entries", entries.size());
+        return entries.size();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void rebuildOnStartup() {
+        rebuildAll();
+    }
+
+    // Reconcile hằng đêm (3h30)
+    @Scheduled(cron = "0 30 3 * * *")
+    @Transactional
+    public void reconcile() {
+        rebuildAll();
+    }
+
+    // =========================================================
+    // READ
+    // =========================================================
+
+    /**
+     * Danh sách tutor theo status (null = tất cả), 1 query
+     */
+    @Transactional(readOnly = true)
+    public List<TutorApplicationListResponse> listByStatus(TutorStatus status) {
+        List<TutorDirectoryEntry> entries = status == null
+                ? tutorDirectoryRepository.findAllByOrderByTutorIdAsc()
+                : tutorDirectoryRepository.findAllByStatusOrderByTutorIdAsc(status);
+
+        return entries.stream()
+                .map(this::toResponse)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Tìm tutor đã approve theo ngôn ngữ / khoảng giá / rating / quốc gia, có phân trang.
+     * sort: rating (mặc định, cao → thấp) | price_asc | price_desc
+     */
+    @Transactional(readOnly = true)
+    public TutorDirectoryPageResponse search(String language, String country,
+                                             Double minPrice, Double maxPrice, BigDecimal minRating,
+                                             String sort, int page, int size) {
+        int safePage = Math.max(page, 0);
+        int safeSize = Math.min(Math.max(size, 1), MAX_PAGE_SIZE);
+
+        Page<TutorDirectoryEntry> result = tutorDirectoryRepository.search(
+                TutorStatus.APPROVED,
+                blankToNull(language),
+                blankToNull(country),
+                minPrice,
+                maxPrice,
+                minRating,
+                PageRequest.of(safePage, safeSize, toSort(sort)));
+
+        return TutorDirectoryPageResponse.builder()
+                .items(result.getContent().stream().map(this::toResponse).toList())
+                .page(result.getNumber())
+                .size(result.getSize())
+                .totalElements(result.getTotalElements())
+                .totalPages(result.getTotalPages())
+                .build();
+    }
+
+    // =========================================================
+    // HELPERS
+    // =========================================================
+
+    private void applyTutor(TutorDirectoryEntry entry, Tutor tutor, TutorVerification latest) {
+        User user = tutor.getUser();
+
+        entry.setUserId(user.getUserID());
+        entry.setUserEmail(user.getEmail());
+        entry.setUserName(user.getFullName());
+        entry.setAvatarURL(user.getAvatarURL());
+        entry.setCountry(user.getCountry());
+        entry.setStatus(tutor.getStatus());
+
+        // Ưu tiên dùng dữ liệu từ verification nếu có, nếu không thì dùng từ tutor
+        entry.setSpecialization(latest != null && latest.getSpecialization() != null
+                ? latest.getSpecialization()
+                : tutor.getSpecialization());
+        entry.setTeachingLanguage(latest != null && latest.getTeachingLanguage() != null
+                ? latest.getTeachingLanguage()
+                : tutor.getTeachingLanguage());
+
+        entry.setVerificationId(latest != null ? latest.getTutorVerificationID() : null);
+        entry.setSubmittedAt(latest != null ? latest.getSubmittedAt() : null);
+        entry.setReviewedAt(latest != null ? latest.getReviewedAt() : null);
+    }
+
+    // row = [tutorId, AVG(rating), COUNT], null nếu tutor chưa có feedback
+    private void applyRating(TutorDirectoryEntry entry, Object[] row) {
+        if (row == null || row[1] == null) {
+            entry.setBookingRating(BigDecimal.ZERO);
+            entry.setFeedbackCount(0L);
+            return;
+        }
+        entry.setBookingRating(BigDecimal.valueOf(((Number) row[1]).doubleValue()).setScale(2, RoundingMode.HALF_UP));
+        entry.setFeedbackCount(((Number) row[2]).longValue());
+    }
+
+    private TutorApplicationListResponse toResponse(TutorDirectoryEntry entry) {
+        return TutorApplicationListResponse.builder()
+                .verificationId(entry.getVerificationId())
+                .tutorId(entry.getTutorId())
+                .userId(entry.getUserId())
+                .userEmail(entry.getUserEmail())
+                .userName(entry.getUserName())
+                .avatarURL(entry.getAvatarURL())
+                .country(entry.getCountry())
+                .specialization(entry.getSpecialization())
+                .teachingLanguage(entry.getTeachingLanguage())
+                .pricePerHour(entry.getMinPricePerHour())
+                .rating(entry.getBookingRating())
+                .status(entry.getStatus() != null ? entry.getStatus().name() : null)
+                .submittedAt(entry.getSubmittedAt())
+                .reviewedAt(entry.getReviewedAt())
+                .build();
+    }
+
+    private static Sort toSort(String sort) {
+        if ("price_asc".equalsIgnoreCase(sort)) {
+            return Sort.by(Sort.Order.asc("minPricePerHour").nullsLast(), Sort.Order.asc("tutorId"));
+        }
+        if ("price_desc".equalsIgnoreCase(sort)) {
+            return Sort.by(Sort.Order.desc("minPricePerHour").nullsLast(), Sort.Order.asc("tutorId"));
+        }
+        return Sort.by(Sort.Order.desc("bookingRating"), Sort.Order.desc("feedbackCount"), Sort.Order.asc("tutorId"));
+    }
+
+    private static String blankToNull(String value) {
+        return value == null || value.isBlank() ? null : value.trim();
+    }
+}
@@ -26,6 +26,7 @@ import java.util.List;
 public class TutorPackageBookingService {
 
     BookingPlanSlotRepository bookingPlanSlotRepository;
+    TutorAvailabilityService tutorAvailabilityService;
     UserPackageRepository userPackageRepository;
 
     public OperationStatusResponse lockSlots(Long currentUserId, PackageSlotRequest request) {
@@ -57,6 +58,7 @@ public class TutorPackageBookingService {
         }
 
         bookingPlanSlotRepository.saveAll(slots);
+        tutorAvailabilityService.onSlotsOccupied(slots);
         return OperationStatusResponse.success("Slots locked successfully.");
     }
 
@@ -0,0 +1,274 @@
+package edu.lms.service;
+
+import edu.lms.dto.response.TutorCertificateResponse;
+import edu.lms.dto.response.TutorCourseResponse;
+import edu.lms.dto.response.TutorDetailResponse;
+import edu.lms.dto.response.TutorFeedbackItemResponse;
+import edu.lms.entity.Feedback;
+import edu.lms.entity.Tutor;
+import edu.lms.entity.User;
+import edu.lms.enums.CourseStatus;
+import edu.lms.enums.TutorStatus;
+import edu.lms.enums.TutorVerificationStatus;
+import edu.lms.exception.TutorNotFoundException;
+import edu.lms.mapper.TutorCourseMapper;
+import edu.lms.repository.*;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Trang chi tiết tutor (GET /tutors/{id}), số query cố định không phụ thuộc số course / feedback:
+ *  1. tutor + user            2. course Approved + category
+ *  3. rating theo course      4. số learner theo course
+ *  5. giá booking thấp nhất   6. chứng chỉ của verification Approved
+ *  7-8. 1 trang feedback + count
+ *
+ * Phần hồ sơ + trang feedback đầu tiên được cache theo tutor (TTL ngắn), evict(tutorId) khi hồ sơ,
+ * course, giá booking hoặc feedback thay đổi. Evict chạy ngay và chạy lại sau khi transaction kết thúc
+ * để request đọc giữa chừng không đưa dữ liệu cũ trở lại cache.
+ */
+@Slf4j
+@Service
+public class TutorProfileService {
+
+    public static final int DEFAULT_FEEDBACK_SIZE = 10;
+    private static final int MAX_FEEDBACK_SIZE = 50;
+
+    private final TutorRepository tutorRepository;
+    private final CourseRepository courseRepository;
+    private final CourseReviewRepository courseReviewRepository;
+    private final EnrollmentRepository enrollmentRepository;
+    private final BookingPlanRepository bookingPlanRepository;
+    private final FeedbackRepository feedbackRepository;
+    private final TutorCertificateRepository tutorCertificateRepository;
+    private final TutorCourseMapper tutorCourseMapper;
+    private final long cacheTtlNanos;
+
+    private final Map<Long, CachedProfile> cache = new ConcurrentHashMap<>();
+    // Tăng mỗi lần evict: bản load bắt đầu trước lần evict gần nhất sẽ không được ghi vào cache
+    private final AtomicLong invalidations = new AtomicLong();
+
+    @Autowired
+    public TutorProfileService(
+            TutorRepository tutorRepository,
+            CourseRepository courseRepository,
+            CourseReviewRepository courseReviewRepository,
+            EnrollmentRepository enrollmentRepository,
+            BookingPlanRepository bookingPlanRepository,
+            FeedbackRepository feedbackRepository,
+            TutorCertificateRepository tutorCertificateRepository,
+            TutorCourseMapper tutorCourseMapper,
+            @Value("${tutor-profile.cache-ttl-seconds:300}") long cacheTtlSeconds
+    ) {
+        this.tutorRepository = tutorRepository;
+        this.courseRepository = courseRepository;
+        this.courseReviewRepository = courseReviewRepository;
+        this.enrollmentRepository = enrollmentRepository;
+        this.bookingPlanRepository = bookingPlanRepository;
+        this.feedbackRepository = feedbackRepository;
+        this.tutorCertificateRepository = tutorCertificateRepository;
+        this.tutorCourseMapper = tutorCourseMapper;
+        this.cacheTtlNanos = Duration.ofSeconds(cacheTtlSeconds).toNanos();
+    }
+
+    public TutorDetailResponse getProfile(Long tutorId, int feedbackPage, int feedbackSize) {
+        int page = Math.max(feedbackPage, 0);
+        int size = Math.min(Math.max(feedbackSize, 1), MAX_FEEDBACK_SIZE);
+        boolean firstPage = page == 0 && size == DEFAULT_FEEDBACK_SIZE;
+
+        long now = System.nanoTime();
+        CachedProfile cached = cache.get(tutorId);
+        if (cached == null || cached.isExpired(now)) {
+            cached = load(tutorId, now);
+        }
+
+        Page<TutorFeedbackItemResponse> feedbacks = firstPage
+                ? cached.firstFeedbackPage()
+                : loadFeedbacks(tutorId, page, size);
+
+        return cached.profile().toBuilder()
+                .feedbacks(feedbacks.getContent())
+                .feedbackTotal(feedbacks.getTotalElements())
+                .feedbackPage(page)
+                .feedbackSize(size)
+                .build();
+    }
+
+    /**
+     * Gọi trong transaction của thao tác làm thay đổi dữ liệu trang chi tiết tutor
+     */
+    public void evict(Long tutorId) {
+        if (tutorId == null) {
+            return;
+        }
+        invalidate(() -> cache.remove(tutorId));
+    }
+
+    /**
+     * User đổi tên / avatar / quốc gia → cache đang lưu theo tutorId nên tìm theo userId
+     */
+    public void evictByUserId(Long userId) {
+        if (userId == null) {
+            return;
+        }
+        invalidate(() -> cache.values().removeIf(entry -> userId.equals(entry.profile().getUserId())));
+    }
+
+    private void invalidate(Runnable removal) {
+        invalidations.incrementAndGet();
+        removal.run();
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    invalidations.incrementAndGet();
+                    removal.run();
+                }
+            });
+        }
+    }
+
+    @Scheduled(fixedDelay = 60000)
+    public void evictExpired() {
+        long now = System.nanoTime();
+        cache.values().removeIf(entry -> entry.isExpired(now));
+    }
+
+    int cacheSize() {
+        return cache.size();
+    }
+
+    // ====================== LOAD =========================
+
+    private CachedProfile load(Long tutorId, long now) {
+        long generation = invalidations.get();
+
+        Tutor tutor = tutorRepository.findByIdWithUser(tutorId)
+                .orElseThrow(() -> new TutorNotFoundException("Tutor not found with ID: " + tutorId));
+
+        // Only return approved tutors
+        if (tutor.getStatus() != TutorStatus.APPROVED) {
+            log.warn("Tutor ID: {} is not approved, status: {}", tutorId, tutor.getStatus());
+            throw new TutorNotFoundException("Tutor not found or not approved");
+        }
+
+        User user = tutor.getUser();
+
+        TutorDetailResponse profile = TutorDetailResponse.builder()
+                .tutorId(tutor.getTutorID())
+                .userId(user.getUserID())
+                .userName(user.getFullName())
+                .userEmail(user.getEmail())
+                .avatarURL(user.getAvatarURL())
+                .country(user.getCountry())
+                .phone(user.getPhone())
+                .bio(tutor.getBio())
+                .experience(tutor.getExperience())
+                .specialization(tutor.getSpecialization())
+                .teachingLanguage(tutor.getTeachingLanguage())
+                .rating(tutor.getRating())
+                .status(tutor.getStatus().name())
+                .courses(loadCourses(tutorId))
+                .pricePerHour(bookingPlanRepository.findMinActivePricePerHour(tutorId))
+                .certificates(loadCertificates(tutorId))
+                .build();
+
+        CachedProfile loaded = new CachedProfile(
+                profile,
+                loadFeedbacks(tutorId, 0, DEFAULT_FEEDBACK_SIZE),
+                now + cacheTtlNanos
+        );
+
+        // Có evict trong lúc load → trả kết quả nhưng không cache
+        if (invalidations.get() == generation) {
+            cache.put(tutorId, loaded);
+        }
+        return loaded;
+    }
+
+    private List<TutorCourseResponse> loadCourses(Long tutorId) {
+        List<TutorCourseResponse> courses = courseRepository
+                .findByTutorIdAndStatusWithCategory(tutorId, CourseStatus.Approved)
+                .stream()
+                .map(tutorCourseMapper::toTutorCourseResponse)
+                .toList();
+        if (courses.isEmpty()) {
+            return courses;
+        }
+
+        // [courseId, AVG, COUNT]
+        Map<Long, Object[]> ratingByCourse = new HashMap<>();
+        for (Object[] row : courseReviewRepository.aggregateRatingByTutorCourses(tutorId, CourseStatus.Approved)) {
+            ratingByCourse.put((Long) row[0], row);
+        }
+        // [courseId, COUNT]
+        Map<Long, Long> learnersByCourse = new HashMap<>();
+        for (Object[] row : enrollmentRepository.countByTutorCoursesGroupByCourse(tutorId, CourseStatus.Approved)) {
+            learnersByCourse.put((Long) row[0], ((Number) row[1]).longValue());
+        }
+
+        for (TutorCourseResponse course : courses) {
+            Object[] rating = ratingByCourse.get(course.getId());
+            course.setAvgRating(rating != null && rating[1] != null
+                    ? Math.round(((Number) rating[1]).doubleValue() * 10.0) / 10.0
+                    : 0.0);
+            course.setTotalRatings(rating != null ? ((Number) rating[2]).intValue() : 0);
+            course.setLearnerCount(learnersByCourse.getOrDefault(course.getId(), 0L));
+        }
+        return courses;
+    }
+
+    private List<TutorCertificateResponse> loadCertificates(Long tutorId) {
+        return tutorCertificateRepository
+                .findByTutorIdAndVerificationStatus(tutorId, TutorVerificationStatus.APPROVED)
+                .stream()
+                .map(certificate -> TutorCertificateResponse.builder()
+                        .certificateId(certificate.getCertificateId())
+                        .certificateName(certificate.getCertificateName())
+                        .documentUrl(certificate.getDocumentUrl())
+                        .build())
+                .toList();
+    }
+
+    private Page<TutorFeedbackItemResponse> loadFeedbacks(Long tutorId, int page, int size) {
+        return feedbackRepository.findPageByTutorId(tutorId, PageRequest.of(page, size))
+                .map(TutorProfileService::toFeedbackItem);
+    }
+
+    private static TutorFeedbackItemResponse toFeedbackItem(Feedback feedback) {
+        User learner = feedback.getUser();
+        return TutorFeedbackItemResponse.builder()
+                .feedbackID(feedback.getFeedbackID())
+                .rating(feedback.getRating())
+                .comment(feedback.getComment())
+                .createdAt(feedback.getPayment() != null ? feedback.getPayment().getPaidAt() : null)
+                .learnerName(learner != null ? learner.getFullName() : null)
+                .learnerAvatarURL(learner != null ? learner.getAvatarURL() : null)
+                .build();
+    }
+
+    private record CachedProfile(
+            TutorDetailResponse profile,
+            Page<TutorFeedbackItemResponse> firstFeedbackPage,
+            long expiresAtNanos
+    ) {
+        boolean isExpired(long now) {
+            return now - expiresAtNanos >= 0;
+        }
+    }
+}
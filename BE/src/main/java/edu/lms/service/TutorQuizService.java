@@ -36,6 +36,7 @@ public class TutorQuizService {
     LessonDraftRepository lessonDraftRepository;
     QuizQuestionRepository quizQuestionRepository;
     QuizQuestionDraftRepository quizQuestionDraftRepository;
+    QuizDefinitionCache quizDefinitionCache;
 
     // ====================== COMMON HELPERS ======================
 
@@ -180,6 +181,7 @@ public class TutorQuizService {
         }
 
         quizQuestionRepository.save(q);
+        quizDefinitionCache.evict(lessonID);
 
         log.info("Tutor [{}] created quiz question [{}] for lesson [{}]",
                 tutor.getTutorID(), q.getQuestionID(), lessonID);
@@ -219,6 +221,7 @@ public class TutorQuizService {
         }
 
         quizQuestionRepository.save(q);
+        quizDefinitionCache.evict(lesson.getLessonID());
 
         log.info("Tutor [{}] updated quiz question [{}]", tutor.getTutorID(), questionID);
 
@@ -235,6 +238,7 @@ public class TutorQuizService {
         resolveQuizLessonOwnedByTutor(lesson.getLessonID(), tutor.getTutorID());
 
         quizQuestionRepository.delete(q);
+        quizDefinitionCache.evict(lesson.getLessonID());
 
         log.info("Tutor [{}] deleted quiz question [{}]", tutor.getTutorID(), questionID);
     }
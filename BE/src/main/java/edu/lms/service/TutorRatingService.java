@@ -1,21 +1,38 @@
 package edu.lms.service;
 
-import edu.lms.entity.Feedback;
 import edu.lms.entity.Tutor;
+import edu.lms.entity.TutorRatingStats;
 import edu.lms.exception.AppException;
 import edu.lms.exception.ErrorCode;
 import edu.lms.repository.FeedbackRepository;
+import edu.lms.repository.TutorRatingStatsRepository;
 import edu.lms.repository.TutorRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
-import java.util.List;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 import static lombok.AccessLevel.PRIVATE;
 
+/**
+ * Rating của tutor chỉ tính từ Booking Feedback (KHÔNG còn tính CourseReview nữa).
+ *  - onFeedbackCreated / Updated / Deleted: cộng trừ delta vào tutor_rating_stats → O(1) mỗi lần
+ *  - recalculateTutorRating: tính lại 1 tutor bằng 1 query aggregate (khi chưa có stats)
+ *  - reconcileAll: so stats với aggregate của toàn bộ feedback, sửa lệch (hằng đêm + lúc khởi động)
+ * Dòng stats luôn được tạo bằng INSERT IGNORE rồi lock FOR UPDATE → 2 feedback đầu tiên đồng thời
+ * không lỗi trùng khoá chính, delta / reconcile không ghi đè nhau.
+ */
+@Slf4j
 @Service
 @RequiredArgsConstructor
 @FieldDefaults(level = PRIVATE, makeFinal = true)
@@ -23,27 +40,200 @@ public class TutorRatingService {
 
     TutorRepository tutorRepository;
     FeedbackRepository feedbackRepository;
+    TutorRatingStatsRepository tutorRatingStatsRepository;
+    TutorDirectoryService tutorDirectoryService;
+    TutorProfileService tutorProfileService;
+
+    @Transactional
+    public void onFeedbackCreated(Long tutorId, BigDecimal rating) {
+        applyDelta(tutorId, null, rating);
+    }
+
+    @Transactional
+    public void onFeedbackUpdated(Long tutorId, BigDecimal oldRating, BigDecimal newRating) {
+        if (oldRating != null && newRating != null && oldRating.compareTo(newRating) == 0) {
+            return; // chỉ sửa comment
+        }
+        applyDelta(tutorId, oldRating, newRating);
+    }
+
+    @Transactional
+    public void onFeedbackDeleted(Long tutorId, BigDecimal rating) {
+        applyDelta(tutorId, rating, null);
+    }
+
+    private void applyDelta(Long tutorId, BigDecimal removed, BigDecimal added) {
+        // existsById không lock → không giữ gap lock khiến 2 lần INSERT đầu tiên deadlock nhau
+        boolean created = !tutorRatingStatsRepository.existsById(tutorId)
+                && tutorRatingStatsRepository.insertIfAbsent(tutorId) == 1;
+        TutorRatingStats stats = lockStats(tutorId);
+
+        if (created) {
+            // Dòng vừa tạo → tính từ DB (feedback vừa ghi đã được flush nên đã nằm trong kết quả)
+            fill(stats, aggregate(tutorId));
+        } else {
+            if (removed != null) {
+                stats.apply(removed, -1);
+            }
+            if (added != null) {
+                stats.apply(added, 1);
+            }
+        }
+        stats.setUpdatedAt(LocalDateTime.now());
+        tutorRatingStatsRepository.save(stats);
+
+        publish(tutorId, stats);
+    }
 
     /**
-     * Tính lại rating của tutor dựa trên:
-     *  - Tất cả Booking Feedback (Feedback) có payment.tutorId = tutorId
-     *  (KHÔNG còn tính CourseReview nữa)
+     * Tính lại stats + rating của 1 tutor từ toàn bộ booking feedback (1 query aggregate)
      */
     @Transactional
     public void recalculateTutorRating(Long tutorId) {
+        tutorRatingStatsRepository.insertIfAbsent(tutorId);
+        // aggregate sau khi giữ lock → delta đang chạy đã commit xong và nằm trong kết quả
+        TutorRatingStats stats = lockStats(tutorId);
+        fill(stats, aggregate(tutorId));
+        stats.setUpdatedAt(LocalDateTime.now());
+        tutorRatingStatsRepository.save(stats);
+
+        publish(tutorId, stats);
+    }
+
+    /**
+     * So stats của tất cả tutor với aggregate thật, sửa các dòng bị lệch.
+     * @return số tutor được sửa
+     */
+    @Transactional
+    public int reconcileAll() {
+        // Lock stats trước rồi mới aggregate: delta nào chưa commit sẽ cộng lên kết quả reconcile sau khi lock nhả
+        Map<Long, TutorRatingStats> statsByTutor = tutorRatingStatsRepository.findAllForUpdate().stream()
+                .collect(Collectors.toMap(TutorRatingStats::getTutorId, Function.identity()));
+
+        Map<Long, Object[]> actualByTutor = new HashMap<>();
+        for (Object[] row : feedbackRepository.aggregateRatingStatsGroupByTutor()) {
+            actualByTutor.put((Long) row[0], row);
+        }
+
+        Set<Long> tutorIds = new HashSet<>(actualByTutor.keySet());
+        tutorIds.addAll(statsByTutor.keySet());
+
+        LocalDateTime now = LocalDateTime.now();
+        List<TutorRatingStats> drifted = new ArrayList<>();
+        for (Long tutorId : tutorIds) {
+            TutorRatingStats expected = TutorRatingStats.builder().tutorId(tutorId).build();
+            fill(expected, actualByTutor.get(tutorId));
+
+            TutorRatingStats current = statsByTutor.get(tutorId);
+            if (current != null && sameCounters(current, expected)) {
+                continue;
+            }
+            if (current == null && tutorRatingStatsRepository.insertIfAbsent(tutorId) == 0) {
+                continue; // feedback đầu tiên vừa tạo dòng này từ aggregate của nó
+            }
+
+            TutorRatingStats target = current != null ? current : expected;
+            if (current != null) {
+                fill(current, actualByTutor.get(tutorId));
+            }
+            target.setUpdatedAt(now);
+            drifted.add(target);
+        }
+
+        if (drifted.isEmpty()) {
+            log.info("[TUTOR RATING] Reconcile: no drift across {} tutors", tutorIds.size());
+            return 0;
+        }
+
+        // Feedback của tutor đã bị xoá khỏi bảng tutor → bỏ qua
+        Map<Long, Tutor> tutors = tutorRepository.findAllById(
+                        drifted.stream().map(TutorRatingStats::getTutorId).toList())
+                .stream()
+                .collect(Collectors.toMap(Tutor::getTutorID, Function.identity()));
+        drifted.removeIf(stats -> !tutors.containsKey(stats.getTutorId()));
+
+        tutorRatingStatsRepository.saveAll(drifted);
+        for (TutorRatingStats stats : drifted) {
+            tutors.get(stats.getTutorId()).setRating(stats.average());
+            tutorDirectoryService.refreshRating(stats.getTutorId(), stats.average(), stats.getRatingCount());
+            tutorProfileService.evict(stats.getTutorId());
+        }
+        tutorRepository.saveAll(tutors.values());
+
+        log.warn("[TUTOR RATING] Reconcile fixed {} / {} tutors", drifted.size(), tutorIds.size());
+        return drifted.size();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void reconcileOnStartup() {
+        reconcileAll();
+    }
+
+    // Reconcile hằng đêm (4h)
+    @Scheduled(cron = "0 0 4 * * *")
+    @Transactional
+    public void reconcileNightly() {
+        reconcileAll();
+    }
+
+    // ====================== HELPER =========================
+
+    private void publish(Long tutorId, TutorRatingStats stats) {
         Tutor tutor = tutorRepository.findById(tutorId)
                 .orElseThrow(() -> new AppException(ErrorCode.TUTOR_NOT_FOUND));
 
-        // Lấy tất cả feedback booking của tutor
-        List<Feedback> bookingFeedbacks = feedbackRepository.findByPayment_TutorId(tutorId);
+        BigDecimal average = stats.average();
+        tutor.setRating(average);
+        tutorRepository.save(tutor);
+
+        tutorDirectoryService.refreshRating(tutorId, average, stats.getRatingCount());
+    }
 
-        double avgRating = bookingFeedbacks.stream()
-                .map(f -> f.getRating().doubleValue()) // BigDecimal -> double
-                .mapToDouble(Double::doubleValue)
-                .average()
-                .orElse(0.0);
+    private TutorRatingStats lockStats(Long tutorId) {
+        return tutorRatingStatsRepository.findByIdForUpdate(tutorId)
+                .orElseThrow(() -> new IllegalStateException("tutor_rating_stats missing for tutor " + tutorId));
+    }
 
-        tutor.setRating(BigDecimal.valueOf(avgRating));
-        tutorRepository.save(tutor);
+    private Object[] aggregate(Long tutorId) {
+        return feedbackRepository.aggregateRatingStatsByTutorId(tutorId)
+                .stream()
+                .findFirst()
+                .orElse(null);
+    }
+
+    // row = [tutorId, SUM, COUNT, 1★..5★], null = chưa có feedback
+    private static void fill(TutorRatingStats stats, Object[] row) {
+        if (row == null) {
+            stats.setRatingSum(BigDecimal.ZERO);
+            stats.setRatingCount(0L);
+            stats.setOneStar(0L);
+            stats.setTwoStar(0L);
+            stats.setThreeStar(0L);
+            stats.setFourStar(0L);
+            stats.setFiveStar(0L);
+            return;
+        }
+        stats.setRatingSum(row[1] != null ? new BigDecimal(row[1].toString()) : BigDecimal.ZERO);
+        stats.setRatingCount(toLong(row[2]));
+        stats.setOneStar(toLong(row[3]));
+        stats.setTwoStar(toLong(row[4]));
+        stats.setThreeStar(toLong(row[5]));
+        stats.setFourStar(toLong(row[6]));
+        stats.setFiveStar(toLong(row[7]));
+    }
+
+    private static long toLong(Object value) {
+        return value == null ? 0L : ((Number) value).longValue();
+    }
+
+    private static boolean sameCounters(TutorRatingStats a, TutorRatingStats b) {
+        return a.getRatingSum().compareTo(b.getRatingSum()) == 0
+                && a.getRatingCount().equals(b.getRatingCount())
+                && a.getOneStar().equals(b.getOneStar())
+                && a.getTwoStar().equals(b.getTwoStar())
+                && a.getThreeStar().equals(b.getThreeStar())
+                && a.getFourStar().equals(b.getFourStar())
+                && a.getFiveStar().equals(b.getFiveStar());
     }
 }
@@ -15,6 +15,7 @@ public interface TutorService {
     
     // Public methods
     TutorDetailResponse getTutorDetail(Long tutorId);
+    TutorDetailResponse getTutorDetail(Long tutorId, int feedbackPage, int feedbackSize);
     
     // Admin methods
     List<TutorApplicationListResponse> getPendingApplications();
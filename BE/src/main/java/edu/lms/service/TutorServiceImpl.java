@@ -7,15 +7,12 @@ import edu.lms.dto.response.*;
 import edu.lms.entity.*;
 import edu.lms.enums.TutorStatus;
 import edu.lms.enums.TutorVerificationStatus;
-import edu.lms.enums.CourseStatus;
 import edu.lms.exception.TutorApplicationException;
 import edu.lms.exception.TutorNotFoundException;
-import edu.lms.mapper.TutorCourseMapper;
 import edu.lms.repository.TutorRepository;
 import edu.lms.repository.TutorVerificationRepository;
 import edu.lms.repository.UserRepository;
 import edu.lms.repository.RoleRepository;
-import edu.lms.repository.CourseRepository;
 import edu.lms.repository.BookingPlanRepository;
 import edu.lms.repository.FeedbackRepository;
 import jakarta.persistence.EntityNotFoundException;
@@ -27,7 +24,6 @@ import org.springframework.transaction.annotation.Transactional;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
-import java.util.Comparator;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -41,11 +37,11 @@ public class TutorServiceImpl implements TutorService {
     private final TutorVerificationRepository tutorVerificationRepository;
     private final UserRepository userRepository;
     private final RoleRepository roleRepository;
-    private final CourseRepository courseRepository;
     private final BookingPlanRepository bookingPlanRepository;
     private final FeedbackRepository feedbackRepository;
-    private final TutorCourseMapper tutorCourseMapper;
     private final TutorBookingPlanService tutorBookingPlanService;
+    private final TutorDirectoryService tutorDirectoryService;
+    private final TutorProfileService tutorProfileService;
 
     @Override
     public void applyToBecomeTutor(Long userID, TutorApplyRequest request) {
@@ -187,6 +183,8 @@ public class TutorServiceImpl implements TutorService {
         
         log.info("Saving tutor verification with {} certificates", certificates.size());
         tutorVerificationRepository.save(verification);
+        tutorDirectoryService.refreshTutor(tutor.getTutorID());
+        tutorProfileService.evict(tutor.getTutorID());
         log.info("Tutor application submitted successfully for user ID: {}", userID);
     }
 
@@ -308,6 +306,9 @@ public class TutorServiceImpl implements TutorService {
                 .orElseThrow(() -> new EntityNotFoundException("Tutor role not found"));
         user.setRole(tutorRole);
         userRepository.save(user);
+
+        tutorDirectoryService.refreshTutor(tutor.getTutorID());
+        tutorProfileService.evict(tutor.getTutorID());
         
         log.info("Tutor application approved successfully for verification ID: {}, tutor ID: {}, user role changed to Tutor", verificationId, tutor.getTutorID());
     }
@@ -333,161 +334,42 @@ public class TutorServiceImpl implements TutorService {
         verification.setReviewedAt(LocalDateTime.now());
         verification.setReasonForReject(reason);
         tutorVerificationRepository.save(verification);
+        tutorDirectoryService.refreshTutor(verification.getTutor().getTutorID());
+        tutorProfileService.evict(verification.getTutor().getTutorID());
         
         log.info("Tutor application rejected successfully for verification ID: {}, tutor ID: {}", verificationId, verification.getTutor().getTutorID());
     }
 
     @Override
     public TutorDetailResponse getTutorDetail(Long tutorId) {
+        return getTutorDetail(tutorId, 0, TutorProfileService.DEFAULT_FEEDBACK_SIZE);
+    }
+
+    @Override
+    public TutorDetailResponse getTutorDetail(Long tutorId, int feedbackPage, int feedbackSize) {
         log.info("Getting tutor detail for tutor ID: {}", tutorId);
-        
-        Tutor tutor = tutorRepository.findById(tutorId)
-                .orElseThrow(() -> new TutorNotFoundException("Tutor not found with ID: " + tutorId));
-        
-        // Only return approved tutors
-        if (tutor.getStatus() != TutorStatus.APPROVED) {
-            log.warn("Tutor ID: {} is not approved, status: {}", tutorId, tutor.getStatus());
-            throw new TutorNotFoundException("Tutor not found or not approved");
-        }
-        
-        User user = tutor.getUser();
-        
-        // Get approved courses for this tutor
-        List<Course> approvedCourses = courseRepository.findByTutorAndStatus(tutor, CourseStatus.Approved);
-        List<TutorCourseResponse> courseResponses = approvedCourses.stream()
-                .map(tutorCourseMapper::toTutorCourseResponse)
-                .collect(Collectors.toList());
-        
-        // Tính giá booking tối thiểu từ các booking plans active
-        Double pricePerHour = calculateMinPricePerHour(tutor.getTutorID());
-        
-        // Lấy tất cả feedbacks từ booking của tutor với JOIN FETCH để tránh N+1
-        List<Feedback> feedbacks = feedbackRepository.findByPayment_TutorIdWithDetails(tutor.getTutorID());
-        log.info("Found {} feedbacks for tutor ID: {}", feedbacks.size(), tutor.getTutorID());
-        
-        List<TutorFeedbackItemResponse> feedbackResponses = feedbacks.stream()
-                .map(feedback -> {
-                    log.debug("Processing feedback ID: {}, rating: {}, comment: {}", 
-                            feedback.getFeedbackID(), feedback.getRating(), feedback.getComment());
-                    return TutorFeedbackItemResponse.builder()
-                            .feedbackID(feedback.getFeedbackID())
-                            .rating(feedback.getRating())
-                            .comment(feedback.getComment())
-                            .createdAt(feedback.getPayment() != null ? feedback.getPayment().getPaidAt() : null)
-                            .learnerName(feedback.getUser() != null ? feedback.getUser().getFullName() : null)
-                            .learnerAvatarURL(feedback.getUser() != null ? feedback.getUser().getAvatarURL() : null)
-                            .build();
-                })
-                // Sắp xếp theo thời gian: mới nhất trước (createdAt DESC)
-                .sorted(Comparator.comparing(
-                        TutorFeedbackItemResponse::getCreatedAt,
-                        Comparator.nullsLast(Comparator.reverseOrder())
-                ))
-                .collect(Collectors.toList());
-        
-        log.info("Mapped {} feedback responses for tutor ID: {}", feedbackResponses.size(), tutor.getTutorID());
-        
-        // Lấy tất cả chứng chỉ từ các verification đã được approved (với JOIN FETCH để tránh N+1)
-        List<TutorVerification> approvedVerifications = tutorVerificationRepository
-                .findAllByTutorWithCertificates(tutor)
-                .stream()
-                .filter(verification -> verification.getStatus() == TutorVerificationStatus.APPROVED)
-                .collect(Collectors.toList());
-        
-        List<TutorCertificateResponse> certificateResponses = approvedVerifications.stream()
-                .flatMap(verification -> {
-                    if (verification.getCertificates() != null && !verification.getCertificates().isEmpty()) {
-                        return verification.getCertificates().stream();
-                    }
-                    return java.util.stream.Stream.empty();
-                })
-                .map(certificate -> TutorCertificateResponse.builder()
-                        .certificateId(certificate.getCertificateId())
-                        .certificateName(certificate.getCertificateName())
-                        .documentUrl(certificate.getDocumentUrl())
-                        .build())
-                .collect(Collectors.toList());
-        
-        log.info("Found {} certificates for tutor ID: {}", certificateResponses.size(), tutor.getTutorID());
-        
-        return TutorDetailResponse.builder()
-                .tutorId(tutor.getTutorID())
-                .userId(user.getUserID())
-                .userName(user.getFullName())
-                .userEmail(user.getEmail())
-                .avatarURL(user.getAvatarURL())
-                .country(user.getCountry())
-                .phone(user.getPhone())
-                .bio(tutor.getBio())
-                .experience(tutor.getExperience())
-                .specialization(tutor.getSpecialization())
-                .teachingLanguage(tutor.getTeachingLanguage())
-                .rating(tutor.getRating())
-                .status(tutor.getStatus().name())
-                .courses(courseResponses)
-                .pricePerHour(pricePerHour)
-                .feedbacks(feedbackResponses)
-                .certificates(certificateResponses)
-                .build();
+        // Số query cố định + cache theo tutor (xem TutorProfileService)
+        return tutorProfileService.getProfile(tutorId, feedbackPage, feedbackSize);
     }
 
     @Override
     public List<TutorApplicationListResponse> getAllTutors(String status) {
         log.info("Getting all tutors with status filter: {}", status);
         
-        List<Tutor> tutors;
+        TutorStatus tutorStatus = null;
         if (status != null && !status.isEmpty()) {
             try {
-                TutorStatus tutorStatus = TutorStatus.valueOf(status.toUpperCase());
-                tutors = tutorRepository.findAllByStatus(tutorStatus);
-                log.info("Found {} tutors with status: {}", tutors.size(), status);
+                tutorStatus = TutorStatus.valueOf(status.toUpperCase());
             } catch (IllegalArgumentException e) {
                 log.error("Invalid status provided: {}", status);
                 throw new IllegalArgumentException("Invalid status: " + status);
             }
-        } else {
-            tutors = tutorRepository.findAll();
-            log.info("Found {} total tutors", tutors.size());
         }
         
-        return tutors.stream()
-                .map(tutor -> {
-                    TutorVerification latestVerification = 
-                        tutorVerificationRepository.findTopByTutorOrderBySubmittedAtDesc(tutor)
-                            .orElse(null);
-                    
-                    // Ưu tiên dùng dữ liệu từ verification nếu có, nếu không thì dùng từ tutor
-                    String specialization = latestVerification != null && latestVerification.getSpecialization() != null
-                            ? latestVerification.getSpecialization()
-                            : tutor.getSpecialization();
-                    String teachingLanguage = latestVerification != null && latestVerification.getTeachingLanguage() != null
-                            ? latestVerification.getTeachingLanguage()
-                            : tutor.getTeachingLanguage();
-                    
-                    // Tính giá booking tối thiểu từ các booking plans active
-                    Double pricePerHour = calculateMinPricePerHour(tutor.getTutorID());
-                    
-                    // Tính rating trung bình chỉ từ booking feedbacks (không bao gồm course reviews)
-                    BigDecimal bookingRating = calculateBookingRating(tutor.getTutorID());
-                    
-                    return TutorApplicationListResponse.builder()
-                            .verificationId(latestVerification != null ? latestVerification.getTutorVerificationID() : null)
-                            .tutorId(tutor.getTutorID())
-                            .userId(tutor.getUser().getUserID())
-                            .userEmail(tutor.getUser().getEmail())
-                            .userName(tutor.getUser().getFullName())
-                            .avatarURL(tutor.getUser().getAvatarURL())
-                            .country(tutor.getUser().getCountry())
-                            .specialization(specialization)
-                            .teachingLanguage(teachingLanguage)
-                            .pricePerHour(pricePerHour)
-                            .rating(bookingRating)
-                            .status(tutor.getStatus().name())
-                            .submittedAt(latestVerification != null ? latestVerification.getSubmittedAt() : null)
-                            .reviewedAt(latestVerification != null ? latestVerification.getReviewedAt() : null)
-                            .build();
-                })
-                .collect(Collectors.toList());
+        // Đọc từ read model tutor_directory (giá min, rating, verification mới nhất đã tính sẵn) → 1 query
+        List<TutorApplicationListResponse> tutors = tutorDirectoryService.listByStatus(tutorStatus);
+        log.info("Found {} tutors with status: {}", tutors.size(), tutorStatus != null ? tutorStatus : "ALL");
+        return tutors;
     }
 
     @Override
@@ -532,6 +414,8 @@ public class TutorServiceImpl implements TutorService {
         
         tutor.setStatus(TutorStatus.SUSPENDED);
         tutorRepository.save(tutor);
+        tutorDirectoryService.refreshTutor(tutorId);
+        tutorProfileService.evict(tutorId);
         
         log.info("Tutor suspended successfully: {}", tutorId);
     }
@@ -545,6 +429,8 @@ public class TutorServiceImpl implements TutorService {
         
         tutor.setStatus(TutorStatus.APPROVED);
         tutorRepository.save(tutor);
+        tutorDirectoryService.refreshTutor(tutorId);
+        tutorProfileService.evict(tutorId);
         
         log.info("Tutor unsuspended successfully: {}", tutorId);
     }
@@ -583,6 +469,8 @@ public class TutorServiceImpl implements TutorService {
         }
         
         tutorRepository.save(tutor);
+        tutorDirectoryService.refreshTutor(tutorId);
+        tutorProfileService.evict(tutorId);
         log.info("Tutor information updated successfully for tutor ID: {}", tutorId);
     }
 
@@ -23,6 +23,7 @@ import java.util.List;
 public class TutorSlotBookingService {
 
     BookingPlanSlotRepository bookingPlanSlotRepository;
+    TutorAvailabilityService tutorAvailabilityService;
     static final int LOCK_DURATION_MINUTES = 10;
 
     public OperationStatusResponse lockSlots(Long currentUserId, SlotBookingRequest request) {
@@ -54,6 +55,7 @@ public class TutorSlotBookingService {
         }
 
         bookingPlanSlotRepository.saveAll(slots);
+        tutorAvailabilityService.onSlotsOccupied(slots);
 
         return OperationStatusResponse.success("Slots locked successfully.");
     }
@@ -0,0 +1,257 @@
+package edu.lms.service;
+
+import edu.lms.dto.response.FileUrlResponse;
+import edu.lms.dto.response.UploadJobResponse;
+import edu.lms.dto.response.UploadQueueStatsResponse;
+import edu.lms.enums.UploadJobStatus;
+import edu.lms.exception.AppException;
+import edu.lms.exception.ErrorCode;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Upload nền: request chỉ chuyển file multipart sang file tạm rồi trả jobId ngay,
+ * worker của uploadExecutor đẩy file lên Cloudinary.
+ *  - số upload chạy cùng lúc / chờ bị chặn bởi uploadExecutor, queue đầy → UPLOAD_QUEUE_FULL (429)
+ *  - tiến độ xem bằng polling (getJob) hoặc WebSocket /user/queue/uploads (đẩy khi đổi trạng thái
+ *    và tối đa mỗi PROGRESS_PUSH_INTERVAL khi đang upload)
+ *  - job giữ trong bộ nhớ, dọn sau JOB_RETENTION
+ */
+@Slf4j
+@Service
+public class UploadJobService {
+
+    static final String PROGRESS_DESTINATION = "/queue/uploads";
+    private static final Duration JOB_RETENTION = Duration.ofHours(1);
+    private static final long PROGRESS_PUSH_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(500);
+
+    private final CloudinaryService cloudinaryService;
+    private final SimpMessagingTemplate messagingTemplate;
+    private final ThreadPoolTaskExecutor uploadExecutor;
+
+    private final Map<String, UploadJob> jobs = new ConcurrentHashMap<>();
+
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder bytesUploaded = new LongAdder();
+    private final LongAdder uploadNanos = new LongAdder();
+
+    // mốc của lần log số liệu trước (tính throughput theo khoảng)
+    private long lastLogNanos = System.nanoTime();
+    private long lastLogCompleted;
+    private long lastLogBytes;
+
+    @Autowired
+    public UploadJobService(
+            CloudinaryService cloudinaryService,
+            SimpMessagingTemplate messagingTemplate,
+            @Qualifier("uploadExecutor") ThreadPoolTaskExecutor uploadExecutor
+    ) {
+        this.cloudinaryService = cloudinaryService;
+        this.messagingTemplate = messagingTemplate;
+        this.uploadExecutor = uploadExecutor;
+    }
+
+    public UploadJobResponse submit(MultipartFile file, String folder, Long userId) {
+        Path tempFile;
+        try {
+            tempFile = cloudinaryService.spoolToTempFile(file);
+        } catch (IOException e) {
+            throw new RuntimeException("Upload file thất bại", e);
+        }
+
+        UploadJob job = new UploadJob(UUID.randomUUID().toString(), userId, file.getOriginalFilename(), file.getSize());
+        jobs.put(job.jobId, job);
+        try {
+            uploadExecutor.execute(() -> run(job, tempFile, folder));
+        } catch (TaskRejectedException e) {
+            jobs.remove(job.jobId);
+            CloudinaryService.deleteQuietly(tempFile);
+            rejected.increment();
+            log.warn("[UPLOAD] Queue full, rejected {} ({} bytes) from user {}", job.fileName, job.bytesTotal, userId);
+            throw new AppException(ErrorCode.UPLOAD_QUEUE_FULL);
+        }
+        submitted.increment();
+        return job.toResponse();
+    }
+
+    public UploadJobResponse getJob(String jobId, Long userId) {
+        UploadJob job = jobs.get(jobId);
+        if (job == null || !job.userId.equals(userId)) {
+            throw new AppException(ErrorCode.UPLOAD_JOB_NOT_FOUND);
+        }
+        return job.toResponse();
+    }
+
+    public UploadQueueStatsResponse getStats() {
+        long bytes = bytesUploaded.sum();
+        long nanos = uploadNanos.sum();
+        return UploadQueueStatsResponse.builder()
+                .workers(uploadExecutor.getMaxPoolSize())
+                .queueCapacity(uploadExecutor.getQueueCapacity())
+                .queueDepth(uploadExecutor.getQueueSize())
+                .activeUploads(uploadExecutor.getActiveCount())
+                .submitted(submitted.sum())
+                .completed(completed.sum())
+                .failed(failed.sum())
+                .rejected(rejected.sum())
+                .bytesUploaded(bytes)
+                .avgBytesPerSecond(nanos > 0 ? bytes * TimeUnit.SECONDS.toNanos(1) / nanos : 0L)
+                .build();
+    }
+
+    /**
+     * 🕒 Log độ sâu queue + throughput trong khoảng vừa qua
+     */
+    @Scheduled(fixedDelayString = "${upload-queue.metrics-log-interval-ms:60000}")
+    public synchronized void logStats() {
+        long now = System.nanoTime();
+        long done = completed.sum();
+        long bytes = bytesUploaded.sum();
+        double seconds = Math.max((now - lastLogNanos) / 1e9, 1e-3);
+
+        UploadQueueStatsResponse stats = getStats();
+        if (done != lastLogCompleted || stats.getQueueDepth() > 0 || stats.getActiveUploads() > 0) {
+            log.info("[UPLOAD] queue={}/{} active={}/{} | {} uploads, {} KB/s in last {}s | failed={} rejected={}",
+                    stats.getQueueDepth(), stats.getQueueCapacity(), stats.getActiveUploads(), stats.getWorkers(),
+                    done - lastLogCompleted, (long) ((bytes - lastLogBytes) / 1024 / seconds), (long) seconds,
+                    stats.getFailed(), stats.getRejected());
+        }
+        lastLogNanos = now;
+        lastLogCompleted = done;
+        lastLogBytes = bytes;
+    }
+
+    @Scheduled(fixedDelay = 600000) // mỗi 10 phút
+    public void purgeFinishedJobs() {
+        LocalDateTime threshold = LocalDateTime.now().minus(JOB_RETENTION);
+        jobs.values().removeIf(job -> job.finishedAt != null && job.finishedAt.isBefore(threshold));
+    }
+
+    private void run(UploadJob job, Path tempFile, String folder) {
+        long startedAt = System.nanoTime();
+        job.start();
+        push(job);
+        try {
+            FileUrlResponse result = cloudinaryService.uploadFile(tempFile, job.fileName, folder,
+                    (uploaded, total) -> {
+                        if (job.progress(uploaded, total)) {
+                            push(job);
+                        }
+                    });
+            job.complete(result);
+            completed.increment();
+            bytesUploaded.add(job.bytesTotal);
+            uploadNanos.add(System.nanoTime() - startedAt);
+        } catch (RuntimeException e) {
+            log.warn("[UPLOAD] job {} ({}) failed: {}", job.jobId, job.fileName, e.getMessage());
+            job.fail(e.getMessage());
+            failed.increment();
+        } finally {
+            CloudinaryService.deleteQuietly(tempFile);
+            push(job);
+        }
+    }
+
+    private void push(UploadJob job) {
+        try {
+            messagingTemplate.convertAndSendToUser(job.userId.toString(), PROGRESS_DESTINATION, job.toResponse());
+        } catch (Exception e) {
+            log.debug("[UPLOAD] Cannot push progress of job {}: {}", job.jobId, e.getMessage());
+        }
+    }
+
+    /**
+     * Tiến độ 1 upload (giữ trong bộ nhớ, dọn sau JOB_RETENTION)
+     */
+    static final class UploadJob {
+        final String jobId;
+        final Long userId;
+        final String fileName;
+        final long bytesTotal;
+        final LocalDateTime queuedAt = LocalDateTime.now();
+        volatile UploadJobStatus status = UploadJobStatus.QUEUED;
+        volatile long bytesUploaded;
+        volatile int percent;
+        volatile FileUrlResponse result;
+        volatile String error;
+        volatile LocalDateTime startedAt;
+        volatile LocalDateTime finishedAt;
+        private long lastPushNanos;
+
+        UploadJob(String jobId, Long userId, String fileName, long bytesTotal) {
+            this.jobId = jobId;
+            this.userId = userId;
+            this.fileName = fileName;
+            this.bytesTotal = bytesTotal;
+        }
+
+        void start() {
+            startedAt = LocalDateTime.now();
+            status = UploadJobStatus.UPLOADING;
+            lastPushNanos = System.nanoTime();
+        }
+
+        // true = nên đẩy tiến độ qua WebSocket (đã quá PROGRESS_PUSH_INTERVAL từ lần trước)
+        boolean progress(long uploaded, long total) {
+            // total của Cloudinary tính cả phần header multipart → quy về kích thước file
+            percent = total > 0 ? (int) Math.min(uploaded * 100 / total, 99) : percent;
+            bytesUploaded = Math.min(uploaded, bytesTotal);
+            long now = System.nanoTime();
+            if (now - lastPushNanos >= PROGRESS_PUSH_INTERVAL_NANOS) {
+                lastPushNanos = now;
+                return true;
+            }
+            return false;
+        }
+
+        void complete(FileUrlResponse result) {
+            this.result = result;
+            bytesUploaded = bytesTotal;
+            percent = 100;
+            finishedAt = LocalDateTime.now();
+            status = UploadJobStatus.COMPLETED;
+        }
+
+        void fail(String error) {
+            this.error = error;
+            finishedAt = LocalDateTime.now();
+            status = UploadJobStatus.FAILED;
+        }
+
+        UploadJobResponse toResponse() {
+            return UploadJobResponse.builder()
+                    .jobId(jobId)
+                    .status(status)
+                    .fileName(fileName)
+                    .bytesTotal(bytesTotal)
+                    .bytesUploaded(bytesUploaded)
+                    .percent(percent)
+                    .result(result)
+                    .error(error)
+                    .queuedAt(queuedAt)
+                    .startedAt(startedAt)
+                    .finishedAt(finishedAt)
+                    .build();
+        }
+    }
+}
@@ -38,6 +38,8 @@ public class UserService {
     RoleRepository roleRepository; //Thêm dòng này
     UserMapping userMapping;
     PasswordEncoder passwordEncoder;
+    TutorDirectoryService tutorDirectoryService;
+    TutorProfileService tutorProfileService;
 
     //1. Tạo user mới (default role: Learner)
     public UserResponse createUser(UserCreationRequest request) {
@@ -109,6 +111,16 @@ public class UserService {
         });
 
         userRepository.save(user);
+
+        // Tên / avatar / country hiển thị trong danh sách tutor
+        if (updates.containsKey("fullName") || updates.containsKey("country") || updates.containsKey("avatarURL")) {
+            tutorDirectoryService.refreshUser(user);
+        }
+        // Trang chi tiết tutor hiển thị thêm phone
+        if (updates.containsKey("fullName") || updates.containsKey("country")
+                || updates.containsKey("avatarURL") || updates.containsKey("phone")) {
+            tutorProfileService.evictByUserId(user.getUserID());
+        }
         return userMapping.toUserResponse(user);
     }
 
@@ -4,7 +4,6 @@ import edu.lms.dto.response.*;
 import edu.lms.entity.*;
 import edu.lms.enums.CourseDraftStatus;
 import edu.lms.enums.CourseStatus;
-import edu.lms.enums.LessonType;
 import edu.lms.enums.NotificationType;
 import edu.lms.exception.AppException;
 import edu.lms.repository.*;
@@ -18,10 +17,12 @@ import org.mockito.*;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.mockito.junit.jupiter.MockitoSettings;
 import org.mockito.quality.Strictness;
+import org.springframework.mail.SimpleMailMessage;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
@@ -38,41 +39,48 @@ class AdminCourseServiceTest {
     @Mock
     CourseRepository courseRepository;
     @Mock
-    CourseObjectiveRepository courseObjectiveRepository;
-    @Mock
-    CourseObjectiveDraftRepository courseObjectiveDraftRepository;
-    @Mock
     CourseDraftRepository courseDraftRepository;
     @Mock
-    CourseSectionRepository courseSectionRepository;
-    @Mock
-    LessonRepository lessonRepository;
-    @Mock
-    LessonResourceRepository lessonResourceRepository;
-    @Mock
-    UserLessonRepository userLessonRepository;
-    @Mock
-    UserCourseSectionRepository userCourseSectionRepository;
-    @Mock
     EnrollmentRepository enrollmentRepository;
     @Mock
     EmailService emailService;
     @Mock
+    EmailOutboxService emailOutboxService;
+    @Mock
     NotificationService notificationService;
     @Mock
     QuizQuestionRepository quizQuestionRepository;
     @Mock
-    QuizOptionRepository quizOptionRepository;
-    @Mock
     QuizQuestionDraftRepository quizQuestionDraftRepository;
     @Mock
-    QuizOptionDraftRepository quizOptionDraftRepository;
+    CourseProgressService courseProgressService;
+    @Mock
+    CourseDraftMergeService courseDraftMergeService;
     @Mock
     CourseReviewRepository courseReviewRepository;
+    @Mock
+    TutorProfileService tutorProfileService;
 
     @InjectMocks
     AdminCourseService adminCourseService;
 
+    @BeforeEach
+    void stubDiffFromDraft() {
+        // Cây live / draft rỗng: diff chỉ còn thay đổi metadata course
+        when(courseDraftMergeService.diff(any(Course.class), any(CourseDraft.class)))
+                .thenAnswer(inv -> CourseDraftDiff.compute(inv.getArgument(0), inv.getArgument(1),
+                        new CourseDraftDiff.LiveTree(List.of(), List.of(), List.of(), List.of(), List.of()),
+                        new CourseDraftDiff.DraftTree(List.of(), List.of(), List.of(), List.of(), List.of())));
+    }
+
+    // Mọi email đã ghi vào outbox (gộp các lần enqueue)
+    @SuppressWarnings("unchecked")
+    private List<SimpleMailMessage> captureOutboxMails() {
+        ArgumentCaptor<List<SimpleMailMessage>> captor = ArgumentCaptor.forClass(List.class);
+        verify(emailOutboxService, atLeastOnce()).enqueue(captor.capture());
+        return captor.getAllValues().stream().flatMap(List::stream).toList();
+    }
+
     // =========================
     // Helper dựng entity
     // =========================
@@ -225,11 +233,6 @@ class AdminCourseServiceTest {
             when(enrollmentRepository.countByCourse_CourseID(2L)).thenReturn(5L);
             when(courseReviewRepository.findByCourse_CourseID(2L))
                     .thenReturn(List.of());
-            when(courseSectionRepository.findByCourse_CourseID(2L))
-                    .thenReturn(List.of());
-            when(courseObjectiveRepository
-                    .findByCourse_CourseIDOrderByOrderIndexAsc(2L))
-                    .thenReturn(List.of());
 
             AdminCourseDetailResponse result = adminCourseService.getCourseDetail(2L);
 
@@ -265,10 +268,6 @@ class AdminCourseServiceTest {
 
             when(enrollmentRepository.countByCourse_CourseID(2L)).thenReturn(0L);
             when(courseReviewRepository.findByCourse_CourseID(2L)).thenReturn(List.of());
-            when(courseSectionRepository.findByCourse_CourseID(2L)).thenReturn(List.of());
-            when(courseObjectiveRepository
-                    .findByCourse_CourseIDOrderByOrderIndexAsc(2L))
-                    .thenReturn(List.of());
 
             AdminCourseDetailResponse result =
                     adminCourseService.updateCourseReviewNote(2L, "Admin note");
@@ -300,11 +299,6 @@ class AdminCourseServiceTest {
             when(enrollmentRepository.countByCourse_CourseID(draft.getDraftID())).thenReturn(0L);
             when(courseReviewRepository.findByCourse_CourseID(draft.getDraftID()))
                     .thenReturn(List.of());
-            when(courseSectionRepository.findByCourse_CourseID(course.getCourseID()))
-                    .thenReturn(List.of());
-            when(courseObjectiveRepository
-                    .findByCourse_CourseIDOrderByOrderIndexAsc(course.getCourseID()))
-                    .thenReturn(List.of());
 
             AdminCourseDetailResponse result =
                     adminCourseService.updateCourseDraftReviewNote(3L, "Draft note");
@@ -409,11 +403,6 @@ class AdminCourseServiceTest {
                     .thenReturn(0L);
             when(courseReviewRepository.findByCourse_CourseID(d.getDraftID()))
                     .thenReturn(List.of());
-            when(courseSectionRepository.findByCourse_CourseID(c.getCourseID()))
-                    .thenReturn(List.of());
-            when(courseObjectiveRepository
-                    .findByCourse_CourseIDOrderByOrderIndexAsc(c.getCourseID()))
-                    .thenReturn(List.of());
 
             AdminCourseDetailResponse result =
                     adminCourseService.getCourseDraftDetailWithCurriculum(3L);
@@ -635,23 +624,12 @@ class AdminCourseServiceTest {
 
             when(courseDraftRepository.findById(5L)).thenReturn(Optional.of(draft));
 
-            when(courseObjectiveRepository
-                    .findByCourse_CourseIDOrderByOrderIndexAsc(course.getCourseID()))
-                    .thenReturn(List.of());
-            when(courseSectionRepository.findByCourse_CourseID(course.getCourseID()))
-                    .thenReturn(List.of());
-            when(lessonRepository.findBySection_SectionIDIn(anyList()))
-                    .thenReturn(List.of());
-            when(lessonResourceRepository.findByLesson_LessonIDIn(anyList()))
-                    .thenReturn(List.of());
             when(courseReviewRepository.findByCourse_CourseID(course.getCourseID()))
                     .thenReturn(List.of());
             when(enrollmentRepository.countByCourse_CourseID(anyLong()))
                     .thenReturn(0L);
             when(enrollmentRepository.findAllByCourseId(anyLong()))
                     .thenReturn(List.of());
-            when(userCourseSectionRepository.findBySection_SectionID(anyLong()))
-                    .thenReturn(List.of());
 
             AdminCourseResponse result =
                     adminCourseService.approveCourseDraft(5L);
@@ -660,9 +638,11 @@ class AdminCourseServiceTest {
             assertEquals(draft.getTitle(), result.getTitle());
 
             verify(courseRepository, times(1)).save(course);
-            verify(courseDraftRepository, times(1)).delete(draft);
-            verify(emailService, never())
-                    .sendCourseUpdatedToLearner(anyString(), anyString(), anyString());
+            verify(courseDraftMergeService, times(1)).apply(eq(course), eq(draft), any(CourseDraftDiff.class));
+            // Chỉ còn email cho tutor
+            assertTrue(captureOutboxMails().stream().allMatch(m -> "tutor@mail.com".equals(m.getTo()[0])));
+            verify(notificationService, never())
+                    .sendNotificationToUsers(any(), anyString(), anyString(), any(), anyString());
         }
 
         @Test
@@ -673,15 +653,6 @@ class AdminCourseServiceTest {
 
             when(courseDraftRepository.findById(7L)).thenReturn(Optional.of(draft));
 
-            when(courseObjectiveRepository
-                    .findByCourse_CourseIDOrderByOrderIndexAsc(course.getCourseID()))
-                    .thenReturn(List.of());
-            when(courseSectionRepository.findByCourse_CourseID(course.getCourseID()))
-                    .thenReturn(List.of());
-            when(lessonRepository.findBySection_SectionIDIn(anyList()))
-                    .thenReturn(List.of());
-            when(lessonResourceRepository.findByLesson_LessonIDIn(anyList()))
-                    .thenReturn(List.of());
             when(courseReviewRepository.findByCourse_CourseID(course.getCourseID()))
                     .thenReturn(List.of());
 
@@ -706,36 +677,29 @@ class AdminCourseServiceTest {
             when(enrollmentRepository.findAllByCourseId(course.getCourseID()))
                     .thenReturn(List.of(e1, e2));
 
-            when(userCourseSectionRepository.findBySection_SectionID(anyLong()))
-                    .thenReturn(List.of());
-            when(userLessonRepository
-                    .countByUser_UserIDAndLesson_Section_SectionIDAndIsDoneTrue(
-                            anyLong(), anyLong()))
-                    .thenReturn(0L);
 
             AdminCourseResponse result =
                     adminCourseService.approveCourseDraft(7L);
 
             assertEquals(course.getCourseID(), result.getId());
             verify(courseRepository, times(1)).save(course);
-            verify(courseDraftRepository, times(1)).delete(draft);
+            verify(courseDraftMergeService, times(1)).apply(eq(course), eq(draft), any(CourseDraftDiff.class));
 
-            verify(emailService, atLeastOnce())
-                    .sendCourseUpdatedToLearner(anyString(), eq(course.getTitle()), anyString());
-            verify(notificationService, atLeastOnce())
-                    .sendNotification(
-                            anyLong(),
+            // Email vào outbox (gửi nền sau commit), notification learner ghi 1 lô
+            List<SimpleMailMessage> mails = captureOutboxMails();
+            assertEquals(Set.of("learner1@mail.com", "learner2@mail.com", "tutor@mail.com"),
+                    mails.stream().map(m -> m.getTo()[0]).collect(Collectors.toSet()));
+            assertTrue(mails.stream().allMatch(m -> m.getSubject() != null && m.getText() != null));
+            verifyNoInteractions(emailService);
+
+            verify(notificationService, times(1))
+                    .sendNotificationToUsers(
+                            eq(Set.of(100L, 101L)),
                             contains("Course updated"),
                             contains("has just been updated"),
                             eq(NotificationType.COURSE_UPDATED),
                             eq("/courses/" + course.getCourseID())
                     );
-            verify(emailService, times(1))
-                    .sendCourseDraftApprovedToTutor(
-                            eq("tutor@mail.com"),
-                            eq(course.getTitle()),
-                            anyString()
-                    );
             verify(notificationService, times(1))
                     .sendNotification(
                             eq(99L),
@@ -926,15 +890,6 @@ class AdminCourseServiceTest {
 
             when(courseDraftRepository.findById(6L)).thenReturn(Optional.of(d));
 
-            when(courseObjectiveRepository
-                    .findByCourse_CourseIDOrderByOrderIndexAsc(c.getCourseID()))
-                    .thenReturn(List.of());
-            when(courseSectionRepository.findByCourse_CourseID(c.getCourseID()))
-                    .thenReturn(List.of());
-            when(lessonRepository.findBySection_SectionIDIn(anyList()))
-                    .thenReturn(List.of());
-            when(lessonResourceRepository.findByLesson_LessonIDIn(anyList()))
-                    .thenReturn(List.of());
             when(courseReviewRepository.findByCourse_CourseID(c.getCourseID()))
                     .thenReturn(List.of());
 
@@ -979,15 +934,6 @@ class AdminCourseServiceTest {
 
             when(courseDraftRepository.findById(41L)).thenReturn(Optional.of(draft));
 
-            when(courseObjectiveRepository
-                    .findByCourse_CourseIDOrderByOrderIndexAsc(course.getCourseID()))
-                    .thenReturn(List.of());
-            when(courseSectionRepository.findByCourse_CourseID(course.getCourseID()))
-                    .thenReturn(List.of());
-            when(lessonRepository.findBySection_SectionIDIn(anyList()))
-                    .thenReturn(List.of());
-            when(lessonResourceRepository.findByLesson_LessonIDIn(anyList()))
-                    .thenReturn(List.of());
             when(courseReviewRepository.findByCourse_CourseID(course.getCourseID()))
                     .thenReturn(List.of());
 
@@ -1003,26 +949,20 @@ class AdminCourseServiceTest {
             when(enrollmentRepository.findAllByCourseId(course.getCourseID()))
                     .thenReturn(List.of(e));
 
-            when(userCourseSectionRepository.findBySection_SectionID(anyLong()))
-                    .thenReturn(List.of());
-
-            ArgumentCaptor<String> summaryCaptor = ArgumentCaptor.forClass(String.class);
 
             adminCourseService.approveCourseDraft(41L);
 
-            verify(emailService, times(1))
-                    .sendCourseUpdatedToLearner(
-                            eq("learner@mail.com"),
-                            eq(course.getTitle()),
-                            summaryCaptor.capture()
-                    );
-
-            String summary = summaryCaptor.getValue();
-            assertEquals("Course was updated with minor internal changes.\n", summary);
+            SimpleMailMessage learnerMail = captureOutboxMails().stream()
+                    .filter(m -> "learner@mail.com".equals(m.getTo()[0]))
+                    .findFirst()
+                    .orElseThrow();
+            assertEquals(EmailService.courseUpdatedToLearnerMessage(
+                    "learner@mail.com", course.getTitle(),
+                    "Course was updated with minor internal changes.\n").getText(), learnerMail.getText());
 
             verify(notificationService, times(1))
-                    .sendNotification(
-                            eq(500L),
+                    .sendNotificationToUsers(
+                            eq(Set.of(500L)),
                             contains("Course updated"),
                             contains("has just been updated"),
                             eq(NotificationType.COURSE_UPDATED),
@@ -1030,165 +970,4 @@ class AdminCourseServiceTest {
                     );
         }
     }
-
-    // =====================================================================
-    // EXTRA: approveCourseDraft – quiz change + reset progress
-    // =====================================================================
-
-    @Nested
-    @DisplayName("AdminCourseService.approveCourseDraft - quiz & progress reset")
-    class ApproveCourseDraftQuizAndProgressTests {
-
-        @Test
-        @DisplayName("Quiz thay đổi + video URL thay đổi -> reset progress & sync quiz")
-        void approveCourseDraft_quizChange_shouldResetProgressAndSyncQuiz() {
-            // LIVE COURSE + SECTION
-            Course course = buildCourse(30L, CourseStatus.Approved);
-
-            CourseSection sectionLive = new CourseSection();
-            sectionLive.setSectionID(100L);
-            sectionLive.setCourse(course);
-            sectionLive.setTitle("Live section");
-            sectionLive.setOrderIndex(1);
-
-            Lesson liveVideoLesson = new Lesson();
-            liveVideoLesson.setLessonID(200L);
-            liveVideoLesson.setSection(sectionLive);
-            liveVideoLesson.setLessonType(LessonType.Video);
-            liveVideoLesson.setTitle("Video L");
-            liveVideoLesson.setVideoURL("old-url");
-            liveVideoLesson.setDuration((short) 10);
-            liveVideoLesson.setOrderIndex(1);
-
-            Lesson liveQuizLesson = new Lesson();
-            liveQuizLesson.setLessonID(201L);
-            liveQuizLesson.setSection(sectionLive);
-            liveQuizLesson.setLessonType(LessonType.Quiz);
-            liveQuizLesson.setTitle("Quiz L");
-            liveQuizLesson.setDuration((short) 5);
-            liveQuizLesson.setOrderIndex(2);
-
-
-            sectionLive.setLessons(List.of(liveVideoLesson, liveQuizLesson));
-            course.setSections(List.of(sectionLive));
-
-            QuizQuestion liveQuestion = new QuizQuestion();
-            liveQuestion.setQuestionID(300L);
-            liveQuestion.setLesson(liveQuizLesson);
-            liveQuestion.setQuestionText("Q1");
-            liveQuestion.setOrderIndex(1);
-
-            QuizOption liveOption = new QuizOption();
-            liveOption.setOptionID(400L);
-            liveOption.setQuestion(liveQuestion);
-            liveOption.setOptionText("A");
-            liveOption.setIsCorrect(true);
-            liveOption.setOrderIndex(1);
-            liveQuestion.setOptions(List.of(liveOption));
-
-            when(quizQuestionRepository.findByLessonOrderByOrderIndexAsc(liveQuizLesson))
-                    .thenReturn(List.of(liveQuestion));
-
-            // DRAFT
-            CourseDraft draft = buildCourseDraft(31L, course, CourseDraftStatus.PENDING_REVIEW);
-
-            CourseSectionDraft sectionDraft = new CourseSectionDraft();
-            sectionDraft.setSectionDraftID(101L);
-            sectionDraft.setDraft(draft);
-            sectionDraft.setOriginalSectionID(sectionLive.getSectionID());
-            sectionDraft.setTitle("Live section (updated)");
-            sectionDraft.setOrderIndex(1);
-
-            LessonDraft draftVideo = new LessonDraft();
-            draftVideo.setLessonDraftID(210L);
-            draftVideo.setOriginalLessonID(liveVideoLesson.getLessonID());
-            draftVideo.setLessonType(LessonType.Video);
-            draftVideo.setTitle("Video L");
-            draftVideo.setVideoURL("new-url");
-            draftVideo.setDuration((short) 10);
-            draftVideo.setOrderIndex(1);
-            draftVideo.setResources(new ArrayList<>());
-
-            LessonDraft draftQuiz = new LessonDraft();
-            draftQuiz.setLessonDraftID(211L);
-            draftQuiz.setOriginalLessonID(liveQuizLesson.getLessonID());
-            draftQuiz.setLessonType(LessonType.Quiz);
-            draftQuiz.setTitle("Quiz L");
-            draftQuiz.setDuration((short) 5);
-            draftQuiz.setOrderIndex(2);
-            draftQuiz.setResources(new ArrayList<>());
-
-            QuizQuestionDraft draftQuestion = new QuizQuestionDraft();
-            draftQuestion.setQuestionDraftID(301L);
-            draftQuestion.setLessonDraft(draftQuiz);
-            draftQuestion.setQuestionText("Q1 changed");
-            draftQuestion.setOrderIndex(1);
-
-            QuizOptionDraft draftOption = new QuizOptionDraft();
-            draftOption.setOptionDraftID(401L);
-            draftOption.setQuestionDraft(draftQuestion);
-            draftOption.setOptionText("B");
-            draftOption.setIsCorrect(true);
-            draftOption.setOrderIndex(1);
-            draftQuestion.setOptions(List.of(draftOption));
-
-            when(quizQuestionDraftRepository.findByLessonDraftOrderByOrderIndexAsc(draftQuiz))
-                    .thenReturn(List.of(draftQuestion));
-
-            sectionDraft.setLessons(List.of(draftVideo, draftQuiz));
-            draft.setSections(List.of(sectionDraft));
-
-            when(courseDraftRepository.findById(31L)).thenReturn(Optional.of(draft));
-
-            when(courseSectionRepository.findByCourse_CourseID(course.getCourseID()))
-                    .thenReturn(List.of(sectionLive));
-            when(lessonRepository.findBySection_SectionIDIn(anyList()))
-                    .thenReturn(List.of(liveVideoLesson, liveQuizLesson));
-            when(lessonResourceRepository.findByLesson_LessonIDIn(anyList()))
-                    .thenReturn(List.of());
-
-            when(courseObjectiveRepository
-                    .findByCourse_CourseIDOrderByOrderIndexAsc(course.getCourseID()))
-                    .thenReturn(List.of());
-            when(courseReviewRepository.findByCourse_CourseID(course.getCourseID()))
-                    .thenReturn(List.of());
-
-            User learner = new User();
-            learner.setUserID(1000L);
-
-            UserCourseSection ucs = new UserCourseSection();
-            ucs.setSection(sectionLive);
-            ucs.setUser(learner);
-            ucs.setProgress(BigDecimal.ZERO);
-
-            when(userCourseSectionRepository.findBySection_SectionID(sectionLive.getSectionID()))
-                    .thenReturn(List.of(ucs));
-
-            when(userLessonRepository
-                    .countByUser_UserIDAndLesson_Section_SectionIDAndIsDoneTrue(
-                            eq(1000L),
-                            eq(sectionLive.getSectionID())
-                    )).thenReturn(1L);
-
-            when(enrollmentRepository.countByCourse_CourseID(course.getCourseID()))
-                    .thenReturn(0L);
-            when(enrollmentRepository.findAllByCourseId(course.getCourseID()))
-                    .thenReturn(List.of());
-
-            AdminCourseResponse response =
-                    adminCourseService.approveCourseDraft(31L);
-
-            assertEquals(course.getCourseID(), response.getId());
-            assertTrue(ucs.getProgress().compareTo(BigDecimal.ZERO) > 0);
-
-            verify(userLessonRepository, atLeastOnce())
-                    .deleteByLesson_LessonIDIn(argThat(list ->
-                            list.contains(200L) || list.contains(201L)
-                    ));
-
-            verify(quizQuestionRepository, atLeastOnce()).deleteAll(anyList());
-            verify(quizQuestionRepository, atLeastOnce()).save(any(QuizQuestion.class));
-            verify(quizOptionRepository, atLeastOnce()).save(any(QuizOption.class));
-        }
-    }
 }
@@ -53,6 +53,8 @@ class BookingFeedbackServiceTest {
     CourseReviewRepository courseReviewRepository;
     @Mock
     TutorRatingService tutorRatingService;
+    @Mock
+    TutorProfileService tutorProfileService;
 
     @InjectMocks
     BookingFeedbackService bookingFeedbackService;
@@ -430,7 +432,7 @@ class BookingFeedbackServiceTest {
             assertEquals("avatar.png", res.getUserAvatarURL());
             assertNotNull(res.getCreatedAt());
 
-            verify(tutorRatingService).recalculateTutorRating(tutorId);
+            verify(tutorRatingService).onFeedbackCreated(tutorId, BigDecimal.ZERO);
         }
 
         /**
@@ -520,7 +522,7 @@ class BookingFeedbackServiceTest {
             assertEquals(BigDecimal.valueOf(4.0), res.getRating());
             assertEquals("Excellent", res.getComment());
             assertEquals(tutorId, res.getTutorId());
-            verify(tutorRatingService).recalculateTutorRating(tutorId);
+            verify(tutorRatingService).onFeedbackCreated(tutorId, BigDecimal.valueOf(4.0));
         }
     }
 
@@ -765,7 +767,7 @@ class BookingFeedbackServiceTest {
             assertEquals("avatar.png", res.getUserAvatarURL());
             assertEquals(payment.getPaidAt(), res.getCreatedAt());
 
-            verify(tutorRatingService).recalculateTutorRating(tutorId);
+            verify(tutorRatingService).onFeedbackUpdated(tutorId, BigDecimal.valueOf(3.0), BigDecimal.ZERO);
         }
 
         /**
@@ -801,7 +803,7 @@ class BookingFeedbackServiceTest {
 
             assertEquals(BigDecimal.valueOf(5.0), res.getRating());
             assertEquals("Nice", res.getComment());
-            verify(tutorRatingService).recalculateTutorRating(tutorId);
+            verify(tutorRatingService).onFeedbackUpdated(tutorId, BigDecimal.valueOf(4.0), BigDecimal.valueOf(5.0));
         }
 
         /**
@@ -837,7 +839,7 @@ class BookingFeedbackServiceTest {
 
             assertEquals(BigDecimal.valueOf(4.0), res.getRating());
             assertEquals("Happy", res.getComment());
-            verify(tutorRatingService).recalculateTutorRating(tutorId);
+            verify(tutorRatingService).onFeedbackUpdated(tutorId, BigDecimal.valueOf(2.0), BigDecimal.valueOf(4.0));
         }
 
         /**
@@ -873,7 +875,7 @@ class BookingFeedbackServiceTest {
 
             assertEquals(BigDecimal.valueOf(4.0), res.getRating());
             assertEquals("Update comment", res.getComment());
-            verify(tutorRatingService).recalculateTutorRating(tutorId);
+            verify(tutorRatingService).onFeedbackUpdated(tutorId, BigDecimal.valueOf(4.0), BigDecimal.valueOf(4.0));
         }
     }
 
@@ -992,7 +994,7 @@ class BookingFeedbackServiceTest {
             bookingFeedbackService.deleteFeedback(10L);
 
             verify(feedbackRepository).delete(feedback);
-            verify(tutorRatingService).recalculateTutorRating(tutorId);
+            verify(tutorRatingService).onFeedbackDeleted(tutorId, BigDecimal.valueOf(4.0));
         }
     }
 }
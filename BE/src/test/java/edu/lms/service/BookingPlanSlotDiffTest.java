@@ -0,0 +1,157 @@
+package edu.lms.service;
+
+import edu.lms.entity.BookingPlan;
+import edu.lms.entity.BookingPlanSlot;
+import edu.lms.enums.SlotStatus;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.DayOfWeek;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * BookingPlanSlotDiffTest
+ *
+ * Cover:
+ *  - slot trong giờ mới → kept (kể cả slot có learner lệch lưới), ngoài giờ mới → cancelled
+ *  - slot trống lệch lưới → moved về ô gần nhất, ô đã có slot → cancelled
+ *  - đổi thứ → cancelled toàn bộ, slot Rejected bỏ qua
+ *  - title cũ không parse được → lấy thứ theo slot hiện có, không huỷ nhầm
+ */
+class BookingPlanSlotDiffTest {
+
+    // Thứ 2, 06/01/2025
+    private static final LocalDateTime MONDAY = LocalDateTime.of(2025, 1, 6, 0, 0);
+
+    private BookingPlan plan(String title, int startHour, int endHour, int duration) {
+        return BookingPlan.builder()
+                .bookingPlanID(10L)
+                .tutorID(1L)
+                .title(title)
+                .startHours(LocalTime.of(startHour, 0))
+                .endHours(LocalTime.of(endHour, 0))
+                .slotDuration(duration)
+                .build();
+    }
+
+    private BookingPlanSlot slot(Long id, Long userId, int startMinute, int minutes, SlotStatus status) {
+        LocalDateTime start = MONDAY.plusMinutes(startMinute);
+        return BookingPlanSlot.builder()
+                .slotID(id)
+                .bookingPlanID(10L)
+                .tutorID(1L)
+                .userID(userId)
+                .startTime(start)
+                .endTime(start.plusMinutes(minutes))
+                .status(status)
+                .build();
+    }
+
+    @Test
+    @DisplayName("Thu hẹp 8h-12h còn 9h-11h -> slot 9h, 10h giữ, slot 8h, 11h huỷ")
+    void compute_shrinkHours_shouldKeepInsideAndCancelOutside() {
+        BookingPlanSlot s8 = slot(1L, 100L, 8 * 60, 60, SlotStatus.Paid);
+        BookingPlanSlot s9 = slot(2L, 100L, 9 * 60, 60, SlotStatus.Paid);
+        BookingPlanSlot s10 = slot(3L, null, 10 * 60, 60, SlotStatus.Available);
+        BookingPlanSlot s11 = slot(4L, 101L, 11 * 60, 60, SlotStatus.Locked);
+
+        BookingPlanSlotDiff diff = BookingPlanSlotDiff.compute(
+                DayOfWeek.MONDAY, plan("T2", 9, 11, 60), List.of(s8, s9, s10, s11));
+
+        assertEquals(List.of(s9, s10), diff.kept());
+        assertEquals(List.of(s8, s11), diff.cancelled());
+        assertTrue(diff.moved().isEmpty());
+    }
+
+    @Test
+    @DisplayName("Đổi slotDuration 30 -> 60: slot trống 9h30 dời về 9h, slot có learner lệch lưới vẫn giữ")
+    void compute_durationChange_shouldMoveEmptyOffGridSlots() {
+        BookingPlanSlot emptyOffGrid = slot(1L, null, 9 * 60 + 30, 30, SlotStatus.Available);
+        BookingPlanSlot learnerOffGrid = slot(2L, 100L, 10 * 60 + 30, 30, SlotStatus.Paid);
+
+        BookingPlanSlotDiff diff = BookingPlanSlotDiff.compute(
+                DayOfWeek.MONDAY, plan("T2", 9, 12, 60), List.of(emptyOffGrid, learnerOffGrid));
+
+        assertEquals(List.of(learnerOffGrid), diff.kept());
+        assertEquals(List.of(emptyOffGrid), diff.moved());
+        assertEquals(MONDAY.plusHours(9), emptyOffGrid.getStartTime());
+        assertEquals(MONDAY.plusHours(10), emptyOffGrid.getEndTime());
+        assertTrue(diff.cancelled().isEmpty());
+    }
+
+    @Test
+    @DisplayName("Ô lưới đích đã có slot của learner -> slot trống bị huỷ thay vì dời")
+    void compute_targetCellTaken_shouldCancel() {
+        BookingPlanSlot learner = slot(1L, 100L, 9 * 60, 60, SlotStatus.Paid);
+        BookingPlanSlot emptyOffGrid = slot(2L, null, 9 * 60 + 30, 30, SlotStatus.Available);
+
+        BookingPlanSlotDiff diff = BookingPlanSlotDiff.compute(
+                DayOfWeek.MONDAY, plan("T2", 9, 12, 60), List.of(learner, emptyOffGrid));
+
+        assertEquals(List.of(learner), diff.kept());
+        assertEquals(List.of(emptyOffGrid), diff.cancelled());
+        assertEquals(MONDAY.plusMinutes(9 * 60 + 30), emptyOffGrid.getStartTime());
+    }
+
+    @Test
+    @DisplayName("Plan đổi từ T2 sang T3 -> huỷ mọi slot, bỏ qua slot Rejected")
+    void compute_dayChanged_shouldCancelAll() {
+        BookingPlanSlot paid = slot(1L, 100L, 9 * 60, 60, SlotStatus.Paid);
+        BookingPlanSlot rejected = slot(2L, 101L, 10 * 60, 60, SlotStatus.Rejected);
+
+        BookingPlanSlotDiff diff = BookingPlanSlotDiff.compute(
+                DayOfWeek.MONDAY, plan("T3", 9, 12, 60), List.of(paid, rejected));
+
+        assertEquals(List.of(paid), diff.cancelled());
+        assertTrue(diff.kept().isEmpty());
+    }
+
+    @Test
+    @DisplayName("Title cũ không parse được, slot đang ở T2, title mới T2 -> đối chiếu giờ như thường")
+    void compute_unparsableOldTitle_shouldUseSlotDay() {
+        BookingPlanSlot s9 = slot(1L, 100L, 9 * 60, 60, SlotStatus.Paid);
+        BookingPlanSlot s13 = slot(2L, null, 13 * 60, 60, SlotStatus.Available);
+
+        BookingPlanSlotDiff diff = BookingPlanSlotDiff.compute(null, plan("T2", 9, 12, 60), List.of(s9, s13));
+
+        assertEquals(List.of(s9), diff.kept());
+        assertEquals(List.of(s13), diff.cancelled());
+    }
+
+    @Test
+    @DisplayName("Title cũ không parse được, slot đang ở T2, title mới T3 -> huỷ như đổi thứ")
+    void compute_unparsableOldTitle_dayChanged_shouldCancelAll() {
+        BookingPlanSlot s9 = slot(1L, 100L, 9 * 60, 60, SlotStatus.Paid);
+
+        BookingPlanSlotDiff diff = BookingPlanSlotDiff.compute(null, plan("T3", 9, 12, 60), List.of(s9));
+
+        assertEquals(List.of(s9), diff.cancelled());
+        assertTrue(diff.kept().isEmpty());
+    }
+
+    @Test
+    @DisplayName("500 slot tương lai -> phân loại 1 lượt, không phụ thuộc thứ tự")
+    void compute_manySlots_shouldClassifyAll() {
+        List<BookingPlanSlot> slots = new ArrayList<>();
+        IntStream.range(0, 500).forEach(i -> {
+            BookingPlanSlot s = slot((long) i, i % 2 == 0 ? 100L : null, 8 * 60 + (i % 8) * 60, 60,
+                    i % 2 == 0 ? SlotStatus.Paid : SlotStatus.Available);
+            s.setStartTime(s.getStartTime().plusWeeks(i / 8));
+            s.setEndTime(s.getEndTime().plusWeeks(i / 8));
+            slots.add(s);
+        });
+
+        // Giờ mới 10h-14h: mỗi tuần giữ 4 slot (10h..13h), huỷ 4 slot (8h, 9h, 14h, 15h)
+        BookingPlanSlotDiff diff = BookingPlanSlotDiff.compute(DayOfWeek.MONDAY, plan("T2", 10, 14, 60), slots);
+
+        assertEquals(250, diff.kept().size());
+        assertEquals(250, diff.cancelled().size());
+        assertTrue(diff.moved().isEmpty());
+    }
+}
@@ -1,15 +1,18 @@
 package edu.lms.service;
 
 import edu.lms.dto.response.BookingPlanSlotResponse;
+import edu.lms.dto.response.TimetableResponse;
 import edu.lms.entity.BookingPlan;
 import edu.lms.entity.BookingPlanSlot;
 import edu.lms.entity.Tutor;
 import edu.lms.entity.User;
 import edu.lms.enums.SlotStatus;
 import edu.lms.exception.AppException;
+import edu.lms.exception.ErrorCode;
 import edu.lms.repository.BookingPlanRepository;
 import edu.lms.repository.BookingPlanSlotRepository;
 import edu.lms.repository.TutorRepository;
+import edu.lms.repository.UserRepository;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
@@ -17,10 +20,13 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.*;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -47,6 +53,11 @@ import static org.mockito.Mockito.*;
  *      + tutor tồn tại nhưng không có slot -> list rỗng
  *      + tutor tồn tại + có slot -> mapping đầy đủ meetingUrl + tutorFullName
  *
+ *  - getTimetableForUser / getTimetableForTutor(Long userId, LocalDate from, LocalDate to)
+ *      + chỉ query slot trong [from, to + 1 ngày), dictionary plan / tutor / user khử trùng
+ *      + meetingUrl chỉ có ở plan có slot Paid trong khoảng
+ *      + không có slot -> không gọi repo khác; khoảng ngày sai -> TIMETABLE_INVALID_RANGE
+ *
  * Lưu ý:
  *  - Chỉ assertThrows(AppException.class), KHÔNG check ErrorCode bên trong.
  *  - Các hàm private (buildMeetingUrlMap, buildTutorNameMap, toSlotResponse) được cover gián tiếp qua các public method.
@@ -60,6 +71,8 @@ class BookingPlanSlotServiceTest {
     BookingPlanRepository bookingPlanRepository;
     @Mock
     TutorRepository tutorRepository;
+    @Mock
+    UserRepository userRepository;
 
     @InjectMocks
     BookingPlanSlotService bookingPlanSlotService;
@@ -421,4 +434,106 @@ class BookingPlanSlotServiceTest {
             assertEquals("Tutor A", r2.getTutorFullName());
         }
     }
+
+    // =====================================================================
+    // getTimetableForUser / getTimetableForTutor
+    // =====================================================================
+
+    @Nested
+    @DisplayName("BookingPlanSlotService.getTimetable")
+    class GetTimetableTests {
+
+        private final LocalDate monday = LocalDate.of(2025, 1, 6);
+
+        private User buildUser(Long userId, String fullName) {
+            User u = new User();
+            u.setUserID(userId);
+            u.setFullName(fullName);
+            return u;
+        }
+
+        @Test
+        @DisplayName("getTimetableForTutor - slot trong tuần, dictionary khử trùng, meetingUrl chỉ cho plan có slot Paid")
+        @SuppressWarnings("unchecked")
+        void getTimetableForTutor_shouldQueryWindowAndDedupDictionaries() {
+            Long userId = 1000L;
+            Long tutorId = 200L;
+            Tutor tutor = buildTutorWithUser(tutorId, userId, "Tutor A");
+            when(tutorRepository.findByUser_UserID(userId)).thenReturn(Optional.of(tutor));
+
+            BookingPlanSlot s1 = buildSlot(1L, 100L, tutorId, 10L, SlotStatus.Paid);
+            BookingPlanSlot s2 = buildSlot(2L, 100L, tutorId, 10L, SlotStatus.Paid);
+            BookingPlanSlot s3 = buildSlot(3L, 101L, tutorId, 11L, SlotStatus.Locked);
+            when(bookingPlanSlotRepository.findTimetableByTutorID(
+                    tutorId, monday.atStartOfDay(), monday.plusDays(7).atStartOfDay()))
+                    .thenReturn(List.of(s1, s2, s3));
+
+            when(bookingPlanRepository.findAllById(anyCollection())).thenReturn(List.of(
+                    buildPlan(100L, "https://meet.com/room100"),
+                    buildPlan(101L, "https://meet.com/room101")));
+            when(tutorRepository.findAllWithUserByTutorIDIn(anyCollection())).thenReturn(List.of(tutor));
+            when(userRepository.findAllWithRoleByUserIDIn(anyCollection())).thenReturn(List.of(
+                    buildUser(10L, "Learner A"), buildUser(11L, null)));
+
+            TimetableResponse res = bookingPlanSlotService.getTimetableForTutor(userId, monday, monday.plusDays(6));
+
+            assertEquals(monday, res.getFrom());
+            assertEquals(monday.plusDays(6), res.getTo());
+            assertEquals(3, res.getSlots().size());
+            assertEquals(2, res.getPlans().size());
+            assertEquals("https://meet.com/room100", res.getPlans().get(100L).getMeetingUrl());
+            assertNull(res.getPlans().get(101L).getMeetingUrl());
+            assertEquals("Tutor A", res.getTutors().get(tutorId).getFullName());
+            assertEquals("", res.getUsers().get(11L).getFullName());
+
+            // Mỗi id chỉ truyền 1 lần xuống repo
+            ArgumentCaptor<Collection<Long>> planIds = ArgumentCaptor.forClass(Collection.class);
+            verify(bookingPlanRepository).findAllById(planIds.capture());
+            assertEquals(Set.of(100L, 101L), Set.copyOf(planIds.getValue()));
+            assertEquals(2, planIds.getValue().size());
+
+            ArgumentCaptor<Collection<Long>> userIds = ArgumentCaptor.forClass(Collection.class);
+            verify(userRepository).findAllWithRoleByUserIDIn(userIds.capture());
+            assertEquals(2, userIds.getValue().size());
+            verify(bookingPlanSlotRepository, never()).findByTutorID(any());
+        }
+
+        @Test
+        @DisplayName("getTimetableForUser - không có slot -> dictionary rỗng, không gọi repo khác")
+        void getTimetableForUser_noSlots_shouldSkipLookups() {
+            when(bookingPlanSlotRepository.findTimetableByUserID(
+                    10L, monday.atStartOfDay(), monday.plusDays(31).atStartOfDay()))
+                    .thenReturn(List.of());
+
+            TimetableResponse res = bookingPlanSlotService.getTimetableForUser(10L, monday, monday.plusDays(30));
+
+            assertTrue(res.getSlots().isEmpty());
+            assertTrue(res.getPlans().isEmpty());
+            verifyNoInteractions(bookingPlanRepository, tutorRepository, userRepository);
+        }
+
+        @Test
+        @DisplayName("getTimetableForUser - to trước from / quá 42 ngày -> TIMETABLE_INVALID_RANGE")
+        void getTimetableForUser_invalidRange_shouldThrow() {
+            AppException before = assertThrows(AppException.class,
+                    () -> bookingPlanSlotService.getTimetableForUser(10L, monday, monday.minusDays(1)));
+            AppException tooLong = assertThrows(AppException.class,
+                    () -> bookingPlanSlotService.getTimetableForUser(10L, monday, monday.plusDays(42)));
+
+            assertEquals(ErrorCode.TIMETABLE_INVALID_RANGE, before.getErrorcode());
+            assertEquals(ErrorCode.TIMETABLE_INVALID_RANGE, tooLong.getErrorcode());
+            verifyNoInteractions(bookingPlanSlotRepository);
+        }
+
+        @Test
+        @DisplayName("getTimetableForTutor - tutor không tồn tại -> AppException")
+        void getTimetableForTutor_tutorNotFound_shouldThrow() {
+            when(tutorRepository.findByUser_UserID(999L)).thenReturn(Optional.empty());
+
+            assertThrows(AppException.class,
+                    () -> bookingPlanSlotService.getTimetableForTutor(999L, null, null));
+
+            verifyNoInteractions(bookingPlanSlotRepository);
+        }
+    }
 }
@@ -0,0 +1,442 @@
+package edu.lms.service;
+
+import edu.lms.dto.response.BookingPlanTeardownProgressResponse;
+import edu.lms.entity.*;
+import edu.lms.enums.*;
+import edu.lms.repository.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.core.task.SyncTaskExecutor;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * BookingPlanTeardownServiceTest
+ *
+ * Cover:
+ *  - teardownPlans: đọc slot/payment theo lô, huỷ payment + xoá slot/plan bằng set-based statement
+ *  - payment vừa PAID (không còn trong SELECT ... FOR UPDATE) -> không huỷ, không huỷ link PayOS
+ *  - payment PAID nhưng slot còn Locked (inbox chưa xử lý) -> tạo refund như slot Paid
+ *  - payment chưa có link PayOS -> vẫn bị huỷ, chỉ huỷ link của payment có link
+ *  - releaseSlots: bỏ qua slot quá khứ / hôm nay, refund TUTOR_RESCHEDULE, không tạo refund trùng
+ *  - Task async: huỷ link PayOS có retry, notification ghi theo chunk, progress, rollback
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class BookingPlanTeardownServiceTest {
+
+    @Mock
+    BookingPlanRepository bookingPlanRepository;
+    @Mock
+    BookingPlanSlotRepository bookingPlanSlotRepository;
+    @Mock
+    PaymentRepository paymentRepository;
+    @Mock
+    RefundRequestRepository refundRequestRepository;
+    @Mock
+    NotificationRepository notificationRepository;
+    @Mock
+    PayOSService payOSService;
+
+    BookingPlanTeardownService teardownService;
+
+    private final List<Notification> savedNotifications = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        // SyncTaskExecutor → task async chạy ngay trên thread test; backoff mặc định 0
+        teardownService = new BookingPlanTeardownService(
+                bookingPlanRepository,
+                bookingPlanSlotRepository,
+                paymentRepository,
+                refundRequestRepository,
+                notificationRepository,
+                payOSService,
+                new SyncTaskExecutor()
+        );
+
+        AtomicLong refundIds = new AtomicLong(900);
+        when(refundRequestRepository.saveAll(anyList())).thenAnswer(inv -> {
+            List<RefundRequest> refunds = inv.getArgument(0);
+            refunds.forEach(r -> r.setRefundRequestId(refundIds.incrementAndGet()));
+            return refunds;
+        });
+        when(notificationRepository.saveAll(anyList())).thenAnswer(inv -> {
+            List<Notification> chunk = inv.getArgument(0);
+            savedNotifications.addAll(chunk);
+            return chunk;
+        });
+        when(payOSService.cancelPaymentLink(anyString())).thenReturn(true);
+    }
+
+    private Tutor buildTutor() {
+        User u = new User();
+        u.setUserID(100L);
+        Tutor t = new Tutor();
+        t.setTutorID(1L);
+        t.setUser(u);
+        return t;
+    }
+
+    private BookingPlan buildPlan(Long planId) {
+        BookingPlan plan = new BookingPlan();
+        plan.setBookingPlanID(planId);
+        plan.setTutorID(1L);
+        plan.setTitle("Friday");
+        plan.setStartHours(LocalTime.of(9, 0));
+        plan.setEndHours(LocalTime.of(20, 0));
+        plan.setSlotDuration(60);
+        plan.setPricePerHours(100_000d);
+        return plan;
+    }
+
+    private BookingPlanSlot buildSlot(Long slotId, Long planId, Long userId, LocalDateTime start,
+                                      SlotStatus status, Long paymentId) {
+        return BookingPlanSlot.builder()
+                .slotID(slotId)
+                .bookingPlanID(planId)
+                .tutorID(1L)
+                .userID(userId)
+                .startTime(start)
+                .endTime(start.plusHours(1))
+                .status(status)
+                .paymentID(paymentId)
+                .build();
+    }
+
+    private Payment buildPayment(Long paymentId, String linkId) {
+        return Payment.builder()
+                .paymentID(paymentId)
+                .paymentLinkId(linkId)
+                .status(PaymentStatus.PENDING)
+                .build();
+    }
+
+    @Nested
+    @DisplayName("BookingPlanTeardownService.teardownPlans")
+    class TeardownPlansTests {
+
+        @Test
+        @DisplayName("PLAN_DELETED -> 1 query slot, 1 UPDATE payment, DELETE theo lô, notify learner + tutor")
+        void teardownPlans_planDeleted_shouldRunSetBased() {
+            BookingPlan plan = buildPlan(1L);
+            LocalDateTime start = LocalDateTime.now().plusDays(1).withHour(10);
+            BookingPlanSlot locked = buildSlot(10L, 1L, 999L, start, SlotStatus.Locked, 500L);
+            BookingPlanSlot paid = buildSlot(11L, 1L, 998L, start.plusHours(1), SlotStatus.Paid, 501L);
+            BookingPlanSlot booked = buildSlot(12L, 1L, 997L, start.plusHours(2), SlotStatus.Available, null);
+            BookingPlanSlot empty = buildSlot(13L, 1L, null, start.plusHours(3), SlotStatus.Available, null);
+
+            when(bookingPlanSlotRepository.findByBookingPlanIDIn(anyCollection()))
+                    .thenReturn(List.of(locked, paid, booked, empty));
+            when(paymentRepository.findUnpaidByIdsForUpdate(anyCollection()))
+                    .thenReturn(List.of(buildPayment(500L, "LINK-500")));
+            when(paymentRepository.cancelUnpaidByIds(anyCollection(), any())).thenReturn(1);
+
+            BookingPlanTeardownProgressResponse res = teardownService.teardownPlans(
+                    1L, 100L, List.of(plan), BookingPlanTeardownReason.PLAN_DELETED);
+
+            verify(bookingPlanSlotRepository, times(1)).findByBookingPlanIDIn(anyCollection());
+            verify(paymentRepository).cancelUnpaidByIds(eq(Set.of(500L)), any());
+            verify(paymentRepository, never()).save(any());
+            verify(bookingPlanSlotRepository).deleteAllByBookingPlanIDIn(argThat(ids -> ids.contains(1L)));
+            verify(bookingPlanRepository).deleteAllByIdInBatch(argThat(ids -> ((Collection<?>) ids).contains(1L)));
+            verify(bookingPlanSlotRepository, never()).delete(any(BookingPlanSlot.class));
+
+            ArgumentCaptor<List<RefundRequest>> refunds = ArgumentCaptor.forClass(List.class);
+            verify(refundRequestRepository).saveAll(refunds.capture());
+            assertEquals(1, refunds.getValue().size());
+            assertEquals(11L, refunds.getValue().get(0).getSlotId());
+            assertEquals(0, refunds.getValue().get(0).getRefundAmount().compareTo(java.math.BigDecimal.valueOf(100_000)));
+
+            verify(payOSService).cancelPaymentLink("LINK-500");
+            // 3 slot có learner → 3 learner + 3 tutor
+            assertEquals(6, savedNotifications.size());
+            assertEquals(3, savedNotifications.stream().filter(n -> n.getUserId().equals(100L)).count());
+            assertTrue(savedNotifications.stream().anyMatch(n ->
+                    n.getUserId().equals(998L) && n.getType() == NotificationType.REFUND_AVAILABLE));
+
+            assertEquals(4, res.getSlotsAffected());
+            assertEquals(3, res.getSlotsWithLearner());
+            assertEquals(1, res.getRefundsCreated());
+            assertEquals(1, res.getPaymentsCancelled());
+            assertEquals(BookingPlanTeardownStatus.COMPLETED, res.getStatus());
+            assertEquals(1, res.getPaymentLinksCancelled());
+            assertEquals(6, res.getNotificationsSent());
+        }
+
+        @Test
+        @DisplayName("Payment của slot Locked vừa PAID -> không UPDATE, không huỷ link PayOS")
+        void teardownPlans_paymentJustPaid_shouldKeepLink() {
+            LocalDateTime start = LocalDateTime.now().plusDays(1).withHour(10);
+            when(bookingPlanSlotRepository.findByBookingPlanIDIn(anyCollection()))
+                    .thenReturn(List.of(buildSlot(10L, 1L, 999L, start, SlotStatus.Locked, 500L)));
+            // webhook đã chuyển payment 500 sang PAID → SELECT ... FOR UPDATE chỉ lấy PENDING/EXPIRED
+            when(paymentRepository.findUnpaidByIdsForUpdate(anyCollection())).thenReturn(List.of());
+
+            BookingPlanTeardownProgressResponse res = teardownService.teardownPlans(
+                    1L, 100L, List.of(buildPlan(1L)), BookingPlanTeardownReason.PLAN_DELETED);
+
+            verify(paymentRepository).findUnpaidByIdsForUpdate(argThat(ids -> ids.contains(500L)));
+            verify(paymentRepository, never()).cancelUnpaidByIds(anyCollection(), any());
+            verify(payOSService, never()).cancelPaymentLink(anyString());
+            assertEquals(0, res.getPaymentsCancelled());
+            assertEquals(0, res.getPaymentLinksCancelled());
+        }
+
+        @Test
+        @DisplayName("Payment PAID nhưng slot còn Locked (inbox chưa xử lý) -> tạo refund như slot Paid")
+        void teardownPlans_paidPaymentSlotStillLocked_shouldRefund() {
+            LocalDateTime start = LocalDateTime.now().plusDays(1).withHour(10);
+            when(bookingPlanSlotRepository.findByBookingPlanIDIn(anyCollection()))
+                    .thenReturn(List.of(buildSlot(10L, 1L, 999L, start, SlotStatus.Locked, 500L)));
+            when(paymentRepository.findUnpaidByIdsForUpdate(anyCollection())).thenReturn(List.of());
+            when(paymentRepository.findPaidIds(anyCollection())).thenReturn(List.of(500L));
+
+            BookingPlanTeardownProgressResponse res = teardownService.teardownPlans(
+                    1L, 100L, List.of(buildPlan(1L)), BookingPlanTeardownReason.PLAN_DELETED);
+
+            verify(paymentRepository).findPaidIds(argThat(ids -> ids.contains(500L)));
+            verify(paymentRepository, never()).cancelUnpaidByIds(anyCollection(), any());
+            verify(payOSService, never()).cancelPaymentLink(anyString());
+
+            ArgumentCaptor<List<RefundRequest>> refunds = ArgumentCaptor.forClass(List.class);
+            verify(refundRequestRepository).saveAll(refunds.capture());
+            assertEquals(1, refunds.getValue().size());
+            assertEquals(10L, refunds.getValue().get(0).getSlotId());
+            assertEquals(999L, refunds.getValue().get(0).getUserId());
+
+            assertTrue(savedNotifications.stream().anyMatch(n ->
+                    n.getUserId().equals(999L) && n.getType() == NotificationType.REFUND_AVAILABLE));
+            assertTrue(savedNotifications.stream().noneMatch(n ->
+                    n.getContent().contains("không bị trừ tiền")));
+            assertEquals(1, res.getRefundsCreated());
+            assertEquals(0, res.getPaymentsCancelled());
+        }
+
+        @Test
+        @DisplayName("Payment chưa gắn link PayOS -> vẫn bị huỷ, chỉ huỷ link của payment có link")
+        void teardownPlans_paymentWithoutLink_shouldStillCancel() {
+            LocalDateTime start = LocalDateTime.now().plusDays(1).withHour(10);
+            when(bookingPlanSlotRepository.findByBookingPlanIDIn(anyCollection()))
+                    .thenReturn(List.of(
+                            buildSlot(10L, 1L, 999L, start, SlotStatus.Locked, 500L),
+                            buildSlot(11L, 1L, 998L, start.plusHours(1), SlotStatus.Locked, 501L)
+                    ));
+            when(paymentRepository.findUnpaidByIdsForUpdate(anyCollection()))
+                    .thenReturn(List.of(buildPayment(500L, "LINK-500"), buildPayment(501L, null)));
+            when(paymentRepository.cancelUnpaidByIds(anyCollection(), any())).thenReturn(2);
+
+            BookingPlanTeardownProgressResponse res = teardownService.teardownPlans(
+                    1L, 100L, List.of(buildPlan(1L)), BookingPlanTeardownReason.PLAN_DELETED);
+
+            verify(paymentRepository).cancelUnpaidByIds(eq(Set.of(500L, 501L)), any());
+            verify(paymentRepository, never()).findPaidIds(anyCollection());
+            verify(payOSService, times(1)).cancelPaymentLink(anyString());
+            verify(payOSService).cancelPaymentLink("LINK-500");
+            assertEquals(2, res.getPaymentsCancelled());
+            assertEquals(1, res.getPaymentLinksCancelled());
+        }
+
+        @Test
+        @DisplayName("TUTOR_SUSPENDED -> chỉ notify learner, không notify tutor")
+        void teardownPlans_tutorSuspended_shouldNotifyLearnerOnly() {
+            LocalDateTime start = LocalDateTime.now().plusDays(1).withHour(10);
+            when(bookingPlanSlotRepository.findByBookingPlanIDIn(anyCollection()))
+                    .thenReturn(List.of(
+                            buildSlot(10L, 1L, 999L, start, SlotStatus.Paid, null),
+                            buildSlot(11L, 2L, 998L, start, SlotStatus.Available, null)
+                    ));
+
+            teardownService.teardownPlans(1L, 100L, List.of(buildPlan(1L), buildPlan(2L)),
+                    BookingPlanTeardownReason.TUTOR_SUSPENDED);
+
+            assertEquals(2, savedNotifications.size());
+            assertTrue(savedNotifications.stream().noneMatch(n -> n.getUserId().equals(100L)));
+            verify(bookingPlanRepository).deleteAllByIdInBatch(argThat(ids -> ((Collection<?>) ids).size() == 2));
+        }
+
+        @Test
+        @DisplayName("Nhiều notification -> ghi theo chunk 100")
+        void teardownPlans_manyNotifications_shouldChunkInserts() {
+            LocalDateTime start = LocalDateTime.now().plusDays(1).withHour(10);
+            List<BookingPlanSlot> slots = new ArrayList<>();
+            for (long i = 0; i < 250; i++) {
+                slots.add(buildSlot(i, 1L, 1000L + i, start, SlotStatus.Available, null));
+            }
+            when(bookingPlanSlotRepository.findByBookingPlanIDIn(anyCollection())).thenReturn(slots);
+
+            BookingPlanTeardownProgressResponse res = teardownService.teardownPlans(
+                    1L, null, List.of(buildPlan(1L)), BookingPlanTeardownReason.TUTOR_SUSPENDED);
+
+            verify(notificationRepository, times(3)).saveAll(anyList());
+            assertEquals(250, res.getNotificationsSent());
+        }
+    }
+
+    @Nested
+    @DisplayName("BookingPlanTeardownService.releaseSlots")
+    class ReleaseSlotsTests {
+
+        @Test
+        @DisplayName("Slot quá khứ / hôm nay bị bỏ qua, slot trống tương lai bị xoá theo lô")
+        void releaseSlots_shouldSkipPastAndTodayAndDeleteEmpty() {
+            LocalDateTime now = LocalDateTime.now();
+            BookingPlanSlot past = buildSlot(1L, 1L, 999L, now.minusDays(2), SlotStatus.Paid, null);
+            BookingPlanSlot today = buildSlot(2L, 1L, 999L, now.withHour(23).withMinute(0), SlotStatus.Paid, null);
+            BookingPlanSlot emptyFuture = buildSlot(3L, 1L, null, now.plusDays(2), SlotStatus.Available, null);
+
+            BookingPlanTeardownProgressResponse res = teardownService.releaseSlots(
+                    buildPlan(1L), buildTutor(), List.of(past, today, emptyFuture));
+
+            verify(bookingPlanSlotRepository).deleteAllByIdInBatch(List.of(3L));
+            verify(refundRequestRepository, never()).saveAll(anyList());
+            verify(bookingPlanSlotRepository, never()).markSlotsRejected(anyCollection());
+            assertEquals(1, res.getSlotsAffected());
+            assertTrue(savedNotifications.isEmpty());
+        }
+
+        @Test
+        @DisplayName("Slot Paid -> refund TUTOR_RESCHEDULE + Rejected theo lô, bỏ qua slot đã có refund")
+        void releaseSlots_paid_shouldRefundAndReject() {
+            LocalDateTime start = LocalDateTime.now().plusDays(2).withHour(19);
+            BookingPlanSlot paid = buildSlot(10L, 1L, 999L, start, SlotStatus.Paid, null);
+            BookingPlanSlot alreadyRefunded = buildSlot(11L, 1L, 998L, start.plusHours(1), SlotStatus.Paid, null);
+            when(refundRequestRepository.findSlotIdsWithRefund(anyCollection(), anyCollection()))
+                    .thenReturn(List.of(11L));
+
+            Tutor tutor = buildTutor();
+            BookingPlanTeardownProgressResponse res = teardownService.releaseSlots(
+                    buildPlan(1L), tutor, List.of(paid, alreadyRefunded));
+
+            ArgumentCaptor<List<RefundRequest>> refunds = ArgumentCaptor.forClass(List.class);
+            verify(refundRequestRepository).saveAll(refunds.capture());
+            assertEquals(1, refunds.getValue().size());
+            RefundRequest refund = refunds.getValue().get(0);
+            assertEquals(10L, refund.getSlotId());
+            assertEquals(RefundType.TUTOR_RESCHEDULE, refund.getRefundType());
+            assertSame(tutor, refund.getTutor());
+
+            verify(bookingPlanSlotRepository).markSlotsRejected(List.of(10L));
+            verify(bookingPlanSlotRepository, never()).save(any());
+
+            assertEquals(2, savedNotifications.size());
+            assertTrue(savedNotifications.stream().anyMatch(n ->
+                    n.getUserId().equals(999L)
+                            && n.getPrimaryActionUrl().equals("/learner/refunds/" + refund.getRefundRequestId())));
+            assertTrue(savedNotifications.stream().noneMatch(n -> n.getUserId().equals(998L)));
+            assertEquals(1, res.getRefundsCreated());
+        }
+
+        @Test
+        @DisplayName("Slot Locked nhưng payment đã PAID -> refund TUTOR_RESCHEDULE + Rejected")
+        void releaseSlots_paidPaymentSlotStillLocked_shouldRefundAndReject() {
+            LocalDateTime start = LocalDateTime.now().plusDays(2).withHour(19);
+            BookingPlanSlot locked = buildSlot(10L, 1L, 999L, start, SlotStatus.Locked, 500L);
+            when(paymentRepository.findUnpaidByIdsForUpdate(anyCollection())).thenReturn(List.of());
+            when(paymentRepository.findPaidIds(anyCollection())).thenReturn(List.of(500L));
+
+            BookingPlanTeardownProgressResponse res = teardownService.releaseSlots(
+                    buildPlan(1L), buildTutor(), List.of(locked));
+
+            ArgumentCaptor<List<RefundRequest>> refunds = ArgumentCaptor.forClass(List.class);
+            verify(refundRequestRepository).saveAll(refunds.capture());
+            assertEquals(10L, refunds.getValue().get(0).getSlotId());
+            assertEquals(RefundType.TUTOR_RESCHEDULE, refunds.getValue().get(0).getRefundType());
+            verify(bookingPlanSlotRepository).markSlotsRejected(List.of(10L));
+            assertEquals(1, res.getRefundsCreated());
+        }
+    }
+
+    @Nested
+    @DisplayName("Task async + progress")
+    class AsyncTests {
+
+        private BookingPlanTeardownProgressResponse teardownOneLockedSlot() {
+            LocalDateTime start = LocalDateTime.now().plusDays(1).withHour(10);
+            when(bookingPlanSlotRepository.findByBookingPlanIDIn(anyCollection()))
+                    .thenReturn(List.of(buildSlot(10L, 1L, 999L, start, SlotStatus.Locked, 500L)));
+            when(paymentRepository.findUnpaidByIdsForUpdate(anyCollection()))
+                    .thenReturn(List.of(buildPayment(500L, "LINK-500")));
+            return teardownService.teardownPlans(1L, 100L, List.of(buildPlan(1L)),
+                    BookingPlanTeardownReason.PLAN_DELETED);
+        }
+
+        @Test
+        @DisplayName("PayOS lỗi 2 lần rồi thành công -> retry, COMPLETED")
+        void cancelLink_transientFailure_shouldRetry() {
+            when(payOSService.cancelPaymentLink("LINK-500")).thenReturn(false, false, true);
+
+            BookingPlanTeardownProgressResponse res = teardownOneLockedSlot();
+
+            verify(payOSService, times(3)).cancelPaymentLink("LINK-500");
+            assertEquals(BookingPlanTeardownStatus.COMPLETED, res.getStatus());
+            assertEquals(1, res.getPaymentLinksCancelled());
+        }
+
+        @Test
+        @DisplayName("PayOS lỗi hết lượt retry -> COMPLETED_WITH_ERRORS")
+        void cancelLink_permanentFailure_shouldReportError() {
+            when(payOSService.cancelPaymentLink("LINK-500")).thenReturn(false);
+            doThrow(new RuntimeException("db down")).when(notificationRepository).saveAll(anyList());
+
+            BookingPlanTeardownProgressResponse res = teardownOneLockedSlot();
+
+            verify(payOSService, times(3)).cancelPaymentLink("LINK-500");
+            assertEquals(BookingPlanTeardownStatus.COMPLETED_WITH_ERRORS, res.getStatus());
+            assertEquals(1, res.getPaymentLinksFailed());
+            assertEquals(2, res.getNotificationsFailed());
+        }
+
+        @Test
+        @DisplayName("Trong transaction -> chờ commit; rollback -> không gọi PayOS, ROLLED_BACK")
+        void transactionRollback_shouldNotDispatch() {
+            TransactionSynchronizationManager.initSynchronization();
+            try {
+                BookingPlanTeardownProgressResponse res = teardownOneLockedSlot();
+
+                assertEquals(BookingPlanTeardownStatus.QUEUED, res.getStatus());
+                verify(payOSService, never()).cancelPaymentLink(anyString());
+
+                for (TransactionSynchronization sync : TransactionSynchronizationManager.getSynchronizations()) {
+                    sync.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK);
+                }
+
+                verify(payOSService, never()).cancelPaymentLink(anyString());
+                assertEquals(BookingPlanTeardownStatus.ROLLED_BACK,
+                        teardownService.getProgress(res.getJobId(), 1L).orElseThrow().getStatus());
+            } finally {
+                TransactionSynchronizationManager.clearSynchronization();
+            }
+        }
+
+        @Test
+        @DisplayName("getProgress: job của tutor khác -> empty")
+        void getProgress_otherTutor_shouldBeEmpty() {
+            BookingPlanTeardownProgressResponse res = teardownOneLockedSlot();
+
+            assertTrue(teardownService.getProgress(res.getJobId(), 1L).isPresent());
+            assertTrue(teardownService.getProgress(res.getJobId(), 2L).isEmpty());
+            assertTrue(teardownService.getProgress("unknown", 1L).isEmpty());
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package edu.lms.service;
+
+import edu.lms.entity.Payment;
+import edu.lms.enums.PaymentStatus;
+import edu.lms.enums.PaymentType;
+import edu.lms.repository.PaymentRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * CheckoutRateLimiterTest
+ *
+ * Cover:
+ *  - đủ 3 payment Booking CANCELLED / EXPIRED trong 1h theo (user, plan) → chặn; quá 1h hoặc plan khác → không
+ *  - trong transaction: bộ đếm chỉ tăng sau commit
+ *  - rate limit checkout theo user / phút, số key bị chặn bởi maxKeys
+ *  - dựng lại từ payment 1h gần nhất khi khởi động
+ */
+@ExtendWith(MockitoExtension.class)
+class CheckoutRateLimiterTest {
+
+    @Mock
+    PaymentRepository paymentRepository;
+
+    CheckoutRateLimiter checkoutRateLimiter;
+
+    @BeforeEach
+    void setUp() {
+        checkoutRateLimiter = new CheckoutRateLimiter(paymentRepository, 2, 3);
+    }
+
+    private Payment failedBooking(Long userId, Long planId, LocalDateTime createdAt) {
+        return Payment.builder()
+                .userId(userId)
+                .targetId(planId)
+                .paymentType(PaymentType.Booking)
+                .status(PaymentStatus.CANCELLED)
+                .createdAt(createdAt)
+                .build();
+    }
+
+    @Test
+    @DisplayName("3 lần huỷ / hết hạn trong 1h cùng plan -> chặn, plan khác không bị ảnh hưởng")
+    void tooManyFailedBookings_threeInWindow_shouldBlock() {
+        LocalDateTime now = LocalDateTime.now();
+        checkoutRateLimiter.recordFailedBooking(failedBooking(1L, 20L, now.minusMinutes(50)));
+        checkoutRateLimiter.recordFailedBooking(failedBooking(1L, 20L, now.minusMinutes(10)));
+        assertFalse(checkoutRateLimiter.tooManyFailedBookings(1L, 20L));
+
+        checkoutRateLimiter.recordFailedBooking(failedBooking(1L, 20L, now.minusMinutes(1)));
+
+        assertTrue(checkoutRateLimiter.tooManyFailedBookings(1L, 20L));
+        assertFalse(checkoutRateLimiter.tooManyFailedBookings(1L, 21L));
+        assertFalse(checkoutRateLimiter.tooManyFailedBookings(2L, 20L));
+    }
+
+    @Test
+    @DisplayName("Payment tạo quá 1h trước hoặc không phải Booking -> không tính")
+    void tooManyFailedBookings_oldOrNonBooking_shouldNotCount() {
+        LocalDateTime now = LocalDateTime.now();
+        checkoutRateLimiter.recordFailedBooking(failedBooking(1L, 20L, now.minusHours(2)));
+        checkoutRateLimiter.recordFailedBooking(failedBooking(1L, 20L, now.minusMinutes(5)));
+        Payment course = failedBooking(1L, 20L, now.minusMinutes(3));
+        course.setPaymentType(PaymentType.Course);
+        checkoutRateLimiter.recordFailedBooking(course);
+        checkoutRateLimiter.recordFailedBooking(failedBooking(1L, 20L, now.minusMinutes(2)));
+
+        assertFalse(checkoutRateLimiter.tooManyFailedBookings(1L, 20L));
+    }
+
+    @Test
+    @DisplayName("Trong transaction -> chỉ đếm sau commit")
+    void recordFailedBooking_inTransaction_shouldApplyAfterCommit() {
+        LocalDateTime now = LocalDateTime.now();
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            for (int i = 0; i < 3; i++) {
+                checkoutRateLimiter.recordFailedBooking(failedBooking(1L, 20L, now.minusMinutes(i)));
+            }
+            assertFalse(checkoutRateLimiter.tooManyFailedBookings(1L, 20L));
+
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertTrue(checkoutRateLimiter.tooManyFailedBookings(1L, 20L));
+    }
+
+    @Test
+    @DisplayName("Checkout quá 2 lần / phút -> vượt giới hạn, user khác vẫn được")
+    void overCheckoutLimit_shouldLimitPerUser() {
+        assertFalse(checkoutRateLimiter.overCheckoutLimit(1L));
+        assertFalse(checkoutRateLimiter.overCheckoutLimit(1L));
+        assertTrue(checkoutRateLimiter.overCheckoutLimit(1L));
+
+        assertFalse(checkoutRateLimiter.overCheckoutLimit(2L));
+        assertFalse(checkoutRateLimiter.overCheckoutLimit(null));
+    }
+
+    @Test
+    @DisplayName("Nhiều user hơn maxKeys -> số key theo dõi không vượt maxKeys")
+    void overCheckoutLimit_manyUsers_shouldStayBounded() {
+        for (long userId = 1; userId <= 10; userId++) {
+            checkoutRateLimiter.overCheckoutLimit(userId);
+        }
+
+        assertTrue(checkoutRateLimiter.trackedKeys() <= 3);
+        // User mới nhất vẫn được theo dõi
+        checkoutRateLimiter.overCheckoutLimit(10L);
+        assertTrue(checkoutRateLimiter.overCheckoutLimit(10L));
+    }
+
+    @Test
+    @DisplayName("Khởi động -> dựng lại bộ đếm từ payment CANCELLED / EXPIRED trong 1h")
+    void rebuildOnStartup_shouldLoadRecentFailedBookings() {
+        LocalDateTime now = LocalDateTime.now();
+        when(paymentRepository.findByPaymentTypeAndStatusInAndCreatedAtAfter(
+                eq(PaymentType.Booking), anyCollection(), any(LocalDateTime.class)))
+                .thenReturn(List.of(
+                        failedBooking(1L, 20L, now.minusMinutes(30)),
+                        failedBooking(1L, 20L, now.minusMinutes(20)),
+                        failedBooking(1L, 20L, now.minusMinutes(10)),
+                        failedBooking(2L, 20L, now.minusMinutes(10))));
+
+        checkoutRateLimiter.rebuildOnStartup();
+
+        assertTrue(checkoutRateLimiter.tooManyFailedBookings(1L, 20L));
+        assertFalse(checkoutRateLimiter.tooManyFailedBookings(2L, 20L));
+        verify(paymentRepository).findByPaymentTypeAndStatusInAndCreatedAtAfter(
+                eq(PaymentType.Booking), eq(List.of(PaymentStatus.CANCELLED, PaymentStatus.EXPIRED)),
+                any(LocalDateTime.class));
+    }
+}
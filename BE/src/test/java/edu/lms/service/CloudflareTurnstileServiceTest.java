@@ -0,0 +1,130 @@
+package edu.lms.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * CloudflareTurnstileServiceTest – chạy với TurnstileStubServer local
+ *
+ * Cover:
+ *  - token hợp lệ / không hợp lệ, token rỗng
+ *  - request đồng thời cùng token chỉ gọi Cloudflare 1 lần
+ *  - không cache kết quả: token dùng 1 lần, verify lại sau khi xong phải gọi Cloudflare lần nữa
+ *  - enabled=false không gọi Cloudflare
+ *  - verifyAsync trả về ngay, không chờ network
+ */
+class CloudflareTurnstileServiceTest {
+
+    TurnstileStubServer stub;
+    ThreadPoolTaskExecutor executor;
+    CloudflareTurnstileService service;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        stub = new TurnstileStubServer();
+        executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(4);
+        executor.setMaxPoolSize(4);
+        executor.initialize();
+        service = buildService(true);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        service.close();
+        executor.shutdown();
+        stub.close();
+    }
+
+    private CloudflareTurnstileService buildService(boolean enabled) {
+        return new CloudflareTurnstileService("secret", enabled, stub.verifyUrl(), 1000, executor);
+    }
+
+    @Test
+    @DisplayName("Token hợp lệ -> true, token sai -> false")
+    void verify_validAndInvalidToken() {
+        assertTrue(service.verify("ok-token"));
+        assertFalse(service.verify("bad-token"));
+        assertEquals(2, stub.requestCount());
+    }
+
+    @Test
+    @DisplayName("Token rỗng -> false, không gọi Cloudflare")
+    void verify_blankToken_shouldNotCallCloudflare() {
+        assertFalse(service.verify(" "));
+        assertFalse(service.verify(null));
+        assertEquals(0, stub.requestCount());
+    }
+
+    @Test
+    @DisplayName("Verify lại cùng token sau khi xong -> không dùng kết quả cũ, gọi Cloudflare lần nữa")
+    void verify_sameTokenTwice_shouldNotBeCached() {
+        assertTrue(service.verify("ok-token"));
+        assertEquals(0, service.inFlightCount());
+
+        service.verify("ok-token");
+        assertEquals(2, stub.requestCount());
+        assertEquals(0, service.inFlightCount());
+    }
+
+    @Test
+    @DisplayName("20 request đồng thời cùng token -> gọi Cloudflare 1 lần")
+    void verifyAsync_concurrentSameToken_shouldDeduplicate() {
+        stub.latency(100);
+
+        List<CompletableFuture<Boolean>> futures = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            futures.add(service.verifyAsync("ok-concurrent"));
+        }
+
+        futures.forEach(f -> assertTrue(f.join()));
+        assertEquals(1, stub.requestCount());
+        assertEquals(0, service.inFlightCount());
+    }
+
+    @Test
+    @DisplayName("Cloudflare lỗi 500 -> false, lần sau gọi lại")
+    void verify_networkError_shouldRetryNextTime() {
+        stub.failNext(1);
+
+        assertFalse(service.verify("ok-token"));
+        assertEquals(0, service.inFlightCount());
+
+        assertTrue(service.verify("ok-token"));
+        assertEquals(2, stub.requestCount());
+    }
+
+    @Test
+    @DisplayName("enabled=false -> luôn true, không gọi Cloudflare")
+    void verify_disabled_shouldSkip() throws Exception {
+        CloudflareTurnstileService disabled = buildService(false);
+        try {
+            assertTrue(disabled.verify("anything"));
+            assertEquals(0, stub.requestCount());
+        } finally {
+            disabled.close();
+        }
+    }
+
+    @Test
+    @DisplayName("Cloudflare chậm 300ms -> verifyAsync trả về ngay")
+    void verifyAsync_slowCloudflare_shouldNotBlockCaller() {
+        stub.latency(300);
+
+        long start = System.nanoTime();
+        CompletableFuture<Boolean> future = service.verifyAsync("ok-slow");
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+        assertTrue(elapsedMs < 200, "verifyAsync blocked for " + elapsedMs + "ms");
+        assertTrue(future.join());
+    }
+}
@@ -0,0 +1,272 @@
+package edu.lms.service;
+
+import com.cloudinary.Cloudinary;
+import edu.lms.dto.request.DirectUploadCompleteRequest;
+import edu.lms.dto.response.DirectUploadSignatureResponse;
+import edu.lms.dto.response.FileUrlResponse;
+import edu.lms.entity.UploadedBlob;
+import edu.lms.exception.AppException;
+import edu.lms.exception.ErrorCode;
+import edu.lms.repository.UploadedBlobRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.mock.web.MockMultipartFile;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * CloudinaryServiceTest – upload thật qua HTTP tới CloudinaryStubServer local
+ *
+ * Cover:
+ *  - file nhỏ: 1 request, document upload dạng raw, viewUrl qua Google Docs, downloadUrl fl_attachment:<tên file>
+ *  - file lớn hơn chunk: upload_large nhiều request ≤ chunk, cùng X-Unique-Upload-Id, Content-Range liên tục
+ *  - file tạm bị xoá sau upload
+ *  - dedup: lưu SHA-256 → secure_url sau upload, nội dung đã có -> dùng lại URL, không gửi request,
+ *    tên file tải về theo người upload lần này
+ *  - direct upload: chữ ký tham số đúng, verify chữ ký response / URL lạ / URL khác public_id đã ký -> INVALID_UPLOAD_SIGNATURE
+ */
+class CloudinaryServiceTest {
+
+    private static final String API_SECRET = "stub-secret";
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    CloudinaryStubServer stub;
+    Cloudinary cloudinary;
+    UploadedBlobRepository uploadedBlobRepository;
+    CloudinaryService service;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        stub = new CloudinaryStubServer();
+        cloudinary = new Cloudinary("cloudinary://stub-key:" + API_SECRET + "@demo");
+        cloudinary.config.uploadPrefix = stub.endpoint();
+        // mock mặc định trả Optional.empty() → chưa có blob nào trong index
+        uploadedBlobRepository = mock(UploadedBlobRepository.class);
+        service = new CloudinaryService(cloudinary, uploadedBlobRepository, CHUNK_SIZE);
+    }
+
+    @AfterEach
+    void tearDown() {
+        stub.close();
+    }
+
+    private static byte[] randomBytes(int size) {
+        byte[] bytes = new byte[size];
+        new Random(42).nextBytes(bytes);
+        return bytes;
+    }
+
+    private static String sha1Hex(String value) throws Exception {
+        return HexFormat.of().formatHex(
+                MessageDigest.getInstance("SHA-1").digest(value.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static String sha256Hex(byte[] value) throws Exception {
+        return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(value));
+    }
+
+    // Ghi nhận file đích của transferTo để kiểm tra file tạm đã bị xoá
+    static class TrackingMultipartFile extends MockMultipartFile {
+        File transferredTo;
+
+        TrackingMultipartFile(String filename, byte[] content) {
+            super("file", filename, "application/octet-stream", content);
+        }
+
+        @Override
+        public void transferTo(File dest) throws IOException, IllegalStateException {
+            transferredTo = dest;
+            super.transferTo(dest);
+        }
+    }
+
+    @Nested
+    @DisplayName("CloudinaryService.uploadFile")
+    class UploadTests {
+
+        @Test
+        @DisplayName("PDF nhỏ hơn chunk -> 1 request raw, viewUrl Google Docs, file tạm bị xoá")
+        void upload_smallDocument_shouldSendSingleRequest() {
+            TrackingMultipartFile file = new TrackingMultipartFile("Report 1.pdf", randomBytes(10_000));
+
+            FileUrlResponse response = service.uploadFile(file, "uploads");
+
+            assertEquals(1, stub.requestCount());
+            CloudinaryStubServer.UploadRequest request = stub.requests().get(0);
+            assertEquals("raw", request.resourceType());
+            assertEquals("uploads/Report 1.pdf", request.publicId());
+            assertNull(request.contentRange());
+
+            assertTrue(response.getViewUrl().startsWith("https://docs.google.com/gview?url="));
+            assertTrue(response.getDownloadUrl().contains("/raw/upload/fl_attachment:Report_1/v"));
+            assertNotNull(file.transferredTo);
+            assertFalse(file.transferredTo.exists());
+        }
+
+        @Test
+        @DisplayName("Video lớn hơn chunk -> upload_large từng phần ≤ chunk, cùng upload id")
+        void upload_largeFile_shouldSendChunks() {
+            int size = 5 * CHUNK_SIZE - 1000;
+            TrackingMultipartFile file = new TrackingMultipartFile("lesson.mp4", randomBytes(size));
+
+            FileUrlResponse response = service.uploadFile(file, "uploads");
+
+            List<CloudinaryStubServer.UploadRequest> requests = stub.requests();
+            assertEquals(5, requests.size());
+            assertEquals(1, requests.stream().map(CloudinaryStubServer.UploadRequest::uniqueUploadId).distinct().count());
+            assertNotNull(requests.get(0).uniqueUploadId());
+            assertTrue(requests.stream().allMatch(r -> r.contentRange() != null));
+            assertTrue(requests.get(0).contentRange().startsWith("bytes 0-" + (CHUNK_SIZE - 1) + "/"));
+            assertTrue(requests.get(4).contentRange().endsWith("-" + (size - 1) + "/" + size));
+            // mỗi request chỉ mang 1 chunk (+ phần header multipart)
+            assertTrue(requests.stream().allMatch(r -> r.bodyBytes() < CHUNK_SIZE + 4096));
+
+            assertEquals(response.getViewUrl(), "https://res.cloudinary.com/demo/video/upload/v"
+                    + CloudinaryStubServer.VERSION + "/uploads/lesson.mp4");
+            assertFalse(file.transferredTo.exists());
+        }
+
+        @Test
+        @DisplayName("Upload lỗi -> RuntimeException, file tạm vẫn bị xoá")
+        void upload_storageDown_shouldThrowAndCleanUp() {
+            stub.close();
+            TrackingMultipartFile file = new TrackingMultipartFile("a.pdf", randomBytes(100));
+
+            assertThrows(RuntimeException.class, () -> service.uploadFile(file, "uploads"));
+            assertFalse(file.transferredTo.exists());
+        }
+    }
+
+    @Nested
+    @DisplayName("CloudinaryService dedup theo nội dung")
+    class DedupTests {
+
+        @Test
+        @DisplayName("Nội dung mới -> upload rồi lưu SHA-256 + secure_url vào index")
+        void upload_newContent_shouldIndexBlob() throws Exception {
+            byte[] content = randomBytes(5 * CHUNK_SIZE - 1000);
+
+            service.uploadFile(new TrackingMultipartFile("lesson.mp4", content), "uploads");
+
+            ArgumentCaptor<UploadedBlob> captor = ArgumentCaptor.forClass(UploadedBlob.class);
+            verify(uploadedBlobRepository).findByContentHashAndResourceType(sha256Hex(content), "auto");
+            verify(uploadedBlobRepository).save(captor.capture());
+            UploadedBlob blob = captor.getValue();
+            assertEquals(sha256Hex(content), blob.getContentHash());
+            assertEquals("auto", blob.getResourceType());
+            assertEquals((long) content.length, blob.getSizeBytes());
+            assertEquals("https://res.cloudinary.com/demo/video/upload/v"
+                    + CloudinaryStubServer.VERSION + "/uploads/lesson.mp4", blob.getSecureUrl());
+        }
+
+        @Test
+        @DisplayName("Nội dung đã có -> dùng lại URL cũ, tải về theo tên file mới, không gửi request, file tạm vẫn bị xoá")
+        void upload_knownContent_shouldReuseUrl() throws Exception {
+            byte[] content = randomBytes(10_000);
+            String storedUrl = "https://res.cloudinary.com/demo/raw/upload/v1/uploads/Old.pdf";
+            when(uploadedBlobRepository.findByContentHashAndResourceType(sha256Hex(content), "raw"))
+                    .thenReturn(Optional.of(UploadedBlob.builder().blobId(5L).secureUrl(storedUrl).build()));
+            TrackingMultipartFile file = new TrackingMultipartFile("Copy.pdf", content);
+
+            FileUrlResponse response = service.uploadFile(file, "uploads");
+
+            assertEquals(0, stub.requestCount());
+            assertEquals("https://res.cloudinary.com/demo/raw/upload/fl_attachment:Copy/v1/uploads/Old.pdf",
+                    response.getDownloadUrl());
+            assertTrue(response.getViewUrl().startsWith("https://docs.google.com/gview?url="));
+            verify(uploadedBlobRepository).markReused(eq(5L), any());
+            verify(uploadedBlobRepository, never()).save(any());
+            assertFalse(file.transferredTo.exists());
+        }
+    }
+
+    @Nested
+    @DisplayName("CloudinaryService direct upload")
+    class DirectUploadTests {
+
+        @Test
+        @DisplayName("Ký tham số upload: signature = sha1(params đã sắp xếp + secret)")
+        void signDirectUpload_shouldSignParams() throws Exception {
+            DirectUploadSignatureResponse response = service.signDirectUpload("Slide.pptx", "uploads");
+
+            String expected = sha1Hex("folder=uploads&public_id=Slide.pptx&timestamp=" + response.getTimestamp()
+                    + "&unique_filename=true&use_filename=false" + API_SECRET);
+            assertEquals(expected, response.getSignature());
+            assertEquals(stub.endpoint() + "/v1_1/demo/raw/upload", response.getUploadUrl());
+            assertEquals("stub-key", response.getApiKey());
+            assertEquals("Slide.pptx", response.getPublicId());
+            assertEquals(0, stub.requestCount());
+        }
+
+        @Test
+        @DisplayName("Kết quả có chữ ký Cloudinary hợp lệ -> trả URL, không upload qua backend")
+        void completeDirectUpload_validSignature_shouldReturnUrls() throws Exception {
+            String publicId = "uploads/Slide.pptx";
+            DirectUploadCompleteRequest request = DirectUploadCompleteRequest.builder()
+                    .fileName("Slide.pptx")
+                    .publicId(publicId)
+                    .version(123L)
+                    .signature(sha1Hex("public_id=" + publicId + "&version=123" + API_SECRET))
+                    .secureUrl("https://res.cloudinary.com/demo/raw/upload/v123/" + publicId)
+                    .build();
+
+            FileUrlResponse response = service.completeDirectUpload(request);
+
+            assertTrue(response.getViewUrl().startsWith("https://docs.google.com/gview?url="));
+            assertEquals("https://res.cloudinary.com/demo/raw/upload/fl_attachment:Slide/v123/" + publicId,
+                    response.getDownloadUrl());
+            assertEquals(0, stub.requestCount());
+        }
+
+        @Test
+        @DisplayName("Chữ ký sai, URL không thuộc cloud hoặc trỏ file khác -> INVALID_UPLOAD_SIGNATURE")
+        void completeDirectUpload_invalid_shouldThrow() throws Exception {
+            String publicId = "uploads/a.pdf";
+            DirectUploadCompleteRequest tampered = DirectUploadCompleteRequest.builder()
+                    .fileName("a.pdf")
+                    .publicId(publicId)
+                    .version(123L)
+                    .signature("deadbeef")
+                    .secureUrl("https://res.cloudinary.com/demo/raw/upload/v123/" + publicId)
+                    .build();
+            DirectUploadCompleteRequest foreignUrl = DirectUploadCompleteRequest.builder()
+                    .fileName("a.pdf")
+                    .publicId(publicId)
+                    .version(123L)
+                    .signature(sha1Hex("public_id=" + publicId + "&version=123" + API_SECRET))
+                    .secureUrl("https://evil.example.com/demo/raw/upload/v123/" + publicId)
+                    .build();
+            // chữ ký thật của a.pdf nhưng URL trỏ sang file khác cùng version
+            DirectUploadCompleteRequest otherFile = DirectUploadCompleteRequest.builder()
+                    .fileName("a.pdf")
+                    .publicId(publicId)
+                    .version(123L)
+                    .signature(sha1Hex("public_id=" + publicId + "&version=123" + API_SECRET))
+                    .secureUrl("https://res.cloudinary.com/demo/raw/upload/v123/uploads/other.pdf")
+                    .build();
+
+            AppException ex1 = assertThrows(AppException.class, () -> service.completeDirectUpload(tampered));
+            AppException ex2 = assertThrows(AppException.class, () -> service.completeDirectUpload(foreignUrl));
+            AppException ex3 = assertThrows(AppException.class, () -> service.completeDirectUpload(otherFile));
+            assertEquals(ErrorCode.INVALID_UPLOAD_SIGNATURE, ex1.getErrorcode());
+            assertEquals(ErrorCode.INVALID_UPLOAD_SIGNATURE, ex2.getErrorcode());
+            assertEquals(ErrorCode.INVALID_UPLOAD_SIGNATURE, ex3.getErrorcode());
+        }
+    }
+}
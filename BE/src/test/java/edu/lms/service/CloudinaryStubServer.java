@@ -0,0 +1,128 @@
+package edu.lms.service;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Cloudinary upload API giả chạy local cho test (không upload lên Cloudinary thật).
+ *  - POST /v1_1/{cloud}/{resource_type}/upload → trả public_id / version / secure_url
+ * Có thể cấu hình độ trễ mỗi request và trả lỗi cho N request tiếp theo.
+ * Lưu từng request nhận được (kích thước body, Content-Range, X-Unique-Upload-Id) để kiểm tra upload theo chunk.
+ * Dùng bằng cách set cloudinary.config.uploadPrefix = endpoint().
+ */
+class CloudinaryStubServer implements AutoCloseable {
+
+    static final long VERSION = 1700000000L;
+
+    private static final Pattern FIELD = Pattern.compile(
+            "name=\"(public_id|folder)\"\r\n(?:[^\r\n]+\r\n)*\r\n([^\r]*)\r\n");
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newFixedThreadPool(8);
+    private final AtomicInteger requestCount = new AtomicInteger();
+    private final List<UploadRequest> requests = new CopyOnWriteArrayList<>();
+    private final AtomicInteger failuresLeft = new AtomicInteger();
+    private volatile long latencyMs = 0;
+
+    CloudinaryStubServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/v1_1/", this::handle);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    String endpoint() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    int requestCount() {
+        return requestCount.get();
+    }
+
+    List<UploadRequest> requests() {
+        return requests;
+    }
+
+    CloudinaryStubServer latency(long millis) {
+        latencyMs = millis;
+        return this;
+    }
+
+    CloudinaryStubServer failNext(int count) {
+        failuresLeft.set(count);
+        return this;
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        requestCount.incrementAndGet();
+        byte[] body = exchange.getRequestBody().readAllBytes();
+
+        if (latencyMs > 0) {
+            try {
+                Thread.sleep(latencyMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        if (failuresLeft.getAndUpdate(n -> n > 0 ? n - 1 : 0) > 0) {
+            write(exchange, 500, "{\"error\":{\"message\":\"stub failure\"}}");
+            return;
+        }
+
+        // /v1_1/{cloud}/{resource_type}/upload
+        String[] path = exchange.getRequestURI().getPath().split("/");
+        String cloud = path[2];
+        String resourceType = path[3];
+
+        String publicId = "file";
+        String folder = null;
+        Matcher m = FIELD.matcher(new String(body, StandardCharsets.ISO_8859_1));
+        while (m.find()) {
+            if (m.group(1).equals("public_id")) publicId = m.group(2);
+            else folder = m.group(2);
+        }
+        String fullId = folder != null ? folder + "/" + publicId : publicId;
+
+        requests.add(new UploadRequest(resourceType, fullId, body.length,
+                exchange.getRequestHeaders().getFirst("Content-Range"),
+                exchange.getRequestHeaders().getFirst("X-Unique-Upload-Id")));
+
+        String deliveryType = resourceType.equals("auto") ? "video" : resourceType;
+        String secureUrl = "https://res.cloudinary.com/" + cloud + "/" + deliveryType
+                + "/upload/v" + VERSION + "/" + fullId;
+        write(exchange, 200, """
+                {"public_id":"%s","version":%d,"resource_type":"%s","secure_url":"%s"}
+                """.formatted(fullId, VERSION, deliveryType, secureUrl));
+    }
+
+    private static void write(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(bytes);
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    record UploadRequest(String resourceType, String publicId, int bodyBytes,
+                         String contentRange, String uniqueUploadId) {}
+}
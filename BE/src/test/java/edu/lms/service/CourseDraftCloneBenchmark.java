@@ -0,0 +1,220 @@
+package edu.lms.service;
+
+import edu.lms.entity.*;
+import edu.lms.enums.LessonType;
+import edu.lms.enums.ResourceType;
+import edu.lms.repository.*;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.mockito.stubbing.Answer;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BiConsumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Đo thời gian tạo draft cho course 50 section x 10 lesson (1/5 là Quiz 10 câu x 4 option, mỗi lesson 1 resource)
+ * so với cách cũ (save từng entity IDENTITY, lazy load lessons / resources / options, 1 query quiz / lesson).
+ * Repository là mock, mỗi lần gọi = 1 round trip DB giả lập ROUND_TRIP_MICROS;
+ * 1 lô JDBC batch (INSERT nhiều dòng) tính 1 round trip.
+ * Không chạy trong build thường: mvn test -Pbenchmark -Dtest=CourseDraftCloneBenchmark
+ */
+@Tag("benchmark")
+class CourseDraftCloneBenchmark {
+
+    private static final int SECTIONS = 50;
+    private static final int LESSONS_PER_SECTION = 10;
+    private static final int QUIZ_EVERY = 5;
+    private static final int QUESTIONS_PER_QUIZ = 10;
+    private static final int OPTIONS_PER_QUESTION = 4;
+    private static final int OBJECTIVES = 8;
+    private static final int JDBC_BATCH = 500;
+    private static final int ITERATIONS = 5;
+    private static final long ROUND_TRIP_MICROS = 200;
+
+    private final LongAdder statements = new LongAdder();
+    private final LongAdder insertedRows = new LongAdder();
+    private final AtomicLong ids = new AtomicLong();
+
+    @Test
+    void bulkClone_shouldIssueBoundedStatementsAndBeFasterThanPerRow() {
+        Course course = Course.builder().courseID(1L).build();
+        CourseDraft draft = CourseDraft.builder().draftID(1L).course(course).build();
+
+        List<CourseSection> sections = new ArrayList<>();
+        List<Lesson> lessons = new ArrayList<>();
+        List<LessonResource> resources = new ArrayList<>();
+        List<QuizQuestion> questions = new ArrayList<>();
+        long lessonId = 1, questionId = 1, optionId = 1;
+        for (long s = 1; s <= SECTIONS; s++) {
+            CourseSection section = CourseSection.builder().sectionID(s).course(course)
+                    .title("Section " + s).orderIndex((int) s).lessons(new ArrayList<>()).build();
+            sections.add(section);
+            for (int l = 1; l <= LESSONS_PER_SECTION; l++, lessonId++) {
+                LessonType type = lessonId % QUIZ_EVERY == 0 ? LessonType.Quiz : LessonType.Video;
+                Lesson lesson = Lesson.builder().lessonID(lessonId).section(section).title("Lesson " + lessonId)
+                        .lessonType(type).orderIndex(l).content("x".repeat(500)).build();
+                lesson.getResources().add(LessonResource.builder().resourceID(lessonId).lesson(lesson)
+                        .resourceType(ResourceType.PDF).resourceURL("https://cdn/" + lessonId + ".pdf").build());
+                resources.addAll(lesson.getResources());
+                section.getLessons().add(lesson);
+                lessons.add(lesson);
+
+                if (type == LessonType.Quiz) {
+                    for (int q = 1; q <= QUESTIONS_PER_QUIZ; q++, questionId++) {
+                        QuizQuestion question = QuizQuestion.builder().questionID(questionId).lesson(lesson)
+                                .questionText("Q" + questionId).orderIndex(q).score(BigDecimal.ONE).build();
+                        for (int o = 1; o <= OPTIONS_PER_QUESTION; o++, optionId++) {
+                            question.getOptions().add(QuizOption.builder().optionID(optionId).question(question)
+                                    .optionText("O" + optionId).isCorrect(o == 1).orderIndex(o).build());
+                        }
+                        questions.add(question);
+                    }
+                }
+            }
+        }
+        course.setSections(sections);
+        List<CourseObjective> objectives = new ArrayList<>();
+        for (long o = 1; o <= OBJECTIVES; o++) {
+            objectives.add(CourseObjective.builder().objectiveID(o).course(course).objectiveText("Goal " + o).build());
+        }
+        course.setObjectives(objectives);
+
+        CourseDraftRepository courseDraftRepository = db(CourseDraftRepository.class);
+        LessonRepository lessonRepository = db(LessonRepository.class);
+        LessonResourceRepository lessonResourceRepository = db(LessonResourceRepository.class);
+        QuizQuestionRepository quizQuestionRepository = db(QuizQuestionRepository.class);
+
+        doAnswer(roundTrip(lessons)).when(lessonRepository).findBySection_SectionIDIn(anyCollection());
+        doAnswer(roundTrip(resources)).when(lessonResourceRepository).findByLesson_LessonIDIn(anyCollection());
+        doAnswer(roundTrip(questions)).when(quizQuestionRepository).findWithOptionsByLessonIdIn(anyCollection());
+        doAnswer(batchInsert(CourseSectionDraft::setSectionDraftID)).when(courseDraftRepository).insertSectionDrafts(anyList());
+        doAnswer(batchInsert(LessonDraft::setLessonDraftID)).when(courseDraftRepository).insertLessonDrafts(anyList());
+        doAnswer(batchInsert(LessonResourceDraft::setResourceDraftID))
+                .when(courseDraftRepository).insertLessonResourceDrafts(anyList());
+        doAnswer(batchInsert(QuizQuestionDraft::setQuestionDraftID))
+                .when(courseDraftRepository).insertQuizQuestionDrafts(anyList());
+        doAnswer(batchInsert(QuizOptionDraft::setOptionDraftID)).when(courseDraftRepository).insertQuizOptionDrafts(anyList());
+        doAnswer(batchInsert(CourseObjectiveDraft::setObjectiveDraftID))
+                .when(courseDraftRepository).insertObjectiveDrafts(anyList());
+
+        CourseDraftCloneService service = new CourseDraftCloneService(
+                courseDraftRepository, lessonRepository, lessonResourceRepository, quizQuestionRepository);
+
+        // warm-up
+        run("warm-up", () -> service.cloneCurriculum(course, draft));
+
+        Stats legacyStats = run("legacy (per-row)", () -> legacyClone(course));
+        Stats bulkStats = run("bulk (batch)", () -> service.cloneCurriculum(course, draft));
+
+        // Mọi dòng của cây live đều được clone
+        long expectedRows = sections.size() + lessons.size() + resources.size() + questions.size()
+                + (long) questions.size() * OPTIONS_PER_QUESTION + objectives.size();
+        assertEquals(expectedRows, bulkStats.rowsPerClone);
+
+        // 3 query đọc + 6 tầng insert, mỗi tầng ceil(số dòng / JDBC_BATCH) lô
+        long expectedStatements = 3
+                + batches(sections.size()) + batches(lessons.size()) + batches(resources.size())
+                + batches(questions.size()) + batches(questions.size() * OPTIONS_PER_QUESTION)
+                + batches(objectives.size());
+        assertEquals(expectedStatements, bulkStats.statementsPerClone);
+        assertTrue(bulkStats.statementsPerClone * 100 < legacyStats.statementsPerClone,
+                "bulk " + bulkStats.statementsPerClone + " vs legacy " + legacyStats.statementsPerClone);
+        assertTrue(bulkStats.avgNanos < legacyStats.avgNanos,
+                "bulk avg " + bulkStats.avgNanos + "ns vs legacy avg " + legacyStats.avgNanos + "ns");
+    }
+
+    private static long batches(int rows) {
+        return (rows + JDBC_BATCH - 1) / JDBC_BATCH;
+    }
+
+    // Lặp lại đúng chuỗi lời gọi DB của startEditCourseDraft trước khi tối ưu
+    private void legacyClone(Course course) {
+        // course.getSections() lazy
+        roundTrip();
+        for (CourseSection s : course.getSections()) {
+            roundTrip();                      // save section draft (IDENTITY → INSERT ngay)
+            roundTrip();                      // s.getLessons() lazy
+            for (Lesson l : s.getLessons()) {
+                roundTrip();                  // save lesson draft
+                if (l.getLessonType() == LessonType.Quiz) {
+                    roundTrip();              // findByLessonOrderByOrderIndexAsc
+                    for (int q = 0; q < QUESTIONS_PER_QUIZ; q++) {
+                        roundTrip();          // save question draft
+                        roundTrip();          // q.getOptions() lazy
+                        for (int o = 0; o < OPTIONS_PER_QUESTION; o++) {
+                            roundTrip();      // save option draft
+                        }
+                    }
+                }
+                roundTrip();                  // l.getResources() lazy
+                l.getResources().forEach(r -> roundTrip());
+            }
+        }
+        // course.getObjectives() lazy + save từng objective
+        roundTrip();
+        course.getObjectives().forEach(o -> roundTrip());
+    }
+
+    private <T> T db(Class<T> type) {
+        return mock(type, withSettings().stubOnly().defaultAnswer(inv -> {
+            roundTrip();
+            return RETURNS_DEFAULTS.answer(inv);
+        }));
+    }
+
+    private Answer<Object> roundTrip(Object result) {
+        return inv -> {
+            roundTrip();
+            return result;
+        };
+    }
+
+    // 1 round trip / lô JDBC_BATCH dòng, DB cấp id liên tiếp
+    private <T> Answer<Object> batchInsert(BiConsumer<T, Long> idSetter) {
+        return inv -> {
+            List<T> rows = inv.getArgument(0);
+            for (int from = 0; from < rows.size(); from += JDBC_BATCH) {
+                roundTrip();
+            }
+            rows.forEach(r -> idSetter.accept(r, ids.incrementAndGet()));
+            insertedRows.add(rows.size());
+            return null;
+        };
+    }
+
+    private void roundTrip() {
+        statements.increment();
+        LockSupport.parkNanos(ROUND_TRIP_MICROS * 1000);
+    }
+
+    private record Stats(long avgNanos, long statementsPerClone, long rowsPerClone) {}
+
+    private Stats run(String name, Runnable clone) {
+        statements.reset();
+        insertedRows.reset();
+        long[] latencies = new long[ITERATIONS];
+        for (int i = 0; i < ITERATIONS; i++) {
+            long start = System.nanoTime();
+            clone.run();
+            latencies[i] = System.nanoTime() - start;
+        }
+
+        long total = 0;
+        for (long l : latencies) {
+            total += l;
+        }
+        Stats stats = new Stats(total / ITERATIONS, statements.sum() / ITERATIONS, insertedRows.sum() / ITERATIONS);
+        System.out.printf("[BENCH] %-18s avg=%.1fms statements/clone=%d%n",
+                name, stats.avgNanos / 1e6, stats.statementsPerClone);
+        return stats;
+    }
+}
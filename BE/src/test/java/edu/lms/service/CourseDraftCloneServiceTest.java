@@ -0,0 +1,175 @@
+package edu.lms.service;
+
+import edu.lms.entity.*;
+import edu.lms.enums.LessonType;
+import edu.lms.enums.ResourceType;
+import edu.lms.repository.CourseDraftRepository;
+import edu.lms.repository.LessonRepository;
+import edu.lms.repository.LessonResourceRepository;
+import edu.lms.repository.QuizQuestionRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit test cho CourseDraftCloneService
+ *
+ * Cover:
+ *  - clone đủ section / lesson / resource / quiz + option / objective, khoá ngoại trỏ đúng id draft cha
+ *  - mỗi tầng đọc 1 query, insert 1 lần (không theo từng lesson / câu hỏi)
+ *  - chỉ load quiz của lesson Quiz
+ *  - course không có section -> không query lesson / resource / quiz
+ */
+@ExtendWith(MockitoExtension.class)
+class CourseDraftCloneServiceTest {
+
+    @Mock
+    CourseDraftRepository courseDraftRepository;
+    @Mock
+    LessonRepository lessonRepository;
+    @Mock
+    LessonResourceRepository lessonResourceRepository;
+    @Mock
+    QuizQuestionRepository quizQuestionRepository;
+
+    @InjectMocks
+    CourseDraftCloneService courseDraftCloneService;
+
+    @Captor
+    ArgumentCaptor<List<CourseSectionDraft>> sectionCaptor;
+    @Captor
+    ArgumentCaptor<List<LessonDraft>> lessonCaptor;
+    @Captor
+    ArgumentCaptor<List<LessonResourceDraft>> resourceCaptor;
+    @Captor
+    ArgumentCaptor<List<QuizQuestionDraft>> questionCaptor;
+    @Captor
+    ArgumentCaptor<List<QuizOptionDraft>> optionCaptor;
+    @Captor
+    ArgumentCaptor<List<CourseObjectiveDraft>> objectiveCaptor;
+
+    // Giả lập DB cấp id IDENTITY cho từng lô insert
+    final AtomicLong ids = new AtomicLong(500);
+
+    Course course;
+    CourseDraft draft;
+
+    @BeforeEach
+    void setUp() {
+        course = Course.builder().courseID(1L).build();
+        draft = CourseDraft.builder().draftID(20L).course(course).build();
+    }
+
+    private <T> void assignIds(BiConsumer<T, Long> setter, List<T> rows) {
+        rows.forEach(r -> setter.accept(r, ids.incrementAndGet()));
+    }
+
+    @SuppressWarnings("unchecked")
+    private void mockInsertsAssignIds() {
+        doAnswer(inv -> { assignIds(CourseSectionDraft::setSectionDraftID, inv.getArgument(0)); return null; })
+                .when(courseDraftRepository).insertSectionDrafts(anyList());
+        doAnswer(inv -> { assignIds(LessonDraft::setLessonDraftID, inv.getArgument(0)); return null; })
+                .when(courseDraftRepository).insertLessonDrafts(anyList());
+        doAnswer(inv -> { assignIds(QuizQuestionDraft::setQuestionDraftID, inv.getArgument(0)); return null; })
+                .when(courseDraftRepository).insertQuizQuestionDrafts(anyList());
+    }
+
+    @Test
+    @DisplayName("Clone đủ cây, mỗi tầng 1 query + 1 lần insert, khoá ngoại trỏ đúng draft cha")
+    void cloneCurriculum_shouldCloneWholeTreeLevelByLevel() {
+        CourseSection s1 = CourseSection.builder().sectionID(10L).course(course).title("S1").orderIndex(1).build();
+        CourseSection s2 = CourseSection.builder().sectionID(11L).course(course).title("S2").orderIndex(2).build();
+        course.setSections(List.of(s1, s2));
+        course.setObjectives(List.of(
+                CourseObjective.builder().objectiveID(7L).course(course).objectiveText("Goal").orderIndex(1).build()));
+
+        // Trả về lộn thứ tự: service phải sắp theo section rồi orderIndex
+        Lesson quiz = Lesson.builder().lessonID(102L).section(s2).title("Quiz").lessonType(LessonType.Quiz).orderIndex(1).build();
+        Lesson video2 = Lesson.builder().lessonID(101L).section(s1).title("V2").lessonType(LessonType.Video).orderIndex(2).build();
+        Lesson video1 = Lesson.builder().lessonID(100L).section(s1).title("V1").lessonType(LessonType.Video).orderIndex(1).build();
+        when(lessonRepository.findBySection_SectionIDIn(anyCollection())).thenReturn(List.of(quiz, video2, video1));
+
+        LessonResource pdf = LessonResource.builder().resourceID(300L).lesson(video1)
+                .resourceType(ResourceType.PDF).resourceTitle("Slide").resourceURL("https://cdn/slide.pdf").build();
+        when(lessonResourceRepository.findByLesson_LessonIDIn(anyCollection())).thenReturn(List.of(pdf));
+
+        QuizQuestion q = QuizQuestion.builder().questionID(400L).lesson(quiz).questionText("Q1")
+                .orderIndex(1).score(BigDecimal.valueOf(2)).build();
+        q.setOptions(new ArrayList<>(List.of(
+                QuizOption.builder().optionID(401L).question(q).optionText("A").isCorrect(true).orderIndex(1).build(),
+                QuizOption.builder().optionID(402L).question(q).optionText("B").isCorrect(false).orderIndex(2).build())));
+        when(quizQuestionRepository.findWithOptionsByLessonIdIn(List.of(102L))).thenReturn(List.of(q));
+
+        mockInsertsAssignIds();
+
+        courseDraftCloneService.cloneCurriculum(course, draft);
+
+        verify(courseDraftRepository).insertSectionDrafts(sectionCaptor.capture());
+        verify(courseDraftRepository).insertLessonDrafts(lessonCaptor.capture());
+        verify(courseDraftRepository).insertLessonResourceDrafts(resourceCaptor.capture());
+        verify(courseDraftRepository).insertQuizQuestionDrafts(questionCaptor.capture());
+        verify(courseDraftRepository).insertQuizOptionDrafts(optionCaptor.capture());
+        verify(courseDraftRepository).insertObjectiveDrafts(objectiveCaptor.capture());
+        verify(lessonRepository, times(1)).findBySection_SectionIDIn(anyCollection());
+        verify(courseDraftRepository, never()).save(any());
+
+        List<CourseSectionDraft> sections = sectionCaptor.getValue();
+        assertEquals(List.of(10L, 11L), sections.stream().map(CourseSectionDraft::getOriginalSectionID).toList());
+        assertTrue(sections.stream().allMatch(sd -> sd.getDraft() == draft));
+
+        List<LessonDraft> lessons = lessonCaptor.getValue();
+        assertEquals(List.of(100L, 101L, 102L), lessons.stream().map(LessonDraft::getOriginalLessonID).toList());
+        assertSame(sections.get(0), lessons.get(0).getSectionDraft());
+        assertSame(sections.get(1), lessons.get(2).getSectionDraft());
+        assertEquals(LessonType.Quiz, lessons.get(2).getLessonType());
+
+        LessonResourceDraft rd = resourceCaptor.getValue().get(0);
+        assertEquals(300L, rd.getOriginalResourceID());
+        assertSame(lessons.get(0), rd.getLessonDraft());
+        assertNotNull(rd.getLessonDraft().getLessonDraftID());
+
+        QuizQuestionDraft qd = questionCaptor.getValue().get(0);
+        assertSame(lessons.get(2), qd.getLessonDraft());
+        assertEquals(0, qd.getScore().compareTo(BigDecimal.valueOf(2)));
+
+        List<QuizOptionDraft> options = optionCaptor.getValue();
+        assertEquals(2, options.size());
+        assertTrue(options.stream().allMatch(o -> o.getQuestionDraft() == qd));
+        assertNotNull(qd.getQuestionDraftID());
+        assertTrue(options.get(0).getIsCorrect());
+
+        CourseObjectiveDraft od = objectiveCaptor.getValue().get(0);
+        assertEquals(7L, od.getOriginalObjectiveID());
+        assertSame(draft, od.getDraft());
+    }
+
+    @Test
+    @DisplayName("Course không có section -> không query lesson / resource / quiz")
+    void cloneCurriculum_noSections_shouldSkipChildQueries() {
+        course.setSections(null);
+        course.setObjectives(null);
+
+        courseDraftCloneService.cloneCurriculum(course, draft);
+
+        verifyNoInteractions(lessonRepository, lessonResourceRepository, quizQuestionRepository);
+        verify(courseDraftRepository).insertSectionDrafts(List.of());
+        verify(courseDraftRepository).insertLessonDrafts(List.of());
+        verify(courseDraftRepository).insertObjectiveDrafts(List.of());
+    }
+}
@@ -0,0 +1,294 @@
+package edu.lms.service;
+
+import edu.lms.dto.response.AdminCourseDraftChangesResponse;
+import edu.lms.entity.*;
+import edu.lms.enums.LessonType;
+import edu.lms.enums.ResourceType;
+import edu.lms.repository.*;
+import edu.lms.service.CourseDraftDiff.ChangeKind;
+import edu.lms.service.CourseDraftDiff.QuizSync;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit test cho CourseDraftMergeService + CourseDraftDiff
+ *
+ * Cover:
+ *  - diff: mỗi tầng live / draft đúng 1 query, phân loại INSERT / UPDATE / REORDER / DELETE
+ *  - lesson chuyển section = UPDATE (giữ tiến độ), đổi video = reset tiến độ
+ *  - quiz: đổi nội dung → REBUILD, đổi sang Video → DROP, lesson Quiz mới → REBUILD
+ *  - apply: insert / delete theo lô, flush UPDATE trước khi xoá, xoá cây draft 1 lần
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class CourseDraftMergeServiceTest {
+
+    @Mock
+    CourseRepository courseRepository;
+    @Mock
+    CourseSectionRepository courseSectionRepository;
+    @Mock
+    LessonRepository lessonRepository;
+    @Mock
+    LessonResourceRepository lessonResourceRepository;
+    @Mock
+    QuizQuestionRepository quizQuestionRepository;
+    @Mock
+    CourseObjectiveRepository courseObjectiveRepository;
+    @Mock
+    CourseDraftRepository courseDraftRepository;
+    @Mock
+    CourseSectionDraftRepository courseSectionDraftRepository;
+    @Mock
+    LessonDraftRepository lessonDraftRepository;
+    @Mock
+    LessonResourceDraftRepository lessonResourceDraftRepository;
+    @Mock
+    QuizQuestionDraftRepository quizQuestionDraftRepository;
+    @Mock
+    CourseObjectiveDraftRepository courseObjectiveDraftRepository;
+    @Mock
+    QuizDefinitionCache quizDefinitionCache;
+
+    @InjectMocks
+    CourseDraftMergeService courseDraftMergeService;
+
+    @Captor
+    ArgumentCaptor<List<Lesson>> lessonCaptor;
+    @Captor
+    ArgumentCaptor<List<QuizQuestion>> questionCaptor;
+    @Captor
+    ArgumentCaptor<List<QuizOption>> optionCaptor;
+    @Captor
+    ArgumentCaptor<Collection<Long>> idsCaptor;
+
+    Course course;
+    CourseDraft draft;
+
+    // live: S1 [video 100, quiz 101, reading 102], S2 [video 103]
+    CourseSection s1;
+    CourseSection s2;
+    Lesson video;
+    Lesson quiz;
+    Lesson reading;
+    Lesson moved;
+
+    // section draft: S1 đổi title, S2 giữ nguyên
+    CourseSectionDraft sd1;
+    CourseSectionDraft sd2;
+
+    @BeforeEach
+    void setUp() {
+        course = Course.builder().courseID(1L).title("Course").build();
+        draft = CourseDraft.builder().draftID(20L).course(course).title("Course").build();
+
+        s1 = CourseSection.builder().sectionID(10L).course(course).title("S1").orderIndex(1).build();
+        s2 = CourseSection.builder().sectionID(11L).course(course).title("S2").orderIndex(2).build();
+        video = Lesson.builder().lessonID(100L).section(s1).title("Video").lessonType(LessonType.Video)
+                .videoURL("https://v/1").orderIndex(1).build();
+        quiz = Lesson.builder().lessonID(101L).section(s1).title("Quiz").lessonType(LessonType.Quiz).orderIndex(2).build();
+        reading = Lesson.builder().lessonID(102L).section(s1).title("Reading").lessonType(LessonType.Reading)
+                .content("text").orderIndex(3).build();
+        moved = Lesson.builder().lessonID(103L).section(s2).title("Old video").lessonType(LessonType.Video)
+                .videoURL("https://v/3").orderIndex(1).build();
+
+        sd1 = CourseSectionDraft.builder().sectionDraftID(210L).originalSectionID(10L).title("S1 new").orderIndex(1).build();
+        sd2 = CourseSectionDraft.builder().sectionDraftID(211L).originalSectionID(11L).title("S2").orderIndex(2).build();
+    }
+
+    private QuizQuestion liveQuestion(Lesson lesson, boolean firstCorrect) {
+        QuizQuestion q = QuizQuestion.builder().questionID(400L).lesson(lesson).questionText("Q1")
+                .orderIndex(1).score(BigDecimal.ONE).build();
+        q.getOptions().add(QuizOption.builder().optionID(401L).question(q).optionText("A").isCorrect(firstCorrect).orderIndex(1).build());
+        q.getOptions().add(QuizOption.builder().optionID(402L).question(q).optionText("B").isCorrect(!firstCorrect).orderIndex(2).build());
+        return q;
+    }
+
+    private QuizQuestionDraft draftQuestion(LessonDraft lesson, long id, boolean firstCorrect) {
+        QuizQuestionDraft q = QuizQuestionDraft.builder().questionDraftID(id).lessonDraft(lesson).questionText("Q1")
+                .orderIndex(1).score(new BigDecimal("1.00")).build();
+        q.getOptions().add(QuizOptionDraft.builder().optionDraftID(id * 10 + 1).questionDraft(q).optionText("A")
+                .isCorrect(firstCorrect).orderIndex(1).build());
+        q.getOptions().add(QuizOptionDraft.builder().optionDraftID(id * 10 + 2).questionDraft(q).optionText("B")
+                .isCorrect(!firstCorrect).orderIndex(2).build());
+        return q;
+    }
+
+    private void mockLive(List<CourseSection> sections, List<Lesson> lessons, List<LessonResource> resources,
+                          List<QuizQuestion> questions) {
+        when(courseSectionRepository.findByCourse_CourseID(1L)).thenReturn(sections);
+        when(lessonRepository.findBySection_SectionIDIn(anyCollection())).thenReturn(lessons);
+        when(lessonResourceRepository.findByLesson_LessonIDIn(anyCollection())).thenReturn(resources);
+        when(quizQuestionRepository.findWithOptionsByLessonIdIn(anyCollection())).thenReturn(questions);
+        when(courseObjectiveRepository.findByCourse_CourseIDOrderByOrderIndexAsc(1L)).thenReturn(List.of());
+    }
+
+    private void mockDraft(List<CourseSectionDraft> sections, List<LessonDraft> lessons,
+                           List<LessonResourceDraft> resources, List<QuizQuestionDraft> questions) {
+        when(courseSectionDraftRepository.findByDraft_DraftIDOrderByOrderIndexAsc(20L)).thenReturn(sections);
+        when(lessonDraftRepository.findBySectionDraft_SectionDraftIDIn(anyCollection())).thenReturn(lessons);
+        when(lessonResourceDraftRepository.findByLessonDraft_LessonDraftIDIn(anyCollection())).thenReturn(resources);
+        when(quizQuestionDraftRepository.findWithOptionsByLessonDraftIdIn(anyCollection())).thenReturn(questions);
+        when(courseObjectiveDraftRepository.findByDraft_DraftIDOrderByOrderIndexAsc(20L)).thenReturn(List.of());
+    }
+
+    private record LessonChangeSet(List<CourseDraftDiff.LessonChange> changes) {
+        CourseDraftDiff.LessonChange live(long lessonId) {
+            return changes.stream().filter(c -> c.live() != null && c.live().getLessonID() == lessonId)
+                    .findFirst().orElse(null);
+        }
+
+        CourseDraftDiff.LessonChange inserted() {
+            return changes.stream().filter(c -> c.kind() == ChangeKind.INSERT).findFirst().orElse(null);
+        }
+    }
+
+    @Test
+    @DisplayName("diff: phân loại thay đổi + quiz sync + reset tiến độ, mỗi tầng 1 query")
+    void diff_shouldClassifyChangesWithFixedQueries() {
+        mockLive(List.of(s1, s2), List.of(video, quiz, reading, moved), List.of(), List.of(liveQuestion(quiz, true)));
+
+        LessonDraft ldVideo = LessonDraft.builder().lessonDraftID(300L).originalLessonID(100L).sectionDraft(sd1)
+                .title("Video").lessonType(LessonType.Video).videoURL("https://v/1-new").orderIndex(1).build();
+        LessonDraft ldQuiz = LessonDraft.builder().lessonDraftID(301L).originalLessonID(101L).sectionDraft(sd1)
+                .title("Quiz").lessonType(LessonType.Quiz).orderIndex(2).build();
+        // reading chỉ chuyển sang S2 → REORDER, không reset
+        LessonDraft ldReading = LessonDraft.builder().lessonDraftID(302L).originalLessonID(102L).sectionDraft(sd2)
+                .title("Reading").lessonType(LessonType.Reading).content("text").orderIndex(2).build();
+        LessonDraft ldNewQuiz = LessonDraft.builder().lessonDraftID(303L).sectionDraft(sd1)
+                .title("New quiz").lessonType(LessonType.Quiz).orderIndex(3).build();
+        // lesson 103 bị xoá
+        mockDraft(List.of(sd1, sd2), List.of(ldVideo, ldQuiz, ldReading, ldNewQuiz), List.of(),
+                List.of(draftQuestion(ldQuiz, 500L, false), draftQuestion(ldNewQuiz, 501L, true)));
+
+        CourseDraftDiff diff = courseDraftMergeService.diff(course, draft);
+
+        verify(courseSectionRepository, times(1)).findByCourse_CourseID(1L);
+        verify(lessonRepository, times(1)).findBySection_SectionIDIn(anyCollection());
+        verify(quizQuestionRepository, times(1)).findWithOptionsByLessonIdIn(List.of(101L));
+        verify(lessonDraftRepository, times(1)).findBySectionDraft_SectionDraftIDIn(anyCollection());
+        verify(quizQuestionDraftRepository, times(1)).findWithOptionsByLessonDraftIdIn(List.of(301L, 303L));
+
+        assertEquals(1, diff.sections().size());
+        assertEquals(ChangeKind.UPDATE, diff.sections().get(0).kind());
+
+        LessonChangeSet lessons = new LessonChangeSet(diff.lessons());
+        assertEquals(ChangeKind.UPDATE, lessons.live(100L).kind());
+        assertTrue(lessons.live(100L).resetProgress());
+        assertEquals(QuizSync.KEEP, lessons.live(100L).quiz());
+
+        assertEquals(QuizSync.REBUILD, lessons.live(101L).quiz());
+        assertTrue(lessons.live(101L).resetProgress());
+
+        assertEquals(ChangeKind.REORDER, lessons.live(102L).kind());
+        assertFalse(lessons.live(102L).resetProgress());
+
+        assertEquals(ChangeKind.DELETE, lessons.live(103L).kind());
+        assertEquals(QuizSync.REBUILD, lessons.inserted().quiz());
+
+        // DELETE → UPDATED → ADDED, REORDER hiển thị như UPDATED
+        AdminCourseDraftChangesResponse response = diff.toResponse();
+        assertEquals(List.of("DELETED", "UPDATED", "UPDATED", "UPDATED", "ADDED"),
+                response.getLessons().stream().map(l -> l.getChangeType()).toList());
+    }
+
+    @Test
+    @DisplayName("diff: quiz giữ nguyên nội dung → KEEP, đổi Quiz sang Video → DROP")
+    void diff_quizUnchangedKeep_quizToVideoDrop() {
+        Lesson quiz2 = Lesson.builder().lessonID(104L).section(s1).title("Quiz 2").lessonType(LessonType.Quiz).orderIndex(4).build();
+        QuizQuestion q2 = liveQuestion(quiz2, true);
+        q2.setQuestionID(410L);
+        mockLive(List.of(s1), List.of(quiz, quiz2), List.of(), List.of(liveQuestion(quiz, true), q2));
+
+        CourseSectionDraft same = CourseSectionDraft.builder().sectionDraftID(210L).originalSectionID(10L)
+                .title("S1").orderIndex(1).build();
+        LessonDraft ldQuiz = LessonDraft.builder().lessonDraftID(301L).originalLessonID(101L).sectionDraft(same)
+                .title("Quiz").lessonType(LessonType.Quiz).orderIndex(2).build();
+        LessonDraft ldVideo = LessonDraft.builder().lessonDraftID(304L).originalLessonID(104L).sectionDraft(same)
+                .title("Quiz 2").lessonType(LessonType.Video).videoURL("https://v/4").orderIndex(4).build();
+        mockDraft(List.of(same), List.of(ldQuiz, ldVideo), List.of(), List.of(draftQuestion(ldQuiz, 500L, true)));
+
+        CourseDraftDiff diff = courseDraftMergeService.diff(course, draft);
+
+        LessonChangeSet lessons = new LessonChangeSet(diff.lessons());
+        assertNull(lessons.live(101L), "Quiz không đổi (score 1 vs 1.00) không tạo change");
+        assertEquals(QuizSync.DROP, lessons.live(104L).quiz());
+        assertTrue(lessons.live(104L).resetProgress());
+        assertTrue(diff.sections().isEmpty());
+    }
+
+    @Test
+    @DisplayName("apply: insert / delete theo lô, flush trước khi xoá, reset tiến độ, xoá cây draft")
+    void apply_shouldWriteChangeSetInBatches() {
+        LessonResource pdf = LessonResource.builder().resourceID(600L).lesson(moved)
+                .resourceType(ResourceType.PDF).resourceTitle("Slide").resourceURL("https://cdn/s.pdf").build();
+        mockLive(List.of(s1, s2), List.of(video, quiz, reading, moved), List.of(pdf), List.of(liveQuestion(quiz, true)));
+
+        LessonDraft ldVideo = LessonDraft.builder().lessonDraftID(300L).originalLessonID(100L).sectionDraft(sd1)
+                .title("Video").lessonType(LessonType.Video).videoURL("https://v/1-new").orderIndex(1).build();
+        LessonDraft ldQuiz = LessonDraft.builder().lessonDraftID(301L).originalLessonID(101L).sectionDraft(sd1)
+                .title("Quiz").lessonType(LessonType.Quiz).orderIndex(2).build();
+        LessonDraft ldReading = LessonDraft.builder().lessonDraftID(302L).originalLessonID(102L).sectionDraft(sd2)
+                .title("Reading").lessonType(LessonType.Reading).content("text").orderIndex(2).build();
+        LessonDraft ldNewQuiz = LessonDraft.builder().lessonDraftID(303L).sectionDraft(sd1)
+                .title("New quiz").lessonType(LessonType.Quiz).orderIndex(3).build();
+        // resource của lesson bị xoá chuyển sang lesson reading → UPDATE, không xoá
+        LessonResourceDraft rd = LessonResourceDraft.builder().resourceDraftID(700L).originalResourceID(600L)
+                .lessonDraft(ldReading).resourceType(ResourceType.PDF).resourceTitle("Slide")
+                .resourceURL("https://cdn/s.pdf").build();
+        mockDraft(List.of(sd1, sd2), List.of(ldVideo, ldQuiz, ldReading, ldNewQuiz), List.of(rd),
+                List.of(draftQuestion(ldQuiz, 500L, false), draftQuestion(ldNewQuiz, 501L, true)));
+
+        CourseDraftDiff diff = courseDraftMergeService.diff(course, draft);
+        courseDraftMergeService.apply(course, draft, diff);
+
+        verify(courseRepository).deleteQuizzesByLessonIds(List.of(101L));
+
+        verify(courseRepository).insertLessons(lessonCaptor.capture());
+        Lesson inserted = lessonCaptor.getValue().get(0);
+        assertEquals("New quiz", inserted.getTitle());
+        assertSame(s1, inserted.getSection());
+
+        verify(courseRepository).insertQuizQuestions(questionCaptor.capture());
+        assertEquals(2, questionCaptor.getValue().size());
+        assertSame(quiz, questionCaptor.getValue().get(0).getLesson());
+        verify(courseRepository).insertQuizOptions(optionCaptor.capture());
+        assertEquals(4, optionCaptor.getValue().size());
+
+        // UPDATE qua entity đã load
+        assertEquals("S1 new", s1.getTitle());
+        assertSame(s2, reading.getSection());
+        assertEquals("https://v/1-new", video.getVideoURL());
+        assertSame(reading, pdf.getLesson());
+
+        var order = inOrder(courseRepository, courseDraftRepository);
+        order.verify(courseRepository).flush();
+        order.verify(courseRepository).deleteLessonResources(List.of());
+        order.verify(courseRepository).deleteLessonsCascade(List.of(103L));
+        order.verify(courseRepository).deleteSectionsCascade(List.of());
+        order.verify(courseRepository).deleteLessonProgress(idsCaptor.capture());
+        order.verify(courseDraftRepository).deleteDraftTree(20L);
+        assertEquals(List.of(100L, 101L), new ArrayList<>(idsCaptor.getValue()));
+
+        verify(quizDefinitionCache).evictAll(List.of(101L, 103L));
+        verify(courseDraftRepository, never()).delete(any(CourseDraft.class));
+    }
+}
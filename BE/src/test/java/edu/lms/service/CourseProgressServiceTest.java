@@ -0,0 +1,181 @@
+package edu.lms.service;
+
+import edu.lms.entity.*;
+import edu.lms.enums.EnrollmentStatus;
+import edu.lms.repository.EnrollmentRepository;
+import edu.lms.repository.LessonRepository;
+import edu.lms.repository.UserCourseSectionRepository;
+import edu.lms.repository.UserLessonRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit test cho CourseProgressService
+ *
+ * Cover:
+ *  - đã có bộ đếm → chỉ 1 UPDATE delta, không đếm lại
+ *  - chưa có bộ đếm (updated = 0) → đếm 1 lần bằng aggregate, tạo UserCourseSection
+ *  - request khác đang khởi tạo bộ đếm (transaction chưa kết thúc) → cộng delta, không đếm lại
+ *  - mọi section 100% → Enrollment Completed
+ *  - delta âm → không kiểm tra hoàn thành course
+ *  - recalculateCourse → xoá cache số lesson + 1 câu UPDATE
+ */
+@ExtendWith(MockitoExtension.class)
+class CourseProgressServiceTest {
+
+    @Mock
+    UserCourseSectionRepository userCourseSectionRepository;
+    @Mock
+    UserLessonRepository userLessonRepository;
+    @Mock
+    LessonRepository lessonRepository;
+    @Mock
+    EnrollmentRepository enrollmentRepository;
+
+    @InjectMocks
+    CourseProgressService courseProgressService;
+
+    User user;
+    Course course;
+    CourseSection section;
+    Enrollment enrollment;
+
+    @BeforeEach
+    void setUp() {
+        user = User.builder().userID(1L).build();
+        course = Course.builder().courseID(10L).build();
+        section = CourseSection.builder().sectionID(100L).course(course).build();
+        enrollment = Enrollment.builder().enrollmentID(5L).user(user).course(course)
+                .status(EnrollmentStatus.Active).build();
+    }
+
+    @Test
+    @DisplayName("Đã có bộ đếm -> 1 UPDATE delta, số lesson section chỉ đếm 1 lần")
+    void onLessonDoneChanged_existingCounter_shouldApplyDelta() {
+        when(lessonRepository.countBySection_SectionID(100L)).thenReturn(4L);
+        when(userCourseSectionRepository.applyCompletedDelta(1L, 100L, 1, 4L)).thenReturn(1);
+        when(userCourseSectionRepository.countCourseProgress(5L, 10L))
+                .thenReturn(List.<Object[]>of(new Object[]{2L, 1L}));
+
+        courseProgressService.onLessonDoneChanged(user, section, enrollment, 1);
+        courseProgressService.onLessonDoneChanged(user, section, enrollment, 1);
+
+        verify(lessonRepository, times(1)).countBySection_SectionID(100L);
+        verify(userCourseSectionRepository, times(2)).applyCompletedDelta(1L, 100L, 1, 4L);
+        verify(userLessonRepository, never()).countSectionProgress(anyLong(), anyLong());
+        verify(userCourseSectionRepository, never()).saveAndFlush(any());
+        verify(enrollmentRepository, never()).save(any());
+        assertEquals(EnrollmentStatus.Active, enrollment.getStatus());
+    }
+
+    @Test
+    @DisplayName("Chưa có bộ đếm -> đếm bằng aggregate, tạo UserCourseSection với completedLessons + progress")
+    void onLessonDoneChanged_noCounter_shouldInitFromAggregate() {
+        when(lessonRepository.countBySection_SectionID(100L)).thenReturn(4L);
+        when(userCourseSectionRepository.applyCompletedDelta(1L, 100L, 1, 4L)).thenReturn(0);
+        when(userLessonRepository.countSectionProgress(1L, 100L))
+                .thenReturn(List.<Object[]>of(new Object[]{4L, 1L}));
+        when(userCourseSectionRepository.findByUser_UserIDAndSection_SectionID(1L, 100L))
+                .thenReturn(Optional.empty());
+        when(userCourseSectionRepository.countCourseProgress(5L, 10L))
+                .thenReturn(List.<Object[]>of(new Object[]{2L, 0L}));
+
+        courseProgressService.onLessonDoneChanged(user, section, enrollment, 1);
+
+        verify(userCourseSectionRepository).saveAndFlush(argThat(ucs ->
+                ucs.getCompletedLessons() == 1
+                        && ucs.getProgress().compareTo(BigDecimal.valueOf(25)) == 0
+                        && ucs.getEnrollment() == enrollment
+                        && ucs.getSection() == section));
+    }
+
+    @Test
+    @DisplayName("Bộ đếm đang được khởi tạo trong transaction khác -> cộng delta lên bản ghi đó, không đếm lại")
+    void onLessonDoneChanged_counterBeingInitialized_shouldApplyDeltaInsteadOfRecount() {
+        when(lessonRepository.countBySection_SectionID(100L)).thenReturn(4L);
+        // lần 1: chưa có bộ đếm; lần 2: chưa commit → 0, chờ lock rồi cộng được; lần 3 (sau commit, bản ghi bị xoá): 0
+        when(userCourseSectionRepository.applyCompletedDelta(1L, 100L, 1, 4L)).thenReturn(0, 0, 1, 0);
+        when(userLessonRepository.countSectionProgress(1L, 100L))
+                .thenReturn(List.<Object[]>of(new Object[]{4L, 1L}));
+        when(userCourseSectionRepository.findByUser_UserIDAndSection_SectionID(1L, 100L))
+                .thenReturn(Optional.empty());
+        when(userCourseSectionRepository.countCourseProgress(5L, 10L))
+                .thenReturn(List.<Object[]>of(new Object[]{2L, 0L}));
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            courseProgressService.onLessonDoneChanged(user, section, enrollment, 1);
+            courseProgressService.onLessonDoneChanged(user, section, enrollment, 1);
+
+            verify(userLessonRepository, times(1)).countSectionProgress(1L, 100L);
+            verify(userCourseSectionRepository, times(1)).saveAndFlush(any());
+            verify(userCourseSectionRepository, times(3)).applyCompletedDelta(1L, 100L, 1, 4L);
+
+            // transaction khởi tạo kết thúc → lần sau được khởi tạo lại
+            TransactionSynchronizationManager.getSynchronizations()
+                    .forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        courseProgressService.onLessonDoneChanged(user, section, enrollment, 1);
+
+        verify(userLessonRepository, times(2)).countSectionProgress(1L, 100L);
+        verify(userCourseSectionRepository, times(2)).saveAndFlush(any());
+    }
+
+    @Test
+    @DisplayName("Mọi section 100% -> Enrollment Completed")
+    void onLessonDoneChanged_allSectionsDone_shouldCompleteEnrollment() {
+        when(lessonRepository.countBySection_SectionID(100L)).thenReturn(2L);
+        when(userCourseSectionRepository.applyCompletedDelta(1L, 100L, 1, 2L)).thenReturn(1);
+        when(userCourseSectionRepository.countCourseProgress(5L, 10L))
+                .thenReturn(List.<Object[]>of(new Object[]{3L, 3L}));
+
+        courseProgressService.onLessonDoneChanged(user, section, enrollment, 1);
+
+        assertEquals(EnrollmentStatus.Completed, enrollment.getStatus());
+        verify(enrollmentRepository).save(enrollment);
+    }
+
+    @Test
+    @DisplayName("Delta âm -> giảm bộ đếm, không kiểm tra hoàn thành course")
+    void onLessonDoneChanged_negativeDelta_shouldSkipCompletionCheck() {
+        when(lessonRepository.countBySection_SectionID(100L)).thenReturn(2L);
+        when(userCourseSectionRepository.applyCompletedDelta(1L, 100L, -1, 2L)).thenReturn(1);
+
+        courseProgressService.onLessonDoneChanged(user, section, enrollment, -1);
+
+        verify(userCourseSectionRepository, never()).countCourseProgress(anyLong(), anyLong());
+        verifyNoInteractions(enrollmentRepository);
+    }
+
+    @Test
+    @DisplayName("recalculateCourse -> xoá cache số lesson, 1 câu UPDATE cho cả course")
+    void recalculateCourse_shouldClearCountsAndRunSetBasedUpdate() {
+        when(lessonRepository.countBySection_SectionID(100L)).thenReturn(2L, 3L);
+        when(userCourseSectionRepository.recalculateCourseProgress(10L)).thenReturn(7);
+
+        assertEquals(2L, courseProgressService.lessonCount(100L));
+        courseProgressService.recalculateCourse(10L);
+        assertEquals(3L, courseProgressService.lessonCount(100L));
+
+        verify(userCourseSectionRepository).recalculateCourseProgress(10L);
+        verify(lessonRepository, times(2)).countBySection_SectionID(100L);
+    }
+}
@@ -0,0 +1,275 @@
+package edu.lms.service;
+
+import edu.lms.entity.EmailOutbox;
+import edu.lms.enums.EmailOutboxStatus;
+import edu.lms.listener.EmailOutboxEnqueuedEvent;
+import edu.lms.repository.EmailOutboxRepository;
+import edu.lms.repository.EmailOutboxRepositoryCustom.Failure;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * EmailOutboxServiceTest – gửi thật qua MailDispatcher + SmtpSessionPool tới SmtpStubServer local,
+ * repository là mock
+ *
+ * Cover:
+ *  - enqueue: 1 row / người nhận, ghi 1 lần insertAll, bắn event sau khi ghi
+ *  - dispatch: phiên SMTP được dùng lại giữa các lô, số kết nối đồng thời ≤ max sessions
+ *  - người nhận bị từ chối → FAILED + lịch retry, phần còn lại vẫn SENT
+ *  - SMTP không kết nối được → cả lô FAILED, hết maxAttempts → DEAD
+ *  - SMTP chậm quá sendTimeout → vòng dispatch không treo, email chưa gửi xong FAILED
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class EmailOutboxServiceTest {
+
+    private static final int MAX_ATTEMPTS = 3;
+
+    @Mock
+    EmailOutboxRepository emailOutboxRepository;
+    @Mock
+    ApplicationEventPublisher eventPublisher;
+
+    @Captor
+    ArgumentCaptor<List<EmailOutbox>> rowsCaptor;
+    @Captor
+    ArgumentCaptor<Collection<Long>> sentCaptor;
+    @Captor
+    ArgumentCaptor<List<Failure>> failureCaptor;
+
+    SmtpStubServer smtp;
+    ExecutorService executor;
+    SmtpSessionPool sessionPool;
+    MailDispatcher mailDispatcher;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        smtp = new SmtpStubServer();
+        executor = Executors.newFixedThreadPool(2);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        if (mailDispatcher != null) mailDispatcher.stop();
+        if (sessionPool != null) sessionPool.close();
+        smtp.close();
+        executor.shutdownNow();
+    }
+
+    private EmailOutboxService buildService(int port, int messagesPerConnection) {
+        return buildService(port, messagesPerConnection, 120_000);
+    }
+
+    private EmailOutboxService buildService(int port, int messagesPerConnection, long sendTimeoutMs) {
+        JavaMailSenderImpl mailSender = new JavaMailSenderImpl();
+        mailSender.setHost("127.0.0.1");
+        mailSender.setPort(port);
+        mailSender.setDefaultEncoding("UTF-8");
+        Properties props = new Properties();
+        props.put("mail.smtp.connectiontimeout", "1000");
+        props.put("mail.smtp.timeout", "2000");
+        props.put("mail.smtp.from", "noreply@linguahub.test");
+        mailSender.setJavaMailProperties(props);
+
+        sessionPool = new SmtpSessionPool(mailSender, 2, 120, 30);
+        mailDispatcher = new MailDispatcher(sessionPool, new MailMetrics(), executor, 2, messagesPerConnection, 10000);
+        mailDispatcher.start();
+
+        return new EmailOutboxService(emailOutboxRepository, mailDispatcher, eventPublisher,
+                200, MAX_ATTEMPTS, 30, 300, sendTimeoutMs);
+    }
+
+    private List<EmailOutbox> rows(int count, int attempts) {
+        return LongStream.rangeClosed(1, count)
+                .mapToObj(id -> EmailOutbox.builder()
+                        .outboxId(id)
+                        .toEmail("learner" + id + "@mail.com")
+                        .subject("Course updated")
+                        .body("Summary")
+                        .status(EmailOutboxStatus.SENDING)
+                        .attempts(attempts)
+                        .build())
+                .toList();
+    }
+
+    private void claimOnce(List<EmailOutbox> rows) {
+        when(emailOutboxRepository.claimDue(anyString(), anyInt(), any(), any()))
+                .thenReturn(rows)
+                .thenReturn(List.of());
+    }
+
+    @Nested
+    @DisplayName("EmailOutboxService.enqueue")
+    class EnqueueTests {
+
+        @Test
+        @DisplayName("Ghi 1 row PENDING / người nhận bằng 1 lần insertAll + bắn event")
+        void enqueue_shouldInsertOneBatchAndPublishEvent() {
+            EmailOutboxService service = buildService(smtp.port(), 50);
+
+            service.enqueue(List.of(
+                    EmailService.courseUpdatedToLearnerMessage("a@mail.com", "Java", "Summary"),
+                    EmailService.courseUpdatedToLearnerMessage("b@mail.com", "Java", "Summary")));
+
+            verify(emailOutboxRepository, times(1)).insertAll(rowsCaptor.capture());
+            List<EmailOutbox> rows = rowsCaptor.getValue();
+            assertEquals(List.of("a@mail.com", "b@mail.com"), rows.stream().map(EmailOutbox::getToEmail).toList());
+            assertTrue(rows.stream().allMatch(r -> r.getStatus() == EmailOutboxStatus.PENDING));
+            assertTrue(rows.get(0).getSubject().contains("Java"));
+            assertNotNull(rows.get(0).getNextAttemptAt());
+            verify(eventPublisher).publishEvent(new EmailOutboxEnqueuedEvent(2));
+            assertEquals(0, smtp.connectionCount());
+        }
+
+        @Test
+        @DisplayName("Danh sách rỗng -> không ghi, không bắn event")
+        void enqueue_empty_shouldDoNothing() {
+            EmailOutboxService service = buildService(smtp.port(), 50);
+
+            service.enqueue(List.of());
+            service.enqueue(List.of(new SimpleMailMessage()));
+
+            verify(emailOutboxRepository, never()).insertAll(anyList());
+            verifyNoInteractions(eventPublisher);
+        }
+    }
+
+    @Nested
+    @DisplayName("EmailOutboxService.dispatchDue")
+    class DispatchTests {
+
+        @Test
+        @DisplayName("120 email, 50 email / lượt -> dùng lại tối đa 2 phiên SMTP, tất cả SENT")
+        void dispatch_shouldReusePooledSessions() {
+            claimOnce(rows(120, 1));
+            EmailOutboxService service = buildService(smtp.port(), 50);
+
+            service.dispatchDue();
+
+            assertEquals(120, smtp.deliveredRecipients().size());
+            assertTrue(smtp.connectionCount() <= 2, "connections = " + smtp.connectionCount());
+            verify(emailOutboxRepository).markSent(sentCaptor.capture(), any(LocalDateTime.class));
+            assertEquals(120, sentCaptor.getValue().size());
+            verify(emailOutboxRepository).markFailed(List.of());
+        }
+
+        @Test
+        @DisplayName("40 email, 5 email / lượt trên 2 worker -> tối đa 2 kết nối SMTP cùng lúc")
+        void dispatch_shouldBoundConcurrentConnections() {
+            smtp.latency(20);
+            claimOnce(rows(40, 1));
+            EmailOutboxService service = buildService(smtp.port(), 5);
+
+            service.dispatchDue();
+
+            assertEquals(40, smtp.deliveredRecipients().size());
+            assertTrue(smtp.connectionCount() <= 2, "connections = " + smtp.connectionCount());
+            assertTrue(smtp.maxConcurrentConnections() <= 2,
+                    "max concurrent = " + smtp.maxConcurrentConnections());
+        }
+
+        @Test
+        @DisplayName("Người nhận bị 550 -> row đó FAILED + retry sau, các row khác SENT")
+        void dispatch_rejectedRecipient_shouldFailOnlyThatRow() {
+            smtp.rejectRecipient("learner2@mail.com");
+            claimOnce(rows(3, 1));
+            EmailOutboxService service = buildService(smtp.port(), 50);
+
+            LocalDateTime before = LocalDateTime.now();
+            service.dispatchDue();
+
+            verify(emailOutboxRepository).markSent(sentCaptor.capture(), any(LocalDateTime.class));
+            assertEquals(List.of(1L, 3L), new ArrayList<>(sentCaptor.getValue()));
+
+            verify(emailOutboxRepository).markFailed(failureCaptor.capture());
+            Failure failure = failureCaptor.getValue().get(0);
+            assertEquals(2L, failure.outboxId());
+            assertEquals(EmailOutboxStatus.FAILED, failure.status());
+            assertTrue(failure.nextAttemptAt().isAfter(before.plusSeconds(29)));
+            assertTrue(smtp.connectionCount() <= 2, "connections = " + smtp.connectionCount());
+        }
+
+        @Test
+        @DisplayName("SMTP không kết nối được -> FAILED, lần thử cuối -> DEAD")
+        void dispatch_smtpDown_shouldRetryThenDeadLetter() throws Exception {
+            int port = smtp.port();
+            smtp.close();
+
+            List<EmailOutbox> claimed = new ArrayList<>(rows(2, 1));
+            claimed.set(1, EmailOutbox.builder().outboxId(2L).toEmail("learner2@mail.com")
+                    .subject("s").body("b").attempts(MAX_ATTEMPTS).build());
+            claimOnce(claimed);
+            EmailOutboxService service = buildService(port, 50);
+
+            service.dispatchDue();
+
+            verify(emailOutboxRepository).markSent(sentCaptor.capture(), any(LocalDateTime.class));
+            assertTrue(sentCaptor.getValue().isEmpty());
+            verify(emailOutboxRepository).markFailed(failureCaptor.capture());
+            List<Failure> failures = failureCaptor.getValue();
+            assertEquals(EmailOutboxStatus.FAILED, failures.get(0).status());
+            assertEquals(EmailOutboxStatus.DEAD, failures.get(1).status());
+            assertNotNull(failures.get(1).lastError());
+        }
+
+        @Test
+        @DisplayName("SMTP chậm hơn sendTimeout -> không chờ mãi, row FAILED + retry sau")
+        void dispatch_slowSmtp_shouldTimeOut() {
+            smtp.latency(1500);
+            claimOnce(rows(2, 1));
+            EmailOutboxService service = buildService(smtp.port(), 50, 200);
+
+            long started = System.nanoTime();
+            service.dispatchDue();
+            long elapsedMs = (System.nanoTime() - started) / 1_000_000;
+
+            assertTrue(elapsedMs < 1500, "elapsed = " + elapsedMs);
+            verify(emailOutboxRepository).markSent(sentCaptor.capture(), any(LocalDateTime.class));
+            assertTrue(sentCaptor.getValue().isEmpty());
+            verify(emailOutboxRepository).markFailed(failureCaptor.capture());
+            List<Failure> failures = failureCaptor.getValue();
+            assertEquals(2, failures.size());
+            assertTrue(failures.stream().allMatch(f -> f.status() == EmailOutboxStatus.FAILED));
+            assertTrue(failures.get(0).lastError().contains("Timed out"));
+        }
+
+        @Test
+        @DisplayName("Không có email đến hạn -> chỉ 1 câu claim, không mở kết nối")
+        void dispatch_nothingDue_shouldNotConnect() {
+            when(emailOutboxRepository.claimDue(anyString(), anyInt(), any(), any())).thenReturn(List.of());
+            EmailOutboxService service = buildService(smtp.port(), 50);
+
+            service.dispatchDue();
+
+            verify(emailOutboxRepository, times(1)).claimDue(anyString(), eq(200), any(), any());
+            verify(emailOutboxRepository, never()).markSent(any(), any());
+            assertEquals(0, smtp.connectionCount());
+        }
+    }
+}
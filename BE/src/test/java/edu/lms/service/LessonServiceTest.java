@@ -41,6 +41,7 @@ class LessonServiceTest {
     @Mock EnrollmentRepository enrollmentRepository;
     @Mock UserRepository userRepository;
     @Mock LessonResourceRepository lessonResourceRepository;
+    @Mock CourseProgressService courseProgressService;
 
     @InjectMocks
     LessonServiceImpl lessonService;
@@ -159,6 +160,7 @@ class LessonServiceTest {
             assertNotNull(res.getCreatedAt());
 
             verify(lessonRepository).save(any(Lesson.class));
+            verify(courseProgressService).recalculateCourse(200L);
         }
 
         /**
@@ -535,6 +537,7 @@ class LessonServiceTest {
             lessonService.deleteLesson(lessonId, email);
 
             verify(lessonRepository).delete(lesson);
+            verify(courseProgressService).recalculateCourse(200L);
         }
 
         /**
@@ -0,0 +1,207 @@
+package edu.lms.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * MailDispatcherTest – gửi thật qua SmtpSessionPool tới SmtpStubServer local
+ *
+ * Cover:
+ *  - MailTemplate: render đúng biến, thiếu biến -> IllegalArgumentException, text EmailService giữ nguyên
+ *  - phiên SMTP dùng lại giữa các lần submit (không mở kết nối mới mỗi mail)
+ *  - người nhận bị 550 -> chỉ mail đó lỗi, phiên vẫn gửi tiếp
+ *  - MailMetrics đếm sent / failed theo template
+ *  - queue đầy -> gửi luôn trên thread gọi
+ *  - stop() -> mail còn trong queue trả lỗi ngay, submit sau stop lỗi luôn
+ */
+class MailDispatcherTest {
+
+    SmtpStubServer smtp;
+    ExecutorService executor;
+    SmtpSessionPool sessionPool;
+    MailMetrics mailMetrics;
+    MailDispatcher mailDispatcher;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        smtp = new SmtpStubServer();
+        executor = Executors.newFixedThreadPool(2);
+        mailMetrics = new MailMetrics();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        if (mailDispatcher != null) mailDispatcher.stop();
+        if (sessionPool != null) sessionPool.close();
+        smtp.close();
+        executor.shutdownNow();
+    }
+
+    private void start(int workers, int queueCapacity) {
+        JavaMailSenderImpl mailSender = new JavaMailSenderImpl();
+        mailSender.setHost("127.0.0.1");
+        mailSender.setPort(smtp.port());
+        mailSender.setDefaultEncoding("UTF-8");
+        Properties props = new Properties();
+        props.put("mail.smtp.connectiontimeout", "1000");
+        props.put("mail.smtp.timeout", "2000");
+        props.put("mail.smtp.from", "noreply@linguahub.test");
+        mailSender.setJavaMailProperties(props);
+
+        sessionPool = new SmtpSessionPool(mailSender, Math.max(workers, 1), 120, 30);
+        mailDispatcher = new MailDispatcher(sessionPool, mailMetrics, executor, workers, 50, queueCapacity);
+        mailDispatcher.start();
+    }
+
+    private static SimpleMailMessage mail(String to) {
+        return EmailService.OTP.render(to, Map.of("otp", "123456"));
+    }
+
+    @Nested
+    @DisplayName("MailTemplate")
+    class TemplateTests {
+
+        @Test
+        @DisplayName("Render thay biến ở subject + body")
+        void render_shouldSubstituteVariables() {
+            MailTemplate template = MailTemplate.compile("t", "Hi {{name}}", "A {{name}} B {{ x }}.");
+
+            SimpleMailMessage message = template.render("a@mail.com", Map.of("name", "Lan", "x", "1"));
+
+            assertArrayEquals(new String[]{"a@mail.com"}, message.getTo());
+            assertEquals("Hi Lan", message.getSubject());
+            assertEquals("A Lan B 1.", message.getText());
+        }
+
+        @Test
+        @DisplayName("Thiếu biến -> IllegalArgumentException")
+        void render_missingVariable_shouldThrow() {
+            MailTemplate template = MailTemplate.compile("t", "s", "Code {{otp}}");
+
+            assertThrows(IllegalArgumentException.class, () -> template.render("a@mail.com", Map.of()));
+            assertThrows(IllegalArgumentException.class, () -> MailTemplate.compile("t", "s", "Code {{otp"));
+        }
+
+        @Test
+        @DisplayName("Template EmailService giữ nguyên nội dung cũ")
+        void emailServiceTemplates_shouldKeepText() {
+            SimpleMailMessage message = EmailService.courseUpdatedToLearnerMessage("a@mail.com", "Java", "- New lesson");
+
+            assertEquals("[LinguaHub] Course \"Java\" has been updated", message.getSubject());
+            assertEquals("Hello,\n\nThe course \"Java\" that you enrolled in has just been updated.\n\n"
+                    + "Summary of changes:\n- New lesson\n\nPlease log in to LinguaHub to see full details.\n\n"
+                    + "Best regards,\nLinguaHub Team", message.getText());
+            assertEquals("Your verification code is: 123456\nThis code will expire in 5 minutes.",
+                    mail("a@mail.com").getText());
+        }
+    }
+
+    @Nested
+    @DisplayName("MailDispatcher.submit")
+    class SubmitTests {
+
+        @Test
+        @DisplayName("Nhiều lần submit tuần tự -> dùng lại 1 phiên SMTP")
+        void submit_shouldReuseSession() {
+            start(1, 100);
+
+            for (int i = 0; i < 5; i++) {
+                assertTrue(mailDispatcher.submit("otp", mail("u" + i + "@mail.com")).join().delivered());
+            }
+
+            assertEquals(5, smtp.deliveredRecipients().size());
+            assertEquals(1, smtp.connectionCount());
+        }
+
+        @Test
+        @DisplayName("Người nhận bị 550 -> chỉ mail đó lỗi, các mail khác vẫn gửi trên cùng phiên")
+        void submit_rejectedRecipient_shouldFailOnlyThatMessage() {
+            smtp.rejectRecipient("bad@mail.com");
+            start(1, 100);
+
+            List<CompletableFuture<MailDispatcher.MailResult>> futures = List.of(
+                    mailDispatcher.submit("otp", mail("a@mail.com")),
+                    mailDispatcher.submit("otp", mail("bad@mail.com")),
+                    mailDispatcher.submit("otp", mail("b@mail.com")));
+            List<MailDispatcher.MailResult> results = futures.stream().map(CompletableFuture::join).toList();
+
+            assertTrue(results.get(0).delivered());
+            assertFalse(results.get(1).delivered());
+            assertEquals("bad@mail.com", results.get(1).to());
+            assertNotNull(results.get(1).error());
+            assertTrue(results.get(2).delivered());
+            assertEquals(List.of("a@mail.com", "b@mail.com"), smtp.deliveredRecipients());
+            assertEquals(1, smtp.connectionCount());
+        }
+
+        @Test
+        @DisplayName("MailMetrics đếm sent / failed theo template")
+        void submit_shouldRecordMetricsPerTemplate() {
+            smtp.rejectRecipient("bad@mail.com");
+            start(2, 100);
+
+            List<CompletableFuture<MailDispatcher.MailResult>> futures = IntStream.range(0, 10)
+                    .mapToObj(i -> mailDispatcher.submit("otp", mail("u" + i + "@mail.com")))
+                    .collect(Collectors.toList());
+            futures.add(mailDispatcher.submit("course-updated", mail("bad@mail.com")));
+            futures.forEach(CompletableFuture::join);
+
+            Map<String, MailMetrics.TemplateStats> stats = mailMetrics.snapshot();
+            assertEquals(10, stats.get("otp").sent());
+            assertEquals(0, stats.get("otp").failed());
+            assertEquals(0, stats.get("course-updated").sent());
+            assertEquals(1, stats.get("course-updated").failed());
+        }
+
+        @Test
+        @DisplayName("Queue đầy -> mail gửi luôn trên thread gọi")
+        void submit_queueFull_shouldSendOnCallerThread() {
+            // không có worker: mail đầu nằm trong queue, mail thứ 2 gửi đồng bộ
+            start(0, 1);
+
+            CompletableFuture<MailDispatcher.MailResult> queued = mailDispatcher.submit("otp", mail("a@mail.com"));
+            CompletableFuture<MailDispatcher.MailResult> direct = mailDispatcher.submit("otp", mail("b@mail.com"));
+
+            assertFalse(queued.isDone());
+            assertTrue(direct.isDone());
+            assertTrue(direct.join().delivered());
+            assertEquals(List.of("b@mail.com"), smtp.deliveredRecipients());
+            assertEquals(1, mailDispatcher.queued());
+        }
+
+        @Test
+        @DisplayName("stop() -> mail còn trong queue trả lỗi ngay, submit sau stop lỗi luôn")
+        void stop_shouldFailUndeliveredMails() {
+            // không có worker: mail nằm lại trong queue
+            start(0, 10);
+            CompletableFuture<MailDispatcher.MailResult> queued = mailDispatcher.submit("otp", mail("a@mail.com"));
+
+            mailDispatcher.stop();
+            CompletableFuture<MailDispatcher.MailResult> late = mailDispatcher.submit("otp", mail("b@mail.com"));
+
+            assertTrue(queued.isDone());
+            assertFalse(queued.join().delivered());
+            assertTrue(late.isDone());
+            assertFalse(late.join().delivered());
+            assertEquals(0, mailDispatcher.queued());
+            assertEquals(0, smtp.connectionCount());
+            assertEquals(2, mailMetrics.snapshot().get("otp").failed());
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package edu.lms.service;
+
+import edu.lms.configuration.PayOSProperties;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * So sánh độ trễ PayOSClient (pool + keep-alive) với new RestTemplate() cũ trên PayOSStubServer,
+ * và kiểm tra timeout / retry giới hạn được thời gian chờ.
+ * Không chạy trong build thường: mvn test -Pbenchmark -Dtest=PayOSClientLatencyBenchmark
+ */
+@Tag("benchmark")
+class PayOSClientLatencyBenchmark {
+
+    private static final int THREADS = 16;
+    private static final int REQUESTS_PER_THREAD = 500;
+    // Chênh lệch chấp nhận được do nhiễu khi chạy local
+    private static final double TOLERANCE = 1.25;
+
+    private PayOSClient buildClient(PayOSStubServer stub, int maxRetries, int readTimeoutMs) {
+        PayOSProperties props = new PayOSProperties();
+        props.setEndpoint(stub.endpoint());
+        props.setClientId("client");
+        props.setApiKey("key");
+        props.setConnectTimeoutMs(500);
+        props.setReadTimeoutMs(readTimeoutMs);
+        props.setMaxConnections(THREADS);
+        props.setMaxRetries(maxRetries);
+        props.setRetryBackoffMs(10);
+        props.setCircuitFailureThreshold(1000);
+        return new PayOSClient(props);
+    }
+
+    @Test
+    void pooledClient_shouldNotBeSlowerThanBareRestTemplate() throws Exception {
+        try (PayOSStubServer stub = new PayOSStubServer().latency(5)) {
+            PayOSClient pooled = buildClient(stub, 0, 5000);
+
+            RestTemplate bare = new RestTemplate();
+            HttpHeaders headers = new HttpHeaders();
+            headers.setContentType(MediaType.APPLICATION_JSON);
+            String url = stub.endpoint() + "/payment-requests";
+
+            // warm-up
+            run("warm-up", () -> pooled.post("/payment-requests", Map.of()));
+
+            Stats bareStats = run("bare RestTemplate", () ->
+                    bare.postForEntity(url, new HttpEntity<>(Map.of(), headers), String.class).getBody());
+            Stats pooledStats = run("PayOSClient (pooled)", () -> pooled.post("/payment-requests", Map.of()));
+
+            // 3 lượt, mỗi request đúng 1 lần gọi (không có retry ẩn)
+            assertEquals(3 * THREADS * REQUESTS_PER_THREAD, stub.requestCount());
+            assertTrue(pooledStats.p50 <= bareStats.p50 * TOLERANCE,
+                    "pooled p50 " + pooledStats.p50 + "ns vs bare p50 " + bareStats.p50 + "ns");
+            assertTrue(pooledStats.throughput * TOLERANCE >= bareStats.throughput,
+                    "pooled " + pooledStats.throughput + " req/s vs bare " + bareStats.throughput + " req/s");
+        }
+    }
+
+    @Test
+    void readTimeout_shouldBoundSlowCalls() throws Exception {
+        try (PayOSStubServer stub = new PayOSStubServer().latency(2000)) {
+            PayOSClient client = buildClient(stub, 2, 200);
+
+            long start = System.nanoTime();
+            assertThrows(ResourceAccessException.class, () -> client.post("/payment-requests", Map.of()));
+            long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+            System.out.printf("[BENCH] read timeout 200ms → gave up after %dms, %d request(s)%n",
+                    elapsedMs, stub.requestCount());
+            // Tạo link không retry read timeout → trả lỗi sau ~1 lần timeout, không chờ hết 2s của PayOS
+            assertEquals(1, stub.requestCount());
+            assertTrue(elapsedMs < 1000, "elapsed " + elapsedMs + "ms");
+        }
+    }
+
+    @Test
+    void postIdempotent_transientFailures_shouldRecoverWithinBackoff() throws Exception {
+        try (PayOSStubServer stub = new PayOSStubServer().failNext(2, 500)) {
+            PayOSClient client = buildClient(stub, 2, 1000);
+
+            long start = System.nanoTime();
+            String body = client.postIdempotent("/payment-requests/stub-link/cancel", Map.of());
+            long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+            System.out.printf("[BENCH] 2 transient 500 → recovered after %dms, %d request(s)%n",
+                    elapsedMs, stub.requestCount());
+            assertNotNull(body);
+            assertEquals(3, stub.requestCount());
+            assertTrue(elapsedMs < 1000, "elapsed " + elapsedMs + "ms");
+        }
+    }
+
+    private record Stats(long p50, long p99, long max, double throughput) {}
+
+    private Stats run(String name, Supplier<String> call) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        List<Future<long[]>> futures = new ArrayList<>();
+        long start = System.nanoTime();
+
+        for (int t = 0; t < THREADS; t++) {
+            futures.add(pool.submit(() -> {
+                long[] latencies = new long[REQUESTS_PER_THREAD];
+                for (int i = 0; i < REQUESTS_PER_THREAD; i++) {
+                    long s = System.nanoTime();
+                    assertNotNull(call.get());
+                    latencies[i] = System.nanoTime() - s;
+                }
+                return latencies;
+            }));
+        }
+
+        long[] all = new long[THREADS * REQUESTS_PER_THREAD];
+        int offset = 0;
+        for (Future<long[]> f : futures) {
+            long[] l = f.get();
+            System.arraycopy(l, 0, all, offset, l.length);
+            offset += l.length;
+        }
+        long elapsedNanos = System.nanoTime() - start;
+        pool.shutdown();
+
+        Arrays.sort(all);
+        Stats stats = new Stats(
+                all[all.length / 2],
+                all[(int) (all.length * 0.99)],
+                all[all.length - 1],
+                all.length / (elapsedNanos / 1e9));
+        System.out.printf("[BENCH] %-22s p50=%.2fms p99=%.2fms max=%.2fms throughput=%.0f req/s%n",
+                name, stats.p50 / 1e6, stats.p99 / 1e6, stats.max / 1e6, stats.throughput);
+        return stats;
+    }
+}
@@ -0,0 +1,206 @@
+package edu.lms.service;
+
+import edu.lms.configuration.PayOSProperties;
+import edu.lms.exception.AppException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * PayOSClientTest – chạy với PayOSStubServer local
+ *
+ * Cover:
+ *  - post (tạo link): thành công, không retry 4xx / 5xx có body / read timeout, retry 503 không body
+ *  - postIdempotent (huỷ link): retry 5xx
+ *  - circuit breaker: mở sau N lỗi, half-open cho 1 request thử, lỗi ngoài RestClientException vẫn ghi nhận
+ */
+class PayOSClientTest {
+
+    PayOSStubServer stub;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        stub = new PayOSStubServer();
+    }
+
+    @AfterEach
+    void tearDown() {
+        stub.close();
+    }
+
+    private PayOSClient buildClient(int maxRetries, int circuitThreshold, int readTimeoutMs) {
+        PayOSProperties props = new PayOSProperties();
+        props.setEndpoint(stub.endpoint());
+        props.setClientId("client");
+        props.setApiKey("key");
+        props.setConnectTimeoutMs(500);
+        props.setReadTimeoutMs(readTimeoutMs);
+        props.setMaxConnections(10);
+        props.setMaxRetries(maxRetries);
+        props.setRetryBackoffMs(1);
+        props.setCircuitFailureThreshold(circuitThreshold);
+        props.setCircuitOpenMs(60_000);
+        return new PayOSClient(props);
+    }
+
+    @Nested
+    @DisplayName("PayOSClient.post")
+    class PostTests {
+
+        @Test
+        @DisplayName("PayOS trả 200 -> trả body")
+        void post_success_shouldReturnBody() {
+            PayOSClient client = buildClient(0, 5, 1000);
+
+            String body = client.post("/payment-requests", Map.of("orderCode", 123));
+
+            assertTrue(body.contains("stub-link"));
+            assertEquals(1, stub.requestCount());
+        }
+
+        @Test
+        @DisplayName("Tạo link: 500 có body -> không retry (PayOS có thể đã tạo link), tính vào circuit")
+        void post_serverError_shouldNotRetry() {
+            stub.failNext(2, 500);
+            PayOSClient client = buildClient(2, 1, 1000);
+
+            assertThrows(HttpServerErrorException.class, () -> client.post("/payment-requests", Map.of()));
+            assertEquals(1, stub.requestCount());
+            assertEquals(PayOSCircuitBreaker.State.OPEN, client.getCircuitState());
+        }
+
+        @Test
+        @DisplayName("Tạo link: 2 lần 503 không body rồi 200, maxRetries=2 -> thành công sau 3 request")
+        void post_unavailableWithoutBody_shouldRetry() {
+            stub.failNext(2, 503, "");
+            PayOSClient client = buildClient(2, 5, 1000);
+
+            String body = client.post("/payment-requests", Map.of());
+
+            assertTrue(body.contains("stub-link"));
+            assertEquals(3, stub.requestCount());
+            assertEquals(PayOSCircuitBreaker.State.CLOSED, client.getCircuitState());
+        }
+
+        @Test
+        @DisplayName("Tạo link: read timeout -> không gửi lại")
+        void post_readTimeout_shouldNotRetry() {
+            stub.latency(300);
+            PayOSClient client = buildClient(2, 5, 100);
+
+            assertThrows(ResourceAccessException.class, () -> client.post("/payment-requests", Map.of()));
+            assertEquals(1, stub.requestCount());
+        }
+
+        @Test
+        @DisplayName("Huỷ link: 2 lần 500 rồi 200, maxRetries=2 -> thành công sau 3 request")
+        void postIdempotent_serverErrorThenSuccess_shouldRetry() {
+            stub.failNext(2, 500);
+            PayOSClient client = buildClient(2, 5, 1000);
+
+            String body = client.postIdempotent("/payment-requests/stub-link/cancel", null);
+
+            assertTrue(body.contains("CANCELLED"));
+            assertEquals(3, stub.requestCount());
+            assertEquals(PayOSCircuitBreaker.State.CLOSED, client.getCircuitState());
+        }
+
+        @Test
+        @DisplayName("400 -> không retry, circuit vẫn đóng")
+        void post_clientError_shouldNotRetry() {
+            stub.failNext(5, 400);
+            PayOSClient client = buildClient(3, 1, 1000);
+
+            assertThrows(HttpClientErrorException.class, () -> client.post("/payment-requests", Map.of()));
+            assertEquals(1, stub.requestCount());
+            assertEquals(PayOSCircuitBreaker.State.CLOSED, client.getCircuitState());
+        }
+
+        @Test
+        @DisplayName("PayOS chậm hơn read timeout -> ResourceAccessException")
+        void post_slowServer_shouldTimeout() {
+            stub.latency(500);
+            PayOSClient client = buildClient(0, 5, 100);
+
+            assertThrows(ResourceAccessException.class, () -> client.post("/payment-requests", Map.of()));
+        }
+    }
+
+    @Nested
+    @DisplayName("Circuit breaker")
+    class CircuitBreakerTests {
+
+        @Test
+        @DisplayName("2 lần lỗi liên tiếp (threshold=2) -> lần 3 bị chặn, không gọi PayOS")
+        void post_repeatedFailures_shouldOpenCircuit() {
+            stub.failNext(100, 503);
+            PayOSClient client = buildClient(0, 2, 1000);
+
+            assertThrows(HttpServerErrorException.class, () -> client.post("/payment-requests", Map.of()));
+            assertThrows(HttpServerErrorException.class, () -> client.post("/payment-requests", Map.of()));
+            assertThrows(AppException.class, () -> client.post("/payment-requests", Map.of()));
+
+            assertEquals(2, stub.requestCount());
+            assertEquals(PayOSCircuitBreaker.State.OPEN, client.getCircuitState());
+        }
+
+        @Test
+        @DisplayName("Thread bị interrupt -> lỗi ngoài RestClientException vẫn ghi nhận vào circuit")
+        void post_interrupted_shouldRecordFailure() {
+            PayOSClient client = buildClient(3, 1, 1000);
+
+            Thread.currentThread().interrupt();
+            try {
+                assertThrows(RuntimeException.class, () -> client.post("/payment-requests", Map.of()));
+            } finally {
+                Thread.interrupted();
+            }
+
+            assertEquals(PayOSCircuitBreaker.State.OPEN, client.getCircuitState());
+        }
+
+        @Test
+        @DisplayName("Hết thời gian OPEN -> cho 1 request thử, thành công thì đóng lại")
+        void circuit_halfOpen_shouldAllowSingleTrial() {
+            AtomicLong clock = new AtomicLong(1_000);
+            PayOSCircuitBreaker breaker = new PayOSCircuitBreaker(1, 100, clock::get);
+
+            breaker.onFailure();
+            assertFalse(breaker.tryAcquire());
+
+            clock.addAndGet(150);
+            assertEquals(PayOSCircuitBreaker.State.HALF_OPEN, breaker.getState());
+            assertTrue(breaker.tryAcquire());
+            assertFalse(breaker.tryAcquire());
+
+            breaker.onSuccess();
+            assertEquals(PayOSCircuitBreaker.State.CLOSED, breaker.getState());
+            assertTrue(breaker.tryAcquire());
+        }
+
+        @Test
+        @DisplayName("Request thử ở HALF_OPEN lỗi -> mở lại")
+        void circuit_halfOpenFailure_shouldReopen() {
+            AtomicLong clock = new AtomicLong(1_000);
+            PayOSCircuitBreaker breaker = new PayOSCircuitBreaker(1, 100, clock::get);
+
+            breaker.onFailure();
+            clock.addAndGet(150);
+            assertTrue(breaker.tryAcquire());
+
+            breaker.onFailure();
+            assertEquals(PayOSCircuitBreaker.State.OPEN, breaker.getState());
+            assertFalse(breaker.tryAcquire());
+        }
+    }
+}
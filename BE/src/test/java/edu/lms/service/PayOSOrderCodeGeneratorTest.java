@@ -0,0 +1,118 @@
+package edu.lms.service;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * PayOSOrderCodeGeneratorTest
+ *
+ * Cover:
+ *  - Nhiều thread sinh hàng triệu code không trùng, mỗi thread tăng dần
+ *  - Code nằm trong giới hạn PayOS (≤ 2^53 - 1)
+ *  - 2 node khác nhau cùng ms không trùng code
+ *  - Đồng hồ chạy lùi / tràn sequence vẫn tăng dần
+ */
+class PayOSOrderCodeGeneratorTest {
+
+    private static final long PAYOS_MAX_ORDER_CODE = 9007199254740991L;
+
+    @Test
+    @DisplayName("8 thread x 500k code -> không trùng, tăng dần theo từng thread")
+    void nextOrderCode_concurrent_shouldBeUnique() throws Exception {
+        PayOSOrderCodeGenerator generator = new PayOSOrderCodeGenerator(3);
+
+        int threads = 8;
+        int perThread = 500_000;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<long[]>> futures = new ArrayList<>();
+
+        for (int t = 0; t < threads; t++) {
+            futures.add(pool.submit(() -> {
+                long[] codes = new long[perThread];
+                start.await();
+                for (int i = 0; i < perThread; i++) {
+                    codes[i] = generator.nextOrderCode();
+                }
+                return codes;
+            }));
+        }
+        start.countDown();
+
+        long[] all = new long[threads * perThread];
+        int offset = 0;
+        for (Future<long[]> f : futures) {
+            long[] codes = f.get();
+            for (int i = 1; i < codes.length; i++) {
+                assertTrue(codes[i] > codes[i - 1], "codes must be monotonic within a thread");
+            }
+            System.arraycopy(codes, 0, all, offset, codes.length);
+            offset += codes.length;
+        }
+        pool.shutdown();
+
+        Arrays.sort(all);
+        for (int i = 1; i < all.length; i++) {
+            assertNotEquals(all[i - 1], all[i], "duplicate order code " + all[i]);
+        }
+        assertTrue(all[0] > 0);
+        assertTrue(all[all.length - 1] <= PAYOS_MAX_ORDER_CODE);
+    }
+
+    @Test
+    @DisplayName("2 node cùng clock -> tập code rời nhau")
+    void nextOrderCode_differentNodes_shouldNotCollide() {
+        AtomicLong clock = new AtomicLong(System.currentTimeMillis());
+        PayOSOrderCodeGenerator node0 = new PayOSOrderCodeGenerator(0, clock::get);
+        PayOSOrderCodeGenerator node1 = new PayOSOrderCodeGenerator(1, clock::get);
+
+        for (int i = 0; i < 10_000; i++) {
+            assertNotEquals(node0.nextOrderCode(), node1.nextOrderCode());
+        }
+    }
+
+    @Test
+    @DisplayName("Đồng hồ chạy lùi -> code vẫn tăng")
+    void nextOrderCode_clockBackwards_shouldStayMonotonic() {
+        AtomicLong clock = new AtomicLong(System.currentTimeMillis());
+        PayOSOrderCodeGenerator generator = new PayOSOrderCodeGenerator(0, clock::get);
+
+        long first = generator.nextOrderCode();
+        clock.addAndGet(-5_000);
+        long second = generator.nextOrderCode();
+
+        assertTrue(second > first);
+    }
+
+    @Test
+    @DisplayName("Hết 256 sequence trong 1 ms -> mượn ms kế tiếp, không trùng")
+    void nextOrderCode_sequenceOverflow_shouldRollToNextMillis() {
+        AtomicLong clock = new AtomicLong(System.currentTimeMillis());
+        PayOSOrderCodeGenerator generator = new PayOSOrderCodeGenerator(0, clock::get);
+
+        long prev = generator.nextOrderCode();
+        for (int i = 0; i < 1_000; i++) {
+            long next = generator.nextOrderCode();
+            assertTrue(next > prev);
+            prev = next;
+        }
+    }
+
+    @Test
+    @DisplayName("nodeId ngoài 0-15 -> IllegalArgumentException")
+    void constructor_invalidNodeId_shouldThrow() {
+        assertThrows(IllegalArgumentException.class, () -> new PayOSOrderCodeGenerator(16));
+        assertThrows(IllegalArgumentException.class, () -> new PayOSOrderCodeGenerator(-1));
+    }
+}
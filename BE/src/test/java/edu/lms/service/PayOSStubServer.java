@@ -0,0 +1,112 @@
+package edu.lms.service;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * PayOS giả chạy local cho test / benchmark (không gọi ra api-merchant.payos.vn).
+ *  - POST /payment-requests              → trả checkout data
+ *  - POST /payment-requests/{id}/cancel  → trả status CANCELLED
+ * Có thể cấu hình độ trễ và số request tiếp theo sẽ trả lỗi.
+ */
+class PayOSStubServer implements AutoCloseable {
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newFixedThreadPool(32);
+    private final AtomicInteger requestCount = new AtomicInteger();
+    private final AtomicInteger failuresLeft = new AtomicInteger();
+    private volatile int failureStatus = 500;
+    private volatile String failureBody = "{\"code\":\"99\",\"desc\":\"stub failure\"}";
+    private volatile long latencyMs = 0;
+
+    PayOSStubServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/payment-requests", this::handle);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    String endpoint() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    int requestCount() {
+        return requestCount.get();
+    }
+
+    PayOSStubServer failNext(int count, int status) {
+        return failNext(count, status, "{\"code\":\"99\",\"desc\":\"stub failure\"}");
+    }
+
+    /** body rỗng = lỗi trả về trước khi PayOS xử lý request (vd. gateway 503) */
+    PayOSStubServer failNext(int count, int status, String body) {
+        failureBody = body;
+        failureStatus = status;
+        failuresLeft.set(count);
+        return this;
+    }
+
+    PayOSStubServer latency(long millis) {
+        latencyMs = millis;
+        return this;
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        requestCount.incrementAndGet();
+        exchange.getRequestBody().readAllBytes();
+
+        if (latencyMs > 0) {
+            try {
+                Thread.sleep(latencyMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        if (failuresLeft.getAndUpdate(n -> n > 0 ? n - 1 : 0) > 0) {
+            write(exchange, failureStatus, failureBody);
+            return;
+        }
+
+        String path = exchange.getRequestURI().getPath();
+        if (path.endsWith("/cancel")) {
+            write(exchange, 200, "{\"code\":\"00\",\"desc\":\"success\",\"data\":{\"status\":\"CANCELLED\"}}");
+        } else {
+            write(exchange, 200, """
+                    {"code":"00","desc":"success","data":{
+                      "orderCode":123,"amount":100000,"paymentLinkId":"stub-link",
+                      "status":"PENDING","checkoutUrl":"http://stub/checkout","qrCode":"stub-qr"}}
+                    """);
+        }
+    }
+
+    private static void write(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        if (bytes.length == 0) {
+            // -1 = không có body (0 sẽ thành chunked); server đóng kết nối sau response rỗng nên báo client không dùng lại
+            exchange.getResponseHeaders().add("Connection", "close");
+            exchange.sendResponseHeaders(status, -1);
+            exchange.close();
+            return;
+        }
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(bytes);
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
@@ -6,8 +6,10 @@ import edu.lms.dto.response.PaymentResponse;
 import edu.lms.entity.*;
 import edu.lms.enums.*;
 import edu.lms.exception.AppException;
+import edu.lms.exception.ErrorCode;
 import edu.lms.mapper.PaymentMapper;
 import edu.lms.repository.*;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
@@ -18,12 +20,15 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import org.mockito.junit.jupiter.MockitoSettings;
 import org.mockito.quality.Strictness;
 import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import vn.payos.type.CheckoutResponseData;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
@@ -33,9 +38,10 @@ import static org.mockito.Mockito.*;
  * PaymentServiceTest
  *
  * Cover các public method:
- *  - createPayment (14 case UTCID01–UTCID14)
+ *  - createPayment (21 case UTCID01–UTCID21)
  *  - processPostPayment
  *  - handleUserCancelPayment
+ *  - refundCancelledPayment
  *  - rollbackBookingSlots
  *  - getPaymentsByTutor / getPaymentsByUser / getAllPayments / getPaymentsForMe
  *
@@ -76,10 +82,28 @@ class PaymentServiceTest {
     WithdrawService withdrawService;
     @Mock
     CloudflareTurnstileService cloudflareTurnstileService;
+    @Mock
+    TutorAvailabilityService tutorAvailabilityService;
+    @Mock
+    CheckoutRateLimiter checkoutRateLimiter;
+    @Mock
+    NotificationService notificationService;
+    @Mock
+    RefundRequestRepository refundRequestRepository;
+
+    // Chạy callback ngay trên thread test, transaction manager là mock
+    @Spy
+    TransactionTemplate transactionTemplate = new TransactionTemplate(mock(PlatformTransactionManager.class));
 
     @InjectMocks
     PaymentService paymentService;
 
+    @BeforeEach
+    void setUp() {
+        // Payment vừa tạo vẫn PENDING → gắn link PayOS thành công
+        when(paymentRepository.attachLinkIfPending(any(), any(), any(), any(), any(), any())).thenReturn(1);
+    }
+
     // =======================
     // HELPER BUILD ENTITY
     // =======================
@@ -248,7 +272,7 @@ class PaymentServiceTest {
         @DisplayName("UTCID03 - Booking payment, booking plan không tồn tại -> BOOKING_NOT_FOUND")
         void UTCID03_createBookingPayment_bookingPlanNotFound() {
             mockPaymentSaveReturnArgument();
-            when(cloudflareTurnstileService.verify(anyString())).thenReturn(true);
+            when(cloudflareTurnstileService.verifyAsync(anyString())).thenReturn(CompletableFuture.completedFuture(true));
 
             Long userId = 2L;
             Long planId = 100L;
@@ -278,7 +302,7 @@ class PaymentServiceTest {
         @DisplayName("UTCID04 - Booking payment, slots=null -> BOOKING_SLOT_NOT_AVAILABLE")
         void UTCID04_createBookingPayment_slotsNull_shouldThrow() {
             mockPaymentSaveReturnArgument();
-            when(cloudflareTurnstileService.verify(anyString())).thenReturn(true);
+            when(cloudflareTurnstileService.verifyAsync(anyString())).thenReturn(CompletableFuture.completedFuture(true));
 
             Long userId = 3L;
             Long planId = 20L;
@@ -307,7 +331,7 @@ class PaymentServiceTest {
         @DisplayName("UTCID05 - Booking payment, user không tồn tại -> USER_NOT_EXIST")
         void UTCID05_createBookingPayment_userNotExist_shouldThrow() {
             mockPaymentSaveReturnArgument();
-            when(cloudflareTurnstileService.verify(anyString())).thenReturn(true);
+            when(cloudflareTurnstileService.verifyAsync(anyString())).thenReturn(CompletableFuture.completedFuture(true));
 
             Long userId = 100L;
             Long planId = 20L;
@@ -340,7 +364,7 @@ class PaymentServiceTest {
         @DisplayName("UTCID06 - Booking payment, slots=[] -> BOOKING_SLOT_NOT_AVAILABLE (Boundary)")
         void UTCID06_createBookingPayment_slotsEmpty_shouldThrow() {
             mockPaymentSaveReturnArgument();
-            when(cloudflareTurnstileService.verify(anyString())).thenReturn(true);
+            when(cloudflareTurnstileService.verifyAsync(anyString())).thenReturn(CompletableFuture.completedFuture(true));
 
             Long userId = 3L;
             Long planId = 20L;
@@ -369,7 +393,7 @@ class PaymentServiceTest {
         @DisplayName("UTCID07 - Booking payment, slot đã tồn tại (taken) -> BOOKING_SLOT_NOT_AVAILABLE")
         void UTCID07_createBookingPayment_slotTaken_shouldThrow() {
             mockPaymentSaveReturnArgument();
-            when(cloudflareTurnstileService.verify(anyString())).thenReturn(true);
+            when(cloudflareTurnstileService.verifyAsync(anyString())).thenReturn(CompletableFuture.completedFuture(true));
 
             Long userId = 3L;
             Long planId = 20L;
@@ -408,7 +432,7 @@ class PaymentServiceTest {
         @DisplayName("UTCID08 - Booking payment, userPackage=null, 1 slot -> tạo payment OK")
         void UTCID08_createBookingPayment_singleSlot_success() {
             mockPaymentSaveReturnArgument();
-            when(cloudflareTurnstileService.verify(anyString())).thenReturn(true);
+            when(cloudflareTurnstileService.verifyAsync(anyString())).thenReturn(CompletableFuture.completedFuture(true));
 
             Long userId = 3L;
             Long planId = 20L;
@@ -474,7 +498,7 @@ class PaymentServiceTest {
         @DisplayName("UTCID09 - Booking payment, userPackage tồn tại -> tạo payment OK, slot có userPackage")
         void UTCID09_createBookingPayment_userPackageExists_success() {
             mockPaymentSaveReturnArgument();
-            when(cloudflareTurnstileService.verify(anyString())).thenReturn(true);
+            when(cloudflareTurnstileService.verifyAsync(anyString())).thenReturn(CompletableFuture.completedFuture(true));
 
             Long userId = 3L;
             Long planId = 20L;
@@ -537,7 +561,7 @@ class PaymentServiceTest {
         @DisplayName("UTCID10 - PayOS expiredAt=null -> dùng expiresAt của Payment")
         void UTCID10_createBookingPayment_payOSExpiredNull_shouldUsePaymentExpiresAt() {
             mockPaymentSaveReturnArgument();
-            when(cloudflareTurnstileService.verify(anyString())).thenReturn(true);
+            when(cloudflareTurnstileService.verifyAsync(anyString())).thenReturn(CompletableFuture.completedFuture(true));
 
             Long userId = 3L;
             Long planId = 20L;
@@ -622,7 +646,7 @@ class PaymentServiceTest {
         @DisplayName("UTCID12 - Booking payment, userPackageId không tồn tại -> USER_PACKAGE_NOT_FOUND")
         void UTCID12_createBookingPayment_userPackageNotFound_shouldThrow() {
             mockPaymentSaveReturnArgument();
-            when(cloudflareTurnstileService.verify(anyString())).thenReturn(true);
+            when(cloudflareTurnstileService.verifyAsync(anyString())).thenReturn(CompletableFuture.completedFuture(true));
 
             Long userId = 3L;
             Long planId = 20L;
@@ -662,7 +686,7 @@ class PaymentServiceTest {
         @DisplayName("UTCID13 - Booking payment, cancel/expired >=3 lần trong 1h -> BOOKING_PAYMENT_CANCEL_TOO_MANY_TIMES")
         void UTCID13_createBookingPayment_cancelTooManyTimes_shouldThrow() {
             mockPaymentSaveReturnArgument();
-            when(cloudflareTurnstileService.verify(anyString())).thenReturn(true);
+            when(cloudflareTurnstileService.verifyAsync(anyString())).thenReturn(CompletableFuture.completedFuture(true));
 
             Long userId = 3L;
             Long planId = 20L;
@@ -675,16 +699,8 @@ class PaymentServiceTest {
             User user = buildUser(userId);
             when(userRepository.findById(userId)).thenReturn(java.util.Optional.of(user));
 
-            // cancelledCount + expiredCount = 3
-            when(paymentRepository.countByUserIdAndPaymentTypeAndTargetIdAndStatusAndCreatedAtAfter(
-                    eq(userId), eq(PaymentType.Booking), eq(planId),
-                    eq(PaymentStatus.CANCELLED), any(LocalDateTime.class)
-            )).thenReturn(2L);
-
-            when(paymentRepository.countByUserIdAndPaymentTypeAndTargetIdAndStatusAndCreatedAtAfter(
-                    eq(userId), eq(PaymentType.Booking), eq(planId),
-                    eq(PaymentStatus.EXPIRED), any(LocalDateTime.class)
-            )).thenReturn(1L);
+            // Bộ đếm trong bộ nhớ: đã huỷ / hết hạn 3 lần trong 1h
+            when(checkoutRateLimiter.tooManyFailedBookings(userId, planId)).thenReturn(true);
 
             SlotRequest s = buildSlot(
                     LocalDateTime.now().plusDays(1),
@@ -695,8 +711,10 @@ class PaymentServiceTest {
                     userId, planId, List.of(s), null, "token-xyz"
             );
 
-            assertThrows(AppException.class,
+            AppException ex = assertThrows(AppException.class,
                     () -> paymentService.createPayment(request));
+            assertEquals(ErrorCode.BOOKING_PAYMENT_CANCEL_TOO_MANY_TIMES, ex.getErrorcode());
+            verify(paymentRepository, never()).save(any());
         }
 
         /**
@@ -709,7 +727,7 @@ class PaymentServiceTest {
         @DisplayName("UTCID14 - Booking payment, 2 slots -> tổng tiền = pricePerHours * 2")
         void UTCID14_createBookingPayment_twoSlots_totalAmountCorrect() {
             mockPaymentSaveReturnArgument();
-            when(cloudflareTurnstileService.verify(anyString())).thenReturn(true);
+            when(cloudflareTurnstileService.verifyAsync(anyString())).thenReturn(CompletableFuture.completedFuture(true));
 
             Long userId = 3L;
             Long planId = 20L;
@@ -760,6 +778,208 @@ class PaymentServiceTest {
 
             assertEquals(BigDecimal.valueOf(pricePerHour * 2), saved.getAmount());
         }
+
+        /**
+         * UTCID15
+         * - payos.link-outside-transaction = true
+         * - PayOS lỗi sau khi đã commit phần giữ chỗ
+         * => payment chuyển FAILED, ném lại exception
+         */
+        @Test
+        @DisplayName("UTCID15 - Link ngoài transaction, PayOS lỗi -> payment FAILED")
+        void UTCID15_createPayment_outsideTransaction_payOSFails_shouldReleaseReservation() {
+            org.springframework.test.util.ReflectionTestUtils
+                    .setField(paymentService, "linkOutsideTransaction", true);
+            mockPaymentSaveReturnArgument();
+
+            Course course = buildCourse(10L, BigDecimal.valueOf(200), 99L);
+            when(courseRepository.findById(10L)).thenReturn(java.util.Optional.of(course));
+            when(payOSService.createPaymentLink(any(), any(), any(), any(), any(), anyString()))
+                    .thenThrow(new RuntimeException("PayOS down"));
+
+            PaymentRequest request = buildCoursePaymentRequest(3L, 10L);
+
+            assertThrows(RuntimeException.class, () -> paymentService.createPayment(request));
+
+            ArgumentCaptor<Payment> paymentCaptor = ArgumentCaptor.forClass(Payment.class);
+            verify(paymentRepository, atLeast(2)).save(paymentCaptor.capture());
+            assertEquals(PaymentStatus.FAILED, paymentCaptor.getValue().getStatus());
+        }
+
+        /**
+         * UTCID16
+         * - Booking Payment, Turnstile trả false
+         * => AppException(INVALID_TURNSTILE_TOKEN), không tạo slot / payment, không mở transaction
+         */
+        @Test
+        @DisplayName("UTCID16 - Booking payment, Turnstile fail -> INVALID_TURNSTILE_TOKEN, không ghi DB")
+        void UTCID16_createBookingPayment_turnstileFail_shouldNotWrite() {
+            when(cloudflareTurnstileService.verifyAsync(anyString()))
+                    .thenReturn(CompletableFuture.completedFuture(false));
+
+            BookingPlan plan = buildBookingPlan(20L, 200L, 100);
+            when(bookingPlanRepository.findById(20L)).thenReturn(java.util.Optional.of(plan));
+            when(userRepository.findById(3L)).thenReturn(java.util.Optional.of(buildUser(3L)));
+
+            SlotRequest s = buildSlot(
+                    LocalDateTime.of(2025, 1, 1, 10, 0),
+                    LocalDateTime.of(2025, 1, 1, 11, 0)
+            );
+            PaymentRequest request = buildBookingPaymentRequest(3L, 20L, List.of(s), null, "bad-token");
+
+            AppException ex = assertThrows(AppException.class, () -> paymentService.createPayment(request));
+            assertEquals(ErrorCode.INVALID_TURNSTILE_TOKEN, ex.getErrorcode());
+
+            verify(bookingPlanSlotRepository, never()).save(any());
+            verify(paymentRepository, never()).save(any());
+            verify(transactionTemplate, never()).execute(any());
+        }
+
+        /**
+         * UTCID17
+         * - Booking Payment, Turnstile fail + booking plan không tồn tại
+         * => lỗi Turnstile vẫn được ưu tiên
+         */
+        @Test
+        @DisplayName("UTCID17 - Turnstile fail + plan không tồn tại -> INVALID_TURNSTILE_TOKEN")
+        void UTCID17_createBookingPayment_turnstileFailTakesPrecedence() {
+            when(cloudflareTurnstileService.verifyAsync(anyString()))
+                    .thenReturn(CompletableFuture.completedFuture(false));
+            when(bookingPlanRepository.findById(anyLong())).thenReturn(java.util.Optional.empty());
+
+            PaymentRequest request = buildBookingPaymentRequest(3L, 20L, List.of(), null, "bad-token");
+
+            AppException ex = assertThrows(AppException.class, () -> paymentService.createPayment(request));
+            assertEquals(ErrorCode.INVALID_TURNSTILE_TOKEN, ex.getErrorcode());
+            verify(transactionTemplate, never()).execute(any());
+        }
+
+        /**
+         * UTCID18
+         * - Booking Payment, 2 slot trùng giờ trong cùng request
+         * => AppException(BOOKING_SLOT_NOT_AVAILABLE)
+         */
+        @Test
+        @DisplayName("UTCID18 - Booking payment, slot trùng trong request -> BOOKING_SLOT_NOT_AVAILABLE")
+        void UTCID18_createBookingPayment_duplicateSlotInRequest_shouldThrow() {
+            when(cloudflareTurnstileService.verifyAsync(anyString()))
+                    .thenReturn(CompletableFuture.completedFuture(true));
+
+            BookingPlan plan = buildBookingPlan(20L, 200L, 100);
+            when(bookingPlanRepository.findById(20L)).thenReturn(java.util.Optional.of(plan));
+            when(userRepository.findById(3L)).thenReturn(java.util.Optional.of(buildUser(3L)));
+
+            LocalDateTime start = LocalDateTime.of(2025, 1, 1, 10, 0);
+            SlotRequest s1 = buildSlot(start, start.plusHours(1));
+            SlotRequest s2 = buildSlot(start, start.plusHours(1));
+            PaymentRequest request = buildBookingPaymentRequest(3L, 20L, List.of(s1, s2), null, "token-xyz");
+
+            AppException ex = assertThrows(AppException.class, () -> paymentService.createPayment(request));
+            assertEquals(ErrorCode.BOOKING_SLOT_NOT_AVAILABLE, ex.getErrorcode());
+            verify(bookingPlanSlotRepository, never()).save(any());
+        }
+
+        /**
+         * UTCID19
+         * - User checkout quá nhiều lần trong 1 phút
+         * => AppException(CHECKOUT_RATE_LIMITED), không verify Turnstile, không đọc / ghi DB
+         */
+        @Test
+        @DisplayName("UTCID19 - Checkout vượt rate limit -> CHECKOUT_RATE_LIMITED")
+        void UTCID19_createPayment_overCheckoutLimit_shouldThrow() {
+            when(checkoutRateLimiter.overCheckoutLimit(3L)).thenReturn(true);
+
+            PaymentRequest request = buildBookingPaymentRequest(3L, 20L, List.of(), null, "token-xyz");
+
+            AppException ex = assertThrows(AppException.class, () -> paymentService.createPayment(request));
+            assertEquals(ErrorCode.CHECKOUT_RATE_LIMITED, ex.getErrorcode());
+            verifyNoInteractions(cloudflareTurnstileService, bookingPlanRepository, paymentRepository);
+        }
+
+        /**
+         * UTCID20
+         * - payos.link-outside-transaction = true
+         * - Payment bị huỷ (tutor xoá plan) trong lúc đang gọi PayOS
+         * => Không gắn link, huỷ link vừa tạo, không ghi đè CANCELLED thành FAILED
+         */
+        @Test
+        @DisplayName("UTCID20 - Payment bị huỷ trong lúc tạo link PayOS -> huỷ link, PAYMENT_FAILED")
+        void UTCID20_createPayment_cancelledWhileCreatingLink_shouldCancelLink() {
+            org.springframework.test.util.ReflectionTestUtils
+                    .setField(paymentService, "linkOutsideTransaction", true);
+            mockPaymentSaveReturnArgument();
+            when(paymentRepository.attachLinkIfPending(any(), any(), any(), any(), any(), any())).thenReturn(0);
+
+            Course course = buildCourse(10L, BigDecimal.valueOf(200), 99L);
+            when(courseRepository.findById(10L)).thenReturn(java.util.Optional.of(course));
+
+            CheckoutResponseData data = mock(CheckoutResponseData.class);
+            when(data.getCheckoutUrl()).thenReturn("https://payos/link3");
+            when(data.getOrderCode()).thenReturn(3333L);
+            when(data.getPaymentLinkId()).thenReturn("plink-3333");
+            when(payOSService.createPaymentLink(
+                    any(), any(), any(), any(), any(), anyString()
+            ).data()).thenReturn(data);
+
+            AppException ex = assertThrows(AppException.class,
+                    () -> paymentService.createPayment(buildCoursePaymentRequest(3L, 10L)));
+
+            assertEquals(ErrorCode.PAYMENT_FAILED, ex.getErrorcode());
+            verify(payOSService).cancelPaymentLinkAfterCommit("plink-3333");
+            // chỉ 1 lần save lúc giữ chỗ, không save FAILED đè lên CANCELLED
+            verify(paymentRepository, times(1)).save(any(Payment.class));
+        }
+
+        /**
+         * UTCID21
+         * - Booking Payment, Turnstile chưa trả kết quả
+         * => validate booking chạy trong lúc Turnstile đang verify, transaction ghi chỉ mở sau khi có kết quả
+         */
+        @Test
+        @DisplayName("UTCID21 - Booking payment, validate chạy song song với Turnstile verify")
+        void UTCID21_createBookingPayment_validateOverlapsTurnstile() {
+            mockPaymentSaveReturnArgument();
+            CompletableFuture<Boolean> turnstile = new CompletableFuture<>();
+            when(cloudflareTurnstileService.verifyAsync(anyString())).thenReturn(turnstile);
+
+            BookingPlan plan = buildBookingPlan(20L, 200L, 100);
+            when(bookingPlanRepository.findById(20L)).thenReturn(java.util.Optional.of(plan));
+            when(userRepository.findById(3L)).thenReturn(java.util.Optional.of(buildUser(3L)));
+
+            LocalDateTime start = LocalDateTime.of(2025, 1, 1, 10, 0);
+            SlotRequest s = buildSlot(start, start.plusHours(1));
+
+            // Bước cuối của validate: ghi lại Turnstile đã xong chưa, rồi mới cho Cloudflare "trả lời"
+            java.util.concurrent.atomic.AtomicBoolean verifiedBeforeValidate =
+                    new java.util.concurrent.atomic.AtomicBoolean(true);
+            when(bookingPlanSlotRepository.existsByTutorIDAndStartTimeAndEndTime(200L, start, start.plusHours(1)))
+                    .thenAnswer(inv -> {
+                        verifiedBeforeValidate.set(turnstile.isDone());
+                        turnstile.complete(true);
+                        return false;
+                    });
+
+            CheckoutResponseData data = mock(CheckoutResponseData.class);
+            when(data.getCheckoutUrl()).thenReturn("https://payos/link4");
+            when(data.getOrderCode()).thenReturn(4444L);
+            when(data.getPaymentLinkId()).thenReturn("plink-4444");
+            when(payOSService.createPaymentLink(
+                    any(), any(), any(), any(), any(), anyString()
+            ).data()).thenReturn(data);
+
+            ResponseEntity<?> response = paymentService.createPayment(
+                    buildBookingPaymentRequest(3L, 20L, List.of(s), null, "token-xyz"));
+
+            assertEquals(200, response.getStatusCode().value());
+            assertFalse(verifiedBeforeValidate.get());
+
+            InOrder order = inOrder(cloudflareTurnstileService, bookingPlanRepository, transactionTemplate);
+            order.verify(cloudflareTurnstileService).verifyAsync("token-xyz");
+            order.verify(bookingPlanRepository).findById(20L);
+            order.verify(transactionTemplate).execute(any());
+            // validate không chạy lại trong transaction ghi
+            verify(bookingPlanRepository, times(1)).findById(20L);
+        }
     }
 
     // =====================================================================
@@ -889,10 +1109,10 @@ class PaymentServiceTest {
             paymentService.processPostPayment(payment);
 
             assertTrue(payment.getIsPaid());
-            assertEquals(SlotStatus.Paid, slot1.getStatus());
             assertEquals(tutorId, payment.getTutorId());
 
-            verify(bookingPlanSlotRepository, times(1)).save(slot1);
+            verify(bookingPlanSlotRepository, times(1)).markSlotsPaidByPaymentID(1L);
+            verify(bookingPlanSlotRepository, never()).save(slot1);
             verify(chatService, times(1))
                     .ensureTrainingRoomExists(userId, tutorId);
             verify(withdrawService, never()).calculateCurrentBalance(anyLong());
@@ -1004,7 +1224,91 @@ class PaymentServiceTest {
 
             verify(bookingPlanSlotRepository, times(1)).delete(s1);
             verify(bookingPlanSlotRepository, never()).delete(s2);
-            verify(payOSService, times(1)).cancelPaymentLink("plink-123");
+            verify(payOSService, times(1)).cancelPaymentLinkAfterCommit("plink-123");
+            verify(checkoutRateLimiter).recordFailedBooking(payment);
+        }
+    }
+
+    // =====================================================================
+    // refundCancelledPayment
+    // =====================================================================
+
+    @Nested
+    @DisplayName("PaymentService.refundCancelledPayment")
+    class RefundCancelledPaymentTests {
+
+        private Payment buildCancelledPayment(PaymentType type) {
+            return Payment.builder()
+                    .paymentID(1L)
+                    .userId(3L)
+                    .tutorId(200L)
+                    .targetId(20L)
+                    .amount(BigDecimal.valueOf(300))
+                    .paymentType(type)
+                    .status(PaymentStatus.CANCELLED)
+                    .build();
+        }
+
+        /**
+         * Case: Booking payment CANCELLED nhưng PayOS vẫn thu tiền
+         * => Tạo refund toàn bộ số tiền (không gắn slot), notify learner
+         */
+        @Test
+        @DisplayName("Booking CANCELLED nhưng đã thu tiền -> tạo refund toàn bộ số tiền + notify")
+        void refundCancelledPayment_booking_shouldCreateRefund() {
+            Payment payment = buildCancelledPayment(PaymentType.Booking);
+            Tutor tutor = buildTutor(200L, BigDecimal.ZERO);
+            when(paymentRepository.markRefundIfCancelled(eq(1L), any())).thenReturn(1);
+            when(tutorRepository.findById(200L)).thenReturn(java.util.Optional.of(tutor));
+            when(refundRequestRepository.save(any(RefundRequest.class))).thenAnswer(inv -> {
+                RefundRequest r = inv.getArgument(0);
+                r.setRefundRequestId(77L);
+                return r;
+            });
+
+            assertTrue(paymentService.refundCancelledPayment(payment, "{code=00}"));
+
+            ArgumentCaptor<RefundRequest> cap = ArgumentCaptor.forClass(RefundRequest.class);
+            verify(refundRequestRepository).save(cap.capture());
+            RefundRequest refund = cap.getValue();
+            assertEquals(20L, refund.getBookingPlanId());
+            assertNull(refund.getSlotId());
+            assertEquals(3L, refund.getUserId());
+            assertEquals(0, refund.getRefundAmount().compareTo(BigDecimal.valueOf(300)));
+            assertEquals(RefundStatus.PENDING, refund.getStatus());
+            assertSame(tutor, refund.getTutor());
+            assertTrue(payment.getIsRefund());
+
+            verify(notificationService).sendNotification(eq(3L), anyString(), anyString(),
+                    eq(NotificationType.REFUND_AVAILABLE), eq("/learner/refunds/77"));
+        }
+
+        /**
+         * Case: Inbox retry sau khi refund đã được tạo
+         * => UPDATE có điều kiện không ăn, không tạo refund trùng
+         */
+        @Test
+        @DisplayName("Payment đã được đánh dấu refund trước đó -> không tạo refund trùng")
+        void refundCancelledPayment_alreadyMarked_shouldSkip() {
+            when(paymentRepository.markRefundIfCancelled(eq(1L), any())).thenReturn(0);
+
+            assertFalse(paymentService.refundCancelledPayment(buildCancelledPayment(PaymentType.Booking), null));
+
+            verify(refundRequestRepository, never()).save(any());
+            verifyNoInteractions(notificationService);
+        }
+
+        /**
+         * Case: Course payment
+         * => Không có luồng refund cho khoá học, chỉ log để xử lý tay
+         */
+        @Test
+        @DisplayName("Course payment -> không tạo refund")
+        void refundCancelledPayment_course_shouldSkip() {
+            assertFalse(paymentService.refundCancelledPayment(buildCancelledPayment(PaymentType.Course), null));
+
+            verify(paymentRepository, never()).markRefundIfCancelled(anyLong(), any());
+            verify(refundRequestRepository, never()).save(any());
         }
     }
 
@@ -1066,6 +1370,7 @@ class PaymentServiceTest {
             verify(bookingPlanSlotRepository, times(1)).delete(locked1);
             verify(bookingPlanSlotRepository, times(1)).delete(locked2);
             verify(bookingPlanSlotRepository, never()).delete(paidSlot);
+            verify(tutorAvailabilityService).onSlotsReleased(List.of(locked1, locked2));
         }
     }
 
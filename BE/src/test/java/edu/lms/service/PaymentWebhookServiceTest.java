@@ -0,0 +1,317 @@
+package edu.lms.service;
+
+import edu.lms.entity.Payment;
+import edu.lms.entity.PaymentWebhookInbox;
+import edu.lms.enums.PaymentStatus;
+import edu.lms.enums.PaymentType;
+import edu.lms.enums.SlotStatus;
+import edu.lms.enums.WebhookInboxStatus;
+import edu.lms.listener.PaymentWebhookReceivedEvent;
+import edu.lms.repository.BookingPlanSlotRepository;
+import edu.lms.repository.PaymentRepository;
+import edu.lms.repository.PaymentWebhookInboxRepository;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.context.ApplicationEventPublisher;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * PaymentWebhookServiceTest
+ *
+ * Cover:
+ *  - handleWebhook: ghi inbox, replay, UPDATE có điều kiện PENDING → PAID
+ *  - processInbox: claim, side effect PAID / FAILED / CANCELLED / slot Rejected, lỗi ở lần cuối -> DEAD
+ *  - code=00 cho payment đã CANCELLED -> refund
+ *  - retryPendingInbox: claim lại row PROCESSING quá lease, row hết lượt retry -> DEAD
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class PaymentWebhookServiceTest {
+
+    @Mock
+    PaymentRepository paymentRepository;
+    @Mock
+    BookingPlanSlotRepository bookingPlanSlotRepository;
+    @Mock
+    PaymentWebhookInboxRepository paymentWebhookInboxRepository;
+    @Mock
+    PaymentService paymentService;
+    @Mock
+    PayOSService payOSService;
+    @Mock
+    ApplicationEventPublisher eventPublisher;
+    @Mock
+    CheckoutRateLimiter checkoutRateLimiter;
+
+    @InjectMocks
+    PaymentWebhookService paymentWebhookService;
+
+    private Payment buildPayment(PaymentStatus status) {
+        return Payment.builder()
+                .paymentID(1L)
+                .orderCode("123")
+                .paymentLinkId("link-1")
+                .paymentType(PaymentType.Booking)
+                .status(status)
+                .build();
+    }
+
+    private PaymentWebhookInbox buildInbox(String code, boolean paidTransition) {
+        return PaymentWebhookInbox.builder()
+                .inboxId(10L)
+                .dedupKey(PaymentWebhookInbox.dedupKeyOf("123", code))
+                .orderCode("123")
+                .code(code)
+                .paidTransition(paidTransition)
+                .build();
+    }
+
+    @Nested
+    @DisplayName("PaymentWebhookService.handleWebhook")
+    class HandleWebhookTests {
+
+        @Test
+        @DisplayName("Replay cùng orderCode + code -> bỏ qua, không UPDATE payment")
+        void handleWebhook_replay_shouldReturnImmediately() {
+            when(paymentWebhookInboxRepository.existsByDedupKey("123:00")).thenReturn(true);
+
+            paymentWebhookService.handleWebhook("123", "00", Map.of());
+
+            verify(paymentRepository, never()).markPaidIfPending(anyString(), any(), any());
+            verify(paymentWebhookInboxRepository, never()).saveAndFlush(any());
+            verify(eventPublisher, never()).publishEvent(any(Object.class));
+        }
+
+        @Test
+        @DisplayName("code=00 và UPDATE ăn -> inbox paidTransition=true + publish event")
+        void handleWebhook_paid_shouldRecordTransition() {
+            when(paymentWebhookInboxRepository.existsByDedupKey("123:00")).thenReturn(false);
+            when(paymentRepository.markPaidIfPending(eq("123"), any(), any())).thenReturn(1);
+            when(paymentWebhookInboxRepository.saveAndFlush(any(PaymentWebhookInbox.class)))
+                    .thenAnswer(inv -> {
+                        PaymentWebhookInbox inbox = inv.getArgument(0);
+                        inbox.setInboxId(10L);
+                        return inbox;
+                    });
+
+            paymentWebhookService.handleWebhook("123", "00", Map.of("dataCode", "00"));
+
+            ArgumentCaptor<PaymentWebhookInbox> captor = ArgumentCaptor.forClass(PaymentWebhookInbox.class);
+            verify(paymentWebhookInboxRepository).saveAndFlush(captor.capture());
+            assertTrue(captor.getValue().getPaidTransition());
+            assertEquals("123:00", captor.getValue().getDedupKey());
+            verify(eventPublisher).publishEvent(new PaymentWebhookReceivedEvent(10L));
+            verify(paymentRepository, never()).findByOrderCode(anyString());
+        }
+
+        @Test
+        @DisplayName("code!=00 -> không gọi UPDATE PAID, vẫn ghi inbox")
+        void handleWebhook_failedCode_shouldNotMarkPaid() {
+            when(paymentWebhookInboxRepository.existsByDedupKey("123:01")).thenReturn(false);
+            when(paymentWebhookInboxRepository.saveAndFlush(any(PaymentWebhookInbox.class)))
+                    .thenAnswer(inv -> inv.getArgument(0));
+
+            paymentWebhookService.handleWebhook("123", "01", null);
+
+            verify(paymentRepository, never()).markPaidIfPending(anyString(), any(), any());
+            ArgumentCaptor<PaymentWebhookInbox> captor = ArgumentCaptor.forClass(PaymentWebhookInbox.class);
+            verify(paymentWebhookInboxRepository).saveAndFlush(captor.capture());
+            assertFalse(captor.getValue().getPaidTransition());
+        }
+    }
+
+    @Nested
+    @DisplayName("PaymentWebhookService.processInbox")
+    class ProcessInboxTests {
+
+        @Test
+        @DisplayName("Worker khác đã claim -> không làm gì")
+        void processInbox_alreadyClaimed_shouldSkip() {
+            when(paymentWebhookInboxRepository.claim(eq(10L), anyCollection(), anyInt(), any(), any())).thenReturn(0);
+
+            paymentWebhookService.processInbox(10L);
+
+            verify(paymentWebhookInboxRepository, never()).findById(anyLong());
+            verifyNoInteractions(paymentService);
+        }
+
+        @Test
+        @DisplayName("paidTransition -> processPostPayment + PROCESSED")
+        void processInbox_paidTransition_shouldRunPostPayment() {
+            Payment payment = buildPayment(PaymentStatus.PAID);
+            when(paymentWebhookInboxRepository.claim(eq(10L), anyCollection(), anyInt(), any(), any())).thenReturn(1);
+            when(paymentWebhookInboxRepository.findById(10L)).thenReturn(Optional.of(buildInbox("00", true)));
+            when(paymentRepository.findByOrderCode("123")).thenReturn(Optional.of(payment));
+
+            paymentWebhookService.processInbox(10L);
+
+            verify(paymentService).processPostPayment(payment);
+            verify(paymentWebhookInboxRepository)
+                    .finish(eq(10L), eq(WebhookInboxStatus.PROCESSED), isNull(), any());
+        }
+
+        @Test
+        @DisplayName("code=00 nhưng payment đã CANCELLED, refund đã xử lý -> huỷ link PayOS, IGNORED")
+        void processInbox_cancelledPayment_shouldBlock() {
+            Payment payment = buildPayment(PaymentStatus.CANCELLED);
+            when(paymentWebhookInboxRepository.claim(eq(10L), anyCollection(), anyInt(), any(), any())).thenReturn(1);
+            when(paymentWebhookInboxRepository.findById(10L)).thenReturn(Optional.of(buildInbox("00", false)));
+            when(paymentRepository.findByOrderCode("123")).thenReturn(Optional.of(payment));
+
+            paymentWebhookService.processInbox(10L);
+
+            verify(payOSService).cancelPaymentLink("link-1");
+            verify(paymentService, never()).processPostPayment(any());
+            verify(paymentWebhookInboxRepository)
+                    .finish(eq(10L), eq(WebhookInboxStatus.IGNORED), isNull(), any());
+        }
+
+        @Test
+        @DisplayName("code=00 cho payment đã CANCELLED (link huỷ chậm) -> tạo refund, PROCESSED")
+        void processInbox_cancelledPaymentCaptured_shouldRefund() {
+            Payment payment = buildPayment(PaymentStatus.CANCELLED);
+            PaymentWebhookInbox inbox = buildInbox("00", false);
+            inbox.setPayload("{code=00}");
+            when(paymentWebhookInboxRepository.claim(eq(10L), anyCollection(), anyInt(), any(), any())).thenReturn(1);
+            when(paymentWebhookInboxRepository.findById(10L)).thenReturn(Optional.of(inbox));
+            when(paymentRepository.findByOrderCode("123")).thenReturn(Optional.of(payment));
+            when(paymentService.refundCancelledPayment(payment, "{code=00}")).thenReturn(true);
+
+            paymentWebhookService.processInbox(10L);
+
+            verify(paymentService).refundCancelledPayment(payment, "{code=00}");
+            verify(payOSService, never()).cancelPaymentLink(anyString());
+            verify(paymentWebhookInboxRepository)
+                    .finish(eq(10L), eq(WebhookInboxStatus.PROCESSED), isNull(), any());
+        }
+
+        @Test
+        @DisplayName("code=00 nhưng có slot Rejected -> force CANCELLED")
+        void processInbox_rejectedSlot_shouldForceCancel() {
+            Payment payment = buildPayment(PaymentStatus.PENDING);
+            when(paymentWebhookInboxRepository.claim(eq(10L), anyCollection(), anyInt(), any(), any())).thenReturn(1);
+            when(paymentWebhookInboxRepository.findById(10L)).thenReturn(Optional.of(buildInbox("00", false)));
+            when(paymentRepository.findByOrderCode("123")).thenReturn(Optional.of(payment));
+            when(bookingPlanSlotRepository.existsByPaymentIDAndStatus(1L, SlotStatus.Rejected)).thenReturn(true);
+            when(paymentRepository.markUnpaidIfPending(eq("123"), eq(PaymentStatus.CANCELLED), any())).thenReturn(1);
+
+            paymentWebhookService.processInbox(10L);
+
+            verify(paymentRepository).markUnpaidIfPending(eq("123"), eq(PaymentStatus.CANCELLED), any());
+            verify(payOSService).cancelPaymentLink("link-1");
+            verify(checkoutRateLimiter).recordFailedBooking(payment);
+            // code = "00" → tiền đã bị thu → refund
+            verify(paymentService).refundCancelledPayment(eq(payment), any());
+        }
+
+        @Test
+        @DisplayName("code!=00 và payment PENDING -> FAILED + rollback slot")
+        void processInbox_failed_shouldRollbackSlots() {
+            Payment payment = buildPayment(PaymentStatus.PENDING);
+            when(paymentWebhookInboxRepository.claim(eq(10L), anyCollection(), anyInt(), any(), any())).thenReturn(1);
+            when(paymentWebhookInboxRepository.findById(10L)).thenReturn(Optional.of(buildInbox("01", false)));
+            when(paymentRepository.findByOrderCode("123")).thenReturn(Optional.of(payment));
+            when(paymentRepository.markUnpaidIfPending(eq("123"), eq(PaymentStatus.FAILED), any())).thenReturn(1);
+
+            paymentWebhookService.processInbox(10L);
+
+            verify(paymentService).rollbackBookingSlots(payment, "FAILED");
+            assertEquals(PaymentStatus.FAILED, payment.getStatus());
+        }
+
+        @Test
+        @DisplayName("Side effect lỗi -> inbox FAILED để job retry")
+        void processInbox_error_shouldMarkFailed() {
+            Payment payment = buildPayment(PaymentStatus.PAID);
+            when(paymentWebhookInboxRepository.claim(eq(10L), anyCollection(), anyInt(), any(), any())).thenReturn(1);
+            when(paymentWebhookInboxRepository.findById(10L)).thenReturn(Optional.of(buildInbox("00", true)));
+            when(paymentRepository.findByOrderCode("123")).thenReturn(Optional.of(payment));
+            doThrow(new RuntimeException("boom")).when(paymentService).processPostPayment(payment);
+
+            paymentWebhookService.processInbox(10L);
+
+            verify(paymentWebhookInboxRepository)
+                    .finish(eq(10L), eq(WebhookInboxStatus.FAILED), eq("boom"), isNull());
+        }
+
+        @Test
+        @DisplayName("Side effect lỗi ở lần thử cuối -> DEAD, không retry nữa")
+        void processInbox_errorOnLastAttempt_shouldMarkDead() {
+            Payment payment = buildPayment(PaymentStatus.PAID);
+            PaymentWebhookInbox inbox = buildInbox("00", true);
+            inbox.setAttempts(5);
+            when(paymentWebhookInboxRepository.claim(eq(10L), anyCollection(), anyInt(), any(), any())).thenReturn(1);
+            when(paymentWebhookInboxRepository.findById(10L)).thenReturn(Optional.of(inbox));
+            when(paymentRepository.findByOrderCode("123")).thenReturn(Optional.of(payment));
+            doThrow(new RuntimeException("boom")).when(paymentService).processPostPayment(payment);
+
+            paymentWebhookService.processInbox(10L);
+
+            verify(paymentWebhookInboxRepository)
+                    .finish(eq(10L), eq(WebhookInboxStatus.DEAD), eq("boom"), isNull());
+        }
+    }
+
+    @Nested
+    @DisplayName("PaymentWebhookService.retryPendingInbox")
+    class RetryTests {
+
+        @Test
+        @DisplayName("Row PROCESSING quá lease được chọn lại và claim lại")
+        void retry_staleProcessing_shouldReclaim() {
+            Payment payment = buildPayment(PaymentStatus.PAID);
+            when(paymentWebhookInboxRepository.findExhausted(anyCollection(), any(), anyInt(), any())).thenReturn(List.of());
+            when(paymentWebhookInboxRepository.findPendingIds(anyCollection(), any(), any(), anyInt(), any()))
+                    .thenReturn(List.of(10L));
+            when(paymentWebhookInboxRepository.claim(eq(10L), anyCollection(), anyInt(), any(), any())).thenReturn(1);
+            when(paymentWebhookInboxRepository.findById(10L)).thenReturn(Optional.of(buildInbox("00", true)));
+            when(paymentRepository.findByOrderCode("123")).thenReturn(Optional.of(payment));
+
+            paymentWebhookService.retryPendingInbox();
+
+            ArgumentCaptor<LocalDateTime> now = ArgumentCaptor.forClass(LocalDateTime.class);
+            ArgumentCaptor<LocalDateTime> staleBefore = ArgumentCaptor.forClass(LocalDateTime.class);
+            verify(paymentWebhookInboxRepository).claim(eq(10L), anyCollection(), eq(5), now.capture(), staleBefore.capture());
+            assertTrue(staleBefore.getValue().isBefore(now.getValue()));
+            verify(paymentService).processPostPayment(payment);
+        }
+
+        @Test
+        @DisplayName("Row hết lượt retry -> DEAD (chỉ khi UPDATE có điều kiện ăn)")
+        void retry_exhausted_shouldMarkDead() {
+            PaymentWebhookInbox exhausted = buildInbox("00", true);
+            exhausted.setAttempts(5);
+            PaymentWebhookInbox reclaimed = buildInbox("00", true);
+            reclaimed.setInboxId(11L);
+            reclaimed.setAttempts(5);
+            when(paymentWebhookInboxRepository.findExhausted(anyCollection(), any(), eq(5), any()))
+                    .thenReturn(List.of(exhausted, reclaimed));
+            when(paymentWebhookInboxRepository.markDead(eq(10L), anyCollection(), eq(5), any())).thenReturn(1);
+            when(paymentWebhookInboxRepository.markDead(eq(11L), anyCollection(), eq(5), any())).thenReturn(0);
+            when(paymentWebhookInboxRepository.findPendingIds(anyCollection(), any(), any(), anyInt(), any()))
+                    .thenReturn(List.of());
+
+            paymentWebhookService.retryPendingInbox();
+
+            verify(paymentWebhookInboxRepository).markDead(eq(10L), anyCollection(), eq(5), any());
+            verify(paymentWebhookInboxRepository).markDead(eq(11L), anyCollection(), eq(5), any());
+            verify(paymentWebhookInboxRepository, never()).claim(anyLong(), anyCollection(), anyInt(), any(), any());
+        }
+    }
+}
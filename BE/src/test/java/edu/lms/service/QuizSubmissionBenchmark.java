@@ -0,0 +1,237 @@
+package edu.lms.service;
+
+import edu.lms.dto.request.SubmitQuizQuestionAnswer;
+import edu.lms.dto.request.SubmitQuizRequest;
+import edu.lms.dto.response.SubmitQuizResultResponse;
+import edu.lms.entity.*;
+import edu.lms.enums.EnrollmentStatus;
+import edu.lms.enums.LessonType;
+import edu.lms.repository.*;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.mockito.stubbing.Answer;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Đo throughput nộp quiz 50 câu (4 option / câu, section 10 lesson) của StudentQuizService
+ * (quiz compile + cache, 1 DELETE + batch insert answer, bộ đếm tiến độ section)
+ * so với cách cũ (findById từng option, save từng answer, 1 query / lesson khi tính tiến độ section).
+ * Repository là mock, mỗi lần gọi = 1 round trip DB giả lập ROUND_TRIP_MICROS.
+ * Không chạy trong build thường: mvn test -Pbenchmark -Dtest=QuizSubmissionBenchmark
+ */
+@Tag("benchmark")
+class QuizSubmissionBenchmark {
+
+    private static final int THREADS = 8;
+    private static final int SUBMISSIONS_PER_THREAD = 200;
+    private static final int QUESTIONS = 50;
+    private static final int OPTIONS_PER_QUESTION = 4;
+    private static final int LESSONS_IN_SECTION = 10;
+    private static final long ROUND_TRIP_MICROS = 200;
+
+    private final LongAdder statements = new LongAdder();
+
+    @Test
+    void batchedSubmit_shouldIssueFewerStatementsAndScoreCorrectly() throws Exception {
+        User user = User.builder().userID(1L).fullName("Learner").build();
+        Course course = Course.builder().courseID(10L).build();
+        CourseSection section = CourseSection.builder().sectionID(100L).course(course).build();
+        course.setSections(List.of(section));
+        Lesson lesson = Lesson.builder().lessonID(1000L).section(section).lessonType(LessonType.Quiz).build();
+        Enrollment enrollment = Enrollment.builder().enrollmentID(5L).user(user).course(course)
+                .status(EnrollmentStatus.Active).build();
+
+        List<QuizQuestion> questions = new ArrayList<>();
+        List<SubmitQuizQuestionAnswer> answers = new ArrayList<>();
+        for (long q = 1; q <= QUESTIONS; q++) {
+            QuizQuestion question = QuizQuestion.builder().questionID(q).lesson(lesson)
+                    .orderIndex((int) q).score(BigDecimal.ONE).build();
+            for (long o = 1; o <= OPTIONS_PER_QUESTION; o++) {
+                question.getOptions().add(QuizOption.builder().optionID(q * 10 + o).question(question)
+                        .isCorrect(o == 1).orderIndex((int) o).build());
+            }
+            questions.add(question);
+
+            // Câu chẵn chọn đáp án đúng, câu lẻ chọn sai → đúng 25 / 50
+            SubmitQuizQuestionAnswer answer = new SubmitQuizQuestionAnswer();
+            answer.setQuestionId(q);
+            answer.setSelectedOptionIds(List.of(q * 10 + (q % 2 == 0 ? 1 : 2)));
+            answers.add(answer);
+        }
+        SubmitQuizRequest request = new SubmitQuizRequest();
+        request.setAnswers(answers);
+
+        EnrollmentRepository enrollmentRepository = db(EnrollmentRepository.class);
+        LessonRepository lessonRepository = db(LessonRepository.class);
+        QuizQuestionRepository quizQuestionRepository = db(QuizQuestionRepository.class);
+        QuizOptionRepository quizOptionRepository = db(QuizOptionRepository.class);
+        QuizAnswerRepository quizAnswerRepository = db(QuizAnswerRepository.class);
+        UserLessonRepository userLessonRepository = db(UserLessonRepository.class);
+        UserRepository userRepository = db(UserRepository.class);
+        UserQuizResultRepository userQuizResultRepository = db(UserQuizResultRepository.class);
+        UserCourseSectionRepository userCourseSectionRepository = db(UserCourseSectionRepository.class);
+
+        doAnswer(roundTrip(Optional.of(user))).when(userRepository).findById(anyLong());
+        doAnswer(roundTrip(Optional.of(enrollment))).when(enrollmentRepository)
+                .findByUser_UserIDAndCourse_CourseID(anyLong(), anyLong());
+        doAnswer(roundTrip(Optional.of(lesson))).when(lessonRepository).findById(anyLong());
+        doAnswer(roundTrip((long) LESSONS_IN_SECTION)).when(lessonRepository).countBySection_SectionID(anyLong());
+        doAnswer(roundTrip(questions)).when(quizQuestionRepository).findWithOptionsByLesson(any());
+        doAnswer(roundTrip(questions)).when(quizQuestionRepository).findByLessonOrderByOrderIndexAsc(any());
+        doAnswer(roundTrip(Optional.empty())).when(userLessonRepository)
+                .findByUser_UserIDAndLesson_LessonID(anyLong(), anyLong());
+        // Mỗi lần nộp là lần đầu DONE → luôn đi qua nhánh cập nhật bộ đếm section
+        doAnswer(roundTrip(1)).when(userLessonRepository).markDone(anyLong(), anyLong(), any());
+        doAnswer(roundTrip(1)).when(userCourseSectionRepository)
+                .applyCompletedDelta(anyLong(), anyLong(), anyInt(), anyLong());
+        doAnswer(roundTrip(List.<Object[]>of(new Object[]{(long) LESSONS_IN_SECTION, 5L})))
+                .when(userCourseSectionRepository).countCourseProgress(anyLong(), anyLong());
+        doAnswer(roundTrip(Optional.empty())).when(userCourseSectionRepository)
+                .findByUser_UserIDAndSection_SectionID(anyLong(), anyLong());
+        doAnswer(roundTrip(List.of())).when(userCourseSectionRepository)
+                .findByUser_UserIDAndEnrollment_EnrollmentID(anyLong(), anyLong());
+        doAnswer(inv -> roundTrip(Optional.of(QuizOption.builder().optionID(inv.getArgument(0)).build()))
+                .answer(inv)).when(quizOptionRepository).findById(anyLong());
+
+        CourseProgressService courseProgressService = new CourseProgressService(
+                userCourseSectionRepository, userLessonRepository, lessonRepository, enrollmentRepository);
+        StudentQuizService service = new StudentQuizService(
+                enrollmentRepository, lessonRepository, new QuizDefinitionCache(quizQuestionRepository, 5000),
+                quizAnswerRepository, userLessonRepository, userRepository, userQuizResultRepository,
+                courseProgressService);
+
+        Runnable current = () -> service.submitQuiz(1L, 10L, 1000L, request);
+        Runnable legacy = () -> legacySubmit(questions, request, userRepository, enrollmentRepository,
+                lessonRepository, quizQuestionRepository, quizOptionRepository, quizAnswerRepository,
+                userLessonRepository, userCourseSectionRepository, userQuizResultRepository);
+
+        // warm-up (nạp cache quiz + số lesson của section)
+        run("warm-up", current);
+
+        Stats legacyStats = run("legacy (per-row)", legacy);
+        Stats currentStats = run("cache + batch", current);
+
+        SubmitQuizResultResponse result = service.submitQuiz(1L, 10L, 1000L, request);
+        assertEquals(QUESTIONS, result.getTotalQuestions());
+        assertEquals(QUESTIONS / 2, result.getCorrectQuestions());
+        assertEquals(0, new BigDecimal("50").compareTo(result.getPercentage()));
+
+        // Số câu lệnh / lần nộp không phụ thuộc số câu hỏi / option
+        assertTrue(currentStats.statementsPerSubmit < 20,
+                "statements/submit " + currentStats.statementsPerSubmit);
+        assertTrue(currentStats.statementsPerSubmit * 5 < legacyStats.statementsPerSubmit,
+                "current " + currentStats.statementsPerSubmit + " vs legacy " + legacyStats.statementsPerSubmit);
+        assertTrue(currentStats.throughput > legacyStats.throughput,
+                "current " + currentStats.throughput + " submit/s vs legacy " + legacyStats.throughput + " submit/s");
+    }
+
+    // Lặp lại đúng chuỗi lời gọi DB của submitQuiz trước khi tối ưu (không chấm điểm)
+    private void legacySubmit(List<QuizQuestion> questions, SubmitQuizRequest request,
+                              UserRepository userRepository, EnrollmentRepository enrollmentRepository,
+                              LessonRepository lessonRepository, QuizQuestionRepository quizQuestionRepository,
+                              QuizOptionRepository quizOptionRepository, QuizAnswerRepository quizAnswerRepository,
+                              UserLessonRepository userLessonRepository,
+                              UserCourseSectionRepository userCourseSectionRepository,
+                              UserQuizResultRepository userQuizResultRepository) {
+        userRepository.findById(1L);
+        enrollmentRepository.findByUser_UserIDAndCourse_CourseID(1L, 10L);
+        lessonRepository.findById(1000L);
+        quizQuestionRepository.findByLessonOrderByOrderIndexAsc(null);
+        // q.getOptions() lazy: 1 query / câu
+        questions.forEach(q -> roundTrip());
+        // derived delete: SELECT answer cũ + DELETE từng dòng
+        roundTrip();
+        request.getAnswers().forEach(a -> roundTrip());
+        for (SubmitQuizQuestionAnswer a : request.getAnswers()) {
+            for (Long optionId : a.getSelectedOptionIds()) {
+                quizOptionRepository.findById(optionId);
+                quizAnswerRepository.save(null);
+            }
+        }
+        userLessonRepository.findByUser_UserIDAndLesson_LessonID(1L, 1000L);
+        userLessonRepository.save(null);
+        // section.getLessons() lazy + 1 query / lesson
+        roundTrip();
+        for (long l = 0; l < LESSONS_IN_SECTION; l++) {
+            userLessonRepository.findByUser_UserIDAndLesson_LessonID(1L, l);
+        }
+        userCourseSectionRepository.findByUser_UserIDAndSection_SectionID(1L, 100L);
+        userCourseSectionRepository.save(null);
+        userCourseSectionRepository.findByUser_UserIDAndEnrollment_EnrollmentID(1L, 5L);
+        userQuizResultRepository.save(null);
+    }
+
+    private <T> T db(Class<T> type) {
+        return mock(type, withSettings().stubOnly().defaultAnswer(inv -> {
+            roundTrip();
+            return RETURNS_DEFAULTS.answer(inv);
+        }));
+    }
+
+    private Answer<Object> roundTrip(Object result) {
+        return inv -> {
+            roundTrip();
+            return result;
+        };
+    }
+
+    private void roundTrip() {
+        statements.increment();
+        LockSupport.parkNanos(ROUND_TRIP_MICROS * 1000);
+    }
+
+    private record Stats(long p50, long p99, long statementsPerSubmit, double throughput) {}
+
+    private Stats run(String name, Runnable submit) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        List<Future<long[]>> futures = new ArrayList<>();
+        statements.reset();
+        long start = System.nanoTime();
+
+        for (int t = 0; t < THREADS; t++) {
+            futures.add(pool.submit(() -> {
+                long[] latencies = new long[SUBMISSIONS_PER_THREAD];
+                for (int i = 0; i < SUBMISSIONS_PER_THREAD; i++) {
+                    long s = System.nanoTime();
+                    submit.run();
+                    latencies[i] = System.nanoTime() - s;
+                }
+                return latencies;
+            }));
+        }
+
+        long[] all = new long[THREADS * SUBMISSIONS_PER_THREAD];
+        int offset = 0;
+        for (Future<long[]> f : futures) {
+            long[] l = f.get();
+            System.arraycopy(l, 0, all, offset, l.length);
+            offset += l.length;
+        }
+        long elapsedNanos = System.nanoTime() - start;
+        pool.shutdown();
+
+        Arrays.sort(all);
+        Stats stats = new Stats(
+                all[all.length / 2],
+                all[(int) (all.length * 0.99)],
+                statements.sum() / all.length,
+                all.length / (elapsedNanos / 1e9));
+        System.out.printf("[BENCH] %-18s p50=%.2fms p99=%.2fms statements/submit=%d throughput=%.0f submit/s%n",
+                name, stats.p50 / 1e6, stats.p99 / 1e6, stats.statementsPerSubmit, stats.throughput);
+        return stats;
+    }
+}
@@ -0,0 +1,155 @@
+package edu.lms.service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * SMTP server giả chạy local cho test (không gửi mail thật).
+ * Hỗ trợ EHLO / HELO / MAIL / RCPT / DATA / RSET / NOOP / QUIT, không TLS, không AUTH.
+ *  - rejectRecipient: RCPT TO địa chỉ đó trả 550
+ *  - latency: chờ trước khi trả lời DATA (giả lập SMTP chậm)
+ * Đếm số kết nối, số kết nối đồng thời lớn nhất và lưu người nhận của từng mail đã nhận.
+ */
+class SmtpStubServer implements AutoCloseable {
+
+    private final ServerSocket serverSocket;
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final AtomicInteger connections = new AtomicInteger();
+    private final AtomicInteger openConnections = new AtomicInteger();
+    private final AtomicInteger maxOpenConnections = new AtomicInteger();
+    private final List<String> delivered = new CopyOnWriteArrayList<>();
+    private final Set<String> rejected = ConcurrentHashMap.newKeySet();
+    private volatile long latencyMs = 0;
+
+    SmtpStubServer() throws IOException {
+        serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        executor.submit(this::acceptLoop);
+    }
+
+    int port() {
+        return serverSocket.getLocalPort();
+    }
+
+    int connectionCount() {
+        return connections.get();
+    }
+
+    int maxConcurrentConnections() {
+        return maxOpenConnections.get();
+    }
+
+    List<String> deliveredRecipients() {
+        return delivered;
+    }
+
+    SmtpStubServer rejectRecipient(String email) {
+        rejected.add(email.toLowerCase(Locale.ROOT));
+        return this;
+    }
+
+    SmtpStubServer latency(long millis) {
+        latencyMs = millis;
+        return this;
+    }
+
+    private void acceptLoop() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                executor.submit(() -> handle(socket));
+            } catch (IOException e) {
+                return;
+            }
+        }
+    }
+
+    private void handle(Socket socket) {
+        connections.incrementAndGet();
+        maxOpenConnections.accumulateAndGet(openConnections.incrementAndGet(), Math::max);
+        try (socket;
+             BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+             OutputStream out = socket.getOutputStream()) {
+
+            reply(out, "220 stub ESMTP");
+            String recipient = null;
+            String line;
+            while ((line = in.readLine()) != null) {
+                String command = line.toUpperCase(Locale.ROOT);
+                if (command.startsWith("EHLO") || command.startsWith("HELO")) {
+                    reply(out, "250 stub");
+                } else if (command.startsWith("MAIL FROM")) {
+                    recipient = null;
+                    reply(out, "250 OK");
+                } else if (command.startsWith("RCPT TO")) {
+                    String address = line.substring(line.indexOf('<') + 1, line.lastIndexOf('>'));
+                    if (rejected.contains(address.toLowerCase(Locale.ROOT))) {
+                        reply(out, "550 mailbox unavailable");
+                    } else {
+                        recipient = address;
+                        reply(out, "250 OK");
+                    }
+                } else if (command.equals("DATA")) {
+                    reply(out, "354 end with .");
+                    while ((line = in.readLine()) != null && !line.equals(".")) {
+                        // bỏ qua nội dung mail
+                    }
+                    sleepLatency();
+                    delivered.add(recipient);
+                    reply(out, "250 queued");
+                } else if (command.startsWith("RSET")) {
+                    recipient = null;
+                    reply(out, "250 OK");
+                } else if (command.startsWith("NOOP")) {
+                    reply(out, "250 OK");
+                } else if (command.startsWith("QUIT")) {
+                    reply(out, "221 bye");
+                    return;
+                } else {
+                    reply(out, "502 not implemented");
+                }
+            }
+        } catch (SocketException e) {
+            // client đóng kết nối
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            openConnections.decrementAndGet();
+        }
+    }
+
+    private void sleepLatency() {
+        if (latencyMs > 0) {
+            try {
+                Thread.sleep(latencyMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static void reply(OutputStream out, String line) throws IOException {
+        out.write((line + "\r\n").getBytes(StandardCharsets.US_ASCII));
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        executor.shutdownNow();
+    }
+}
@@ -8,6 +8,7 @@ import edu.lms.entity.*;
 import edu.lms.enums.EnrollmentStatus;
 import edu.lms.enums.LessonType;
 import edu.lms.exception.AppException;
+import edu.lms.repository.CourseSectionRepository;
 import edu.lms.repository.EnrollmentRepository;
 import edu.lms.repository.QuizQuestionRepository;
 import edu.lms.repository.UserCourseSectionRepository;
@@ -25,6 +26,7 @@ import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 
@@ -44,6 +46,7 @@ import static org.mockito.Mockito.*;
  *      + Enrollment không tồn tại -> AppException
  *      + Course không có section -> sectionProgress rỗng, progress = 0
  *      + Course có section + lesson Video + lesson Quiz (đã làm quiz, có kết quả) -> mapLessonInSection full
+ *      + Số lần gọi repository cố định: course 1 section / 2 lesson và 6 section / 60 lesson gọi như nhau
  *
  * Lưu ý: Chỉ assert throw AppException, không assert ErrorCode cụ thể.
  */
@@ -54,6 +57,8 @@ class StudentCourseServiceTest {
     @Mock
     EnrollmentRepository enrollmentRepository;
     @Mock
+    CourseSectionRepository courseSectionRepository;
+    @Mock
     UserCourseSectionRepository userCourseSectionRepository;
     @Mock
     UserLessonRepository userLessonRepository;
@@ -147,32 +152,21 @@ class StudentCourseServiceTest {
         return ucs;
     }
 
-    private UserLesson buildUserLesson(Long id, User user, Lesson lesson, boolean isDone) {
-        UserLesson ul = new UserLesson();
-        ul.setUserLessonID(id);             // ✅ đúng field trong entity
-        ul.setUser(user);
-        ul.setLesson(lesson);
-        ul.setIsDone(isDone);
-        return ul;
+    private Object[] curriculumRow(CourseSection section, Lesson lesson) {
+        return new Object[]{section.getSectionID(), section.getTitle(),
+                lesson.getLessonID(), lesson.getTitle(), lesson.getLessonType()};
     }
 
-    private UserQuizResult buildUserQuizResult(
-            Long id,
-            User user,
-            Lesson lesson,
-            Integer correctQuestions,
-            BigDecimal percentage,
-            Boolean passed
-    ) {
-        UserQuizResult r = new UserQuizResult();
-        r.setId(id);                        // ✅ đúng field trong entity
-        r.setUser(user);
-        r.setLesson(lesson);
-        r.setCorrectQuestions(correctQuestions);
-        r.setPercentage(percentage);
-        r.setPassed(passed);
-        r.setSubmittedAt(LocalDateTime.of(2025, 1, 2, 12, 0));
-        return r;
+    /**
+     * Tổng số lần gọi repository trên các mock (không phải số câu SQL thật)
+     */
+    private int repositoryCalls() {
+        return mockingDetails(enrollmentRepository).getInvocations().size()
+                + mockingDetails(courseSectionRepository).getInvocations().size()
+                + mockingDetails(userCourseSectionRepository).getInvocations().size()
+                + mockingDetails(userLessonRepository).getInvocations().size()
+                + mockingDetails(quizQuestionRepository).getInvocations().size()
+                + mockingDetails(userQuizResultRepository).getInvocations().size();
     }
 
     // =====================================================================
@@ -344,14 +338,15 @@ class StudentCourseServiceTest {
             Long userId = 1L;
             Long courseId = 20L;
 
-            when(enrollmentRepository.findByUser_UserIDAndCourse_CourseID(userId, courseId))
+            when(enrollmentRepository.findWithCourseByUserAndCourse(userId, courseId))
                     .thenReturn(Optional.empty());
 
             assertThrows(AppException.class,
                     () -> studentCourseService.getCourseDetail(userId, courseId));
 
             verify(enrollmentRepository)
-                    .findByUser_UserIDAndCourse_CourseID(userId, courseId);
+                    .findWithCourseByUserAndCourse(userId, courseId);
+            verifyNoInteractions(courseSectionRepository);
         }
 
         /**
@@ -372,8 +367,10 @@ class StudentCourseServiceTest {
 
             Enrollment enrollment = buildEnrollment(1L, user, course, EnrollmentStatus.Active);
 
-            when(enrollmentRepository.findByUser_UserIDAndCourse_CourseID(userId, 20L))
+            when(enrollmentRepository.findWithCourseByUserAndCourse(userId, 20L))
                     .thenReturn(Optional.of(enrollment));
+            when(courseSectionRepository.findCurriculumRows(20L))
+                    .thenReturn(List.of());
 
             StudentCourseResponse res =
                     studentCourseService.getCourseDetail(userId, 20L);
@@ -392,20 +389,21 @@ class StudentCourseServiceTest {
             assertNotNull(res.getSectionProgress());
             assertTrue(res.getSectionProgress().isEmpty());
 
-            verifyNoInteractions(userCourseSectionRepository);
+            verifyNoInteractions(userCourseSectionRepository, userLessonRepository,
+                    quizQuestionRepository, userQuizResultRepository);
         }
 
         /**
          * CASE 3 – HAPPY PATH FULL
          * NOTE – Course có 1 section với 2 lesson:
          *  - Lesson1: Video
-         *      + UserLesson.isDone = true
+         *      + UserLesson.isDone = true, watchedDuration = 120
          *      + Không có quiz -> các field quiz = null
          *
          *  - Lesson2: Quiz
-         *      + UserLesson: không có -> isDone=false
-         *      + quizQuestionRepository.countByLesson = 5
-         *      + userQuizResultRepository.findTop... trả về:
+         *      + UserLesson: không có -> isDone=false, watchedDuration=0
+         *      + số câu hỏi (group by lesson) = 5
+         *      + kết quả gần nhất (1 query cho cả course) trả về:
          *          correctQuestions = 4
          *          percentage = 80
          *          passed = true
@@ -432,34 +430,26 @@ class StudentCourseServiceTest {
 
             Enrollment enrollment = buildEnrollment(1L, user, course, EnrollmentStatus.Active);
 
-            when(enrollmentRepository.findByUser_UserIDAndCourse_CourseID(userId, 20L))
+            when(enrollmentRepository.findWithCourseByUserAndCourse(userId, 20L))
                     .thenReturn(Optional.of(enrollment));
 
+            // Curriculum: 1 section, 2 lesson
+            when(courseSectionRepository.findCurriculumRows(20L))
+                    .thenReturn(List.of(curriculumRow(section, lessonVideo), curriculumRow(section, lessonQuiz)));
+
             // Section progress = 80
-            when(userCourseSectionRepository.findByUser_UserIDAndSection_SectionID(userId, 100L))
-                    .thenReturn(Optional.of(
-                            buildUserCourseSection(2000L, user, section, BigDecimal.valueOf(80))
-                    ));
-
-            // userLesson cho Video lesson -> isDone = true
-            when(userLessonRepository.findByUser_UserIDAndLesson_LessonID(userId, 1000L))
-                    .thenReturn(Optional.of(
-                            buildUserLesson(3000L, user, lessonVideo, true)
-                    ));
-
-            // userLesson cho Quiz lesson -> chưa có -> Optional.empty -> isDone=false
-            when(userLessonRepository.findByUser_UserIDAndLesson_LessonID(userId, 1001L))
-                    .thenReturn(Optional.empty());
+            when(userCourseSectionRepository.findSectionProgressRows(userId, 20L))
+                    .thenReturn(List.<Object[]>of(new Object[]{100L, BigDecimal.valueOf(80)}));
+
+            // Chỉ Video lesson có UserLesson -> isDone = true, đã xem 120s
+            when(userLessonRepository.findLessonStateRows(userId, 20L))
+                    .thenReturn(List.<Object[]>of(new Object[]{1000L, true, 120}));
 
             // Quiz info cho lessonQuiz
-            when(quizQuestionRepository.countByLesson(lessonQuiz))
-                    .thenReturn(5L);
-            when(userQuizResultRepository
-                    .findTopByUser_UserIDAndLesson_LessonIDOrderBySubmittedAtDesc(userId, 1001L))
-                    .thenReturn(Optional.of(
-                            buildUserQuizResult(4000L, user, lessonQuiz,
-                                    4, BigDecimal.valueOf(80), true)
-                    ));
+            when(quizQuestionRepository.countByCourseGroupByLesson(20L))
+                    .thenReturn(List.<Object[]>of(new Object[]{1001L, 5L}));
+            when(userQuizResultRepository.findLatestResultRows(userId, 20L))
+                    .thenReturn(List.<Object[]>of(new Object[]{1001L, 4, BigDecimal.valueOf(80), true}));
 
             StudentCourseResponse res =
                     studentCourseService.getCourseDetail(userId, 20L);
@@ -496,6 +486,7 @@ class StudentCourseServiceTest {
             assertEquals("Video lesson", lVideo.getLessonTitle());
             assertEquals(LessonType.Video, lVideo.getLessonType());
             assertTrue(lVideo.getIsDone());
+            assertEquals(120, lVideo.getWatchedDuration());
             assertNull(lVideo.getTotalQuizQuestions());
             assertNull(lVideo.getCorrectAnswers());
             assertNull(lVideo.getScorePercent());
@@ -506,11 +497,69 @@ class StudentCourseServiceTest {
             assertEquals("Quiz lesson", lQuiz.getLessonTitle());
             assertEquals(LessonType.Quiz, lQuiz.getLessonType());
             assertFalse(lQuiz.getIsDone()); // chưa có UserLesson
+            assertEquals(0, lQuiz.getWatchedDuration());
 
             assertEquals(5, lQuiz.getTotalQuizQuestions());
             assertEquals(4, lQuiz.getCorrectAnswers());
             assertEquals(80.0, lQuiz.getScorePercent());   // Double -> OK
             assertTrue(lQuiz.getPassed());
         }
+
+        /**
+         * CASE 4 – REGRESSION số lần gọi repository
+         * NOTE – Course lớn hơn (6 section x 10 lesson, nửa là Quiz, learner đã làm hết)
+         *  vẫn gọi repository đúng số lần như course 1 section / 2 lesson (6 lần).
+         *  Đếm lời gọi trên mock, không đếm SQL thật: lazy load hay 1 method bắn N câu SQL không bị bắt ở đây
+         */
+        @Test
+        @DisplayName("Số lần gọi repository cố định, không tăng theo số section / lesson")
+        void getCourseDetail_repositoryCallCount_shouldNotGrowWithCurriculum() {
+            assertEquals(6, repositoryCallsFor(1, 2));
+            clearInvocations(enrollmentRepository, courseSectionRepository, userCourseSectionRepository,
+                    userLessonRepository, quizQuestionRepository, userQuizResultRepository);
+            assertEquals(6, repositoryCallsFor(6, 10));
+        }
+
+        private int repositoryCallsFor(int sectionCount, int lessonsPerSection) {
+            Long userId = 1L;
+            User user = buildUser(userId, "Student A");
+            Course course = buildCourse(20L, buildTutor(10L, buildUser(100L, "Tutor X")));
+            Enrollment enrollment = buildEnrollment(1L, user, course, EnrollmentStatus.Active);
+
+            List<Object[]> curriculum = new ArrayList<>();
+            List<Object[]> progress = new ArrayList<>();
+            List<Object[]> states = new ArrayList<>();
+            List<Object[]> quizCounts = new ArrayList<>();
+            List<Object[]> results = new ArrayList<>();
+            long lessonId = 1000L;
+            for (long s = 0; s < sectionCount; s++) {
+                CourseSection section = buildSection(100L + s, course, "Section " + s);
+                progress.add(new Object[]{section.getSectionID(), BigDecimal.valueOf(100)});
+                for (int l = 0; l < lessonsPerSection; l++, lessonId++) {
+                    LessonType type = l % 2 == 0 ? LessonType.Video : LessonType.Quiz;
+                    curriculum.add(curriculumRow(section, buildLesson(lessonId, section, "Lesson " + lessonId, type)));
+                    states.add(new Object[]{lessonId, true, 60});
+                    if (type == LessonType.Quiz) {
+                        quizCounts.add(new Object[]{lessonId, 5L});
+                        results.add(new Object[]{lessonId, 5, BigDecimal.valueOf(100), true});
+                    }
+                }
+            }
+
+            when(enrollmentRepository.findWithCourseByUserAndCourse(userId, 20L)).thenReturn(Optional.of(enrollment));
+            when(courseSectionRepository.findCurriculumRows(20L)).thenReturn(curriculum);
+            when(userCourseSectionRepository.findSectionProgressRows(userId, 20L)).thenReturn(progress);
+            when(userLessonRepository.findLessonStateRows(userId, 20L)).thenReturn(states);
+            when(quizQuestionRepository.countByCourseGroupByLesson(20L)).thenReturn(quizCounts);
+            when(userQuizResultRepository.findLatestResultRows(userId, 20L)).thenReturn(results);
+
+            StudentCourseResponse res = studentCourseService.getCourseDetail(userId, 20L);
+
+            assertEquals(sectionCount, res.getSectionProgress().size());
+            assertEquals(sectionCount * lessonsPerSection, res.getSectionProgress().stream()
+                    .mapToInt(sp -> sp.getLessons().size()).sum());
+            assertTrue(res.getIsCompleted());
+            return repositoryCalls();
+        }
     }
 }
@@ -0,0 +1,215 @@
+package edu.lms.service;
+
+import edu.lms.dto.request.LessonProgressRequest;
+import edu.lms.dto.response.LessonProgressResponse;
+import edu.lms.entity.*;
+import edu.lms.enums.EnrollmentStatus;
+import edu.lms.enums.LessonType;
+import edu.lms.exception.AppException;
+import edu.lms.repository.*;
+import edu.lms.repository.UserLessonRepositoryCustom.WatchRow;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit test cho StudentLessonService + LessonProgressTracker
+ *
+ * Cover:
+ *  - heartbeat đầu tiên → kiểm tra qua DB + đăng ký session; heartbeat sau chỉ ghi trong bộ nhớ, không mở transaction
+ *  - flush → 1 batch UPDATE với watchedDuration mới nhất; lỗi → flush lần sau ghi lại
+ *  - isDone=true → ghi ngay, tăng bộ đếm tiến độ section qua CourseProgressService
+ *  - UPDATE đổi cờ DONE không ăn (request khác đã hoàn thành trước) → không cộng bộ đếm lần nữa
+ *  - heartbeat isDone=false không đưa lesson đã DONE về chưa học
+ *  - chưa enroll → ENROLLMENT_NOT_FOUND, không đăng ký session
+ */
+@ExtendWith(MockitoExtension.class)
+class StudentLessonServiceTest {
+
+    private static final String EMAIL = "learner@mail.com";
+
+    @Mock
+    UserRepository userRepository;
+    @Mock
+    LessonRepository lessonRepository;
+    @Mock
+    UserLessonRepository userLessonRepository;
+    @Mock
+    EnrollmentRepository enrollmentRepository;
+    @Mock
+    CourseProgressService courseProgressService;
+
+    LessonProgressTracker lessonProgressTracker;
+    TransactionTemplate transactionTemplate;
+    StudentLessonService studentLessonService;
+
+    User user;
+    Course course;
+    CourseSection section;
+    Lesson lesson;
+    Enrollment enrollment;
+
+    @BeforeEach
+    void setUp() {
+        lessonProgressTracker = new LessonProgressTracker(userLessonRepository, 600, 100);
+        // Chạy callback ngay trên thread test, transaction manager là mock
+        transactionTemplate = spy(new TransactionTemplate(mock(PlatformTransactionManager.class)));
+        studentLessonService = new StudentLessonService(userRepository, lessonRepository, userLessonRepository,
+                enrollmentRepository, lessonProgressTracker, courseProgressService, transactionTemplate);
+
+        user = User.builder().userID(1L).email(EMAIL).build();
+        course = Course.builder().courseID(10L).build();
+        section = CourseSection.builder().sectionID(100L).course(course).build();
+        lesson = Lesson.builder().lessonID(1000L).section(section).lessonType(LessonType.Video).build();
+        enrollment = Enrollment.builder().enrollmentID(5L).user(user).course(course)
+                .status(EnrollmentStatus.Active).build();
+    }
+
+    private LessonProgressRequest request(Boolean isDone, Integer watched) {
+        LessonProgressRequest req = new LessonProgressRequest();
+        req.setIsDone(isDone);
+        req.setWatchedDuration(watched);
+        return req;
+    }
+
+    private void mockAccess(UserLesson existing) {
+        when(userRepository.findByEmail(EMAIL)).thenReturn(Optional.of(user));
+        when(lessonRepository.findById(1000L)).thenReturn(Optional.of(lesson));
+        when(enrollmentRepository.findByUser_UserIDAndCourse_CourseID(1L, 10L)).thenReturn(Optional.of(enrollment));
+        when(userLessonRepository.findByUser_UserIDAndLesson_LessonID(1L, 1000L))
+                .thenReturn(Optional.ofNullable(existing));
+    }
+
+    private UserLesson userLesson(boolean done, int watched) {
+        return UserLesson.builder()
+                .userLessonID(77L)
+                .user(user)
+                .lesson(lesson)
+                .enrollment(enrollment)
+                .isDone(done)
+                .watchedDuration(watched)
+                .completedAt(done ? LocalDateTime.of(2025, 1, 1, 10, 0) : null)
+                .build();
+    }
+
+    @Test
+    @DisplayName("Heartbeat liên tục -> chỉ lần đầu query, flush 1 batch với watchedDuration mới nhất")
+    void saveLessonProgress_heartbeats_shouldCoalesceUntilFlush() {
+        mockAccess(userLesson(false, 0));
+
+        studentLessonService.saveLessonProgress(EMAIL, 1000L, request(false, 5));
+        studentLessonService.saveLessonProgress(EMAIL, 1000L, request(false, 10));
+        LessonProgressResponse res = studentLessonService.saveLessonProgress(EMAIL, 1000L, request(false, 15));
+
+        assertEquals(15, res.getWatchedDuration());
+        assertFalse(res.getIsDone());
+        verify(userRepository, times(1)).findByEmail(EMAIL);
+        verify(userLessonRepository, times(1)).saveAndFlush(any(UserLesson.class));
+        verify(transactionTemplate, times(1)).execute(any());
+        verify(userLessonRepository, never()).updateWatchedDurations(anyList());
+
+        lessonProgressTracker.flush();
+        lessonProgressTracker.flush();
+
+        // Flush lần 2 không còn gì để ghi
+        verify(userLessonRepository, times(1)).updateWatchedDurations(List.of(new WatchRow(77L, 15)));
+        verifyNoInteractions(courseProgressService);
+    }
+
+    @Test
+    @DisplayName("Flush lỗi -> lần flush sau ghi lại giá trị mới nhất")
+    void flush_failure_shouldRetryNextTime() {
+        mockAccess(userLesson(false, 0));
+        studentLessonService.saveLessonProgress(EMAIL, 1000L, request(false, 5));
+        studentLessonService.saveLessonProgress(EMAIL, 1000L, request(false, 20));
+
+        doThrow(new RuntimeException("db down"))
+                .doNothing()
+                .when(userLessonRepository).updateWatchedDurations(anyList());
+
+        assertThrows(RuntimeException.class, () -> lessonProgressTracker.flush());
+        lessonProgressTracker.flush();
+
+        verify(userLessonRepository, times(2)).updateWatchedDurations(List.of(new WatchRow(77L, 20)));
+    }
+
+    @Test
+    @DisplayName("isDone=true -> ghi ngay, tăng bộ đếm tiến độ section 1 lần")
+    void saveLessonProgress_completion_shouldUpdateProgressImmediately() {
+        UserLesson ul = userLesson(false, 0);
+        mockAccess(ul);
+        when(userLessonRepository.markDone(eq(1L), eq(1000L), any())).thenReturn(1);
+
+        // Heartbeat trước rồi mới hoàn thành
+        studentLessonService.saveLessonProgress(EMAIL, 1000L, request(false, 50));
+        LessonProgressResponse res = studentLessonService.saveLessonProgress(EMAIL, 1000L, request(true, 60));
+
+        assertTrue(res.getIsDone());
+        assertEquals(60, res.getWatchedDuration());
+        assertNotNull(res.getCompletedAt());
+        assertEquals(60, ul.getWatchedDuration());
+        verify(userLessonRepository, times(1)).markDone(eq(1L), eq(1000L), any());
+
+        verify(courseProgressService, times(1)).onLessonDoneChanged(user, section, enrollment, 1);
+
+        // Hoàn thành đã ghi watchedDuration → không còn heartbeat chờ flush
+        lessonProgressTracker.flush();
+        verify(userLessonRepository, never()).updateWatchedDurations(anyList());
+    }
+
+    @Test
+    @DisplayName("Lesson đã DONE + heartbeat isDone=false -> vẫn DONE, không tính lại tiến độ")
+    void saveLessonProgress_heartbeatOnDoneLesson_shouldNotUndo() {
+        UserLesson ul = userLesson(true, 100);
+        mockAccess(ul);
+
+        LessonProgressResponse first = studentLessonService.saveLessonProgress(EMAIL, 1000L, request(false, 30));
+        LessonProgressResponse second = studentLessonService.saveLessonProgress(EMAIL, 1000L, request(true, 40));
+
+        assertTrue(first.getIsDone());
+        assertTrue(second.getIsDone());
+        assertEquals(40, second.getWatchedDuration());
+        assertEquals(LocalDateTime.of(2025, 1, 1, 10, 0), second.getCompletedAt());
+        assertTrue(ul.getIsDone());
+        verify(userLessonRepository, never()).markDone(anyLong(), anyLong(), any());
+        verifyNoInteractions(courseProgressService);
+    }
+
+    @Test
+    @DisplayName("Request khác vừa hoàn thành lesson (UPDATE đổi 0 row) -> DONE nhưng không cộng bộ đếm")
+    void saveLessonProgress_concurrentCompletion_shouldCountOnce() {
+        mockAccess(userLesson(false, 0));
+        when(userLessonRepository.markDone(eq(1L), eq(1000L), any())).thenReturn(0);
+
+        LessonProgressResponse res = studentLessonService.saveLessonProgress(EMAIL, 1000L, request(true, 60));
+
+        assertTrue(res.getIsDone());
+        verifyNoInteractions(courseProgressService);
+    }
+
+    @Test
+    @DisplayName("Chưa enroll -> ENROLLMENT_NOT_FOUND, không đăng ký session")
+    void saveLessonProgress_notEnrolled_shouldThrow() {
+        when(userRepository.findByEmail(EMAIL)).thenReturn(Optional.of(user));
+        when(lessonRepository.findById(1000L)).thenReturn(Optional.of(lesson));
+        when(enrollmentRepository.findByUser_UserIDAndCourse_CourseID(1L, 10L)).thenReturn(Optional.empty());
+
+        assertThrows(AppException.class,
+                () -> studentLessonService.saveLessonProgress(EMAIL, 1000L, request(false, 5)));
+        assertEquals(0, lessonProgressTracker.sessionCount());
+        verify(userLessonRepository, never()).saveAndFlush(any(UserLesson.class));
+    }
+}
@@ -12,6 +12,7 @@ import edu.lms.exception.AppException;
 import edu.lms.repository.*;
 import lombok.AccessLevel;
 import lombok.experimental.FieldDefaults;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
@@ -36,6 +37,7 @@ import static org.mockito.Mockito.*;
  *      + Lesson không thuộc course
  *      + Lesson không phải Quiz
  *      + Happy path: trả câu hỏi (không trả isCorrect + explanation)
+ *      + Quiz được cache theo lesson, evict → load lại
  *
  *  - submitQuiz()
  *      + USER_NOT_EXIST
@@ -45,7 +47,9 @@ import static org.mockito.Mockito.*;
  *      + Lesson không phải Quiz
  *      + Quiz không có câu hỏi
  *      + Happy path: có câu đúng, sai -> pass=false
- *      + Happy path: tất cả đúng -> pass=true & Enrollment Completed
+ *      + Happy path: tất cả đúng, lesson lần đầu DONE -> tăng bộ đếm tiến độ
+ *      + Nộp lại quiz đã DONE -> không đổi bộ đếm
+ *      + Option không thuộc câu hỏi / chọn trùng -> không ghi
  *
  *  - getLatestQuizResult()
  *      + USER_NOT_EXIST
@@ -63,8 +67,6 @@ class StudentQuizServiceTest {
     @Mock
     QuizQuestionRepository quizQuestionRepository;
     @Mock
-    QuizOptionRepository quizOptionRepository;
-    @Mock
     QuizAnswerRepository quizAnswerRepository;
     @Mock
     UserLessonRepository userLessonRepository;
@@ -73,16 +75,20 @@ class StudentQuizServiceTest {
     @Mock
     UserQuizResultRepository userQuizResultRepository;
     @Mock
-    UserCourseSectionRepository userCourseSectionRepository;
+    CourseProgressService courseProgressService;
 
-    @InjectMocks
+    // Cache quiz thật, load qua quizQuestionRepository mock
+    QuizDefinitionCache quizDefinitionCache;
     StudentQuizService studentQuizService;
 
-    // Dùng ArgumentCaptor để bắt tham số save
-    @Captor
-    ArgumentCaptor<UserCourseSection> ucsCaptor;
-    @Captor
-    ArgumentCaptor<Enrollment> enrollmentCaptor;
+    @BeforeEach
+    void setUp() {
+        quizDefinitionCache = new QuizDefinitionCache(quizQuestionRepository, 100);
+        studentQuizService = new StudentQuizService(
+                enrollmentRepository, lessonRepository, quizDefinitionCache, quizAnswerRepository,
+                userLessonRepository, userRepository, userQuizResultRepository, courseProgressService);
+    }
+
 
     //==========================
     // HELPER: BigDecimal compare
@@ -354,7 +360,7 @@ class StudentQuizServiceTest {
                     .thenReturn(Optional.of(enrollment));
             when(lessonRepository.findById(lessonId))
                     .thenReturn(Optional.of(lesson));
-            when(quizQuestionRepository.findByLessonOrderByOrderIndexAsc(lesson))
+            when(quizQuestionRepository.findWithOptionsByLesson(lesson))
                     .thenReturn(List.of(q1, q2));
 
             List<QuizQuestionResponse> res =
@@ -374,6 +380,43 @@ class StudentQuizServiceTest {
             QuizQuestionResponse r2 = res.get(1);
             assertEquals(2L, r2.getQuestionID());
         }
+
+        @Test
+        @DisplayName("Gọi nhiều lần -> load quiz 1 lần; evict (admin duyệt draft) -> load lại nội dung mới")
+        void getQuizForLesson_cachedUntilEvicted() {
+            Long userId = 1L;
+            Long courseId = 10L;
+            Long lessonId = 100L;
+
+            User user = buildUser(userId, "Student A");
+            Course course = buildCourse(courseId);
+            Enrollment enrollment = buildEnrollment(1L, user, course, EnrollmentStatus.Active);
+            CourseSection section = buildSection(1000L, course, "Section 1");
+            Lesson lesson = buildLesson(lessonId, section, "Quiz Lesson", LessonType.Quiz);
+
+            QuizQuestion oldQ = buildQuestion(1L, lesson, "Q1", 1, BigDecimal.ONE);
+            oldQ.setOptions(List.of(buildOption(11L, oldQ, "A", true, 1)));
+            QuizQuestion newQ = buildQuestion(2L, lesson, "Q1 mới", 1, BigDecimal.ONE);
+            newQ.setOptions(List.of(buildOption(21L, newQ, "A", true, 1)));
+
+            when(enrollmentRepository.findByUser_UserIDAndCourse_CourseID(userId, courseId))
+                    .thenReturn(Optional.of(enrollment));
+            when(lessonRepository.findById(lessonId)).thenReturn(Optional.of(lesson));
+            when(quizQuestionRepository.findWithOptionsByLesson(lesson))
+                    .thenReturn(List.of(oldQ))
+                    .thenReturn(List.of(newQ));
+
+            studentQuizService.getQuizForLesson(userId, courseId, lessonId);
+            List<QuizQuestionResponse> cached = studentQuizService.getQuizForLesson(userId, courseId, lessonId);
+            assertEquals(1L, cached.get(0).getQuestionID());
+            verify(quizQuestionRepository, times(1)).findWithOptionsByLesson(lesson);
+
+            quizDefinitionCache.evict(lessonId);
+
+            List<QuizQuestionResponse> reloaded = studentQuizService.getQuizForLesson(userId, courseId, lessonId);
+            assertEquals(2L, reloaded.get(0).getQuestionID());
+            verify(quizQuestionRepository, times(2)).findWithOptionsByLesson(lesson);
+        }
     }
 
     // =====================================================================
@@ -534,7 +577,7 @@ class StudentQuizServiceTest {
                     .thenReturn(Optional.of(enrollment));
             when(lessonRepository.findById(lessonId))
                     .thenReturn(Optional.of(lesson));
-            when(quizQuestionRepository.findByLessonOrderByOrderIndexAsc(lesson))
+            when(quizQuestionRepository.findWithOptionsByLesson(lesson))
                     .thenReturn(List.of());
 
             SubmitQuizRequest req = new SubmitQuizRequest();
@@ -554,7 +597,7 @@ class StudentQuizServiceTest {
          *     percentage = 40% -> passed=false
          *
          * Đồng thời:
-         *  - Xoá QuizAnswer cũ -> deleteByUserAndQuestionIn
+         *  - Xoá QuizAnswer cũ -> deleteByUserIdAndQuestionIdIn
          *  - Lưu QuizAnswer mới
          *  - UserLesson: isDone=true, completedAt != null
          *  - Cập nhật UserCourseSection progress
@@ -596,30 +639,13 @@ class StudentQuizServiceTest {
             when(enrollmentRepository.findByUser_UserIDAndCourse_CourseID(userId, courseId))
                     .thenReturn(Optional.of(enrollment));
             when(lessonRepository.findById(lessonId)).thenReturn(Optional.of(lesson));
-            when(quizQuestionRepository.findByLessonOrderByOrderIndexAsc(lesson))
+            when(quizQuestionRepository.findWithOptionsByLesson(lesson))
                     .thenReturn(questions);
 
             // Mock tìm UserLesson lần đầu: chưa có -> Optional.empty => tạo mới
             when(userLessonRepository.findByUser_UserIDAndLesson_LessonID(userId, lessonId))
                     .thenReturn(Optional.empty());
-
-            // updateUserCourseSectionProgress sẽ gọi lại findByUser_UserIDAndLesson_LessonID cho từng lesson
-            when(userLessonRepository.findByUser_UserIDAndLesson_LessonID(userId, lessonId))
-                    .thenReturn(Optional.of(buildUserLesson(999L, user, lesson, enrollment, true)));
-
-            // userCourseSectionRepository.findByUser_UserIDAndSection_SectionID -> chưa có -> Optional.empty
-            when(userCourseSectionRepository.findByUser_UserIDAndSection_SectionID(userId, section.getSectionID()))
-                    .thenReturn(Optional.empty());
-
-            // updateEnrollmentStatusIfCourseCompleted: giả sử userSections.size() < allSections -> không completed
-            when(userCourseSectionRepository.findByUser_UserIDAndEnrollment_EnrollmentID(userId, enrollment.getEnrollmentID()))
-                    .thenReturn(List.of(
-                            buildUserCourseSection(1L, user, section, enrollment, BigDecimal.valueOf(50))
-                    ));
-
-            // quizOptionRepository.findById cho các option được gửi lên
-            when(quizOptionRepository.findById(11L)).thenReturn(Optional.of(q1o1));
-            when(quizOptionRepository.findById(21L)).thenReturn(Optional.of(q2o1));
+            when(userLessonRepository.markDone(eq(userId), eq(lessonId), any())).thenReturn(1);
 
             // Request:
             // - Q1: chọn 11 (đúng)
@@ -665,24 +691,22 @@ class StudentQuizServiceTest {
                     new HashSet<>(r2.getCorrectOptionIds()));
 
             // verify xóa đáp án cũ
-            verify(quizAnswerRepository).deleteByUserAndQuestionIn(user, questions);
-            // verify save QuizAnswer mới (Q1 chọn 11, Q2 chọn 21)
-            verify(quizAnswerRepository, times(2)).save(any(QuizAnswer.class));
-
-            // verify UserLesson được set Done
-            verify(userLessonRepository, atLeastOnce()).save(argThat(ul ->
+            verify(quizAnswerRepository).deleteByUserIdAndQuestionIdIn(userId, List.of(1L, 2L));
+            // verify insert QuizAnswer mới bằng 1 batch (Q1 chọn 11, Q2 chọn 21)
+            verify(quizAnswerRepository).insertAll(userId, List.of(
+                    new QuizAnswerRepositoryCustom.AnswerRow(1L, 11L),
+                    new QuizAnswerRepositoryCustom.AnswerRow(2L, 21L)));
+            verify(quizAnswerRepository, never()).save(any(QuizAnswer.class));
+            verify(userLessonRepository, times(1)).findByUser_UserIDAndLesson_LessonID(userId, lessonId);
+
+            // verify UserLesson được lưu + đổi cờ DONE bằng UPDATE có điều kiện
+            verify(userLessonRepository, atLeastOnce()).saveAndFlush(argThat(ul ->
                     ul.getLesson().getLessonID().equals(lessonId)
-                            && Boolean.TRUE.equals(ul.getIsDone())
-                            && ul.getCompletedAt() != null
             ));
+            verify(userLessonRepository).markDone(eq(userId), eq(lessonId), any());
 
-            // verify cập nhật UserCourseSection
-            verify(userCourseSectionRepository).save(ucsCaptor.capture());
-            UserCourseSection savedUcs = ucsCaptor.getValue();
-            assertEquals(userId, savedUcs.getUser().getUserID());
-            assertEquals(section.getSectionID(), savedUcs.getSection().getSectionID());
-            // do chỉ có 1 lesson và đã done -> progress ~100
-            assertTrue(savedUcs.getProgress().doubleValue() > 0);
+            // verify tăng bộ đếm tiến độ section (lesson lần đầu DONE)
+            verify(courseProgressService).onLessonDoneChanged(user, section, enrollment, 1);
 
             // verify có lưu UserQuizResult
             verify(userQuizResultRepository).save(any(UserQuizResult.class));
@@ -693,11 +717,11 @@ class StudentQuizServiceTest {
          * CASE 8 – HAPPY PATH 2
          * NOTE – Tất cả câu đều đúng -> percentage >= 60 -> passed=true
          *  Đồng thời:
-         *   - Giả lập tất cả section 100% -> Enrollment Completed
+         *   - UserLesson cũ chưa DONE -> tăng bộ đếm tiến độ section
          */
         @Test
-        @DisplayName("submitQuiz tất cả câu đúng -> passed=true & Enrollment Completed")
-        void submitQuiz_allCorrect_shouldPassAndCompleteEnrollment() {
+        @DisplayName("submitQuiz tất cả câu đúng -> passed=true & tăng tiến độ section")
+        void submitQuiz_allCorrect_shouldPassAndUpdateProgress() {
             Long userId = 1L;
             Long courseId = 10L;
             Long lessonId = 100L;
@@ -722,28 +746,13 @@ class StudentQuizServiceTest {
             when(enrollmentRepository.findByUser_UserIDAndCourse_CourseID(userId, courseId))
                     .thenReturn(Optional.of(enrollment));
             when(lessonRepository.findById(lessonId)).thenReturn(Optional.of(lesson));
-            when(quizQuestionRepository.findByLessonOrderByOrderIndexAsc(lesson))
+            when(quizQuestionRepository.findWithOptionsByLesson(lesson))
                     .thenReturn(List.of(q1));
 
             // UserLesson cũ đã tồn tại (có thể isDone hoặc chưa, cuối cùng phải true)
             when(userLessonRepository.findByUser_UserIDAndLesson_LessonID(userId, lessonId))
                     .thenReturn(Optional.of(buildUserLesson(1000L, user, lesson, enrollment, false)));
-
-            // updateUserCourseSectionProgress: sau khi quiz done, lesson done -> progress = 100
-            when(userLessonRepository.findByUser_UserIDAndLesson_LessonID(userId, lessonId))
-                    .thenReturn(Optional.of(buildUserLesson(1000L, user, lesson, enrollment, true)));
-
-            when(userCourseSectionRepository.findByUser_UserIDAndSection_SectionID(userId, section.getSectionID()))
-                    .thenReturn(Optional.of(buildUserCourseSection(2000L, user, section, enrollment, BigDecimal.valueOf(100))));
-
-            // updateEnrollmentStatusIfCourseCompleted:
-            //  giả lập userSections có 1 section, progress=100 -> Completed
-            when(userCourseSectionRepository.findByUser_UserIDAndEnrollment_EnrollmentID(userId, enrollment.getEnrollmentID()))
-                    .thenReturn(List.of(
-                            buildUserCourseSection(2000L, user, section, enrollment, BigDecimal.valueOf(100))
-                    ));
-
-            when(quizOptionRepository.findById(11L)).thenReturn(Optional.of(q1o1));
+            when(userLessonRepository.markDone(eq(userId), eq(lessonId), any())).thenReturn(1);
 
             SubmitQuizQuestionAnswer ans1 = new SubmitQuizQuestionAnswer();
             ans1.setQuestionId(1L);
@@ -761,10 +770,91 @@ class StudentQuizServiceTest {
             assertBigDecimalEquals(10.0, res.getTotalScore());
             assertBigDecimalEquals(100.0, res.getPercentage());
 
-            // verify Enrollment status được set Completed
-            verify(enrollmentRepository).save(enrollmentCaptor.capture());
-            Enrollment savedEnrollment = enrollmentCaptor.getValue();
-            assertEquals(EnrollmentStatus.Completed, savedEnrollment.getStatus());
+            // Lesson chưa DONE -> +1 bộ đếm; CourseProgressService tự set Enrollment Completed khi đủ 100%
+            verify(courseProgressService).onLessonDoneChanged(user, section, enrollment, 1);
+        }
+
+        /**
+         * CASE 9
+         * NOTE – Option gửi lên không thuộc câu hỏi (id lạ / option của câu khác) hoặc chọn trùng
+         *  -> chỉ ghi option hợp lệ, mỗi option 1 lần; câu đó vẫn chấm như cũ
+         */
+        @Test
+        @DisplayName("submitQuiz option không thuộc câu hỏi / chọn trùng -> bỏ qua khi ghi QuizAnswer")
+        void submitQuiz_foreignOrDuplicateOptions_shouldOnlyInsertValidOnce() {
+            Long userId = 1L;
+            Long courseId = 10L;
+            Long lessonId = 100L;
+
+            User user = buildUser(userId, "Student A");
+            Course course = buildCourse(courseId);
+            CourseSection section = buildSection(1000L, course, "Section 1");
+            course.setSections(List.of(section));
+            Lesson lesson = buildLesson(lessonId, section, "Quiz", LessonType.Quiz);
+            Enrollment enrollment = buildEnrollment(1L, user, course, EnrollmentStatus.Active);
+
+            QuizQuestion q1 = buildQuestion(1L, lesson, "Q1", 1, BigDecimal.ONE);
+            q1.setOptions(List.of(buildOption(11L, q1, "Q1 A", true, 1), buildOption(12L, q1, "Q1 B", false, 2)));
+            QuizQuestion q2 = buildQuestion(2L, lesson, "Q2", 2, BigDecimal.ONE);
+            q2.setOptions(List.of(buildOption(21L, q2, "Q2 A", true, 1)));
+
+            when(userRepository.findById(userId)).thenReturn(Optional.of(user));
+            when(enrollmentRepository.findByUser_UserIDAndCourse_CourseID(userId, courseId))
+                    .thenReturn(Optional.of(enrollment));
+            when(lessonRepository.findById(lessonId)).thenReturn(Optional.of(lesson));
+            when(quizQuestionRepository.findWithOptionsByLesson(lesson)).thenReturn(List.of(q1, q2));
+            when(userLessonRepository.findByUser_UserIDAndLesson_LessonID(userId, lessonId))
+                    .thenReturn(Optional.empty());
+
+            // Q1: chọn 11 hai lần + 21 (option của Q2) + 999 (không tồn tại)
+            SubmitQuizQuestionAnswer ans1 = new SubmitQuizQuestionAnswer();
+            ans1.setQuestionId(1L);
+            ans1.setSelectedOptionIds(List.of(11L, 11L, 21L, 999L));
+
+            SubmitQuizRequest req = new SubmitQuizRequest();
+            req.setAnswers(List.of(ans1));
+
+            studentQuizService.submitQuiz(userId, courseId, lessonId, req);
+
+            verify(quizAnswerRepository).insertAll(userId, List.of(new QuizAnswerRepositoryCustom.AnswerRow(1L, 11L)));
+        }
+
+        /**
+         * CASE 10
+         * NOTE – Lesson quiz đã DONE từ lần nộp trước -> nộp lại không cộng thêm vào bộ đếm tiến độ
+         */
+        @Test
+        @DisplayName("submitQuiz nộp lại quiz đã DONE -> không đổi tiến độ section")
+        void submitQuiz_alreadyDone_shouldNotChangeProgress() {
+            Long userId = 1L;
+            Long courseId = 10L;
+            Long lessonId = 100L;
+
+            User user = buildUser(userId, "Student A");
+            Course course = buildCourse(courseId);
+            CourseSection section = buildSection(1000L, course, "Section 1");
+            Lesson lesson = buildLesson(lessonId, section, "Quiz", LessonType.Quiz);
+            Enrollment enrollment = buildEnrollment(1L, user, course, EnrollmentStatus.Active);
+
+            QuizQuestion q1 = buildQuestion(1L, lesson, "Q1", 1, BigDecimal.ONE);
+            q1.setOptions(List.of(buildOption(11L, q1, "Q1 A", true, 1)));
+
+            when(userRepository.findById(userId)).thenReturn(Optional.of(user));
+            when(enrollmentRepository.findByUser_UserIDAndCourse_CourseID(userId, courseId))
+                    .thenReturn(Optional.of(enrollment));
+            when(lessonRepository.findById(lessonId)).thenReturn(Optional.of(lesson));
+            when(quizQuestionRepository.findWithOptionsByLesson(lesson)).thenReturn(List.of(q1));
+            when(userLessonRepository.findByUser_UserIDAndLesson_LessonID(userId, lessonId))
+                    .thenReturn(Optional.of(buildUserLesson(1000L, user, lesson, enrollment, true)));
+
+            SubmitQuizRequest req = new SubmitQuizRequest();
+            req.setAnswers(List.of());
+
+            studentQuizService.submitQuiz(userId, courseId, lessonId, req);
+
+            verify(userLessonRepository, never()).markDone(anyLong(), anyLong(), any());
+            verifyNoInteractions(courseProgressService);
+            verify(userQuizResultRepository).save(any(UserQuizResult.class));
         }
     }
 
@@ -895,7 +985,7 @@ class StudentQuizServiceTest {
                     .thenReturn(Optional.of(lesson));
             when(userQuizResultRepository.findTopByUser_UserIDAndLesson_LessonIDOrderBySubmittedAtDesc(userId, lessonId))
                     .thenReturn(Optional.of(latest));
-            when(quizQuestionRepository.findByLessonOrderByOrderIndexAsc(lesson))
+            when(quizQuestionRepository.findWithOptionsByLesson(lesson))
                     .thenReturn(questions);
             when(quizAnswerRepository.findByUserAndQuestion_Lesson(user, lesson))
                     .thenReturn(List.of(a1, a2));
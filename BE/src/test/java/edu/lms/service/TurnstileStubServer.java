@@ -0,0 +1,98 @@
+package edu.lms.service;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Cloudflare Turnstile siteverify giả chạy local cho test (không gọi ra challenges.cloudflare.com).
+ *  - POST /siteverify: token bắt đầu bằng "ok" → success=true, còn lại → success=false
+ * Có thể cấu hình độ trễ và cho request trả lỗi 500.
+ */
+class TurnstileStubServer implements AutoCloseable {
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newFixedThreadPool(16);
+    private final AtomicInteger requestCount = new AtomicInteger();
+    private final AtomicInteger failuresLeft = new AtomicInteger();
+    private volatile long latencyMs = 0;
+
+    TurnstileStubServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/siteverify", this::handle);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    String verifyUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/siteverify";
+    }
+
+    int requestCount() {
+        return requestCount.get();
+    }
+
+    TurnstileStubServer failNext(int count) {
+        failuresLeft.set(count);
+        return this;
+    }
+
+    TurnstileStubServer latency(long millis) {
+        latencyMs = millis;
+        return this;
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        requestCount.incrementAndGet();
+        String form = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+
+        if (latencyMs > 0) {
+            try {
+                Thread.sleep(latencyMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        if (failuresLeft.getAndUpdate(n -> n > 0 ? n - 1 : 0) > 0) {
+            write(exchange, 500, "{\"success\":false}");
+            return;
+        }
+
+        String token = "";
+        for (String pair : form.split("&")) {
+            if (pair.startsWith("response=")) {
+                token = URLDecoder.decode(pair.substring("response=".length()), StandardCharsets.UTF_8);
+            }
+        }
+
+        if (token.startsWith("ok")) {
+            write(exchange, 200, "{\"success\":true}");
+        } else {
+            write(exchange, 200, "{\"success\":false,\"error-codes\":[\"invalid-input-response\"]}");
+        }
+    }
+
+    private static void write(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(bytes);
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,157 @@
+package edu.lms.service;
+
+import edu.lms.entity.BookingPlan;
+import edu.lms.entity.BookingPlanSlot;
+import edu.lms.enums.SlotStatus;
+import edu.lms.repository.BookingPlanRepository;
+import edu.lms.repository.BookingPlanSlotRepository;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Đo độ trễ "slot trống 4 tuần tới" của TutorAvailabilityService so với cách duyệt list slot đã chiếm cho từng slot.
+ * Tutor có 14 plan (2 ca / ngày, 30 phút / slot) + 300 slot đã chiếm.
+ * Không chạy trong build thường: mvn test -Pbenchmark -Dtest=TutorAvailabilityBenchmark
+ */
+@Tag("benchmark")
+class TutorAvailabilityBenchmark {
+
+    private static final int THREADS = 8;
+    private static final int QUERIES_PER_THREAD = 20_000;
+    private static final int WEEKS = 4;
+    private static final String[] DAYS = {"T2", "T3", "T4", "T5", "T6", "T7", "CN"};
+
+    @Test
+    void availabilityEngine_shouldMatchNaiveScanAndBeFaster() throws Exception {
+        List<BookingPlan> plans = new ArrayList<>();
+        long planId = 1;
+        for (String day : DAYS) {
+            plans.add(plan(planId++, day, LocalTime.of(8, 0), LocalTime.of(12, 0)));
+            plans.add(plan(planId++, day, LocalTime.of(18, 0), LocalTime.of(22, 0)));
+        }
+
+        LocalDateTime from = LocalDate.now().atStartOfDay();
+        List<BookingPlanSlot> occupied = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            LocalDateTime start = from.plusDays(i % (WEEKS * 7)).plusHours(i % 2 == 0 ? 8 : 18).plusMinutes(30L * (i / 28 % 8));
+            occupied.add(BookingPlanSlot.builder()
+                    .slotID((long) i).tutorID(1L)
+                    .startTime(start).endTime(start.plusMinutes(30))
+                    .status(SlotStatus.Paid)
+                    .build());
+        }
+
+        BookingPlanRepository planRepository = mock(BookingPlanRepository.class);
+        BookingPlanSlotRepository slotRepository = mock(BookingPlanSlotRepository.class);
+        when(planRepository.findByTutorIDAndIsActiveTrueOrderByTitleAscStartHoursAsc(anyLong())).thenReturn(plans);
+        when(slotRepository.findOccupyingByTutorIDFrom(anyLong(), any())).thenReturn(occupied);
+        TutorAvailabilityService service = new TutorAvailabilityService(planRepository, slotRepository);
+
+        // Cùng dữ liệu → cùng số slot trống
+        int expected = naiveFreeSlots(plans, occupied, from);
+        assertTrue(expected > 0);
+        assertEquals(expected, service.findFreeSlots(1L, from, WEEKS).size());
+
+        // warm-up
+        run("warm-up", () -> service.findFreeSlots(1L, from, WEEKS).size());
+
+        long naiveP50 = run("naive scan", () -> naiveFreeSlots(plans, occupied, from));
+        long engineP50 = run("availability engine", () -> service.findFreeSlots(1L, from, WEEKS).size());
+
+        assertTrue(engineP50 < naiveP50, "engine p50 " + engineP50 + "ns vs naive p50 " + naiveP50 + "ns");
+    }
+
+    private static BookingPlan plan(long id, String title, LocalTime start, LocalTime end) {
+        return BookingPlan.builder()
+                .bookingPlanID(id).tutorID(1L).title(title)
+                .startHours(start).endHours(end).slotDuration(30)
+                .isActive(true).isOpen(true)
+                .build();
+    }
+
+    // Cách làm cũ: sinh slot theo ngày rồi so với toàn bộ list slot đã chiếm
+    private static int naiveFreeSlots(List<BookingPlan> plans, List<BookingPlanSlot> occupied, LocalDateTime from) {
+        int free = 0;
+        for (int d = 0; d < WEEKS * 7; d++) {
+            LocalDate date = from.toLocalDate().plusDays(d);
+            for (BookingPlan plan : plans) {
+                if (TutorAvailabilityService.parseDayTitle(plan.getTitle()) != date.getDayOfWeek()) {
+                    continue;
+                }
+                for (LocalTime t = plan.getStartHours(); t.isBefore(plan.getEndHours()); t = t.plusMinutes(plan.getSlotDuration())) {
+                    LocalDateTime start = date.atTime(t);
+                    LocalDateTime end = start.plusMinutes(plan.getSlotDuration());
+                    boolean taken = false;
+                    for (BookingPlanSlot slot : occupied) {
+                        if (slot.getStartTime().isBefore(end) && slot.getEndTime().isAfter(start)) {
+                            taken = true;
+                            break;
+                        }
+                    }
+                    if (!taken && start.isAfter(from)) {
+                        free++;
+                    }
+                }
+            }
+        }
+        return free;
+    }
+
+    /**
+     * @return p50 (ns)
+     */
+    private long run(String name, Supplier<Integer> call) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        List<Future<long[]>> futures = new ArrayList<>();
+        long start = System.nanoTime();
+
+        for (int t = 0; t < THREADS; t++) {
+            futures.add(pool.submit(() -> {
+                long[] latencies = new long[QUERIES_PER_THREAD];
+                for (int i = 0; i < QUERIES_PER_THREAD; i++) {
+                    long s = System.nanoTime();
+                    call.get();
+                    latencies[i] = System.nanoTime() - s;
+                }
+                return latencies;
+            }));
+        }
+
+        long[] all = new long[THREADS * QUERIES_PER_THREAD];
+        int offset = 0;
+        for (Future<long[]> f : futures) {
+            long[] l = f.get();
+            System.arraycopy(l, 0, all, offset, l.length);
+            offset += l.length;
+        }
+        long elapsedNanos = System.nanoTime() - start;
+        pool.shutdown();
+
+        Arrays.sort(all);
+        System.out.printf("[BENCH] %-22s p50=%.1fus p99=%.1fus max=%.1fus throughput=%.0f query/s%n",
+                name,
+                all[all.length / 2] / 1e3,
+                all[(int) (all.length * 0.99)] / 1e3,
+                all[all.length - 1] / 1e3,
+                all.length / (elapsedNanos / 1e9));
+        return all[all.length / 2];
+    }
+}
@@ -0,0 +1,173 @@
+package edu.lms.service;
+
+import edu.lms.dto.response.TutorAvailabilityMatchResponse;
+import edu.lms.dto.response.TutorAvailabilitySearchResponse;
+import edu.lms.entity.TutorDirectoryEntry;
+import edu.lms.enums.TutorStatus;
+import edu.lms.exception.AppException;
+import edu.lms.exception.ErrorCode;
+import edu.lms.repository.TutorDirectoryRepository;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.PageImpl;
+
+import java.math.BigDecimal;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * TutorAvailabilitySearchServiceTest
+ *
+ * Cover:
+ *  - lọc ứng viên qua tutor_directory (ngôn ngữ, maxPrice), truyền window xuống availability engine
+ *  - xếp hạng: trống sớm nhất → rating cao → giá thấp, cắt theo limit
+ *  - tham số sai (khoảng ngày, khung giờ, giá) → AVAILABILITY_SEARCH_INVALID_RANGE
+ */
+@ExtendWith(MockitoExtension.class)
+class TutorAvailabilitySearchServiceTest {
+
+    @Mock TutorDirectoryRepository tutorDirectoryRepository;
+    @Mock TutorAvailabilityService tutorAvailabilityService;
+
+    @InjectMocks
+    TutorAvailabilitySearchService tutorAvailabilitySearchService;
+
+    private static final LocalDate NEXT_MONDAY = LocalDate.now().plusWeeks(1).with(DayOfWeek.MONDAY);
+
+    private TutorDirectoryEntry entry(Long tutorId, String rating) {
+        return TutorDirectoryEntry.builder()
+                .tutorId(tutorId)
+                .userId(tutorId + 100)
+                .userName("Tutor " + tutorId)
+                .teachingLanguage("Japanese")
+                .status(TutorStatus.APPROVED)
+                .bookingRating(new BigDecimal(rating))
+                .build();
+    }
+
+    private TutorAvailabilityService.MatchedSlot match(Long planId, LocalDateTime start, double price) {
+        return new TutorAvailabilityService.MatchedSlot(planId, start, start.plusMinutes(60), price, 2);
+    }
+
+    private void stubCandidates(TutorDirectoryEntry... entries) {
+        when(tutorDirectoryRepository.search(eq(TutorStatus.APPROVED), eq("Japanese"), isNull(), isNull(),
+                any(), isNull(), any())).thenReturn(new PageImpl<>(List.of(entries)));
+    }
+
+    @Nested
+    @DisplayName("search")
+    class SearchTests {
+
+        @Test
+        @DisplayName("Xếp hạng theo giờ trống sớm nhất, cùng giờ thì rating cao trước, rồi giá thấp")
+        void search_shouldRankByEarliestThenRatingThenPrice() {
+            stubCandidates(entry(1L, "4.00"), entry(2L, "4.90"), entry(3L, "4.90"), entry(4L, "5.00"));
+            LocalDateTime at19 = NEXT_MONDAY.atTime(19, 0);
+            when(tutorAvailabilityService.findEarliestFree(anyCollection(), any())).thenReturn(Map.of(
+                    1L, match(11L, at19, 200000),
+                    2L, match(21L, at19, 300000),
+                    3L, match(31L, at19, 250000),
+                    4L, match(41L, at19.plusDays(1), 100000)));
+
+            TutorAvailabilitySearchResponse res = tutorAvailabilitySearchService.search(
+                    "Japanese", NEXT_MONDAY, NEXT_MONDAY.plusDays(6),
+                    LocalTime.of(19, 0), LocalTime.of(22, 0), 60, null, null, 20);
+
+            assertEquals(List.of(3L, 2L, 1L, 4L),
+                    res.getItems().stream().map(TutorAvailabilityMatchResponse::getTutorId).toList());
+            assertEquals(4, res.getTotalMatched());
+            assertEquals(31L, res.getItems().get(0).getBookingPlanId());
+            assertEquals(2, res.getItems().get(0).getSlotCount());
+        }
+
+        @Test
+        @DisplayName("Truyền đúng window + tập tutor ứng viên xuống engine, limit cắt kết quả")
+        @SuppressWarnings("unchecked")
+        void search_shouldPassWindowAndApplyLimit() {
+            stubCandidates(entry(1L, "4.00"), entry(2L, "4.50"));
+            LocalDateTime at19 = NEXT_MONDAY.atTime(19, 0);
+            when(tutorAvailabilityService.findEarliestFree(anyCollection(), any())).thenReturn(Map.of(
+                    1L, match(11L, at19, 200000),
+                    2L, match(21L, at19.plusHours(1), 200000)));
+
+            TutorAvailabilitySearchResponse res = tutorAvailabilitySearchService.search(
+                    " Japanese ", NEXT_MONDAY, NEXT_MONDAY.plusDays(6),
+                    LocalTime.of(19, 0), LocalTime.of(22, 0), null, 150000.0, 250000.0, 1);
+
+            assertEquals(1, res.getItems().size());
+            assertEquals(2, res.getTotalMatched());
+
+            ArgumentCaptor<Collection<Long>> ids = ArgumentCaptor.forClass(Collection.class);
+            ArgumentCaptor<TutorAvailabilityService.SlotWindow> window =
+                    ArgumentCaptor.forClass(TutorAvailabilityService.SlotWindow.class);
+            verify(tutorAvailabilityService).findEarliestFree(ids.capture(), window.capture());
+            assertTrue(ids.getValue().containsAll(List.of(1L, 2L)));
+            assertEquals(TutorAvailabilitySearchService.DEFAULT_DURATION_MINUTES, window.getValue().durationMinutes());
+            assertEquals(LocalTime.of(19, 0), window.getValue().dayStart());
+            assertEquals(150000.0, window.getValue().minPrice());
+            // minPrice không lọc ở directory
+            verify(tutorDirectoryRepository).search(eq(TutorStatus.APPROVED), eq("Japanese"), isNull(), isNull(),
+                    eq(250000.0), isNull(), any());
+        }
+
+        @Test
+        @DisplayName("Không có tutor nào khớp ngôn ngữ -> không gọi engine")
+        void search_noCandidates_shouldSkipEngine() {
+            stubCandidates();
+
+            TutorAvailabilitySearchResponse res = tutorAvailabilitySearchService.search(
+                    "Japanese", null, null, null, null, null, null, null, 20);
+
+            assertTrue(res.getItems().isEmpty());
+            assertEquals(LocalDate.now(), res.getFromDate());
+            assertEquals(LocalDate.now().plusDays(6), res.getToDate());
+            verifyNoInteractions(tutorAvailabilityService);
+        }
+    }
+
+    @Nested
+    @DisplayName("validate")
+    class ValidateTests {
+
+        private void assertInvalid(Runnable call) {
+            AppException ex = assertThrows(AppException.class, call::run);
+            assertEquals(ErrorCode.AVAILABILITY_SEARCH_INVALID_RANGE, ex.getErrorcode());
+            verifyNoInteractions(tutorDirectoryRepository, tutorAvailabilityService);
+        }
+
+        @Test
+        @DisplayName("toDate trước fromDate / quá 31 ngày")
+        void search_invalidDateRange_shouldThrow() {
+            assertInvalid(() -> tutorAvailabilitySearchService.search(
+                    null, NEXT_MONDAY, NEXT_MONDAY.minusDays(1), null, null, null, null, null, 20));
+            assertInvalid(() -> tutorAvailabilitySearchService.search(
+                    null, NEXT_MONDAY, NEXT_MONDAY.plusDays(31), null, null, null, null, null, 20));
+        }
+
+        @Test
+        @DisplayName("startTime >= endTime, minPrice > maxPrice, duration <= 0")
+        void search_invalidWindow_shouldThrow() {
+            assertInvalid(() -> tutorAvailabilitySearchService.search(
+                    null, null, null, LocalTime.of(22, 0), LocalTime.of(19, 0), null, null, null, 20));
+            assertInvalid(() -> tutorAvailabilitySearchService.search(
+                    null, null, null, null, null, null, 300000.0, 100000.0, 20));
+            assertInvalid(() -> tutorAvailabilitySearchService.search(
+                    null, null, null, null, null, 0, null, null, 20));
+        }
+    }
+}
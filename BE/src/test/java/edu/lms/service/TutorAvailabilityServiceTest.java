@@ -0,0 +1,293 @@
+package edu.lms.service;
+
+import edu.lms.entity.BookingPlan;
+import edu.lms.entity.BookingPlanSlot;
+import edu.lms.enums.SlotStatus;
+import edu.lms.repository.BookingPlanRepository;
+import edu.lms.repository.BookingPlanSlotRepository;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * TutorAvailabilityServiceTest
+ *
+ * Cover:
+ *  - parseDayTitle: "T2".."CN" của FE, tiếng Anh / "Thứ 2", title lạ → null
+ *  - findFreeSlots: cắt plan theo slotDuration, trừ slot đã chiếm (kể cả chiếm 1 phần), bỏ slot đã qua
+ *  - onSlotsOccupied / onSlotsReleased: cập nhật calendar đang cache, không query lại
+ *  - onPlansChanged: load lại; weeks bị giới hạn MAX_WEEKS
+ *  - findEarliestFree: load nhiều tutor bằng 2 query, nối slot liền nhau đủ thời lượng, lọc khung giờ / giá
+ */
+@ExtendWith(MockitoExtension.class)
+class TutorAvailabilityServiceTest {
+
+    @Mock BookingPlanRepository bookingPlanRepository;
+    @Mock BookingPlanSlotRepository bookingPlanSlotRepository;
+
+    @InjectMocks
+    TutorAvailabilityService tutorAvailabilityService;
+
+    // Chủ nhật 05/01/2025 12:00 → thứ 2 gần nhất là 06/01/2025
+    private static final LocalDateTime SUNDAY_NOON = LocalDateTime.of(2025, 1, 5, 12, 0);
+    private static final LocalDateTime MONDAY_8H = LocalDateTime.of(2025, 1, 6, 8, 0);
+
+    private BookingPlan buildPlan(Long id, String title, int startHour, int endHour, int duration) {
+        return BookingPlan.builder()
+                .bookingPlanID(id)
+                .tutorID(1L)
+                .title(title)
+                .startHours(LocalTime.of(startHour, 0))
+                .endHours(LocalTime.of(endHour, 0))
+                .slotDuration(duration)
+                .isActive(true)
+                .isOpen(true)
+                .build();
+    }
+
+    private BookingPlanSlot buildSlot(Long id, LocalDateTime start, int minutes, SlotStatus status) {
+        return BookingPlanSlot.builder()
+                .slotID(id)
+                .tutorID(1L)
+                .startTime(start)
+                .endTime(start.plusMinutes(minutes))
+                .status(status)
+                .build();
+    }
+
+    private void stubPlans(List<BookingPlan> plans, List<BookingPlanSlot> occupied) {
+        when(bookingPlanRepository.findByTutorIDAndIsActiveTrueOrderByTitleAscStartHoursAsc(1L)).thenReturn(plans);
+        lenient().when(bookingPlanSlotRepository.findOccupyingByTutorIDFrom(eq(1L), any())).thenReturn(occupied);
+    }
+
+    private List<LocalDateTime> starts(List<TutorAvailabilityService.FreeSlot> slots) {
+        return slots.stream().map(TutorAvailabilityService.FreeSlot::startTime).toList();
+    }
+
+    @Nested
+    @DisplayName("parseDayTitle")
+    class ParseDayTitleTests {
+
+        @Test
+        @DisplayName("Title của FE (T2..T7, CN) + tiếng Anh / tiếng Việt")
+        void parseDayTitle_shouldSupportAllFormats() {
+            assertEquals(DayOfWeek.MONDAY, TutorAvailabilityService.parseDayTitle("T2"));
+            assertEquals(DayOfWeek.SATURDAY, TutorAvailabilityService.parseDayTitle(" t7 "));
+            assertEquals(DayOfWeek.SUNDAY, TutorAvailabilityService.parseDayTitle("CN"));
+            assertEquals(DayOfWeek.WEDNESDAY, TutorAvailabilityService.parseDayTitle("Wednesday"));
+            assertEquals(DayOfWeek.FRIDAY, TutorAvailabilityService.parseDayTitle("Thứ 6"));
+        }
+
+        @Test
+        @DisplayName("Title lạ / null -> null")
+        void parseDayTitle_unknown_shouldReturnNull() {
+            assertNull(TutorAvailabilityService.parseDayTitle("Buổi tối"));
+            assertNull(TutorAvailabilityService.parseDayTitle(null));
+        }
+    }
+
+    @Nested
+    @DisplayName("findFreeSlots")
+    class FindFreeSlotsTests {
+
+        @Test
+        @DisplayName("Plan T2 8h-11h, 60 phút, slot 9h đã Paid -> còn 8h và 10h")
+        void findFreeSlots_shouldSubtractOccupied() {
+            stubPlans(List.of(buildPlan(7L, "T2", 8, 11, 60)),
+                    List.of(buildSlot(100L, MONDAY_8H.plusHours(1), 60, SlotStatus.Paid)));
+
+            List<TutorAvailabilityService.FreeSlot> free = tutorAvailabilityService.findFreeSlots(1L, SUNDAY_NOON, 1);
+
+            assertEquals(List.of(MONDAY_8H, MONDAY_8H.plusHours(2)), starts(free));
+            assertEquals(7L, free.get(0).bookingPlanId());
+            assertEquals(MONDAY_8H.plusHours(1), free.get(0).endTime());
+        }
+
+        @Test
+        @DisplayName("Slot đã chiếm lệch giờ 8h30-9h30 -> chặn cả slot 8h và 9h")
+        void findFreeSlots_partialOverlap_shouldBlockBoth() {
+            stubPlans(List.of(buildPlan(7L, "T2", 8, 11, 60)),
+                    List.of(buildSlot(100L, MONDAY_8H.plusMinutes(30), 60, SlotStatus.Locked)));
+
+            List<TutorAvailabilityService.FreeSlot> free = tutorAvailabilityService.findFreeSlots(1L, SUNDAY_NOON, 1);
+
+            assertEquals(List.of(MONDAY_8H.plusHours(2)), starts(free));
+        }
+
+        @Test
+        @DisplayName("Slot đã bắt đầu trước from -> bỏ qua")
+        void findFreeSlots_shouldSkipPastSlots() {
+            stubPlans(List.of(buildPlan(7L, "T2", 8, 11, 60)), List.of());
+
+            List<TutorAvailabilityService.FreeSlot> free =
+                    tutorAvailabilityService.findFreeSlots(1L, MONDAY_8H.plusMinutes(30), 1);
+
+            assertEquals(List.of(MONDAY_8H.plusHours(1), MONDAY_8H.plusHours(2)), starts(free));
+        }
+
+        @Test
+        @DisplayName("Plan đang đóng / title lạ -> không sinh slot")
+        void findFreeSlots_closedOrUnknownPlan_shouldBeIgnored() {
+            BookingPlan closed = buildPlan(7L, "T2", 8, 11, 60);
+            closed.setIsOpen(false);
+            stubPlans(List.of(closed, buildPlan(8L, "Buổi tối", 18, 20, 60)), List.of());
+
+            assertTrue(tutorAvailabilityService.findFreeSlots(1L, SUNDAY_NOON, 4).isEmpty());
+        }
+
+        @Test
+        @DisplayName("weeks quá lớn -> giới hạn MAX_WEEKS")
+        void findFreeSlots_hugeWeeks_shouldBeCapped() {
+            stubPlans(List.of(buildPlan(7L, "T2", 8, 10, 60)), List.of());
+
+            List<TutorAvailabilityService.FreeSlot> free = tutorAvailabilityService.findFreeSlots(1L, SUNDAY_NOON, 100);
+
+            assertEquals(TutorAvailabilityService.MAX_WEEKS * 2, free.size());
+        }
+    }
+
+    @Nested
+    @DisplayName("incremental")
+    class IncrementalTests {
+
+        @Test
+        @DisplayName("Lần 2 lấy calendar từ cache")
+        void findFreeSlots_secondCall_shouldHitCache() {
+            stubPlans(List.of(buildPlan(7L, "T2", 8, 11, 60)), List.of());
+
+            tutorAvailabilityService.findFreeSlots(1L, SUNDAY_NOON, 1);
+            tutorAvailabilityService.findFreeSlots(1L, SUNDAY_NOON, 2);
+
+            verify(bookingPlanRepository, times(1)).findByTutorIDAndIsActiveTrueOrderByTitleAscStartHoursAsc(1L);
+            assertEquals(1, tutorAvailabilityService.cachedTutors());
+        }
+
+        @Test
+        @DisplayName("Lock slot rồi release -> calendar cập nhật ngay, không query lại")
+        void occupyThenRelease_shouldUpdateCachedCalendar() {
+            stubPlans(List.of(buildPlan(7L, "T2", 8, 11, 60)), List.of());
+            tutorAvailabilityService.findFreeSlots(1L, SUNDAY_NOON, 1);
+
+            BookingPlanSlot locked = buildSlot(200L, MONDAY_8H, 60, SlotStatus.Locked);
+            tutorAvailabilityService.onSlotsOccupied(List.of(locked));
+            // Gọi lại lần nữa (retry) vẫn chỉ chiếm 1 slot
+            tutorAvailabilityService.onSlotsOccupied(List.of(locked));
+
+            assertEquals(List.of(MONDAY_8H.plusHours(1), MONDAY_8H.plusHours(2)),
+                    starts(tutorAvailabilityService.findFreeSlots(1L, SUNDAY_NOON, 1)));
+
+            tutorAvailabilityService.onSlotsReleased(List.of(locked));
+
+            assertEquals(3, tutorAvailabilityService.findFreeSlots(1L, SUNDAY_NOON, 1).size());
+            verify(bookingPlanRepository, times(1)).findByTutorIDAndIsActiveTrueOrderByTitleAscStartHoursAsc(1L);
+        }
+
+        @Test
+        @DisplayName("Slot của tutor chưa load -> bỏ qua")
+        void onSlotsOccupied_notLoaded_shouldDoNothing() {
+            tutorAvailabilityService.onSlotsOccupied(List.of(buildSlot(200L, MONDAY_8H, 60, SlotStatus.Locked)));
+
+            assertEquals(0, tutorAvailabilityService.cachedTutors());
+            verifyNoInteractions(bookingPlanRepository, bookingPlanSlotRepository);
+        }
+
+        @Test
+        @DisplayName("onPlansChanged -> lần sau compile lại plan")
+        void onPlansChanged_shouldReload() {
+            stubPlans(List.of(buildPlan(7L, "T2", 8, 11, 60)), List.of());
+            tutorAvailabilityService.findFreeSlots(1L, SUNDAY_NOON, 1);
+
+            tutorAvailabilityService.onPlansChanged(1L);
+            assertEquals(0, tutorAvailabilityService.cachedTutors());
+
+            when(bookingPlanRepository.findByTutorIDAndIsActiveTrueOrderByTitleAscStartHoursAsc(1L))
+                    .thenReturn(List.of(buildPlan(7L, "T2", 8, 11, 30)));
+
+            assertEquals(6, tutorAvailabilityService.findFreeSlots(1L, SUNDAY_NOON, 1).size());
+        }
+    }
+
+    @Nested
+    @DisplayName("findEarliestFree")
+    class FindEarliestFreeTests {
+
+        private final LocalDate monday = MONDAY_8H.toLocalDate();
+
+        private BookingPlan eveningPlan(Long id, Long tutorId, double price) {
+            BookingPlan plan = buildPlan(id, "T2", 18, 22, 30);
+            plan.setTutorID(tutorId);
+            plan.setPricePerHours(price);
+            return plan;
+        }
+
+        private TutorAvailabilityService.SlotWindow window(int duration, LocalTime dayEnd, Double maxPrice) {
+            return new TutorAvailabilityService.SlotWindow(SUNDAY_NOON, monday, monday.plusDays(6),
+                    LocalTime.of(19, 0), dayEnd, duration, null, maxPrice);
+        }
+
+        @Test
+        @DisplayName("2 tutor chưa cache -> 2 query cho cả nhóm, nối 2 slot 30 phút thành 60 phút")
+        void findEarliestFree_shouldBulkLoadAndJoinSlots() {
+            when(bookingPlanRepository.findByTutorIDInAndIsActiveTrue(anyCollection()))
+                    .thenReturn(List.of(eveningPlan(7L, 1L, 200000), eveningPlan(8L, 2L, 200000)));
+            when(bookingPlanSlotRepository.findOccupyingByTutorIDInFrom(anyCollection(), any()))
+                    .thenReturn(List.of(buildSlot(100L, monday.atTime(19, 0), 30, SlotStatus.Paid)));
+
+            Map<Long, TutorAvailabilityService.MatchedSlot> result =
+                    tutorAvailabilityService.findEarliestFree(List.of(1L, 2L), window(60, LocalTime.of(22, 0), null));
+
+            assertEquals(monday.atTime(19, 30), result.get(1L).startTime());
+            assertEquals(monday.atTime(20, 30), result.get(1L).endTime());
+            assertEquals(2, result.get(1L).slotCount());
+            assertEquals(monday.atTime(19, 0), result.get(2L).startTime());
+            assertEquals(8L, result.get(2L).bookingPlanId());
+
+            assertEquals(2, tutorAvailabilityService.cachedTutors());
+            verify(bookingPlanRepository, times(1)).findByTutorIDInAndIsActiveTrue(anyCollection());
+            verify(bookingPlanSlotRepository, times(1)).findOccupyingByTutorIDInFrom(anyCollection(), any());
+            verify(bookingPlanRepository, never()).findByTutorIDAndIsActiveTrueOrderByTitleAscStartHoursAsc(any());
+        }
+
+        @Test
+        @DisplayName("Slot bị lock sau khi cache -> lần tìm sau bỏ qua slot đó, không query lại")
+        void findEarliestFree_afterLock_shouldUseIncrementalUpdate() {
+            when(bookingPlanRepository.findByTutorIDInAndIsActiveTrue(anyCollection()))
+                    .thenReturn(List.of(eveningPlan(7L, 1L, 200000)));
+            tutorAvailabilityService.findEarliestFree(List.of(1L), window(30, null, null));
+
+            tutorAvailabilityService.onSlotsOccupied(List.of(buildSlot(200L, monday.atTime(19, 0), 30, SlotStatus.Locked)));
+
+            Map<Long, TutorAvailabilityService.MatchedSlot> result =
+                    tutorAvailabilityService.findEarliestFree(List.of(1L), window(30, null, null));
+            assertEquals(monday.atTime(19, 30), result.get(1L).startTime());
+            verify(bookingPlanRepository, times(1)).findByTutorIDInAndIsActiveTrue(anyCollection());
+        }
+
+        @Test
+        @DisplayName("Giá vượt maxPrice / khung giờ quá ngắn -> không có kết quả")
+        void findEarliestFree_priceOrWindow_shouldFilter() {
+            when(bookingPlanRepository.findByTutorIDInAndIsActiveTrue(anyCollection()))
+                    .thenReturn(List.of(eveningPlan(7L, 1L, 500000)));
+
+            assertTrue(tutorAvailabilityService
+                    .findEarliestFree(List.of(1L), window(60, LocalTime.of(22, 0), 300000.0)).isEmpty());
+            assertTrue(tutorAvailabilityService
+                    .findEarliestFree(List.of(1L), window(60, LocalTime.of(19, 45), null)).isEmpty());
+        }
+    }
+}
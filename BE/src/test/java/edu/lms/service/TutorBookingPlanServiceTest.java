@@ -14,6 +14,7 @@ import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
@@ -25,20 +26,18 @@ import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
-import static org.mockito.AdditionalAnswers.returnsFirstArg;
 
 @ExtendWith(MockitoExtension.class)
 @FieldDefaults(level = AccessLevel.PRIVATE)
 class TutorBookingPlanServiceTest {
 
-    @Mock NotificationService notificationService;
     @Mock BookingPlanRepository bookingPlanRepository;
     @Mock BookingPlanSlotRepository bookingPlanSlotRepository;
     @Mock TutorRepository tutorRepository;
-    @Mock RefundRequestRepository refundRequestRepository;
-    @Mock NotificationRepository notificationRepository;
-    @Mock PaymentRepository paymentRepository;
-    @Mock PayOSService payOSService;
+    @Mock BookingPlanTeardownService bookingPlanTeardownService;
+    @Mock TutorDirectoryService tutorDirectoryService;
+    @Mock TutorProfileService tutorProfileService;
+    @Mock TutorAvailabilityService tutorAvailabilityService;
 
     @InjectMocks
     TutorBookingPlanService tutorBookingPlanService;
@@ -92,15 +91,13 @@ class TutorBookingPlanServiceTest {
         return slot;
     }
 
-    private Payment buildPayment(Long paymentId, String linkId, PaymentStatus status) {
-        Payment p = new Payment();
-        p.setPaymentID(paymentId);
-        p.setPaymentLinkId(linkId);
-        p.setStatus(status);
-        p.setIsPaid(true);
-        p.setPaidAt(LocalDateTime.now());
-        p.setExpiresAt(LocalDateTime.now().plusMinutes(15));
-        return p;
+    private BookingPlanTeardownProgressResponse teardownResult(int slots, int withLearner) {
+        return BookingPlanTeardownProgressResponse.builder()
+                .jobId("job-1")
+                .status(BookingPlanTeardownStatus.QUEUED)
+                .slotsAffected(slots)
+                .slotsWithLearner(withLearner)
+                .build();
     }
 
     @BeforeEach
@@ -114,10 +111,6 @@ class TutorBookingPlanServiceTest {
                     }
                     return plan;
                 });
-
-        // Payment giữ behaviour "trả lại entity" để dễ assert
-        lenient().when(paymentRepository.save(any(Payment.class)))
-                .then(returnsFirstArg());
     }
 
     // =========================================================
@@ -582,6 +575,43 @@ class TutorBookingPlanServiceTest {
             assertEquals(ErrorCode.INVALID_KEY, ex.getErrorcode());
         }
 
+        /**
+         * NOTE CASE:
+         * - title mới không xác định được thứ (vd. "Ca sáng")
+         * - Kỳ vọng: INVALID_KEY, plan + slot giữ nguyên (không huỷ toàn bộ slot)
+         */
+        @Test
+        @DisplayName("Title mới không ra thứ -> INVALID_KEY, không đụng slot")
+        void updateBookingPlan_unparsableTitle_shouldReject() {
+            Tutor tutor = buildTutor(1L, 100L, TutorStatus.APPROVED);
+            when(tutorRepository.findByUser_UserID(100L))
+                    .thenReturn(Optional.of(tutor));
+
+            BookingPlan plan = buildPlan(10L, 1L, "Friday",
+                    LocalTime.of(9, 0), LocalTime.of(20, 0),
+                    60, 100_000d, "https://zoom.com");
+            when(bookingPlanRepository.findById(10L))
+                    .thenReturn(Optional.of(plan));
+
+            TutorBookingPlanRequest req = TutorBookingPlanRequest.builder()
+                    .title("Ca sáng")
+                    .startTime(LocalTime.of(9, 0))
+                    .endTime(LocalTime.of(12, 0))
+                    .slotDuration(60)
+                    .pricePerHours(BigDecimal.valueOf(100_000))
+                    .meetingUrl("https://zoom.com")
+                    .build();
+
+            AppException ex = assertThrows(
+                    AppException.class,
+                    () -> tutorBookingPlanService.updateBookingPlan(100L, 10L, req)
+            );
+            assertEquals(ErrorCode.INVALID_KEY, ex.getErrorcode());
+            assertEquals("Friday", plan.getTitle());
+            verify(bookingPlanRepository, never()).save(any());
+            verifyNoInteractions(bookingPlanTeardownService);
+        }
+
         /**
          * NOTE CASE:
          * - Đổi sang title mới (ngày mới)
@@ -720,21 +750,19 @@ class TutorBookingPlanServiceTest {
                             p.getPricePerHours().equals(150_000d)
             ));
             verify(bookingPlanSlotRepository, never())
-                    .findByBookingPlanIDOrderByStartTimeAsc(anyLong());
+                    .findByBookingPlanIDAndStartTimeGreaterThanEqualOrderByStartTimeAsc(anyLong(), any());
         }
 
         /**
          * NOTE CASE:
-         * - Thay đổi thời gian → có slot Locked + learner + payment
-         * - Slot nằm ngoài khoảng thời gian mới (out-of-new-time)
+         * - Thay đổi thời gian → slot 19-20 nằm ngoài khoảng mới, slot 10-11 vẫn trong khoảng
          * - Kỳ vọng:
-         *   + payOSService.cancelPaymentLink được gọi
-         *   + Payment được cập nhật (status CANCELLED)
-         *   + Gửi notification TUTOR_CANCEL_BOOKING cho learner + tutor
+         *   + Chỉ slot ngoài khoảng mới được chuyển cho teardown service (1 lần, theo lô)
+         *   + Tutor được truyền xuống (không query lại tutor cho từng slot)
          */
         @Test
-        @DisplayName("Update time: slot Locked + payment -> cancel payment, notify learner+tutor")
-        void updateBookingPlan_timeChange_withLockedSlot() {
+        @DisplayName("Update time: slot ngoài giờ mới -> releaseSlots theo lô")
+        void updateBookingPlan_timeChange_shouldReleaseOutOfRangeSlots() {
             Tutor tutor = buildTutor(1L, 100L, TutorStatus.APPROVED);
             when(tutorRepository.findByUser_UserID(100L))
                     .thenReturn(Optional.of(tutor));
@@ -751,30 +779,24 @@ class TutorBookingPlanServiceTest {
                     eq(10L)
             )).thenReturn(List.of());
 
-            LocalDateTime slotStart = LocalDateTime.now().withHour(19).withMinute(0);
-            LocalDateTime slotEnd = slotStart.plusHours(1);
+            LocalDateTime slotStart = LocalDateTime.now().plusDays(2).withHour(19).withMinute(0);
             BookingPlanSlot slotLocked = buildSlot(
                     100L, 10L, 1L, 999L,
-                    slotStart, slotEnd,
+                    slotStart, slotStart.plusHours(1),
                     SlotStatus.Locked,
                     500L
             );
             BookingPlanSlot slotInRange = buildSlot(
                     101L, 10L, 1L, null,
-                    LocalDateTime.now().withHour(10).withMinute(0),
-                    LocalDateTime.now().withHour(11).withMinute(0),
+                    slotStart.withHour(10), slotStart.withHour(11),
                     SlotStatus.Available,
                     null
             );
 
-            when(bookingPlanSlotRepository.findByBookingPlanIDOrderByStartTimeAsc(10L))
+            when(bookingPlanSlotRepository.findByBookingPlanIDAndStartTimeGreaterThanEqualOrderByStartTimeAsc(
+                    eq(10L), any(LocalDateTime.class)))
                     .thenReturn(List.of(slotInRange, slotLocked));
 
-            when(tutorRepository.findById(1L)).thenReturn(Optional.of(tutor));
-
-            Payment payment = buildPayment(500L, "PAYLINK-123", PaymentStatus.PAID);
-            when(paymentRepository.findById(500L)).thenReturn(Optional.of(payment));
-
             TutorBookingPlanRequest req = TutorBookingPlanRequest.builder()
                     .title("Friday")
                     .startTime(LocalTime.of(9, 0))
@@ -788,38 +810,20 @@ class TutorBookingPlanServiceTest {
                     tutorBookingPlanService.updateBookingPlan(100L, 10L, req);
 
             assertTrue(res.getSuccess());
-            assertTrue(res.getUpdatedSlots() > 0);
-
-            verify(payOSService).cancelPaymentLink("PAYLINK-123");
-            verify(paymentRepository).save(any(Payment.class));
+            assertEquals(1, res.getUpdatedSlots());
 
-            verify(notificationService, atLeastOnce()).sendNotification(
-                    eq(999L),
-                    contains("Lịch học đã thay đổi"),
-                    anyString(),
-                    eq(NotificationType.TUTOR_CANCEL_BOOKING),
-                    anyString()
-            );
-            verify(notificationService, atLeastOnce()).sendNotification(
-                    eq(tutor.getUser().getUserID()),
-                    contains("Lịch học có learner đang thanh toán bị ảnh hưởng"),
-                    anyString(),
-                    eq(NotificationType.TUTOR_CANCEL_BOOKING),
-                    anyString()
-            );
+            verify(bookingPlanTeardownService).releaseSlots(plan, tutor, List.of(slotLocked));
+            verify(tutorRepository, never()).findById(anyLong());
         }
 
         /**
          * NOTE CASE:
-         * - slot Paid + learner, out-of-new-time
-         * - Kỳ vọng:
-         *   + tạo RefundRequest (RefundStatus.PENDING)
-         *   + slot set status = Rejected
-         *   + notify REFUND_AVAILABLE cho learner + tutor
+         * - Thay đổi giá nhưng giữ nguyên giờ → không slot nào bị ảnh hưởng
+         * - Kỳ vọng: không gọi teardown service
          */
         @Test
-        @DisplayName("Update time: slot Paid -> tạo refund, slot Rejected, notify REFUND_AVAILABLE")
-        void updateBookingPlan_timeChange_withPaidSlot() {
+        @DisplayName("Update time: không có slot ngoài giờ mới -> không gọi releaseSlots")
+        void updateBookingPlan_timeChange_noOutOfRangeSlot() {
             Tutor tutor = buildTutor(1L, 100L, TutorStatus.APPROVED);
             when(tutorRepository.findByUser_UserID(100L))
                     .thenReturn(Optional.of(tutor));
@@ -836,23 +840,21 @@ class TutorBookingPlanServiceTest {
                     eq(10L)
             )).thenReturn(List.of());
 
-            LocalDateTime slotStart = LocalDateTime.now().withHour(19).withMinute(0);
-            LocalDateTime slotEnd = slotStart.plusHours(1);
-            BookingPlanSlot slotPaid = buildSlot(
-                    100L, 10L, 1L, 999L,
-                    slotStart, slotEnd,
+            LocalDateTime slotStart = LocalDateTime.now().plusDays(2).withHour(10).withMinute(0);
+            BookingPlanSlot slotInRange = buildSlot(
+                    101L, 10L, 1L, 999L,
+                    slotStart, slotStart.plusHours(1),
                     SlotStatus.Paid,
                     null
             );
-            when(bookingPlanSlotRepository.findByBookingPlanIDOrderByStartTimeAsc(10L))
-                    .thenReturn(List.of(slotPaid));
-
-            when(tutorRepository.findById(1L)).thenReturn(Optional.of(tutor));
+            when(bookingPlanSlotRepository.findByBookingPlanIDAndStartTimeGreaterThanEqualOrderByStartTimeAsc(
+                    eq(10L), any(LocalDateTime.class)))
+                    .thenReturn(List.of(slotInRange));
 
             TutorBookingPlanRequest req = TutorBookingPlanRequest.builder()
                     .title("Friday")
-                    .startTime(LocalTime.of(9, 0))
-                    .endTime(LocalTime.of(18, 0))
+                    .startTime(LocalTime.of(8, 0)) // mở rộng -> slot cũ vẫn nằm trong giờ mới
+                    .endTime(LocalTime.of(20, 0))
                     .slotDuration(60)
                     .pricePerHours(BigDecimal.valueOf(100_000))
                     .meetingUrl("https://zoom.com")
@@ -862,25 +864,62 @@ class TutorBookingPlanServiceTest {
                     tutorBookingPlanService.updateBookingPlan(100L, 10L, req);
 
             assertTrue(res.getSuccess());
-            assertTrue(res.getUpdatedSlots() > 0);
+            assertEquals(0, res.getUpdatedSlots());
+            verifyNoInteractions(bookingPlanTeardownService);
+        }
 
-            assertEquals(SlotStatus.Rejected, slotPaid.getStatus());
-            verify(refundRequestRepository).save(any(RefundRequest.class));
+        /**
+         * NOTE CASE:
+         * - Plan T2 dời sang T3 (cùng giờ) → slot tương lai của T2 không còn đúng lịch
+         * - Kỳ vọng: tất cả slot (trống + có learner) giao cho teardown trong 1 lần gọi, chỉ query slot từ ngày mai
+         */
+        @Test
+        @DisplayName("Update: đổi thứ -> mọi slot tương lai bị huỷ theo lô")
+        void updateBookingPlan_dayChange_shouldReleaseAllFutureSlots() {
+            Tutor tutor = buildTutor(1L, 100L, TutorStatus.APPROVED);
+            when(tutorRepository.findByUser_UserID(100L))
+                    .thenReturn(Optional.of(tutor));
 
-            verify(notificationService, atLeastOnce()).sendNotification(
-                    eq(999L),
-                    contains("Yêu cầu hoàn tiền"),
-                    anyString(),
-                    eq(NotificationType.REFUND_AVAILABLE),
-                    anyString()
-            );
-            verify(notificationService, atLeastOnce()).sendNotification(
-                    eq(tutor.getUser().getUserID()),
-                    contains("Yêu cầu hoàn tiền"),
-                    anyString(),
-                    eq(NotificationType.REFUND_AVAILABLE),
-                    anyString()
-            );
+            BookingPlan plan = buildPlan(10L, 1L, "T2",
+                    LocalTime.of(9, 0), LocalTime.of(12, 0),
+                    60, 100_000d, "url");
+            when(bookingPlanRepository.findById(10L))
+                    .thenReturn(Optional.of(plan));
+            when(bookingPlanRepository.findByTutorIDAndTitle(1L, "T3")).thenReturn(List.of());
+            when(bookingPlanRepository.countDistinctDaysByTutorID(1L)).thenReturn(1L);
+            when(bookingPlanRepository.findByTutorIDAndTitle(1L, "T2")).thenReturn(List.of(plan));
+            when(bookingPlanRepository.findOverlappingPlans(
+                    eq(1L), eq("T3"),
+                    any(LocalTime.class), any(LocalTime.class),
+                    eq(10L)
+            )).thenReturn(List.of());
+
+            LocalDateTime monday = LocalDate.now().plusWeeks(1).with(DayOfWeek.MONDAY).atTime(9, 0);
+            BookingPlanSlot paid = buildSlot(100L, 10L, 1L, 999L,
+                    monday, monday.plusHours(1), SlotStatus.Paid, 500L);
+            BookingPlanSlot empty = buildSlot(101L, 10L, 1L, null,
+                    monday.plusHours(1), monday.plusHours(2), SlotStatus.Available, null);
+            ArgumentCaptor<LocalDateTime> from = ArgumentCaptor.forClass(LocalDateTime.class);
+            when(bookingPlanSlotRepository.findByBookingPlanIDAndStartTimeGreaterThanEqualOrderByStartTimeAsc(
+                    eq(10L), from.capture()))
+                    .thenReturn(List.of(paid, empty));
+
+            TutorBookingPlanRequest req = TutorBookingPlanRequest.builder()
+                    .title("T3")
+                    .startTime(LocalTime.of(9, 0))
+                    .endTime(LocalTime.of(12, 0))
+                    .slotDuration(60)
+                    .pricePerHours(BigDecimal.valueOf(100_000))
+                    .meetingUrl("https://meet.google.com/abc-defg-hij")
+                    .build();
+
+            BookingPlanUpdateResponse res =
+                    tutorBookingPlanService.updateBookingPlan(100L, 10L, req);
+
+            assertEquals(2, res.getUpdatedSlots());
+            assertEquals(LocalDate.now().plusDays(1).atStartOfDay(), from.getValue());
+            verify(bookingPlanTeardownService, times(1)).releaseSlots(plan, tutor, List.of(paid, empty));
+            verify(bookingPlanSlotRepository, never()).saveAll(any());
         }
     }
 
@@ -895,7 +934,7 @@ class TutorBookingPlanServiceTest {
          * NOTE CASE:
          * - Tutor có thể tồn tại nhưng không có bookingPlan
          * - findByTutorID trả List empty
-         * - Kỳ vọng: không xóa slot, không notify
+         * - Kỳ vọng: không gọi teardown
          */
         @Test
         @DisplayName("Tutor không có booking plan -> không làm gì thêm")
@@ -905,124 +944,36 @@ class TutorBookingPlanServiceTest {
 
             tutorBookingPlanService.deleteAllBookingPlansForTutor(10L);
 
-            verify(bookingPlanSlotRepository, never()).findByBookingPlanIDOrderByStartTimeAsc(anyLong());
-            verify(bookingPlanRepository, never()).delete(any(BookingPlan.class));
+            verifyNoInteractions(bookingPlanTeardownService);
         }
 
         /**
          * NOTE CASE:
-         * - Có bookingPlan nhưng tất cả slot không có learner
-         * - Slot status Available, userID = null
-         * - Kỳ vọng: delete slot + delete plan, không notify/refund
+         * - Tutor có nhiều bookingPlan
+         * - Kỳ vọng: 1 lần teardown cho toàn bộ plan, reason TUTOR_SUSPENDED, không notify tutor
          */
         @Test
-        @DisplayName("Slots không có learner -> chỉ delete slot + plan")
-        void deleteAllBookingPlans_slotsWithoutLearner() {
-            BookingPlan plan = buildPlan(1L, 10L, "Friday",
-                    LocalTime.of(9, 0), LocalTime.of(20, 0),
-                    60, 100_000d, "url");
-
-            when(bookingPlanRepository.findByTutorID(10L))
-                    .thenReturn(List.of(plan));
-
-            BookingPlanSlot s1 = buildSlot(
-                    100L, 1L, 10L, null,
-                    LocalDateTime.now(), LocalDateTime.now().plusHours(1),
-                    SlotStatus.Available, null
-            );
-            BookingPlanSlot s2 = buildSlot(
-                    101L, 1L, 10L, null,
-                    LocalDateTime.now().plusHours(1), LocalDateTime.now().plusHours(2),
-                    SlotStatus.Available, null
-            );
-
-            when(bookingPlanSlotRepository.findByBookingPlanIDOrderByStartTimeAsc(1L))
-                    .thenReturn(List.of(s1, s2));
-
-            tutorBookingPlanService.deleteAllBookingPlansForTutor(10L);
-
-            verify(bookingPlanSlotRepository, times(2)).delete(any(BookingPlanSlot.class));
-            verify(bookingPlanRepository).delete(plan);
-        }
-
-        /**
-         * NOTE CASE:
-         * - Slot Paid + learner
-         * - Kỳ vọng:
-         *   + Tạo RefundRequest
-         *   + Notify learner REFUND_AVAILABLE
-         *   + Xóa slot + plan
-         */
-        @Test
-        @DisplayName("Slot Paid + learner -> tạo refund, notify learner")
-        void deleteAllBookingPlans_paidSlotWithLearner() {
-            BookingPlan plan = buildPlan(1L, 10L, "Friday",
-                    LocalTime.of(9, 0), LocalTime.of(20, 0),
+        @DisplayName("Có booking plan -> teardown 1 lần cho tất cả plan (TUTOR_SUSPENDED)")
+        void deleteAllBookingPlans_shouldTeardownAllPlansAtOnce() {
+            BookingPlan p1 = buildPlan(1L, 10L, "Friday",
+                    LocalTime.of(9, 0), LocalTime.of(12, 0),
                     60, 100_000d, "url");
-
-            when(bookingPlanRepository.findByTutorID(10L))
-                    .thenReturn(List.of(plan));
-
-            BookingPlanSlot paidSlot = buildSlot(
-                    100L, 1L, 10L, 999L,
-                    LocalDateTime.now(), LocalDateTime.now().plusHours(1),
-                    SlotStatus.Paid, null
-            );
-
-            when(bookingPlanSlotRepository.findByBookingPlanIDOrderByStartTimeAsc(1L))
-                    .thenReturn(List.of(paidSlot));
-
-            tutorBookingPlanService.deleteAllBookingPlansForTutor(10L);
-
-            verify(refundRequestRepository).save(any(RefundRequest.class));
-            verify(notificationService).sendNotification(
-                    eq(999L),
-                    contains("Yêu cầu hoàn tiền"),
-                    anyString(),
-                    eq(NotificationType.REFUND_AVAILABLE),
-                    anyString()
-            );
-            verify(bookingPlanSlotRepository).delete(paidSlot);
-            verify(bookingPlanRepository).delete(plan);
-        }
-
-        /**
-         * NOTE CASE:
-         * - Slot Available + learner
-         * - Kỳ vọng:
-         *   + Notify learner TUTOR_CANCEL_BOOKING
-         *   + Xóa slot + plan
-         */
-        @Test
-        @DisplayName("Slot Available + learner -> notify learner, delete slot")
-        void deleteAllBookingPlans_availableSlotWithLearner() {
-            BookingPlan plan = buildPlan(1L, 10L, "Friday",
-                    LocalTime.of(9, 0), LocalTime.of(20, 0),
+            BookingPlan p2 = buildPlan(2L, 10L, "Monday",
+                    LocalTime.of(13, 0), LocalTime.of(17, 0),
                     60, 100_000d, "url");
 
             when(bookingPlanRepository.findByTutorID(10L))
-                    .thenReturn(List.of(plan));
-
-            BookingPlanSlot slot = buildSlot(
-                    100L, 1L, 10L, 999L,
-                    LocalDateTime.now(), LocalDateTime.now().plusHours(1),
-                    SlotStatus.Available, null
-            );
-
-            when(bookingPlanSlotRepository.findByBookingPlanIDOrderByStartTimeAsc(1L))
-                    .thenReturn(List.of(slot));
+                    .thenReturn(List.of(p1, p2));
+            when(bookingPlanTeardownService.teardownPlans(eq(10L), isNull(), anyList(),
+                    eq(BookingPlanTeardownReason.TUTOR_SUSPENDED)))
+                    .thenReturn(teardownResult(7, 2));
 
             tutorBookingPlanService.deleteAllBookingPlansForTutor(10L);
 
-            verify(notificationService).sendNotification(
-                    eq(999L),
-                    contains("Lịch học đã bị hủy"),
-                    anyString(),
-                    eq(NotificationType.TUTOR_CANCEL_BOOKING),
-                    anyString()
-            );
-            verify(bookingPlanSlotRepository).delete(slot);
-            verify(bookingPlanRepository).delete(plan);
+            verify(bookingPlanTeardownService).teardownPlans(
+                    10L, null, List.of(p1, p2), BookingPlanTeardownReason.TUTOR_SUSPENDED);
+            verify(bookingPlanSlotRepository, never()).delete(any(BookingPlanSlot.class));
+            verify(bookingPlanRepository, never()).delete(any(BookingPlan.class));
         }
     }
 
@@ -1095,20 +1046,19 @@ class TutorBookingPlanServiceTest {
                     () -> tutorBookingPlanService.deleteBookingPlan(100L, 1L)
             );
             assertEquals(ErrorCode.UNAUTHORIZED, ex.getErrorcode());
+            verifyNoInteractions(bookingPlanTeardownService);
         }
 
         /**
          * NOTE CASE:
-         * - Slot Locked + learner + payment
+         * - Owner xoá plan
          * - Kỳ vọng:
-         *   + cancelPaymentLink
-         *   + update Payment -> CANCELLED
-         *   + notify learner & tutor (TUTOR_CANCEL_BOOKING)
-         *   + delete slot & plan
+         *   + teardown PLAN_DELETED với tutor user id (để notify tutor)
+         *   + message chứa số slot + jobId để FE poll tiến độ
          */
         @Test
-        @DisplayName("Delete booking plan: slot Locked + payment -> cancel payment, notify")
-        void deleteBookingPlan_lockedSlotWithPayment() {
+        @DisplayName("Delete booking plan: owner -> teardown PLAN_DELETED, message có jobId")
+        void deleteBookingPlan_success() {
             Tutor tutor = buildTutor(1L, 100L, TutorStatus.APPROVED);
             when(tutorRepository.findByUser_UserID(100L))
                     .thenReturn(Optional.of(tutor));
@@ -1118,152 +1068,54 @@ class TutorBookingPlanServiceTest {
                     60, 100_000d, "url");
             when(bookingPlanRepository.findById(1L))
                     .thenReturn(Optional.of(plan));
-
-            LocalDateTime start = LocalDateTime.now().plusDays(1).withHour(10);
-            LocalDateTime end = start.plusHours(1);
-            BookingPlanSlot lockedSlot = buildSlot(
-                    100L, 1L, 1L, 999L,
-                    start, end,
-                    SlotStatus.Locked,
-                    500L
-            );
-
-            when(bookingPlanSlotRepository.findByBookingPlanIDOrderByStartTimeAsc(1L))
-                    .thenReturn(List.of(lockedSlot));
-
-            Payment payment = buildPayment(500L, "LINK-500", PaymentStatus.PAID);
-            when(paymentRepository.findById(500L)).thenReturn(Optional.of(payment));
+            when(bookingPlanTeardownService.teardownPlans(1L, 100L, List.of(plan),
+                    BookingPlanTeardownReason.PLAN_DELETED))
+                    .thenReturn(teardownResult(11, 3));
 
             OperationStatusResponse res =
                     tutorBookingPlanService.deleteBookingPlan(100L, 1L);
 
-            assertNotNull(res);
             assertTrue(res.getSuccess());
-
-            verify(payOSService).cancelPaymentLink("LINK-500");
-            verify(paymentRepository).save(any(Payment.class));
-            verify(notificationService, atLeastOnce()).sendNotification(
-                    eq(999L),
-                    contains("Lịch học đã bị hủy"),
-                    anyString(),
-                    eq(NotificationType.TUTOR_CANCEL_BOOKING),
-                    anyString()
-            );
-            verify(notificationService, atLeastOnce()).sendNotification(
-                    eq(tutor.getUser().getUserID()),
-                    contains("Đã xóa slot có learner đang thanh toán"),
-                    anyString(),
-                    eq(NotificationType.TUTOR_CANCEL_BOOKING),
-                    anyString()
-            );
-
-            verify(bookingPlanSlotRepository).delete(lockedSlot);
-            verify(bookingPlanRepository).delete(plan);
+            assertTrue(res.getMessage().contains("11 slots deleted"));
+            assertTrue(res.getMessage().contains("3 slots had learners"));
+            assertTrue(res.getMessage().contains("job-1"));
         }
+    }
+
+    // =========================================================
+    // getTeardownProgress
+    // =========================================================
+    @Nested
+    @DisplayName("getTeardownProgress")
+    class GetTeardownProgressTests {
 
-        /**
-         * NOTE CASE:
-         * - Slot Paid + learner
-         * - Kỳ vọng:
-         *   + tạo RefundRequest
-         *   + notify REFUND_AVAILABLE (learner + tutor)
-         */
         @Test
-        @DisplayName("Delete booking plan: slot Paid -> refund + notify REFUND_AVAILABLE")
-        void deleteBookingPlan_paidSlot() {
+        @DisplayName("Job của tutor -> trả progress")
+        void getTeardownProgress_success() {
             Tutor tutor = buildTutor(1L, 100L, TutorStatus.APPROVED);
             when(tutorRepository.findByUser_UserID(100L))
                     .thenReturn(Optional.of(tutor));
+            BookingPlanTeardownProgressResponse progress = teardownResult(5, 1);
+            when(bookingPlanTeardownService.getProgress("job-1", 1L))
+                    .thenReturn(Optional.of(progress));
 
-            BookingPlan plan = buildPlan(1L, 1L, "Friday",
-                    LocalTime.of(9, 0), LocalTime.of(20, 0),
-                    60, 100_000d, "url");
-            when(bookingPlanRepository.findById(1L))
-                    .thenReturn(Optional.of(plan));
-
-            LocalDateTime start = LocalDateTime.now().plusDays(1).withHour(10);
-            LocalDateTime end = start.plusHours(1);
-            BookingPlanSlot paidSlot = buildSlot(
-                    100L, 1L, 1L, 999L,
-                    start, end,
-                    SlotStatus.Paid,
-                    null
-            );
-
-            when(bookingPlanSlotRepository.findByBookingPlanIDOrderByStartTimeAsc(1L))
-                    .thenReturn(List.of(paidSlot));
-
-            OperationStatusResponse res =
-                    tutorBookingPlanService.deleteBookingPlan(100L, 1L);
-
-            assertTrue(res.getSuccess());
-            verify(refundRequestRepository).save(any(RefundRequest.class));
-
-            verify(notificationService, atLeastOnce()).sendNotification(
-                    eq(999L),
-                    contains("Yêu cầu hoàn tiền"),
-                    anyString(),
-                    eq(NotificationType.REFUND_AVAILABLE),
-                    anyString()
-            );
-            verify(notificationService, atLeastOnce()).sendNotification(
-                    eq(tutor.getUser().getUserID()),
-                    contains("Yêu cầu hoàn tiền"),
-                    anyString(),
-                    eq(NotificationType.REFUND_AVAILABLE),
-                    anyString()
-            );
+            assertSame(progress, tutorBookingPlanService.getTeardownProgress(100L, "job-1"));
         }
 
-        /**
-         * NOTE CASE:
-         * - Slot Available + learner
-         * - Kỳ vọng:
-         *   + notify TUTOR_CANCEL_BOOKING cho cả learner + tutor
-         */
         @Test
-        @DisplayName("Delete booking plan: slot Available + learner -> notify TUTOR_CANCEL_BOOKING")
-        void deleteBookingPlan_availableSlotWithLearner() {
+        @DisplayName("Job không tồn tại / của tutor khác -> BOOKING_TEARDOWN_JOB_NOT_FOUND")
+        void getTeardownProgress_notFound() {
             Tutor tutor = buildTutor(1L, 100L, TutorStatus.APPROVED);
             when(tutorRepository.findByUser_UserID(100L))
                     .thenReturn(Optional.of(tutor));
+            when(bookingPlanTeardownService.getProgress("job-x", 1L))
+                    .thenReturn(Optional.empty());
 
-            BookingPlan plan = buildPlan(1L, 1L, "Friday",
-                    LocalTime.of(9, 0), LocalTime.of(20, 0),
-                    60, 100_000d, "url");
-            when(bookingPlanRepository.findById(1L))
-                    .thenReturn(Optional.of(plan));
-
-            LocalDateTime start = LocalDateTime.now().plusDays(1).withHour(10);
-            LocalDateTime end = start.plusHours(1);
-            BookingPlanSlot slot = buildSlot(
-                    100L, 1L, 1L, 999L,
-                    start, end,
-                    SlotStatus.Available,
-                    null
-            );
-
-            when(bookingPlanSlotRepository.findByBookingPlanIDOrderByStartTimeAsc(1L))
-                    .thenReturn(List.of(slot));
-
-            OperationStatusResponse res =
-                    tutorBookingPlanService.deleteBookingPlan(100L, 1L);
-
-            assertTrue(res.getSuccess());
-            verify(notificationService, atLeastOnce()).sendNotification(
-                    eq(999L),
-                    contains("Lịch học đã bị hủy"),
-                    anyString(),
-                    eq(NotificationType.TUTOR_CANCEL_BOOKING),
-                    anyString()
-            );
-            verify(notificationService, atLeastOnce()).sendNotification(
-                    eq(tutor.getUser().getUserID()),
-                    contains("Đã xóa slot có learner"),
-                    anyString(),
-                    eq(NotificationType.TUTOR_CANCEL_BOOKING),
-                    anyString()
+            AppException ex = assertThrows(
+                    AppException.class,
+                    () -> tutorBookingPlanService.getTeardownProgress(100L, "job-x")
             );
+            assertEquals(ErrorCode.BOOKING_TEARDOWN_JOB_NOT_FOUND, ex.getErrorcode());
         }
     }
 
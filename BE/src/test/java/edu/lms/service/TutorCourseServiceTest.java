@@ -65,16 +65,13 @@ class TutorCourseServiceTest {
     @Mock LessonResourceRepository lessonResourceRepository;
     @Mock TutorCourseMapper tutorCourseMapper;
     @Mock CourseObjectiveRepository courseObjectiveRepository;
-    @Mock CourseObjectiveDraftRepository courseObjectiveDraftRepository;
     @Mock CourseDraftRepository courseDraftRepository;
-    @Mock CourseSectionDraftRepository courseSectionDraftRepository;
-    @Mock LessonDraftRepository lessonDraftRepository;
-    @Mock LessonResourceDraftRepository lessonResourceDraftRepository;
     @Mock QuizQuestionRepository quizQuestionRepository;
     @Mock QuizOptionRepository quizOptionRepository;
     @Mock QuizQuestionDraftRepository quizQuestionDraftRepository;
-    @Mock QuizOptionDraftRepository quizOptionDraftRepository;
     @Mock CourseReviewRepository courseReviewRepository;
+    @Mock TutorProfileService tutorProfileService;
+    @Mock CourseDraftCloneService courseDraftCloneService;
 
     @InjectMocks
     TutorCourseService tutorCourseService;
@@ -1403,7 +1400,7 @@ class TutorCourseServiceTest {
 
         /**
          * Test case: Không có draft nào -> tạo draft mới từ course Approved
-         * (Ở đây mock đơn giản, không clone section/objective để tránh phức tạp)
+         * (Clone section/lesson/quiz/objective test riêng ở CourseDraftCloneServiceTest)
          */
         @Test
         @DisplayName("Không có draft -> tạo draft mới từ course Approved")
@@ -1431,6 +1428,7 @@ class TutorCourseServiceTest {
             assertEquals(20L, res.getId());
             assertEquals("Course 1", res.getTitle());
             verify(courseDraftRepository).save(any(CourseDraft.class));
+            verify(courseDraftCloneService).cloneCurriculum(eq(course), argThat(d -> d.getDraftID() == 20L));
         }
     }
 
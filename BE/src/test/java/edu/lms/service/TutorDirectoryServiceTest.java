@@ -0,0 +1,342 @@
+package edu.lms.service;
+
+import edu.lms.dto.response.TutorApplicationListResponse;
+import edu.lms.dto.response.TutorDirectoryPageResponse;
+import edu.lms.entity.Tutor;
+import edu.lms.entity.TutorDirectoryEntry;
+import edu.lms.entity.TutorVerification;
+import edu.lms.entity.User;
+import edu.lms.enums.TutorStatus;
+import edu.lms.enums.TutorVerificationStatus;
+import edu.lms.repository.*;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * TutorDirectoryServiceTest
+ *
+ * Cover:
+ *  - refreshTutor: ghép tutor + verification mới nhất + giá min + rating
+ *  - refreshPricing / refreshRating: chỉ cập nhật phần liên quan
+ *  - rebuildAll: số query cố định, xoá dòng của tutor không còn tồn tại
+ *  - search: filter rỗng → null, giới hạn page size, sort
+ */
+@ExtendWith(MockitoExtension.class)
+class TutorDirectoryServiceTest {
+
+    @Mock TutorDirectoryRepository tutorDirectoryRepository;
+    @Mock TutorRepository tutorRepository;
+    @Mock TutorVerificationRepository tutorVerificationRepository;
+    @Mock BookingPlanRepository bookingPlanRepository;
+    @Mock FeedbackRepository feedbackRepository;
+
+    @InjectMocks
+    TutorDirectoryService tutorDirectoryService;
+
+    private Tutor buildTutor(Long tutorId, TutorStatus status) {
+        User user = new User();
+        user.setUserID(tutorId + 1000);
+        user.setFullName("Tutor " + tutorId);
+        user.setEmail("tutor" + tutorId + "@mail.com");
+        user.setCountry("Vietnam");
+
+        return Tutor.builder()
+                .tutorID(tutorId)
+                .user(user)
+                .status(status)
+                .specialization("Old spec")
+                .teachingLanguage("English")
+                .rating(BigDecimal.ZERO)
+                .build();
+    }
+
+    private TutorVerification buildVerification(Long id, Tutor tutor, String language) {
+        return TutorVerification.builder()
+                .tutorVerificationID(id)
+                .tutor(tutor)
+                .specialization("IELTS")
+                .teachingLanguage(language)
+                .status(TutorVerificationStatus.APPROVED)
+                .submittedAt(LocalDateTime.of(2025, 1, 1, 9, 0))
+                .reviewedAt(LocalDateTime.of(2025, 1, 2, 9, 0))
+                .build();
+    }
+
+    private List<Object[]> rows(Object[]... rows) {
+        return new ArrayList<>(List.of(rows));
+    }
+
+    @Nested
+    @DisplayName("refresh")
+    class RefreshTests {
+
+        @Test
+        @DisplayName("refreshTutor -> entry có giá min, rating, verification mới nhất")
+        void refreshTutor_shouldBuildEntry() {
+            Tutor tutor = buildTutor(1L, TutorStatus.APPROVED);
+            when(tutorRepository.findById(1L)).thenReturn(Optional.of(tutor));
+            when(tutorVerificationRepository.findTopByTutorOrderBySubmittedAtDesc(tutor))
+                    .thenReturn(Optional.of(buildVerification(7L, tutor, "Japanese")));
+            when(tutorDirectoryRepository.findById(1L)).thenReturn(Optional.empty());
+            when(bookingPlanRepository.findMinActivePricePerHour(1L)).thenReturn(120.0);
+            when(feedbackRepository.aggregateRatingByTutorId(1L))
+                    .thenReturn(rows(new Object[]{1L, 4.333333, 3L}));
+
+            tutorDirectoryService.refreshTutor(1L);
+
+            ArgumentCaptor<TutorDirectoryEntry> captor = ArgumentCaptor.forClass(TutorDirectoryEntry.class);
+            verify(tutorDirectoryRepository).save(captor.capture());
+            TutorDirectoryEntry entry = captor.getValue();
+
+            assertEquals(1L, entry.getTutorId());
+            assertEquals(1001L, entry.getUserId());
+            assertEquals("Japanese", entry.getTeachingLanguage());
+            assertEquals("IELTS", entry.getSpecialization());
+            assertEquals(7L, entry.getVerificationId());
+            assertEquals(120.0, entry.getMinPricePerHour());
+            assertEquals(new BigDecimal("4.33"), entry.getBookingRating());
+            assertEquals(3L, entry.getFeedbackCount());
+            assertEquals(TutorStatus.APPROVED, entry.getStatus());
+        }
+
+        @Test
+        @DisplayName("refreshTutor, không có verification/feedback -> dùng dữ liệu tutor, rating 0")
+        void refreshTutor_noVerificationNoFeedback_shouldFallback() {
+            Tutor tutor = buildTutor(2L, TutorStatus.PENDING);
+            when(tutorRepository.findById(2L)).thenReturn(Optional.of(tutor));
+            when(tutorVerificationRepository.findTopByTutorOrderBySubmittedAtDesc(tutor)).thenReturn(Optional.empty());
+            when(tutorDirectoryRepository.findById(2L)).thenReturn(Optional.empty());
+            when(bookingPlanRepository.findMinActivePricePerHour(2L)).thenReturn(null);
+            when(feedbackRepository.aggregateRatingByTutorId(2L)).thenReturn(List.of());
+
+            tutorDirectoryService.refreshTutor(2L);
+
+            ArgumentCaptor<TutorDirectoryEntry> captor = ArgumentCaptor.forClass(TutorDirectoryEntry.class);
+            verify(tutorDirectoryRepository).save(captor.capture());
+            TutorDirectoryEntry entry = captor.getValue();
+
+            assertEquals("English", entry.getTeachingLanguage());
+            assertEquals("Old spec", entry.getSpecialization());
+            assertNull(entry.getMinPricePerHour());
+            assertNull(entry.getVerificationId());
+            assertEquals(BigDecimal.ZERO, entry.getBookingRating());
+            assertEquals(0L, entry.getFeedbackCount());
+        }
+
+        @Test
+        @DisplayName("refreshTutor, tutor đã bị xoá -> xoá dòng directory")
+        void refreshTutor_tutorGone_shouldDeleteEntry() {
+            when(tutorRepository.findById(3L)).thenReturn(Optional.empty());
+
+            tutorDirectoryService.refreshTutor(3L);
+
+            verify(tutorDirectoryRepository).deleteById(3L);
+            verify(tutorDirectoryRepository, never()).save(any());
+        }
+
+        @Test
+        @DisplayName("refreshPricing -> chỉ query giá min, không đụng feedback/verification")
+        void refreshPricing_existingEntry_shouldOnlyUpdatePrice() {
+            TutorDirectoryEntry entry = TutorDirectoryEntry.builder()
+                    .tutorId(1L).minPricePerHour(200.0).bookingRating(new BigDecimal("4.50")).build();
+            when(tutorDirectoryRepository.findById(1L)).thenReturn(Optional.of(entry));
+            when(bookingPlanRepository.findMinActivePricePerHour(1L)).thenReturn(90.0);
+
+            tutorDirectoryService.refreshPricing(1L);
+
+            assertEquals(90.0, entry.getMinPricePerHour());
+            assertEquals(new BigDecimal("4.50"), entry.getBookingRating());
+            verify(tutorDirectoryRepository).save(entry);
+            verifyNoInteractions(feedbackRepository, tutorVerificationRepository);
+        }
+
+        @Test
+        @DisplayName("refreshRating -> ghi rating đã tính sẵn, không query feedback")
+        void refreshRating_existingEntry_shouldNotQueryFeedback() {
+            TutorDirectoryEntry entry = TutorDirectoryEntry.builder().tutorId(1L).build();
+            when(tutorDirectoryRepository.findById(1L)).thenReturn(Optional.of(entry));
+
+            tutorDirectoryService.refreshRating(1L, new BigDecimal("4.25"), 4L);
+
+            assertEquals(new BigDecimal("4.25"), entry.getBookingRating());
+            assertEquals(4L, entry.getFeedbackCount());
+            verify(tutorDirectoryRepository).save(entry);
+            verifyNoInteractions(feedbackRepository);
+        }
+
+        @Test
+        @DisplayName("refreshRating, chưa có entry -> refresh toàn bộ dòng")
+        void refreshRating_missingEntry_shouldFallbackToFullRefresh() {
+            Tutor tutor = buildTutor(4L, TutorStatus.APPROVED);
+            when(tutorDirectoryRepository.findById(4L)).thenReturn(Optional.empty());
+            when(tutorRepository.findById(4L)).thenReturn(Optional.of(tutor));
+            when(tutorVerificationRepository.findTopByTutorOrderBySubmittedAtDesc(tutor)).thenReturn(Optional.empty());
+            when(feedbackRepository.aggregateRatingByTutorId(4L))
+                    .thenReturn(rows(new Object[]{4L, 5.0, 1L}));
+
+            tutorDirectoryService.refreshRating(4L, new BigDecimal("5.00"), 1L);
+
+            ArgumentCaptor<TutorDirectoryEntry> captor = ArgumentCaptor.forClass(TutorDirectoryEntry.class);
+            verify(tutorDirectoryRepository).save(captor.capture());
+            assertEquals(new BigDecimal("5.00"), captor.getValue().getBookingRating());
+            assertEquals(TutorStatus.APPROVED, captor.getValue().getStatus());
+        }
+
+        @Test
+        @DisplayName("refreshUser -> cập nhật tên/avatar/country")
+        void refreshUser_shouldCopyProfileFields() {
+            Tutor tutor = buildTutor(5L, TutorStatus.APPROVED);
+            User user = tutor.getUser();
+            user.setFullName("New Name");
+            user.setAvatarURL("http://avatar");
+            TutorDirectoryEntry entry = TutorDirectoryEntry.builder().tutorId(5L).userId(user.getUserID()).build();
+            when(tutorDirectoryRepository.findByUserId(user.getUserID())).thenReturn(Optional.of(entry));
+
+            tutorDirectoryService.refreshUser(user);
+
+            assertEquals("New Name", entry.getUserName());
+            assertEquals("http://avatar", entry.getAvatarURL());
+            assertEquals("Vietnam", entry.getCountry());
+            verify(tutorDirectoryRepository).save(entry);
+        }
+    }
+
+    @Nested
+    @DisplayName("rebuildAll")
+    class RebuildTests {
+
+        @Test
+        @DisplayName("500 tutor -> số query cố định, dữ liệu aggregate đúng từng tutor")
+        @SuppressWarnings("unchecked")
+        void rebuildAll_shouldUseGroupedQueries() {
+            List<Tutor> tutors = new ArrayList<>();
+            List<Object[]> prices = new ArrayList<>();
+            List<Object[]> ratings = new ArrayList<>();
+            for (long id = 1; id <= 500; id++) {
+                tutors.add(buildTutor(id, TutorStatus.APPROVED));
+                prices.add(new Object[]{id, 100.0 + id});
+                if (id % 2 == 0) {
+                    ratings.add(new Object[]{id, 4.0, 2L});
+                }
+            }
+            Tutor first = tutors.get(0);
+            when(tutorRepository.findAllWithUser()).thenReturn(tutors);
+            when(tutorVerificationRepository.findLatestPerTutor())
+                    .thenReturn(List.of(buildVerification(1L, first, "French"), buildVerification(2L, first, "German")));
+            when(bookingPlanRepository.findMinActivePricePerHourGroupByTutor()).thenReturn(prices);
+            when(feedbackRepository.aggregateRatingGroupByTutor()).thenReturn(ratings);
+            when(tutorDirectoryRepository.findAll()).thenReturn(List.of());
+
+            int count = tutorDirectoryService.rebuildAll();
+
+            assertEquals(500, count);
+
+            ArgumentCaptor<List<TutorDirectoryEntry>> captor = ArgumentCaptor.forClass(List.class);
+            verify(tutorDirectoryRepository).saveAll(captor.capture());
+            List<TutorDirectoryEntry> saved = captor.getValue();
+            assertEquals(500, saved.size());
+
+            TutorDirectoryEntry e1 = saved.get(0);
+            assertEquals("German", e1.getTeachingLanguage()); // trùng submittedAt -> id lớn hơn
+            assertEquals(101.0, e1.getMinPricePerHour());
+            assertEquals(BigDecimal.ZERO, e1.getBookingRating());
+
+            TutorDirectoryEntry e2 = saved.get(1);
+            assertEquals(new BigDecimal("4.00"), e2.getBookingRating());
+            assertEquals(2L, e2.getFeedbackCount());
+
+            ArgumentCaptor<Collection<Long>> idsCaptor = ArgumentCaptor.forClass(Collection.class);
+            verify(tutorDirectoryRepository).deleteAllByTutorIdNotIn(idsCaptor.capture());
+            assertEquals(500, idsCaptor.getValue().size());
+
+            // Không query theo từng tutor
+            verify(bookingPlanRepository, never()).findMinActivePricePerHour(anyLong());
+            verify(feedbackRepository, never()).aggregateRatingByTutorId(anyLong());
+            verify(tutorVerificationRepository, never()).findTopByTutorOrderBySubmittedAtDesc(any());
+        }
+
+        @Test
+        @DisplayName("Không còn tutor nào -> xoá sạch directory")
+        void rebuildAll_noTutors_shouldClearDirectory() {
+            when(tutorRepository.findAllWithUser()).thenReturn(List.of());
+            when(tutorVerificationRepository.findLatestPerTutor()).thenReturn(List.of());
+            when(bookingPlanRepository.findMinActivePricePerHourGroupByTutor()).thenReturn(List.of());
+            when(feedbackRepository.aggregateRatingGroupByTutor()).thenReturn(List.of());
+            when(tutorDirectoryRepository.findAll()).thenReturn(List.of());
+
+            assertEquals(0, tutorDirectoryService.rebuildAll());
+
+            verify(tutorDirectoryRepository).deleteAllInBatch();
+            verify(tutorDirectoryRepository, never()).deleteAllByTutorIdNotIn(any());
+        }
+    }
+
+    @Nested
+    @DisplayName("read")
+    class ReadTests {
+
+        @Test
+        @DisplayName("search: filter rỗng -> null, size > 50 -> 50, sort price_asc")
+        void search_shouldNormalizeFilters() {
+            TutorDirectoryEntry entry = TutorDirectoryEntry.builder()
+                    .tutorId(1L).userId(1001L).userName("Tutor 1")
+                    .teachingLanguage("English").minPricePerHour(100.0)
+                    .bookingRating(new BigDecimal("4.50")).status(TutorStatus.APPROVED)
+                    .build();
+            when(tutorDirectoryRepository.search(eq(TutorStatus.APPROVED), eq("English"), isNull(),
+                    eq(50.0), isNull(), isNull(), any(Pageable.class)))
+                    .thenAnswer(inv -> new PageImpl<>(List.of(entry), inv.getArgument(6), 1));
+
+            TutorDirectoryPageResponse page = tutorDirectoryService.search(
+                    " English ", "  ", 50.0, null, null, "price_asc", 0, 500);
+
+            assertEquals(1, page.getItems().size());
+            assertEquals(50, page.getSize());
+            assertEquals(1L, page.getTotalElements());
+            TutorApplicationListResponse item = page.getItems().get(0);
+            assertEquals(100.0, item.getPricePerHour());
+            assertEquals(new BigDecimal("4.50"), item.getRating());
+            assertEquals("APPROVED", item.getStatus());
+
+            ArgumentCaptor<Pageable> pageable = ArgumentCaptor.forClass(Pageable.class);
+            verify(tutorDirectoryRepository).search(any(), any(), any(), any(), any(), any(), pageable.capture());
+            Sort.Order order = pageable.getValue().getSort().getOrderFor("minPricePerHour");
+            assertNotNull(order);
+            assertTrue(order.isAscending());
+        }
+
+        @Test
+        @DisplayName("listByStatus(null) -> đọc toàn bộ directory")
+        void listByStatus_null_shouldReadAll() {
+            when(tutorDirectoryRepository.findAllByOrderByTutorIdAsc()).thenReturn(List.of(
+                    TutorDirectoryEntry.builder().tutorId(1L).status(TutorStatus.PENDING).build(),
+                    TutorDirectoryEntry.builder().tutorId(2L).status(TutorStatus.APPROVED).build()));
+
+            List<TutorApplicationListResponse> result = tutorDirectoryService.listByStatus(null);
+
+            assertEquals(2, result.size());
+            assertEquals("PENDING", result.get(0).getStatus());
+            verify(tutorDirectoryRepository, never()).findAllByStatusOrderByTutorIdAsc(any());
+        }
+    }
+}
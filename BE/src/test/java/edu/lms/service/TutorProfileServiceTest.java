@@ -0,0 +1,259 @@
+package edu.lms.service;
+
+import edu.lms.dto.response.TutorCourseResponse;
+import edu.lms.dto.response.TutorDetailResponse;
+import edu.lms.entity.*;
+import edu.lms.enums.CourseStatus;
+import edu.lms.enums.TutorStatus;
+import edu.lms.enums.TutorVerificationStatus;
+import edu.lms.exception.TutorNotFoundException;
+import edu.lms.mapper.TutorCourseMapper;
+import edu.lms.repository.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * TutorProfileServiceTest
+ *
+ * Cover:
+ *  - getProfile: số query cố định dù tutor có nhiều course / feedback, ghép rating + learner theo course
+ *  - cache: lần 2 không query, trang feedback khác chỉ query feedback, evict / evictByUserId load lại
+ *  - tutor chưa approved → TutorNotFoundException, không cache
+ */
+@ExtendWith(MockitoExtension.class)
+class TutorProfileServiceTest {
+
+    @Mock TutorRepository tutorRepository;
+    @Mock CourseRepository courseRepository;
+    @Mock CourseReviewRepository courseReviewRepository;
+    @Mock EnrollmentRepository enrollmentRepository;
+    @Mock BookingPlanRepository bookingPlanRepository;
+    @Mock FeedbackRepository feedbackRepository;
+    @Mock TutorCertificateRepository tutorCertificateRepository;
+    @Mock TutorCourseMapper tutorCourseMapper;
+
+    TutorProfileService tutorProfileService;
+
+    @BeforeEach
+    void setUp() {
+        tutorProfileService = new TutorProfileService(
+                tutorRepository, courseRepository, courseReviewRepository, enrollmentRepository,
+                bookingPlanRepository, feedbackRepository, tutorCertificateRepository, tutorCourseMapper,
+                300);
+    }
+
+    private Tutor buildTutor(Long tutorId, TutorStatus status) {
+        User user = new User();
+        user.setUserID(tutorId + 1000);
+        user.setFullName("Tutor " + tutorId);
+        user.setEmail("tutor" + tutorId + "@mail.com");
+        user.setCountry("Vietnam");
+
+        return Tutor.builder()
+                .tutorID(tutorId)
+                .user(user)
+                .status(status)
+                .specialization("IELTS")
+                .teachingLanguage("English")
+                .rating(new BigDecimal("4.50"))
+                .build();
+    }
+
+    private Course buildCourse(Long id) {
+        Course c = new Course();
+        c.setCourseID(id);
+        c.setTitle("Course " + id);
+        c.setStatus(CourseStatus.Approved);
+        return c;
+    }
+
+    private Feedback buildFeedback(Long id) {
+        User learner = new User();
+        learner.setFullName("Learner " + id);
+        return Feedback.builder()
+                .feedbackID(id)
+                .user(learner)
+                .payment(Payment.builder().paidAt(LocalDateTime.of(2025, 1, 1, 9, 0).plusDays(id)).build())
+                .rating(new BigDecimal("5.0"))
+                .comment("Good")
+                .build();
+    }
+
+    private List<Object[]> rows(Object[]... rows) {
+        return new ArrayList<>(List.of(rows));
+    }
+
+    // Tutor 1: 20 course, 200 feedback, 2 chứng chỉ
+    private void stubProfile(Tutor tutor) {
+        Long tutorId = tutor.getTutorID();
+        List<Course> courses = IntStream.rangeClosed(1, 20).mapToObj(i -> buildCourse((long) i)).toList();
+
+        when(tutorRepository.findByIdWithUser(tutorId)).thenReturn(Optional.of(tutor));
+        when(courseRepository.findByTutorIdAndStatusWithCategory(tutorId, CourseStatus.Approved)).thenReturn(courses);
+        when(tutorCourseMapper.toTutorCourseResponse(any(Course.class))).thenAnswer(inv -> {
+            Course c = inv.getArgument(0);
+            return TutorCourseResponse.builder().id(c.getCourseID()).title(c.getTitle()).build();
+        });
+        when(courseReviewRepository.aggregateRatingByTutorCourses(tutorId, CourseStatus.Approved))
+                .thenReturn(rows(new Object[]{1L, 4.25, 4L}));
+        when(enrollmentRepository.countByTutorCoursesGroupByCourse(tutorId, CourseStatus.Approved))
+                .thenReturn(rows(new Object[]{1L, 12L}, new Object[]{2L, 3L}));
+        when(bookingPlanRepository.findMinActivePricePerHour(tutorId)).thenReturn(150000.0);
+        when(tutorCertificateRepository.findByTutorIdAndVerificationStatus(tutorId, TutorVerificationStatus.APPROVED))
+                .thenReturn(List.of(
+                        TutorCertificate.builder().certificateId(1L).certificateName("IELTS 8.0").documentUrl("a").build(),
+                        TutorCertificate.builder().certificateId(2L).certificateName("TESOL").documentUrl("b").build()));
+        when(feedbackRepository.findPageByTutorId(eq(tutorId), any(Pageable.class))).thenAnswer(inv -> {
+            Pageable pageable = inv.getArgument(1);
+            List<Feedback> content = IntStream.range(0, pageable.getPageSize())
+                    .mapToObj(i -> buildFeedback(pageable.getOffset() + i + 1))
+                    .toList();
+            return new PageImpl<>(content, pageable, 200);
+        });
+    }
+
+    @Nested
+    @DisplayName("getProfile")
+    class GetProfileTests {
+
+        @Test
+        @DisplayName("20 course + 200 feedback -> mỗi repository gọi đúng 1 lần, stats ghép theo course")
+        void getProfile_shouldUseFixedQueries() {
+            stubProfile(buildTutor(1L, TutorStatus.APPROVED));
+
+            TutorDetailResponse res = tutorProfileService.getProfile(1L, 0, TutorProfileService.DEFAULT_FEEDBACK_SIZE);
+
+            assertEquals(20, res.getCourses().size());
+            TutorCourseResponse first = res.getCourses().get(0);
+            assertEquals(4.3, first.getAvgRating());
+            assertEquals(4, first.getTotalRatings());
+            assertEquals(12L, first.getLearnerCount());
+            TutorCourseResponse last = res.getCourses().get(19);
+            assertEquals(0.0, last.getAvgRating());
+            assertEquals(0, last.getTotalRatings());
+            assertEquals(0L, last.getLearnerCount());
+
+            assertEquals(150000.0, res.getPricePerHour());
+            assertEquals(2, res.getCertificates().size());
+            assertEquals(10, res.getFeedbacks().size());
+            assertEquals(200L, res.getFeedbackTotal());
+            assertEquals("Tutor 1", res.getUserName());
+
+            verify(tutorRepository, times(1)).findByIdWithUser(1L);
+            verify(courseRepository, times(1)).findByTutorIdAndStatusWithCategory(1L, CourseStatus.Approved);
+            verify(courseReviewRepository, times(1)).aggregateRatingByTutorCourses(1L, CourseStatus.Approved);
+            verify(enrollmentRepository, times(1)).countByTutorCoursesGroupByCourse(1L, CourseStatus.Approved);
+            verify(bookingPlanRepository, times(1)).findMinActivePricePerHour(1L);
+            verify(tutorCertificateRepository, times(1))
+                    .findByTutorIdAndVerificationStatus(1L, TutorVerificationStatus.APPROVED);
+            verify(feedbackRepository, times(1)).findPageByTutorId(1L, PageRequest.of(0, 10));
+            verifyNoMoreInteractions(courseReviewRepository, enrollmentRepository, feedbackRepository);
+        }
+
+        @Test
+        @DisplayName("Tutor chưa approved -> TutorNotFoundException, không cache")
+        void getProfile_notApproved_shouldThrow() {
+            when(tutorRepository.findByIdWithUser(2L)).thenReturn(Optional.of(buildTutor(2L, TutorStatus.SUSPENDED)));
+
+            assertThrows(TutorNotFoundException.class, () -> tutorProfileService.getProfile(2L, 0, 10));
+            assertEquals(0, tutorProfileService.cacheSize());
+            verifyNoInteractions(courseRepository, feedbackRepository);
+        }
+
+        @Test
+        @DisplayName("Tutor không tồn tại -> TutorNotFoundException")
+        void getProfile_notFound_shouldThrow() {
+            when(tutorRepository.findByIdWithUser(3L)).thenReturn(Optional.empty());
+
+            assertThrows(TutorNotFoundException.class, () -> tutorProfileService.getProfile(3L, 0, 10));
+        }
+    }
+
+    @Nested
+    @DisplayName("cache")
+    class CacheTests {
+
+        @Test
+        @DisplayName("Lần 2 trả từ cache, không query")
+        void getProfile_secondCall_shouldHitCache() {
+            stubProfile(buildTutor(1L, TutorStatus.APPROVED));
+
+            tutorProfileService.getProfile(1L, 0, 10);
+            TutorDetailResponse again = tutorProfileService.getProfile(1L, 0, 10);
+
+            assertEquals(10, again.getFeedbacks().size());
+            verify(tutorRepository, times(1)).findByIdWithUser(1L);
+            verify(feedbackRepository, times(1)).findPageByTutorId(eq(1L), any(Pageable.class));
+        }
+
+        @Test
+        @DisplayName("Trang feedback khác -> chỉ query feedback, phần hồ sơ lấy từ cache")
+        void getProfile_otherPage_shouldQueryFeedbackOnly() {
+            stubProfile(buildTutor(1L, TutorStatus.APPROVED));
+            tutorProfileService.getProfile(1L, 0, 10);
+
+            TutorDetailResponse page3 = tutorProfileService.getProfile(1L, 3, 20);
+
+            assertEquals(20, page3.getFeedbacks().size());
+            assertEquals(61L, page3.getFeedbacks().get(0).getFeedbackID());
+            assertEquals(3, page3.getFeedbackPage());
+            verify(tutorRepository, times(1)).findByIdWithUser(1L);
+            verify(feedbackRepository).findPageByTutorId(1L, PageRequest.of(3, 20));
+        }
+
+        @Test
+        @DisplayName("feedbackSize quá lớn -> giới hạn 50")
+        void getProfile_hugeSize_shouldBeCapped() {
+            stubProfile(buildTutor(1L, TutorStatus.APPROVED));
+
+            TutorDetailResponse res = tutorProfileService.getProfile(1L, 0, 10_000);
+
+            assertEquals(50, res.getFeedbackSize());
+            verify(feedbackRepository).findPageByTutorId(1L, PageRequest.of(0, 50));
+        }
+
+        @Test
+        @DisplayName("evict -> lần sau load lại từ DB")
+        void evict_shouldReload() {
+            stubProfile(buildTutor(1L, TutorStatus.APPROVED));
+            tutorProfileService.getProfile(1L, 0, 10);
+
+            tutorProfileService.evict(1L);
+            tutorProfileService.getProfile(1L, 0, 10);
+
+            verify(tutorRepository, times(2)).findByIdWithUser(1L);
+        }
+
+        @Test
+        @DisplayName("evictByUserId -> xoá cache của tutor có userId đó")
+        void evictByUserId_shouldRemoveMatchingTutor() {
+            stubProfile(buildTutor(1L, TutorStatus.APPROVED));
+            tutorProfileService.getProfile(1L, 0, 10);
+
+            tutorProfileService.evictByUserId(999L);
+            assertEquals(1, tutorProfileService.cacheSize());
+
+            tutorProfileService.evictByUserId(1001L);
+            assertEquals(0, tutorProfileService.cacheSize());
+        }
+    }
+}
@@ -58,6 +58,8 @@ class TutorQuizServiceTest {
     QuizQuestionRepository quizQuestionRepository;
     @Mock
     QuizQuestionDraftRepository quizQuestionDraftRepository;
+    @Mock
+    QuizDefinitionCache quizDefinitionCache;
 
     @InjectMocks
     TutorQuizService tutorQuizService;
@@ -988,6 +990,8 @@ class TutorQuizServiceTest {
             tutorQuizService.deleteLiveQuestion(email, 10L);
 
             verify(quizQuestionRepository).delete(q);
+            // learner không còn thấy câu hỏi đã xoá
+            verify(quizDefinitionCache).evict(q.getLesson().getLessonID());
         }
     }
 
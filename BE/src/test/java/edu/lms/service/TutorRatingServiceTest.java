@@ -0,0 +1,253 @@
+package edu.lms.service;
+
+import edu.lms.entity.Tutor;
+import edu.lms.entity.TutorRatingStats;
+import edu.lms.exception.AppException;
+import edu.lms.repository.FeedbackRepository;
+import edu.lms.repository.TutorRatingStatsRepository;
+import edu.lms.repository.TutorRepository;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * TutorRatingServiceTest
+ *
+ * Cover:
+ *  - onFeedbackCreated / Updated / Deleted: cộng trừ delta, không query lại feedback
+ *  - chưa có stats -> INSERT IGNORE + lock rồi tính lại từ aggregate; request khác tạo trước -> cộng delta
+ *  - reconcileAll: lock toàn bộ stats, sửa dòng lệch, bỏ qua dòng đúng
+ */
+@ExtendWith(MockitoExtension.class)
+class TutorRatingServiceTest {
+
+    @Mock TutorRepository tutorRepository;
+    @Mock FeedbackRepository feedbackRepository;
+    @Mock TutorRatingStatsRepository tutorRatingStatsRepository;
+    @Mock TutorDirectoryService tutorDirectoryService;
+    @Mock TutorProfileService tutorProfileService;
+
+    @InjectMocks
+    TutorRatingService tutorRatingService;
+
+    private Tutor buildTutor(Long tutorId) {
+        return Tutor.builder().tutorID(tutorId).rating(BigDecimal.ZERO).build();
+    }
+
+    // 10.000 feedback: 4000 x 5★, 6000 x 4★ → sum = 44000
+    private TutorRatingStats popularTutorStats(Long tutorId) {
+        return TutorRatingStats.builder()
+                .tutorId(tutorId)
+                .ratingSum(new BigDecimal("44000.0"))
+                .ratingCount(10_000L)
+                .fourStar(6_000L)
+                .fiveStar(4_000L)
+                .build();
+    }
+
+    private List<Object[]> rows(Object[]... rows) {
+        return new ArrayList<>(List.of(rows));
+    }
+
+    @Nested
+    @DisplayName("delta")
+    class DeltaTests {
+
+        @Test
+        @DisplayName("Tutor có 10k feedback, thêm 1 feedback 1★ -> cập nhật delta, không query feedback")
+        void onFeedbackCreated_shouldApplyDelta() {
+            Tutor tutor = buildTutor(1L);
+            TutorRatingStats stats = popularTutorStats(1L);
+            when(tutorRatingStatsRepository.existsById(1L)).thenReturn(true);
+            when(tutorRatingStatsRepository.findByIdForUpdate(1L)).thenReturn(Optional.of(stats));
+            when(tutorRepository.findById(1L)).thenReturn(Optional.of(tutor));
+
+            tutorRatingService.onFeedbackCreated(1L, new BigDecimal("1.0"));
+
+            assertEquals(0, new BigDecimal("44001.0").compareTo(stats.getRatingSum()));
+            assertEquals(10_001L, stats.getRatingCount());
+            assertEquals(1L, stats.getOneStar());
+            assertEquals(new BigDecimal("4.40"), tutor.getRating());
+
+            verify(tutorRatingStatsRepository).save(stats);
+            verify(tutorDirectoryService).refreshRating(1L, new BigDecimal("4.40"), 10_001L);
+            verifyNoInteractions(feedbackRepository);
+        }
+
+        @Test
+        @DisplayName("Sửa 4.5 -> 2.0: chuyển bucket 4★ sang 2★")
+        void onFeedbackUpdated_shouldMoveHistogramBucket() {
+            Tutor tutor = buildTutor(1L);
+            TutorRatingStats stats = popularTutorStats(1L);
+            when(tutorRatingStatsRepository.existsById(1L)).thenReturn(true);
+            when(tutorRatingStatsRepository.findByIdForUpdate(1L)).thenReturn(Optional.of(stats));
+            when(tutorRepository.findById(1L)).thenReturn(Optional.of(tutor));
+
+            tutorRatingService.onFeedbackUpdated(1L, new BigDecimal("4.5"), new BigDecimal("2.0"));
+
+            assertEquals(0, new BigDecimal("43997.5").compareTo(stats.getRatingSum()));
+            assertEquals(10_000L, stats.getRatingCount());
+            assertEquals(5_999L, stats.getFourStar());
+            assertEquals(1L, stats.getTwoStar());
+            verifyNoInteractions(feedbackRepository);
+        }
+
+        @Test
+        @DisplayName("Sửa comment, rating giữ nguyên -> không đụng DB")
+        void onFeedbackUpdated_sameRating_shouldSkip() {
+            tutorRatingService.onFeedbackUpdated(1L, new BigDecimal("4.0"), new BigDecimal("4.00"));
+
+            verifyNoInteractions(tutorRatingStatsRepository, tutorRepository, feedbackRepository, tutorDirectoryService);
+        }
+
+        @Test
+        @DisplayName("Xoá feedback cuối cùng -> rating về 0")
+        void onFeedbackDeleted_lastFeedback_shouldResetToZero() {
+            Tutor tutor = buildTutor(1L);
+            tutor.setRating(new BigDecimal("3.50"));
+            TutorRatingStats stats = TutorRatingStats.builder()
+                    .tutorId(1L).ratingSum(new BigDecimal("3.5")).ratingCount(1L).threeStar(1L).build();
+            when(tutorRatingStatsRepository.existsById(1L)).thenReturn(true);
+            when(tutorRatingStatsRepository.findByIdForUpdate(1L)).thenReturn(Optional.of(stats));
+            when(tutorRepository.findById(1L)).thenReturn(Optional.of(tutor));
+
+            tutorRatingService.onFeedbackDeleted(1L, new BigDecimal("3.5"));
+
+            assertEquals(0L, stats.getRatingCount());
+            assertEquals(0L, stats.getThreeStar());
+            assertEquals(BigDecimal.ZERO, tutor.getRating());
+            verify(tutorDirectoryService).refreshRating(1L, BigDecimal.ZERO, 0L);
+        }
+
+        @Test
+        @DisplayName("Chưa có stats -> INSERT IGNORE dòng rỗng, lock rồi tính lại bằng 1 query aggregate")
+        void onFeedbackCreated_noStats_shouldRecalculate() {
+            Tutor tutor = buildTutor(2L);
+            when(tutorRatingStatsRepository.existsById(2L)).thenReturn(false);
+            when(tutorRatingStatsRepository.insertIfAbsent(2L)).thenReturn(1);
+            when(tutorRatingStatsRepository.findByIdForUpdate(2L))
+                    .thenReturn(Optional.of(TutorRatingStats.builder().tutorId(2L).build()));
+            when(feedbackRepository.aggregateRatingStatsByTutorId(2L))
+                    .thenReturn(rows(new Object[]{2L, new BigDecimal("9.0"), 2L, 0L, 0L, 0L, 1L, 1L}));
+            when(tutorRepository.findById(2L)).thenReturn(Optional.of(tutor));
+
+            tutorRatingService.onFeedbackCreated(2L, new BigDecimal("5.0"));
+
+            ArgumentCaptor<TutorRatingStats> captor = ArgumentCaptor.forClass(TutorRatingStats.class);
+            verify(tutorRatingStatsRepository).save(captor.capture());
+            TutorRatingStats saved = captor.getValue();
+            assertEquals(2L, saved.getRatingCount());
+            assertEquals(1L, saved.getFourStar());
+            assertEquals(1L, saved.getFiveStar());
+            assertEquals(new BigDecimal("4.50"), tutor.getRating());
+        }
+
+        @Test
+        @DisplayName("Request khác vừa tạo stats (INSERT IGNORE trả 0) -> chờ lock rồi cộng delta, không lỗi trùng khoá")
+        void onFeedbackCreated_concurrentFirstFeedback_shouldApplyDelta() {
+            Tutor tutor = buildTutor(2L);
+            // dòng do request kia tạo từ aggregate của nó (chưa thấy feedback của request này)
+            TutorRatingStats stats = TutorRatingStats.builder()
+                    .tutorId(2L).ratingSum(new BigDecimal("4.0")).ratingCount(1L).fourStar(1L).build();
+            when(tutorRatingStatsRepository.existsById(2L)).thenReturn(false);
+            when(tutorRatingStatsRepository.insertIfAbsent(2L)).thenReturn(0);
+            when(tutorRatingStatsRepository.findByIdForUpdate(2L)).thenReturn(Optional.of(stats));
+            when(tutorRepository.findById(2L)).thenReturn(Optional.of(tutor));
+
+            tutorRatingService.onFeedbackCreated(2L, new BigDecimal("5.0"));
+
+            assertEquals(2L, stats.getRatingCount());
+            assertEquals(1L, stats.getFiveStar());
+            assertEquals(new BigDecimal("4.50"), tutor.getRating());
+            verify(tutorRatingStatsRepository).save(stats);
+            verifyNoInteractions(feedbackRepository);
+        }
+
+        @Test
+        @DisplayName("Tutor không tồn tại -> TUTOR_NOT_FOUND")
+        void onFeedbackCreated_tutorMissing_shouldThrow() {
+            when(tutorRatingStatsRepository.existsById(3L)).thenReturn(true);
+            when(tutorRatingStatsRepository.findByIdForUpdate(3L))
+                    .thenReturn(Optional.of(TutorRatingStats.builder().tutorId(3L).build()));
+            when(tutorRepository.findById(3L)).thenReturn(Optional.empty());
+
+            assertThrows(AppException.class,
+                    () -> tutorRatingService.onFeedbackCreated(3L, new BigDecimal("5.0")));
+        }
+    }
+
+    @Nested
+    @DisplayName("reconcileAll")
+    class ReconcileTests {
+
+        @Test
+        @DisplayName("Sửa tutor bị lệch, bỏ qua tutor đúng, tạo stats cho tutor chưa có")
+        @SuppressWarnings("unchecked")
+        void reconcileAll_shouldFixOnlyDrifted() {
+            // tutor 1: đúng; tutor 2: lệch count; tutor 3: chưa có stats
+            TutorRatingStats ok = TutorRatingStats.builder()
+                    .tutorId(1L).ratingSum(new BigDecimal("5.0")).ratingCount(1L).fiveStar(1L).build();
+            TutorRatingStats drifted = TutorRatingStats.builder()
+                    .tutorId(2L).ratingSum(new BigDecimal("8.0")).ratingCount(3L).fourStar(3L).build();
+
+            when(feedbackRepository.aggregateRatingStatsGroupByTutor()).thenReturn(rows(
+                    new Object[]{1L, new BigDecimal("5.0"), 1L, 0L, 0L, 0L, 0L, 1L},
+                    new Object[]{2L, new BigDecimal("8.0"), 2L, 0L, 0L, 0L, 2L, 0L},
+                    new Object[]{3L, new BigDecimal("3.0"), 1L, 0L, 0L, 1L, 0L, 0L}));
+            when(tutorRatingStatsRepository.findAllForUpdate()).thenReturn(List.of(ok, drifted));
+            when(tutorRatingStatsRepository.insertIfAbsent(3L)).thenReturn(1);
+
+            Tutor t2 = buildTutor(2L);
+            Tutor t3 = buildTutor(3L);
+            when(tutorRepository.findAllById(any())).thenReturn(List.of(t2, t3));
+
+            int fixed = tutorRatingService.reconcileAll();
+
+            assertEquals(2, fixed);
+            assertEquals(2L, drifted.getRatingCount());
+            assertEquals(2L, drifted.getFourStar());
+            assertEquals(new BigDecimal("4.00"), t2.getRating());
+            assertEquals(new BigDecimal("3.00"), t3.getRating());
+
+            ArgumentCaptor<List<TutorRatingStats>> captor = ArgumentCaptor.forClass(List.class);
+            verify(tutorRatingStatsRepository).saveAll(captor.capture());
+            assertEquals(2, captor.getValue().size());
+            assertFalse(captor.getValue().contains(ok));
+
+            verify(tutorDirectoryService).refreshRating(2L, new BigDecimal("4.00"), 2L);
+            verify(tutorDirectoryService).refreshRating(3L, new BigDecimal("3.00"), 1L);
+            verify(tutorDirectoryService, never()).refreshRating(eq(1L), any(), anyLong());
+            verify(tutorProfileService).evict(2L);
+            verify(tutorProfileService).evict(3L);
+        }
+
+        @Test
+        @DisplayName("Không có lệch -> không ghi gì")
+        void reconcileAll_noDrift_shouldNotWrite() {
+            TutorRatingStats ok = TutorRatingStats.builder()
+                    .tutorId(1L).ratingSum(new BigDecimal("5.0")).ratingCount(1L).fiveStar(1L).build();
+            when(feedbackRepository.aggregateRatingStatsGroupByTutor()).thenReturn(rows(
+                    new Object[]{1L, new BigDecimal("5.0"), 1L, 0L, 0L, 0L, 0L, 1L}));
+            when(tutorRatingStatsRepository.findAllForUpdate()).thenReturn(List.of(ok));
+
+            assertEquals(0, tutorRatingService.reconcileAll());
+
+            verify(tutorRatingStatsRepository, never()).saveAll(any());
+            verifyNoInteractions(tutorRepository, tutorDirectoryService);
+        }
+    }
+}
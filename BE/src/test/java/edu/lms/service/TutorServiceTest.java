@@ -82,6 +82,12 @@ class TutorServiceTest {
     @Mock
     TutorBookingPlanService tutorBookingPlanService;
 
+    @Mock
+    TutorDirectoryService tutorDirectoryService;
+
+    @Mock
+    TutorProfileService tutorProfileService;
+
     @InjectMocks
     TutorServiceImpl tutorService;
 
@@ -621,6 +627,7 @@ class TutorServiceTest {
             verify(tutorVerificationRepository).save(verification);
             verify(tutorRepository).save(tutor);
             verify(userRepository).save(learner);
+            verify(tutorDirectoryService).refreshTutor(tutor.getTutorID());
         }
     }
 
@@ -791,29 +798,24 @@ class TutorServiceTest {
     @DisplayName("TutorService.getAllTutors")
     class GetAllTutorsTests {
 
-        private Tutor buildTutorWithUser(Long tutorId, Long userId, TutorStatus status,
-                                         String specialization, String teachingLang) {
-            User user = new User();
-            user.setUserID(userId);
-            user.setFullName("User " + userId);
-            user.setEmail("user" + userId + "@mail.com");
-
-            Tutor tutor = new Tutor();
-            tutor.setTutorID(tutorId);
-            tutor.setUser(user);
-            tutor.setStatus(status);
-            tutor.setSpecialization(specialization);
-            tutor.setTeachingLanguage(teachingLang);
-            tutor.setRating(BigDecimal.ZERO);
-            tutor.setExperience((short) 0);
-            return tutor;
+        private TutorApplicationListResponse buildDirectoryRow(Long tutorId, TutorStatus status,
+                                                               String specialization, String teachingLang) {
+            return TutorApplicationListResponse.builder()
+                    .tutorId(tutorId)
+                    .userId(tutorId - 100)
+                    .userName("User " + (tutorId - 100))
+                    .specialization(specialization)
+                    .teachingLanguage(teachingLang)
+                    .rating(BigDecimal.ZERO)
+                    .status(status.name())
+                    .build();
         }
 
         /**
          * UTCID01 - getAllTutors
          * Type: A (theo bảng là A vì có nhiều điều kiện, nhưng logic là Normal)
          * Precondition:
-         *  - DB có 3 tutor:
+         *  - Directory có 3 tutor:
          *      + ID=101, status=PENDING
          *      + ID=102, status=APPROVED
          *      + ID=103, status=SUSPENDED
@@ -821,23 +823,15 @@ class TutorServiceTest {
          * Input:
          *  - status = null
          * Expected:
-         *  - Trả về list size = 3 (101,102,103)
+         *  - Trả về list size = 3 (101,102,103), không query từng tutor
          */
         @Test
         @DisplayName("UTCID01 - (Spec ghi A) status=null -> trả về tất cả tutor")
         void getAllTutors_statusNull_shouldReturnAll() {
-            Tutor t1 = buildTutorWithUser(101L, 1L, TutorStatus.PENDING, "Math", "English");
-            Tutor t2 = buildTutorWithUser(102L, 2L, TutorStatus.APPROVED, "Physics", "Vietnamese");
-            Tutor t3 = buildTutorWithUser(103L, 3L, TutorStatus.SUSPENDED, "Chemistry", "Japanese");
-
-            when(tutorRepository.findAll()).thenReturn(List.of(t1, t2, t3));
-            // Luôn trả Optional.empty cho verification để đơn giản
-            when(tutorVerificationRepository.findTopByTutorOrderBySubmittedAtDesc(any(Tutor.class)))
-                    .thenReturn(Optional.empty());
-            when(bookingPlanRepository.findByTutorID(anyLong()))
-                    .thenReturn(Collections.emptyList());
-            when(feedbackRepository.findByPayment_TutorId(anyLong()))
-                    .thenReturn(Collections.emptyList());
+            when(tutorDirectoryService.listByStatus(null)).thenReturn(List.of(
+                    buildDirectoryRow(101L, TutorStatus.PENDING, "Math", "English"),
+                    buildDirectoryRow(102L, TutorStatus.APPROVED, "Physics", "Vietnamese"),
+                    buildDirectoryRow(103L, TutorStatus.SUSPENDED, "Chemistry", "Japanese")));
 
             List<TutorApplicationListResponse> result = tutorService.getAllTutors(null);
 
@@ -847,13 +841,13 @@ class TutorServiceTest {
             assertTrue(ids.contains(101L));
             assertTrue(ids.contains(102L));
             assertTrue(ids.contains(103L));
+
+            verifyNoInteractions(tutorVerificationRepository, bookingPlanRepository, feedbackRepository);
         }
 
         /**
          * UTCID02 - getAllTutors
          * Type: A (spec), nhưng logic là Normal filter PENDING
-         * Precondition:
-         *  - Có tutor 101 (PENDING), 102 (APPROVED), 103 (SUSPENDED)
          * Input:
          *  - status = "PENDING"
          * Expected:
@@ -862,16 +856,8 @@ class TutorServiceTest {
         @Test
         @DisplayName("UTCID02 - Filter PENDING -> chỉ trả tutor PENDING")
         void getAllTutors_statusPending_shouldReturnOnlyPending() {
-            Tutor t1 = buildTutorWithUser(101L, 1L, TutorStatus.PENDING, "Math", "English");
-
-            when(tutorRepository.findAllByStatus(TutorStatus.PENDING))
-                    .thenReturn(List.of(t1));
-            when(tutorVerificationRepository.findTopByTutorOrderBySubmittedAtDesc(any(Tutor.class)))
-                    .thenReturn(Optional.empty());
-            when(bookingPlanRepository.findByTutorID(anyLong()))
-                    .thenReturn(Collections.emptyList());
-            when(feedbackRepository.findByPayment_TutorId(anyLong()))
-                    .thenReturn(Collections.emptyList());
+            when(tutorDirectoryService.listByStatus(TutorStatus.PENDING))
+                    .thenReturn(List.of(buildDirectoryRow(101L, TutorStatus.PENDING, "Math", "English")));
 
             List<TutorApplicationListResponse> result = tutorService.getAllTutors("PENDING");
 
@@ -882,8 +868,6 @@ class TutorServiceTest {
         /**
          * UTCID03 - getAllTutors
          * Type: N
-         * Precondition:
-         *  - Có tutor 102 (APPROVED)
          * Input:
          *  - status = "approved" (lowercase)
          * Expected:
@@ -892,16 +876,8 @@ class TutorServiceTest {
         @Test
         @DisplayName("UTCID03 - N: status=\"approved\" (lowercase) -> filter APPROVED")
         void getAllTutors_statusApprovedLowercase_shouldWork() {
-            Tutor t2 = buildTutorWithUser(102L, 2L, TutorStatus.APPROVED, "Physics", "Vietnamese");
-
-            when(tutorRepository.findAllByStatus(TutorStatus.APPROVED))
-                    .thenReturn(List.of(t2));
-            when(tutorVerificationRepository.findTopByTutorOrderBySubmittedAtDesc(any(Tutor.class)))
-                    .thenReturn(Optional.empty());
-            when(bookingPlanRepository.findByTutorID(anyLong()))
-                    .thenReturn(Collections.emptyList());
-            when(feedbackRepository.findByPayment_TutorId(anyLong()))
-                    .thenReturn(Collections.emptyList());
+            when(tutorDirectoryService.listByStatus(TutorStatus.APPROVED))
+                    .thenReturn(List.of(buildDirectoryRow(102L, TutorStatus.APPROVED, "Physics", "Vietnamese")));
 
             List<TutorApplicationListResponse> result = tutorService.getAllTutors("approved");
 
@@ -912,8 +888,6 @@ class TutorServiceTest {
         /**
          * UTCID04 - getAllTutors
          * Type: N
-         * Precondition:
-         *  - Có tutor 103 (SUSPENDED)
          * Input:
          *  - status = "SUSPENDED"
          * Expected:
@@ -922,16 +896,8 @@ class TutorServiceTest {
         @Test
         @DisplayName("UTCID04 - N: status=SUSPENDED -> chỉ trả tutor SUSPENDED")
         void getAllTutors_statusSuspended_shouldReturnSuspended() {
-            Tutor t3 = buildTutorWithUser(103L, 3L, TutorStatus.SUSPENDED, "Chemistry", "Japanese");
-
-            when(tutorRepository.findAllByStatus(TutorStatus.SUSPENDED))
-                    .thenReturn(List.of(t3));
-            when(tutorVerificationRepository.findTopByTutorOrderBySubmittedAtDesc(any(Tutor.class)))
-                    .thenReturn(Optional.empty());
-            when(bookingPlanRepository.findByTutorID(anyLong()))
-                    .thenReturn(Collections.emptyList());
-            when(feedbackRepository.findByPayment_TutorId(anyLong()))
-                    .thenReturn(Collections.emptyList());
+            when(tutorDirectoryService.listByStatus(TutorStatus.SUSPENDED))
+                    .thenReturn(List.of(buildDirectoryRow(103L, TutorStatus.SUSPENDED, "Chemistry", "Japanese")));
 
             List<TutorApplicationListResponse> result = tutorService.getAllTutors("SUSPENDED");
 
@@ -942,9 +908,6 @@ class TutorServiceTest {
         /**
          * UTCID05 - getAllTutors
          * Type: N
-         * Precondition:
-         *  - status = "" (empty string)
-         *  - Có 3 tutor trong DB
          * Input:
          *  - status = ""
          * Expected:
@@ -953,17 +916,10 @@ class TutorServiceTest {
         @Test
         @DisplayName("UTCID05 - N: status=\"\" (empty) -> trả về tất cả tutor")
         void getAllTutors_statusEmpty_shouldReturnAll() {
-            Tutor t1 = buildTutorWithUser(101L, 1L, TutorStatus.PENDING, "Math", "English");
-            Tutor t2 = buildTutorWithUser(102L, 2L, TutorStatus.APPROVED, "Physics", "Vietnamese");
-            Tutor t3 = buildTutorWithUser(103L, 3L, TutorStatus.SUSPENDED, "Chemistry", "Japanese");
-
-            when(tutorRepository.findAll()).thenReturn(List.of(t1, t2, t3));
-            when(tutorVerificationRepository.findTopByTutorOrderBySubmittedAtDesc(any(Tutor.class)))
-                    .thenReturn(Optional.empty());
-            when(bookingPlanRepository.findByTutorID(anyLong()))
-                    .thenReturn(Collections.emptyList());
-            when(feedbackRepository.findByPayment_TutorId(anyLong()))
-                    .thenReturn(Collections.emptyList());
+            when(tutorDirectoryService.listByStatus(null)).thenReturn(List.of(
+                    buildDirectoryRow(101L, TutorStatus.PENDING, "Math", "English"),
+                    buildDirectoryRow(102L, TutorStatus.APPROVED, "Physics", "Vietnamese"),
+                    buildDirectoryRow(103L, TutorStatus.SUSPENDED, "Chemistry", "Japanese")));
 
             List<TutorApplicationListResponse> result = tutorService.getAllTutors("");
 
@@ -63,6 +63,12 @@ class UserServiceTest {
     @Mock
     PasswordEncoder passwordEncoder;
 
+    @Mock
+    TutorDirectoryService tutorDirectoryService;
+
+    @Mock
+    TutorProfileService tutorProfileService;
+
     @InjectMocks
     UserService userService;
 
@@ -423,6 +429,7 @@ class UserServiceTest {
             assertEquals("Vietnam", result.getCountry());
 
             verify(userRepository, times(1)).save(user);
+            verify(tutorDirectoryService).refreshUser(user);
         }
 
         /**